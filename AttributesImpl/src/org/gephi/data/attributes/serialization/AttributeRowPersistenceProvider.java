@@ -41,6 +41,9 @@ Portions Copyrighted 2011 Gephi Consortium.
  */
 package org.gephi.data.attributes.serialization;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamReader;
 import javax.xml.stream.XMLStreamWriter;
@@ -48,6 +51,7 @@ import org.gephi.data.attributes.AbstractAttributeModel;
 import org.gephi.data.attributes.api.AttributeModel;
 import org.gephi.graph.api.GraphModel;
 import org.gephi.project.api.Workspace;
+import org.gephi.project.spi.WorkspaceBytesPersistenceProvider;
 import org.gephi.project.spi.WorkspacePersistenceProvider;
 import org.openide.util.lookup.ServiceProvider;
 
@@ -56,7 +60,7 @@ import org.openide.util.lookup.ServiceProvider;
  * @author Mathieu Bastian
  */
 @ServiceProvider(service = WorkspacePersistenceProvider.class, position = 15000)
-public class AttributeRowPersistenceProvider implements WorkspacePersistenceProvider {
+public class AttributeRowPersistenceProvider implements WorkspaceBytesPersistenceProvider {
 
     public void writeXML(XMLStreamWriter writer, Workspace workspace) {
         AttributeModel model = workspace.getLookup().lookup(AttributeModel.class);
@@ -84,6 +88,32 @@ public class AttributeRowPersistenceProvider implements WorkspacePersistenceProv
         }
     }
 
+    public void writeBytes(DataOutputStream stream, Workspace workspace) {
+        AttributeModel model = workspace.getLookup().lookup(AttributeModel.class);
+        GraphModel graphModel = workspace.getLookup().lookup(GraphModel.class);
+        AttributeRowSerializer serializer = new AttributeRowSerializer();
+        if (model != null && graphModel != null && model instanceof AbstractAttributeModel) {
+            try {
+                serializer.writeRows(stream, graphModel);
+            } catch (IOException ex) {
+                throw new RuntimeException(ex);
+            }
+        }
+    }
+
+    public void readBytes(DataInputStream stream, Workspace workspace) {
+        AttributeModel model = workspace.getLookup().lookup(AttributeModel.class);
+        GraphModel graphModel = workspace.getLookup().lookup(GraphModel.class);
+        AttributeRowSerializer serializer = new AttributeRowSerializer();
+        if (model != null && graphModel != null && model instanceof AbstractAttributeModel) {
+            try {
+                serializer.readRows(stream, graphModel, (AbstractAttributeModel) model);
+            } catch (IOException ex) {
+                throw new RuntimeException(ex);
+            }
+        }
+    }
+
     public String getIdentifier() {
         return "attributerows";
     }
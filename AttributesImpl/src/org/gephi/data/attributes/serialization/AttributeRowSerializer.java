@@ -41,6 +41,9 @@ Portions Copyrighted 2011 Gephi Consortium.
  */
 package org.gephi.data.attributes.serialization;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamReader;
 import javax.xml.stream.XMLStreamWriter;
@@ -65,6 +68,11 @@ public class AttributeRowSerializer {
     private static final String ELEMENT_NODE_ROW = "noderow";
     private static final String ELEMENT_EDGE_ROW = "edgerow";
     private static final String ELEMENT_VALUE = "attvalue";
+    //Binary
+    private static final int BINARY_VERSION = 1;
+    private static final int ROWS_END = -1;
+    private static final byte VALUE_TEXT = 0;
+    private static final byte VALUE_NATIVE = 1;
 
     public void writeRows(XMLStreamWriter writer, GraphModel graphModel) throws XMLStreamException {
         writer.writeStartElement(ELEMENT_ROWS);
@@ -132,6 +140,196 @@ public class AttributeRowSerializer {
         }
     }
 
+    /**
+     * Writes the same rows as {@link #writeRows(XMLStreamWriter, GraphModel)}
+     * in a binary form. Primitive and string values are written natively,
+     * other types as their string representation.
+     */
+    public void writeRows(DataOutputStream stream, GraphModel graphModel) throws IOException {
+        stream.writeInt(BINARY_VERSION);
+
+        HierarchicalGraph hierarchicalGraph = graphModel.getHierarchicalGraph();
+        for (Node node : hierarchicalGraph.getNodesTree()) {
+            if (node.getNodeData().getAttributes() != null && node.getNodeData().getAttributes() instanceof AttributeRowImpl) {
+                stream.writeInt(node.getId());
+                writeRow(stream, (AttributeRowImpl) node.getNodeData().getAttributes());
+            }
+        }
+        stream.writeInt(ROWS_END);
+
+        for (Node node : hierarchicalGraph.getNodesTree()) {
+            for (Edge edge : hierarchicalGraph.getEdges(node)) {
+                if (edge.getEdgeData().getAttributes() != null && edge.getEdgeData().getAttributes() instanceof AttributeRowImpl) {
+                    stream.writeInt(edge.getId());
+                    writeRow(stream, (AttributeRowImpl) edge.getEdgeData().getAttributes());
+                }
+            }
+        }
+        stream.writeInt(ROWS_END);
+    }
+
+    public void readRows(DataInputStream stream, GraphModel graphModel, AbstractAttributeModel attributeModel) throws IOException {
+        int version = stream.readInt();
+        if (version != BINARY_VERSION) {
+            throw new IOException("Unsupported attribute rows binary version " + version);
+        }
+        HierarchicalGraph hierarchicalGraph = graphModel.getHierarchicalGraph();
+
+        int id;
+        while ((id = stream.readInt()) != ROWS_END) {
+            Node node = hierarchicalGraph.getNode(id);
+            AttributeRowImpl row = null;
+            if (node.getNodeData().getAttributes() != null && node.getNodeData().getAttributes() instanceof AttributeRowImpl) {
+                row = (AttributeRowImpl) node.getNodeData().getAttributes();
+            }
+            readRow(stream, attributeModel, attributeModel.getNodeTable(), row);
+        }
+        while ((id = stream.readInt()) != ROWS_END) {
+            Edge edge = hierarchicalGraph.getEdge(id);
+            AttributeRowImpl row = null;
+            if (edge.getEdgeData().getAttributes() != null && edge.getEdgeData().getAttributes() instanceof AttributeRowImpl) {
+                row = (AttributeRowImpl) edge.getEdgeData().getAttributes();
+            }
+            readRow(stream, attributeModel, attributeModel.getEdgeTable(), row);
+        }
+    }
+
+    public void writeRow(DataOutputStream stream, AttributeRowImpl row) throws IOException {
+        AttributeValue[] values = row.getValues();
+        int count = 0;
+        for (AttributeValue value : values) {
+            if (value.getValue() != null) {
+                count++;
+            }
+        }
+        stream.writeInt(row.getRowVersion());
+        stream.writeInt(count);
+        for (AttributeValue value : values) {
+            Object obj = value.getValue();
+            if (obj != null) {
+                AttributeType type = value.getColumn().getType();
+                stream.writeInt(value.getColumn().getIndex());
+                if (obj.getClass().equals(type.getType()) && isNative(type)) {
+                    stream.writeByte(VALUE_NATIVE);
+                    writeNativeValue(stream, type, obj);
+                } else {
+                    stream.writeByte(VALUE_TEXT);
+                    writeString(stream, obj.toString());
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads a row written by {@link #writeRow(DataOutputStream, AttributeRowImpl)}.
+     * If <code>row</code> is <code>null</code> values are skipped.
+     */
+    public void readRow(DataInputStream stream, AbstractAttributeModel model, AttributeTableImpl table, AttributeRowImpl row) throws IOException {
+        int rowVersion = stream.readInt();
+        if (row != null) {
+            row.setRowVersion(rowVersion);
+        }
+        int count = stream.readInt();
+        for (int i = 0; i < count; i++) {
+            AttributeColumnImpl col = table.getColumn(stream.readInt());
+            AttributeType type = col.getType();
+            Object v;
+            if (stream.readByte() == VALUE_NATIVE) {
+                v = readNativeValue(stream, type);
+            } else {
+                v = type.parse(readString(stream));
+            }
+            if (row != null) {
+                v = model.getManagedValue(v, type);
+                row.setValue(col, v);
+            }
+        }
+    }
+
+    private boolean isNative(AttributeType type) {
+        switch (type) {
+            case BYTE:
+            case SHORT:
+            case INT:
+            case LONG:
+            case FLOAT:
+            case DOUBLE:
+            case BOOLEAN:
+            case CHAR:
+            case STRING:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private void writeNativeValue(DataOutputStream stream, AttributeType type, Object obj) throws IOException {
+        switch (type) {
+            case BYTE:
+                stream.writeByte((Byte) obj);
+                break;
+            case SHORT:
+                stream.writeShort((Short) obj);
+                break;
+            case INT:
+                stream.writeInt((Integer) obj);
+                break;
+            case LONG:
+                stream.writeLong((Long) obj);
+                break;
+            case FLOAT:
+                stream.writeFloat((Float) obj);
+                break;
+            case DOUBLE:
+                stream.writeDouble((Double) obj);
+                break;
+            case BOOLEAN:
+                stream.writeBoolean((Boolean) obj);
+                break;
+            case CHAR:
+                stream.writeChar((Character) obj);
+                break;
+            default:
+                writeString(stream, (String) obj);
+                break;
+        }
+    }
+
+    private Object readNativeValue(DataInputStream stream, AttributeType type) throws IOException {
+        switch (type) {
+            case BYTE:
+                return stream.readByte();
+            case SHORT:
+                return stream.readShort();
+            case INT:
+                return stream.readInt();
+            case LONG:
+                return stream.readLong();
+            case FLOAT:
+                return stream.readFloat();
+            case DOUBLE:
+                return stream.readDouble();
+            case BOOLEAN:
+                return stream.readBoolean();
+            case CHAR:
+                return stream.readChar();
+            default:
+                return readString(stream);
+        }
+    }
+
+    private void writeString(DataOutputStream stream, String str) throws IOException {
+        byte[] bytes = str.getBytes("UTF-8");
+        stream.writeInt(bytes.length);
+        stream.write(bytes);
+    }
+
+    private String readString(DataInputStream stream) throws IOException {
+        byte[] bytes = new byte[stream.readInt()];
+        stream.readFully(bytes);
+        return new String(bytes, "UTF-8");
+    }
+
     public boolean writeRow(XMLStreamWriter writer, AttributeRowImpl row) throws XMLStreamException {
         writer.writeAttribute("version", String.valueOf(row.getRowVersion()));
         int writtenRows = 0;
@@ -162,7 +360,7 @@ public class AttributeRowSerializer {
                 case XMLStreamReader.START_ELEMENT:
                     String name = reader.getLocalName();
                     if (ELEMENT_VALUE.equalsIgnoreCase(name)) {
-                        col = (AttributeColumnImpl) table.getColumn(Integer.parseInt(reader.getAttributeValue(null, "index")));
+                        col = table.getColumn(Integer.parseInt(reader.getAttributeValue(null, "index")));
                     }
                     break;
                 case XMLStreamReader.CHARACTERS:
@@ -0,0 +1,147 @@
+/*
+Copyright 2008-2010 Gephi
+Website : http://www.gephi.org
+
+This file is part of Gephi.
+
+DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+
+Copyright 2011 Gephi Consortium. All rights reserved.
+
+The contents of this file are subject to the terms of either the GNU
+General Public License Version 3 only ("GPL") or the Common
+Development and Distribution License("CDDL") (collectively, the
+"License"). You may not use this file except in compliance with the
+License. You can obtain a copy of the License at
+http://gephi.org/about/legal/license-notice/
+or /cddl-1.0.txt and /gpl-3.0.txt. See the License for the
+specific language governing permissions and limitations under the
+License.  When distributing the software, include this License Header
+Notice in each file and include the License files at
+/cddl-1.0.txt and /gpl-3.0.txt. If applicable, add the following below the
+License Header, with the fields enclosed by brackets [] replaced by
+your own identifying information:
+"Portions Copyrighted [year] [name of copyright owner]"
+
+If you wish your version of this file to be governed by only the CDDL
+or only the GPL Version 3, indicate your decision by adding
+"[Contributor] elects to include this software in this distribution
+under the [CDDL or GPL Version 3] license." If you do not indicate a
+single choice of license, a recipient has the option to distribute
+your version of this file under either the CDDL, the GPL Version 3 or
+to extend the choice of license to its licensees as provided above.
+However, if you add GPL Version 3 code and therefore, elected the GPL
+Version 3 license, then the option applies only if the new code is
+made subject to such option by the copyright holder.
+
+Contributor(s):
+
+Portions Copyrighted 2011 Gephi Consortium.
+*/
+package org.gephi.data.attributes;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import org.gephi.data.attributes.api.AttributeColumn;
+import org.gephi.data.attributes.api.AttributeType;
+import org.gephi.data.attributes.model.IndexedAttributeModel;
+import org.gephi.data.attributes.serialization.AttributeRowSerializer;
+import org.gephi.data.attributes.type.DynamicDouble;
+import org.gephi.data.attributes.type.DynamicInteger;
+import org.gephi.data.attributes.type.DynamicString;
+import org.gephi.data.attributes.type.IntegerList;
+import org.gephi.data.attributes.type.Interval;
+import org.gephi.data.attributes.type.StringList;
+import org.gephi.data.attributes.type.TimeInterval;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class AttributeRowSerializerTest {
+
+    private IndexedAttributeModel model;
+    private AttributeRowImpl row;
+
+    @Before
+    public void setUp() {
+        model = new IndexedAttributeModel();
+        AttributeTableImpl table = model.getNodeTable();
+        row = new AttributeRowImpl(table, null);
+        setValue(table.addColumn("byte", AttributeType.BYTE), (byte) -3);
+        setValue(table.addColumn("short", AttributeType.SHORT), (short) 1234);
+        setValue(table.addColumn("int", AttributeType.INT), Integer.MIN_VALUE);
+        setValue(table.addColumn("long", AttributeType.LONG), Long.MAX_VALUE);
+        setValue(table.addColumn("float", AttributeType.FLOAT), 0.1f);
+        setValue(table.addColumn("double", AttributeType.DOUBLE), Math.PI);
+        setValue(table.addColumn("boolean", AttributeType.BOOLEAN), Boolean.TRUE);
+        setValue(table.addColumn("char", AttributeType.CHAR), 'é');
+        setValue(table.addColumn("string", AttributeType.STRING), "Ünïcode, \"quotes\" & <tags>");
+        setValue(table.addColumn("stringList", AttributeType.LIST_STRING), new StringList(new String[]{"a", "b", "c"}));
+        setValue(table.addColumn("intList", AttributeType.LIST_INTEGER), new IntegerList(new int[]{1, 2, 3}));
+        table.addColumn("empty", AttributeType.STRING);
+
+        List<Interval<Integer>> intIntervals = new ArrayList<Interval<Integer>>();
+        intIntervals.add(new Interval<Integer>(1.0, 2.0, 10));
+        intIntervals.add(new Interval<Integer>(3.0, Double.POSITIVE_INFINITY, 20));
+        setValue(table.addColumn("dynamicInt", AttributeType.DYNAMIC_INT), new DynamicInteger(intIntervals));
+        List<Interval<Double>> doubleIntervals = new ArrayList<Interval<Double>>();
+        doubleIntervals.add(new Interval<Double>(Double.NEGATIVE_INFINITY, 0.5, -1.5));
+        setValue(table.addColumn("dynamicDouble", AttributeType.DYNAMIC_DOUBLE), new DynamicDouble(doubleIntervals));
+        List<Interval<String>> stringIntervals = new ArrayList<Interval<String>>();
+        stringIntervals.add(new Interval<String>(2.0, 4.0, "x"));
+        stringIntervals.add(new Interval<String>(4.0, 6.0, true, false, "y"));
+        setValue(table.addColumn("dynamicString", AttributeType.DYNAMIC_STRING), new DynamicString(stringIntervals));
+        setValue(table.addColumn("timeInterval", AttributeType.TIME_INTERVAL), new TimeInterval(1.0, 5.0));
+    }
+
+    private void setValue(AttributeColumn column, Object value) {
+        row.setValue(column, value);
+    }
+
+    @Test
+    public void testBinaryRoundTrip() throws Exception {
+        AttributeRowSerializer serializer = new AttributeRowSerializer();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream output = new DataOutputStream(bytes);
+        serializer.writeRow(output, row);
+        output.writeInt(42);
+        output.close();
+
+        AttributeRowImpl copy = new AttributeRowImpl(model.getNodeTable(), null);
+        DataInputStream input = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        serializer.readRow(input, model, model.getNodeTable(), copy);
+        assertEquals(42, input.readInt());
+
+        assertEquals(row.getRowVersion(), copy.getRowVersion());
+        for (AttributeColumn column : model.getNodeTable().getColumns()) {
+            Object expected = row.getValue(column);
+            Object actual = copy.getValue(column);
+            assertEquals(column.getId(), expected, actual);
+            if (expected != null) {
+                assertEquals(column.getId(), column.getType().getType(), actual.getClass());
+            }
+        }
+        assertNull(copy.getValue("empty"));
+        assertEquals(Integer.valueOf(20), ((DynamicInteger) copy.getValue("dynamicInt")).getValue(100.0, 100.0));
+        assertEquals("y", ((DynamicString) copy.getValue("dynamicString")).getValue(5.0, 5.0));
+    }
+
+    @Test
+    public void testSkippedRow() throws Exception {
+        AttributeRowSerializer serializer = new AttributeRowSerializer();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream output = new DataOutputStream(bytes);
+        serializer.writeRow(output, row);
+        output.writeInt(42);
+        output.close();
+
+        //Values are read but not set without a row
+        DataInputStream input = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        serializer.readRow(input, model, model.getNodeTable(), null);
+        assertEquals(42, input.readInt());
+    }
+}
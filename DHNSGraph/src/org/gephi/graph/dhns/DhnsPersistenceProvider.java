@@ -41,12 +41,16 @@ Portions Copyrighted 2011 Gephi Consortium.
  */
 package org.gephi.graph.dhns;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamReader;
 import javax.xml.stream.XMLStreamWriter;
 import org.gephi.graph.dhns.core.Dhns;
 import org.gephi.graph.dhns.utils.DHNSSerializer;
 import org.gephi.project.api.Workspace;
+import org.gephi.project.spi.WorkspaceBytesPersistenceProvider;
 import org.gephi.project.spi.WorkspacePersistenceProvider;
 import org.openide.util.Lookup;
 import org.openide.util.lookup.ServiceProvider;
@@ -56,7 +60,7 @@ import org.openide.util.lookup.ServiceProvider;
  * @author Mathieu Bastian
  */
 @ServiceProvider(service = WorkspacePersistenceProvider.class, position = 10000)
-public class DhnsPersistenceProvider implements WorkspacePersistenceProvider {
+public class DhnsPersistenceProvider implements WorkspaceBytesPersistenceProvider {
 
     public void writeXML(XMLStreamWriter writer, Workspace workspace) {
         DhnsGraphController graphController = Lookup.getDefault().lookup(DhnsGraphController.class);
@@ -80,6 +84,28 @@ public class DhnsPersistenceProvider implements WorkspacePersistenceProvider {
         }
     }
 
+    public void writeBytes(DataOutputStream stream, Workspace workspace) {
+        DhnsGraphController graphController = Lookup.getDefault().lookup(DhnsGraphController.class);
+        Dhns dhns = (Dhns) graphController.getModel(workspace);
+        DHNSSerializer serializer = new DHNSSerializer();
+        try {
+            serializer.writeDhns(stream, dhns);
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    public void readBytes(DataInputStream stream, Workspace workspace) {
+        DhnsGraphController graphController = Lookup.getDefault().lookup(DhnsGraphController.class);
+        Dhns dhns = (Dhns) graphController.getModel(workspace);
+        DHNSSerializer serializer = new DHNSSerializer();
+        try {
+            serializer.readDhns(stream, dhns);
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
     public String getIdentifier() {
         return "Dhns";
     }
@@ -0,0 +1,349 @@
+/*
+Copyright 2008-2010 Gephi
+Website : http://www.gephi.org
+
+This file is part of Gephi.
+
+DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+
+Copyright 2011 Gephi Consortium. All rights reserved.
+
+The contents of this file are subject to the terms of either the GNU
+General Public License Version 3 only ("GPL") or the Common
+Development and Distribution License("CDDL") (collectively, the
+"License"). You may not use this file except in compliance with the
+License. You can obtain a copy of the License at
+http://gephi.org/about/legal/license-notice/
+or /cddl-1.0.txt and /gpl-3.0.txt. See the License for the
+specific language governing permissions and limitations under the
+License.  When distributing the software, include this License Header
+Notice in each file and include the License files at
+/cddl-1.0.txt and /gpl-3.0.txt. If applicable, add the following below the
+License Header, with the fields enclosed by brackets [] replaced by
+your own identifying information:
+"Portions Copyrighted [year] [name of copyright owner]"
+
+If you wish your version of this file to be governed by only the CDDL
+or only the GPL Version 3, indicate your decision by adding
+"[Contributor] elects to include this software in this distribution
+under the [CDDL or GPL Version 3] license." If you do not indicate a
+single choice of license, a recipient has the option to distribute
+your version of this file under either the CDDL, the GPL Version 3 or
+to extend the choice of license to its licensees as provided above.
+However, if you add GPL Version 3 code and therefore, elected the GPL
+Version 3 license, then the option applies only if the new code is
+made subject to such option by the copyright holder.
+
+Contributor(s):
+
+Portions Copyrighted 2011 Gephi Consortium.
+*/
+package org.gephi.graph.dhns.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import org.gephi.graph.api.AdjacencySnapshot;
+import org.gephi.graph.api.GraphView;
+import org.gephi.graph.api.Node;
+import org.gephi.graph.dhns.edge.AbstractEdge;
+import org.gephi.graph.dhns.edge.MetaEdgeImpl;
+import org.gephi.graph.dhns.node.AbstractNode;
+import org.gephi.graph.dhns.node.iterators.TreeIterator;
+import org.gephi.graph.dhns.predicate.Tautology;
+import org.gephi.utils.collection.avl.ParamAVLIterator;
+
+/**
+ * Compressed sparse row snapshot of a view. The <code>OUT</code> adjacency is
+ * built in a single pass over enabled nodes edge trees, <code>IN</code> and
+ * <code>UNDIRECTED</code> adjacencies are derived lazily from it and therefore
+ * don't need the graph lock.
+ */
+public class AdjacencySnapshotImpl implements AdjacencySnapshot {
+
+    private final GraphViewImpl view;
+    private final GraphVersion graphVersion;
+    private final int nodeVersion;
+    private final int edgeVersion;
+    private final AbstractNode[] nodes;
+    private final int[] indexById;
+    private final boolean weighted;
+    //Out
+    private final int[] outOffsets;
+    private final int[] outTargets;
+    private final float[] outWeights;
+    private final BitSet mutualDuplicates;
+    //Lazy
+    private int[] inOffsets;
+    private int[] inTargets;
+    private float[] inWeights;
+    private int[] undirectedOffsets;
+    private int[] undirectedTargets;
+    private float[] undirectedWeights;
+
+    private AdjacencySnapshotImpl(GraphViewImpl view, GraphVersion graphVersion, AbstractNode[] nodes, int[] indexById, int[] outOffsets, int[] outTargets, float[] outWeights, BitSet mutualDuplicates) {
+        this.view = view;
+        this.graphVersion = graphVersion;
+        this.nodeVersion = graphVersion.getNodeVersion();
+        this.edgeVersion = graphVersion.getEdgeVersion();
+        this.nodes = nodes;
+        this.indexById = indexById;
+        this.outOffsets = outOffsets;
+        this.outTargets = outTargets;
+        this.outWeights = outWeights;
+        this.weighted = outWeights != null;
+        this.mutualDuplicates = mutualDuplicates;
+    }
+
+    /**
+     * Builds the snapshot of <code>view</code>. The caller must hold the read lock.
+     * @param view      the view to copy
+     * @param weighted  <code>true</code> to copy edge weights
+     * @return          a new snapshot
+     */
+    public static AdjacencySnapshotImpl build(GraphViewImpl view, boolean weighted) {
+        TreeStructure structure = view.getStructure();
+        int viewId = view.getViewId();
+
+        //Nodes
+        List<AbstractNode> nodeList = new ArrayList<AbstractNode>(Math.max(16, view.getNodesEnabled()));
+        int maxId = 0;
+        for (TreeIterator itr = new TreeIterator(structure, true, Tautology.instance); itr.hasNext();) {
+            AbstractNode node = itr.next();
+            nodeList.add(node);
+            maxId = Math.max(maxId, node.getId());
+        }
+        AbstractNode[] nodes = nodeList.toArray(new AbstractNode[nodeList.size()]);
+        int[] indexById = new int[maxId + 1];
+        Arrays.fill(indexById, -1);
+        for (int i = 0; i < nodes.length; i++) {
+            indexById[nodes[i].getId()] = i;
+        }
+
+        //Out edges and meta-edges
+        int capacity = Math.max(16, view.getEdgesCountEnabled() + view.getMetaEdgesCountTotal());
+        int[] offsets = new int[nodes.length + 1];
+        int[] targets = new int[capacity];
+        float[] weights = weighted ? new float[capacity] : null;
+        BitSet mutualDuplicates = new BitSet();
+        int count = 0;
+        ParamAVLIterator<AbstractEdge> edgeIterator = new ParamAVLIterator<AbstractEdge>();
+        for (int i = 0; i < nodes.length; i++) {
+            AbstractNode node = nodes[i];
+            offsets[i] = count;
+            for (int meta = 0; meta < 2; meta++) {
+                if (meta == 0) {
+                    if (node.getEdgesOutTree().isEmpty()) {
+                        continue;
+                    }
+                    edgeIterator.setNode(node.getEdgesOutTree());
+                } else {
+                    if (node.getMetaEdgesOutTree().isEmpty()) {
+                        continue;
+                    }
+                    edgeIterator.setNode(node.getMetaEdgesOutTree());
+                }
+                while (edgeIterator.hasNext()) {
+                    AbstractEdge edge = edgeIterator.next();
+                    AbstractNode target = edge.getTarget(viewId);
+                    if (!target.isEnabled()) {
+                        continue;
+                    }
+                    if (count == targets.length) {
+                        int newCapacity = targets.length + (targets.length >> 1);
+                        targets = Arrays.copyOf(targets, newCapacity);
+                        if (weighted) {
+                            weights = Arrays.copyOf(weights, newCapacity);
+                        }
+                    }
+                    targets[count] = indexById[target.getId()];
+                    if (weighted) {
+                        weights[count] = edge.getWeight();
+                    }
+                    AbstractEdge undirected = meta == 0 ? edge.getUndirected(viewId) : ((MetaEdgeImpl) edge).getUndirected();
+                    if (undirected != edge) {
+                        mutualDuplicates.set(count);
+                    }
+                    count++;
+                }
+            }
+        }
+        offsets[nodes.length] = count;
+        if (count < targets.length) {
+            targets = Arrays.copyOf(targets, count);
+            if (weighted) {
+                weights = Arrays.copyOf(weights, count);
+            }
+        }
+        return new AdjacencySnapshotImpl(view, view.getGraphModel().getGraphVersion(), nodes, indexById, offsets, targets, weights, mutualDuplicates);
+    }
+
+    private synchronized void buildIn() {
+        if (inOffsets != null) {
+            return;
+        }
+        int n = nodes.length;
+        int[] offsets = new int[n + 1];
+        for (int j = 0; j < outTargets.length; j++) {
+            offsets[outTargets[j] + 1]++;
+        }
+        for (int i = 0; i < n; i++) {
+            offsets[i + 1] += offsets[i];
+        }
+        int[] targets = new int[outTargets.length];
+        float[] weights = weighted ? new float[outTargets.length] : null;
+        int[] cursors = Arrays.copyOf(offsets, n);
+        for (int i = 0; i < n; i++) {
+            for (int j = outOffsets[i]; j < outOffsets[i + 1]; j++) {
+                int pos = cursors[outTargets[j]]++;
+                targets[pos] = i;
+                if (weighted) {
+                    weights[pos] = outWeights[j];
+                }
+            }
+        }
+        inTargets = targets;
+        inWeights = weights;
+        inOffsets = offsets;
+    }
+
+    private synchronized void buildUndirected() {
+        if (undirectedOffsets != null) {
+            return;
+        }
+        int n = nodes.length;
+        int[] offsets = new int[n + 1];
+        for (int i = 0; i < n; i++) {
+            for (int j = outOffsets[i]; j < outOffsets[i + 1]; j++) {
+                if (mutualDuplicates.get(j)) {
+                    continue;
+                }
+                offsets[i + 1]++;
+                if (outTargets[j] != i) {
+                    offsets[outTargets[j] + 1]++;
+                }
+            }
+        }
+        for (int i = 0; i < n; i++) {
+            offsets[i + 1] += offsets[i];
+        }
+        int[] targets = new int[offsets[n]];
+        float[] weights = weighted ? new float[offsets[n]] : null;
+        int[] cursors = Arrays.copyOf(offsets, n);
+        for (int i = 0; i < n; i++) {
+            for (int j = outOffsets[i]; j < outOffsets[i + 1]; j++) {
+                if (mutualDuplicates.get(j)) {
+                    continue;
+                }
+                int t = outTargets[j];
+                int pos = cursors[i]++;
+                targets[pos] = t;
+                if (weighted) {
+                    weights[pos] = outWeights[j];
+                }
+                if (t != i) {
+                    pos = cursors[t]++;
+                    targets[pos] = i;
+                    if (weighted) {
+                        weights[pos] = outWeights[j];
+                    }
+                }
+            }
+        }
+        undirectedTargets = targets;
+        undirectedWeights = weights;
+        undirectedOffsets = offsets;
+    }
+
+    public int getNodeCount() {
+        return nodes.length;
+    }
+
+    public int getEdgeCount(Adjacency adjacency) {
+        return getTargets(adjacency).length;
+    }
+
+    public Node getNode(int index) {
+        return nodes[index];
+    }
+
+    public Node[] getNodes() {
+        return nodes;
+    }
+
+    public int getIndex(Node node) {
+        int id = node.getId();
+        if (id < 0 || id >= indexById.length) {
+            return -1;
+        }
+        return indexById[id];
+    }
+
+    public int[] getOffsets(Adjacency adjacency) {
+        switch (adjacency) {
+            case IN:
+                buildIn();
+                return inOffsets;
+            case UNDIRECTED:
+                buildUndirected();
+                return undirectedOffsets;
+            default:
+                return outOffsets;
+        }
+    }
+
+    public int[] getTargets(Adjacency adjacency) {
+        switch (adjacency) {
+            case IN:
+                buildIn();
+                return inTargets;
+            case UNDIRECTED:
+                buildUndirected();
+                return undirectedTargets;
+            default:
+                return outTargets;
+        }
+    }
+
+    public float[] getWeights(Adjacency adjacency) {
+        if (!weighted) {
+            return null;
+        }
+        switch (adjacency) {
+            case IN:
+                buildIn();
+                return inWeights;
+            case UNDIRECTED:
+                buildUndirected();
+                return undirectedWeights;
+            default:
+                return outWeights;
+        }
+    }
+
+    public int getDegree(Adjacency adjacency, int index) {
+        int[] offsets = getOffsets(adjacency);
+        return offsets[index + 1] - offsets[index];
+    }
+
+    public boolean isWeighted() {
+        return weighted;
+    }
+
+    public GraphView getView() {
+        return view;
+    }
+
+    public int getNodeVersion() {
+        return nodeVersion;
+    }
+
+    public int getEdgeVersion() {
+        return edgeVersion;
+    }
+
+    public boolean isUpToDate() {
+        return nodeVersion == graphVersion.getNodeVersion() && edgeVersion == graphVersion.getEdgeVersion();
+    }
+}
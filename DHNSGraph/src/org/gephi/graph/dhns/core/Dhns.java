@@ -41,10 +41,12 @@ Portions Copyrighted 2011 Gephi Consortium.
  */
 package org.gephi.graph.dhns.core;
 
+import java.util.BitSet;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import org.gephi.data.attributes.api.AttributeController;
 import org.gephi.data.attributes.api.AttributeModel;
 import org.gephi.data.attributes.api.AttributeRowFactory;
+import org.gephi.graph.api.AdjacencySnapshot;
 import org.gephi.graph.api.DirectedGraph;
 import org.gephi.graph.api.EdgeIterable;
 import org.gephi.graph.api.Graph;
@@ -495,6 +497,10 @@ public class Dhns implements GraphModel {
         return null;
     }
 
+    public AdjacencySnapshot getAdjacencySnapshot(GraphView view, boolean weighted) {
+        return ((GraphViewImpl) view).getAdjacencySnapshot(weighted);
+    }
+
     public GraphModel copy() {
         return null;
     }
@@ -507,6 +513,10 @@ public class Dhns implements GraphModel {
         return graphStructure.copyView((GraphViewImpl) view);
     }
 
+    public GraphView copyView(GraphView view, BitSet nodes, BitSet edges) {
+        return graphStructure.copyView((GraphViewImpl) view, nodes, edges);
+    }
+
     public void destroyView(GraphView view) {
         graphStructure.destroyView((GraphViewImpl) view);
     }
@@ -44,6 +44,7 @@ package org.gephi.graph.dhns.core;
 import gnu.trove.TIntObjectHashMap;
 import gnu.trove.TObjectIntHashMap;
 import java.lang.ref.WeakReference;
+import java.util.BitSet;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -150,6 +151,100 @@ public class GraphStructure {
         return viewCopy;
     }
 
+    /**
+     * Builds a new view with the content of <code>view</code> in a single pass.
+     * Only enabled nodes and edges between enabled nodes are tested against
+     * <code>nodes</code> and <code>edges</code>, other nodes follow their
+     * parent and other edges are kept when both extremities are. A removed
+     * node removes its descendants, as <code>deleteNode()</code> does. Degree
+     * and edge counters are computed along, no node or edge event is fired.
+     * @param view  the view to copy
+     * @param nodes the ids of the enabled nodes to keep, or <code>null</code>
+     * to keep all nodes
+     * @param edges the ids of the enabled edges to keep, or <code>null</code>
+     * to keep all edges
+     * @return      the new view
+     */
+    public GraphViewImpl copyView(GraphViewImpl view, BitSet nodes, BitSet edges) {
+        GraphViewImpl viewCopy = new GraphViewImpl(dhns, viewId.getAndIncrement());
+        int copyId = viewCopy.getViewId();
+        TreeStructure newStructure = viewCopy.getStructure();
+        dhns.writeLock();
+
+        //Nodes, in pre-order so parents are copied first
+        int nodesEnabled = 0;
+        for (TreeListIterator itr = new TreeListIterator(view.getStructure().getTree(), 1); itr.hasNext();) {
+            AbstractNode node = itr.next();
+            AbstractNode parentCopy = node.parent.getPre() == 0 ? newStructure.getRoot() : node.parent.getInView(copyId);
+            if (parentCopy == null || (nodes != null && node.isEnabled() && !nodes.get(node.getId()))) {
+                continue;
+            }
+            AbstractNode nodeCopy = new AbstractNode(node.getNodeData(), copyId);
+            nodeCopy.setEnabled(node.isEnabled());
+            newStructure.insertAsChild(nodeCopy, parentCopy);
+            if (nodeCopy.isEnabled()) {
+                nodesEnabled++;
+            }
+        }
+
+        //Edges
+        int edgesCountTotal = 0;
+        int edgesCountEnabled = 0;
+        int mutualEdgesTotal = 0;
+        int mutualEdgesEnabled = 0;
+        ParamAVLIterator<AbstractEdge> edgeIterator = new ParamAVLIterator<AbstractEdge>();
+        for (TreeListIterator itr = new TreeListIterator(view.getStructure().getTree(), 1); itr.hasNext();) {
+            AbstractNode node = itr.next();
+            AbstractNode sourceCopy = node.getInView(copyId);
+            if (sourceCopy == null || node.getEdgesOutTree().isEmpty()) {
+                continue;
+            }
+            for (edgeIterator.setNode(node.getEdgesOutTree()); edgeIterator.hasNext();) {
+                AbstractEdge edge = edgeIterator.next();
+                AbstractNode targetCopy = edge.getTarget(copyId);
+                if (targetCopy == null) {
+                    continue;
+                }
+                boolean enabled = sourceCopy.isEnabled() && targetCopy.isEnabled();
+                if (enabled && edges != null && !edges.get(edge.getId())) {
+                    continue;
+                }
+                sourceCopy.getEdgesOutTree().add(edge);
+                targetCopy.getEdgesInTree().add(edge);
+                addToDictionnary(edge);
+
+                edgesCountTotal++;
+                if (enabled) {
+                    edgesCountEnabled++;
+                    sourceCopy.incEnabledOutDegree();
+                    targetCopy.incEnabledInDegree();
+                }
+                if (!edge.isSelfLoop() && sourceCopy.getEdgesInTree().hasNeighbour(targetCopy)) {
+                    //Mutual edge, counted when the second edge is added
+                    mutualEdgesTotal++;
+                    if (enabled) {
+                        mutualEdgesEnabled++;
+                        sourceCopy.incEnabledMutualDegree();
+                        targetCopy.incEnabledMutualDegree();
+                    }
+                }
+            }
+        }
+        viewCopy.setNodesEnabled(nodesEnabled);
+        viewCopy.setEdgesCountTotal(edgesCountTotal);
+        viewCopy.setEdgesCountEnabled(edgesCountEnabled);
+        viewCopy.setMutualEdgesTotal(mutualEdgesTotal);
+        viewCopy.setMutualEdgesEnabled(mutualEdgesEnabled);
+
+        //Metaedges
+        viewCopy.getStructureModifier().getEdgeProcessor().computeMetaEdges();
+
+        views.add(viewCopy);
+        dhns.writeUnlock();
+        dhns.getEventManager().fireEvent(new ViewEvent(EventType.NEW_VIEW, viewCopy));
+        return viewCopy;
+    }
+
     public void destroyView(final GraphViewImpl view) {
         if (views.contains(view)) {
             destroyQueue.add(view);
@@ -280,6 +375,7 @@ public class GraphStructure {
                 }
             }
             structure.views.remove(view);
+            view.clearAdjacencySnapshot();
             //System.out.println("Destroy view finished");           
             structure.dhns.writeUnlock();
             structure.dhns.getEventManager().fireEvent(new ViewEvent(EventType.DESTROY_VIEW, view));
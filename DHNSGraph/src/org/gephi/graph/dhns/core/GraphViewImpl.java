@@ -64,6 +64,8 @@ public class GraphViewImpl implements GraphView {
     private int mutualEdgesEnabled;
     private int metaEdgesCountTotal;
     private int mutualMetaEdgesTotal;
+    //Adjacency snapshot
+    private AdjacencySnapshotImpl adjacencySnapshot;
     //RefCounting
     private final WeakHashMap<AbstractGraphImpl, Boolean> graphsMap = new WeakHashMap<AbstractGraphImpl, Boolean>();
 
@@ -221,6 +223,32 @@ public class GraphViewImpl implements GraphView {
         this.mutualMetaEdgesTotal = mutualMetaEdgesTotal;
     }
 
+    /**
+     * Returns the cached snapshot if the structure hasn't changed. Weighted
+     * snapshots are always built again, because changing edge weights
+     * doesn't increment graph versions.
+     */
+    public AdjacencySnapshotImpl getAdjacencySnapshot(boolean weighted) {
+        AdjacencySnapshotImpl snapshot = adjacencySnapshot;
+        if (!weighted && snapshot != null && snapshot.isUpToDate()) {
+            return snapshot;
+        }
+        dhns.readLock();
+        try {
+            snapshot = AdjacencySnapshotImpl.build(this, weighted);
+        } finally {
+            dhns.readUnlock();
+        }
+        if (!weighted) {
+            adjacencySnapshot = snapshot;
+        }
+        return snapshot;
+    }
+
+    public void clearAdjacencySnapshot() {
+        adjacencySnapshot = null;
+    }
+
     public Dhns getGraphModel() {
         return dhns;
     }
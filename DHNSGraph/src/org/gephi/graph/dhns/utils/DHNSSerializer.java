@@ -45,6 +45,9 @@ import java.beans.XMLDecoder;
 import java.beans.XMLEncoder;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.util.Map.Entry;
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamReader;
@@ -88,6 +91,12 @@ public class DHNSSerializer {
     private static final String ELEMENT_SETTINGS = "Settings";
     private static final String ELEMENT_SETTINGS_PROPERTY = "Property";
     private static final String ELEMENT_IDGEN = "IDGen";
+    //Binary
+    private static final int BINARY_VERSION = 1;
+    private static final byte EDGES_END = 0;
+    private static final byte EDGES_PROPER = 1;
+    private static final byte EDGES_SELFLOOP = 2;
+    private static final byte EDGES_MIXED = 3;
 
     public void writeDhns(XMLStreamWriter writer, Dhns dhns) throws XMLStreamException {
         writer.writeStartElement(ELEMENT_DHNS);
@@ -152,6 +161,170 @@ public class DHNSSerializer {
         }
     }
 
+    /**
+     * Writes the same content as {@link #writeDhns(XMLStreamWriter, Dhns)} in
+     * a compact binary form.
+     */
+    public void writeDhns(DataOutputStream stream, Dhns dhns) throws IOException {
+        stream.writeInt(BINARY_VERSION);
+
+        //Status
+        stream.writeBoolean(dhns.isDirected());
+        stream.writeBoolean(dhns.isUndirected());
+        stream.writeBoolean(dhns.isMixed());
+
+        //IDGen
+        IDGen idGen = dhns.getIdGen();
+        stream.writeInt(idGen.getNodeGen());
+        stream.writeInt(idGen.getEdgeGen());
+
+        //Settings
+        SettingsManager settingsManager = dhns.getSettingsManager();
+        stream.writeInt(settingsManager.getClientProperties().size());
+        for (Entry<String, Object> entry : settingsManager.getClientProperties().entrySet()) {
+            ByteArrayOutputStream valueStream = new ByteArrayOutputStream();
+            XMLEncoder xmlEncoder = new XMLEncoder(valueStream);
+            xmlEncoder.writeObject(entry.getValue());
+            xmlEncoder.close();
+            stream.writeUTF(entry.getKey());
+            byte[] value = valueStream.toByteArray();
+            stream.writeInt(value.length);
+            stream.write(value);
+        }
+
+        //GraphVersion
+        GraphVersion graphVersion = dhns.getGraphVersion();
+        stream.writeInt(graphVersion.getNodeVersion());
+        stream.writeInt(graphVersion.getEdgeVersion());
+
+        //TreeStructure
+        GraphViewImpl view = dhns.getGraphStructure().getMainView();
+        stream.writeInt(view.getEdgesCountEnabled());
+        stream.writeInt(view.getEdgesCountTotal());
+        stream.writeInt(view.getMutualEdgesEnabled());
+        stream.writeInt(view.getMutualEdgesTotal());
+        stream.writeInt(view.getNodesEnabled());
+        TreeStructure treeStructure = view.getStructure();
+        stream.writeInt(treeStructure.getTreeSize() - 1);
+        for (TreeListIterator itr = new TreeListIterator(treeStructure.getTree(), 1); itr.hasNext();) {
+            AbstractNode node = itr.next();
+            stream.writeInt(node.getId());
+            stream.writeBoolean(node.isEnabled());
+            stream.writeInt(node.parent.pre);
+            stream.writeInt(node.getEnabledInDegree());
+            stream.writeInt(node.getEnabledOutDegree());
+            stream.writeInt(node.getEnabledMutualDegree());
+        }
+
+        //Edges
+        ParamAVLIterator<AbstractEdge> edgeIterator = new ParamAVLIterator<AbstractEdge>();
+        for (TreeListIterator itr = new TreeListIterator(treeStructure.getTree(), 1); itr.hasNext();) {
+            AbstractNode node = itr.next();
+            for (edgeIterator.setNode(node.getEdgesOutTree()); edgeIterator.hasNext();) {
+                AbstractEdge edge = edgeIterator.next();
+                if (edge.isSelfLoop()) {
+                    stream.writeByte(EDGES_SELFLOOP);
+                } else if (edge.isMixed()) {
+                    stream.writeByte(EDGES_MIXED);
+                    stream.writeBoolean(edge.isDirected());
+                } else {
+                    stream.writeByte(EDGES_PROPER);
+                }
+                stream.writeInt(edge.getSource().pre);
+                stream.writeInt(edge.getTarget().pre);
+                stream.writeFloat(edge.getWeight());
+                stream.writeInt(edge.getId());
+            }
+        }
+        stream.writeByte(EDGES_END);
+    }
+
+    public void readDhns(DataInputStream stream, Dhns dhns) throws IOException {
+        int version = stream.readInt();
+        if (version != BINARY_VERSION) {
+            throw new IOException("Unsupported graph binary version " + version);
+        }
+
+        //Status
+        dhns.setDirected(stream.readBoolean());
+        dhns.setUndirected(stream.readBoolean());
+        dhns.setMixed(stream.readBoolean());
+
+        //IDGen
+        IDGen idGen = dhns.getIdGen();
+        idGen.setNodeGen(stream.readInt());
+        idGen.setEdgeGen(stream.readInt());
+
+        //Settings
+        SettingsManager settingsManager = dhns.getSettingsManager();
+        int settingsCount = stream.readInt();
+        for (int i = 0; i < settingsCount; i++) {
+            String key = stream.readUTF();
+            byte[] value = new byte[stream.readInt()];
+            stream.readFully(value);
+            XMLDecoder xmlDecoder = new XMLDecoder(new ByteArrayInputStream(value));
+            settingsManager.putClientProperty(key, xmlDecoder.readObject());
+        }
+
+        //GraphVersion
+        int nodeVersion = stream.readInt();
+        int edgeVersion = stream.readInt();
+        dhns.getGraphVersion().setVersion(nodeVersion, edgeVersion);
+
+        //TreeStructure
+        GraphStructure graphStructure = dhns.getGraphStructure();
+        GraphFactoryImpl factory = dhns.factory();
+        GraphViewImpl view = graphStructure.getMainView();
+        view.setEdgesCountEnabled(stream.readInt());
+        view.setEdgesCountTotal(stream.readInt());
+        view.setMutualEdgesEnabled(stream.readInt());
+        view.setMutualEdgesTotal(stream.readInt());
+        view.setNodesEnabled(stream.readInt());
+        TreeStructure treeStructure = view.getStructure();
+        int nodeCount = stream.readInt();
+        for (int i = 0; i < nodeCount; i++) {
+            int id = stream.readInt();
+            boolean enabled = stream.readBoolean();
+            AbstractNode parentNode = treeStructure.getNodeAt(stream.readInt());
+            AbstractNode absNode = new AbstractNode(id, 0, 0, 0, 0, parentNode);
+            absNode.setEnabled(enabled);
+            absNode.setEnabledInDegree(stream.readInt());
+            absNode.setEnabledOutDegree(stream.readInt());
+            absNode.setEnabledMutualDegree(stream.readInt());
+            absNode.getNodeData().setAttributes(factory.newNodeAttributes(absNode.getNodeData()));
+            absNode.getNodeData().setId(String.valueOf(absNode.getId()));
+            absNode.getNodeData().setTextData(factory.newTextData());
+            treeStructure.insertAsChild(absNode, parentNode);
+            graphStructure.addToDictionnary(absNode);
+        }
+
+        //Edges
+        byte type;
+        while ((type = stream.readByte()) != EDGES_END) {
+            boolean directed = type == EDGES_MIXED ? stream.readBoolean() : false;
+            AbstractNode srcNode = treeStructure.getNodeAt(stream.readInt());
+            AbstractNode destNode = treeStructure.getNodeAt(stream.readInt());
+            float weight = stream.readFloat();
+            int id = stream.readInt();
+            AbstractEdge edge;
+            if (type == EDGES_PROPER) {
+                edge = new ProperEdgeImpl(id, srcNode, destNode);
+            } else if (type == EDGES_MIXED) {
+                edge = new MixedEdgeImpl(id, srcNode, destNode, directed);
+            } else {
+                edge = new SelfLoopImpl(id, srcNode);
+            }
+            edge.setWeight(weight);
+            edge.getEdgeData().setAttributes(factory.newEdgeAttributes(edge.getEdgeData()));
+            edge.getEdgeData().setId(String.valueOf(edge.getId()));
+            edge.getEdgeData().setTextData(factory.newTextData());
+            srcNode.getEdgesOutTree().add(edge);
+            destNode.getEdgesInTree().add(edge);
+            graphStructure.addToDictionnary(edge);
+        }
+        view.getStructureModifier().getEdgeProcessor().computeMetaEdges();
+    }
+
     public void writeEdges(XMLStreamWriter writer, TreeStructure treeStructure) throws XMLStreamException {
         writer.writeStartElement(ELEMENT_EDGES);
 
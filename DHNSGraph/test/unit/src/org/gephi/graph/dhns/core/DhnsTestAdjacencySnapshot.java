@@ -0,0 +1,221 @@
+/*
+Copyright 2008-2010 Gephi
+Website : http://www.gephi.org
+
+This file is part of Gephi.
+
+DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+
+Copyright 2011 Gephi Consortium. All rights reserved.
+
+The contents of this file are subject to the terms of either the GNU
+General Public License Version 3 only ("GPL") or the Common
+Development and Distribution License("CDDL") (collectively, the
+"License"). You may not use this file except in compliance with the
+License. You can obtain a copy of the License at
+http://gephi.org/about/legal/license-notice/
+or /cddl-1.0.txt and /gpl-3.0.txt. See the License for the
+specific language governing permissions and limitations under the
+License.  When distributing the software, include this License Header
+Notice in each file and include the License files at
+/cddl-1.0.txt and /gpl-3.0.txt. If applicable, add the following below the
+License Header, with the fields enclosed by brackets [] replaced by
+your own identifying information:
+"Portions Copyrighted [year] [name of copyright owner]"
+
+If you wish your version of this file to be governed by only the CDDL
+or only the GPL Version 3, indicate your decision by adding
+"[Contributor] elects to include this software in this distribution
+under the [CDDL or GPL Version 3] license." If you do not indicate a
+single choice of license, a recipient has the option to distribute
+your version of this file under either the CDDL, the GPL Version 3 or
+to extend the choice of license to its licensees as provided above.
+However, if you add GPL Version 3 code and therefore, elected the GPL
+Version 3 license, then the option applies only if the new code is
+made subject to such option by the copyright holder.
+
+Contributor(s):
+
+Portions Copyrighted 2011 Gephi Consortium.
+*/
+package org.gephi.graph.dhns.core;
+
+import java.util.Arrays;
+import org.gephi.data.attributes.api.AttributeController;
+import org.gephi.graph.api.AdjacencySnapshot;
+import org.gephi.graph.api.AdjacencySnapshot.Adjacency;
+import org.gephi.graph.api.Edge;
+import org.gephi.graph.api.Node;
+import org.gephi.graph.dhns.DhnsGraphController;
+import org.gephi.graph.dhns.graph.HierarchicalDirectedGraphImpl;
+import org.gephi.project.api.ProjectController;
+import org.gephi.project.api.Workspace;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openide.util.Lookup;
+import static org.junit.Assert.*;
+
+public class DhnsTestAdjacencySnapshot {
+
+    private Dhns dhns;
+    private HierarchicalDirectedGraphImpl graph;
+    private Node[] nodes;
+
+    @Before
+    public void setUp() {
+        DhnsGraphController controller = new DhnsGraphController();
+        dhns = new Dhns(controller, null);
+        graph = new HierarchicalDirectedGraphImpl(dhns, dhns.getGraphStructure().getMainView());
+        GraphFactoryImpl factory = dhns.factory();
+
+        nodes = new Node[5];
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = factory.newNode();
+            graph.addNode(nodes[i]);
+        }
+        addEdge(0, 1, 1f);
+        addEdge(1, 2, 2f);
+        addEdge(2, 1, 3f);
+        addEdge(3, 3, 4f);
+        addEdge(0, 3, 5f);
+    }
+
+    private void addEdge(int source, int target, float weight) {
+        Edge edge = dhns.factory().newEdge(nodes[source], nodes[target], weight, true);
+        graph.addEdge(edge);
+    }
+
+    @After
+    public void tearDown() {
+        dhns = null;
+        graph = null;
+    }
+
+    private int[] neighbours(AdjacencySnapshot snapshot, Adjacency adjacency, Node node) {
+        int[] offsets = snapshot.getOffsets(adjacency);
+        int[] targets = snapshot.getTargets(adjacency);
+        int index = snapshot.getIndex(node);
+        int[] res = new int[offsets[index + 1] - offsets[index]];
+        for (int j = offsets[index]; j < offsets[index + 1]; j++) {
+            res[j - offsets[index]] = snapshot.getNode(targets[j]).getId();
+        }
+        Arrays.sort(res);
+        return res;
+    }
+
+    private int[] ids(int... indices) {
+        int[] res = new int[indices.length];
+        for (int i = 0; i < indices.length; i++) {
+            res[i] = nodes[indices[i]].getId();
+        }
+        Arrays.sort(res);
+        return res;
+    }
+
+    @Test
+    public void testOut() {
+        AdjacencySnapshot snapshot = dhns.getAdjacencySnapshot(dhns.getVisibleView(), false);
+        assertEquals(5, snapshot.getNodeCount());
+        assertEquals(5, snapshot.getEdgeCount(Adjacency.OUT));
+        assertArrayEquals(ids(1, 3), neighbours(snapshot, Adjacency.OUT, nodes[0]));
+        assertArrayEquals(ids(2), neighbours(snapshot, Adjacency.OUT, nodes[1]));
+        assertArrayEquals(ids(3), neighbours(snapshot, Adjacency.OUT, nodes[3]));
+        assertArrayEquals(ids(), neighbours(snapshot, Adjacency.OUT, nodes[4]));
+        assertNull(snapshot.getWeights(Adjacency.OUT));
+    }
+
+    @Test
+    public void testIn() {
+        AdjacencySnapshot snapshot = dhns.getAdjacencySnapshot(dhns.getVisibleView(), false);
+        assertEquals(5, snapshot.getEdgeCount(Adjacency.IN));
+        assertArrayEquals(ids(0, 2), neighbours(snapshot, Adjacency.IN, nodes[1]));
+        assertArrayEquals(ids(0, 3), neighbours(snapshot, Adjacency.IN, nodes[3]));
+        assertArrayEquals(ids(), neighbours(snapshot, Adjacency.IN, nodes[0]));
+    }
+
+    @Test
+    public void testUndirected() {
+        AdjacencySnapshot snapshot = dhns.getAdjacencySnapshot(dhns.getVisibleView(), true);
+        //Mutual edges 1-2 and 2-1 are merged, self-loop 3-3 is present once
+        assertEquals(7, snapshot.getEdgeCount(Adjacency.UNDIRECTED));
+        assertArrayEquals(ids(0, 2), neighbours(snapshot, Adjacency.UNDIRECTED, nodes[1]));
+        assertArrayEquals(ids(1), neighbours(snapshot, Adjacency.UNDIRECTED, nodes[2]));
+        assertArrayEquals(ids(0, 3), neighbours(snapshot, Adjacency.UNDIRECTED, nodes[3]));
+        assertEquals(7, snapshot.getWeights(Adjacency.UNDIRECTED).length);
+    }
+
+    @Test
+    public void testWeights() {
+        AdjacencySnapshot snapshot = dhns.getAdjacencySnapshot(dhns.getVisibleView(), true);
+        int index = snapshot.getIndex(nodes[3]);
+        int[] offsets = snapshot.getOffsets(Adjacency.IN);
+        float sum = 0f;
+        for (int j = offsets[index]; j < offsets[index + 1]; j++) {
+            sum += snapshot.getWeights(Adjacency.IN)[j];
+        }
+        float expected = graph.getEdge(nodes[0], nodes[3]).getWeight() + graph.getEdge(nodes[3], nodes[3]).getWeight();
+        assertEquals(expected, sum, 0f);
+    }
+
+    @Test
+    public void testWeightChange() {
+        //Edge weights are stored in attribute rows, which need a workspace
+        ProjectController pc = Lookup.getDefault().lookup(ProjectController.class);
+        pc.newProject();
+        try {
+            Workspace workspace = pc.getCurrentWorkspace();
+            Lookup.getDefault().lookup(AttributeController.class).getModel();
+            Dhns weightedDhns = new Dhns(new DhnsGraphController(), workspace);
+            HierarchicalDirectedGraphImpl weightedGraph = new HierarchicalDirectedGraphImpl(weightedDhns, weightedDhns.getGraphStructure().getMainView());
+            Node source = weightedDhns.factory().newNode();
+            Node target = weightedDhns.factory().newNode();
+            weightedGraph.addNode(source);
+            weightedGraph.addNode(target);
+            Edge edge = weightedDhns.factory().newEdge(source, target, 2f, true);
+            weightedGraph.addEdge(edge);
+
+            AdjacencySnapshot snapshot = weightedDhns.getAdjacencySnapshot(weightedDhns.getVisibleView(), true);
+            assertEquals(2f, snapshot.getWeights(Adjacency.OUT)[0], 0f);
+
+            //Weights changes don't make the snapshot outdated, but are read again
+            edge.setWeight(10f);
+            assertTrue(snapshot.isUpToDate());
+            AdjacencySnapshot updated = weightedDhns.getAdjacencySnapshot(weightedDhns.getVisibleView(), true);
+            assertEquals(10f, updated.getWeights(Adjacency.OUT)[0], 0f);
+        } finally {
+            pc.closeCurrentProject();
+        }
+    }
+
+    @Test
+    public void testVersion() {
+        AdjacencySnapshot snapshot = dhns.getAdjacencySnapshot(dhns.getVisibleView(), false);
+        assertTrue(snapshot.isUpToDate());
+        assertSame(snapshot, dhns.getAdjacencySnapshot(dhns.getVisibleView(), false));
+
+        //Weighted snapshots are not cached
+        AdjacencySnapshot weighted = dhns.getAdjacencySnapshot(dhns.getVisibleView(), true);
+        assertNotSame(snapshot, weighted);
+        assertNotSame(weighted, dhns.getAdjacencySnapshot(dhns.getVisibleView(), true));
+        assertSame(snapshot, dhns.getAdjacencySnapshot(dhns.getVisibleView(), false));
+
+        graph.removeEdge(graph.getEdge(nodes[0], nodes[1]));
+        assertFalse(snapshot.isUpToDate());
+        AdjacencySnapshot updated = dhns.getAdjacencySnapshot(dhns.getVisibleView(), false);
+        assertNotSame(snapshot, updated);
+        assertEquals(4, updated.getEdgeCount(Adjacency.OUT));
+    }
+
+    @Test
+    public void testView() {
+        GraphViewImpl view = (GraphViewImpl) dhns.newView();
+        HierarchicalDirectedGraphImpl viewGraph = new HierarchicalDirectedGraphImpl(dhns, view);
+        viewGraph.removeNode(nodes[3]);
+        AdjacencySnapshot snapshot = dhns.getAdjacencySnapshot(view, false);
+        assertEquals(4, snapshot.getNodeCount());
+        assertEquals(-1, snapshot.getIndex(nodes[3]));
+        assertEquals(3, snapshot.getEdgeCount(Adjacency.OUT));
+        assertArrayEquals(ids(1), neighbours(snapshot, Adjacency.OUT, nodes[0]));
+    }
+}
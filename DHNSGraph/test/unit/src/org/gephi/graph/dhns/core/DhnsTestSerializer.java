@@ -41,6 +41,11 @@ Portions Copyrighted 2011 Gephi Consortium.
  */
 package org.gephi.graph.dhns.core;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import javax.xml.stream.Location;
 import javax.xml.stream.XMLInputFactory;
 import javax.xml.stream.XMLReporter;
@@ -176,6 +181,33 @@ public class DhnsTestSerializer {
         }
     }
 
+    @Test
+    public void testDhnsBinarySerializer() throws IOException, XMLStreamException {
+        DHNSSerializer dHNSSerializer = new DHNSSerializer();
+        ByteArrayOutputStream byteStream = new ByteArrayOutputStream();
+        DataOutputStream outputStream = new DataOutputStream(byteStream);
+        dHNSSerializer.writeDhns(outputStream, dhns2);
+        outputStream.close();
+        ProjectController pc = Lookup.getDefault().lookup(ProjectController.class);
+        Workspace workspace3 = pc.newWorkspace(pc.getCurrentProject());
+        pc.openWorkspace(workspace3);
+        Lookup.getDefault().lookup(AttributeController.class).getModel();
+        Dhns d2 = new Dhns(new DhnsGraphController(), workspace3);
+        DataInputStream inputStream = new DataInputStream(new ByteArrayInputStream(byteStream.toByteArray()));
+        dHNSSerializer.readDhns(inputStream, d2);
+        assertEquals(-1, inputStream.read());
+
+        //Both graphs have the same XML serialization
+        StringWriter stringWriter = new StringWriter();
+        dHNSSerializer.writeDhns(createWriter(stringWriter), dhns2);
+        String s1 = stringWriter.toString();
+        stringWriter = new StringWriter();
+        dHNSSerializer.writeDhns(createWriter(stringWriter), d2);
+        String s2 = stringWriter.toString();
+        assertEquals(s1, s2);
+        assertEquals(dhns2.getGraphStructure().getMainView().getStructure().getTreeSize(), d2.getGraphStructure().getMainView().getStructure().getTreeSize());
+    }
+
     private XMLStreamWriter createWriter(StringWriter stringWriter) {
         XMLOutputFactory outputFactory = XMLOutputFactory.newInstance();
         outputFactory.setProperty("javax.xml.stream.isRepairingNamespaces", Boolean.FALSE);
@@ -41,11 +41,13 @@ Portions Copyrighted 2011 Gephi Consortium.
  */
 package org.gephi.graph.dhns.filter;
 
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.Map;
 import org.gephi.graph.api.Edge;
 import org.gephi.graph.api.Graph;
 import org.gephi.graph.api.GraphView;
+import org.gephi.graph.api.HierarchicalDirectedGraph;
 import org.gephi.graph.api.HierarchicalGraph;
 import org.gephi.graph.api.Node;
 import org.gephi.graph.dhns.DhnsGraphController;
@@ -226,6 +228,77 @@ public class DhnsTestFiltering {
         assertEquals(Boolean.FALSE, viewGraph.contains(edge21));
     }
 
+    @Test
+    public void testCopyViewWithBitSets() {
+        Node node2 = nodeMap.get("Node 2");
+        Edge edge65 = edgeMap.get("6-5");
+
+        //Copy then remove
+        GraphView removeView = dhnsGlobal.newView();
+        HierarchicalDirectedGraph removeGraph = dhnsGlobal.getHierarchicalDirectedGraph(removeView);
+        removeGraph.removeNode(node2);
+        removeGraph.removeEdge(edge65);
+
+        //Bulk copy
+        BitSet nodes = new BitSet();
+        for (Node n : graphGlobal.getNodes()) {
+            nodes.set(n.getId());
+        }
+        nodes.clear(node2.getId());
+        BitSet edges = new BitSet();
+        for (Edge e : graphGlobal.getEdges()) {
+            edges.set(e.getId());
+        }
+        edges.clear(edge65.getId());
+        GraphView bulkView = dhnsGlobal.copyView(graphGlobal.getView(), nodes, edges);
+        HierarchicalDirectedGraph bulkGraph = dhnsGlobal.getHierarchicalDirectedGraph(bulkView);
+
+        assertEquals(removeGraph.getNodeCount(), bulkGraph.getNodeCount());
+        assertEquals(removeGraph.getEdgeCount(), bulkGraph.getEdgeCount());
+        assertEquals(((GraphViewImpl) removeView).getMutualEdgesEnabled(), ((GraphViewImpl) bulkView).getMutualEdgesEnabled());
+        assertEquals(((GraphViewImpl) removeView).getMutualEdgesTotal(), ((GraphViewImpl) bulkView).getMutualEdgesTotal());
+        assertFalse(bulkGraph.contains(node2));
+        assertFalse(bulkGraph.contains(edgeMap.get("2-1")));
+        assertFalse(bulkGraph.contains(edge65));
+        for (Node n : removeGraph.getNodes()) {
+            assertTrue(bulkGraph.contains(n));
+            assertEquals(removeGraph.getInDegree(n), bulkGraph.getInDegree(n));
+            assertEquals(removeGraph.getOutDegree(n), bulkGraph.getOutDegree(n));
+            assertEquals(removeGraph.getMutualDegree(n), bulkGraph.getMutualDegree(n));
+        }
+        for (Edge e : removeGraph.getEdges()) {
+            assertTrue(bulkGraph.contains(e));
+        }
+    }
+
+    @Test
+    public void testCopyViewWithBitSetsAndGroups() {
+        Node node1 = nodeMap.get("Node 1");
+        Node node2 = nodeMap.get("Node 2");
+        Node group = graphGlobal.groupNodes(new Node[]{node1, node2});
+
+        //Descendants of the collapsed group follow it
+        BitSet nodes = new BitSet();
+        for (Node n : graphGlobal.getNodes()) {
+            nodes.set(n.getId());
+        }
+        GraphView keepView = dhnsGlobal.copyView(graphGlobal.getView(), nodes, null);
+        HierarchicalGraph keepGraph = dhnsGlobal.getHierarchicalGraph(keepView);
+        assertEquals(graphGlobal.getNodeCount(), keepGraph.getNodeCount());
+        assertTrue(keepGraph.contains(node1));
+        assertTrue(keepGraph.contains(edgeMap.get("2-1")));
+        assertEquals(graphGlobal.getMetaEdges().toArray().length, keepGraph.getMetaEdges().toArray().length);
+
+        nodes.clear(group.getId());
+        GraphView removeView = dhnsGlobal.copyView(graphGlobal.getView(), nodes, null);
+        HierarchicalGraph removeGraph = dhnsGlobal.getHierarchicalGraph(removeView);
+        assertEquals(graphGlobal.getNodeCount() - 1, removeGraph.getNodeCount());
+        assertFalse(removeGraph.contains(group));
+        assertFalse(removeGraph.contains(node1));
+        assertFalse(removeGraph.contains(node2));
+        assertEquals(0, removeGraph.getMetaEdges().toArray().length);
+    }
+
 
 //    private void showEdges(TreeStructure treeStructure) {
 //        ParamAVLIterator<AbstractEdge> edgeIterator = new ParamAVLIterator<AbstractEdge>();
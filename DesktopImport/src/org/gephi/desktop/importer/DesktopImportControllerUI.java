@@ -65,6 +65,7 @@ import org.gephi.io.importer.api.Database;
 import org.gephi.io.importer.api.ImportController;
 import org.gephi.io.importer.api.Report;
 import org.gephi.io.importer.spi.DatabaseImporter;
+import org.gephi.io.importer.spi.FileAwareImporter;
 import org.gephi.io.importer.spi.FileImporter;
 import org.gephi.io.importer.spi.ImporterUI;
 import org.gephi.io.importer.spi.ImporterWizardUI;
@@ -165,6 +166,9 @@ public class DesktopImportControllerUI implements ImportControllerUI {
 
             //Execute task
             fileObject = getArchivedFile(fileObject);
+            if (importer instanceof FileAwareImporter) {
+                ((FileAwareImporter) importer).setFile(FileUtil.toFile(fileObject));
+            }
             final String containerSource = fileObject.getNameExt();
             final InputStream stream = fileObject.getInputStream();
             String taskName = NbBundle.getMessage(DesktopImportControllerUI.class, "DesktopImportControllerUI.taskName", containerSource);
@@ -0,0 +1,703 @@
+/*
+Copyright 2008-2010 Gephi
+Website : http://www.gephi.org
+
+This file is part of Gephi.
+
+DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+
+Copyright 2011 Gephi Consortium. All rights reserved.
+
+The contents of this file are subject to the terms of either the GNU
+General Public License Version 3 only ("GPL") or the Common
+Development and Distribution License("CDDL") (collectively, the
+"License"). You may not use this file except in compliance with the
+License. You can obtain a copy of the License at
+http://gephi.org/about/legal/license-notice/
+or /cddl-1.0.txt and /gpl-3.0.txt. See the License for the
+specific language governing permissions and limitations under the
+License.  When distributing the software, include this License Header
+Notice in each file and include the License files at
+/cddl-1.0.txt and /gpl-3.0.txt. If applicable, add the following below the
+License Header, with the fields enclosed by brackets [] replaced by
+your own identifying information:
+"Portions Copyrighted [year] [name of copyright owner]"
+
+If you wish your version of this file to be governed by only the CDDL
+or only the GPL Version 3, indicate your decision by adding
+"[Contributor] elects to include this software in this distribution
+under the [CDDL or GPL Version 3] license." If you do not indicate a
+single choice of license, a recipient has the option to distribute
+your version of this file under either the CDDL, the GPL Version 3 or
+to extend the choice of license to its licensees as provided above.
+However, if you add GPL Version 3 code and therefore, elected the GPL
+Version 3 license, then the option applies only if the new code is
+made subject to such option by the copyright holder.
+
+Contributor(s):
+
+Portions Copyrighted 2011 Gephi Consortium.
+ */
+package org.gephi.io.exporter.plugin;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.Deflater;
+import org.gephi.data.attributes.api.AttributeColumn;
+import org.gephi.data.attributes.api.AttributeModel;
+import org.gephi.data.attributes.api.AttributeOrigin;
+import org.gephi.data.attributes.api.AttributeRow;
+import org.gephi.data.attributes.api.AttributeTable;
+import org.gephi.data.attributes.api.AttributeType;
+import org.gephi.data.attributes.type.DynamicType;
+import org.gephi.data.attributes.type.Interval;
+import org.gephi.data.attributes.type.TimeInterval;
+import org.gephi.data.attributes.type.TypeConvertor;
+import org.gephi.data.properties.PropertiesColumn;
+import org.gephi.dynamic.api.DynamicController;
+import org.gephi.dynamic.api.DynamicModel;
+import org.gephi.graph.api.DirectedGraph;
+import org.gephi.graph.api.Edge;
+import org.gephi.graph.api.EdgeData;
+import org.gephi.graph.api.GraphModel;
+import org.gephi.graph.api.HierarchicalGraph;
+import org.gephi.graph.api.Node;
+import org.gephi.graph.api.NodeData;
+import org.gephi.graph.api.UndirectedGraph;
+import org.gephi.io.exporter.api.FileType;
+import org.gephi.io.exporter.spi.ByteExporter;
+import org.gephi.io.exporter.spi.GraphExporter;
+import org.gephi.project.api.Workspace;
+import org.gephi.utils.longtask.spi.LongTask;
+import org.gephi.utils.progress.Progress;
+import org.gephi.utils.progress.ProgressTicket;
+import org.openide.util.Lookup;
+import org.openide.util.NbBundle;
+
+/**
+ * Exporter for the GBIN binary format, a columnar format meant to be loaded
+ * much faster than GEXF. Nodes and edges are numbered, and each property is
+ * written as a column block of all nodes or edges values.
+ * <p>
+ * The file starts with a header, followed by blocks:
+ * <pre>
+ * header       int magic, int version, int contents, byte edge default,
+ *              byte time format, double interval low, double interval high,
+ *              int node count, int edge count
+ * block        byte encoding (0 raw, 1 deflate), int length,
+ *              int stored length, bytes
+ * </pre>
+ * The first block describes the node and edge attribute columns. Then come
+ * the node columns (id, label, parent, x, y, z, size, r, g, b, time interval
+ * and attributes) and the edge columns (source, target, directed, id, label,
+ * weight, r, g, b, time interval and attributes), depending on the contents
+ * flags. Values are big-endian, strings are UTF-8 and columns are written as:
+ * <ul>
+ * <li>Strings: the lengths, <code>-1</code> for <code>null</code>, and the
+ * bytes of all strings.</li>
+ * <li>Primitive values: one presence byte per row and the values.</li>
+ * <li>Other values: strings of their <code>toString()</code> value.</li>
+ * <li>Time intervals and dynamic values: the intervals count of each row,
+ * <code>-1</code> for <code>null</code>, the intervals lows, highs and open
+ * flags, and the intervals values as a column of the static type.</li>
+ * </ul>
+ */
+public class ExporterGBIN implements GraphExporter, ByteExporter, LongTask {
+
+    //Format
+    static final int MAGIC = 0x4742494E;
+    static final int VERSION = 1;
+    static final int CONTENTS_POSITION = 1;
+    static final int CONTENTS_SIZE = 1 << 1;
+    static final int CONTENTS_COLOR = 1 << 2;
+    static final int CONTENTS_ATTRIBUTES = 1 << 3;
+    static final int CONTENTS_DYNAMIC = 1 << 4;
+    static final int CONTENTS_HIERARCHY = 1 << 5;
+    static final byte ENCODING_RAW = 0;
+    static final byte ENCODING_DEFLATE = 1;
+    static final byte COLUMN_DATA = 0;
+    static final byte COLUMN_WEIGHT = 1;
+    //Architecture
+    private boolean cancel = false;
+    private ProgressTicket progress;
+    private Workspace workspace;
+    private boolean exportVisible;
+    private DataOutputStream stream;
+    private GraphModel graphModel;
+    private AttributeModel attributeModel;
+    private TimeInterval visibleInterval;
+    private DynamicModel dynamicModel;
+    //Settings
+    private boolean exportColors = true;
+    private boolean exportPosition = true;
+    private boolean exportSize = true;
+    private boolean exportAttributes = true;
+    private boolean exportHierarchy = false;
+    private boolean exportDynamic = true;
+    private boolean compress = true;
+    //Buffers
+    private Deflater deflater;
+    private byte[] deflateBuffer = new byte[0];
+
+    public boolean execute() {
+        attributeModel = workspace.getLookup().lookup(AttributeModel.class);
+        graphModel = workspace.getLookup().lookup(GraphModel.class);
+        HierarchicalGraph graph = null;
+        if (exportVisible) {
+            graph = graphModel.getHierarchicalGraphVisible();
+        } else {
+            graph = graphModel.getHierarchicalGraph();
+        }
+        Progress.start(progress);
+        graph.readLock();
+
+        try {
+            if (exportDynamic) {
+                DynamicController dynamicController = Lookup.getDefault().lookup(DynamicController.class);
+                dynamicModel = dynamicController != null ? dynamicController.getModel(workspace) : null;
+                visibleInterval = dynamicModel == null ? null : exportVisible ? dynamicModel.getVisibleInterval() : new TimeInterval(Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY);
+            }
+            boolean dynamic = exportDynamic && visibleInterval != null;
+
+            //Rows
+            List<Node> nodes = new ArrayList<Node>();
+            int maxNodeId = 0;
+            for (Node node : exportHierarchy ? graph.getNodesTree() : graph.getNodes()) {
+                nodes.add(node);
+                maxNodeId = Math.max(maxNodeId, node.getId());
+            }
+            int[] nodeIndex = new int[maxNodeId + 1];
+            for (int i = 0; i < nodes.size(); i++) {
+                nodeIndex[nodes.get(i).getId()] = i;
+            }
+            List<Edge> edges = new ArrayList<Edge>();
+            for (Edge edge : exportHierarchy ? graph.getEdgesTree() : graph.getEdgesAndMetaEdges()) {
+                edges.add(edge);
+            }
+            AttributeColumn[] nodeColumns = exportAttributes ? getColumns(attributeModel.getNodeTable(), dynamic) : new AttributeColumn[0];
+            AttributeColumn[] edgeColumns = exportAttributes ? getColumns(attributeModel.getEdgeTable(), dynamic) : new AttributeColumn[0];
+            int blocks = 1 + 2 + (exportHierarchy ? 1 : 0) + (exportPosition ? 3 : 0) + (exportSize ? 1 : 0) + (exportColors ? 6 : 0)
+                    + 6 + (dynamic ? 2 : 0) + nodeColumns.length + edgeColumns.length;
+            Progress.switchToDeterminate(progress, blocks);
+
+            //Header
+            int contents = (exportPosition ? CONTENTS_POSITION : 0)
+                    | (exportSize ? CONTENTS_SIZE : 0)
+                    | (exportColors ? CONTENTS_COLOR : 0)
+                    | (exportAttributes ? CONTENTS_ATTRIBUTES : 0)
+                    | (dynamic ? CONTENTS_DYNAMIC : 0)
+                    | (exportHierarchy ? CONTENTS_HIERARCHY : 0);
+            stream.writeInt(MAGIC);
+            stream.writeInt(VERSION);
+            stream.writeInt(contents);
+            stream.writeByte(graph instanceof DirectedGraph ? 0 : graph instanceof UndirectedGraph ? 1 : 2);
+            stream.writeByte(dynamic ? dynamicModel.getTimeFormat().ordinal() : -1);
+            stream.writeDouble(dynamic ? visibleInterval.getLow() : Double.NEGATIVE_INFINITY);
+            stream.writeDouble(dynamic ? visibleInterval.getHigh() : Double.POSITIVE_INFINITY);
+            stream.writeInt(nodes.size());
+            stream.writeInt(edges.size());
+
+            //Columns definitions
+            ColumnWriter columnWriter = new ColumnWriter();
+            writeColumnDefinitions(columnWriter, nodeColumns);
+            writeColumnDefinitions(columnWriter, edgeColumns);
+            writeBlock(columnWriter);
+
+            writeNodes(graph, nodes, nodeIndex, nodeColumns);
+            writeEdges(edges, nodeIndex, edgeColumns);
+            stream.flush();
+        } catch (Exception e) {
+            graph.readUnlockAll();
+            if (e instanceof RuntimeException) {
+                throw (RuntimeException) e;
+            }
+            throw new RuntimeException(e);
+        } finally {
+            if (deflater != null) {
+                deflater.end();
+                deflater = null;
+            }
+        }
+
+        graph.readUnlock();
+
+        Progress.finish(progress);
+        return !cancel;
+    }
+
+    private AttributeColumn[] getColumns(AttributeTable table, boolean dynamic) {
+        List<AttributeColumn> cols = new ArrayList<AttributeColumn>();
+        for (AttributeColumn col : table.getColumns()) {
+            if (!col.getOrigin().equals(AttributeOrigin.PROPERTY)) {
+                if (dynamic || !col.getType().isDynamicType()) {
+                    cols.add(col);
+                }
+            } else if (dynamic && col.getType().isDynamicType() && col.getType() != AttributeType.TIME_INTERVAL
+                    && col.getIndex() == PropertiesColumn.EDGE_WEIGHT.getIndex() && table == attributeModel.getEdgeTable()) {
+                cols.add(col);
+            }
+        }
+        return cols.toArray(new AttributeColumn[0]);
+    }
+
+    private void writeColumnDefinitions(ColumnWriter writer, AttributeColumn[] columns) throws IOException {
+        writer.writeInt(columns.length);
+        for (AttributeColumn col : columns) {
+            writer.writeString(col.getId());
+            writer.writeString(col.getTitle());
+            writer.writeString(col.getType().name());
+            writer.writeByte(col.getOrigin().equals(AttributeOrigin.PROPERTY) ? COLUMN_WEIGHT : COLUMN_DATA);
+            writer.writeString(col.getDefaultValue() != null ? col.getDefaultValue().toString() : null);
+        }
+    }
+
+    private void writeNodes(HierarchicalGraph graph, List<Node> nodes, int[] nodeIndex, AttributeColumn[] columns) throws IOException {
+        int count = nodes.size();
+        NodeData[] data = new NodeData[count];
+        for (int i = 0; i < count; i++) {
+            data[i] = nodes.get(i).getNodeData();
+        }
+
+        //Id and label
+        StringColumnWriter strings = new StringColumnWriter();
+        for (int i = 0; i < count && !cancel; i++) {
+            strings.add(data[i].getId());
+        }
+        writeBlock(strings.finish());
+        strings = new StringColumnWriter();
+        for (int i = 0; i < count && !cancel; i++) {
+            strings.add(data[i].getLabel());
+        }
+        writeBlock(strings.finish());
+
+        //Parent
+        if (exportHierarchy) {
+            ColumnWriter writer = new ColumnWriter();
+            for (int i = 0; i < count && !cancel; i++) {
+                Node parent = graph.getParent(nodes.get(i));
+                writer.writeInt(parent != null ? nodeIndex[parent.getId()] : -1);
+            }
+            writeBlock(writer);
+        }
+
+        //Position, size and color
+        if (exportPosition) {
+            ColumnWriter x = new ColumnWriter();
+            ColumnWriter y = new ColumnWriter();
+            ColumnWriter z = new ColumnWriter();
+            for (int i = 0; i < count && !cancel; i++) {
+                x.writeFloat(data[i].x());
+                y.writeFloat(data[i].y());
+                z.writeFloat(data[i].z());
+            }
+            writeBlock(x);
+            writeBlock(y);
+            writeBlock(z);
+        }
+        if (exportSize) {
+            ColumnWriter size = new ColumnWriter();
+            for (int i = 0; i < count && !cancel; i++) {
+                size.writeFloat(data[i].getSize());
+            }
+            writeBlock(size);
+        }
+        if (exportColors) {
+            ColumnWriter r = new ColumnWriter();
+            ColumnWriter g = new ColumnWriter();
+            ColumnWriter b = new ColumnWriter();
+            for (int i = 0; i < count && !cancel; i++) {
+                r.writeFloat(data[i].r());
+                g.writeFloat(data[i].g());
+                b.writeFloat(data[i].b());
+            }
+            writeBlock(r);
+            writeBlock(g);
+            writeBlock(b);
+        }
+
+        //Time interval and attributes
+        AttributeRow[] rows = new AttributeRow[count];
+        for (int i = 0; i < count; i++) {
+            rows[i] = (AttributeRow) data[i].getAttributes();
+        }
+        writeTimeIntervals(rows, attributeModel.getNodeTable());
+        writeAttributes(rows, columns);
+    }
+
+    private void writeEdges(List<Edge> edges, int[] nodeIndex, AttributeColumn[] columns) throws IOException {
+        int count = edges.size();
+        EdgeData[] data = new EdgeData[count];
+        for (int i = 0; i < count; i++) {
+            data[i] = edges.get(i).getEdgeData();
+        }
+
+        //Source, target and type
+        ColumnWriter sources = new ColumnWriter();
+        ColumnWriter targets = new ColumnWriter();
+        ColumnWriter directed = new ColumnWriter();
+        for (int i = 0; i < count && !cancel; i++) {
+            Edge edge = edges.get(i);
+            sources.writeInt(nodeIndex[edge.getSource().getId()]);
+            targets.writeInt(nodeIndex[edge.getTarget().getId()]);
+            directed.writeByte(edge.isDirected() ? 1 : 0);
+        }
+        writeBlock(sources);
+        writeBlock(targets);
+        writeBlock(directed);
+
+        //Id, only if not the default one, and label
+        StringColumnWriter strings = new StringColumnWriter();
+        for (int i = 0; i < count && !cancel; i++) {
+            String id = data[i].getId();
+            strings.add(id != null && !id.equals(Integer.toString(edges.get(i).getId())) ? id : null);
+        }
+        writeBlock(strings.finish());
+        strings = new StringColumnWriter();
+        for (int i = 0; i < count && !cancel; i++) {
+            strings.add(data[i].getLabel());
+        }
+        writeBlock(strings.finish());
+
+        //Weight and color
+        ColumnWriter weights = new ColumnWriter();
+        for (int i = 0; i < count && !cancel; i++) {
+            weights.writeFloat(edges.get(i).getWeight());
+        }
+        writeBlock(weights);
+        if (exportColors) {
+            //Red is -1 when the edge has no custom color
+            ColumnWriter r = new ColumnWriter();
+            ColumnWriter g = new ColumnWriter();
+            ColumnWriter b = new ColumnWriter();
+            for (int i = 0; i < count && !cancel; i++) {
+                r.writeFloat(data[i].r());
+                g.writeFloat(data[i].g());
+                b.writeFloat(data[i].b());
+            }
+            writeBlock(r);
+            writeBlock(g);
+            writeBlock(b);
+        }
+
+        //Time interval and attributes
+        AttributeRow[] rows = new AttributeRow[count];
+        for (int i = 0; i < count; i++) {
+            rows[i] = (AttributeRow) data[i].getAttributes();
+        }
+        writeTimeIntervals(rows, attributeModel.getEdgeTable());
+        writeAttributes(rows, columns);
+    }
+
+    private void writeTimeIntervals(AttributeRow[] rows, AttributeTable table) throws IOException {
+        if (exportDynamic && visibleInterval != null) {
+            AttributeColumn col = table.getColumn(DynamicModel.TIMEINTERVAL_COLUMN);
+            DynamicType<?>[] values = new DynamicType<?>[rows.length];
+            if (col != null) {
+                for (int i = 0; i < rows.length; i++) {
+                    values[i] = rows[i] != null ? (DynamicType<?>) rows[i].getValue(col.getIndex()) : null;
+                }
+            }
+            writeDynamicValues(AttributeType.TIME_INTERVAL, values);
+        }
+    }
+
+    private void writeAttributes(AttributeRow[] rows, AttributeColumn[] columns) throws IOException {
+        for (AttributeColumn col : columns) {
+            if (cancel) {
+                return;
+            }
+            int index = col.getIndex();
+            if (col.getType().isDynamicType()) {
+                DynamicType<?>[] values = new DynamicType<?>[rows.length];
+                for (int i = 0; i < rows.length; i++) {
+                    values[i] = rows[i] != null ? (DynamicType<?>) rows[i].getValue(index) : null;
+                }
+                writeDynamicValues(col.getType(), values);
+            } else {
+                Object[] values = new Object[rows.length];
+                for (int i = 0; i < rows.length; i++) {
+                    values[i] = rows[i] != null ? rows[i].getValue(index) : null;
+                }
+                writeBlock(writeValues(col.getType(), values, values.length));
+            }
+        }
+    }
+
+    private void writeDynamicValues(AttributeType type, DynamicType<?>[] values) throws IOException {
+        ColumnWriter counts = new ColumnWriter();
+        ColumnWriter lows = new ColumnWriter();
+        ColumnWriter highs = new ColumnWriter();
+        ColumnWriter flags = new ColumnWriter();
+        List<Object> intervalValues = new ArrayList<Object>();
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] == null) {
+                counts.writeInt(-1);
+                continue;
+            }
+            List<? extends Interval<?>> intervals = values[i].getIntervals(visibleInterval.getLow(), visibleInterval.getHigh());
+            counts.writeInt(intervals.size());
+            for (Interval<?> interval : intervals) {
+                lows.writeDouble(interval.getLow());
+                highs.writeDouble(interval.getHigh());
+                flags.writeByte((interval.isLowExcluded() ? 1 : 0) | (interval.isHighExcluded() ? 2 : 0));
+                if (type != AttributeType.TIME_INTERVAL) {
+                    intervalValues.add(interval.getValue());
+                }
+            }
+        }
+        counts.write(lows);
+        counts.write(highs);
+        counts.write(flags);
+        if (type != AttributeType.TIME_INTERVAL) {
+            counts.write(writeValues(TypeConvertor.getStaticType(type), intervalValues.toArray(), intervalValues.size()));
+        }
+        writeBlock(counts);
+    }
+
+    private ColumnWriter writeValues(AttributeType type, Object[] values, int count) throws IOException {
+        ColumnWriter writer = new ColumnWriter();
+        switch (type) {
+            case BYTE:
+            case SHORT:
+            case INT:
+            case LONG:
+            case FLOAT:
+            case DOUBLE:
+            case BOOLEAN:
+            case CHAR:
+                for (int i = 0; i < count; i++) {
+                    writer.writeByte(values[i] != null ? 1 : 0);
+                }
+                for (int i = 0; i < count; i++) {
+                    writePrimitive(writer, type, values[i]);
+                }
+                return writer;
+            default:
+                StringColumnWriter strings = new StringColumnWriter();
+                for (int i = 0; i < count; i++) {
+                    strings.add(values[i] != null ? values[i].toString() : null);
+                }
+                return strings.finish();
+        }
+    }
+
+    private void writePrimitive(ColumnWriter writer, AttributeType type, Object value) throws IOException {
+        switch (type) {
+            case BYTE:
+                writer.writeByte(value != null ? ((Byte) value) : 0);
+                break;
+            case SHORT:
+                writer.writeShort(value != null ? ((Short) value) : 0);
+                break;
+            case INT:
+                writer.writeInt(value != null ? ((Integer) value) : 0);
+                break;
+            case LONG:
+                writer.writeLong(value != null ? ((Long) value) : 0l);
+                break;
+            case FLOAT:
+                writer.writeFloat(value != null ? ((Float) value) : 0f);
+                break;
+            case DOUBLE:
+                writer.writeDouble(value != null ? ((Double) value) : 0.0);
+                break;
+            case BOOLEAN:
+                writer.writeByte(value != null && ((Boolean) value) ? 1 : 0);
+                break;
+            case CHAR:
+                writer.writeChar(value != null ? ((Character) value) : 0);
+                break;
+        }
+    }
+
+    private void writeBlock(ColumnWriter column) throws IOException {
+        byte[] bytes = column.getBytes();
+        int length = column.size();
+        if (compress && length > 0) {
+            if (deflater == null) {
+                deflater = new Deflater(Deflater.BEST_SPEED);
+            }
+            deflater.reset();
+            deflater.setInput(bytes, 0, length);
+            deflater.finish();
+            if (deflateBuffer.length < length) {
+                deflateBuffer = new byte[length];
+            }
+            int stored = 0;
+            while (!deflater.finished() && stored < deflateBuffer.length) {
+                stored += deflater.deflate(deflateBuffer, stored, deflateBuffer.length - stored);
+            }
+            //Only keep the compressed block if it is smaller
+            if (deflater.finished() && stored < length) {
+                stream.writeByte(ENCODING_DEFLATE);
+                stream.writeInt(length);
+                stream.writeInt(stored);
+                stream.write(deflateBuffer, 0, stored);
+                Progress.progress(progress);
+                return;
+            }
+        }
+        stream.writeByte(ENCODING_RAW);
+        stream.writeInt(length);
+        stream.writeInt(length);
+        stream.write(bytes, 0, length);
+        Progress.progress(progress);
+    }
+
+    public boolean cancel() {
+        cancel = true;
+        return true;
+    }
+
+    public void setProgressTicket(ProgressTicket progressTicket) {
+        this.progress = progressTicket;
+    }
+
+    public String getName() {
+        return NbBundle.getMessage(getClass(), "ExporterGBIN_name");
+    }
+
+    public FileType[] getFileTypes() {
+        FileType ft = new FileType(".gbin", NbBundle.getMessage(getClass(), "fileType_GBIN_Name"));
+        return new FileType[]{ft};
+    }
+
+    public void setExportAttributes(boolean exportAttributes) {
+        this.exportAttributes = exportAttributes;
+    }
+
+    public void setExportColors(boolean exportColors) {
+        this.exportColors = exportColors;
+    }
+
+    public void setExportPosition(boolean exportPosition) {
+        this.exportPosition = exportPosition;
+    }
+
+    public void setExportSize(boolean exportSize) {
+        this.exportSize = exportSize;
+    }
+
+    public void setExportDynamic(boolean exportDynamic) {
+        this.exportDynamic = exportDynamic;
+    }
+
+    public void setExportHierarchy(boolean exportHierarchy) {
+        this.exportHierarchy = exportHierarchy;
+    }
+
+    public void setCompress(boolean compress) {
+        this.compress = compress;
+    }
+
+    public boolean isExportAttributes() {
+        return exportAttributes;
+    }
+
+    public boolean isExportColors() {
+        return exportColors;
+    }
+
+    public boolean isExportPosition() {
+        return exportPosition;
+    }
+
+    public boolean isExportSize() {
+        return exportSize;
+    }
+
+    public boolean isExportVisible() {
+        return exportVisible;
+    }
+
+    public boolean isExportDynamic() {
+        return exportDynamic;
+    }
+
+    public boolean isExportHierarchy() {
+        return exportHierarchy;
+    }
+
+    public boolean isCompress() {
+        return compress;
+    }
+
+    public void setExportVisible(boolean exportVisible) {
+        this.exportVisible = exportVisible;
+    }
+
+    public void setOutputStream(OutputStream stream) {
+        this.stream = new DataOutputStream(stream);
+    }
+
+    public Workspace getWorkspace() {
+        return workspace;
+    }
+
+    public void setWorkspace(Workspace workspace) {
+        this.workspace = workspace;
+    }
+
+    /**
+     * Column being written, in memory.
+     */
+    private static class ColumnWriter extends DataOutputStream {
+
+        public ColumnWriter() {
+            super(new Buffer());
+        }
+
+        public void writeString(String str) throws IOException {
+            if (str == null) {
+                writeInt(-1);
+            } else {
+                byte[] bytes = str.getBytes("UTF-8");
+                writeInt(bytes.length);
+                write(bytes);
+            }
+        }
+
+        public void write(ColumnWriter column) throws IOException {
+            write(column.getBytes(), 0, column.size());
+        }
+
+        public byte[] getBytes() {
+            return ((Buffer) out).getBytes();
+        }
+    }
+
+    private static class Buffer extends ByteArrayOutputStream {
+
+        public byte[] getBytes() {
+            return buf;
+        }
+    }
+
+    /**
+     * Strings column, written as the lengths followed by the bytes.
+     */
+    private static class StringColumnWriter {
+
+        private final ColumnWriter lengths = new ColumnWriter();
+        private final ColumnWriter bytes = new ColumnWriter();
+
+        public void add(String str) throws IOException {
+            if (str == null) {
+                lengths.writeInt(-1);
+            } else {
+                byte[] b = str.getBytes("UTF-8");
+                lengths.writeInt(b.length);
+                bytes.write(b);
+            }
+        }
+
+        public ColumnWriter finish() throws IOException {
+            lengths.write(bytes);
+            return lengths;
+        }
+    }
+}
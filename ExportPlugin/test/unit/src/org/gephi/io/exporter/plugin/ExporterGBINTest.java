@@ -0,0 +1,367 @@
+/*
+Copyright 2008-2010 Gephi
+Website : http://www.gephi.org
+
+This file is part of Gephi.
+
+DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+
+Copyright 2011 Gephi Consortium. All rights reserved.
+
+The contents of this file are subject to the terms of either the GNU
+General Public License Version 3 only ("GPL") or the Common
+Development and Distribution License("CDDL") (collectively, the
+"License"). You may not use this file except in compliance with the
+License. You can obtain a copy of the License at
+http://gephi.org/about/legal/license-notice/
+or /cddl-1.0.txt and /gpl-3.0.txt. See the License for the
+specific language governing permissions and limitations under the
+License.  When distributing the software, include this License Header
+Notice in each file and include the License files at
+/cddl-1.0.txt and /gpl-3.0.txt. If applicable, add the following below the
+License Header, with the fields enclosed by brackets [] replaced by
+your own identifying information:
+"Portions Copyrighted [year] [name of copyright owner]"
+
+If you wish your version of this file to be governed by only the CDDL
+or only the GPL Version 3, indicate your decision by adding
+"[Contributor] elects to include this software in this distribution
+under the [CDDL or GPL Version 3] license." If you do not indicate a
+single choice of license, a recipient has the option to distribute
+your version of this file under either the CDDL, the GPL Version 3 or
+to extend the choice of license to its licensees as provided above.
+However, if you add GPL Version 3 code and therefore, elected the GPL
+Version 3 license, then the option applies only if the new code is
+made subject to such option by the copyright holder.
+
+Contributor(s):
+
+Portions Copyrighted 2011 Gephi Consortium.
+*/
+package org.gephi.io.exporter.plugin;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.gephi.data.attributes.api.AttributeColumn;
+import org.gephi.data.attributes.api.AttributeController;
+import org.gephi.data.attributes.api.AttributeModel;
+import org.gephi.data.attributes.api.AttributeOrigin;
+import org.gephi.data.attributes.api.AttributeType;
+import org.gephi.data.attributes.type.DynamicInteger;
+import org.gephi.data.attributes.type.DynamicString;
+import org.gephi.data.attributes.type.IntegerList;
+import org.gephi.data.attributes.type.Interval;
+import org.gephi.data.attributes.type.TimeInterval;
+import org.gephi.dynamic.api.DynamicModel;
+import org.gephi.graph.api.Edge;
+import org.gephi.graph.api.GraphController;
+import org.gephi.graph.api.GraphModel;
+import org.gephi.graph.api.HierarchicalDirectedGraph;
+import org.gephi.graph.api.Node;
+import org.gephi.io.importer.api.Container;
+import org.gephi.io.importer.api.ContainerFactory;
+import org.gephi.io.importer.api.ContainerUnloader;
+import org.gephi.io.importer.api.EdgeDraftGetter;
+import org.gephi.io.importer.api.ImportController;
+import org.gephi.io.importer.api.NodeDraftGetter;
+import org.gephi.io.importer.api.Report;
+import org.gephi.io.importer.plugin.file.ImporterGBIN;
+import org.gephi.io.processor.spi.StreamingProcessor;
+import org.gephi.project.api.ProjectController;
+import org.gephi.project.api.Workspace;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import org.openide.util.Lookup;
+
+public class ExporterGBINTest {
+
+    private ExporterGBIN exporter;
+
+    @Before
+    public void setUp() {
+        ProjectController projectController = Lookup.getDefault().lookup(ProjectController.class);
+        projectController.newProject();
+        Workspace workspace = projectController.getCurrentWorkspace();
+        AttributeController attributeController = Lookup.getDefault().lookup(AttributeController.class);
+        AttributeModel attributeModel = attributeController.getModel();
+        GraphController graphController = Lookup.getDefault().lookup(GraphController.class);
+        GraphModel graphModel = graphController.getModel();
+        HierarchicalDirectedGraph graph = graphModel.getHierarchicalDirectedGraph();
+
+        Node n1 = graphModel.factory().newNode("n1");
+        n1.getNodeData().setLabel("Node 1");
+        n1.getNodeData().setX(1f);
+        n1.getNodeData().setY(-2f);
+        n1.getNodeData().setSize(5f);
+        n1.getNodeData().setColor(1f, 0f, 0f);
+        graph.addNode(n1);
+        Node n2 = graphModel.factory().newNode("n2");
+        graph.addNode(n2);
+        Node n3 = graphModel.factory().newNode("n3");
+        graph.addNode(n3);
+        Node n4 = graphModel.factory().newNode("n4");
+        graph.addNode(n4, n3);
+
+        Edge e1 = graphModel.factory().newEdge(n1, n2, 1f, true);
+        e1.getEdgeData().setLabel("Edge 1");
+        e1.getEdgeData().setColor(0f, 0f, 1f);
+        graph.addEdge(e1);
+        Edge e2 = graphModel.factory().newEdge(n2, n4, 3f, true);
+        graph.addEdge(e2);
+        Edge e3 = graphModel.factory().newEdge(n2, n1, 1f, true);
+        graph.addEdge(e3);
+
+        AttributeColumn nodeCol1 = attributeModel.getNodeTable().addColumn("col1", "Column 1", AttributeType.STRING, AttributeOrigin.DATA, "default value col1");
+        AttributeColumn nodeCol2 = attributeModel.getNodeTable().addColumn("col2 listint", AttributeType.LIST_INTEGER);
+        AttributeColumn nodeCol3 = attributeModel.getNodeTable().addColumn("col3 int", AttributeType.INT);
+        AttributeColumn nodeCol4 = attributeModel.getNodeTable().addColumn("col4 double", AttributeType.DOUBLE);
+        AttributeColumn nodeTimeCol = attributeModel.getNodeTable().addColumn(DynamicModel.TIMEINTERVAL_COLUMN, AttributeType.TIME_INTERVAL, AttributeOrigin.PROPERTY);
+
+        AttributeColumn edgeCol1 = attributeModel.getEdgeTable().addColumn("col1", AttributeType.DYNAMIC_INT);
+        AttributeColumn edgeCol2 = attributeModel.getEdgeTable().addColumn("col2", AttributeType.DYNAMIC_STRING);
+
+        n1.getNodeData().getAttributes().setValue(nodeCol1.getIndex(), "test");
+        n1.getNodeData().getAttributes().setValue(nodeCol2.getIndex(), new IntegerList(new int[]{1, 2, 3, 4}));
+        n1.getNodeData().getAttributes().setValue(nodeCol3.getIndex(), 42);
+        n2.getNodeData().getAttributes().setValue(nodeCol4.getIndex(), 0.5);
+
+        n1.getNodeData().getAttributes().setValue(nodeTimeCol.getIndex(), new TimeInterval(1, 5));
+        List<Interval> intervalList = new ArrayList<Interval>();
+        intervalList.add(new Interval(1.0, 2.0));
+        intervalList.add(new Interval(3.0, 4.0));
+        n2.getNodeData().getAttributes().setValue(nodeTimeCol.getIndex(), new TimeInterval(intervalList));
+
+        DynamicInteger dynamicInteger = new DynamicInteger(new Interval(4., 10., 100));
+        e1.getEdgeData().getAttributes().setValue(edgeCol1.getIndex(), dynamicInteger);
+
+        List<Interval<String>> stringIntervalList = new ArrayList<Interval<String>>();
+        stringIntervalList.add(new Interval<String>(Double.NEGATIVE_INFINITY, 1., "a"));
+        stringIntervalList.add(new Interval<String>(2., 3., "b"));
+        stringIntervalList.add(new Interval<String>(4., Double.POSITIVE_INFINITY, "c"));
+        DynamicString dynamicString = new DynamicString(stringIntervalList);
+        e3.getEdgeData().getAttributes().setValue(edgeCol2.getIndex(), dynamicString);
+
+        exporter = new ExporterGBIN();
+        exporter.setWorkspace(workspace);
+    }
+
+    @After
+    public void tearDown() {
+        ProjectController projectController = Lookup.getDefault().lookup(ProjectController.class);
+        projectController.closeCurrentProject();
+        exporter = null;
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        exporter.setExportHierarchy(true);
+        Container container = roundTrip();
+        Map<String, NodeDraftGetter> nodes = getNodes(container);
+        assertEquals(4, nodes.size());
+
+        NodeDraftGetter n1 = nodes.get("n1");
+        assertEquals("Node 1", n1.getLabel());
+        assertEquals(1f, n1.getX(), 0f);
+        assertEquals(-2f, n1.getY(), 0f);
+        assertEquals(5f, n1.getSize(), 0f);
+        assertEquals(255, n1.getColor().getRed());
+        assertEquals(0, n1.getColor().getBlue());
+        AttributeModel attributeModel = container.getUnloader().getAttributeModel();
+        AttributeColumn nodeCol1 = attributeModel.getNodeTable().getColumn("col1");
+        assertEquals("Column 1", nodeCol1.getTitle());
+        assertEquals("default value col1", nodeCol1.getDefaultValue());
+        assertEquals("test", n1.getAttributeRow().getValue("col1"));
+        assertEquals(new IntegerList(new int[]{1, 2, 3, 4}), n1.getAttributeRow().getValue("col2 listint"));
+        assertEquals(42, n1.getAttributeRow().getValue("col3 int"));
+        assertNull(n1.getAttributeRow().getValue("col4 double"));
+        assertEquals(0.5, nodes.get("n2").getAttributeRow().getValue("col4 double"));
+
+        //Time intervals
+        assertEquals(1.0, n1.getTimeInterval().getLow(), 0.0);
+        assertEquals(5.0, n1.getTimeInterval().getHigh(), 0.0);
+        assertEquals(2, nodes.get("n2").getTimeInterval().getIntervals().size());
+        assertNull(nodes.get("n3").getTimeInterval());
+
+        //Hierarchy
+        assertNull(n1.getParents());
+        assertEquals("n3", nodes.get("n4").getParents()[0].getId());
+
+        //Edges
+        Map<String, EdgeDraftGetter> edges = getEdges(container);
+        assertEquals(3, edges.size());
+        EdgeDraftGetter e1 = edges.get("n1-n2");
+        assertEquals("Edge 1", e1.getLabel());
+        assertEquals(255, e1.getColor().getBlue());
+        assertNull(edges.get("n2-n1").getColor());
+        assertEquals(3f, edges.get("n2-n4").getWeight(), 0f);
+        DynamicInteger dynamicInteger = (DynamicInteger) e1.getAttributeRow().getValue("col1");
+        assertEquals(100, (int) dynamicInteger.getValue(5., 6.));
+        DynamicString dynamicString = (DynamicString) edges.get("n2-n1").getAttributeRow().getValue("col2");
+        assertEquals(3, dynamicString.getIntervals().size());
+        assertEquals("b", dynamicString.getValue(2.5, 2.5));
+        assertEquals("c", dynamicString.getValue(100., 100.));
+    }
+
+    @Test
+    public void testUncompressed() throws Exception {
+        exporter.setCompress(false);
+        exporter.setExportAttributes(false);
+        Container container = roundTrip();
+        //Without hierarchy, n4 is in n3 and n2-n4 becomes a meta edge
+        Map<String, NodeDraftGetter> nodes = getNodes(container);
+        assertEquals(3, nodes.size());
+        assertFalse(nodes.containsKey("n4"));
+        assertNull(container.getUnloader().getAttributeModel().getNodeTable().getColumn("col1"));
+        assertEquals(5f, nodes.get("n1").getSize(), 0f);
+        assertTrue(getEdges(container).containsKey("n2-n3"));
+    }
+
+    @Test(timeout = 10000)
+    public void testTruncatedBlock() throws Exception {
+        File file = export();
+        //Halve the stored size of the first block, the columns definitions
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        randomAccessFile.seek(38 + 5);
+        int stored = randomAccessFile.readInt();
+        randomAccessFile.seek(38 + 5);
+        randomAccessFile.writeInt(stored / 2);
+        randomAccessFile.close();
+
+        Container container = Lookup.getDefault().lookup(ContainerFactory.class).newContainer();
+        container.setReport(new Report());
+        ImporterGBIN importer = new ImporterGBIN();
+        importer.setFile(file);
+        try {
+            importer.execute(container.getLoader());
+            fail();
+        } catch (RuntimeException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+    }
+
+    @Test
+    public void testCancel() throws Exception {
+        File file = export();
+        Container container = Lookup.getDefault().lookup(ContainerFactory.class).newContainer();
+        container.setReport(new Report());
+        ImporterGBIN importer = new ImporterGBIN();
+        importer.setFile(file);
+        importer.cancel();
+        assertFalse(importer.execute(container.getLoader()));
+    }
+
+    @Test
+    public void testStreaming() throws Exception {
+        exporter.setExportHierarchy(true);
+        File file = export();
+        ImporterGBIN importer = new ImporterGBIN();
+        importer.setFile(file);
+        RecordingProcessor processor = new RecordingProcessor();
+        ImportController importController = Lookup.getDefault().lookup(ImportController.class);
+        assertNotNull(importController.importFileStreaming(null, importer, processor, null));
+        assertEquals(4, processor.nodes.size());
+        assertEquals("Node 1", processor.nodes.get("n1").getLabel());
+        assertEquals("test", processor.nodes.get("n1").getAttributeRow().getValue("col1"));
+        assertEquals(3, processor.edges.size());
+        assertTrue(processor.edges.contains("n2-n4"));
+        assertTrue(processor.ended);
+    }
+
+    private File export() throws Exception {
+        File file = File.createTempFile("graph", ".gbin");
+        file.deleteOnExit();
+        OutputStream stream = new BufferedOutputStream(new FileOutputStream(file));
+        exporter.setOutputStream(stream);
+        assertTrue(exporter.execute());
+        stream.close();
+        return file;
+    }
+
+    private Container roundTrip() throws Exception {
+        File file = export();
+
+        Container container = Lookup.getDefault().lookup(ContainerFactory.class).newContainer();
+        container.setReport(new Report());
+        ImporterGBIN importer = new ImporterGBIN();
+        importer.setFile(file);
+        assertTrue(importer.execute(container.getLoader()));
+        assertTrue(container.verify());
+        container.closeLoader();
+        return container;
+    }
+
+    private Map<String, NodeDraftGetter> getNodes(Container container) {
+        Map<String, NodeDraftGetter> nodes = new HashMap<String, NodeDraftGetter>();
+        for (NodeDraftGetter node : container.getUnloader().getNodes()) {
+            nodes.put(node.getId(), node);
+        }
+        return nodes;
+    }
+
+    private Map<String, EdgeDraftGetter> getEdges(Container container) {
+        Map<String, EdgeDraftGetter> edges = new HashMap<String, EdgeDraftGetter>();
+        for (EdgeDraftGetter edge : container.getUnloader().getEdges()) {
+            edges.put(edge.getSource().getId() + "-" + edge.getTarget().getId(), edge);
+        }
+        return edges;
+    }
+
+    private static class RecordingProcessor implements StreamingProcessor {
+
+        private final Map<String, NodeDraftGetter> nodes = new HashMap<String, NodeDraftGetter>();
+        private final List<String> edges = new ArrayList<String>();
+        private boolean ended;
+
+        public void setContainer(ContainerUnloader container) {
+        }
+
+        public void setWorkspace(Workspace workspace) {
+        }
+
+        public void setReport(Report report) {
+        }
+
+        public void begin() {
+        }
+
+        public void addNode(NodeDraftGetter node) {
+            //Parents are added before their children
+            if (node.getParents() != null) {
+                assertTrue(nodes.containsKey(node.getParents()[0].getId()));
+            }
+            nodes.put(node.getId(), node);
+        }
+
+        public void addEdge(EdgeDraftGetter edge) {
+            assertTrue(nodes.containsKey(edge.getSource().getId()));
+            assertTrue(nodes.containsKey(edge.getTarget().getId()));
+            edges.add(edge.getSource().getId() + "-" + edge.getTarget().getId());
+        }
+
+        public void mergeEdge(EdgeDraftGetter edge, boolean sumWeights) {
+            fail();
+        }
+
+        public void updateNode(NodeDraftGetter node) {
+            fail();
+        }
+
+        public void end() {
+            ended = true;
+        }
+
+        public void cancel() {
+            fail();
+        }
+    }
+}
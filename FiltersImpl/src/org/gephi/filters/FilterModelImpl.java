@@ -46,6 +46,8 @@ import java.util.LinkedList;
 import java.util.List;
 import javax.swing.event.ChangeEvent;
 import javax.swing.event.ChangeListener;
+import org.gephi.data.attributes.api.AttributeController;
+import org.gephi.data.attributes.api.AttributeModel;
 import org.gephi.filters.api.FilterLibrary;
 import org.gephi.filters.api.FilterModel;
 import org.gephi.filters.api.Query;
@@ -67,6 +69,7 @@ public class FilterModelImpl implements FilterModel {
     private LinkedList<Query> queries;
     private FilterThread filterThread;
     private GraphModel graphModel;
+    private AttributeModel attributeModel;
     private Query currentQuery;
     private boolean filtering;
     private boolean selecting;
@@ -83,6 +86,10 @@ public class FilterModelImpl implements FilterModel {
         autoRefresh = true;
 
         graphModel = Lookup.getDefault().lookup(GraphController.class).getModel(workspace);
+        AttributeController attributeController = Lookup.getDefault().lookup(AttributeController.class);
+        if (attributeController != null) {
+            attributeModel = attributeController.getModel(workspace);
+        }
         autoRefreshor = new FilterAutoRefreshor(this, graphModel);
     }
 
@@ -282,6 +289,10 @@ public class FilterModelImpl implements FilterModel {
         return graphModel;
     }
 
+    public AttributeModel getAttributeModel() {
+        return attributeModel;
+    }
+
     public void destroy() {
         if (filterThread != null) {
             filterThread.setRunning(false);
@@ -42,7 +42,12 @@ Portions Copyrighted 2011 Gephi Consortium.
 package org.gephi.filters;
 
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import org.gephi.filters.spi.ComplexFilter;
 import org.gephi.filters.spi.EdgeFilter;
 import org.gephi.filters.spi.Filter;
@@ -52,8 +57,10 @@ import org.gephi.graph.api.Edge;
 import org.gephi.graph.api.Graph;
 import org.gephi.graph.api.GraphModel;
 import org.gephi.graph.api.GraphView;
+import org.gephi.graph.api.HierarchicalDirectedGraph;
 import org.gephi.graph.api.HierarchicalGraph;
 import org.gephi.graph.api.Node;
+import org.gephi.graph.api.UndirectedGraph;
 
 /**
  *
@@ -62,17 +69,57 @@ import org.gephi.graph.api.Node;
 public class FilterProcessor {
 
     public Graph process(AbstractQueryImpl query, GraphModel graphModel) {
+        return process(query, graphModel, null);
+    }
+
+    /**
+     * Processes <code>query</code> and reuses the results of the subqueries
+     * found in <code>cache</code>, from the top of the tree. Results of the
+     * subqueries that have been processed are stored in the cache.
+     * @param query         the query to process
+     * @param graphModel    the graph model to filter
+     * @param cache         the results cache, or <code>null</code>
+     * @return              the result graph
+     */
+    public Graph process(AbstractQueryImpl query, GraphModel graphModel, FilterResultCache cache) {
         List<GraphView> views = new ArrayList<GraphView>();
         query = simplifyQuery(query);
         AbstractQueryImpl[] tree = getTree(query, true);
+
+        //Reuse cached results, subqueries of a reused query are skipped
+        Map<AbstractQueryImpl, FilterResultCache.Key> keys = new IdentityHashMap<AbstractQueryImpl, FilterResultCache.Key>();
+        Set<AbstractQueryImpl> done = Collections.newSetFromMap(new IdentityHashMap<AbstractQueryImpl, Boolean>());
+        if (cache != null) {
+            cache.validate();
+            for (AbstractQueryImpl q : tree) {
+                keys.put(q, cache.getKey(q));
+                if (q.getParent() != null && done.contains((AbstractQueryImpl) q.getParent())) {
+                    done.add(q);
+                    continue;
+                }
+                Graph cached = cache.materialize(keys.get(q), graphModel);
+                if (cached != null) {
+                    views.add(cached.getView());
+                    q.setResult(cached);
+                    done.add(q);
+                }
+            }
+        }
+
         for (int i = 0; i < tree.length; i++) {
             AbstractQueryImpl q = tree[tree.length - i - 1];
+            if (done.contains(q)) {
+                continue;
+            }
             Graph[] input = new Graph[0];
             if (q.getChildrenCount() > 0) {
                 input = new Graph[q.getChildrenCount()];
                 for (int j = 0; j < input.length; j++) {
                     input[j] = q.getChildAt(j).getResult();
                 }
+            } else if (q instanceof FilterQueryImpl && (q.getFilter() instanceof NodeFilter || q.getFilter() instanceof EdgeFilter)) {
+                //Leaves evaluated on the main view, the result is built in a new view
+                input = new Graph[]{graphModel.getGraph()};
             } else {
                 //Leaves
                 GraphView newView = graphModel.newView();
@@ -97,16 +144,20 @@ public class FilterProcessor {
             } else {
                 FilterQueryImpl filterQuery = (FilterQueryImpl) q;
                 Filter filter = filterQuery.getFilter();
-                if (filter instanceof NodeFilter && filter instanceof EdgeFilter) {
-                    processNodeFilter((NodeFilter) filter, input[0]);
-                    processEdgeFilter((EdgeFilter) filter, input[0]);
-                    q.setResult(input[0]);
-                } else if (filter instanceof NodeFilter) {
-                    processNodeFilter((NodeFilter) filter, input[0]);
-                    q.setResult(input[0]);
-                } else if (filter instanceof EdgeFilter) {
-                    processEdgeFilter((EdgeFilter) filter, input[0]);
-                    q.setResult(input[0]);
+                if (filter instanceof NodeFilter || filter instanceof EdgeFilter) {
+                    Graph result = input[0];
+                    if (filter instanceof NodeFilter) {
+                        result = processNodeFilter((NodeFilter) filter, result);
+                        addView(views, result);
+                    }
+                    if (filter instanceof EdgeFilter) {
+                        result = processEdgeFilter((EdgeFilter) filter, result);
+                    }
+                    if (result.getView().isMainView()) {
+                        //The filter didn't do anything on a leaf
+                        result = graphModel.getGraph(graphModel.newView());
+                    }
+                    q.setResult(result);
                 } else if (filter instanceof ComplexFilter) {
                     ComplexFilter cf = (ComplexFilter) filter;
                     q.setResult(cf.filter(input[0]));
@@ -114,6 +165,14 @@ public class FilterProcessor {
                     q.setResult(input[0]);  //Put input as result, the filter don't do anything
                 }
             }
+            addView(views, q.getResult());
+            if (cache != null) {
+                //Before the parent query modifies it
+                cache.put(keys.get(q), q.getResult());
+            }
+        }
+        if (cache != null) {
+            cache.retain(keys.values());
         }
         Graph finalResult = tree[0].result;
 
@@ -127,37 +186,70 @@ public class FilterProcessor {
         return finalResult;
     }
 
-    private void processNodeFilter(NodeFilter nodeFilter, Graph graph) {
+    /**
+     * Tracks the view of <code>graph</code>, so it is destroyed if it is an
+     * intermediate result.
+     */
+    private void addView(List<GraphView> views, Graph graph) {
+        GraphView view = graph.getView();
+        if (!view.isMainView() && !views.contains(view)) {
+            views.add(view);
+        }
+    }
+
+    /**
+     * Evaluates <code>nodeFilter</code> on the enabled nodes of
+     * <code>graph</code> and builds the result in a new view, in a single
+     * pass. Returns <code>graph</code> if the filter has nothing to do.
+     */
+    private Graph processNodeFilter(NodeFilter nodeFilter, Graph graph) {
         if (nodeFilter.init(graph)) {
-            List<Node> nodesToRemove = new ArrayList<Node>();
+            BitSet nodes = new BitSet();
             for (Node n : graph.getNodes()) {
-                if (!nodeFilter.evaluate(graph, n)) {
-                    nodesToRemove.add(n);
+                if (nodeFilter.evaluate(graph, n)) {
+                    nodes.set(n.getId());
                 }
             }
-
-            for (Node n : nodesToRemove) {
-                graph.removeNode(n);
-            }
             nodeFilter.finish();
+
+            GraphModel graphModel = graph.getGraphModel();
+            return graphModel.getGraph(graphModel.copyView(graph.getView(), nodes, null));
         }
+        return graph;
     }
 
-    private void processEdgeFilter(EdgeFilter edgeFilter, Graph graph) {
+    /**
+     * Evaluates <code>edgeFilter</code> on the enabled edges of
+     * <code>graph</code> and builds the result in a new view, in a single
+     * pass. Meta edges are computed again in the new view, they are then
+     * evaluated and removed one by one. Returns <code>graph</code> if the
+     * filter has nothing to do.
+     */
+    private Graph processEdgeFilter(EdgeFilter edgeFilter, Graph graph) {
         HierarchicalGraph hgraph = (HierarchicalGraph) graph;
         if (edgeFilter.init(hgraph)) {
-            List<Edge> edgesToRemove = new ArrayList<Edge>();
+            //Undirected graphs only return one edge of mutual edges
+            GraphModel graphModel = graph.getGraphModel();
+            HierarchicalDirectedGraph directedGraph = graphModel.getHierarchicalDirectedGraph(graph.getView());
+            BitSet edges = new BitSet();
+            for (Edge e : directedGraph.getEdges()) {
+                edges.set(e.getId());
+            }
+            boolean undirected = graph instanceof UndirectedGraph;
             for (Edge e : hgraph.getEdges()) {
                 if (!edgeFilter.evaluate(hgraph, e)) {
-                    edgesToRemove.add(e);
+                    edges.clear(e.getId());
+                    if (undirected || !e.isDirected()) {
+                        Edge mutual = directedGraph.getEdge(e.getTarget(), e.getSource());
+                        if (mutual != null) {
+                            edges.clear(mutual.getId());
+                        }
+                    }
                 }
             }
+            hgraph = (HierarchicalGraph) graphModel.getGraph(graphModel.copyView(graph.getView(), null, edges));
 
-            for (Edge e : edgesToRemove) {
-                hgraph.removeEdge(e);
-            }
-            edgesToRemove.clear();
-
+            List<Edge> edgesToRemove = new ArrayList<Edge>();
             for (Edge e : hgraph.getMetaEdges()) {
                 if (!edgeFilter.evaluate(hgraph, e)) {
                     edgesToRemove.add(e);
@@ -169,6 +261,7 @@ public class FilterProcessor {
 
             edgeFilter.finish();
         }
+        return hgraph;
     }
 
     private AbstractQueryImpl simplifyQuery(AbstractQueryImpl query) {
@@ -0,0 +1,340 @@
+/*
+Copyright 2008-2010 Gephi
+Website : http://www.gephi.org
+
+This file is part of Gephi.
+
+DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+
+Copyright 2011 Gephi Consortium. All rights reserved.
+
+The contents of this file are subject to the terms of either the GNU
+General Public License Version 3 only ("GPL") or the Common
+Development and Distribution License("CDDL") (collectively, the
+"License"). You may not use this file except in compliance with the
+License. You can obtain a copy of the License at
+http://gephi.org/about/legal/license-notice/
+or /cddl-1.0.txt and /gpl-3.0.txt. See the License for the
+specific language governing permissions and limitations under the
+License.  When distributing the software, include this License Header
+Notice in each file and include the License files at
+/cddl-1.0.txt and /gpl-3.0.txt. If applicable, add the following below the
+License Header, with the fields enclosed by brackets [] replaced by
+your own identifying information:
+"Portions Copyrighted [year] [name of copyright owner]"
+
+If you wish your version of this file to be governed by only the CDDL
+or only the GPL Version 3, indicate your decision by adding
+"[Contributor] elects to include this software in this distribution
+under the [CDDL or GPL Version 3] license." If you do not indicate a
+single choice of license, a recipient has the option to distribute
+your version of this file under either the CDDL, the GPL Version 3 or
+to extend the choice of license to its licensees as provided above.
+However, if you add GPL Version 3 code and therefore, elected the GPL
+Version 3 license, then the option applies only if the new code is
+made subject to such option by the copyright holder.
+
+Contributor(s):
+
+Portions Copyrighted 2011 Gephi Consortium.
+*/
+package org.gephi.filters;
+
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.gephi.data.attributes.api.AttributeEvent;
+import org.gephi.data.attributes.api.AttributeListener;
+import org.gephi.data.attributes.api.AttributeModel;
+import org.gephi.filters.api.Range;
+import org.gephi.filters.spi.Filter;
+import org.gephi.filters.spi.FilterProperty;
+import org.gephi.graph.api.Edge;
+import org.gephi.graph.api.Graph;
+import org.gephi.graph.api.GraphEvent;
+import org.gephi.graph.api.GraphListener;
+import org.gephi.graph.api.GraphModel;
+import org.gephi.graph.api.GraphView;
+import org.gephi.graph.api.HierarchicalDirectedGraph;
+import org.gephi.graph.api.HierarchicalGraph;
+import org.gephi.graph.api.Node;
+
+/**
+ * Results of the subqueries of a query, kept between two executions of the
+ * <code>FilterProcessor</code>.
+ * <p>
+ * Results are keyed by the filter of each query node, the values of its
+ * properties and the keys of its children. When a single filter parameter
+ * changes, only the keys of its query and ancestors change, and the results
+ * of the untouched branches are rebuilt from the cache instead of being
+ * filtered again. Results are stored as node and edge id bitsets, as views
+ * are destroyed once the query has been processed, and are rebuilt in a
+ * single pass with <code>GraphModel.copyView()</code>.
+ * <p>
+ * Keys only describe the queries, not the data they are applied to. The
+ * cache listens to the main view of the graph and to the attributes once
+ * registered with <code>listen()</code>, and drops all results at the next
+ * <code>validate()</code> when any of them has changed.
+ */
+public class FilterResultCache implements GraphListener, AttributeListener {
+
+    private final Map<Key, Result> results = new HashMap<Key, Result>();
+    private final AtomicInteger dataVersion = new AtomicInteger();
+    private int version;
+    private GraphModel graphModel;
+    private AttributeModel attributeModel;
+    private int hits;
+    private int misses;
+
+    /**
+     * Listens to changes of the graph and attributes the cached results
+     * are computed from.
+     * @param graphModel        the graph model to listen to
+     * @param attributeModel    the attribute model to listen to, or
+     *                          <code>null</code>
+     */
+    public void listen(GraphModel graphModel, AttributeModel attributeModel) {
+        unlisten();
+        this.graphModel = graphModel;
+        this.attributeModel = attributeModel;
+        graphModel.addGraphListener(this);
+        if (attributeModel != null) {
+            attributeModel.addAttributeListener(this);
+        }
+    }
+
+    public void unlisten() {
+        if (graphModel != null) {
+            graphModel.removeGraphListener(this);
+            graphModel = null;
+        }
+        if (attributeModel != null) {
+            attributeModel.removeAttributeListener(this);
+            attributeModel = null;
+        }
+    }
+
+    public void graphChanged(GraphEvent event) {
+        //Views created and destroyed by filtering don't change the data
+        if (event.getSource().isMainView() && !event.is(GraphEvent.EventType.VISIBLE_VIEW,
+                GraphEvent.EventType.NEW_VIEW,
+                GraphEvent.EventType.DESTROY_VIEW)) {
+            dataVersion.incrementAndGet();
+        }
+    }
+
+    public void attributesChanged(AttributeEvent event) {
+        dataVersion.incrementAndGet();
+    }
+
+    /**
+     * Clears the cache if the graph or the attributes changed since the
+     * results have been stored. Must be called before processing a query.
+     */
+    public void validate() {
+        int v = dataVersion.get();
+        if (v != version) {
+            results.clear();
+            version = v;
+        }
+    }
+
+    /**
+     * Returns the cache key of <code>query</code>, built from its whole
+     * subtree.
+     * @param query the query to get the key from
+     * @return      the key of <code>query</code>
+     */
+    public Key getKey(AbstractQueryImpl query) {
+        Filter filter = query.getFilter();
+        FilterProperty[] properties = filter.getProperties();
+        Object[] values = new Object[properties == null ? 0 : properties.length];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = copyValue(properties[i].getValue());
+        }
+        Key[] children = new Key[query.getChildrenCount()];
+        for (int i = 0; i < children.length; i++) {
+            children[i] = getKey(query.getChildAt(i));
+        }
+        return new Key(filter, values, children);
+    }
+
+    /**
+     * Returns a new graph on a new view with the cached result of
+     * <code>key</code>, or <code>null</code> if it is not in the cache or can't
+     * be rebuilt from the current graph.
+     * @param key           the key of the query
+     * @param graphModel    the graph model to create the view in
+     * @return              the rebuilt result or <code>null</code>
+     */
+    public Graph materialize(Key key, GraphModel graphModel) {
+        Result result = results.get(key);
+        if (result == null) {
+            misses++;
+            return null;
+        }
+        GraphView view = graphModel.copyView(graphModel.getGraph().getView(), result.nodes, result.edges);
+        HierarchicalGraph graph = (HierarchicalGraph) graphModel.getGraph(view);
+        HierarchicalDirectedGraph directedGraph = graphModel.getHierarchicalDirectedGraph(view);
+
+        //Meta edges are computed again in the new view, with new ids
+        List<Edge> metaEdgesToRemove = new ArrayList<Edge>();
+        int metaEdgeCount = 0;
+        for (Edge e : graph.getMetaEdges()) {
+            if (result.metaEdges.contains(getMetaEdgeKey(e))) {
+                metaEdgeCount++;
+            } else {
+                metaEdgesToRemove.add(e);
+            }
+        }
+        for (Edge e : metaEdgesToRemove) {
+            graph.removeMetaEdge(e);
+        }
+
+        //Elements missing from the main view, e.g. the result was flattened
+        if (directedGraph.getNodeCount() != result.nodes.cardinality()
+                || directedGraph.getEdgeCount() != result.edges.cardinality()
+                || metaEdgeCount != result.metaEdges.size()) {
+            graphModel.destroyView(view);
+            results.remove(key);
+            misses++;
+            return null;
+        }
+        hits++;
+        return graph;
+    }
+
+    /**
+     * Stores the current content of <code>graph</code> as the result of
+     * <code>key</code>. Must be called before the graph is modified by the
+     * parent query.
+     * @param key   the key of the query
+     * @param graph the result of the query
+     */
+    public void put(Key key, Graph graph) {
+        HierarchicalGraph hgraph = (HierarchicalGraph) graph;
+        //Undirected graphs only return one edge of mutual edges
+        HierarchicalDirectedGraph directedGraph = graph.getGraphModel().getHierarchicalDirectedGraph(graph.getView());
+        Result result = new Result();
+        for (Node n : directedGraph.getNodes()) {
+            result.nodes.set(n.getId());
+        }
+        for (Edge e : directedGraph.getEdges()) {
+            result.edges.set(e.getId());
+        }
+        for (Edge e : hgraph.getMetaEdges()) {
+            result.metaEdges.add(getMetaEdgeKey(e));
+        }
+        results.put(key, result);
+    }
+
+    /**
+     * Removes all results but the ones of <code>keys</code>, so the cache
+     * only keeps the subqueries of the last processed query.
+     * @param keys  the keys to keep
+     */
+    public void retain(Collection<Key> keys) {
+        Set<Key> retained = new HashSet<Key>(keys);
+        for (Iterator<Key> itr = results.keySet().iterator(); itr.hasNext();) {
+            if (!retained.contains(itr.next())) {
+                itr.remove();
+            }
+        }
+    }
+
+    public void clear() {
+        results.clear();
+    }
+
+    public int size() {
+        return results.size();
+    }
+
+    public int getHits() {
+        return hits;
+    }
+
+    public int getMisses() {
+        return misses;
+    }
+
+    /**
+     * Copies ranges, collections and arrays, which filters may modify in
+     * place, so keys are not changed after being stored.
+     */
+    private static Object copyValue(Object value) {
+        if (value instanceof Range) {
+            //Only the bounds are used to filter, min and max are refreshed by init()
+            Range range = (Range) value;
+            return Arrays.<Object>asList(range.getLowerBound(), range.getUpperBound());
+        } else if (value instanceof Collection) {
+            return new ArrayList<Object>((Collection<?>) value);
+        } else if (value != null && value.getClass().isArray()) {
+            int length = Array.getLength(value);
+            List<Object> list = new ArrayList<Object>(length);
+            for (int i = 0; i < length; i++) {
+                list.add(Array.get(value, i));
+            }
+            return list;
+        }
+        return value;
+    }
+
+    private static Long getMetaEdgeKey(Edge metaEdge) {
+        return ((long) metaEdge.getSource().getId() << 32) | (metaEdge.getTarget().getId() & 0xFFFFFFFFL);
+    }
+
+    public static class Key {
+
+        private final Filter filter;
+        private final Object[] values;
+        private final Key[] children;
+        private final int hash;
+
+        private Key(Filter filter, Object[] values, Key[] children) {
+            this.filter = filter;
+            this.values = values;
+            this.children = children;
+            int h = System.identityHashCode(filter);
+            h = 31 * h + Arrays.hashCode(values);
+            h = 31 * h + Arrays.hashCode(children);
+            this.hash = h;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return hash == other.hash
+                    && filter == other.filter
+                    && Arrays.equals(values, other.values)
+                    && Arrays.equals(children, other.children);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private static class Result {
+
+        private final BitSet nodes = new BitSet();
+        private final BitSet edges = new BitSet();
+        private final Set<Long> metaEdges = new HashSet<Long>();
+    }
+}
@@ -70,6 +70,7 @@ public class FilterThread extends Thread {
     private boolean running = true;
     private final Object lock = new Object();
     private final boolean filtering;
+    private final FilterResultCache cache = new FilterResultCache();
 
     public FilterThread(FilterModelImpl model) {
         super("Filter Thread");
@@ -78,6 +79,7 @@ public class FilterThread extends Thread {
         this.filtering = model.isFiltering();
         rootQuery = new AtomicReference<AbstractQueryImpl>();
         modifiersMap = new ConcurrentHashMap<String, PropertyModifier>();
+        cache.listen(model.getGraphModel(), model.getAttributeModel());
     }
 
     @Override
@@ -106,6 +108,9 @@ public class FilterThread extends Thread {
             }
             if (modifiedQuery != null) {
                 model.updateParameters(modifiedQuery);
+            } else {
+                //Refreshed because the graph or the query changed, results can't be reused
+                cache.clear();
             }
 
             //Progress
@@ -146,7 +151,7 @@ public class FilterThread extends Thread {
     private void filter(AbstractQueryImpl query) {
         FilterProcessor processor = new FilterProcessor();
         GraphModel graphModel = Lookup.getDefault().lookup(GraphController.class).getModel();
-        Graph result = processor.process((AbstractQueryImpl) query, graphModel);
+        Graph result = processor.process((AbstractQueryImpl) query, graphModel, cache);
 //        System.out.println("#Nodes: " + result.getNodeCount());
 //        System.out.println("#Edges: " + result.getEdgeCount());
         if (running) {
@@ -165,7 +170,7 @@ public class FilterThread extends Thread {
     private void select(AbstractQueryImpl query) {
         FilterProcessor processor = new FilterProcessor();
         GraphModel graphModel = Lookup.getDefault().lookup(GraphController.class).getModel();
-        Graph result = processor.process((AbstractQueryImpl) query, graphModel);
+        Graph result = processor.process((AbstractQueryImpl) query, graphModel, cache);
 //        System.out.println("#Nodes: " + result.getNodeCount());
 //        System.out.println("#Edges: " + result.getEdgeCount());
         if (running) {
@@ -195,6 +200,9 @@ public class FilterThread extends Thread {
 
     public void setRunning(boolean running) {
         this.running = running;
+        if (!running) {
+            cache.unlisten();
+        }
         synchronized (this.lock) {
             lock.notify();
         }
@@ -42,12 +42,21 @@ Portions Copyrighted 2011 Gephi Consortium.
 package org.gephi.filters.impl;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import org.gephi.data.attributes.api.AttributeColumn;
+import org.gephi.data.attributes.api.AttributeController;
+import org.gephi.data.attributes.api.AttributeModel;
+import org.gephi.data.attributes.api.AttributeRow;
+import org.gephi.data.attributes.api.AttributeType;
 import org.gephi.filters.AbstractQueryImpl;
 import org.gephi.filters.FilterProcessor;
 import org.gephi.filters.FilterQueryImpl;
+import org.gephi.filters.FilterResultCache;
 import org.gephi.filters.OperatorQueryImpl;
 import org.gephi.filters.api.Query;
+import org.gephi.filters.api.Range;
 import org.gephi.filters.spi.EdgeFilter;
 import org.gephi.filters.spi.Filter;
 import org.gephi.filters.spi.FilterProperty;
@@ -64,6 +73,7 @@ import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.openide.util.Lookup;
+import static org.junit.Assert.*;
 
 /**
  *
@@ -90,21 +100,23 @@ public class FilterProcessorTest {
         rootGraph = graph;
 
         //Add 8 nodes
+        Node[] nodes = new Node[8];
         for (int i = 0; i < 8; i++) {
             Node node = factory.newNode();
             graph.addNode(node);
+            nodes[i] = node;
         }
 
         //Add edges
-        graph.addEdge(factory.newEdge("0-1", graph.getNode(0), graph.getNode(1), 1f, false));
-        graph.addEdge(factory.newEdge("1-3",graph.getNode(1), graph.getNode(3), 1f, false));
-        graph.addEdge(factory.newEdge("3-2",graph.getNode(3), graph.getNode(2), 1f, false));
-        graph.addEdge(factory.newEdge("2-0",graph.getNode(2), graph.getNode(0), 1f, false));
-        graph.addEdge(factory.newEdge("4-5",graph.getNode(4), graph.getNode(5), 2f, false));
-        graph.addEdge(factory.newEdge("5-7",graph.getNode(5), graph.getNode(7), 2f, false));
-        graph.addEdge(factory.newEdge("7-6",graph.getNode(7), graph.getNode(6), 2f, false));
-        graph.addEdge(factory.newEdge("6-4",graph.getNode(6), graph.getNode(4), 2f, false));
-        graph.addEdge(factory.newEdge("3-4",graph.getNode(3), graph.getNode(4), 5f, false));
+        graph.addEdge(factory.newEdge("0-1", nodes[0], nodes[1], 1f, false));
+        graph.addEdge(factory.newEdge("1-3",nodes[1], nodes[3], 1f, false));
+        graph.addEdge(factory.newEdge("3-2",nodes[3], nodes[2], 1f, false));
+        graph.addEdge(factory.newEdge("2-0",nodes[2], nodes[0], 1f, false));
+        graph.addEdge(factory.newEdge("4-5",nodes[4], nodes[5], 2f, false));
+        graph.addEdge(factory.newEdge("5-7",nodes[5], nodes[7], 2f, false));
+        graph.addEdge(factory.newEdge("7-6",nodes[7], nodes[6], 2f, false));
+        graph.addEdge(factory.newEdge("6-4",nodes[6], nodes[4], 2f, false));
+        graph.addEdge(factory.newEdge("3-4",nodes[3], nodes[4], 5f, false));
 
         //Query
         NodeDegreeFilter nodeDegreeFilter = new NodeDegreeFilter(3);
@@ -151,6 +163,112 @@ public class FilterProcessorTest {
 //        printGraph(rootGraph);
     }
 
+    @Test
+    public void testProcessChain() {
+        FilterProcessor filterProcessor = new FilterProcessor();
+        Graph result = filterProcessor.process((AbstractQueryImpl) chainQuery, graphModel);
+        assertEquals(4, result.getNodeCount());
+        assertEquals(4, result.getEdgeCount());
+        for (Node n : result.getNodes()) {
+            assertEquals(2, result.getDegree(n));
+        }
+        assertEquals(8, rootGraph.getNodeCount());
+        assertEquals(9, rootGraph.getEdgeCount());
+    }
+
+    @Test
+    public void testProcessWithCache() {
+        NodeIdRangeFilter rangeFilter = new NodeIdRangeFilter(new Range(0, 5));
+        NodeIdRangeFilter otherFilter = new NodeIdRangeFilter(new Range(3, 7));
+        OperatorQueryImpl union = new OperatorQueryImpl(new UnionOperator());
+        FilterQueryImpl q1 = new FilterQueryImpl(rangeFilter);
+        q1.addSubQuery(new FilterQueryImpl(new EdgeWeightFilter(0)));
+        union.addSubQuery(q1);
+        FilterQueryImpl q2 = new FilterQueryImpl(otherFilter);
+        q2.addSubQuery(new FilterQueryImpl(new EdgeWeightFilter(1)));
+        union.addSubQuery(q2);
+
+        FilterProcessor filterProcessor = new FilterProcessor();
+        FilterResultCache cache = new FilterResultCache();
+        Graph result = filterProcessor.process(union, graphModel, cache);
+        assertEquals(getNodeIds(filterProcessor.process(union, graphModel)), getNodeIds(result));
+        assertEquals(2, rangeFilter.initCount);
+        assertEquals(2, otherFilter.initCount);
+
+        //Only the modified branch and its ancestors are processed again
+        rangeFilter.setRange(new Range(0, 1));
+        result = filterProcessor.process(union, graphModel, cache);
+        assertEquals(3, rangeFilter.initCount);
+        assertEquals(2, otherFilter.initCount);
+        assertEquals(getNodeIds(filterProcessor.process(union, graphModel)), getNodeIds(result));
+        assertEquals(4, rangeFilter.initCount);
+        assertEquals(3, otherFilter.initCount);
+
+        //Nothing changed, the whole result is reused
+        result = filterProcessor.process(union, graphModel, cache);
+        assertEquals(4, rangeFilter.initCount);
+        assertEquals(3, otherFilter.initCount);
+        assertEquals(getNodeIds(filterProcessor.process(union, graphModel)), getNodeIds(result));
+        assertEquals(getEdgeIds(filterProcessor.process(union, graphModel)), getEdgeIds(result));
+        assertEquals(5, cache.size());
+    }
+
+    @Test
+    public void testCacheInvalidatedByAttributeChange() throws InterruptedException {
+        AttributeModel attributeModel = Lookup.getDefault().lookup(AttributeController.class).getModel();
+        AttributeColumn scoreColumn = attributeModel.getNodeTable().addColumn("score", AttributeType.INT);
+        Node[] nodes = rootGraph.getNodes().toArray();
+        for (int i = 0; i < nodes.length; i++) {
+            ((AttributeRow) nodes[i].getNodeData().getAttributes()).setValue(scoreColumn, i);
+        }
+        NodeIdRangeFilter rangeFilter = new NodeIdRangeFilter(new Range(100, 101));
+        OperatorQueryImpl union = new OperatorQueryImpl(new UnionOperator());
+        FilterQueryImpl q1 = new FilterQueryImpl(new NodeScoreFilter(scoreColumn, 6));
+        q1.addSubQuery(new FilterQueryImpl(new EdgeWeightFilter(0)));
+        union.addSubQuery(q1);
+        FilterQueryImpl q2 = new FilterQueryImpl(rangeFilter);
+        q2.addSubQuery(new FilterQueryImpl(new EdgeWeightFilter(0)));
+        union.addSubQuery(q2);
+
+        FilterProcessor filterProcessor = new FilterProcessor();
+        FilterResultCache cache = new FilterResultCache();
+        cache.listen(graphModel, attributeModel);
+        Graph result = filterProcessor.process(union, graphModel, cache);
+        assertFalse(getNodeIds(result).contains(nodes[3].getId()));
+
+        //The score branch is unchanged but its result is stale
+        ((AttributeRow) nodes[3].getNodeData().getAttributes()).setValue(scoreColumn, 10);
+        rangeFilter.setRange(new Range(100, 102));
+
+        //Attribute events are delivered asynchronously
+        Set<Integer> expected = getNodeIds(filterProcessor.process(union, graphModel));
+        assertTrue(expected.contains(nodes[3].getId()));
+        long timeout = System.currentTimeMillis() + 5000;
+        result = filterProcessor.process(union, graphModel, cache);
+        while (!expected.equals(getNodeIds(result)) && System.currentTimeMillis() < timeout) {
+            Thread.sleep(50);
+            result = filterProcessor.process(union, graphModel, cache);
+        }
+        assertEquals(expected, getNodeIds(result));
+        cache.unlisten();
+    }
+
+    private Set<Integer> getNodeIds(Graph graph) {
+        Set<Integer> ids = new HashSet<Integer>();
+        for (Node n : graph.getNodes()) {
+            ids.add(n.getId());
+        }
+        return ids;
+    }
+
+    private Set<Integer> getEdgeIds(Graph graph) {
+        Set<Integer> ids = new HashSet<Integer>();
+        for (Edge e : graph.getEdges()) {
+            ids.add(e.getId());
+        }
+        return ids;
+    }
+
     private void printGraph(Graph graph) {
         Node[] nodes = graph.getNodes().toArray();
         Edge[] edges = graph.getEdges().toArray();
@@ -225,6 +343,80 @@ public class FilterProcessorTest {
         }
     }
 
+    public static class NodeIdRangeFilter implements NodeFilter {
+
+        private Range range;
+        private int initCount;
+
+        public NodeIdRangeFilter(Range range) {
+            this.range = range;
+        }
+
+        public boolean evaluate(Graph graph, Node node) {
+            return range.isInRange(node.getId());
+        }
+
+        public String getName() {
+            return "NodeIdRangeFilter";
+        }
+
+        public FilterProperty[] getProperties() {
+            try {
+                return new FilterProperty[]{
+                            FilterProperty.createProperty(this, Range.class, "range")};
+            } catch (NoSuchMethodException ex) {
+                throw new RuntimeException(ex);
+            }
+        }
+
+        public boolean init(Graph graph) {
+            initCount++;
+            return true;
+        }
+
+        public void finish() {
+        }
+
+        public Range getRange() {
+            return range;
+        }
+
+        public void setRange(Range range) {
+            this.range = range;
+        }
+    }
+
+    private static class NodeScoreFilter implements NodeFilter {
+
+        private final AttributeColumn column;
+        private final int threshold;
+
+        public NodeScoreFilter(AttributeColumn column, int threshold) {
+            this.column = column;
+            this.threshold = threshold;
+        }
+
+        public boolean evaluate(Graph graph, Node node) {
+            Integer score = (Integer) node.getNodeData().getAttributes().getValue(column.getIndex());
+            return score != null && score >= threshold;
+        }
+
+        public String getName() {
+            return "NodeScoreFilter";
+        }
+
+        public FilterProperty[] getProperties() {
+            return null;
+        }
+
+        public boolean init(Graph graph) {
+            return true;
+        }
+
+        public void finish() {
+        }
+    }
+
     private static class NodeIdFilter implements NodeFilter {
 
         private final int id;
@@ -55,7 +55,6 @@ import org.gephi.filters.spi.NodeFilter;
 import org.gephi.graph.api.Graph;
 import org.gephi.graph.api.HierarchicalUndirectedGraph;
 import org.gephi.graph.api.Node;
-import org.gephi.graph.api.UndirectedGraph;
 import org.gephi.statistics.plugin.ConnectedComponents;
 import org.openide.util.Lookup;
 import org.openide.util.NbBundle;
@@ -107,7 +106,7 @@ public class GiantComponentBuilder implements FilterBuilder {
         public boolean init(Graph graph) {
             ConnectedComponents cc = new ConnectedComponents();
             HierarchicalUndirectedGraph undirectedGraph = null;
-            if (cc instanceof UndirectedGraph) {
+            if (graph instanceof HierarchicalUndirectedGraph) {
                 undirectedGraph = (HierarchicalUndirectedGraph) graph;
             } else {
                 undirectedGraph = graph.getView().getGraphModel().getHierarchicalUndirectedGraph(graph.getView());
@@ -42,6 +42,7 @@ Portions Copyrighted 2011 Gephi Consortium.
 package org.gephi.filters.plugin.operator;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Iterator;
 import java.util.List;
 import javax.swing.Icon;
@@ -55,8 +56,12 @@ import org.gephi.filters.spi.NodeFilter;
 import org.gephi.filters.spi.Operator;
 import org.gephi.graph.api.Edge;
 import org.gephi.graph.api.Graph;
+import org.gephi.graph.api.GraphModel;
+import org.gephi.graph.api.GraphView;
+import org.gephi.graph.api.HierarchicalDirectedGraph;
 import org.gephi.graph.api.HierarchicalGraph;
 import org.gephi.graph.api.Node;
+import org.gephi.graph.api.UndirectedGraph;
 import org.openide.util.NbBundle;
 import org.openide.util.lookup.ServiceProvider;
 
@@ -112,37 +117,40 @@ public class INTERSECTIONBuilder implements FilterBuilder {
             HierarchicalGraph minHGraph = (HierarchicalGraph) graphs[0];
             int minElements = Integer.MAX_VALUE;
             for (int i = 0; i < graphs.length; i++) {
-                int count = ((HierarchicalGraph)graphs[i]).getNodeCount();
+                int count = ((HierarchicalGraph) graphs[i]).getNodeCount();
                 if (count < minElements) {
                     minHGraph = (HierarchicalGraph) graphs[i];
                     minElements = count;
                 }
             }
-            for (Node n : minHGraph.getNodes().toArray()) {
-                for (int i = 0; i < graphs.length; i++) {
-                    if ((HierarchicalGraph)graphs[i] != minHGraph) {
-                        if (!((HierarchicalGraph)graphs[i]).contains(n)) {
-                            minHGraph.removeNode(n);
-                            break;
-                        }
-                    }
+            //Intersect the node and edge sets word by word
+            GraphModel graphModel = minHGraph.getGraphModel();
+            BitSet nodes = null;
+            BitSet edges = null;
+            for (int i = 0; i < graphs.length; i++) {
+                HierarchicalDirectedGraph directedGraph = graphModel.getHierarchicalDirectedGraph(graphs[i].getView());
+                BitSet graphNodes = new BitSet();
+                for (Node n : directedGraph.getNodes()) {
+                    graphNodes.set(n.getId());
                 }
-            }
-            for (Edge e : minHGraph.getEdges().toArray()) {
-                for (int i = 0; i < graphs.length; i++) {
-                    if ((HierarchicalGraph)graphs[i] != minHGraph) {
-                        if (!((HierarchicalGraph)graphs[i]).contains(e)) {
-                            minHGraph.removeEdge(e);
-                            break;
-                        }
-                    }
+                BitSet graphEdges = new BitSet();
+                for (Edge e : directedGraph.getEdges()) {
+                    graphEdges.set(e.getId());
+                }
+                if (nodes == null) {
+                    nodes = graphNodes;
+                    edges = graphEdges;
+                } else {
+                    nodes.and(graphNodes);
+                    edges.and(graphEdges);
                 }
             }
-            return minHGraph;
+            return graphModel.getGraph(graphModel.copyView(minHGraph.getView(), nodes, edges));
         }
 
         public Graph filter(Graph graph, Filter[] filters) {
             HierarchicalGraph hgraph = (HierarchicalGraph) graph;
+            GraphModel graphModel = graph.getGraphModel();
             List<NodeFilter> nodeFilters = new ArrayList<NodeFilter>();
             List<EdgeFilter> edgeFilters = new ArrayList<EdgeFilter>();
             for (Filter f : filters) {
@@ -152,6 +160,7 @@ public class INTERSECTIONBuilder implements FilterBuilder {
                     edgeFilters.add((EdgeFilter) f);
                 }
             }
+            GraphView nodesView = null;
             if (nodeFilters.size() > 0) {
                 for (Iterator<NodeFilter> itr = nodeFilters.iterator(); itr.hasNext();) {
                     NodeFilter nf = itr.next();
@@ -159,23 +168,25 @@ public class INTERSECTIONBuilder implements FilterBuilder {
                         itr.remove();
                     }
                 }
-                List<Node> nodesToRemove = new ArrayList<Node>();
+                BitSet nodes = new BitSet();
                 for (Node n : hgraph.getNodes()) {
+                    boolean keep = true;
                     for (NodeFilter nf : nodeFilters) {
                         if (!nf.evaluate(hgraph, n)) {
-                            nodesToRemove.add(n);
+                            keep = false;
                             break;
                         }
                     }
-                }
-
-                for (Node n : nodesToRemove) {
-                    hgraph.removeNode(n);
+                    if (keep) {
+                        nodes.set(n.getId());
+                    }
                 }
 
                 for (NodeFilter nf : nodeFilters) {
                     nf.finish();
                 }
+                nodesView = graphModel.copyView(hgraph.getView(), nodes, null);
+                hgraph = (HierarchicalGraph) graphModel.getGraph(nodesView);
             }
             if (edgeFilters.size() > 0) {
                 for (Iterator<EdgeFilter> itr = edgeFilters.iterator(); itr.hasNext();) {
@@ -184,23 +195,37 @@ public class INTERSECTIONBuilder implements FilterBuilder {
                         itr.remove();
                     }
                 }
-                List<Edge> edgesToRemove = new ArrayList<Edge>();
+                //Undirected graphs only return one edge of mutual edges
+                HierarchicalDirectedGraph directedGraph = graphModel.getHierarchicalDirectedGraph(hgraph.getView());
+                boolean undirected = hgraph instanceof UndirectedGraph;
+                BitSet edges = new BitSet();
                 for (Edge e : hgraph.getEdges()) {
+                    boolean keep = true;
                     for (EdgeFilter ef : edgeFilters) {
                         if (!ef.evaluate(hgraph, e)) {
-                            edgesToRemove.add(e);
+                            keep = false;
                             break;
                         }
                     }
-                }
-
-                for (Edge e : edgesToRemove) {
-                    hgraph.removeEdge(e);
+                    if (keep) {
+                        edges.set(e.getId());
+                        if (undirected || !e.isDirected()) {
+                            Edge mutual = directedGraph.getEdge(e.getTarget(), e.getSource());
+                            if (mutual != null) {
+                                edges.set(mutual.getId());
+                            }
+                        }
+                    }
                 }
 
                 for (EdgeFilter ef : edgeFilters) {
                     ef.finish();
                 }
+                hgraph = (HierarchicalGraph) graphModel.getGraph(graphModel.copyView(hgraph.getView(), null, edges));
+                if (nodesView != null) {
+                    //The intermediate view is not used anymore
+                    graphModel.destroyView(nodesView);
+                }
             }
             return hgraph;
         }
@@ -42,6 +42,7 @@ Portions Copyrighted 2011 Gephi Consortium.
 package org.gephi.filters.plugin.operator;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Iterator;
 import java.util.List;
 import javax.swing.Icon;
@@ -55,8 +56,12 @@ import org.gephi.filters.spi.NodeFilter;
 import org.gephi.filters.spi.Operator;
 import org.gephi.graph.api.Edge;
 import org.gephi.graph.api.Graph;
+import org.gephi.graph.api.GraphModel;
+import org.gephi.graph.api.GraphView;
+import org.gephi.graph.api.HierarchicalDirectedGraph;
 import org.gephi.graph.api.HierarchicalGraph;
 import org.gephi.graph.api.Node;
+import org.gephi.graph.api.UndirectedGraph;
 import org.openide.util.NbBundle;
 import org.openide.util.lookup.ServiceProvider;
 
@@ -109,31 +114,29 @@ public class UNIONBuilder implements FilterBuilder {
         }
 
         public Graph filter(Graph[] graphs) {
-            HierarchicalGraph maxHGraph = (HierarchicalGraph) graphs[0];
-            int maxElements = 0;
+            //Merge the node and edge sets word by word
+            GraphModel graphModel = graphs[0].getGraphModel();
+            BitSet nodes = new BitSet();
+            BitSet edges = new BitSet();
             for (int i = 0; i < graphs.length; i++) {
-                int count = ((HierarchicalGraph) graphs[i]).getNodeCount();
-                if (count > maxElements) {
-                    maxHGraph = (HierarchicalGraph) graphs[i];
-                    maxElements = count;
+                HierarchicalDirectedGraph directedGraph = graphModel.getHierarchicalDirectedGraph(graphs[i].getView());
+                BitSet graphNodes = new BitSet();
+                for (Node n : directedGraph.getNodes()) {
+                    graphNodes.set(n.getId());
                 }
-            }
-            for (int i = 0; i < graphs.length; i++) {
-                if ((HierarchicalGraph) graphs[i] != maxHGraph) {
-                    //Merge
-                    for (Node n : ((HierarchicalGraph) graphs[i]).getNodes().toArray()) {
-                        maxHGraph.addNode(n);
-                    }
-                    for (Edge e : ((HierarchicalGraph) graphs[i]).getEdgesAndMetaEdges().toArray()) {
-                        maxHGraph.addEdge(e);
-                    }
+                BitSet graphEdges = new BitSet();
+                for (Edge e : directedGraph.getEdges()) {
+                    graphEdges.set(e.getId());
                 }
+                nodes.or(graphNodes);
+                edges.or(graphEdges);
             }
-            return maxHGraph;
+            return graphModel.getGraph(graphModel.copyView(graphModel.getGraph().getView(), nodes, edges));
         }
 
         public Graph filter(Graph graph, Filter[] filters) {
             HierarchicalGraph hgraph = (HierarchicalGraph) graph;
+            GraphModel graphModel = graph.getGraphModel();
             List<NodeFilter> nodeFilters = new ArrayList<NodeFilter>();
             List<EdgeFilter> edgeFilters = new ArrayList<EdgeFilter>();
             for (Filter f : filters) {
@@ -143,6 +146,7 @@ public class UNIONBuilder implements FilterBuilder {
                     edgeFilters.add((EdgeFilter) f);
                 }
             }
+            GraphView nodesView = null;
             if (nodeFilters.size() > 0) {
                 for (Iterator<NodeFilter> itr = nodeFilters.iterator(); itr.hasNext();) {
                     NodeFilter nf = itr.next();
@@ -150,25 +154,21 @@ public class UNIONBuilder implements FilterBuilder {
                         itr.remove();
                     }
                 }
-                List<Node> nodesToRemove = new ArrayList<Node>();
+                BitSet nodes = new BitSet();
                 for (Node n : hgraph.getNodes()) {
-                    boolean remove = true;
                     for (NodeFilter nf : nodeFilters) {
                         if (nf.evaluate(hgraph, n)) {
-                            remove = false;
+                            nodes.set(n.getId());
+                            break;
                         }
                     }
-                    if (remove) {
-                        nodesToRemove.add(n);
-                    }
                 }
 
-                for (Node n : nodesToRemove) {
-                    hgraph.removeNode(n);
-                }
                 for (NodeFilter nf : nodeFilters) {
                     nf.finish();
                 }
+                nodesView = graphModel.copyView(hgraph.getView(), nodes, null);
+                hgraph = (HierarchicalGraph) graphModel.getGraph(nodesView);
             }
             if (edgeFilters.size() > 0) {
                 for (Iterator<EdgeFilter> itr = edgeFilters.iterator(); itr.hasNext();) {
@@ -177,22 +177,48 @@ public class UNIONBuilder implements FilterBuilder {
                         itr.remove();
                     }
                 }
-                List<Edge> edgesToRemove = new ArrayList<Edge>();
-                for (Edge e : hgraph.getEdgesAndMetaEdges()) {
+                //Undirected graphs only return one edge of mutual edges
+                HierarchicalDirectedGraph directedGraph = graphModel.getHierarchicalDirectedGraph(hgraph.getView());
+                boolean undirected = hgraph instanceof UndirectedGraph;
+                BitSet edges = new BitSet();
+                for (Edge e : hgraph.getEdges()) {
+                    for (EdgeFilter ef : edgeFilters) {
+                        if (ef.evaluate(hgraph, e)) {
+                            edges.set(e.getId());
+                            if (undirected || !e.isDirected()) {
+                                Edge mutual = directedGraph.getEdge(e.getTarget(), e.getSource());
+                                if (mutual != null) {
+                                    edges.set(mutual.getId());
+                                }
+                            }
+                            break;
+                        }
+                    }
+                }
+                hgraph = (HierarchicalGraph) graphModel.getGraph(graphModel.copyView(hgraph.getView(), null, edges));
+                if (nodesView != null) {
+                    //The intermediate view is not used anymore
+                    graphModel.destroyView(nodesView);
+                }
+
+                //Meta edges are computed again in the new view
+                List<Edge> metaEdgesToRemove = new ArrayList<Edge>();
+                for (Edge e : hgraph.getMetaEdges()) {
                     boolean remove = true;
                     for (EdgeFilter ef : edgeFilters) {
                         if (ef.evaluate(hgraph, e)) {
                             remove = false;
+                            break;
                         }
                     }
                     if (remove) {
-                        edgesToRemove.add(e);
+                        metaEdgesToRemove.add(e);
                     }
                 }
-
-                for (Edge e : edgesToRemove) {
-                    hgraph.removeEdge(e);
+                for (Edge e : metaEdgesToRemove) {
+                    hgraph.removeMetaEdge(e);
                 }
+
                 for (EdgeFilter ef : edgeFilters) {
                     ef.finish();
                 }
@@ -0,0 +1,196 @@
+/*
+Copyright 2008-2010 Gephi
+Website : http://www.gephi.org
+
+This file is part of Gephi.
+
+DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+
+Copyright 2011 Gephi Consortium. All rights reserved.
+
+The contents of this file are subject to the terms of either the GNU
+General Public License Version 3 only ("GPL") or the Common
+Development and Distribution License("CDDL") (collectively, the
+"License"). You may not use this file except in compliance with the
+License. You can obtain a copy of the License at
+http://gephi.org/about/legal/license-notice/
+or /cddl-1.0.txt and /gpl-3.0.txt. See the License for the
+specific language governing permissions and limitations under the
+License.  When distributing the software, include this License Header
+Notice in each file and include the License files at
+/cddl-1.0.txt and /gpl-3.0.txt. If applicable, add the following below the
+License Header, with the fields enclosed by brackets [] replaced by
+your own identifying information:
+"Portions Copyrighted [year] [name of copyright owner]"
+
+If you wish your version of this file to be governed by only the CDDL
+or only the GPL Version 3, indicate your decision by adding
+"[Contributor] elects to include this software in this distribution
+under the [CDDL or GPL Version 3] license." If you do not indicate a
+single choice of license, a recipient has the option to distribute
+your version of this file under either the CDDL, the GPL Version 3 or
+to extend the choice of license to its licensees as provided above.
+However, if you add GPL Version 3 code and therefore, elected the GPL
+Version 3 license, then the option applies only if the new code is
+made subject to such option by the copyright holder.
+
+Contributor(s):
+
+Portions Copyrighted 2011 Gephi Consortium.
+*/
+package org.gephi.graph.api;
+
+/**
+ * Compact and read-only copy of a graph view adjacency, stored in the
+ * <b>compressed sparse row</b> (CSR) format.
+ * <p>
+ * Nodes are given dense indices from <code>0</code> to <code>getNodeCount() - 1</code>,
+ * in the order they are returned by <code>getNodes()</code>. For each
+ * adjacency type, the neighbours of the node at index <code>i</code> are
+ * stored in the targets array, between <code>offsets[i]</code> (inclusive)
+ * and <code>offsets[i + 1]</code> (exclusive):
+ * <pre>
+ * int[] offsets = snapshot.getOffsets(Adjacency.OUT);
+ * int[] targets = snapshot.getTargets(Adjacency.OUT);
+ * for (int i = 0; i < snapshot.getNodeCount(); i++) {
+ *     for (int j = offsets[i]; j < offsets[i + 1]; j++) {
+ *         int neighbour = targets[j];
+ *     }
+ * }
+ * </pre>
+ * Edges and meta-edges between the nodes enabled in the view are both included,
+ * as done by <code>HierarchicalGraph.getEdgesAndMetaEdges()</code>.
+ * <p>
+ * Snapshots are immutable and don't require any lock once created, they can
+ * be read by several threads concurrently. They are stamped with the node and
+ * edge version of the graph at creation time, use <code>isUpToDate()</code> to
+ * know if the graph has changed since. Note that changing edges weight doesn't
+ * increment graph versions, so the weights of a snapshot may be outdated even
+ * if it is up to date.
+ *
+ * @see GraphModel#getAdjacencySnapshot(org.gephi.graph.api.GraphView, boolean)
+ */
+public interface AdjacencySnapshot {
+
+    /**
+     * Adjacency types available in snapshots.
+     */
+    public enum Adjacency {
+
+        /**
+         * Successors of each node, i.e. targets of outgoing edges.
+         */
+        OUT,
+        /**
+         * Predecessors of each node, i.e. sources of incoming edges.
+         */
+        IN,
+        /**
+         * Neighbours of each node, mutual edges are present only once and
+         * self-loops appear once in their node's list.
+         */
+        UNDIRECTED
+    };
+
+    /**
+     * Returns the number of nodes in this snapshot.
+     * @return      the number of nodes
+     */
+    public int getNodeCount();
+
+    /**
+     * Returns the number of entries in the targets array of
+     * <code>adjacency</code>.
+     * @param adjacency the adjacency type
+     * @return          the number of entries for <code>adjacency</code>
+     */
+    public int getEdgeCount(Adjacency adjacency);
+
+    /**
+     * Returns the node at <code>index</code>.
+     * @param index     the index of the node, between <code>0</code> and
+     * <code>getNodeCount() - 1</code>
+     * @return          the node at <code>index</code>
+     */
+    public Node getNode(int index);
+
+    /**
+     * Returns the nodes of this snapshot, indexed by their dense index. The
+     * returned array must not be modified.
+     * @return          the nodes array
+     */
+    public Node[] getNodes();
+
+    /**
+     * Returns the dense index of <code>node</code>, or <code>-1</code> if
+     * <code>node</code> is not in this snapshot.
+     * @param node      the node whose index is to be returned
+     * @return          the index of <code>node</code> or <code>-1</code>
+     */
+    public int getIndex(Node node);
+
+    /**
+     * Returns the offsets array of <code>adjacency</code>. Its length is
+     * <code>getNodeCount() + 1</code>. The returned array must not be modified.
+     * @param adjacency the adjacency type
+     * @return          the offsets array
+     */
+    public int[] getOffsets(Adjacency adjacency);
+
+    /**
+     * Returns the targets array of <code>adjacency</code>, which contains
+     * nodes indices. The returned array must not be modified.
+     * @param adjacency the adjacency type
+     * @return          the targets array
+     */
+    public int[] getTargets(Adjacency adjacency);
+
+    /**
+     * Returns the edge weights of <code>adjacency</code>, aligned with the
+     * targets array, or <code>null</code> if the snapshot has been created
+     * without weights. The returned array must not be modified.
+     * @param adjacency the adjacency type
+     * @return          the weights array or <code>null</code>
+     */
+    public float[] getWeights(Adjacency adjacency);
+
+    /**
+     * Returns the degree of the node at <code>index</code> for
+     * <code>adjacency</code>.
+     * @param adjacency the adjacency type
+     * @param index     the node index
+     * @return          the number of neighbours of the node
+     */
+    public int getDegree(Adjacency adjacency, int index);
+
+    /**
+     * Returns <code>true</code> if edge weights are present in this snapshot.
+     * @return          <code>true</code> if weighted, <code>false</code> otherwise
+     */
+    public boolean isWeighted();
+
+    /**
+     * Returns the view this snapshot has been created from.
+     * @return          the graph view of this snapshot
+     */
+    public GraphView getView();
+
+    /**
+     * Returns the graph node version at the time this snapshot was created.
+     * @return          the node version stamp
+     */
+    public int getNodeVersion();
+
+    /**
+     * Returns the graph edge version at the time this snapshot was created.
+     * @return          the edge version stamp
+     */
+    public int getEdgeVersion();
+
+    /**
+     * Returns <code>true</code> if the graph structure hasn't changed since
+     * this snapshot was created.
+     * @return          <code>true</code> if the snapshot can still be used
+     */
+    public boolean isUpToDate();
+}
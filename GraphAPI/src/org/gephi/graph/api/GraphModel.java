@@ -41,6 +41,7 @@ Portions Copyrighted 2011 Gephi Consortium.
  */
 package org.gephi.graph.api;
 
+import java.util.BitSet;
 import org.gephi.project.api.Workspace;
 
 /**
@@ -111,6 +112,26 @@ public interface GraphModel {
      */
     public GraphView copyView(GraphView view);
 
+    /**
+     * Copy <code>view</code> to a new graph view, keeping only the enabled
+     * nodes and edges whose ids are set in <code>nodes</code> and
+     * <code>edges</code>. The result is the same as removing the other
+     * enabled nodes and edges from a copy of <code>view</code>, but the view is
+     * built in a single pass and no node or edge events are fired.
+     * <p>
+     * Nodes that are not enabled, i.e. descendants of collapsed groups or
+     * expanded groups, are kept as long as their parent is. Edges between
+     * such nodes are kept as long as their source and target are.
+     * @param view  the view that is to be copied
+     * @param nodes the ids of the enabled nodes to keep, or <code>null</code>
+     * to keep all nodes
+     * @param edges the ids of the edges between enabled nodes to keep, or
+     * <code>null</code> to keep all edges
+     * @return      a new graph view with the nodes and edges of <code>view</code>
+     * that are kept
+     */
+    public GraphView copyView(GraphView view, BitSet nodes, BitSet edges);
+
     /**
      * Destroy <code>view</code>, if exists. Always destroy views that are not
      * needed anymore to avoid memory overhead.
@@ -305,6 +326,20 @@ public interface GraphModel {
      */
     public HierarchicalMixedGraph getHierarchicalMixedGraph(GraphView view);
 
+    /**
+     * Returns a compact and read-only adjacency snapshot of <code>view</code>,
+     * in the compressed sparse row format. The snapshot is built in a single
+     * pass under a read lock. Snapshots without weights are cached by the view
+     * until the graph structure changes. Weighted snapshots are built at each
+     * call, so they have the current edge weights. This is the preferred way
+     * for algorithms to read large graphs repeatedly.
+     * @param view      the view the snapshot is to be created from
+     * @param weighted  <code>true</code> if edge weights are to be included
+     * @return          an adjacency snapshot of <code>view</code>
+     * @see AdjacencySnapshot
+     */
+    public AdjacencySnapshot getAdjacencySnapshot(GraphView view, boolean weighted);
+
     /**
      * Copy the graph structure from <code>graph</code> to this model. The
      * given <code>graph</code>must come from a different <code>GraphModel</code>,
@@ -52,6 +52,7 @@ import org.gephi.io.importer.spi.ImporterUI;
 import org.gephi.io.importer.spi.ImporterWizardUI;
 import org.gephi.io.importer.spi.SpigotImporter;
 import org.gephi.io.processor.spi.Processor;
+import org.gephi.io.processor.spi.StreamingProcessor;
 import org.gephi.project.api.Workspace;
 
 /**
@@ -83,6 +84,21 @@ public interface ImportController {
 
     public void process(Container container, Processor processor, Workspace workspace);
 
+    /**
+     * Imports from <code>reader</code> and pushes nodes and edges to the
+     * default streaming processor while the importer runs, without keeping
+     * them in the container. The returned container is already processed
+     * and only holds the report and settings. If the import fails or is
+     * cancelled, what was already pushed is removed.
+     * @throws IllegalArgumentException if <code>importer</code> doesn't
+     * implement <code>StreamingImporter</code>
+     * @see StreamingProcessor
+     * @see org.gephi.io.importer.spi.StreamingImporter
+     */
+    public Container importFileStreaming(Reader reader, FileImporter importer, Workspace workspace);
+
+    public Container importFileStreaming(Reader reader, FileImporter importer, StreamingProcessor processor, Workspace workspace);
+
     public FileType[] getFileTypes();
 
     public boolean isFileSupported(File file);
@@ -527,112 +527,106 @@ public class ImportContainerImpl implements Container, ContainerLoader, Containe
         //Remove overlapping
         if (dynamicGraph && parameters.isRemoveIntervalsOverlapping()) {
             for (NodeDraftImpl node : nodeMap.values()) {
-                AttributeValue[] values = node.getAttributeRow().getValues();
-                for (int i = 0; i < values.length; i++) {
-                    AttributeValue val = values[i];
-                    if (val.getValue() != null && val.getValue() instanceof DynamicType) {   //is Dynamic type
-                        DynamicType type = (DynamicType) val.getValue();
-                        type = DynamicUtilities.removeOverlapping(type);
-                        node.getAttributeRow().setValue(val.getColumn(), type);
-                    }
-                }
+                removeOverlapping(node.getAttributeRow());
             }
             for (EdgeDraftImpl edge : edgeMap.values()) {
-                AttributeValue[] values = edge.getAttributeRow().getValues();
-                for (int i = 0; i < values.length; i++) {
-                    AttributeValue val = values[i];
-                    if (val.getValue() != null && val.getValue() instanceof DynamicType) {   //is Dynamic type
-                        DynamicType type = (DynamicType) val.getValue();
-                        type = DynamicUtilities.removeOverlapping(type);
-                        edge.getAttributeRow().setValue(val.getColumn(), type);
-                    }
-                }
+                removeOverlapping(edge.getAttributeRow());
             }
         }
 
         //Dynamic attributes bounds
         if (dynamicGraph && (timeIntervalMin != null || timeIntervalMax != null)) {
             for (NodeDraftImpl node : nodeMap.values()) {
-                boolean issue = false;
-                if (timeIntervalMin != null || timeIntervalMax != null) {
-                    if (timeIntervalMin != null && node.getTimeInterval() != null && node.getTimeInterval().getLow() < timeIntervalMin) {
-                        node.setTimeInterval((TimeInterval) DynamicUtilities.fitToInterval(node.getTimeInterval(), timeIntervalMin, node.getTimeInterval().getHigh()));
-                        issue = true;
-                    }
-                    if (timeIntervalMax != null && node.getTimeInterval() != null && node.getTimeInterval().getHigh() > timeIntervalMax) {
-                        node.setTimeInterval((TimeInterval) DynamicUtilities.fitToInterval(node.getTimeInterval(), node.getTimeInterval().getLow(), timeIntervalMax));
-                        issue = true;
-                    }
-                    if (node.getTimeInterval() == null) {
-                        node.setTimeInterval(new TimeInterval(timeIntervalMin, timeIntervalMax));
-                    }
-                }
-
-                AttributeValue[] values = node.getAttributeRow().getValues();
-                for (int i = 0; i < values.length; i++) {
-                    AttributeValue val = values[i];
-                    if (val.getValue() != null && val.getValue() instanceof DynamicType) {   //is Dynamic type
-                        DynamicType type = (DynamicType) val.getValue();
-                        if (timeIntervalMin != null && type.getLow() < timeIntervalMin) {
-                            if (!Double.isInfinite(type.getLow())) {
-                                issue = true;
-                            }
-                            node.getAttributeRow().setValue(val.getColumn(), DynamicUtilities.fitToInterval(type, timeIntervalMin, type.getHigh()));
-                        }
-                        if (timeIntervalMax != null && type.getHigh() > timeIntervalMax) {
-                            if (!Double.isInfinite(type.getHigh())) {
-                                issue = true;
-                            }
-                            node.getAttributeRow().setValue(val.getColumn(), DynamicUtilities.fitToInterval(type, type.getLow(), timeIntervalMax));
-                        }
-                    }
-                }
-                if (issue) {
+                if (fitToTimeInterval(node)) {
                     report.logIssue(new Issue(NbBundle.getMessage(ImportContainerImpl.class, "ImportContainerException_TimeIntervalVerify_Node_OutOfBound", node.getId()), Level.WARNING));
                 }
             }
             for (EdgeDraftImpl edge : edgeMap.values()) {
-                boolean issue = false;
-                if (timeIntervalMin != null || timeIntervalMax != null) {
-                    if (timeIntervalMin != null && edge.getTimeInterval() != null && edge.getTimeInterval().getLow() < timeIntervalMin) {
-                        edge.setTimeInterval((TimeInterval) DynamicUtilities.fitToInterval(edge.getTimeInterval(), timeIntervalMin, edge.getTimeInterval().getHigh()));
-                        issue = true;
-                    }
-                    if (timeIntervalMax != null && edge.getTimeInterval() != null && edge.getTimeInterval().getHigh() > timeIntervalMax) {
-                        edge.setTimeInterval((TimeInterval) DynamicUtilities.fitToInterval(edge.getTimeInterval(), edge.getTimeInterval().getLow(), timeIntervalMax));
-                        issue = true;
-                    }
-                    if (edge.getTimeInterval() == null) {
-                        edge.setTimeInterval(new TimeInterval(timeIntervalMin, timeIntervalMax));
-                    }
+                if (fitToTimeInterval(edge)) {
+                    report.logIssue(new Issue(NbBundle.getMessage(ImportContainerImpl.class, "ImportContainerException_TimeIntervalVerify_Edge_OutOfBound", edge.getId()), Level.WARNING));
                 }
+            }
+        }
 
-                AttributeValue[] values = edge.getAttributeRow().getValues();
-                for (int i = 0; i < values.length; i++) {
-                    AttributeValue val = values[i];
-                    if (val.getValue() != null && val.getValue() instanceof DynamicType) {   //is Dynamic type
-                        DynamicType type = (DynamicType) val.getValue();
-                        if (timeIntervalMin != null && type.getLow() < timeIntervalMin) {
-                            if (!Double.isInfinite(type.getLow())) {
-                                issue = true;
-                            }
-                            edge.getAttributeRow().setValue(val.getColumn(), DynamicUtilities.fitToInterval(type, timeIntervalMin, type.getHigh()));
-                        }
-                        if (timeIntervalMax != null && type.getHigh() > timeIntervalMax) {
-                            if (!Double.isInfinite(type.getHigh())) {
-                                issue = true;
-                            }
-                            edge.getAttributeRow().setValue(val.getColumn(), DynamicUtilities.fitToInterval(type, type.getLow(), timeIntervalMax));
-                        }
+        return true;
+    }
+
+    void removeOverlapping(AttributeRow row) {
+        AttributeValue[] values = row.getValues();
+        for (int i = 0; i < values.length; i++) {
+            AttributeValue val = values[i];
+            if (val.getValue() != null && val.getValue() instanceof DynamicType) {   //is Dynamic type
+                DynamicType type = (DynamicType) val.getValue();
+                type = DynamicUtilities.removeOverlapping(type);
+                row.setValue(val.getColumn(), type);
+            }
+        }
+    }
+
+    /**
+     * Fits the time interval and the dynamic values of <code>node</code> in
+     * the container time interval bounds.
+     * @return <code>true</code> if values were out of bounds
+     */
+    boolean fitToTimeInterval(NodeDraftImpl node) {
+        boolean issue = false;
+        if (timeIntervalMin != null && node.getTimeInterval() != null && node.getTimeInterval().getLow() < timeIntervalMin) {
+            node.setTimeInterval((TimeInterval) DynamicUtilities.fitToInterval(node.getTimeInterval(), timeIntervalMin, node.getTimeInterval().getHigh()));
+            issue = true;
+        }
+        if (timeIntervalMax != null && node.getTimeInterval() != null && node.getTimeInterval().getHigh() > timeIntervalMax) {
+            node.setTimeInterval((TimeInterval) DynamicUtilities.fitToInterval(node.getTimeInterval(), node.getTimeInterval().getLow(), timeIntervalMax));
+            issue = true;
+        }
+        if (node.getTimeInterval() == null) {
+            node.setTimeInterval(new TimeInterval(timeIntervalMin, timeIntervalMax));
+        }
+        return fitToTimeInterval(node.getAttributeRow()) || issue;
+    }
+
+    /**
+     * Fits the time interval and the dynamic values of <code>edge</code> in
+     * the container time interval bounds.
+     * @return <code>true</code> if values were out of bounds
+     */
+    boolean fitToTimeInterval(EdgeDraftImpl edge) {
+        boolean issue = false;
+        if (timeIntervalMin != null && edge.getTimeInterval() != null && edge.getTimeInterval().getLow() < timeIntervalMin) {
+            edge.setTimeInterval((TimeInterval) DynamicUtilities.fitToInterval(edge.getTimeInterval(), timeIntervalMin, edge.getTimeInterval().getHigh()));
+            issue = true;
+        }
+        if (timeIntervalMax != null && edge.getTimeInterval() != null && edge.getTimeInterval().getHigh() > timeIntervalMax) {
+            edge.setTimeInterval((TimeInterval) DynamicUtilities.fitToInterval(edge.getTimeInterval(), edge.getTimeInterval().getLow(), timeIntervalMax));
+            issue = true;
+        }
+        if (edge.getTimeInterval() == null) {
+            edge.setTimeInterval(new TimeInterval(timeIntervalMin, timeIntervalMax));
+        }
+        return fitToTimeInterval(edge.getAttributeRow()) || issue;
+    }
+
+    private boolean fitToTimeInterval(AttributeRow row) {
+        boolean issue = false;
+        AttributeValue[] values = row.getValues();
+        for (int i = 0; i < values.length; i++) {
+            AttributeValue val = values[i];
+            if (val.getValue() != null && val.getValue() instanceof DynamicType) {   //is Dynamic type
+                DynamicType type = (DynamicType) val.getValue();
+                if (timeIntervalMin != null && type.getLow() < timeIntervalMin) {
+                    if (!Double.isInfinite(type.getLow())) {
+                        issue = true;
                     }
+                    row.setValue(val.getColumn(), DynamicUtilities.fitToInterval(type, timeIntervalMin, type.getHigh()));
                 }
-                if (issue) {
-                    report.logIssue(new Issue(NbBundle.getMessage(ImportContainerImpl.class, "ImportContainerException_TimeIntervalVerify_Edge_OutOfBound", edge.getId()), Level.WARNING));
+                if (timeIntervalMax != null && type.getHigh() > timeIntervalMax) {
+                    if (!Double.isInfinite(type.getHigh())) {
+                        issue = true;
+                    }
+                    row.setValue(val.getColumn(), DynamicUtilities.fitToInterval(type, type.getLow(), timeIntervalMax));
                 }
             }
         }
-
-        return true;
+        return issue;
     }
 
     public void closeLoader() {
@@ -782,6 +776,10 @@ public class ImportContainerImpl implements Container, ContainerLoader, Containe
     }
 
     //PARAMETERS
+    ImportContainerParameters getParameters() {
+        return parameters;
+    }
+
     public void setAllowAutoNode(boolean value) {
         parameters.setAutoNode(value);
     }
@@ -56,6 +56,7 @@ import org.gephi.io.importer.api.ImportUtils;
 import org.gephi.io.importer.api.Report;
 import org.gephi.io.importer.spi.DatabaseImporter;
 import org.gephi.io.importer.spi.DatabaseImporterBuilder;
+import org.gephi.io.importer.spi.FileAwareImporter;
 import org.gephi.io.importer.spi.FileImporter;
 import org.gephi.io.importer.spi.FileImporterBuilder;
 import org.gephi.io.importer.spi.Importer;
@@ -63,13 +64,16 @@ import org.gephi.io.importer.spi.ImporterUI;
 import org.gephi.io.importer.spi.ImporterWizardUI;
 import org.gephi.io.importer.spi.SpigotImporter;
 import org.gephi.io.importer.spi.SpigotImporterBuilder;
+import org.gephi.io.importer.spi.StreamingImporter;
 import org.gephi.io.processor.spi.Processor;
 import org.gephi.io.processor.spi.Scaler;
+import org.gephi.io.processor.spi.StreamingProcessor;
 import org.gephi.project.api.Workspace;
 import org.openide.filesystems.FileObject;
 import org.openide.filesystems.FileUtil;
 import org.openide.util.Exceptions;
 import org.openide.util.Lookup;
+import org.openide.util.NbBundle;
 import org.openide.util.lookup.ServiceProvider;
 
 /**
@@ -133,7 +137,11 @@ public class ImportControllerImpl implements ImportController {
             fileObject = getArchivedFile(fileObject);   //Unzip and return content file
             FileImporterBuilder builder = getMatchingImporter(fileObject);
             if (fileObject != null && builder != null) {
-                Container c = importFile(fileObject.getInputStream(), builder.buildImporter());
+                FileImporter importer = builder.buildImporter();
+                if (importer instanceof FileAwareImporter) {
+                    ((FileAwareImporter) importer).setFile(FileUtil.toFile(fileObject));
+                }
+                Container c = importFile(fileObject.getInputStream(), importer);
                 if (fileObject.getPath().startsWith(System.getProperty("java.io.tmpdir"))) {
                     try {
                         fileObject.delete();
@@ -152,6 +160,9 @@ public class ImportControllerImpl implements ImportController {
         if (fileObject != null) {
             fileObject = getArchivedFile(fileObject);   //Unzip and return content file
             if (fileObject != null) {
+                if (importer instanceof FileAwareImporter) {
+                    ((FileAwareImporter) importer).setFile(FileUtil.toFile(fileObject));
+                }
                 Container c = importFile(fileObject.getInputStream(), importer);
                 if (fileObject.getPath().startsWith(System.getProperty("java.io.tmpdir"))) {
                     try {
@@ -269,6 +280,75 @@ public class ImportControllerImpl implements ImportController {
         processor.process();
     }
 
+    public Container importFileStreaming(Reader reader, FileImporter importer, Workspace workspace) {
+        StreamingProcessor processor = Lookup.getDefault().lookup(StreamingProcessor.class);
+        if (processor == null) {
+            throw new RuntimeException("Impossible to find Default Streaming Processor");
+        }
+        return importFileStreaming(reader, importer, processor, workspace);
+    }
+
+    public Container importFileStreaming(Reader reader, FileImporter importer, final StreamingProcessor processor, Workspace workspace) {
+        if (!(importer instanceof StreamingImporter)) {
+            throw new IllegalArgumentException(NbBundle.getMessage(ImportControllerImpl.class, "ImportControllerImpl.streamingNotSupported", importer.getClass().getSimpleName()));
+        }
+
+        //Create Container
+        final StreamingImportContainer container = new StreamingImportContainer();
+
+        //Report
+        Report report = new Report();
+        container.setReport(report);
+
+        importer.setReader(reader);
+        processor.setContainer(container.getUnloader());
+        processor.setWorkspace(workspace);
+        processor.setReport(report);
+
+        //Drafts are processed on another thread while the importer runs
+        Thread processorThread = new Thread(new Runnable() {
+
+            public void run() {
+                container.unload(processor);
+            }
+        }, "Import Streaming Processor");
+        processorThread.start();
+
+        boolean executed = false;
+        try {
+            executed = importer.execute(container.getLoader());
+        } catch (RuntimeException ex) {
+            throw ex;
+        } catch (Exception ex) {
+            throw new RuntimeException(ex);
+        } finally {
+            //What the processor already added is removed if the import failed or was cancelled
+            try {
+                if (executed) {
+                    container.closeLoader();
+                } else {
+                    container.abortLoader();
+                }
+            } finally {
+                try {
+                    processorThread.join();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+        if (container.getProcessorError() != null) {
+            throw new RuntimeException(container.getProcessorError());
+        }
+        if (executed) {
+            if (importer.getReport() != null) {
+                report.append(importer.getReport());
+            }
+            return container;
+        }
+        return null;
+    }
+
     private FileObject getArchivedFile(FileObject fileObject) {
         if (fileObject == null) {
             return null;
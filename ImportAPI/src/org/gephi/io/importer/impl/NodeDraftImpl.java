@@ -88,8 +88,8 @@ public class NodeDraftImpl implements NodeDraft, NodeDraftGetter {
     private Color labelColor;
     //Dynamic
     private TimeInterval timeInterval;
-    //Attributes
-    private final AttributeRow attributeRow;
+    //Attributes, created on first use
+    private AttributeRow attributeRow;
     //Result
     private Node node;
     private int height;
@@ -98,7 +98,6 @@ public class NodeDraftImpl implements NodeDraft, NodeDraftGetter {
         this.container = container;
         this.id = id;
         this.autoId = true;
-        this.attributeRow = container.getAttributeModel().rowFactory().newNodeRow(null);
     }
 
     //SETTERS
@@ -232,7 +231,7 @@ public class NodeDraftImpl implements NodeDraft, NodeDraftGetter {
             //Wrap value in a dynamic type
             value = DynamicUtilities.createDynamicObject(column.getType(), new Interval(Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY, value));
         }
-        attributeRow.setValue(column, value);
+        getAttributeRow().setValue(column, value);
     }
 
     public void addAttributeValue(AttributeColumn column, Object value, String dateFrom, String dateTo) throws IllegalArgumentException {
@@ -275,7 +274,7 @@ public class NodeDraftImpl implements NodeDraft, NodeDraftGetter {
             AttributeType staticType = TypeConvertor.getStaticType(column.getType());
             value = staticType.parse((String) value);
         }
-        Object sourceVal = attributeRow.getValue(column);
+        Object sourceVal = getAttributeRow().getValue(column);
         if (sourceVal != null && sourceVal instanceof DynamicType) {
             value = DynamicUtilities.createDynamicObject(column.getType(), (DynamicType) sourceVal, new Interval(start, end, startOpen, endOpen, value));
         } else if (sourceVal != null && !(sourceVal instanceof DynamicType)) {
@@ -286,7 +285,7 @@ public class NodeDraftImpl implements NodeDraft, NodeDraftGetter {
         } else {
             value = DynamicUtilities.createDynamicObject(column.getType(), new Interval(start, end, startOpen, endOpen, value));
         }
-        attributeRow.setValue(column, value);
+        getAttributeRow().setValue(column, value);
     }
 
     public void addTimeInterval(String dateFrom, String dateTo) throws IllegalArgumentException {
@@ -336,9 +335,16 @@ public class NodeDraftImpl implements NodeDraft, NodeDraftGetter {
 
     //GETTERS
     public AttributeRow getAttributeRow() {
+        if (attributeRow == null) {
+            attributeRow = container.getAttributeModel().rowFactory().newNodeRow(null);
+        }
         return attributeRow;
     }
 
+    boolean hasAttributeRow() {
+        return attributeRow != null;
+    }
+
     public Color getColor() {
         return color;
     }
@@ -0,0 +1,514 @@
+/*
+Copyright 2008-2010 Gephi
+Website : http://www.gephi.org
+
+This file is part of Gephi.
+
+DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+
+Copyright 2011 Gephi Consortium. All rights reserved.
+
+The contents of this file are subject to the terms of either the GNU
+General Public License Version 3 only ("GPL") or the Common
+Development and Distribution License("CDDL") (collectively, the
+"License"). You may not use this file except in compliance with the
+License. You can obtain a copy of the License at
+http://gephi.org/about/legal/license-notice/
+or /cddl-1.0.txt and /gpl-3.0.txt. See the License for the
+specific language governing permissions and limitations under the
+License.  When distributing the software, include this License Header
+Notice in each file and include the License files at
+/cddl-1.0.txt and /gpl-3.0.txt. If applicable, add the following below the
+License Header, with the fields enclosed by brackets [] replaced by
+your own identifying information:
+"Portions Copyrighted [year] [name of copyright owner]"
+
+If you wish your version of this file to be governed by only the CDDL
+or only the GPL Version 3, indicate your decision by adding
+"[Contributor] elects to include this software in this distribution
+under the [CDDL or GPL Version 3] license." If you do not indicate a
+single choice of license, a recipient has the option to distribute
+your version of this file under either the CDDL, the GPL Version 3 or
+to extend the choice of license to its licensees as provided above.
+However, if you add GPL Version 3 code and therefore, elected the GPL
+Version 3 license, then the option applies only if the new code is
+made subject to such option by the copyright holder.
+
+Contributor(s):
+
+Portions Copyrighted 2011 Gephi Consortium.
+ */
+package org.gephi.io.importer.impl;
+
+import gnu.trove.TLongHashSet;
+import gnu.trove.TObjectIntHashMap;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import org.gephi.io.importer.api.EdgeDefault;
+import org.gephi.io.importer.api.EdgeDraft;
+import org.gephi.io.importer.api.EdgeDraft.EdgeType;
+import org.gephi.io.importer.api.EdgeDraftGetter;
+import org.gephi.io.importer.api.Issue;
+import org.gephi.io.importer.api.Issue.Level;
+import org.gephi.io.importer.api.NodeDraft;
+import org.gephi.io.importer.api.NodeDraftGetter;
+import org.gephi.io.processor.spi.StreamingProcessor;
+import org.openide.util.NbBundle;
+
+/**
+ * Container that doesn't keep drafts but pushes them by batches, through a
+ * bounded channel, to a <code>StreamingProcessor</code> running on another
+ * thread. Only node ids, source/target pairs and edge ids set by the importer
+ * are kept, to detect duplicated nodes, parallel edges and duplicated edge
+ * ids, so memory used by the import is roughly the size of the final graph.
+ * <p>
+ * A draft can still be modified after it has been added, until the next
+ * batch is sent, which happens when a draft is added to a full batch. The
+ * last added draft is therefore always safe to modify. For nodes already
+ * sent, <code>getNode()</code> returns a new draft that only has an id, and
+ * what is set on it before the next batch is sent updates the node.
+ * <p>
+ * Edges are not kept, so they can't be looked up or removed, and
+ * <code>getNodes()</code> and <code>getEdges()</code> are empty. For the same
+ * reason, an edge whose id is already used is dropped with a warning instead
+ * of being merged with the existing edge, and attributes of parallel edges
+ * are never merged, <code>isMergeParallelEdgesAttributes()</code> is ignored.
+ * Parallel edge weights are still summed if
+ * <code>isMergeParallelEdgesWeight()</code> is set. Only importers
+ * that don't rely on it, i.e. implementing <code>StreamingImporter</code>,
+ * are to be used with this container.
+ *
+ * @see org.gephi.io.importer.spi.StreamingImporter
+ */
+public class StreamingImportContainer extends ImportContainerImpl {
+
+    public static final int BATCH_SIZE = 1024;
+    private static final int CHANNEL_CAPACITY = 4;
+    //Operations
+    private static final byte ADD_NODE = 0;
+    private static final byte ADD_EDGE = 1;
+    private static final byte MERGE_EDGE_SUM = 2;
+    private static final byte MERGE_EDGE_MAX = 3;
+    private static final Batch END = new Batch();
+    private static final Batch ABORT = new Batch();
+    //Channel
+    private final BlockingQueue<Batch> channel;
+    private Batch batch;
+    private final HashMap<String, NodeDraftImpl> batchNodes;
+    private final HashMap<String, NodeDraftImpl> batchUpdates;
+    private volatile Throwable processorError;
+    private boolean closed = false;
+    //Ids
+    private final TObjectIntHashMap<String> nodeIndex;
+    private final TLongHashSet directedEdges;
+    private final TLongHashSet undirectedEdges;
+    private final Set<String> edgeIds;
+
+    public StreamingImportContainer() {
+        channel = new ArrayBlockingQueue<Batch>(CHANNEL_CAPACITY);
+        batch = new Batch();
+        batchNodes = new HashMap<String, NodeDraftImpl>();
+        batchUpdates = new HashMap<String, NodeDraftImpl>();
+        nodeIndex = new TObjectIntHashMap<String>();
+        directedEdges = new TLongHashSet();
+        undirectedEdges = new TLongHashSet();
+        edgeIds = new HashSet<String>();
+    }
+
+    @Override
+    public void addNode(NodeDraft nodeDraft) {
+        if (nodeDraft == null) {
+            throw new NullPointerException();
+        }
+        NodeDraftImpl nodeDraftImpl = (NodeDraftImpl) nodeDraft;
+
+        if (nodeIndex.containsKey(nodeDraftImpl.getId())) {
+            String message = NbBundle.getMessage(ImportContainerImpl.class, "ImportContainerException_nodeExist", nodeDraftImpl.getId());
+            getReport().logIssue(new Issue(message, Level.WARNING));
+            return;
+        }
+        nodeIndex.put(nodeDraftImpl.getId(), nodeIndex.size());
+        push(nodeDraftImpl, ADD_NODE);
+        batchNodes.put(nodeDraftImpl.getId(), nodeDraftImpl);
+    }
+
+    @Override
+    public NodeDraftImpl getNode(String id) {
+        if (id == null || id.isEmpty()) {
+            throw new NullPointerException();
+        }
+        NodeDraftImpl node = batchNodes.get(id);
+        if (node == null) {
+            node = batchUpdates.get(id);
+        }
+        if (node == null) {
+            if (nodeIndex.containsKey(id)) {
+                //Already sent, what is set on the new draft updates the node when the batch is sent
+                node = new NodeDraftImpl(this, id);
+                node.setId(id);
+                batchUpdates.put(id, node);
+            } else if (allowAutoNode()) {
+                //Creates the missing node
+                node = (NodeDraftImpl) factory().newNodeDraft();
+                node.setId(id);
+                addNode(node);
+                node.setCreatedAuto(true);
+                getReport().logIssue(new Issue("Unknown node id, creates node from id='" + id + "'", Level.INFO));
+            } else {
+                String message = NbBundle.getMessage(ImportContainerImpl.class, "ImportContainerException_UnknowNodeId", id);
+                getReport().logIssue(new Issue(message, Level.SEVERE));
+            }
+        }
+        return node;
+    }
+
+    @Override
+    public boolean nodeExists(String id) {
+        if (id == null || id.isEmpty()) {
+            throw new NullPointerException();
+        }
+        return nodeIndex.containsKey(id);
+    }
+
+    @Override
+    public void addEdge(EdgeDraft edgeDraft) {
+        if (edgeDraft == null) {
+            throw new NullPointerException();
+        }
+        EdgeDraftImpl edgeDraftImpl = (EdgeDraftImpl) edgeDraft;
+        if (edgeDraftImpl.getSource() == null || !nodeIndex.containsKey(edgeDraftImpl.getSource().getId())) {
+            String message = NbBundle.getMessage(ImportContainerImpl.class, "ImportContainerException_MissingNodeSource");
+            getReport().logIssue(new Issue(message, Level.SEVERE));
+            return;
+        }
+        if (edgeDraftImpl.getTarget() == null || !nodeIndex.containsKey(edgeDraftImpl.getTarget().getId())) {
+            String message = NbBundle.getMessage(ImportContainerImpl.class, "ImportContainerException_MissingNodeTarget");
+            getReport().logIssue(new Issue(message, Level.SEVERE));
+            return;
+        }
+
+        //Self loop
+        if (edgeDraftImpl.getSource().getId().equals(edgeDraftImpl.getTarget().getId()) && !allowSelfLoop()) {
+            String message = NbBundle.getMessage(ImportContainerImpl.class, "ImportContainerException_SelfLoop");
+            getReport().logIssue(new Issue(message, Level.SEVERE));
+            return;
+        }
+
+        //Weight zero
+        if (edgeDraftImpl.getWeight() <= 0f && getParameters().isRemoveEdgeWithWeightZero()) {
+            getReport().logIssue(new Issue(NbBundle.getMessage(ImportContainerImpl.class, "ImportContainerException_Weight_Zero_Ignored", edgeDraftImpl.getId()), Level.SEVERE));
+            return;
+        }
+
+        //Edges without type follow the default, as the type can't be decided after all edges are known
+        if (edgeDraftImpl.getType() == null) {
+            edgeDraftImpl.setType(getEdgeDefault().equals(EdgeDefault.DIRECTED) ? EdgeType.DIRECTED : EdgeType.UNDIRECTED);
+        } else if ((getEdgeDefault().equals(EdgeDefault.DIRECTED) && edgeDraftImpl.getType().equals(EdgeType.UNDIRECTED))
+                || (getEdgeDefault().equals(EdgeDefault.UNDIRECTED) && edgeDraftImpl.getType().equals(EdgeType.DIRECTED))) {
+            getReport().logIssue(new Issue(NbBundle.getMessage(ImportContainerImpl.class, "ImportContainerException_Bad_Edge_Type"), Level.WARNING));
+        }
+
+        //Generated ids are unique, only ids set by the importer are checked
+        if (!edgeDraftImpl.isAutoId() && edgeIds.contains(edgeDraftImpl.getId())) {
+            getReport().logIssue(new Issue(NbBundle.getMessage(ImportContainerImpl.class, "ImportContainerException_edgeIdExist", edgeDraftImpl.getId()), Level.WARNING));
+            return;
+        }
+
+        long sourceIndex = nodeIndex.get(edgeDraftImpl.getSource().getId());
+        long targetIndex = nodeIndex.get(edgeDraftImpl.getTarget().getId());
+        long key = sourceIndex << 32 | targetIndex;
+        long oppositeKey = targetIndex << 32 | sourceIndex;
+        switch (edgeDraftImpl.getType()) {
+            case DIRECTED:
+                if (directedEdges.contains(key)) {
+                    addParallelEdge(edgeDraftImpl);
+                    return;
+                }
+                directedEdges.add(key);
+                break;
+            case UNDIRECTED:
+                if (undirectedEdges.contains(key)) {
+                    addParallelEdge(edgeDraftImpl);
+                    return;
+                } else if (undirectedEdges.contains(oppositeKey)) {
+                    //Opposite edges are merged in undirected graphs
+                    push(edgeDraftImpl, getParameters().isUndirectedSumDirectedEdgesWeight() ? MERGE_EDGE_SUM : MERGE_EDGE_MAX);
+                    return;
+                }
+                undirectedEdges.add(key);
+                break;
+            case MUTUAL:
+                if (directedEdges.contains(key) || directedEdges.contains(oppositeKey)) {
+                    addParallelEdge(edgeDraftImpl);
+                    return;
+                }
+                directedEdges.add(key);
+                directedEdges.add(oppositeKey);
+                break;
+        }
+        if (!edgeDraftImpl.isAutoId()) {
+            edgeIds.add(edgeDraftImpl.getId());
+        }
+        push(edgeDraftImpl, ADD_EDGE);
+    }
+
+    private void addParallelEdge(EdgeDraftImpl edgeDraftImpl) {
+        if (!allowParallelEdges()) {
+            getReport().logIssue(new Issue(NbBundle.getMessage(ImportContainerImpl.class, "ImportContainerException_edgeExist"), Level.WARNING));
+            return;
+        }
+        if (getParameters().isMergeParallelEdgesWeight()) {
+            push(edgeDraftImpl, MERGE_EDGE_SUM);
+        }
+        getReport().logIssue(new Issue(NbBundle.getMessage(ImportContainerImpl.class, "ImportContainerException_Parallel_Edge", edgeDraftImpl.getId()), Level.INFO));
+    }
+
+    @Override
+    public boolean edgeExists(NodeDraft source, NodeDraft target) {
+        if (source == null || target == null) {
+            throw new NullPointerException();
+        }
+        String sourceId = ((NodeDraftImpl) source).getId();
+        String targetId = ((NodeDraftImpl) target).getId();
+        if (!nodeIndex.containsKey(sourceId) || !nodeIndex.containsKey(targetId)) {
+            return false;
+        }
+        long key = (long) nodeIndex.get(sourceId) << 32 | nodeIndex.get(targetId);
+        return directedEdges.contains(key) || undirectedEdges.contains(key);
+    }
+
+    @Override
+    public boolean verify() {
+        //Drafts are verified before being sent
+        return true;
+    }
+
+    /**
+     * Sends the last batch and signals the end of the import to the
+     * processor.
+     */
+    @Override
+    public void closeLoader() {
+        if (!closed) {
+            closed = true;
+            if (batch.count > 0 || !batchUpdates.isEmpty()) {
+                sendBatch();
+            }
+            send(END);
+            batch = null;
+        }
+    }
+
+    /**
+     * Drops drafts not sent yet and signals the processor the import failed
+     * or was cancelled, so it removes what it already added.
+     */
+    public void abortLoader() {
+        if (!closed) {
+            closed = true;
+            batch = null;
+            batchNodes.clear();
+            batchUpdates.clear();
+            if (processorError == null) {
+                try {
+                    while (!channel.offer(ABORT, 100, TimeUnit.MILLISECONDS)) {
+                        if (processorError != null) {
+                            break;
+                        }
+                    }
+                } catch (InterruptedException ex) {
+                    throw new RuntimeException(ex);
+                }
+            }
+        }
+    }
+
+    /**
+     * Receives batches until the loader is closed and pushes their drafts
+     * to <code>processor</code>. To be called from the processing thread,
+     * while the importer runs on another thread. If the loader is aborted or
+     * the processor fails, the processor is cancelled.
+     * @param processor the processor that receives drafts
+     */
+    public void unload(StreamingProcessor processor) {
+        boolean begun = false;
+        try {
+            //Begins once the first batch is sent, when the importer has declared columns and settings
+            Batch b = channel.take();
+            if (b == ABORT) {
+                return;
+            }
+            processor.begin();
+            begun = true;
+            for (; b != END && b != ABORT; b = channel.take()) {
+                for (int i = 0; i < b.count; i++) {
+                    switch (b.operations[i]) {
+                        case ADD_NODE:
+                            processor.addNode((NodeDraftGetter) b.drafts[i]);
+                            break;
+                        case ADD_EDGE:
+                            processor.addEdge((EdgeDraftGetter) b.drafts[i]);
+                            break;
+                        case MERGE_EDGE_SUM:
+                            processor.mergeEdge((EdgeDraftGetter) b.drafts[i], true);
+                            break;
+                        case MERGE_EDGE_MAX:
+                            processor.mergeEdge((EdgeDraftGetter) b.drafts[i], false);
+                            break;
+                    }
+                }
+                //Updated nodes were sent in previous batches, and may have moved to a node of this batch
+                for (NodeDraftImpl node : b.updates) {
+                    processor.updateNode(node);
+                }
+            }
+            if (b == END) {
+                processor.end();
+            } else {
+                processor.cancel();
+            }
+        } catch (Throwable t) {
+            if (begun) {
+                try {
+                    processor.cancel();
+                } catch (Throwable c) {
+                    //The first error is the one rethrown to the importer
+                    Logger.getLogger(StreamingImportContainer.class.getName()).log(java.util.logging.Level.WARNING, "Streaming processor failed to cancel", c);
+                }
+            }
+            processorError = t;
+        }
+    }
+
+    /**
+     * Returns the error that stopped the processing thread, or
+     * <code>null</code>.
+     */
+    public Throwable getProcessorError() {
+        return processorError;
+    }
+
+    private void push(Object draft, byte operation) {
+        if (closed) {
+            throw new IllegalStateException("The loader is closed");
+        }
+        if (batch.count == BATCH_SIZE) {
+            //The last added draft may still be modified, so the batch is sent when full only
+            sendBatch();
+            batch = new Batch();
+        }
+        batch.drafts[batch.count] = draft;
+        batch.operations[batch.count] = operation;
+        batch.count++;
+    }
+
+    private void sendBatch() {
+        //Only updates that set something are sent
+        for (NodeDraftImpl node : batchUpdates.values()) {
+            if (isUpdated(node)) {
+                batch.updates.add(node);
+            }
+        }
+        batchNodes.clear();
+        batchUpdates.clear();
+        complete(batch);
+        send(batch);
+    }
+
+    private void send(Batch b) {
+        try {
+            while (!channel.offer(b, 100, TimeUnit.MILLISECONDS)) {
+                if (processorError != null) {
+                    break;
+                }
+            }
+        } catch (InterruptedException ex) {
+            throw new RuntimeException(ex);
+        }
+        if (processorError != null) {
+            throw new RuntimeException(processorError);
+        }
+    }
+
+    private boolean isUpdated(NodeDraftImpl node) {
+        return node.getLabel() != null || node.getColor() != null || node.getSize() != 0f
+                || node.getX() != 0f || node.getY() != 0f || node.getZ() != 0f
+                || node.getLabelColor() != null || node.getLabelSize() != -1f || !node.isLabelVisible()
+                || node.getTimeInterval() != null || node.getParents() != null || node.hasAttributeRow();
+    }
+
+    /**
+     * Does what <code>verify()</code> and <code>closeLoader()</code> do on
+     * complete containers, draft by draft.
+     */
+    private void complete(Batch b) {
+        boolean bounds = getTimeIntervalMin() != null || getTimeIntervalMax() != null;
+        for (int i = 0; i < b.count; i++) {
+            if (b.operations[i] == ADD_NODE) {
+                NodeDraftImpl node = (NodeDraftImpl) b.drafts[i];
+                if (node.getLabel() == null) {
+                    node.setLabel(node.getId());
+                }
+                if (Float.isNaN(node.getX())) {
+                    node.setX(0);
+                }
+                if (Float.isNaN(node.getY())) {
+                    node.setY(0);
+                }
+                if (Float.isNaN(node.getZ())) {
+                    node.setZ(0);
+                }
+                if (node.getX() == 0f && node.getY() == 0f) {
+                    node.setX((float) ((0.01 + Math.random()) * 1000) - 500);
+                    node.setY((float) ((0.01 + Math.random()) * 1000) - 500);
+                }
+                if (node.getTimeInterval() != null) {
+                    setDynamicGraph(true);
+                }
+                if (getParameters().isRemoveIntervalsOverlapping()) {
+                    removeOverlapping(node.getAttributeRow());
+                }
+                if (bounds && fitToTimeInterval(node)) {
+                    getReport().logIssue(new Issue(NbBundle.getMessage(ImportContainerImpl.class, "ImportContainerException_TimeIntervalVerify_Node_OutOfBound", node.getId()), Level.WARNING));
+                }
+            } else {
+                EdgeDraftImpl edge = (EdgeDraftImpl) b.drafts[i];
+                if (edge.getTimeInterval() != null) {
+                    setDynamicGraph(true);
+                }
+                if (getParameters().isRemoveIntervalsOverlapping()) {
+                    removeOverlapping(edge.getAttributeRow());
+                }
+                if (bounds && fitToTimeInterval(edge)) {
+                    getReport().logIssue(new Issue(NbBundle.getMessage(ImportContainerImpl.class, "ImportContainerException_TimeIntervalVerify_Edge_OutOfBound", edge.getId()), Level.WARNING));
+                }
+            }
+        }
+        for (NodeDraftImpl node : b.updates) {
+            if (node.getTimeInterval() != null) {
+                setDynamicGraph(true);
+            }
+            if (node.hasAttributeRow() && getParameters().isRemoveIntervalsOverlapping()) {
+                removeOverlapping(node.getAttributeRow());
+            }
+            if (bounds && fitToTimeInterval(node)) {
+                getReport().logIssue(new Issue(NbBundle.getMessage(ImportContainerImpl.class, "ImportContainerException_TimeIntervalVerify_Node_OutOfBound", node.getId()), Level.WARNING));
+            }
+        }
+    }
+
+    private static class Batch {
+
+        private final Object[] drafts = new Object[BATCH_SIZE];
+        private final byte[] operations = new byte[BATCH_SIZE];
+        private int count;
+        private final List<NodeDraftImpl> updates = new ArrayList<NodeDraftImpl>();
+    }
+}
@@ -0,0 +1,57 @@
+/*
+Copyright 2008-2010 Gephi
+Website : http://www.gephi.org
+
+This file is part of Gephi.
+
+DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+
+Copyright 2011 Gephi Consortium. All rights reserved.
+
+The contents of this file are subject to the terms of either the GNU
+General Public License Version 3 only ("GPL") or the Common
+Development and Distribution License("CDDL") (collectively, the
+"License"). You may not use this file except in compliance with the
+License. You can obtain a copy of the License at
+http://gephi.org/about/legal/license-notice/
+or /cddl-1.0.txt and /gpl-3.0.txt. See the License for the
+specific language governing permissions and limitations under the
+License.  When distributing the software, include this License Header
+Notice in each file and include the License files at
+/cddl-1.0.txt and /gpl-3.0.txt. If applicable, add the following below the
+License Header, with the fields enclosed by brackets [] replaced by
+your own identifying information:
+"Portions Copyrighted [year] [name of copyright owner]"
+
+If you wish your version of this file to be governed by only the CDDL
+or only the GPL Version 3, indicate your decision by adding
+"[Contributor] elects to include this software in this distribution
+under the [CDDL or GPL Version 3] license." If you do not indicate a
+single choice of license, a recipient has the option to distribute
+your version of this file under either the CDDL, the GPL Version 3 or
+to extend the choice of license to its licensees as provided above.
+However, if you add GPL Version 3 code and therefore, elected the GPL
+Version 3 license, then the option applies only if the new code is
+made subject to such option by the copyright holder.
+
+Contributor(s):
+
+Portions Copyrighted 2011 Gephi Consortium.
+*/
+package org.gephi.io.importer.spi;
+
+/**
+ * File importers that can be streamed, i.e. whose nodes and edges can be
+ * pushed to the workspace while the file is read, without being kept in the
+ * container.
+ * <p>
+ * Streaming importers only add drafts to the container. They don't look
+ * edges up, remove them or iterate over drafts: the container doesn't keep
+ * them, so <code>getEdge()</code> finds nothing and <code>removeEdge()</code>
+ * does nothing. A draft can be modified until the next draft is added. To
+ * modify a node later, it must be retrieved again with <code>getNode()</code>.
+ *
+ * @see org.gephi.io.importer.api.ImportController#importFileStreaming(java.io.Reader, FileImporter, org.gephi.project.api.Workspace)
+ */
+public interface StreamingImporter extends FileImporter {
+}
@@ -0,0 +1,140 @@
+/*
+Copyright 2008-2010 Gephi
+Website : http://www.gephi.org
+
+This file is part of Gephi.
+
+DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+
+Copyright 2011 Gephi Consortium. All rights reserved.
+
+The contents of this file are subject to the terms of either the GNU
+General Public License Version 3 only ("GPL") or the Common
+Development and Distribution License("CDDL") (collectively, the
+"License"). You may not use this file except in compliance with the
+License. You can obtain a copy of the License at
+http://gephi.org/about/legal/license-notice/
+or /cddl-1.0.txt and /gpl-3.0.txt. See the License for the
+specific language governing permissions and limitations under the
+License.  When distributing the software, include this License Header
+Notice in each file and include the License files at
+/cddl-1.0.txt and /gpl-3.0.txt. If applicable, add the following below the
+License Header, with the fields enclosed by brackets [] replaced by
+your own identifying information:
+"Portions Copyrighted [year] [name of copyright owner]"
+
+If you wish your version of this file to be governed by only the CDDL
+or only the GPL Version 3, indicate your decision by adding
+"[Contributor] elects to include this software in this distribution
+under the [CDDL or GPL Version 3] license." If you do not indicate a
+single choice of license, a recipient has the option to distribute
+your version of this file under either the CDDL, the GPL Version 3 or
+to extend the choice of license to its licensees as provided above.
+However, if you add GPL Version 3 code and therefore, elected the GPL
+Version 3 license, then the option applies only if the new code is
+made subject to such option by the copyright holder.
+
+Contributor(s):
+
+Portions Copyrighted 2011 Gephi Consortium.
+*/
+package org.gephi.io.processor.spi;
+
+import org.gephi.io.importer.api.ContainerUnloader;
+import org.gephi.io.importer.api.EdgeDraftGetter;
+import org.gephi.io.importer.api.ImportController;
+import org.gephi.io.importer.api.NodeDraftGetter;
+import org.gephi.io.importer.api.Report;
+import org.gephi.project.api.Workspace;
+
+/**
+ * Processor that receives nodes and edges <b>while</b> they are imported,
+ * instead of unloading a complete container afterwards.
+ * <p>
+ * Streaming processors are used by
+ * {@link ImportController#importFileStreaming(java.io.Reader, org.gephi.io.importer.spi.FileImporter, StreamingProcessor, Workspace)}.
+ * Drafts are pushed by batches from the importer thread and received on
+ * a separate thread, in the order they were added to the container. Drafts
+ * are already verified: duplicated nodes, parallel edges and self loops have
+ * been handled according to the container parameters. Nodes are always
+ * received before the edges and children nodes that refer to them.
+ * <p>
+ * As drafts are not kept by the container, the processor can't look back
+ * at drafts it already received. Parents and edges extremities that were
+ * received in a previous batch are given as drafts that only have an id.
+ * Nodes modified by the importer after their batch was sent are received
+ * again with <code>updateNode()</code>.
+ *
+ * @see ImportController
+ */
+public interface StreamingProcessor {
+
+    /**
+     * Sets the data container. Only the container settings, the attribute
+     * model and the time format are available, nodes and edges are given
+     * one by one.
+     * @param container the container where settings are
+     */
+    public void setContainer(ContainerUnloader container);
+
+    /**
+     * Sets the destination workspace. If no workspace is provided, a new
+     * workspace will be created.
+     * @param workspace the workspace where data are to be pushed
+     */
+    public void setWorkspace(Workspace workspace);
+
+    /**
+     * Sets the report where issues found while processing are logged. The
+     * report is shared with the importer thread.
+     * @param report the import report
+     */
+    public void setReport(Report report);
+
+    /**
+     * Called once, before the first node or edge is received.
+     */
+    public void begin();
+
+    /**
+     * Adds <code>node</code> to the workspace.
+     * @param node the node draft to add
+     */
+    public void addNode(NodeDraftGetter node);
+
+    /**
+     * Adds <code>edge</code> to the workspace. Mutual edges are added in
+     * both directions.
+     * @param edge the edge draft to add
+     */
+    public void addEdge(EdgeDraftGetter edge);
+
+    /**
+     * Merges <code>edge</code> in the edge that already exists between its
+     * source and its target, in any direction.
+     * @param edge          the parallel edge draft
+     * @param sumWeights    <code>true</code> if weights are to be summed,
+     * <code>false</code> to keep the maximum weight
+     */
+    public void mergeEdge(EdgeDraftGetter edge, boolean sumWeights);
+
+    /**
+     * Updates the node already added with <code>node</code> id. Only what
+     * was set on <code>node</code> is to be updated: the label if not
+     * <code>null</code>, the position if not zero, the parent if any, and
+     * so on.
+     * @param node the node draft holding new values
+     */
+    public void updateNode(NodeDraftGetter node);
+
+    /**
+     * Called once, after the last node or edge has been received.
+     */
+    public void end();
+
+    /**
+     * Called instead of <code>end()</code> when the import failed or was
+     * cancelled. Removes what was added since <code>begin()</code>.
+     */
+    public void cancel();
+}
@@ -0,0 +1,875 @@
+/*
+Copyright 2008-2010 Gephi
+Website : http://www.gephi.org
+
+This file is part of Gephi.
+
+DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+
+Copyright 2011 Gephi Consortium. All rights reserved.
+
+The contents of this file are subject to the terms of either the GNU
+General Public License Version 3 only ("GPL") or the Common
+Development and Distribution License("CDDL") (collectively, the
+"License"). You may not use this file except in compliance with the
+License. You can obtain a copy of the License at
+http://gephi.org/about/legal/license-notice/
+or /cddl-1.0.txt and /gpl-3.0.txt. See the License for the
+specific language governing permissions and limitations under the
+License.  When distributing the software, include this License Header
+Notice in each file and include the License files at
+/cddl-1.0.txt and /gpl-3.0.txt. If applicable, add the following below the
+License Header, with the fields enclosed by brackets [] replaced by
+your own identifying information:
+"Portions Copyrighted [year] [name of copyright owner]"
+
+If you wish your version of this file to be governed by only the CDDL
+or only the GPL Version 3, indicate your decision by adding
+"[Contributor] elects to include this software in this distribution
+under the [CDDL or GPL Version 3] license." If you do not indicate a
+single choice of license, a recipient has the option to distribute
+your version of this file under either the CDDL, the GPL Version 3 or
+to extend the choice of license to its licensees as provided above.
+However, if you add GPL Version 3 code and therefore, elected the GPL
+Version 3 license, then the option applies only if the new code is
+made subject to such option by the copyright holder.
+
+Contributor(s):
+
+Portions Copyrighted 2011 Gephi Consortium.
+ */
+package org.gephi.io.importer.plugin.file;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.gephi.io.importer.api.ContainerLoader;
+import org.gephi.io.importer.api.EdgeDraft;
+import org.gephi.io.importer.api.ImportUtils;
+import org.gephi.io.importer.api.Issue;
+import org.gephi.io.importer.api.NodeDraft;
+import org.gephi.io.importer.api.Report;
+import org.gephi.io.importer.spi.FileAwareImporter;
+import org.gephi.io.importer.spi.StreamingImporter;
+import org.gephi.utils.longtask.spi.LongTask;
+import org.gephi.utils.progress.Progress;
+import org.gephi.utils.progress.ProgressTicket;
+import org.openide.util.NbBundle;
+
+/**
+ * Importer for large edge and adjacency lists in delimited text. The first
+ * field of each line is the source node and the following fields are target
+ * nodes, like <code>ImporterCSV</code> does. In weighted mode, lines are
+ * <code>source, target, weight</code> instead.
+ * <p>
+ * The text is cut in chunks aligned on line ends, memory-mapped when the file
+ * is known, and chunks are tokenized in parallel by a byte tokenizer. Fields
+ * can be quoted with <code>"</code> or <code>'</code>, but can't span several
+ * lines. Tokenized chunks are then pushed to the container in order, node ids
+ * being interned in a map that only creates a string the first time an id is
+ * seen. Nodes are then found back by their index, without id lookups. Files
+ * are mapped only if their first megabyte is valid UTF-8, otherwise the
+ * reader and its detected charset are used. Invalid UTF-8 found further in a
+ * mapped file is decoded with replacement characters and reported.
+ * <p>
+ * Adjacency matrices, whose first line starts with <code>;</code>, are read
+ * by <code>ImporterCSV</code>.
+ */
+public class ImporterDelimitedText implements FileAwareImporter, StreamingImporter, LongTask {
+
+    public static final int DEFAULT_CHUNK_SIZE = 8 * 1024 * 1024;
+    private static final int MATRIX_LOOKAHEAD = 4096;
+    static final int UTF8_LOOKAHEAD = 1024 * 1024;
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    //Architecture
+    private Reader reader;
+    private File file;
+    private ContainerLoader container;
+    private Report report;
+    private ProgressTicket progressTicket;
+    private volatile boolean cancel = false;
+    //Settings
+    private char delimiter = 0;
+    private boolean weighted = false;
+    private int chunkSize = DEFAULT_CHUNK_SIZE;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    //Data
+    private IdMap ids;
+    private NodeDraft[] nodes;
+    private long rowCount;
+    private boolean malformedReported;
+    private ImporterCSV matrixImporter;
+
+    public boolean execute(ContainerLoader container) {
+        this.container = container;
+        this.report = new Report();
+        this.ids = new IdMap();
+        this.nodes = new NodeDraft[512];
+        this.rowCount = 0;
+        this.malformedReported = false;
+
+        long start = System.currentTimeMillis();
+        ChunkSource source = null;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            boolean mapped = file != null && file.isFile() && file.canRead() && isUtf8(file);
+            boolean matrix;
+            if (mapped) {
+                Reader headReader = new BufferedReader(new InputStreamReader(new FileInputStream(file), UTF8));
+                try {
+                    matrix = isMatrix(headReader);
+                } finally {
+                    headReader.close();
+                }
+            } else {
+                if (reader == null) {
+                    reader = ImportUtils.getTextReader(new FileInputStream(file));
+                } else if (!reader.markSupported()) {
+                    reader = new BufferedReader(reader);
+                }
+                matrix = isMatrix(reader);
+            }
+            if (matrix) {
+                ids = null;
+                nodes = null;
+                return importMatrix(container);
+            }
+
+            Progress.start(progressTicket);        //Progress
+            if (mapped) {
+                source = new MappedChunkSource(file, chunkSize);
+                Progress.switchToDeterminate(progressTicket, (int) (file.length() / 1024) + 1);
+            } else {
+                source = new ReaderChunkSource(reader, chunkSize);
+            }
+            importData(source, executor);
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        } finally {
+            executor.shutdownNow();
+            if (source != null) {
+                source.close();
+            }
+        }
+
+        //Throughput
+        if (source != null) {
+            double seconds = Math.max(1, System.currentTimeMillis() - start) / 1000.0;
+            double megabytes = source.getByteCount() / (1024.0 * 1024.0);
+            report.log(NbBundle.getMessage(ImporterDelimitedText.class, "importerDelimitedText_log_throughput",
+                    new Object[]{String.format("%.1f", megabytes), rowCount, String.format("%.2f", seconds),
+                        String.format("%.1f", megabytes / seconds), String.format("%.0f", rowCount / seconds)}));
+        }
+        ids = null;
+        nodes = null;
+        return !cancel;
+    }
+
+    private void importData(ChunkSource source, ExecutorService executor) throws Exception {
+        //Chunks are tokenized in parallel but loaded in order, with a bounded number in flight
+        LinkedList<Future<Chunk>> pending = new LinkedList<Future<Chunk>>();
+        ByteBuffer buffer;
+        while (!cancel && (buffer = source.next()) != null) {
+            if (delimiter == 0) {
+                delimiter = detectDelimiter(buffer);
+            }
+            final ByteBuffer chunkBuffer = buffer;
+            final byte chunkDelimiter = (byte) delimiter;
+            final boolean chunkWeighted = weighted;
+            pending.add(executor.submit(new Callable<Chunk>() {
+
+                public Chunk call() throws Exception {
+                    return tokenize(chunkBuffer, chunkDelimiter, chunkWeighted);
+                }
+            }));
+            if (pending.size() >= 2 * threads) {
+                load(get(pending.removeFirst()));
+                Progress.progress(progressTicket, (int) (source.getByteCount() / 1024));
+            }
+        }
+        while (!cancel && !pending.isEmpty()) {
+            load(get(pending.removeFirst()));
+            Progress.progress(progressTicket, (int) (source.getByteCount() / 1024));
+        }
+    }
+
+    /**
+     * Returns <code>true</code> if the first non-empty line starts with
+     * <code>;</code>, like the adjacency matrices <code>ImporterCSV</code>
+     * reads. The reader is reset to its current position.
+     */
+    static boolean isMatrix(Reader reader) throws IOException {
+        reader.mark(MATRIX_LOOKAHEAD);
+        try {
+            for (int i = 0; i < MATRIX_LOOKAHEAD; i++) {
+                int c = reader.read();
+                if (c != '\uFEFF' && c != '\r' && c != '\n') {
+                    return c == ';';
+                }
+            }
+            return false;
+        } finally {
+            reader.reset();
+        }
+    }
+
+    private boolean importMatrix(ContainerLoader container) throws IOException {
+        Reader matrixReader = reader != null ? reader : ImportUtils.getTextReader(new FileInputStream(file));
+        try {
+            matrixImporter = new ImporterCSV();
+            matrixImporter.setProgressTicket(progressTicket);
+            matrixImporter.setReader(matrixReader);
+            boolean result = matrixImporter.execute(container);
+            report = matrixImporter.getReport();
+            return result;
+        } finally {
+            if (matrixReader != reader) {
+                matrixReader.close();
+            }
+        }
+    }
+
+    /**
+     * Checks that the first <code>UTF8_LOOKAHEAD</code> bytes of
+     * <code>file</code> are valid UTF-8, up to their last line end.
+     */
+    private static boolean isUtf8(File file) throws IOException {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = randomAccessFile.getChannel();
+            long size = channel.size();
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(size, UTF8_LOOKAHEAD));
+            if (size > UTF8_LOOKAHEAD) {
+                //Don't cut a sequence, a line longer than the prefix is read with the reader
+                int end = buffer.limit() - 1;
+                while (end >= 0 && buffer.get(end) != '\n') {
+                    end--;
+                }
+                buffer.limit(end + 1);
+            }
+            return isUtf8(buffer);
+        } finally {
+            close(randomAccessFile);
+        }
+    }
+
+    /**
+     * Returns <code>true</code> if <code>buffer</code> only contains complete
+     * and well-formed UTF-8 sequences.
+     */
+    static boolean isUtf8(ByteBuffer buffer) {
+        int pos = buffer.position();
+        int limit = buffer.limit();
+        while (pos < limit) {
+            int b = buffer.get(pos++) & 0xFF;
+            if (b < 0x80) {
+                continue;
+            }
+            int length;
+            if (b >= 0xC2 && b <= 0xDF) {
+                length = 1;
+            } else if (b >= 0xE0 && b <= 0xEF) {
+                length = 2;
+            } else if (b >= 0xF0 && b <= 0xF4) {
+                length = 3;
+            } else {
+                return false;
+            }
+            if (pos + length > limit) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if ((buffer.get(pos++) & 0xC0) != 0x80) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static void close(RandomAccessFile randomAccessFile) {
+        try {
+            randomAccessFile.close();
+        } catch (IOException ex) {
+            //The file was only read, nothing is lost
+            Logger.getLogger(ImporterDelimitedText.class.getName()).log(Level.WARNING, "Failed to close the mapped file", ex);
+        }
+    }
+
+    private <T> T get(Future<T> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof Exception) {
+                throw (Exception) ex.getCause();
+            }
+            throw ex;
+        }
+    }
+
+    /**
+     * Returns the first of tab, semicolon or comma found on the first line,
+     * or space if there is none.
+     */
+    static char detectDelimiter(ByteBuffer buffer) {
+        char[] candidates = new char[]{'\t', ';', ','};
+        int end = buffer.limit();
+        for (int i = buffer.position(); i < buffer.limit(); i++) {
+            if (buffer.get(i) == '\n') {
+                end = i;
+                break;
+            }
+        }
+        for (char c : candidates) {
+            for (int i = buffer.position(); i < end; i++) {
+                if (buffer.get(i) == c) {
+                    return c;
+                }
+            }
+        }
+        return ' ';
+    }
+
+    /**
+     * Tokenizes the lines of <code>buffer</code>. Field bytes, without quotes
+     * and surrounding blanks, are copied one after the other and their hash is
+     * computed here, so only lookups remain to be done when loading.
+     */
+    static Chunk tokenize(ByteBuffer buffer, byte delimiter, boolean weighted) {
+        int pos = buffer.position();
+        int limit = buffer.limit();
+        Chunk chunk = new Chunk(limit - pos);
+        byte[] out = chunk.bytes;
+        int outPos = 0;
+        while (pos < limit) {
+            //Row
+            int rowStart = chunk.tokenCount;
+            boolean endOfLine = false;
+            while (!endOfLine && pos < limit) {
+                //Skip leading blanks
+                byte b = buffer.get(pos);
+                while (isBlank(b, delimiter) && ++pos < limit) {
+                    b = buffer.get(pos);
+                }
+                int start = outPos;
+                if (pos < limit && (b == '"' || b == '\'')) {
+                    //Quoted field, quotes are escaped by doubling them or with a backslash
+                    byte quote = b;
+                    pos++;
+                    while (pos < limit) {
+                        byte c = buffer.get(pos);
+                        if (c == '\n') {
+                            break;
+                        } else if ((c == '\\' || c == quote) && pos + 1 < limit && buffer.get(pos + 1) == quote) {
+                            out[outPos++] = quote;
+                            pos += 2;
+                        } else if (c == quote) {
+                            pos++;
+                            break;
+                        } else {
+                            out[outPos++] = c;
+                            pos++;
+                        }
+                    }
+                    //Ignore what follows the closing quote
+                    while (pos < limit && buffer.get(pos) != delimiter && buffer.get(pos) != '\n') {
+                        pos++;
+                    }
+                } else {
+                    while (pos < limit) {
+                        byte c = buffer.get(pos);
+                        if (c == delimiter || c == '\n') {
+                            break;
+                        }
+                        out[outPos++] = c;
+                        pos++;
+                    }
+                    while (outPos > start && isBlank(out[outPos - 1], delimiter)) {
+                        outPos--;
+                    }
+                }
+                if (pos < limit && buffer.get(pos) == '\n') {
+                    endOfLine = true;
+                }
+                pos++;
+
+                //Empty and null fields are ignored
+                int length = outPos - start;
+                if (length == 0 || isNull(out, start, length)) {
+                    outPos = start;
+                } else {
+                    chunk.addToken(start, length, hash(out, start, length));
+                }
+            }
+            if (chunk.tokenCount > rowStart) {
+                float weight = 1f;
+                if (weighted && chunk.tokenCount - rowStart > 2) {
+                    int w = rowStart + 2;
+                    try {
+                        weight = Float.parseFloat(new String(out, chunk.tokenStart[w], chunk.tokenLength[w], UTF8));
+                    } catch (NumberFormatException ex) {
+                        weight = Float.NaN;
+                    }
+                }
+                chunk.addRow(weight);
+            }
+        }
+        chunk.utf8 = isUtf8(ByteBuffer.wrap(out, 0, outPos));
+        return chunk;
+    }
+
+    private static boolean isBlank(byte b, byte delimiter) {
+        return b != delimiter && (b == ' ' || b == '\t' || b == '\r');
+    }
+
+    private static boolean isNull(byte[] bytes, int start, int length) {
+        return length == 4
+                && (bytes[start] | 0x20) == 'n'
+                && (bytes[start + 1] | 0x20) == 'u'
+                && (bytes[start + 2] | 0x20) == 'l'
+                && (bytes[start + 3] | 0x20) == 'l';
+    }
+
+    private static int hash(byte[] bytes, int start, int length) {
+        int h = 0;
+        for (int i = start; i < start + length; i++) {
+            h = 31 * h + bytes[i];
+        }
+        return h;
+    }
+
+    private void load(Chunk chunk) {
+        if (!chunk.utf8 && !malformedReported) {
+            report.logIssue(new Issue(NbBundle.getMessage(ImporterDelimitedText.class, "importerDelimitedText_error_encoding"), Issue.Level.WARNING));
+            malformedReported = true;
+        }
+        int token = 0;
+        for (int r = 0; r < chunk.rowCount; r++) {
+            if (cancel) {
+                return;
+            }
+            rowCount++;
+            int rowEnd = chunk.rowEnd[r];
+            int source = intern(chunk, token, true);
+            if (weighted) {
+                if (rowEnd - token > 1) {
+                    float weight = chunk.weight[r];
+                    if (Float.isNaN(weight)) {
+                        report.logIssue(new Issue(NbBundle.getMessage(ImporterDelimitedText.class, "importerDelimitedText_error_weight", rowCount), Issue.Level.WARNING));
+                        weight = 1f;
+                    }
+                    addEdge(source, intern(chunk, token + 1, false), weight);
+                }
+            } else {
+                for (int t = token + 1; t < rowEnd; t++) {
+                    addEdge(source, intern(chunk, t, false), 1f);
+                }
+            }
+            token = rowEnd;
+        }
+    }
+
+    /**
+     * Returns the index of the node id of <code>token</code>, and adds the node
+     * to the container the first time the id is seen. The draft is kept at
+     * the same index in <code>nodes</code>.
+     */
+    private int intern(Chunk chunk, int token, boolean source) {
+        int start = chunk.tokenStart[token];
+        int length = chunk.tokenLength[token];
+        int hash = chunk.tokenHash[token];
+        int index = ids.get(chunk.bytes, start, length, hash);
+        if (index == -1) {
+            index = ids.add(chunk.bytes, start, length, hash);
+            String id = ids.getString(index);
+            NodeDraft node;
+            if (container.nodeExists(id)) {
+                node = container.getNode(id);
+            } else {
+                node = container.factory().newNodeDraft();
+                node.setId(id);
+                if (source) {
+                    node.setLabel(id);
+                }
+                container.addNode(node);
+            }
+            if (index == nodes.length) {
+                nodes = Arrays.copyOf(nodes, index * 2);
+            }
+            nodes[index] = node;
+        }
+        return index;
+    }
+
+    private void addEdge(int source, int target, float weight) {
+        //Parallel edges weights are merged by the container
+        EdgeDraft edge = container.factory().newEdgeDraft();
+        edge.setSource(nodes[source]);
+        edge.setTarget(nodes[target]);
+        edge.setWeight(weight);
+        container.addEdge(edge);
+    }
+
+    public void setReader(Reader reader) {
+        this.reader = reader;
+    }
+
+    public void setFile(File file) {
+        this.file = file;
+    }
+
+    public ContainerLoader getContainer() {
+        return container;
+    }
+
+    public Report getReport() {
+        return report;
+    }
+
+    public boolean cancel() {
+        cancel = true;
+        if (matrixImporter != null) {
+            matrixImporter.cancel();
+        }
+        return true;
+    }
+
+    public void setProgressTicket(ProgressTicket progressTicket) {
+        this.progressTicket = progressTicket;
+    }
+
+    public char getDelimiter() {
+        return delimiter;
+    }
+
+    /**
+     * Sets the field delimiter, or <code>0</code> to detect it from the first
+     * line. Default is <code>0</code>.
+     */
+    public void setDelimiter(char delimiter) {
+        this.delimiter = delimiter;
+    }
+
+    public boolean isWeighted() {
+        return weighted;
+    }
+
+    /**
+     * Sets if lines are <code>source, target, weight</code> rows instead of
+     * adjacency lists. Default is <code>false</code>.
+     */
+    public void setWeighted(boolean weighted) {
+        this.weighted = weighted;
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    public void setChunkSize(int chunkSize) {
+        this.chunkSize = chunkSize;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    /**
+     * Tokenized chunk of lines.
+     */
+    static class Chunk {
+
+        private final byte[] bytes;
+        private int tokenCount;
+        private int[] tokenStart = new int[1024];
+        private int[] tokenLength = new int[1024];
+        private int[] tokenHash = new int[1024];
+        private int rowCount;
+        private int[] rowEnd = new int[512];
+        private float[] weight = new float[512];
+        private boolean utf8 = true;
+
+        Chunk(int capacity) {
+            bytes = new byte[capacity];
+        }
+
+        private void addToken(int start, int length, int hash) {
+            if (tokenCount == tokenStart.length) {
+                int capacity = tokenCount * 2;
+                tokenStart = Arrays.copyOf(tokenStart, capacity);
+                tokenLength = Arrays.copyOf(tokenLength, capacity);
+                tokenHash = Arrays.copyOf(tokenHash, capacity);
+            }
+            tokenStart[tokenCount] = start;
+            tokenLength[tokenCount] = length;
+            tokenHash[tokenCount] = hash;
+            tokenCount++;
+        }
+
+        private void addRow(float rowWeight) {
+            if (rowCount == rowEnd.length) {
+                rowEnd = Arrays.copyOf(rowEnd, rowCount * 2);
+                weight = Arrays.copyOf(weight, rowCount * 2);
+            }
+            rowEnd[rowCount] = tokenCount;
+            weight[rowCount] = rowWeight;
+            rowCount++;
+        }
+
+        int getRowCount() {
+            return rowCount;
+        }
+
+        String getToken(int token) {
+            return new String(bytes, tokenStart[token], tokenLength[token], UTF8);
+        }
+
+        int getRowEnd(int row) {
+            return rowEnd[row];
+        }
+    }
+
+    /**
+     * Open addressing map from id bytes to indices. The bytes of each id are
+     * kept in a pool to compare keys, and the id string is created once.
+     */
+    static class IdMap {
+
+        private int[] table = new int[1024];
+        private int size;
+        private int[] hashes = new int[512];
+        private int[] offsets = new int[512];
+        private int[] lengths = new int[512];
+        private String[] strings = new String[512];
+        private byte[] pool = new byte[4096];
+        private int poolSize;
+
+        int get(byte[] bytes, int start, int length, int hash) {
+            int mask = table.length - 1;
+            for (int slot = mix(hash) & mask;; slot = (slot + 1) & mask) {
+                int entry = table[slot];
+                if (entry == 0) {
+                    return -1;
+                }
+                int index = entry - 1;
+                if (hashes[index] == hash && equals(index, bytes, start, length)) {
+                    return index;
+                }
+            }
+        }
+
+        int add(byte[] bytes, int start, int length, int hash) {
+            if (size == hashes.length) {
+                int capacity = size * 2;
+                hashes = Arrays.copyOf(hashes, capacity);
+                offsets = Arrays.copyOf(offsets, capacity);
+                lengths = Arrays.copyOf(lengths, capacity);
+                strings = Arrays.copyOf(strings, capacity);
+            }
+            if (poolSize + length > pool.length) {
+                pool = Arrays.copyOf(pool, Math.max(pool.length * 2, poolSize + length));
+            }
+            int index = size++;
+            System.arraycopy(bytes, start, pool, poolSize, length);
+            hashes[index] = hash;
+            offsets[index] = poolSize;
+            lengths[index] = length;
+            strings[index] = new String(bytes, start, length, UTF8);
+            poolSize += length;
+            if (size * 2 > table.length) {
+                rehash();
+            } else {
+                insert(index);
+            }
+            return index;
+        }
+
+        String getString(int index) {
+            return strings[index];
+        }
+
+        int size() {
+            return size;
+        }
+
+        private boolean equals(int index, byte[] bytes, int start, int length) {
+            if (lengths[index] != length) {
+                return false;
+            }
+            int offset = offsets[index];
+            for (int i = 0; i < length; i++) {
+                if (pool[offset + i] != bytes[start + i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void insert(int index) {
+            int mask = table.length - 1;
+            int slot = mix(hashes[index]) & mask;
+            while (table[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = index + 1;
+        }
+
+        private void rehash() {
+            table = new int[table.length * 2];
+            for (int i = 0; i < size; i++) {
+                insert(i);
+            }
+        }
+
+        private static int mix(int hash) {
+            hash ^= (hash >>> 20) ^ (hash >>> 12);
+            return hash ^ (hash >>> 7) ^ (hash >>> 4);
+        }
+    }
+
+    /**
+     * Source of chunks that end at a line end.
+     */
+    private static abstract class ChunkSource {
+
+        protected long byteCount;
+
+        /**
+         * Returns the next chunk or <code>null</code> at the end.
+         */
+        abstract ByteBuffer next() throws IOException;
+
+        void close() {
+        }
+
+        long getByteCount() {
+            return byteCount;
+        }
+    }
+
+    /**
+     * Maps the file chunk by chunk, read-only.
+     */
+    private static class MappedChunkSource extends ChunkSource {
+
+        private final RandomAccessFile randomAccessFile;
+        private final FileChannel channel;
+        private final long size;
+        private final int chunkSize;
+        private long position;
+
+        MappedChunkSource(File file, int chunkSize) throws IOException {
+            this.randomAccessFile = new RandomAccessFile(file, "r");
+            this.channel = randomAccessFile.getChannel();
+            this.size = channel.size();
+            this.chunkSize = chunkSize;
+        }
+
+        ByteBuffer next() throws IOException {
+            if (position >= size) {
+                return null;
+            }
+            long length = Math.min(chunkSize, size - position);
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+            while (position + length < size) {
+                //Cut after the last line end, or map a larger chunk for longer lines
+                int end = buffer.limit() - 1;
+                while (end >= 0 && buffer.get(end) != '\n') {
+                    end--;
+                }
+                if (end >= 0) {
+                    buffer.limit(end + 1);
+                    break;
+                }
+                length = Math.min(length * 2, size - position);
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+            }
+            if (position == 0 && buffer.limit() >= 3
+                    && (buffer.get(0) & 0xFF) == 0xEF && (buffer.get(1) & 0xFF) == 0xBB && (buffer.get(2) & 0xFF) == 0xBF) {
+                buffer.position(3);     //UTF-8 byte order mark
+            }
+            position += buffer.limit();
+            byteCount = position;
+            return buffer;
+        }
+
+        @Override
+        void close() {
+            ImporterDelimitedText.close(randomAccessFile);
+        }
+    }
+
+    /**
+     * Reads characters and encodes them as UTF-8, chunk by chunk.
+     */
+    private static class ReaderChunkSource extends ChunkSource {
+
+        private final Reader reader;
+        private char[] chars;
+        private int charCount;
+        private boolean eof;
+
+        ReaderChunkSource(Reader reader, int chunkSize) {
+            this.reader = reader;
+            this.chars = new char[chunkSize];
+        }
+
+        ByteBuffer next() throws IOException {
+            while (true) {
+                while (!eof && charCount < chars.length) {
+                    int read = reader.read(chars, charCount, chars.length - charCount);
+                    if (read == -1) {
+                        eof = true;
+                    } else {
+                        charCount += read;
+                    }
+                }
+                if (charCount == 0) {
+                    return null;
+                }
+                int end = charCount;
+                if (!eof) {
+                    end = charCount - 1;
+                    while (end >= 0 && chars[end] != '\n') {
+                        end--;
+                    }
+                    if (end < 0) {
+                        //Line longer than the chunk
+                        chars = Arrays.copyOf(chars, chars.length * 2);
+                        continue;
+                    }
+                    end++;
+                }
+                int start = chars[0] == '\uFEFF' && byteCount == 0 ? 1 : 0;
+                ByteBuffer buffer = UTF8.encode(CharBuffer.wrap(chars, start, end - start));
+                System.arraycopy(chars, end, chars, 0, charCount - end);
+                charCount -= end;
+                byteCount += buffer.limit();
+                return buffer;
+            }
+        }
+    }
+}
@@ -0,0 +1,597 @@
+/*
+Copyright 2008-2010 Gephi
+Website : http://www.gephi.org
+
+This file is part of Gephi.
+
+DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+
+Copyright 2011 Gephi Consortium. All rights reserved.
+
+The contents of this file are subject to the terms of either the GNU
+General Public License Version 3 only ("GPL") or the Common
+Development and Distribution License("CDDL") (collectively, the
+"License"). You may not use this file except in compliance with the
+License. You can obtain a copy of the License at
+http://gephi.org/about/legal/license-notice/
+or /cddl-1.0.txt and /gpl-3.0.txt. See the License for the
+specific language governing permissions and limitations under the
+License.  When distributing the software, include this License Header
+Notice in each file and include the License files at
+/cddl-1.0.txt and /gpl-3.0.txt. If applicable, add the following below the
+License Header, with the fields enclosed by brackets [] replaced by
+your own identifying information:
+"Portions Copyrighted [year] [name of copyright owner]"
+
+If you wish your version of this file to be governed by only the CDDL
+or only the GPL Version 3, indicate your decision by adding
+"[Contributor] elects to include this software in this distribution
+under the [CDDL or GPL Version 3] license." If you do not indicate a
+single choice of license, a recipient has the option to distribute
+your version of this file under either the CDDL, the GPL Version 3 or
+to extend the choice of license to its licensees as provided above.
+However, if you add GPL Version 3 code and therefore, elected the GPL
+Version 3 license, then the option applies only if the new code is
+made subject to such option by the copyright holder.
+
+Contributor(s):
+
+Portions Copyrighted 2011 Gephi Consortium.
+ */
+package org.gephi.io.importer.plugin.file;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import org.gephi.data.attributes.api.AttributeColumn;
+import org.gephi.data.attributes.api.AttributeOrigin;
+import org.gephi.data.attributes.api.AttributeTable;
+import org.gephi.data.attributes.api.AttributeType;
+import org.gephi.data.attributes.type.DynamicType;
+import org.gephi.data.attributes.type.Interval;
+import org.gephi.data.attributes.type.TypeConvertor;
+import org.gephi.data.properties.PropertiesColumn;
+import org.gephi.dynamic.DynamicUtilities;
+import org.gephi.dynamic.api.DynamicModel.TimeFormat;
+import org.gephi.io.importer.api.ContainerLoader;
+import org.gephi.io.importer.api.EdgeDefault;
+import org.gephi.io.importer.api.EdgeDraft;
+import org.gephi.io.importer.api.Issue;
+import org.gephi.io.importer.api.NodeDraft;
+import org.gephi.io.importer.api.Report;
+import org.gephi.io.importer.spi.FileAwareImporter;
+import org.gephi.io.importer.spi.StreamingImporter;
+import org.gephi.utils.longtask.spi.LongTask;
+import org.gephi.utils.progress.Progress;
+import org.gephi.utils.progress.ProgressTicket;
+import org.openide.util.NbBundle;
+
+/**
+ * Importer for the GBIN binary format written by <code>ExporterGBIN</code>.
+ * Column blocks are memory-mapped and read in bulk, so the file is needed and
+ * the reader is not used.
+ * <p>
+ * Drafts are only added once all their columns are read, so the importer can
+ * be streamed: nodes are added in file order, parents first, then edges.
+ */
+public class ImporterGBIN implements FileAwareImporter, StreamingImporter, LongTask {
+
+    //Format, see ExporterGBIN
+    private static final int MAGIC = 0x4742494E;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 38;
+    private static final int BLOCK_HEADER_SIZE = 9;
+    private static final int CONTENTS_POSITION = 1;
+    private static final int CONTENTS_SIZE = 1 << 1;
+    private static final int CONTENTS_COLOR = 1 << 2;
+    private static final int CONTENTS_DYNAMIC = 1 << 4;
+    private static final int CONTENTS_HIERARCHY = 1 << 5;
+    private static final byte ENCODING_DEFLATE = 1;
+    private static final byte COLUMN_WEIGHT = 1;
+    //Architecture
+    private File file;
+    private ContainerLoader container;
+    private Report report;
+    private ProgressTicket progressTicket;
+    private boolean cancel = false;
+    //Data
+    private FileChannel channel;
+    private long position;
+    private Inflater inflater;
+    private byte[] stringBuffer = new byte[256];
+    private TimeFormat timeFormat;
+
+    public boolean execute(ContainerLoader container) {
+        this.container = container;
+        this.report = new Report();
+        Progress.start(progressTicket);
+        if (file == null || !file.isFile()) {
+            report.logIssue(new Issue(NbBundle.getMessage(ImporterGBIN.class, "importerGBIN_error_nofile"), Issue.Level.CRITICAL));
+            return false;
+        }
+        RandomAccessFile randomAccessFile = null;
+        try {
+            randomAccessFile = new RandomAccessFile(file, "r");
+            channel = randomAccessFile.getChannel();
+            importData();
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        } finally {
+            if (inflater != null) {
+                inflater.end();
+                inflater = null;
+            }
+            if (randomAccessFile != null) {
+                try {
+                    randomAccessFile.close();
+                } catch (IOException ex) {
+                }
+            }
+            channel = null;
+        }
+        return !cancel;
+    }
+
+    private void importData() throws Exception {
+        //Header
+        ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(HEADER_SIZE, channel.size()));
+        if (header.limit() < HEADER_SIZE || header.getInt() != MAGIC) {
+            report.logIssue(new Issue(NbBundle.getMessage(ImporterGBIN.class, "importerGBIN_error_format"), Issue.Level.CRITICAL));
+            return;
+        }
+        int version = header.getInt();
+        if (version > VERSION) {
+            report.logIssue(new Issue(NbBundle.getMessage(ImporterGBIN.class, "importerGBIN_error_version", version), Issue.Level.CRITICAL));
+            return;
+        }
+        int contents = header.getInt();
+        byte edgeDefault = header.get();
+        byte timeFormatOrdinal = header.get();
+        double low = header.getDouble();
+        double high = header.getDouble();
+        int nodeCount = header.getInt();
+        int edgeCount = header.getInt();
+        position = HEADER_SIZE;
+
+        container.setEdgeDefault(edgeDefault == 0 ? EdgeDefault.DIRECTED : edgeDefault == 1 ? EdgeDefault.UNDIRECTED : EdgeDefault.MIXED);
+        boolean dynamic = (contents & CONTENTS_DYNAMIC) != 0;
+        if (dynamic) {
+            timeFormat = TimeFormat.values()[timeFormatOrdinal];
+            container.setTimeFormat(timeFormat);
+            if (!Double.isInfinite(low)) {
+                container.setTimeIntervalMin(formatTime(low));
+            }
+            if (!Double.isInfinite(high)) {
+                container.setTimeIntervalMax(formatTime(high));
+            }
+        }
+
+        //Columns definitions
+        ByteBuffer definitions = readBlock();
+        AttributeColumn[] nodeColumns = readColumnDefinitions(definitions, container.getAttributeModel().getNodeTable());
+        AttributeColumn[] edgeColumns = readColumnDefinitions(definitions, container.getAttributeModel().getEdgeTable());
+        Progress.switchToDeterminate(progressTicket, nodeCount + edgeCount);
+
+        NodeDraft[] nodes = readNodes(nodeCount, contents, nodeColumns);
+        if (!cancel) {
+            readEdges(nodes, edgeCount, contents, edgeColumns);
+        }
+    }
+
+    private AttributeColumn[] readColumnDefinitions(ByteBuffer buffer, AttributeTable table) {
+        int count = buffer.getInt();
+        AttributeColumn[] columns = new AttributeColumn[count];
+        for (int i = 0; i < count; i++) {
+            String id = readString(buffer);
+            String title = readString(buffer);
+            AttributeType type = AttributeType.valueOf(readString(buffer));
+            byte kind = buffer.get();
+            String defaultStr = readString(buffer);
+            Object defaultValue = null;
+            if (defaultStr != null) {
+                try {
+                    defaultValue = type.parse(defaultStr);
+                } catch (Exception e) {
+                    report.logIssue(new Issue(NbBundle.getMessage(ImporterGBIN.class, "importerGBIN_error_attributedefault", title, type.getTypeString()), Issue.Level.SEVERE));
+                }
+            }
+            if (kind == COLUMN_WEIGHT) {
+                //Dynamic weight
+                table.removeColumn(table.getColumn(PropertiesColumn.EDGE_WEIGHT.getIndex()));
+                columns[i] = table.addColumn(id, PropertiesColumn.EDGE_WEIGHT.getTitle(), type, AttributeOrigin.PROPERTY, defaultValue);
+            } else if (table.hasColumn(id) || table.hasColumn(title)) {
+                report.log(NbBundle.getMessage(ImporterGBIN.class, "importerGBIN_error_attributecolumn_exist", id));
+                columns[i] = null;
+            } else {
+                columns[i] = table.addColumn(id, title, type, AttributeOrigin.DATA, defaultValue);
+            }
+        }
+        return columns;
+    }
+
+    private NodeDraft[] readNodes(int count, int contents, AttributeColumn[] columns) throws Exception {
+        String[] ids = readStrings(readBlock(), count);
+        String[] labels = readStrings(readBlock(), count);
+        int[] parents = null;
+        if ((contents & CONTENTS_HIERARCHY) != 0) {
+            parents = new int[count];
+            readBlock().asIntBuffer().get(parents);
+        }
+        float[] x = null, y = null, z = null;
+        if ((contents & CONTENTS_POSITION) != 0) {
+            x = readFloats(count);
+            y = readFloats(count);
+            z = readFloats(count);
+        }
+        float[] size = null;
+        if ((contents & CONTENTS_SIZE) != 0) {
+            size = readFloats(count);
+        }
+        float[] r = null, g = null, b = null;
+        if ((contents & CONTENTS_COLOR) != 0) {
+            r = readFloats(count);
+            g = readFloats(count);
+            b = readFloats(count);
+        }
+
+        NodeDraft[] nodes = new NodeDraft[count];
+        for (int i = 0; i < count && !cancel; i++) {
+            NodeDraft node = container.factory().newNodeDraft();
+            node.setId(ids[i]);
+            node.setLabel(labels[i]);
+            if (x != null) {
+                node.setX(x[i]);
+                node.setY(y[i]);
+                node.setZ(z[i]);
+            }
+            if (size != null) {
+                node.setSize(size[i]);
+            }
+            if (r != null) {
+                node.setColor(r[i], g[i], b[i]);
+            }
+            //Parents come before their children
+            if (parents != null && parents[i] != -1) {
+                node.setParent(nodes[parents[i]]);
+            }
+            nodes[i] = node;
+        }
+        if (cancel) {
+            return nodes;
+        }
+
+        //Time intervals and attributes, before the nodes are added
+        if ((contents & CONTENTS_DYNAMIC) != 0) {
+            readTimeIntervals(nodes, null, count);
+        }
+        for (AttributeColumn column : columns) {
+            Object[] values = readAttributeValues(column, count);
+            if (column != null) {
+                for (int i = 0; i < count; i++) {
+                    if (values[i] != null) {
+                        nodes[i].addAttributeValue(column, values[i]);
+                    }
+                }
+            }
+        }
+
+        for (int i = 0; i < count && !cancel; i++) {
+            container.addNode(nodes[i]);
+            Progress.progress(progressTicket);
+        }
+        return nodes;
+    }
+
+    private void readEdges(NodeDraft[] nodes, int count, int contents, AttributeColumn[] columns) throws Exception {
+        int[] sources = new int[count];
+        readBlock().asIntBuffer().get(sources);
+        int[] targets = new int[count];
+        readBlock().asIntBuffer().get(targets);
+        byte[] directed = new byte[count];
+        readBlock().get(directed);
+        String[] ids = readStrings(readBlock(), count);
+        String[] labels = readStrings(readBlock(), count);
+        float[] weights = readFloats(count);
+        float[] r = null, g = null, b = null;
+        if ((contents & CONTENTS_COLOR) != 0) {
+            r = readFloats(count);
+            g = readFloats(count);
+            b = readFloats(count);
+        }
+
+        EdgeDraft[] edges = new EdgeDraft[count];
+        for (int i = 0; i < count && !cancel; i++) {
+            EdgeDraft edge = container.factory().newEdgeDraft();
+            if (ids[i] != null) {
+                edge.setId(ids[i]);
+            }
+            edge.setSource(nodes[sources[i]]);
+            edge.setTarget(nodes[targets[i]]);
+            edge.setType(directed[i] != 0 ? EdgeDraft.EdgeType.DIRECTED : EdgeDraft.EdgeType.UNDIRECTED);
+            edge.setLabel(labels[i]);
+            edge.setWeight(weights[i]);
+            if (r != null && r[i] != -1) {
+                edge.setColor(r[i], g[i], b[i]);
+            }
+            edges[i] = edge;
+        }
+        if (cancel) {
+            return;
+        }
+
+        if ((contents & CONTENTS_DYNAMIC) != 0) {
+            readTimeIntervals(null, edges, count);
+        }
+        for (AttributeColumn column : columns) {
+            Object[] values = readAttributeValues(column, count);
+            if (column != null) {
+                for (int i = 0; i < count; i++) {
+                    if (values[i] != null) {
+                        edges[i].addAttributeValue(column, values[i]);
+                    }
+                }
+            }
+        }
+
+        for (int i = 0; i < count && !cancel; i++) {
+            container.addEdge(edges[i]);
+            Progress.progress(progressTicket);
+        }
+    }
+
+    private void readTimeIntervals(NodeDraft[] nodes, EdgeDraft[] edges, int count) throws Exception {
+        ByteBuffer buffer = readBlock();
+        int[] counts = new int[count];
+        buffer.asIntBuffer().get(counts);
+        int total = countIntervals(counts);
+        int lowsOffset = count * 4;
+        int highsOffset = lowsOffset + total * 8;
+        int flagsOffset = highsOffset + total * 8;
+        int interval = 0;
+        for (int i = 0; i < count; i++) {
+            for (int j = 0; j < counts[i]; j++, interval++) {
+                double low = buffer.getDouble(lowsOffset + interval * 8);
+                double high = buffer.getDouble(highsOffset + interval * 8);
+                byte flags = buffer.get(flagsOffset + interval);
+                String start = Double.isInfinite(low) ? null : formatTime(low);
+                String end = Double.isInfinite(high) ? null : formatTime(high);
+                try {
+                    if (nodes != null) {
+                        nodes[i].addTimeInterval(start, end, (flags & 1) != 0, (flags & 2) != 0);
+                    } else {
+                        edges[i].addTimeInterval(start, end, (flags & 1) != 0, (flags & 2) != 0);
+                    }
+                } catch (IllegalArgumentException e) {
+                    report.logIssue(new Issue(e.getMessage(), Issue.Level.SEVERE));
+                }
+            }
+        }
+    }
+
+    private Object[] readAttributeValues(AttributeColumn column, int count) throws Exception {
+        ByteBuffer buffer = readBlock();
+        if (column == null) {
+            return null;
+        }
+        AttributeType type = column.getType();
+        if (!type.isDynamicType()) {
+            return readValues(buffer, type, count);
+        }
+
+        //Dynamic values
+        int[] counts = new int[count];
+        buffer.asIntBuffer().get(counts);
+        int total = countIntervals(counts);
+        int lowsOffset = count * 4;
+        int highsOffset = lowsOffset + total * 8;
+        int flagsOffset = highsOffset + total * 8;
+        buffer.position(flagsOffset + total);
+        Object[] intervalValues = readValues(buffer.slice(), TypeConvertor.getStaticType(type), total);
+        Object[] values = new Object[count];
+        int interval = 0;
+        for (int i = 0; i < count; i++) {
+            if (counts[i] == -1) {
+                continue;
+            }
+            List<Interval> intervals = new ArrayList<Interval>(counts[i]);
+            for (int j = 0; j < counts[i]; j++, interval++) {
+                byte flags = buffer.get(flagsOffset + interval);
+                intervals.add(new Interval(buffer.getDouble(lowsOffset + interval * 8), buffer.getDouble(highsOffset + interval * 8),
+                        (flags & 1) != 0, (flags & 2) != 0, intervalValues[interval]));
+            }
+            DynamicType dynamicValue = DynamicUtilities.createDynamicObject(type, intervals);
+            values[i] = dynamicValue;
+        }
+        return values;
+    }
+
+    private static int countIntervals(int[] counts) {
+        int total = 0;
+        for (int c : counts) {
+            if (c > 0) {
+                total += c;
+            }
+        }
+        return total;
+    }
+
+    private Object[] readValues(ByteBuffer buffer, AttributeType type, int count) {
+        Object[] values = new Object[count];
+        switch (type) {
+            case BYTE:
+            case SHORT:
+            case INT:
+            case LONG:
+            case FLOAT:
+            case DOUBLE:
+            case BOOLEAN:
+            case CHAR:
+                int offset = count;
+                for (int i = 0; i < count; i++) {
+                    boolean present = buffer.get(i) != 0;
+                    switch (type) {
+                        case BYTE:
+                            values[i] = present ? Byte.valueOf(buffer.get(offset + i)) : null;
+                            break;
+                        case SHORT:
+                            values[i] = present ? Short.valueOf(buffer.getShort(offset + i * 2)) : null;
+                            break;
+                        case INT:
+                            values[i] = present ? Integer.valueOf(buffer.getInt(offset + i * 4)) : null;
+                            break;
+                        case LONG:
+                            values[i] = present ? Long.valueOf(buffer.getLong(offset + i * 8)) : null;
+                            break;
+                        case FLOAT:
+                            values[i] = present ? Float.valueOf(buffer.getFloat(offset + i * 4)) : null;
+                            break;
+                        case DOUBLE:
+                            values[i] = present ? Double.valueOf(buffer.getDouble(offset + i * 8)) : null;
+                            break;
+                        case BOOLEAN:
+                            values[i] = present ? Boolean.valueOf(buffer.get(offset + i) != 0) : null;
+                            break;
+                        case CHAR:
+                            values[i] = present ? Character.valueOf(buffer.getChar(offset + i * 2)) : null;
+                            break;
+                    }
+                }
+                return values;
+            default:
+                String[] strings = readStrings(buffer, count);
+                for (int i = 0; i < count; i++) {
+                    if (strings[i] != null) {
+                        try {
+                            values[i] = type.equals(AttributeType.STRING) ? strings[i] : type.parse(strings[i]);
+                        } catch (Exception e) {
+                            report.logIssue(new Issue(NbBundle.getMessage(ImporterGBIN.class, "importerGBIN_error_datavalue", strings[i], type.getTypeString()), Issue.Level.SEVERE));
+                        }
+                    }
+                }
+                return values;
+        }
+    }
+
+    private String[] readStrings(ByteBuffer buffer, int count) {
+        String[] strings = new String[count];
+        int offset = count * 4;
+        for (int i = 0; i < count; i++) {
+            int length = buffer.getInt(i * 4);
+            if (length >= 0) {
+                buffer.position(offset);
+                strings[i] = readString(buffer, length);
+                offset += length;
+            }
+        }
+        return strings;
+    }
+
+    private String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        return length >= 0 ? readString(buffer, length) : null;
+    }
+
+    private String readString(ByteBuffer buffer, int length) {
+        if (stringBuffer.length < length) {
+            stringBuffer = new byte[Math.max(length, stringBuffer.length * 2)];
+        }
+        buffer.get(stringBuffer, 0, length);
+        try {
+            return new String(stringBuffer, 0, length, "UTF-8");
+        } catch (java.io.UnsupportedEncodingException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private float[] readFloats(int count) throws Exception {
+        float[] floats = new float[count];
+        readBlock().asFloatBuffer().get(floats);
+        return floats;
+    }
+
+    /**
+     * Returns the next block, mapped if it is stored raw and inflated in
+     * memory otherwise.
+     */
+    private ByteBuffer readBlock() throws IOException, DataFormatException {
+        ByteBuffer header = ByteBuffer.allocate(BLOCK_HEADER_SIZE);
+        while (header.hasRemaining()) {
+            if (channel.read(header, position + header.position()) == -1) {
+                throw new IOException(NbBundle.getMessage(ImporterGBIN.class, "importerGBIN_error_format"));
+            }
+        }
+        header.flip();
+        byte encoding = header.get();
+        int length = header.getInt();
+        int stored = header.getInt();
+        if (length < 0 || stored < 0 || position + BLOCK_HEADER_SIZE + stored > channel.size()) {
+            throw new IOException(NbBundle.getMessage(ImporterGBIN.class, "importerGBIN_error_format"));
+        }
+        ByteBuffer block = channel.map(FileChannel.MapMode.READ_ONLY, position + BLOCK_HEADER_SIZE, stored);
+        position += BLOCK_HEADER_SIZE + stored;
+        if (encoding == ENCODING_DEFLATE) {
+            byte[] input = new byte[stored];
+            block.get(input);
+            byte[] output = new byte[length];
+            if (inflater == null) {
+                inflater = new Inflater();
+            }
+            inflater.reset();
+            inflater.setInput(input);
+            int inflated = 0;
+            while (inflated < length && !inflater.finished()) {
+                int count = inflater.inflate(output, inflated, length - inflated);
+                if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    //Truncated or corrupted block
+                    throw new IOException(NbBundle.getMessage(ImporterGBIN.class, "importerGBIN_error_format"));
+                }
+                inflated += count;
+            }
+            if (inflated < length) {
+                throw new IOException(NbBundle.getMessage(ImporterGBIN.class, "importerGBIN_error_format"));
+            }
+            block = ByteBuffer.wrap(output);
+        }
+        return block;
+    }
+
+    private String formatTime(double time) {
+        if (timeFormat.equals(TimeFormat.DATE) || timeFormat.equals(TimeFormat.DATETIME)) {
+            return DynamicUtilities.getXMLDateStringFromDouble(time);
+        }
+        return Double.toString(time);
+    }
+
+    public void setReader(Reader reader) {
+    }
+
+    public void setFile(File file) {
+        this.file = file;
+    }
+
+    public ContainerLoader getContainer() {
+        return container;
+    }
+
+    public Report getReport() {
+        return report;
+    }
+
+    public boolean cancel() {
+        cancel = true;
+        return true;
+    }
+
+    public void setProgressTicket(ProgressTicket progressTicket) {
+        this.progressTicket = progressTicket;
+    }
+}
@@ -60,7 +60,7 @@ import org.gephi.io.importer.api.EdgeDraft;
 import org.gephi.io.importer.api.Issue;
 import org.gephi.io.importer.api.NodeDraft;
 import org.gephi.io.importer.api.Report;
-import org.gephi.io.importer.spi.FileImporter;
+import org.gephi.io.importer.spi.StreamingImporter;
 import org.gephi.utils.longtask.spi.LongTask;
 import org.gephi.utils.progress.Progress;
 import org.gephi.utils.progress.ProgressTicket;
@@ -70,7 +70,7 @@ import org.openide.util.NbBundle;
  *
  * @author Mathieu Bastian
  */
-public class ImporterGEXF implements FileImporter, LongTask {
+public class ImporterGEXF implements StreamingImporter, LongTask {
 
     //GEXF
     private static final String GEXF = "gexf";
@@ -335,6 +335,8 @@ public class ImporterGEXF implements FileImporter, LongTask {
                         slices = true;
                     } else if (NODE.equalsIgnoreCase(name)) {
                         readNode(reader, node);
+                        //Children were added after this node, so it is retrieved again in case its batch was sent meanwhile
+                        node = container.getNode(id);
                     }
                     break;
 
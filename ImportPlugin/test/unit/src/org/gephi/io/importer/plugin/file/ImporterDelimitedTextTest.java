@@ -0,0 +1,280 @@
+/*
+Copyright 2008-2010 Gephi
+Website : http://www.gephi.org
+
+This file is part of Gephi.
+
+DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+
+Copyright 2011 Gephi Consortium. All rights reserved.
+
+The contents of this file are subject to the terms of either the GNU
+General Public License Version 3 only ("GPL") or the Common
+Development and Distribution License("CDDL") (collectively, the
+"License"). You may not use this file except in compliance with the
+License. You can obtain a copy of the License at
+http://gephi.org/about/legal/license-notice/
+or /cddl-1.0.txt and /gpl-3.0.txt. See the License for the
+specific language governing permissions and limitations under the
+License.  When distributing the software, include this License Header
+Notice in each file and include the License files at
+/cddl-1.0.txt and /gpl-3.0.txt. If applicable, add the following below the
+License Header, with the fields enclosed by brackets [] replaced by
+your own identifying information:
+"Portions Copyrighted [year] [name of copyright owner]"
+
+If you wish your version of this file to be governed by only the CDDL
+or only the GPL Version 3, indicate your decision by adding
+"[Contributor] elects to include this software in this distribution
+under the [CDDL or GPL Version 3] license." If you do not indicate a
+single choice of license, a recipient has the option to distribute
+your version of this file under either the CDDL, the GPL Version 3 or
+to extend the choice of license to its licensees as provided above.
+However, if you add GPL Version 3 code and therefore, elected the GPL
+Version 3 license, then the option applies only if the new code is
+made subject to such option by the copyright holder.
+
+Contributor(s):
+
+Portions Copyrighted 2011 Gephi Consortium.
+ */
+package org.gephi.io.importer.plugin.file;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import org.gephi.io.importer.api.Container;
+import org.gephi.io.importer.api.ContainerFactory;
+import org.gephi.io.importer.api.EdgeDraftGetter;
+import org.gephi.io.importer.api.Issue;
+import org.gephi.io.importer.api.NodeDraftGetter;
+import org.gephi.io.importer.api.Report;
+import org.gephi.io.importer.spi.FileImporter;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import org.openide.util.Lookup;
+import org.openide.util.NbBundle;
+
+public class ImporterDelimitedTextTest {
+
+    @Test
+    public void testTokenize() {
+        String text = "a;  b ; \"c;d\" ;null;;'e''f'\r\n\n\"g\\\"h\";a\n";
+        ImporterDelimitedText.Chunk chunk = ImporterDelimitedText.tokenize(ByteBuffer.wrap(getBytes(text)), (byte) ';', false);
+        assertEquals(2, chunk.getRowCount());
+        assertEquals(4, chunk.getRowEnd(0));
+        assertEquals(6, chunk.getRowEnd(1));
+        String[] tokens = new String[]{"a", "b", "c;d", "e'f", "g\"h", "a"};
+        for (int i = 0; i < tokens.length; i++) {
+            assertEquals(tokens[i], chunk.getToken(i));
+        }
+    }
+
+    @Test
+    public void testDetectDelimiter() {
+        assertEquals('\t', ImporterDelimitedText.detectDelimiter(ByteBuffer.wrap(getBytes("a\tb,c\n"))));
+        assertEquals(';', ImporterDelimitedText.detectDelimiter(ByteBuffer.wrap(getBytes("a;b,c\n"))));
+        assertEquals(',', ImporterDelimitedText.detectDelimiter(ByteBuffer.wrap(getBytes("a,b\nc\td\n"))));
+        assertEquals(' ', ImporterDelimitedText.detectDelimiter(ByteBuffer.wrap(getBytes("a b\n"))));
+    }
+
+    @Test
+    public void testIdMap() {
+        ImporterDelimitedText.IdMap ids = new ImporterDelimitedText.IdMap();
+        for (int i = 0; i < 10000; i++) {
+            byte[] id = getBytes("n" + i);
+            assertEquals(-1, ids.get(id, 0, id.length, hash(id)));
+            assertEquals(i, ids.add(id, 0, id.length, hash(id)));
+        }
+        for (int i = 0; i < 10000; i++) {
+            byte[] id = getBytes("n" + i);
+            int index = ids.get(id, 0, id.length, hash(id));
+            assertEquals(i, index);
+            assertEquals("n" + i, ids.getString(index));
+        }
+        assertEquals(10000, ids.size());
+    }
+
+    @Test
+    public void testSameAsCSV() throws Exception {
+        //Random adjacency list, with parallel edges
+        Random random = new Random(42);
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            builder.append("node").append(random.nextInt(500));
+            int degree = random.nextInt(5);
+            for (int j = 0; j < degree; j++) {
+                builder.append(';').append("node").append(random.nextInt(500));
+            }
+            builder.append('\n');
+        }
+        String text = builder.toString();
+        File file = File.createTempFile("delimited", ".edges");
+        file.deleteOnExit();
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        writer.write(text);
+        writer.close();
+
+        Container expected = importContainer(new ImporterCSV(), new InputStreamReader(new FileInputStream(file), "UTF-8"));
+
+        //Mapped file, small chunks
+        ImporterDelimitedText importer = new ImporterDelimitedText();
+        importer.setFile(file);
+        importer.setChunkSize(1024);
+        importer.setThreads(3);
+        Container mapped = importContainer(importer, null);
+        assertEquals(';', importer.getDelimiter());
+        assertSameGraph(expected, mapped);
+
+        //Reader fallback
+        importer = new ImporterDelimitedText();
+        importer.setChunkSize(1000);
+        Container read = importContainer(importer, new StringReader(text));
+        assertSameGraph(expected, read);
+    }
+
+    @Test
+    public void testMatrix() throws Exception {
+        String text = ";a;b;c\na;0;1;2\nb;1;0;0\nc;2;0;0\n";
+        File file = File.createTempFile("matrix", ".edges");
+        file.deleteOnExit();
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        writer.write(text);
+        writer.close();
+
+        Container expected = importContainer(new ImporterCSV(), new InputStreamReader(new FileInputStream(file), "UTF-8"));
+        ImporterDelimitedText importer = new ImporterDelimitedText();
+        importer.setFile(file);
+        Container mapped = importContainer(importer, new InputStreamReader(new FileInputStream(file), "UTF-8"));
+        assertSameGraph(expected, mapped);
+        assertEquals(3, mapped.getUnloader().getNodes().size());
+
+        //Not a file
+        importer = new ImporterDelimitedText();
+        Container read = importContainer(importer, new InputStreamReader(new FileInputStream(file), "UTF-8"));
+        assertSameGraph(expected, read);
+    }
+
+    @Test
+    public void testNotUtf8() throws Exception {
+        String text = "caf\u00e9;na\u00efve\nna\u00efve;caf\u00e9\n";
+        File file = File.createTempFile("latin", ".edges");
+        file.deleteOnExit();
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file), "ISO-8859-1");
+        writer.write(text);
+        writer.close();
+
+        //The file is not mapped, the reader charset is used
+        ImporterDelimitedText importer = new ImporterDelimitedText();
+        importer.setFile(file);
+        Container container = importContainer(importer, new InputStreamReader(new FileInputStream(file), "ISO-8859-1"));
+        Map<String, Float> weights = getWeights(container);
+        assertEquals(2, weights.size());
+        assertTrue(weights.containsKey("caf\u00e9-na\u00efve"));
+        assertTrue(weights.containsKey("na\u00efve-caf\u00e9"));
+    }
+
+    @Test
+    public void testNotUtf8AfterPrefix() throws Exception {
+        File file = File.createTempFile("mixed", ".edges");
+        file.deleteOnExit();
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file), "ISO-8859-1");
+        int rows = 0;
+        for (int written = 0; written <= ImporterDelimitedText.UTF8_LOOKAHEAD; written += 10) {
+            writer.write(String.format("%04d;%04d\n", rows % 1000, (rows + 1) % 1000));
+            rows++;
+        }
+        writer.write("caf\u00e9;0000\n");
+        writer.close();
+
+        //Only the prefix is checked, the file is mapped and the rest is reported
+        ImporterDelimitedText importer = new ImporterDelimitedText();
+        importer.setFile(file);
+        Container container = importContainer(importer, null);
+        assertEquals(1001, container.getUnloader().getNodes().size());
+        String message = NbBundle.getMessage(ImporterDelimitedText.class, "importerDelimitedText_error_encoding");
+        boolean reported = false;
+        for (Issue issue : importer.getReport().getIssues()) {
+            reported |= issue.getMessage().equals(message);
+        }
+        assertTrue(reported);
+    }
+
+    @Test
+    public void testIsUtf8() {
+        assertTrue(ImporterDelimitedText.isUtf8(ByteBuffer.wrap(getBytes("a;\u00e9\u20ac\ud83d\ude00\n"))));
+        assertFalse(ImporterDelimitedText.isUtf8(ByteBuffer.wrap(new byte[]{'a', (byte) 0xE9, 'b'})));
+        assertFalse(ImporterDelimitedText.isUtf8(ByteBuffer.wrap(new byte[]{(byte) 0xFF, (byte) 0xFE, 'a', 0})));
+        assertFalse(ImporterDelimitedText.isUtf8(ByteBuffer.wrap(new byte[]{'a', (byte) 0xE2, (byte) 0x82})));
+    }
+
+    @Test
+    public void testWeighted() throws Exception {
+        ImporterDelimitedText importer = new ImporterDelimitedText();
+        importer.setWeighted(true);
+        Container container = importContainer(importer, new StringReader("a,b,2.5\nb,c,x\na,b,1\nc\n"));
+        Map<String, Float> weights = getWeights(container);
+        assertEquals(3, container.getUnloader().getNodes().size());
+        assertEquals(2, weights.size());
+        assertEquals(3.5f, weights.get("a-b"), 0f);
+        assertEquals(1f, weights.get("b-c"), 0f);
+    }
+
+    private Container importContainer(FileImporter importer, Reader reader) {
+        Container container = Lookup.getDefault().lookup(ContainerFactory.class).newContainer();
+        container.setReport(new Report());
+        if (reader != null) {
+            importer.setReader(reader);
+        }
+        importer.execute(container.getLoader());
+        container.verify();
+        container.closeLoader();
+        return container;
+    }
+
+    private void assertSameGraph(Container expected, Container actual) {
+        Map<String, String> expectedLabels = new HashMap<String, String>();
+        for (NodeDraftGetter node : expected.getUnloader().getNodes()) {
+            expectedLabels.put(node.getId(), node.getLabel());
+        }
+        Map<String, String> actualLabels = new HashMap<String, String>();
+        for (NodeDraftGetter node : actual.getUnloader().getNodes()) {
+            actualLabels.put(node.getId(), node.getLabel());
+        }
+        assertEquals(expectedLabels, actualLabels);
+        assertEquals(getWeights(expected), getWeights(actual));
+    }
+
+    private Map<String, Float> getWeights(Container container) {
+        Map<String, Float> weights = new HashMap<String, Float>();
+        for (EdgeDraftGetter edge : container.getUnloader().getEdges()) {
+            weights.put(edge.getSource().getId() + "-" + edge.getTarget().getId(), edge.getWeight());
+        }
+        return weights;
+    }
+
+    private static int hash(byte[] bytes) {
+        int h = 0;
+        for (byte b : bytes) {
+            h = 31 * h + b;
+        }
+        return h;
+    }
+
+    private static byte[] getBytes(String text) {
+        try {
+            return text.getBytes("UTF-8");
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,386 @@
+/*
+Copyright 2008-2010 Gephi
+Website : http://www.gephi.org
+
+This file is part of Gephi.
+
+DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+
+Copyright 2011 Gephi Consortium. All rights reserved.
+
+The contents of this file are subject to the terms of either the GNU
+General Public License Version 3 only ("GPL") or the Common
+Development and Distribution License("CDDL") (collectively, the
+"License"). You may not use this file except in compliance with the
+License. You can obtain a copy of the License at
+http://gephi.org/about/legal/license-notice/
+or /cddl-1.0.txt and /gpl-3.0.txt. See the License for the
+specific language governing permissions and limitations under the
+License.  When distributing the software, include this License Header
+Notice in each file and include the License files at
+/cddl-1.0.txt and /gpl-3.0.txt. If applicable, add the following below the
+License Header, with the fields enclosed by brackets [] replaced by
+your own identifying information:
+"Portions Copyrighted [year] [name of copyright owner]"
+
+If you wish your version of this file to be governed by only the CDDL
+or only the GPL Version 3, indicate your decision by adding
+"[Contributor] elects to include this software in this distribution
+under the [CDDL or GPL Version 3] license." If you do not indicate a
+single choice of license, a recipient has the option to distribute
+your version of this file under either the CDDL, the GPL Version 3 or
+to extend the choice of license to its licensees as provided above.
+However, if you add GPL Version 3 code and therefore, elected the GPL
+Version 3 license, then the option applies only if the new code is
+made subject to such option by the copyright holder.
+
+Contributor(s):
+
+Portions Copyrighted 2011 Gephi Consortium.
+ */
+package org.gephi.io.importer.plugin.file;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.gephi.io.importer.api.Container;
+import org.gephi.io.importer.api.ContainerFactory;
+import org.gephi.io.importer.api.ContainerLoader;
+import org.gephi.io.importer.api.ContainerUnloader;
+import org.gephi.io.importer.api.EdgeDefault;
+import org.gephi.io.importer.api.EdgeDraft;
+import org.gephi.io.importer.api.EdgeDraftGetter;
+import org.gephi.io.importer.api.ImportController;
+import org.gephi.io.importer.api.NodeDraft;
+import org.gephi.io.importer.api.NodeDraftGetter;
+import org.gephi.io.importer.api.Report;
+import org.gephi.io.importer.spi.FileImporter;
+import org.gephi.io.importer.spi.StreamingImporter;
+import org.gephi.io.processor.spi.StreamingProcessor;
+import org.gephi.project.api.Workspace;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import org.openide.util.Lookup;
+
+public class ImporterGEXFStreamingTest {
+
+    @Test
+    public void testStreaming() throws Exception {
+        //Complete container
+        Container container = Lookup.getDefault().lookup(ContainerFactory.class).newContainer();
+        container.setReport(new Report());
+        ImporterGEXF importer = new ImporterGEXF();
+        importer.setReader(getReader());
+        importer.execute(container.getLoader());
+        container.verify();
+        container.closeLoader();
+        Set<String> nodeIds = new HashSet<String>();
+        for (NodeDraftGetter node : container.getUnloader().getNodes()) {
+            nodeIds.add(node.getId());
+        }
+        Set<String> edgeIds = new HashSet<String>();
+        for (EdgeDraftGetter edge : container.getUnloader().getEdges()) {
+            edgeIds.add(edge.getId());
+        }
+
+        //Streaming
+        RecordingProcessor processor = new RecordingProcessor();
+        ImportController importController = Lookup.getDefault().lookup(ImportController.class);
+        Container streamed = importController.importFileStreaming(getReader(), new ImporterGEXF(), processor, null);
+
+        assertNotNull(streamed);
+        assertTrue(processor.begun);
+        assertTrue(processor.ended);
+        assertEquals(nodeIds, processor.nodes.keySet());
+        Set<String> streamedEdgeIds = new HashSet<String>();
+        for (EdgeDraftGetter edge : processor.edges) {
+            streamedEdgeIds.add(edge.getId());
+        }
+        assertTrue(streamedEdgeIds.containsAll(edgeIds));
+        assertEquals(10, streamedEdgeIds.size());
+
+        //Hierarchy
+        assertNull(processor.nodes.get("a").getParents());
+        assertEquals("a", processor.nodes.get("b").getParents()[0].getId());
+        assertEquals("b", processor.nodes.get("c").getParents()[0].getId());
+        assertEquals("e", processor.nodes.get("f").getParents()[0].getId());
+    }
+
+    @Test
+    public void testBatches() {
+        final int count = 3000;
+        FileImporter importer = new TestImporter() {
+
+            public boolean execute(ContainerLoader loader) {
+                loader.setEdgeDefault(EdgeDefault.UNDIRECTED);
+                for (int i = 0; i < count; i++) {
+                    NodeDraft node = loader.factory().newNodeDraft();
+                    node.setId(String.valueOf(i));
+                    loader.addNode(node);
+                    //The last added draft can still be modified
+                    node.setLabel("Node " + i);
+                }
+                //Duplicated node
+                NodeDraft duplicate = loader.factory().newNodeDraft();
+                duplicate.setId("0");
+                loader.addNode(duplicate);
+
+                for (int i = 1; i < count; i++) {
+                    addEdge(loader, String.valueOf(i - 1), String.valueOf(i), 1f);
+                }
+                //Parallel edge and opposite edge
+                addEdge(loader, "0", "1", 2f);
+                addEdge(loader, "2", "1", 3f);
+                assertTrue(loader.edgeExists(loader.getNode("0"), loader.getNode("1")));
+                assertFalse(loader.edgeExists(loader.getNode("0"), loader.getNode("2")));
+                return true;
+            }
+        };
+
+        RecordingProcessor processor = new RecordingProcessor();
+        ImportController importController = Lookup.getDefault().lookup(ImportController.class);
+        importController.importFileStreaming(new StringReader(""), importer, processor, null);
+
+        assertEquals(count, processor.nodes.size());
+        for (int i = 0; i < count; i++) {
+            assertEquals("Node " + i, processor.nodes.get(String.valueOf(i)).getLabel());
+        }
+        assertEquals(count - 1, processor.edges.size());
+        assertEquals(2, processor.merged.size());
+        assertTrue(processor.merged.get(0).sum);
+        assertFalse(processor.merged.get(1).sum);
+        assertEquals("2", processor.merged.get(1).edge.getSource().getId());
+    }
+
+    @Test
+    public void testDuplicatedEdgeId() {
+        FileImporter importer = new TestImporter() {
+
+            public boolean execute(ContainerLoader loader) {
+                for (int i = 0; i < 4; i++) {
+                    NodeDraft node = loader.factory().newNodeDraft();
+                    node.setId(String.valueOf(i));
+                    loader.addNode(node);
+                }
+                for (int i = 1; i < 4; i++) {
+                    EdgeDraft edge = loader.factory().newEdgeDraft();
+                    edge.setId(i < 3 ? "e" : "f");
+                    edge.setSource(loader.getNode("0"));
+                    edge.setTarget(loader.getNode(String.valueOf(i)));
+                    loader.addEdge(edge);
+                }
+                return true;
+            }
+        };
+
+        RecordingProcessor processor = new RecordingProcessor();
+        ImportController importController = Lookup.getDefault().lookup(ImportController.class);
+        importController.importFileStreaming(new StringReader(""), importer, processor, null);
+
+        //The second edge with id 'e' is dropped
+        assertEquals(2, processor.edges.size());
+        assertEquals("1", processor.edges.get(0).getTarget().getId());
+        assertEquals("3", processor.edges.get(1).getTarget().getId());
+        assertTrue(processor.merged.isEmpty());
+    }
+
+    @Test
+    public void testUpdateSentNode() {
+        final int count = 2000;
+        FileImporter importer = new TestImporter() {
+
+            public boolean execute(ContainerLoader loader) {
+                for (int i = 0; i < count; i++) {
+                    NodeDraft node = loader.factory().newNodeDraft();
+                    node.setId(String.valueOf(i));
+                    loader.addNode(node);
+                }
+                //Node 0 has been sent with the first batch
+                NodeDraft node = loader.getNode("0");
+                assertSame(node, loader.getNode("0"));
+                node.setLabel("Updated");
+                node.setParent(loader.getNode(String.valueOf(count - 1)));
+                //Only used as an extremity
+                addEdge(loader, "1", "2", 1f);
+                return true;
+            }
+        };
+
+        RecordingProcessor processor = new RecordingProcessor();
+        ImportController importController = Lookup.getDefault().lookup(ImportController.class);
+        importController.importFileStreaming(new StringReader(""), importer, processor, null);
+
+        assertEquals(count, processor.nodes.size());
+        assertEquals(1, processor.updates.size());
+        NodeDraftGetter update = processor.updates.get("0");
+        assertEquals("Updated", update.getLabel());
+        assertEquals(String.valueOf(count - 1), update.getParents()[0].getId());
+        assertTrue(processor.ended);
+    }
+
+    @Test
+    public void testNotStreamingImporter() {
+        RecordingProcessor processor = new RecordingProcessor();
+        ImportController importController = Lookup.getDefault().lookup(ImportController.class);
+        try {
+            importController.importFileStreaming(new StringReader(""), new ImporterCSV(), processor, null);
+            fail();
+        } catch (IllegalArgumentException ex) {
+        }
+        assertFalse(processor.begun);
+    }
+
+    @Test
+    public void testCancel() {
+        RecordingProcessor processor = new RecordingProcessor();
+        ImportController importController = Lookup.getDefault().lookup(ImportController.class);
+        Container container = importController.importFileStreaming(new StringReader(""), new NodesImporter(3000, false), processor, null);
+
+        assertNull(container);
+        assertTrue(processor.begun);
+        assertTrue(processor.cancelled);
+        assertFalse(processor.ended);
+    }
+
+    @Test
+    public void testFailure() {
+        RecordingProcessor processor = new RecordingProcessor();
+        ImportController importController = Lookup.getDefault().lookup(ImportController.class);
+        try {
+            importController.importFileStreaming(new StringReader(""), new NodesImporter(3000, true), processor, null);
+            fail();
+        } catch (IllegalStateException ex) {
+        }
+        assertTrue(processor.cancelled);
+        assertFalse(processor.ended);
+
+        //Nothing was sent yet
+        processor = new RecordingProcessor();
+        try {
+            importController.importFileStreaming(new StringReader(""), new NodesImporter(10, true), processor, null);
+            fail();
+        } catch (IllegalStateException ex) {
+        }
+        assertFalse(processor.begun);
+        assertFalse(processor.cancelled);
+    }
+
+    private void addEdge(ContainerLoader loader, String source, String target, float weight) {
+        EdgeDraft edge = loader.factory().newEdgeDraft();
+        edge.setSource(loader.getNode(source));
+        edge.setTarget(loader.getNode(target));
+        edge.setWeight(weight);
+        loader.addEdge(edge);
+    }
+
+    private Reader getReader() throws Exception {
+        URL url = getClass().getResource("/org/gephi/io/importer/plugin/file/testparser.gexf");
+        return new FileReader(new File(url.toURI()));
+    }
+
+    private static abstract class TestImporter implements StreamingImporter {
+
+        public void setReader(Reader reader) {
+        }
+
+        public ContainerLoader getContainer() {
+            return null;
+        }
+
+        public Report getReport() {
+            return null;
+        }
+    }
+
+    private static class NodesImporter extends TestImporter {
+
+        private final int count;
+        private final boolean fail;
+
+        public NodesImporter(int count, boolean fail) {
+            this.count = count;
+            this.fail = fail;
+        }
+
+        public boolean execute(ContainerLoader loader) {
+            for (int i = 0; i < count; i++) {
+                NodeDraft node = loader.factory().newNodeDraft();
+                node.setId(String.valueOf(i));
+                loader.addNode(node);
+            }
+            if (fail) {
+                throw new IllegalStateException();
+            }
+            return false;
+        }
+    }
+
+    private static class RecordingProcessor implements StreamingProcessor {
+
+        private final Map<String, NodeDraftGetter> nodes = new HashMap<String, NodeDraftGetter>();
+        private final List<EdgeDraftGetter> edges = new ArrayList<EdgeDraftGetter>();
+        private final List<Merge> merged = new ArrayList<Merge>();
+        private final Map<String, NodeDraftGetter> updates = new HashMap<String, NodeDraftGetter>();
+        private boolean begun;
+        private boolean ended;
+        private boolean cancelled;
+
+        public void setContainer(ContainerUnloader container) {
+        }
+
+        public void setWorkspace(Workspace workspace) {
+        }
+
+        public void setReport(Report report) {
+        }
+
+        public void begin() {
+            begun = true;
+        }
+
+        public void addNode(NodeDraftGetter node) {
+            assertFalse(nodes.containsKey(node.getId()));
+            nodes.put(node.getId(), node);
+        }
+
+        public void addEdge(EdgeDraftGetter edge) {
+            assertTrue(nodes.containsKey(edge.getSource().getId()));
+            assertTrue(nodes.containsKey(edge.getTarget().getId()));
+            edges.add(edge);
+        }
+
+        public void mergeEdge(EdgeDraftGetter edge, boolean sumWeights) {
+            Merge merge = new Merge();
+            merge.edge = edge;
+            merge.sum = sumWeights;
+            merged.add(merge);
+        }
+
+        public void updateNode(NodeDraftGetter node) {
+            assertTrue(nodes.containsKey(node.getId()));
+            updates.put(node.getId(), node);
+        }
+
+        public void end() {
+            ended = true;
+        }
+
+        public void cancel() {
+            cancelled = true;
+        }
+    }
+
+    private static class Merge {
+
+        private EdgeDraftGetter edge;
+        private boolean sum;
+    }
+}
@@ -41,10 +41,13 @@ Portions Copyrighted 2011 Gephi Consortium.
  */
 package org.gephi.layout;
 
+import java.io.File;
 import org.gephi.graph.api.GraphController;
 import org.gephi.layout.spi.Layout;
 import org.gephi.layout.api.LayoutController;
 import org.gephi.layout.api.LayoutModel;
+import org.gephi.layout.api.LayoutRunStatistics;
+import org.gephi.layout.api.LayoutRunner;
 import org.gephi.project.api.ProjectController;
 import org.gephi.utils.longtask.spi.LongTask;
 import org.gephi.utils.progress.ProgressTicket;
@@ -64,6 +67,8 @@ public class LayoutControllerImpl implements LayoutController {
 
     private LayoutModelImpl model;
     private LayoutRun layoutRun;
+    private File checkpointFile;
+    private int checkpointInterval;
 
     public LayoutControllerImpl() {
         Lookup.getDefault().lookup(ProjectController.class).addWorkspaceListener(new WorkspaceListener() {
@@ -120,6 +125,7 @@ public class LayoutControllerImpl implements LayoutController {
     public void executeLayout() {
         if (model.getSelectedLayout() != null) {
             layoutRun = new LayoutRun(model.getSelectedLayout());
+            layoutRun.setCheckpoint(checkpointFile, checkpointInterval);
             model.getExecutor().execute(layoutRun, layoutRun);
             model.setRunning(true);
         }
@@ -128,11 +134,20 @@ public class LayoutControllerImpl implements LayoutController {
     public void executeLayout(int numIterations) {
         if (model.getSelectedLayout() != null) {
             layoutRun = new LayoutRun(model.getSelectedLayout(), numIterations);
+            layoutRun.setCheckpoint(checkpointFile, checkpointInterval);
             model.getExecutor().execute(layoutRun, layoutRun);
             model.setRunning(true);
         }
     }
 
+    public void setCheckpoint(File file, int interval) {
+        if (file != null && interval <= 0) {
+            throw new IllegalArgumentException("The checkpoint interval must be strictly positive");
+        }
+        this.checkpointFile = file;
+        this.checkpointInterval = interval;
+    }
+
     public void injectGraph() {
         GraphController graphController = Lookup.getDefault().lookup(GraphController.class);
         if (model.getSelectedLayout() != null && graphController.getModel() != null) {
@@ -155,33 +170,32 @@ public class LayoutControllerImpl implements LayoutController {
     private static class LayoutRun implements LongTask, Runnable {
 
         private final Layout layout;
-        private boolean stopRun = false;
+        private final LayoutRunner runner;
         private ProgressTicket progressTicket;
-        private final Integer iterations;
 
         public LayoutRun(Layout layout) {
             this.layout = layout;
-            this.iterations = null;
+            this.runner = new LayoutRunner(layout);
+            //Only the iteration count is used, and runs can be open-ended
+            this.runner.setRecordHistory(false);
         }
 
         public LayoutRun(Layout layout, int numIterations) {
-            this.layout = layout;
-            this.iterations = numIterations;
+            this(layout);
+            if (numIterations > 0) {
+                runner.setMaxIterations(numIterations);
+            }
+        }
+
+        public void setCheckpoint(File file, int interval) {
+            runner.setCheckpoint(file, interval);
         }
 
         public void run() {
             Progress.setDisplayName(progressTicket, layout.getBuilder().getName());
             Progress.start(progressTicket);
-            layout.initAlgo();
-            long i = 0;
-            while (layout.canAlgo() && !stopRun) {
-                layout.goAlgo();
-                i++;
-                if (iterations != null && iterations.longValue() == i) {
-                    break;
-                }
-            }
-            layout.endAlgo();
+            LayoutRunStatistics statistics = runner.run();
+            long i = statistics.getResumedIteration() + statistics.getIterationCount();
             if (i > 1) {
                 Progress.finish(progressTicket, NbBundle.getMessage(LayoutControllerImpl.class, "LayoutRun.end", layout.getBuilder().getName(), i));
             } else {
@@ -190,7 +204,7 @@ public class LayoutControllerImpl implements LayoutController {
         }
 
         public boolean cancel() {
-            stopRun = true;
+            runner.cancel();
             return true;
         }
 
@@ -0,0 +1,140 @@
+/*
+Copyright 2008-2010 Gephi
+Website : http://www.gephi.org
+
+This file is part of Gephi.
+
+DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+
+Copyright 2011 Gephi Consortium. All rights reserved.
+
+The contents of this file are subject to the terms of either the GNU
+General Public License Version 3 only ("GPL") or the Common
+Development and Distribution License("CDDL") (collectively, the
+"License"). You may not use this file except in compliance with the
+License. You can obtain a copy of the License at
+http://gephi.org/about/legal/license-notice/
+or /cddl-1.0.txt and /gpl-3.0.txt. See the License for the
+specific language governing permissions and limitations under the
+License.  When distributing the software, include this License Header
+Notice in each file and include the License files at
+/cddl-1.0.txt and /gpl-3.0.txt. If applicable, add the following below the
+License Header, with the fields enclosed by brackets [] replaced by
+your own identifying information:
+"Portions Copyrighted [year] [name of copyright owner]"
+
+If you wish your version of this file to be governed by only the CDDL
+or only the GPL Version 3, indicate your decision by adding
+"[Contributor] elects to include this software in this distribution
+under the [CDDL or GPL Version 3] license." If you do not indicate a
+single choice of license, a recipient has the option to distribute
+your version of this file under either the CDDL, the GPL Version 3 or
+to extend the choice of license to its licensees as provided above.
+However, if you add GPL Version 3 code and therefore, elected the GPL
+Version 3 license, then the option applies only if the new code is
+made subject to such option by the copyright holder.
+
+Contributor(s):
+
+Portions Copyrighted 2011 Gephi Consortium.
+ */
+package org.gephi.layout.api;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import org.gephi.layout.spi.CheckpointLayout;
+
+/**
+ * Checkpoint file of a {@link CheckpointLayout}.
+ * <p>
+ * The file starts with a header, with the layout class and the number of
+ * iterations done, followed by the state written by the layout. A new
+ * checkpoint is written next to the file and renamed over it once complete,
+ * so a process stopped while writing leaves the previous checkpoint intact.
+ *
+ * @see LayoutRunner#setCheckpoint(java.io.File, long)
+ */
+public class LayoutCheckpoint {
+
+    private static final int MAGIC = 0x474c434b;
+    private static final int VERSION = 1;
+    private static final int BUFFER_SIZE = 1 << 16;
+    private final File file;
+
+    public LayoutCheckpoint(File file) {
+        if (file == null) {
+            throw new NullPointerException("The file can't be null");
+        }
+        this.file = file;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public boolean exists() {
+        return file.isFile();
+    }
+
+    /**
+     * Writes the state of <code>layout</code>, replacing the previous
+     * checkpoint.
+     * @param layout    the layout, between two passes
+     * @param iteration the number of iterations done
+     * @throws IOException if the file can't be written
+     */
+    public void write(CheckpointLayout layout, long iteration) throws IOException {
+        File temp = new File(file.getPath() + ".tmp");
+        DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp), BUFFER_SIZE));
+        try {
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeUTF(layout.getClass().getName());
+            output.writeLong(iteration);
+            layout.writeCheckpoint(output);
+        } finally {
+            output.close();
+        }
+        if (!temp.renameTo(file)) {
+            //Windows doesn't rename over an existing file
+            if (!file.delete() || !temp.renameTo(file)) {
+                throw new IOException("Can't rename " + temp + " to " + file);
+            }
+        }
+    }
+
+    /**
+     * Restores the state of <code>layout</code> from the checkpoint.
+     * @param layout the layout, initialized
+     * @return the number of iterations done when the checkpoint was written
+     * @throws IOException if the file can't be read or was written by
+     * another layout
+     */
+    public long read(CheckpointLayout layout) throws IOException {
+        DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE));
+        try {
+            if (input.readInt() != MAGIC) {
+                throw new IOException(file + " is not a layout checkpoint");
+            }
+            int version = input.readInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported checkpoint version " + version);
+            }
+            String layoutClass = input.readUTF();
+            if (!layoutClass.equals(layout.getClass().getName())) {
+                throw new IOException("The checkpoint was written by " + layoutClass);
+            }
+            long iteration = input.readLong();
+            layout.readCheckpoint(input);
+            return iteration;
+        } finally {
+            input.close();
+        }
+    }
+}
@@ -41,6 +41,7 @@ Portions Copyrighted 2011 Gephi Consortium.
  */
 package org.gephi.layout.api;
 
+import java.io.File;
 import org.gephi.layout.spi.Layout;
 import org.gephi.project.api.Workspace;
 
@@ -76,6 +77,18 @@ public interface LayoutController {
      */
     public void executeLayout(int numIterations);
 
+    /**
+     * Sets the checkpoint file of the next executions. Layouts implementing
+     * {@link org.gephi.layout.spi.CheckpointLayout} write their state to
+     * <code>file</code> every <code>interval</code> iterations and when they
+     * stop, and resume from it if it exists when they are executed.
+     * @param file      the checkpoint file, or <code>null</code> to disable
+     * checkpoints
+     * @param interval  the number of iterations between checkpoints
+     * @see LayoutRunner#setCheckpoint(java.io.File, long)
+     */
+    public void setCheckpoint(File file, int interval);
+
     /**
      * Determine if the current Layout can be executed.
      * @return <code>true</code> if the layout is executable.
@@ -0,0 +1,203 @@
+/*
+Copyright 2008-2010 Gephi
+Website : http://www.gephi.org
+
+This file is part of Gephi.
+
+DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+
+Copyright 2011 Gephi Consortium. All rights reserved.
+
+The contents of this file are subject to the terms of either the GNU
+General Public License Version 3 only ("GPL") or the Common
+Development and Distribution License("CDDL") (collectively, the
+"License"). You may not use this file except in compliance with the
+License. You can obtain a copy of the License at
+http://gephi.org/about/legal/license-notice/
+or /cddl-1.0.txt and /gpl-3.0.txt. See the License for the
+specific language governing permissions and limitations under the
+License.  When distributing the software, include this License Header
+Notice in each file and include the License files at
+/cddl-1.0.txt and /gpl-3.0.txt. If applicable, add the following below the
+License Header, with the fields enclosed by brackets [] replaced by
+your own identifying information:
+"Portions Copyrighted [year] [name of copyright owner]"
+
+If you wish your version of this file to be governed by only the CDDL
+or only the GPL Version 3, indicate your decision by adding
+"[Contributor] elects to include this software in this distribution
+under the [CDDL or GPL Version 3] license." If you do not indicate a
+single choice of license, a recipient has the option to distribute
+your version of this file under either the CDDL, the GPL Version 3 or
+to extend the choice of license to its licensees as provided above.
+However, if you add GPL Version 3 code and therefore, elected the GPL
+Version 3 license, then the option applies only if the new code is
+made subject to such option by the copyright holder.
+
+Contributor(s):
+
+Portions Copyrighted 2011 Gephi Consortium.
+ */
+package org.gephi.layout.api;
+
+/**
+ * Statistics of a layout run made by {@link LayoutRunner}, with the
+ * duration, total displacement and energy of each iteration.
+ * <p>
+ * Displacement and energy are <code>Double.NaN</code> if the layout doesn't
+ * report them. When the runner doesn't record the iteration history, only
+ * the last iteration is kept.
+ *
+ * @see LayoutRunner#setRecordHistory(boolean)
+ */
+public class LayoutRunStatistics {
+
+    /**
+     * Why a run stopped.
+     */
+    public enum StopReason {
+
+        /** The layout's <code>canAlgo()</code> returned <code>false</code> */
+        LAYOUT_FINISHED,
+        /** The maximum number of iterations has been reached */
+        MAX_ITERATIONS,
+        /** The time budget has been spent */
+        TIME_BUDGET,
+        /** The displacement went below the threshold */
+        DISPLACEMENT_THRESHOLD,
+        /** The energy went below the threshold */
+        ENERGY_THRESHOLD,
+        /** The run has been cancelled */
+        CANCELLED
+    }
+    private final boolean recordHistory;
+    private int iterationCount;
+    private long[] times;
+    private double[] displacements;
+    private double[] energies;
+    private long totalTime;
+    private long resumedIteration;
+    private StopReason stopReason;
+
+    LayoutRunStatistics(boolean recordHistory) {
+        this.recordHistory = recordHistory;
+        int capacity = recordHistory ? 16 : 1;
+        times = new long[capacity];
+        displacements = new double[capacity];
+        energies = new double[capacity];
+    }
+
+    void addIteration(long time, double displacement, double energy) {
+        if (!recordHistory) {
+            //Open-ended runs only keep the last iteration
+            times[0] = time;
+            displacements[0] = displacement;
+            energies[0] = energy;
+            iterationCount++;
+            return;
+        }
+        if (iterationCount == times.length) {
+            int capacity = 2 * times.length;
+            long[] newTimes = new long[capacity];
+            double[] newDisplacements = new double[capacity];
+            double[] newEnergies = new double[capacity];
+            System.arraycopy(times, 0, newTimes, 0, iterationCount);
+            System.arraycopy(displacements, 0, newDisplacements, 0, iterationCount);
+            System.arraycopy(energies, 0, newEnergies, 0, iterationCount);
+            times = newTimes;
+            displacements = newDisplacements;
+            energies = newEnergies;
+        }
+        times[iterationCount] = time;
+        displacements[iterationCount] = displacement;
+        energies[iterationCount] = energy;
+        iterationCount++;
+    }
+
+    void setTotalTime(long totalTime) {
+        this.totalTime = totalTime;
+    }
+
+    void setResumedIteration(long resumedIteration) {
+        this.resumedIteration = resumedIteration;
+    }
+
+    void setStopReason(StopReason stopReason) {
+        this.stopReason = stopReason;
+    }
+
+    public int getIterationCount() {
+        return iterationCount;
+    }
+
+    /**
+     * Returns <code>true</code> if all iterations are kept, otherwise only
+     * the last one can be read.
+     */
+    public boolean isHistoryRecorded() {
+        return recordHistory;
+    }
+
+    /**
+     * Returns the duration of the iteration at <code>index</code>.
+     * @param index the iteration, from 0
+     * @return the duration in nanoseconds
+     */
+    public long getIterationTime(int index) {
+        return times[checkIndex(index)];
+    }
+
+    /**
+     * Returns the total displacement of the nodes during the iteration at
+     * <code>index</code>.
+     * @param index the iteration, from 0
+     * @return the displacement, or <code>Double.NaN</code>
+     */
+    public double getDisplacement(int index) {
+        return displacements[checkIndex(index)];
+    }
+
+    /**
+     * Returns the energy after the iteration at <code>index</code>.
+     * @param index the iteration, from 0
+     * @return the energy, or <code>Double.NaN</code>
+     */
+    public double getEnergy(int index) {
+        return energies[checkIndex(index)];
+    }
+
+    /**
+     * Returns the duration of the whole run, including
+     * <code>initAlgo()</code> and <code>endAlgo()</code>.
+     * @return the duration in nanoseconds
+     */
+    public long getTotalTime() {
+        return totalTime;
+    }
+
+    /**
+     * Returns the number of iterations done before the run, when it resumed
+     * from a checkpoint. Iterations of this run are not included.
+     * @return the iterations of the checkpoint, or <code>0</code>
+     */
+    public long getResumedIteration() {
+        return resumedIteration;
+    }
+
+    public StopReason getStopReason() {
+        return stopReason;
+    }
+
+    private int checkIndex(int index) {
+        if (index < 0 || index >= iterationCount) {
+            throw new IndexOutOfBoundsException("Iteration " + index + " doesn't exist");
+        }
+        if (!recordHistory) {
+            if (index != iterationCount - 1) {
+                throw new IllegalStateException("Only the last iteration is recorded");
+            }
+            return 0;
+        }
+        return index;
+    }
+}
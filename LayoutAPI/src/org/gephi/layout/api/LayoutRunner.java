@@ -0,0 +1,259 @@
+/*
+Copyright 2008-2010 Gephi
+Website : http://www.gephi.org
+
+This file is part of Gephi.
+
+DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+
+Copyright 2011 Gephi Consortium. All rights reserved.
+
+The contents of this file are subject to the terms of either the GNU
+General Public License Version 3 only ("GPL") or the Common
+Development and Distribution License("CDDL") (collectively, the
+"License"). You may not use this file except in compliance with the
+License. You can obtain a copy of the License at
+http://gephi.org/about/legal/license-notice/
+or /cddl-1.0.txt and /gpl-3.0.txt. See the License for the
+specific language governing permissions and limitations under the
+License.  When distributing the software, include this License Header
+Notice in each file and include the License files at
+/cddl-1.0.txt and /gpl-3.0.txt. If applicable, add the following below the
+License Header, with the fields enclosed by brackets [] replaced by
+your own identifying information:
+"Portions Copyrighted [year] [name of copyright owner]"
+
+If you wish your version of this file to be governed by only the CDDL
+or only the GPL Version 3, indicate your decision by adding
+"[Contributor] elects to include this software in this distribution
+under the [CDDL or GPL Version 3] license." If you do not indicate a
+single choice of license, a recipient has the option to distribute
+your version of this file under either the CDDL, the GPL Version 3 or
+to extend the choice of license to its licensees as provided above.
+However, if you add GPL Version 3 code and therefore, elected the GPL
+Version 3 license, then the option applies only if the new code is
+made subject to such option by the copyright holder.
+
+Contributor(s):
+
+Portions Copyrighted 2011 Gephi Consortium.
+ */
+package org.gephi.layout.api;
+
+import java.io.File;
+import java.io.IOException;
+import org.gephi.layout.api.LayoutRunStatistics.StopReason;
+import org.gephi.layout.spi.CheckpointLayout;
+import org.gephi.layout.spi.ConvergentLayout;
+import org.gephi.layout.spi.Layout;
+import org.openide.util.Exceptions;
+
+/**
+ * Runs a layout in the current thread until a stopping criterion is met and
+ * records statistics for each iteration.
+ * <p>
+ * The runner doesn't need the user interface nor the layout controller, so
+ * it can be used from a plain <code>main</code> method:
+ * <pre>
+ * ForceAtlas2 layout = new ForceAtlas2Builder().buildLayout();
+ * layout.setGraphModel(graphModel);
+ * layout.resetPropertiesValues();
+ * LayoutRunner runner = new LayoutRunner(layout);
+ * runner.setMaxIterations(5000);
+ * runner.setTimeBudget(60000);
+ * runner.setDisplacementThreshold(1.0);
+ * LayoutRunStatistics statistics = runner.run();
+ * </pre>
+ * The layout stops as soon as one criterion is met, or when its
+ * <code>canAlgo()</code> method returns <code>false</code>. Displacement and
+ * energy thresholds only apply to layouts implementing
+ * {@link ConvergentLayout}.
+ * <p>
+ * Layouts implementing {@link CheckpointLayout} can write checkpoints
+ * during the run. If the checkpoint file exists when the run starts, the
+ * layout resumes from it and the maximum number of iterations includes the
+ * iterations done before.
+ */
+public class LayoutRunner {
+
+    private final Layout layout;
+    private long maxIterations = Long.MAX_VALUE;
+    private long timeBudget = Long.MAX_VALUE;
+    private double displacementThreshold = Double.NaN;
+    private double energyThreshold = Double.NaN;
+    private LayoutCheckpoint checkpoint;
+    private long checkpointInterval;
+    private boolean recordHistory = true;
+    private volatile boolean cancelled;
+
+    public LayoutRunner(Layout layout) {
+        if (layout == null) {
+            throw new NullPointerException("The layout can't be null");
+        }
+        this.layout = layout;
+    }
+
+    /**
+     * Sets the maximum number of iterations.
+     * @param maxIterations the number of iterations, strictly positive
+     */
+    public void setMaxIterations(long maxIterations) {
+        if (maxIterations <= 0) {
+            throw new IllegalArgumentException("The number of iterations must be strictly positive");
+        }
+        this.maxIterations = maxIterations;
+    }
+
+    /**
+     * Sets the wall-clock budget of the run. The current iteration is always
+     * completed, so the run may last a bit longer.
+     * @param timeBudget the budget in milliseconds, strictly positive
+     */
+    public void setTimeBudget(long timeBudget) {
+        if (timeBudget <= 0) {
+            throw new IllegalArgumentException("The time budget must be strictly positive");
+        }
+        this.timeBudget = timeBudget;
+    }
+
+    /**
+     * Stops the run when the total displacement of an iteration is below
+     * <code>threshold</code>. <code>Double.NaN</code> disables the criterion.
+     * @param threshold the displacement threshold
+     */
+    public void setDisplacementThreshold(double threshold) {
+        this.displacementThreshold = threshold;
+    }
+
+    /**
+     * Stops the run when the energy after an iteration is below
+     * <code>threshold</code>. <code>Double.NaN</code> disables the criterion.
+     * @param threshold the energy threshold
+     */
+    public void setEnergyThreshold(double threshold) {
+        this.energyThreshold = threshold;
+    }
+
+    /**
+     * Writes a checkpoint every <code>interval</code> iterations and when
+     * the run stops, and resumes from <code>file</code> if it exists. Only
+     * applies to layouts implementing {@link CheckpointLayout}.
+     * @param file     the checkpoint file, or <code>null</code> to disable
+     * checkpoints
+     * @param interval the number of iterations between checkpoints, strictly
+     * positive
+     */
+    public void setCheckpoint(File file, long interval) {
+        if (file != null && interval <= 0) {
+            throw new IllegalArgumentException("The checkpoint interval must be strictly positive");
+        }
+        this.checkpoint = file != null ? new LayoutCheckpoint(file) : null;
+        this.checkpointInterval = interval;
+    }
+
+    /**
+     * Sets whether the duration, displacement and energy of every iteration
+     * are kept in the statistics, which is the default. Runs without an
+     * iteration limit should disable it, so that they only keep the last
+     * iteration and don't grow in memory.
+     * @param recordHistory <code>false</code> to only keep the last iteration
+     */
+    public void setRecordHistory(boolean recordHistory) {
+        this.recordHistory = recordHistory;
+    }
+
+    public Layout getLayout() {
+        return layout;
+    }
+
+    /**
+     * Stops the run after the current iteration, or before the first one if
+     * the run hasn't started yet. Can be called from any thread.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * Runs the layout, from <code>initAlgo()</code> to <code>endAlgo()</code>.
+     * @return the statistics of the run
+     */
+    public LayoutRunStatistics run() {
+        LayoutRunStatistics statistics = new LayoutRunStatistics(recordHistory);
+        ConvergentLayout convergentLayout = layout instanceof ConvergentLayout ? (ConvergentLayout) layout : null;
+        CheckpointLayout checkpointLayout = checkpoint != null && layout instanceof CheckpointLayout ? (CheckpointLayout) layout : null;
+        long start = System.nanoTime();
+        layout.initAlgo();
+        long resumedIteration = 0;
+        if (checkpointLayout != null && checkpoint.exists()) {
+            try {
+                resumedIteration = checkpoint.read(checkpointLayout);
+                statistics.setResumedIteration(resumedIteration);
+            } catch (IOException ex) {
+                Exceptions.printStackTrace(ex);
+            }
+        }
+        try {
+            while (true) {
+                if (cancelled) {
+                    statistics.setStopReason(StopReason.CANCELLED);
+                    break;
+                }
+                if (!layout.canAlgo()) {
+                    statistics.setStopReason(StopReason.LAYOUT_FINISHED);
+                    break;
+                }
+                if (resumedIteration >= maxIterations) {
+                    //The resumed run already did all its iterations
+                    statistics.setStopReason(StopReason.MAX_ITERATIONS);
+                    break;
+                }
+                long iterationStart = System.nanoTime();
+                layout.goAlgo();
+                long iterationEnd = System.nanoTime();
+
+                double displacement = convergentLayout != null ? convergentLayout.getTotalDisplacement() : Double.NaN;
+                double energy = convergentLayout != null ? convergentLayout.getEnergy() : Double.NaN;
+                statistics.addIteration(iterationEnd - iterationStart, displacement, energy);
+                long iteration = resumedIteration + statistics.getIterationCount();
+                if (checkpointLayout != null && iteration % checkpointInterval == 0) {
+                    writeCheckpoint(checkpointLayout, iteration);
+                }
+
+                if (displacement < displacementThreshold) {
+                    statistics.setStopReason(StopReason.DISPLACEMENT_THRESHOLD);
+                    break;
+                }
+                if (energy < energyThreshold) {
+                    statistics.setStopReason(StopReason.ENERGY_THRESHOLD);
+                    break;
+                }
+                if (iteration >= maxIterations) {
+                    statistics.setStopReason(StopReason.MAX_ITERATIONS);
+                    break;
+                }
+                if ((iterationEnd - start) / 1000000L >= timeBudget) {
+                    statistics.setStopReason(StopReason.TIME_BUDGET);
+                    break;
+                }
+            }
+            long iteration = resumedIteration + statistics.getIterationCount();
+            if (checkpointLayout != null && statistics.getIterationCount() > 0 && iteration % checkpointInterval != 0) {
+                writeCheckpoint(checkpointLayout, iteration);
+            }
+        } finally {
+            layout.endAlgo();
+            statistics.setTotalTime(System.nanoTime() - start);
+        }
+        return statistics;
+    }
+
+    private void writeCheckpoint(CheckpointLayout checkpointLayout, long iteration) {
+        //A failed checkpoint doesn't stop the run, the previous one is kept
+        try {
+            checkpoint.write(checkpointLayout, iteration);
+        } catch (IOException ex) {
+            Exceptions.printStackTrace(ex);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+/*
+Copyright 2008-2010 Gephi
+Website : http://www.gephi.org
+
+This file is part of Gephi.
+
+DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+
+Copyright 2011 Gephi Consortium. All rights reserved.
+
+The contents of this file are subject to the terms of either the GNU
+General Public License Version 3 only ("GPL") or the Common
+Development and Distribution License("CDDL") (collectively, the
+"License"). You may not use this file except in compliance with the
+License. You can obtain a copy of the License at
+http://gephi.org/about/legal/license-notice/
+or /cddl-1.0.txt and /gpl-3.0.txt. See the License for the
+specific language governing permissions and limitations under the
+License.  When distributing the software, include this License Header
+Notice in each file and include the License files at
+/cddl-1.0.txt and /gpl-3.0.txt. If applicable, add the following below the
+License Header, with the fields enclosed by brackets [] replaced by
+your own identifying information:
+"Portions Copyrighted [year] [name of copyright owner]"
+
+If you wish your version of this file to be governed by only the CDDL
+or only the GPL Version 3, indicate your decision by adding
+"[Contributor] elects to include this software in this distribution
+under the [CDDL or GPL Version 3] license." If you do not indicate a
+single choice of license, a recipient has the option to distribute
+your version of this file under either the CDDL, the GPL Version 3 or
+to extend the choice of license to its licensees as provided above.
+However, if you add GPL Version 3 code and therefore, elected the GPL
+Version 3 license, then the option applies only if the new code is
+made subject to such option by the copyright holder.
+
+Contributor(s):
+
+Portions Copyrighted 2011 Gephi Consortium.
+ */
+package org.gephi.layout.spi;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Layouts can implement this interface to save their state in checkpoints,
+ * so long runs can be resumed after the process stopped.
+ * <p>
+ * A checkpoint holds the node positions and everything the layout needs to
+ * continue exactly where it was, like speeds or forces of the last pass.
+ * Both methods are called between passes: <code>writeCheckpoint()</code>
+ * after a call to <code>goAlgo()</code> and <code>readCheckpoint()</code>
+ * after <code>initAlgo()</code>. Nodes that are not in the graph anymore
+ * are skipped when reading, new nodes keep their state.
+ *
+ * @see org.gephi.layout.api.LayoutCheckpoint
+ */
+public interface CheckpointLayout extends Layout {
+
+    /**
+     * Writes the state of the layout and the node positions.
+     * @param output the output to write to
+     * @throws IOException if the output can't be written
+     */
+    public void writeCheckpoint(DataOutput output) throws IOException;
+
+    /**
+     * Restores the state written by <code>writeCheckpoint()</code>, node
+     * positions included.
+     * @param input the input to read from
+     * @throws IOException if the input can't be read or is not a checkpoint
+     * of this layout
+     */
+    public void readCheckpoint(DataInput input) throws IOException;
+}
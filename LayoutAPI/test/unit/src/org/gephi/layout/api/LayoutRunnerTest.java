@@ -0,0 +1,265 @@
+/*
+Copyright 2008-2010 Gephi
+Website : http://www.gephi.org
+
+This file is part of Gephi.
+
+DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+
+Copyright 2011 Gephi Consortium. All rights reserved.
+
+The contents of this file are subject to the terms of either the GNU
+General Public License Version 3 only ("GPL") or the Common
+Development and Distribution License("CDDL") (collectively, the
+"License"). You may not use this file except in compliance with the
+License. You can obtain a copy of the License at
+http://gephi.org/about/legal/license-notice/
+or /cddl-1.0.txt and /gpl-3.0.txt. See the License for the
+specific language governing permissions and limitations under the
+License.  When distributing the software, include this License Header
+Notice in each file and include the License files at
+/cddl-1.0.txt and /gpl-3.0.txt. If applicable, add the following below the
+License Header, with the fields enclosed by brackets [] replaced by
+your own identifying information:
+"Portions Copyrighted [year] [name of copyright owner]"
+
+If you wish your version of this file to be governed by only the CDDL
+or only the GPL Version 3, indicate your decision by adding
+"[Contributor] elects to include this software in this distribution
+under the [CDDL or GPL Version 3] license." If you do not indicate a
+single choice of license, a recipient has the option to distribute
+your version of this file under either the CDDL, the GPL Version 3 or
+to extend the choice of license to its licensees as provided above.
+However, if you add GPL Version 3 code and therefore, elected the GPL
+Version 3 license, then the option applies only if the new code is
+made subject to such option by the copyright holder.
+
+Contributor(s):
+
+Portions Copyrighted 2011 Gephi Consortium.
+ */
+package org.gephi.layout.api;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.IOException;
+import org.gephi.graph.api.GraphModel;
+import org.gephi.layout.api.LayoutRunStatistics.StopReason;
+import org.gephi.layout.spi.CheckpointLayout;
+import org.gephi.layout.spi.ConvergentLayout;
+import org.gephi.layout.spi.LayoutBuilder;
+import org.gephi.layout.spi.LayoutProperty;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class LayoutRunnerTest {
+
+    @Test
+    public void testMaxIterations() {
+        MockLayout layout = new MockLayout(Integer.MAX_VALUE);
+        LayoutRunner runner = new LayoutRunner(layout);
+        runner.setMaxIterations(10);
+        LayoutRunStatistics statistics = runner.run();
+        assertEquals(StopReason.MAX_ITERATIONS, statistics.getStopReason());
+        assertEquals(10, statistics.getIterationCount());
+        assertEquals(10, layout.passes);
+        assertTrue(layout.ended);
+    }
+
+    @Test
+    public void testLayoutFinished() {
+        MockLayout layout = new MockLayout(5);
+        LayoutRunStatistics statistics = new LayoutRunner(layout).run();
+        assertEquals(StopReason.LAYOUT_FINISHED, statistics.getStopReason());
+        assertEquals(5, statistics.getIterationCount());
+    }
+
+    @Test
+    public void testDisplacementThreshold() {
+        MockLayout layout = new MockLayout(Integer.MAX_VALUE);
+        LayoutRunner runner = new LayoutRunner(layout);
+        runner.setDisplacementThreshold(0.1);
+        LayoutRunStatistics statistics = runner.run();
+        assertEquals(StopReason.DISPLACEMENT_THRESHOLD, statistics.getStopReason());
+        //Displacement is 1/passes
+        assertEquals(11, statistics.getIterationCount());
+        assertEquals(1.0, statistics.getDisplacement(0), 1e-9);
+        assertEquals(1.0 / 11, statistics.getDisplacement(10), 1e-9);
+        assertEquals(2.0, statistics.getEnergy(0), 1e-9);
+    }
+
+    @Test
+    public void testEnergyThreshold() {
+        MockLayout layout = new MockLayout(Integer.MAX_VALUE);
+        LayoutRunner runner = new LayoutRunner(layout);
+        runner.setEnergyThreshold(0.5);
+        LayoutRunStatistics statistics = runner.run();
+        assertEquals(StopReason.ENERGY_THRESHOLD, statistics.getStopReason());
+        assertEquals(5, statistics.getIterationCount());
+    }
+
+    @Test
+    public void testNoHistory() {
+        MockLayout layout = new MockLayout(Integer.MAX_VALUE);
+        LayoutRunner runner = new LayoutRunner(layout);
+        runner.setRecordHistory(false);
+        runner.setDisplacementThreshold(0.1);
+        LayoutRunStatistics statistics = runner.run();
+        assertEquals(StopReason.DISPLACEMENT_THRESHOLD, statistics.getStopReason());
+        assertEquals(11, statistics.getIterationCount());
+        assertFalse(statistics.isHistoryRecorded());
+        assertEquals(1.0 / 11, statistics.getDisplacement(10), 1e-9);
+        try {
+            statistics.getDisplacement(0);
+            fail();
+        } catch (IllegalStateException ex) {
+        }
+    }
+
+    @Test
+    public void testCancel() {
+        MockLayout layout = new MockLayout(Integer.MAX_VALUE);
+        LayoutRunner runner = new LayoutRunner(layout);
+        runner.cancel();
+        LayoutRunStatistics statistics = runner.run();
+        assertEquals(StopReason.CANCELLED, statistics.getStopReason());
+        assertEquals(0, statistics.getIterationCount());
+        assertTrue(layout.ended);
+    }
+
+    @Test
+    public void testCheckpoint() throws IOException {
+        File file = File.createTempFile("layout", ".checkpoint");
+        file.delete();
+        try {
+            MockLayout layout = new MockLayout(Integer.MAX_VALUE);
+            LayoutRunner runner = new LayoutRunner(layout);
+            runner.setCheckpoint(file, 4);
+            runner.setMaxIterations(10);
+            runner.run();
+            assertTrue(file.exists());
+            assertEquals(3, layout.checkpoints);
+
+            //Resumes at the 10th pass and runs until the 25th
+            MockLayout resumed = new MockLayout(Integer.MAX_VALUE);
+            runner = new LayoutRunner(resumed);
+            runner.setCheckpoint(file, 4);
+            runner.setMaxIterations(25);
+            LayoutRunStatistics statistics = runner.run();
+            assertEquals(StopReason.MAX_ITERATIONS, statistics.getStopReason());
+            assertEquals(10, statistics.getResumedIteration());
+            assertEquals(15, statistics.getIterationCount());
+            assertEquals(25, resumed.passes);
+            assertEquals(1.0 / 11, statistics.getDisplacement(0), 1e-9);
+
+            assertEquals(25, new LayoutCheckpoint(file).read(new MockLayout(0)));
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testCheckpointOfOtherLayout() throws IOException {
+        File file = File.createTempFile("layout", ".checkpoint");
+        try {
+            new LayoutCheckpoint(file).write(new MockLayout(0), 0);
+            new LayoutCheckpoint(file).read(new CheckpointLayout() {
+
+                public void writeCheckpoint(DataOutput output) {
+                }
+
+                public void readCheckpoint(DataInput input) {
+                }
+
+                public void initAlgo() {
+                }
+
+                public void setGraphModel(GraphModel graphModel) {
+                }
+
+                public void goAlgo() {
+                }
+
+                public boolean canAlgo() {
+                    return false;
+                }
+
+                public void endAlgo() {
+                }
+
+                public LayoutProperty[] getProperties() {
+                    return new LayoutProperty[0];
+                }
+
+                public void resetPropertiesValues() {
+                }
+
+                public LayoutBuilder getBuilder() {
+                    return null;
+                }
+            });
+        } finally {
+            file.delete();
+        }
+    }
+
+    private static class MockLayout implements ConvergentLayout, CheckpointLayout {
+
+        private final int maxPasses;
+        private int passes;
+        private boolean ended;
+        private int checkpoints;
+
+        public MockLayout(int maxPasses) {
+            this.maxPasses = maxPasses;
+        }
+
+        public void writeCheckpoint(DataOutput output) throws IOException {
+            output.writeInt(passes);
+            checkpoints++;
+        }
+
+        public void readCheckpoint(DataInput input) throws IOException {
+            passes = input.readInt();
+        }
+
+        public double getTotalDisplacement() {
+            return 1.0 / passes;
+        }
+
+        public double getEnergy() {
+            return 2.0 / passes;
+        }
+
+        public void initAlgo() {
+            passes = 0;
+        }
+
+        public void setGraphModel(GraphModel graphModel) {
+        }
+
+        public void goAlgo() {
+            passes++;
+        }
+
+        public boolean canAlgo() {
+            return passes < maxPasses;
+        }
+
+        public void endAlgo() {
+            ended = true;
+        }
+
+        public LayoutProperty[] getProperties() {
+            return new LayoutProperty[0];
+        }
+
+        public void resetPropertiesValues() {
+        }
+
+        public LayoutBuilder getBuilder() {
+            return null;
+        }
+    }
+}
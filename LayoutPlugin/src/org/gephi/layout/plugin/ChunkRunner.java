@@ -0,0 +1,165 @@
+/*
+Copyright 2008-2010 Gephi
+Website : http://www.gephi.org
+
+This file is part of Gephi.
+
+DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+
+Copyright 2011 Gephi Consortium. All rights reserved.
+
+The contents of this file are subject to the terms of either the GNU
+General Public License Version 3 only ("GPL") or the Common
+Development and Distribution License("CDDL") (collectively, the
+"License"). You may not use this file except in compliance with the
+License. You can obtain a copy of the License at
+http://gephi.org/about/legal/license-notice/
+or /cddl-1.0.txt and /gpl-3.0.txt. See the License for the
+specific language governing permissions and limitations under the
+License.  When distributing the software, include this License Header
+Notice in each file and include the License files at
+/cddl-1.0.txt and /gpl-3.0.txt. If applicable, add the following below the
+License Header, with the fields enclosed by brackets [] replaced by
+your own identifying information:
+"Portions Copyrighted [year] [name of copyright owner]"
+
+If you wish your version of this file to be governed by only the CDDL
+or only the GPL Version 3, indicate your decision by adding
+"[Contributor] elects to include this software in this distribution
+under the [CDDL or GPL Version 3] license." If you do not indicate a
+single choice of license, a recipient has the option to distribute
+your version of this file under either the CDDL, the GPL Version 3 or
+to extend the choice of license to its licensees as provided above.
+However, if you add GPL Version 3 code and therefore, elected the GPL
+Version 3 license, then the option applies only if the new code is
+made subject to such option by the copyright holder.
+
+Contributor(s):
+
+Portions Copyrighted 2011 Gephi Consortium.
+*/
+package org.gephi.layout.plugin;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Splits loops over nodes in fixed size chunks and runs them on the calling
+ * thread and the workers of a pool shared by all layouts. Chunks
+ * don't depend on the thread count, so that reductions done per chunk give
+ * the same results whatever the number of threads.
+ */
+public class ChunkRunner {
+
+    static final int CHUNK_SIZE = 256;
+    private static ExecutorService sharedPool;
+    private final int threadCount;
+
+    public ChunkRunner(int threadCount) {
+        this.threadCount = Math.max(1, threadCount);
+    }
+
+    public static int getChunkCount(int count) {
+        return (count + CHUNK_SIZE - 1) / CHUNK_SIZE;
+    }
+
+    /**
+     * Runs <code>task</code> on all chunks of <code>count</code> elements and
+     * returns when they are all done. If a chunk fails, the remaining chunks
+     * are skipped and the failure is thrown once all workers have stopped.
+     */
+    public void run(final int count, final ChunkTask task) {
+        final int chunkCount = getChunkCount(count);
+        final AtomicInteger nextChunk = new AtomicInteger();
+        Runnable worker = new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    int chunk;
+                    while ((chunk = nextChunk.getAndIncrement()) < chunkCount) {
+                        int from = chunk * CHUNK_SIZE;
+                        task.run(chunk, from, Math.min(count, from + CHUNK_SIZE));
+                    }
+                } catch (RuntimeException ex) {
+                    nextChunk.set(chunkCount);
+                    throw ex;
+                } catch (Error ex) {
+                    nextChunk.set(chunkCount);
+                    throw ex;
+                }
+            }
+        };
+        int workerCount = Math.min(threadCount, chunkCount);
+        List<Future<?>> futures = new ArrayList<Future<?>>();
+        if (workerCount > 1) {
+            ExecutorService pool = getSharedPool();
+            for (int w = 1; w < workerCount; w++) {
+                futures.add(pool.submit(worker));
+            }
+        }
+        Throwable failure = null;
+        try {
+            worker.run();
+        } catch (RuntimeException ex) {
+            failure = ex;
+        } catch (Error ex) {
+            failure = ex;
+        }
+
+        //Workers share the task arrays, wait for all of them before returning
+        boolean interrupted = false;
+        for (Future<?> future : futures) {
+            while (true) {
+                try {
+                    future.get();
+                    break;
+                } catch (InterruptedException ex) {
+                    interrupted = true;
+                } catch (ExecutionException ex) {
+                    if (failure == null) {
+                        failure = ex.getCause();
+                    }
+                    break;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        } else if (failure instanceof Error) {
+            throw (Error) failure;
+        } else if (failure != null) {
+            throw new RuntimeException(failure);
+        }
+    }
+
+    private static synchronized ExecutorService getSharedPool() {
+        if (sharedPool == null) {
+            final AtomicInteger threadNumber = new AtomicInteger();
+            sharedPool = Executors.newCachedThreadPool(new ThreadFactory() {
+
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "Layout " + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return sharedPool;
+    }
+
+    public interface ChunkTask {
+
+        public void run(int chunk, int from, int to);
+    }
+}
@@ -216,4 +216,37 @@ public class ForceVectorUtils {
     protected static double repulsion(double c, double dist) {
         return 0.001 * c / dist;
     }
+
+    /**
+     * Gives depth to nodes when they all have the same z position, as 3D
+     * forces can't move nodes out of their plane otherwise. Depths are spread
+     * over the size of the layout and only depend on the node index. Fixed
+     * nodes are not moved.
+     */
+    public static void spreadDepth(int count, float[] x, float[] y, float[] z, boolean[] fixed) {
+        float minX = Float.POSITIVE_INFINITY, maxX = Float.NEGATIVE_INFINITY;
+        float minY = Float.POSITIVE_INFINITY, maxY = Float.NEGATIVE_INFINITY;
+        for (int i = 0; i < count; i++) {
+            if (z[i] != z[0]) {
+                return;
+            }
+            minX = Math.min(minX, x[i]);
+            maxX = Math.max(maxX, x[i]);
+            minY = Math.min(minY, y[i]);
+            maxY = Math.max(maxY, y[i]);
+        }
+        float spread = Math.max(maxX - minX, maxY - minY);
+        if (!(spread > 0)) {
+            spread = 1f;
+        }
+        for (int i = 0; i < count; i++) {
+            if (fixed == null || !fixed[i]) {
+                int h = i * 0x9E3779B1;
+                h ^= h >>> 15;
+                h *= 0x85EBCA6B;
+                h ^= h >>> 13;
+                z[i] += spread * ((h & 0xFFFFFF) / (float) 0x1000000 - 0.5f);
+            }
+        }
+    }
 }
@@ -0,0 +1,232 @@
+/*
+Copyright 2008-2010 Gephi
+Website : http://www.gephi.org
+
+This file is part of Gephi.
+
+DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+
+Copyright 2011 Gephi Consortium. All rights reserved.
+
+The contents of this file are subject to the terms of either the GNU
+General Public License Version 3 only ("GPL") or the Common
+Development and Distribution License("CDDL") (collectively, the
+"License"). You may not use this file except in compliance with the
+License. You can obtain a copy of the License at
+http://gephi.org/about/legal/license-notice/
+or /cddl-1.0.txt and /gpl-3.0.txt. See the License for the
+specific language governing permissions and limitations under the
+License.  When distributing the software, include this License Header
+Notice in each file and include the License files at
+/cddl-1.0.txt and /gpl-3.0.txt. If applicable, add the following below the
+License Header, with the fields enclosed by brackets [] replaced by
+your own identifying information:
+"Portions Copyrighted [year] [name of copyright owner]"
+
+If you wish your version of this file to be governed by only the CDDL
+or only the GPL Version 3, indicate your decision by adding
+"[Contributor] elects to include this software in this distribution
+under the [CDDL or GPL Version 3] license." If you do not indicate a
+single choice of license, a recipient has the option to distribute
+your version of this file under either the CDDL, the GPL Version 3 or
+to extend the choice of license to its licensees as provided above.
+However, if you add GPL Version 3 code and therefore, elected the GPL
+Version 3 license, then the option applies only if the new code is
+made subject to such option by the copyright holder.
+
+Contributor(s):
+
+Portions Copyrighted 2011 Gephi Consortium.
+ */
+package org.gephi.layout.plugin;
+
+/**
+ * Uniform grid index of points, for queries restricted to a neighbourhood.
+ * <p>
+ * Cells are keyed by their packed integer coordinates in an open addressing
+ * hash table, so only non-empty cells are stored whatever the extent of the
+ * layout. The indices of the points are stored in one array, ordered by cell.
+ * <p>
+ * Layouts call <code>update()</code> at each pass: the index is only built
+ * again if a point changed cell since the last build, which is rare once
+ * the layout is almost converged.
+ * <p>
+ * Typical query, for the points around <code>(x, y)</code>:
+ * <pre>
+ * for (int cx = hash.getCellX(x - r); cx &lt;= hash.getCellX(x + r); cx++) {
+ *     for (int cy = hash.getCellY(y - r); cy &lt;= hash.getCellY(y + r); cy++) {
+ *         int cell = hash.getCell(cx, cy);
+ *         if (cell != -1) {
+ *             for (int i = hash.getCellStart(cell); i &lt; hash.getCellEnd(cell); i++) {
+ *                 int point = hash.getPoint(i);
+ *             }
+ *         }
+ *     }
+ * }
+ * </pre>
+ */
+public class SpatialHash {
+
+    private final float cellSize;
+    private int pointCount;
+    //Points
+    private long[] pointKeys = new long[0];
+    private int[] pointCells = new int[0];
+    private int[] points = new int[0];
+    //Cells
+    private int cellCount;
+    private int[] cellStarts = new int[1];
+    //Hash table, from key to cell
+    private long[] tableKeys = new long[0];
+    private int[] tableCells = new int[0];
+    private int tableMask;
+
+    public SpatialHash(float cellSize) {
+        if (!(cellSize > 0) || Float.isInfinite(cellSize)) {
+            throw new IllegalArgumentException("The cell size must be strictly positive");
+        }
+        this.cellSize = cellSize;
+    }
+
+    public float getCellSize() {
+        return cellSize;
+    }
+
+    /**
+     * Builds the index again if the number of points changed or if one point
+     * is not in the cell it was in at the last build.
+     * @param count the number of points
+     * @param x     the x positions of the points
+     * @param y     the y positions of the points
+     * @return      <code>true</code> if the index has been built again
+     */
+    public boolean update(int count, float[] x, float[] y) {
+        if (count == pointCount) {
+            boolean moved = false;
+            for (int i = 0; i < count && !moved; i++) {
+                moved = pointKeys[i] != key(getCellX(x[i]), getCellY(y[i]));
+            }
+            if (!moved) {
+                return false;
+            }
+        }
+        build(count, x, y);
+        return true;
+    }
+
+    /**
+     * Builds the index of the <code>count</code> first points.
+     * @param count the number of points
+     * @param x     the x positions of the points
+     * @param y     the y positions of the points
+     */
+    public void build(int count, float[] x, float[] y) {
+        ensureCapacity(count);
+        pointCount = count;
+        cellCount = 0;
+        java.util.Arrays.fill(tableCells, -1);
+
+        //Cell of each point
+        for (int i = 0; i < count; i++) {
+            long key = key(getCellX(x[i]), getCellY(y[i]));
+            pointKeys[i] = key;
+            int slot = slot(key);
+            int cell = tableCells[slot];
+            if (cell == -1) {
+                cell = cellCount++;
+                tableKeys[slot] = key;
+                tableCells[slot] = cell;
+                cellStarts[cell + 1] = 0;
+            }
+            pointCells[i] = cell;
+            cellStarts[cell + 1]++;
+        }
+
+        //Points ordered by cell
+        cellStarts[0] = 0;
+        for (int c = 0; c < cellCount; c++) {
+            cellStarts[c + 1] += cellStarts[c];
+        }
+        int[] cursors = new int[cellCount];
+        System.arraycopy(cellStarts, 0, cursors, 0, cellCount);
+        for (int i = 0; i < count; i++) {
+            points[cursors[pointCells[i]]++] = i;
+        }
+    }
+
+    public int getCellX(float x) {
+        return (int) Math.floor(x / cellSize);
+    }
+
+    public int getCellY(float y) {
+        return (int) Math.floor(y / cellSize);
+    }
+
+    /**
+     * Returns the cell at <code>(cellX, cellY)</code>, or <code>-1</code> if
+     * it contains no point.
+     */
+    public int getCell(int cellX, int cellY) {
+        if (cellCount == 0) {
+            return -1;
+        }
+        return tableCells[slot(key(cellX, cellY))];
+    }
+
+    public int getCellCount() {
+        return cellCount;
+    }
+
+    public int getCellStart(int cell) {
+        return cellStarts[cell];
+    }
+
+    public int getCellEnd(int cell) {
+        return cellStarts[cell + 1];
+    }
+
+    /**
+     * Returns the point at <code>position</code> in the points ordered by
+     * cell.
+     */
+    public int getPoint(int position) {
+        return points[position];
+    }
+
+    public int getPointCount() {
+        return pointCount;
+    }
+
+    private static long key(int cellX, int cellY) {
+        return ((long) cellX << 32) | (cellY & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Returns the slot of <code>key</code> in the table, or the empty slot
+     * where it would be inserted.
+     */
+    private int slot(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        int slot = (int) (h ^ (h >>> 32)) & tableMask;
+        while (tableCells[slot] != -1 && tableKeys[slot] != key) {
+            slot = (slot + 1) & tableMask;
+        }
+        return slot;
+    }
+
+    private void ensureCapacity(int count) {
+        if (pointKeys.length < count) {
+            pointKeys = new long[count];
+            pointCells = new int[count];
+            points = new int[count];
+            cellStarts = new int[count + 1];
+        }
+        //Load factor at most 0.5
+        int tableSize = Integer.highestOneBit(Math.max(1, count)) * 4;
+        if (tableCells.length < tableSize) {
+            tableKeys = new long[tableSize];
+            tableCells = new int[tableSize];
+            tableMask = tableSize - 1;
+        }
+    }
+}
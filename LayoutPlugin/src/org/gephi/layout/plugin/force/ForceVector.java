@@ -52,10 +52,12 @@ public class ForceVector implements Spatial, LayoutData {
 
     protected float x;
     protected float y;
+    protected float z;
 
     public ForceVector(ForceVector vector) {
         this.x = vector.x();
         this.y = vector.y();
+        this.z = vector.z();
     }
 
     public ForceVector(float x, float y) {
@@ -63,6 +65,12 @@ public class ForceVector implements Spatial, LayoutData {
         this.y = y;
     }
 
+    public ForceVector(float x, float y, float z) {
+        this.x = x;
+        this.y = y;
+        this.z = z;
+    }
+
     public ForceVector() {
         this.x = 0;
         this.y = 0;
@@ -77,7 +85,7 @@ public class ForceVector implements Spatial, LayoutData {
     }
 
     public float z() {
-        throw new UnsupportedOperationException("Not supported yet.");
+        return z;
     }
 
     public void setX(float x) {
@@ -88,27 +96,34 @@ public class ForceVector implements Spatial, LayoutData {
         this.y = y;
     }
 
+    public void setZ(float z) {
+        this.z = z;
+    }
+
     public void add(ForceVector f) {
         if (f != null) {
             x += f.x();
             y += f.y();
+            z += f.z();
         }
     }
 
     public void multiply(float s) {
         x *= s;
         y *= s;
+        z *= s;
     }
 
     public void subtract(ForceVector f) {
         if (f != null) {
             x -= f.x();
             y -= f.y();
+            z -= f.z();
         }
     }
 
     public float getEnergy() {
-        return x * x + y * y;
+        return x * x + y * y + z * z;
     }
 
     public float getNorm() {
@@ -117,7 +132,7 @@ public class ForceVector implements Spatial, LayoutData {
 
     public ForceVector normalize() {
         float norm = getNorm();
-        return new ForceVector(x / norm, y / norm);
+        return new ForceVector(x / norm, y / norm, z / norm);
     }
 
     @Override
@@ -78,5 +78,11 @@ public class ProportionalDisplacement implements Displacement {
         if (assertValue(y)) {
             node.setY(y);
         }
+        if (displacement.z() != 0) {
+            float z = node.z() + displacement.z();
+            if (assertValue(z)) {
+                node.setZ(z);
+            }
+        }
     }
 }
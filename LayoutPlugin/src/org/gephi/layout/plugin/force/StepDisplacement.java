@@ -73,6 +73,12 @@ public class StepDisplacement implements Displacement {
         if (assertValue(y)) {
             node.setY(y);
         }
+        if (displacement.z() != 0) {
+            float z = node.z() + displacement.z();
+            if (assertValue(z)) {
+                node.setZ(z);
+            }
+        }
     }
 
     public void setStep(float step) {
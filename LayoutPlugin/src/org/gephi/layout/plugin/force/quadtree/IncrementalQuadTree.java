@@ -0,0 +1,483 @@
+/*
+Copyright 2008-2010 Gephi
+Website : http://www.gephi.org
+
+This file is part of Gephi.
+
+DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+
+Copyright 2011 Gephi Consortium. All rights reserved.
+
+The contents of this file are subject to the terms of either the GNU
+General Public License Version 3 only ("GPL") or the Common
+Development and Distribution License("CDDL") (collectively, the
+"License"). You may not use this file except in compliance with the
+License. You can obtain a copy of the License at
+http://gephi.org/about/legal/license-notice/
+or /cddl-1.0.txt and /gpl-3.0.txt. See the License for the
+specific language governing permissions and limitations under the
+License.  When distributing the software, include this License Header
+Notice in each file and include the License files at
+/cddl-1.0.txt and /gpl-3.0.txt. If applicable, add the following below the
+License Header, with the fields enclosed by brackets [] replaced by
+your own identifying information:
+"Portions Copyrighted [year] [name of copyright owner]"
+
+If you wish your version of this file to be governed by only the CDDL
+or only the GPL Version 3, indicate your decision by adding
+"[Contributor] elects to include this software in this distribution
+under the [CDDL or GPL Version 3] license." If you do not indicate a
+single choice of license, a recipient has the option to distribute
+your version of this file under either the CDDL, the GPL Version 3 or
+to extend the choice of license to its licensees as provided above.
+However, if you add GPL Version 3 code and therefore, elected the GPL
+Version 3 license, then the option applies only if the new code is
+made subject to such option by the copyright holder.
+
+Contributor(s):
+
+Portions Copyrighted 2011 Gephi Consortium.
+*/
+package org.gephi.layout.plugin.force.quadtree;
+
+/**
+ * Quadtree stored in flat arrays and kept from one iteration to the next.
+ * Cells split at their middle, like <code>QuadTree</code>, and leaves hold
+ * at most one node unless they are at the maximum level. Nodes of a leaf are
+ * chained by <code>getNextNode()</code>.
+ * <p>
+ * <code>update()</code> only moves the nodes that left their leaf, then
+ * computes masses and centers of mass bottom-up. The tree is built again
+ * when a node leaves the root cell, when the number of nodes changes or when
+ * too many cells are empty.
+ * <p>
+ * When built with <code>z</code> positions, cells split in eight octants
+ * instead of four quadrants and the tree is an octree.
+ */
+public class IncrementalQuadTree {
+
+    //Margin added around nodes when building the root, so that it lasts
+    private static final float ROOT_MARGIN = 0.1f;
+    private final int maxLevel;
+    //Cells, children are allocated after their parent
+    private int cellCount;
+    private float[] minX = new float[0];
+    private float[] minY = new float[0];
+    private float[] maxX = new float[0];
+    private float[] maxY = new float[0];
+    private float[] minZ = new float[0];
+    private float[] maxZ = new float[0];
+    private int[] level = new int[0];
+    private int[] firstChild = new int[0];
+    private int[] firstNode = new int[0];
+    private int[] mass = new int[0];
+    private float[] massCenterX = new float[0];
+    private float[] massCenterY = new float[0];
+    private float[] massCenterZ = new float[0];
+    //Nodes
+    private int nodeCount;
+    private int[] nextNode = new int[0];
+    private int[] nodeCell = new int[0];
+    private float[] x;
+    private float[] y;
+    private float[] z;
+    private int childCount = 4;
+    //Statistics
+    private int movedCount;
+    private boolean rebuilt;
+
+    public IncrementalQuadTree(int maxLevel) {
+        this.maxLevel = maxLevel;
+    }
+
+    /**
+     * Builds the tree of the <code>nodeCount</code> first nodes.
+     * @param nodeCount the number of nodes
+     * @param x         the nodes x positions
+     * @param y         the nodes y positions
+     */
+    public void build(int nodeCount, float[] x, float[] y) {
+        build(nodeCount, x, y, null);
+    }
+
+    /**
+     * Builds the tree of the <code>nodeCount</code> first nodes, in three
+     * dimensions if <code>z</code> is not <code>null</code>.
+     * @param nodeCount the number of nodes
+     * @param x         the nodes x positions
+     * @param y         the nodes y positions
+     * @param z         the nodes z positions, or <code>null</code>
+     */
+    public void build(int nodeCount, float[] x, float[] y, float[] z) {
+        this.nodeCount = nodeCount;
+        this.x = x;
+        this.y = y;
+        this.z = z;
+        childCount = z != null ? 8 : 4;
+        rebuilt = true;
+        movedCount = nodeCount;
+        cellCount = 0;
+        if (nextNode.length < nodeCount) {
+            nextNode = new int[nodeCount];
+            nodeCell = new int[nodeCount];
+        }
+        ensureCellCapacity(1);
+        if (nodeCount == 0) {
+            return;
+        }
+
+        float left = Float.POSITIVE_INFINITY;
+        float right = Float.NEGATIVE_INFINITY;
+        float bottom = Float.POSITIVE_INFINITY;
+        float top = Float.NEGATIVE_INFINITY;
+        float back = 0;
+        float front = 0;
+        for (int i = 0; i < nodeCount; i++) {
+            left = Math.min(left, x[i]);
+            right = Math.max(right, x[i]);
+            bottom = Math.min(bottom, y[i]);
+            top = Math.max(top, y[i]);
+        }
+        if (z != null) {
+            back = Float.POSITIVE_INFINITY;
+            front = Float.NEGATIVE_INFINITY;
+            for (int i = 0; i < nodeCount; i++) {
+                back = Math.min(back, z[i]);
+                front = Math.max(front, z[i]);
+            }
+        }
+        float size = Math.max(Math.max(right - left, top - bottom), Math.max(front - back, QuadTree.eps));
+        float margin = size * ROOT_MARGIN;
+        newCell(left - margin, bottom - margin, back - margin,
+                left + size + margin, bottom + size + margin, back + size + margin, 0);
+        for (int i = 0; i < nodeCount; i++) {
+            insert(i);
+        }
+        computeMass();
+    }
+
+    /**
+     * Updates the tree after nodes moved. Nodes that are still in their leaf
+     * are not touched.
+     * @param nodeCount the number of nodes
+     * @param x         the nodes x positions
+     * @param y         the nodes y positions
+     */
+    public void update(int nodeCount, float[] x, float[] y) {
+        update(nodeCount, x, y, null);
+    }
+
+    /**
+     * Updates the tree after nodes moved, in three dimensions if
+     * <code>z</code> is not <code>null</code>.
+     * @param nodeCount the number of nodes
+     * @param x         the nodes x positions
+     * @param y         the nodes y positions
+     * @param z         the nodes z positions, or <code>null</code>
+     */
+    public void update(int nodeCount, float[] x, float[] y, float[] z) {
+        if (nodeCount != this.nodeCount || nodeCount == 0 || cellCount == 0
+                || (z != null) != (this.z != null)) {
+            build(nodeCount, x, y, z);
+            return;
+        }
+        this.x = x;
+        this.y = y;
+        this.z = z;
+        for (int i = 0; i < nodeCount; i++) {
+            if (!contains(0, i)) {
+                build(nodeCount, x, y, z);
+                return;
+            }
+        }
+        rebuilt = false;
+        movedCount = 0;
+        for (int i = 0; i < nodeCount; i++) {
+            if (!contains(nodeCell[i], i)) {
+                remove(i);
+                insert(i);
+                movedCount++;
+            }
+        }
+        if (cellCount > childCount * nodeCount + 64) {
+            //Mostly empty cells left by moves
+            build(nodeCount, x, y, z);
+            return;
+        }
+        computeMass();
+    }
+
+    private boolean contains(int cell, int node) {
+        float px = x[node];
+        float py = y[node];
+        boolean contains = px >= minX[cell] && py >= minY[cell]
+                && (px < maxX[cell] || (px == maxX[cell] && maxX[cell] == maxX[0]))
+                && (py < maxY[cell] || (py == maxY[cell] && maxY[cell] == maxY[0]));
+        if (contains && z != null) {
+            float pz = z[node];
+            contains = pz >= minZ[cell]
+                    && (pz < maxZ[cell] || (pz == maxZ[cell] && maxZ[cell] == maxZ[0]));
+        }
+        return contains;
+    }
+
+    private void insert(int node) {
+        int cell = 0;
+        while (true) {
+            if (firstChild[cell] == -1) {
+                if (firstNode[cell] == -1 || level[cell] >= maxLevel) {
+                    nextNode[node] = firstNode[cell];
+                    firstNode[cell] = node;
+                    nodeCell[node] = cell;
+                    return;
+                }
+                split(cell);
+            }
+            cell = getChild(cell, node);
+        }
+    }
+
+    private void remove(int node) {
+        int cell = nodeCell[node];
+        if (firstNode[cell] == node) {
+            firstNode[cell] = nextNode[node];
+        } else {
+            int previous = firstNode[cell];
+            while (nextNode[previous] != node) {
+                previous = nextNode[previous];
+            }
+            nextNode[previous] = nextNode[node];
+        }
+        nextNode[node] = -1;
+    }
+
+    /**
+     * Splits the leaf <code>cell</code> and moves its node to the child it
+     * belongs to.
+     */
+    private void split(int cell) {
+        float midX = (minX[cell] + maxX[cell]) / 2;
+        float midY = (minY[cell] + maxY[cell]) / 2;
+        float midZ = (minZ[cell] + maxZ[cell]) / 2;
+        int childLevel = level[cell] + 1;
+        ensureCellCapacity(cellCount + childCount);
+        int first = cellCount;
+        for (int octant = 0; octant < childCount; octant++) {
+            boolean right = (octant & 1) != 0;
+            boolean top = (octant & 2) != 0;
+            boolean front = (octant & 4) != 0;
+            newCell(right ? midX : minX[cell], top ? midY : minY[cell], front ? midZ : minZ[cell],
+                    right ? maxX[cell] : midX, top ? maxY[cell] : midY, front ? maxZ[cell] : midZ,
+                    childLevel);
+        }
+        firstChild[cell] = first;
+
+        int node = firstNode[cell];
+        firstNode[cell] = -1;
+        while (node != -1) {
+            int next = nextNode[node];
+            int child = getChild(cell, node);
+            nextNode[node] = firstNode[child];
+            firstNode[child] = node;
+            nodeCell[node] = child;
+            node = next;
+        }
+    }
+
+    private int getChild(int cell, int node) {
+        int first = firstChild[cell];
+        int quadrant = (x[node] >= minX[first + 1] ? 1 : 0) + (y[node] >= minY[first + 2] ? 2 : 0);
+        if (z != null && z[node] >= minZ[first + 4]) {
+            quadrant += 4;
+        }
+        return first + quadrant;
+    }
+
+    private int newCell(float left, float bottom, float back, float right, float top, float front, int cellLevel) {
+        ensureCellCapacity(cellCount + 1);
+        int cell = cellCount++;
+        minX[cell] = left;
+        minY[cell] = bottom;
+        maxX[cell] = right;
+        maxY[cell] = top;
+        minZ[cell] = back;
+        maxZ[cell] = front;
+        level[cell] = cellLevel;
+        firstChild[cell] = -1;
+        firstNode[cell] = -1;
+        mass[cell] = 0;
+        massCenterX[cell] = 0;
+        massCenterY[cell] = 0;
+        massCenterZ[cell] = 0;
+        return cell;
+    }
+
+    private void ensureCellCapacity(int capacity) {
+        if (minX.length >= capacity) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, Math.max(16, minX.length * 2));
+        minX = copy(minX, newCapacity);
+        minY = copy(minY, newCapacity);
+        maxX = copy(maxX, newCapacity);
+        maxY = copy(maxY, newCapacity);
+        minZ = copy(minZ, newCapacity);
+        maxZ = copy(maxZ, newCapacity);
+        level = copy(level, newCapacity);
+        firstChild = copy(firstChild, newCapacity);
+        firstNode = copy(firstNode, newCapacity);
+        mass = copy(mass, newCapacity);
+        massCenterX = copy(massCenterX, newCapacity);
+        massCenterY = copy(massCenterY, newCapacity);
+        massCenterZ = copy(massCenterZ, newCapacity);
+    }
+
+    private static float[] copy(float[] array, int length) {
+        float[] result = new float[length];
+        System.arraycopy(array, 0, result, 0, array.length);
+        return result;
+    }
+
+    private static int[] copy(int[] array, int length) {
+        int[] result = new int[length];
+        System.arraycopy(array, 0, result, 0, array.length);
+        return result;
+    }
+
+    /**
+     * Children have greater indices than their parent, so masses are summed
+     * by going through cells backwards.
+     */
+    private void computeMass() {
+        for (int cell = cellCount - 1; cell >= 0; cell--) {
+            int m = 0;
+            double sumX = 0;
+            double sumY = 0;
+            double sumZ = 0;
+            int first = firstChild[cell];
+            if (first == -1) {
+                for (int node = firstNode[cell]; node != -1; node = nextNode[node]) {
+                    m++;
+                    sumX += x[node];
+                    sumY += y[node];
+                    if (z != null) {
+                        sumZ += z[node];
+                    }
+                }
+            } else {
+                for (int child = first; child < first + childCount; child++) {
+                    m += mass[child];
+                    sumX += (double) massCenterX[child] * mass[child];
+                    sumY += (double) massCenterY[child] * mass[child];
+                    sumZ += (double) massCenterZ[child] * mass[child];
+                }
+            }
+            mass[cell] = m;
+            if (m > 0) {
+                massCenterX[cell] = (float) (sumX / m);
+                massCenterY[cell] = (float) (sumY / m);
+                massCenterZ[cell] = (float) (sumZ / m);
+            }
+        }
+    }
+
+    /**
+     * Fills <code>order</code> with the nodes, leaf by leaf in depth-first
+     * order, so that consecutive nodes are close to each other.
+     */
+    public void fillNodeOrder(int[] order) {
+        if (cellCount == 0) {
+            return;
+        }
+        int count = 0;
+        int[] stack = new int[(childCount - 1) * maxLevel + childCount];
+        int top = 0;
+        stack[top++] = 0;
+        while (top > 0) {
+            int cell = stack[--top];
+            if (mass[cell] == 0) {
+                continue;
+            }
+            int first = firstChild[cell];
+            if (first == -1) {
+                for (int node = firstNode[cell]; node != -1; node = nextNode[node]) {
+                    order[count++] = node;
+                }
+            } else {
+                for (int child = first + childCount - 1; child >= first; child--) {
+                    stack[top++] = child;
+                }
+            }
+        }
+    }
+
+    public int getCellCount() {
+        return cellCount;
+    }
+
+    /**
+     * Returns the number of children of split cells, four for a quadtree and
+     * eight for an octree.
+     */
+    public int getChildCount() {
+        return childCount;
+    }
+
+    /**
+     * Returns the first of the children of <code>cell</code>, or
+     * <code>-1</code> if <code>cell</code> is a leaf.
+     */
+    public int getFirstChild(int cell) {
+        return firstChild[cell];
+    }
+
+    /**
+     * Returns the first node of the leaf <code>cell</code>, or <code>-1</code>
+     * if empty.
+     */
+    public int getFirstNode(int cell) {
+        return firstNode[cell];
+    }
+
+    /**
+     * Returns the node after <code>node</code> in its leaf, or <code>-1</code>.
+     */
+    public int getNextNode(int node) {
+        return nextNode[node];
+    }
+
+    public int getMass(int cell) {
+        return mass[cell];
+    }
+
+    public float getMassCenterX(int cell) {
+        return massCenterX[cell];
+    }
+
+    public float getMassCenterY(int cell) {
+        return massCenterY[cell];
+    }
+
+    public float getMassCenterZ(int cell) {
+        return massCenterZ[cell];
+    }
+
+    public float getSize(int cell) {
+        return maxX[cell] - minX[cell];
+    }
+
+    /**
+     * Returns the number of nodes inserted again by the last update, or the
+     * number of nodes if the tree has been built.
+     */
+    public int getMovedCount() {
+        return movedCount;
+    }
+
+    /**
+     * Returns <code>true</code> if the last update built the tree again.
+     */
+    public boolean isRebuilt() {
+        return rebuilt;
+    }
+}
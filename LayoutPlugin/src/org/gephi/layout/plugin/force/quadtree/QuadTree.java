@@ -65,12 +65,16 @@ public class QuadTree implements Spatial {
     public static final float eps = (float) 1e-6;
 
     public static QuadTree buildTree(HierarchicalGraph graph, int maxLevel) {
+        return buildTree(graph.getTopNodes().toArray(), maxLevel);
+    }
+
+    public static QuadTree buildTree(Node[] nodes, int maxLevel) {
         float minX = Float.POSITIVE_INFINITY;
         float maxX = Float.NEGATIVE_INFINITY;
         float minY = Float.POSITIVE_INFINITY;
         float maxY = Float.NEGATIVE_INFINITY;
 
-        for (Node node : graph.getTopNodes()) {
+        for (Node node : nodes) {
             minX = Math.min(minX, node.getNodeData().x());
             maxX = Math.max(maxX, node.getNodeData().x());
             minY = Math.min(minY, node.getNodeData().y());
@@ -79,7 +83,7 @@ public class QuadTree implements Spatial {
 
         float size = Math.max(maxY - minY, maxX - minX);
         QuadTree tree = new QuadTree(minX, minY, size, maxLevel);
-        for (Node node : graph.getTopNodes()) {
+        for (Node node : nodes) {
             tree.addNode(node.getNodeData());
         }
 
@@ -146,8 +150,11 @@ public class QuadTree implements Spatial {
         return mass;
     }
 
+    /**
+     * The tree is planar, nodes are only placed by their x and y coordinates.
+     */
     public float z() {
-        throw new UnsupportedOperationException("Not supported yet.");
+        return 0;
     }
 
     public boolean addNode(Spatial node) {
@@ -49,22 +49,23 @@ import org.gephi.graph.api.Node;
 import org.gephi.graph.api.NodeData;
 import org.gephi.graph.api.Spatial;
 import org.gephi.layout.plugin.AbstractLayout;
+import org.gephi.layout.plugin.ChunkRunner;
+import org.gephi.layout.plugin.ForceVectorUtils;
 import org.gephi.layout.plugin.GraphUtils;
 import org.gephi.layout.plugin.force.AbstractForce;
 import org.gephi.layout.plugin.force.Displacement;
 import org.gephi.layout.plugin.force.ForceVector;
-import org.gephi.layout.plugin.force.quadtree.BarnesHut;
-import org.gephi.layout.spi.Layout;
+import org.gephi.layout.plugin.force.quadtree.IncrementalQuadTree;
+import org.gephi.layout.spi.ConvergentLayout;
 import org.gephi.layout.spi.LayoutBuilder;
 import org.gephi.layout.spi.LayoutProperty;
-import org.gephi.layout.plugin.force.quadtree.QuadTree;
 import org.openide.util.NbBundle;
 
 /**
  * Hu's basic algorithm
  * @author Helder Suzuki <heldersuzuki@gephi.org>
  */
-public class YifanHuLayout extends AbstractLayout implements Layout {
+public class YifanHuLayout extends AbstractLayout implements ConvergentLayout {
 
     private float optimalDistance;
     private float relativeStrength;
@@ -74,12 +75,29 @@ public class YifanHuLayout extends AbstractLayout implements Layout {
     private float stepRatio;
     private int quadTreeMaxLevel;
     private float barnesHutTheta;
+    private boolean adaptiveTheta;
     private float convergenceThreshold;
     private boolean adaptiveCooling;
+    private boolean threeDimensions;
     private Displacement displacement;
     private double energy0;
     private double energy;
+    private double displacementSum = Double.NaN;
     private HierarchicalGraph graph;
+    //Barnes-Hut tree, kept between iterations
+    private IncrementalQuadTree tree;
+    private int treeMaxLevel;
+    private Node[] treeNodes;
+    private float[] nodeX;
+    private float[] nodeY;
+    private float[] nodeZ;
+    private float[] forceX;
+    private float[] forceY;
+    private float[] forceZ;
+    private int[] treeOrder;
+    private final ChunkRunner runner = new ChunkRunner(Runtime.getRuntime().availableProcessors());
+    private long treeTime;
+    private long forceTime;
 
     public YifanHuLayout(LayoutBuilder layoutBuilder, Displacement displacement) {
         super(layoutBuilder);
@@ -102,10 +120,6 @@ public class YifanHuLayout extends AbstractLayout implements Layout {
         return new SpringForce(getOptimalDistance());
     }
 
-    private AbstractForce getNodeForce() {
-        return new ElectricalForce(getRelativeStrength(), getOptimalDistance());
-    }
-
     private void updateStep() {
         if (isAdaptiveCooling()) {
             if (energy < energy0) {
@@ -137,8 +151,10 @@ public class YifanHuLayout extends AbstractLayout implements Layout {
         setStep(initialStep);
         setQuadTreeMaxLevel(10);
         setBarnesHutTheta(1.2f);
+        setAdaptiveTheta(false);
         setAdaptiveCooling(true);
         setConvergenceThreshold(1e-4f);
+        setThreeDimensions(false);
     }
 
     public LayoutProperty[] getProperties() {
@@ -190,6 +206,13 @@ public class YifanHuLayout extends AbstractLayout implements Layout {
                     "YifanHu.convergenceThreshold.name",
                     NbBundle.getMessage(getClass(), "YifanHu.convergenceThreshold.desc"),
                     "getConvergenceThreshold", "setConvergenceThreshold"));
+            properties.add(LayoutProperty.createProperty(
+                    this, Boolean.class,
+                    NbBundle.getMessage(getClass(), "YifanHu.threeDimensions.name"),
+                    YIFANHU_CATEGORY,
+                    "YifanHu.threeDimensions.name",
+                    NbBundle.getMessage(getClass(), "YifanHu.threeDimensions.desc"),
+                    "isThreeDimensions", "setThreeDimensions"));
             properties.add(LayoutProperty.createProperty(
                     this, Integer.class, 
                     NbBundle.getMessage(getClass(), "YifanHu.quadTreeMaxLevel.name"),
@@ -204,6 +227,13 @@ public class YifanHuLayout extends AbstractLayout implements Layout {
                     "YifanHu.theta.name",
                     NbBundle.getMessage(getClass(), "YifanHu.theta.desc"),
                     "getBarnesHutTheta", "setBarnesHutTheta"));
+            properties.add(LayoutProperty.createProperty(
+                    this, Boolean.class,
+                    NbBundle.getMessage(getClass(), "YifanHu.adaptiveTheta.name"),
+                    BARNESHUT_CATEGORY,
+                    "YifanHu.adaptiveTheta.name",
+                    NbBundle.getMessage(getClass(), "YifanHu.adaptiveTheta.desc"),
+                    "isAdaptiveTheta", "setAdaptiveTheta"));
         } catch (Exception e) {
             e.printStackTrace();
         }
@@ -224,6 +254,8 @@ public class YifanHuLayout extends AbstractLayout implements Layout {
         progress = 0;
         setConverged(false);
         setStep(initialStep);
+        tree = null;
+        treeNodes = null;
     }
 
     public void endAlgo() {
@@ -231,6 +263,15 @@ public class YifanHuLayout extends AbstractLayout implements Layout {
             NodeData data = node.getNodeData();
             data.setLayoutData(null);
         }
+        tree = null;
+        treeNodes = null;
+        nodeX = null;
+        nodeY = null;
+        nodeZ = null;
+        forceX = null;
+        forceY = null;
+        forceZ = null;
+        treeOrder = null;
     }
 
     public void goAlgo() {
@@ -244,19 +285,15 @@ public class YifanHuLayout extends AbstractLayout implements Layout {
         }
 
         // Evaluates n^2 inter node forces using BarnesHut.
-        QuadTree tree = QuadTree.buildTree(graph, getQuadTreeMaxLevel());
-
-//        double electricEnergy = 0; ///////////////////////
-//        double springEnergy = 0; ///////////////////////
-        BarnesHut barnes = new BarnesHut(getNodeForce());
-        barnes.setTheta(getBarnesHutTheta());
-        for (Node node : nodes) {
-            NodeData data = node.getNodeData();
-            ForceVector layoutData = data.getLayoutData();
-
-            ForceVector f = barnes.calculateForce(data, tree);
-            layoutData.add(f);
-//            electricEnergy += f.getEnergy();
+        long time = System.nanoTime();
+        updateTree(nodes);
+        long forceStart = System.nanoTime();
+        treeTime = forceStart - time;
+        computeElectricalForces(nodes.length);
+        forceTime = System.nanoTime() - forceStart;
+        for (int i = 0; i < nodes.length; i++) {
+            ForceVector layoutData = nodes[i].getNodeData().getLayoutData();
+            layoutData.add(new ForceVector(forceX[i], forceY[i], threeDimensions ? forceZ[i] : 0));
         }
 
         // Apply edge forces.
@@ -268,7 +305,7 @@ public class YifanHuLayout extends AbstractLayout implements Layout {
                 ForceVector f1 = n1.getLayoutData();
                 ForceVector f2 = n2.getLayoutData();
 
-                ForceVector f = getEdgeForce().calculateForce(n1, n2);
+                ForceVector f = threeDimensions ? getSpringForce3D(n1, n2) : getEdgeForce().calculateForce(n1, n2);
                 f1.add(f);
                 f2.subtract(f);
             }
@@ -287,13 +324,19 @@ public class YifanHuLayout extends AbstractLayout implements Layout {
         }
 
         // Apply displacements on nodes.
+        displacementSum = 0;
         for (Node n : nodes) {
             NodeData data = n.getNodeData();
             if (!data.isFixed()) {
                 ForceVector force = data.getLayoutData();
 
                 force.multiply((float) (1.0 / maxForce));
+                float x = data.x();
+                float y = data.y();
+                float z = data.z();
                 getDisplacement().moveNode(data, force);
+                double dz = threeDimensions ? data.z() - z : 0;
+                displacementSum += Math.sqrt((data.x() - x) * (data.x() - x) + (data.y() - y) * (data.y() - y) + dz * dz);
             }
         }
         postAlgo();
@@ -304,11 +347,200 @@ public class YifanHuLayout extends AbstractLayout implements Layout {
     }
 
 
+    /**
+     * Spring force with the distance in three dimensions, as
+     * <code>SpringForce</code> only uses x and y.
+     */
+    private ForceVector getSpringForce3D(NodeData n1, NodeData n2) {
+        float dx = n2.x() - n1.x();
+        float dy = n2.y() - n1.y();
+        float dz = n2.z() - n1.z();
+        float distance = (float) Math.sqrt(dx * dx + dy * dy + dz * dz);
+        ForceVector f = new ForceVector(dx, dy, dz);
+        f.multiply(distance / optimalDistance);
+        return f;
+    }
+
+    /**
+     * Reads positions and updates the tree, which is built again only when
+     * the nodes have changed. Nodes are then ordered by leaf, so that threads
+     * work on separate subtrees.
+     */
+    private void updateTree(Node[] nodes) {
+        int nodeCount = nodes.length;
+        int maxLevel = getQuadTreeMaxLevel();
+        boolean sameNodes = tree != null && treeNodes.length == nodeCount
+                && (tree.getChildCount() == 8) == threeDimensions
+                && treeMaxLevel == maxLevel;
+        for (int i = 0; sameNodes && i < nodeCount; i++) {
+            sameNodes = treeNodes[i] == nodes[i];
+        }
+        if (nodeX == null || nodeX.length != nodeCount) {
+            nodeX = new float[nodeCount];
+            nodeY = new float[nodeCount];
+            forceX = new float[nodeCount];
+            forceY = new float[nodeCount];
+            treeOrder = new int[nodeCount];
+        }
+        if (threeDimensions && (nodeZ == null || nodeZ.length != nodeCount)) {
+            nodeZ = new float[nodeCount];
+            forceZ = new float[nodeCount];
+        }
+        for (int i = 0; i < nodeCount; i++) {
+            NodeData data = nodes[i].getNodeData();
+            nodeX[i] = data.x();
+            nodeY[i] = data.y();
+        }
+        float[] z = null;
+        if (threeDimensions) {
+            z = nodeZ;
+            for (int i = 0; i < nodeCount; i++) {
+                z[i] = nodes[i].getNodeData().z();
+            }
+            if (!sameNodes) {
+                //Flat layouts get some depth first
+                boolean[] fixed = new boolean[nodeCount];
+                for (int i = 0; i < nodeCount; i++) {
+                    fixed[i] = nodes[i].getNodeData().isFixed();
+                }
+                ForceVectorUtils.spreadDepth(nodeCount, nodeX, nodeY, z, fixed);
+                for (int i = 0; i < nodeCount; i++) {
+                    nodes[i].getNodeData().setZ(z[i]);
+                }
+            }
+        }
+        if (sameNodes) {
+            tree.update(nodeCount, nodeX, nodeY, z);
+        } else {
+            tree = new IncrementalQuadTree(maxLevel);
+            tree.build(nodeCount, nodeX, nodeY, z);
+            treeMaxLevel = maxLevel;
+            treeNodes = nodes;
+        }
+        tree.fillNodeOrder(treeOrder);
+    }
+
+    /**
+     * Electrical forces of all nodes, in parallel. Each node only writes its
+     * own force.
+     */
+    private void computeElectricalForces(int nodeCount) {
+        final float theta = getEffectiveTheta();
+        final double strength = relativeStrength * optimalDistance * optimalDistance;
+        runner.run(nodeCount, new ChunkRunner.ChunkTask() {
+
+            @Override
+            public void run(int chunk, int from, int to) {
+                double[] force = new double[3];
+                for (int k = from; k < to; k++) {
+                    int node = treeOrder[k];
+                    force[0] = 0;
+                    force[1] = 0;
+                    force[2] = 0;
+                    if (tree.getCellCount() > 0) {
+                        addElectricalForce(node, 0, theta, strength, force);
+                    }
+                    forceX[node] = (float) force[0];
+                    forceY[node] = (float) force[1];
+                    if (forceZ != null && threeDimensions) {
+                        forceZ[node] = (float) force[2];
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Fr = -C*K*K*(n2-n1)/||n2-n1||&sup2;, multiplied by the mass of the
+     * cell when it is far enough to be approximated.
+     */
+    private void addElectricalForce(int node, int cell, float theta, double strength, double[] force) {
+        int mass = tree.getMass(cell);
+        if (mass == 0) {
+            return;
+        }
+        float x = nodeX[node];
+        float y = nodeY[node];
+        boolean depth = threeDimensions && tree.getChildCount() == 8;
+        float z = depth ? nodeZ[node] : 0;
+        int firstChild = tree.getFirstChild(cell);
+        if (firstChild == -1) {
+            for (int other = tree.getFirstNode(cell); other != -1; other = tree.getNextNode(other)) {
+                if (other != node) {
+                    addElectricalForce(x - nodeX[other], y - nodeY[other], depth ? z - nodeZ[other] : 0, 1, strength, force);
+                }
+            }
+            return;
+        }
+        double dx = x - tree.getMassCenterX(cell);
+        double dy = y - tree.getMassCenterY(cell);
+        double dz = depth ? z - tree.getMassCenterZ(cell) : 0;
+        double distance = Math.sqrt(dx * dx + dy * dy + dz * dz);
+        if (distance * theta > tree.getSize(cell)) {
+            addElectricalForce(dx, dy, dz, mass, strength, force);
+        } else {
+            int childCount = tree.getChildCount();
+            for (int child = firstChild; child < firstChild + childCount; child++) {
+                addElectricalForce(node, child, theta, strength, force);
+            }
+        }
+    }
+
+    private static void addElectricalForce(double dx, double dy, double dz, int mass, double strength, double[] force) {
+        double distance2 = dx * dx + dy * dy + dz * dz;
+        if (distance2 > 1e-16) {
+            double scale = strength * mass / distance2;
+            force[0] += dx * scale;
+            force[1] += dy * scale;
+            force[2] += dz * scale;
+        }
+    }
+
+    /**
+     * With adaptive theta, forces are approximated more while steps are
+     * large: theta is raised by up to 50% at the initial step and goes back
+     * to its value as the step decreases.
+     */
+    private float getEffectiveTheta() {
+        if (!isAdaptiveTheta() || initialStep <= 0) {
+            return barnesHutTheta;
+        }
+        return barnesHutTheta * (1f + 0.5f * Math.min(1f, step / initialStep));
+    }
+
+    /**
+     * Returns the time spent reading positions and updating the Barnes-Hut
+     * tree during the last iteration, in nanoseconds.
+     */
+    public long getTreeTime() {
+        return treeTime;
+    }
+
+    /**
+     * Returns the time spent computing electrical forces during the last
+     * iteration, in nanoseconds.
+     */
+    public long getForceTime() {
+        return forceTime;
+    }
+
+    public double getTotalDisplacement() {
+        return displacementSum;
+    }
+
+    public double getEnergy() {
+        return energy;
+    }
+
     /* Maximum level for Barnes-Hut's quadtree */
     public Integer getQuadTreeMaxLevel() {
         return quadTreeMaxLevel;
     }
 
+    /**
+     * Sets the maximum level of the tree. The tree is built again with this
+     * level at the next iteration.
+     */
     public void setQuadTreeMaxLevel(Integer quadTreeMaxLevel) {
         this.quadTreeMaxLevel = quadTreeMaxLevel;
     }
@@ -322,6 +554,22 @@ public class YifanHuLayout extends AbstractLayout implements Layout {
         this.barnesHutTheta = barnesHutTheta;
     }
 
+    public Boolean isAdaptiveTheta() {
+        return adaptiveTheta;
+    }
+
+    public void setAdaptiveTheta(Boolean adaptiveTheta) {
+        this.adaptiveTheta = adaptiveTheta;
+    }
+
+    public Boolean isThreeDimensions() {
+        return threeDimensions;
+    }
+
+    public void setThreeDimensions(Boolean threeDimensions) {
+        this.threeDimensions = threeDimensions;
+    }
+
     /**
      * @return the optimalDistance
      */
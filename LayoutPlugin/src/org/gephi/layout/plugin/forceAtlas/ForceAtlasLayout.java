@@ -53,6 +53,7 @@ import org.gephi.graph.api.NodeData;
 import org.gephi.layout.plugin.AbstractLayout;
 import org.gephi.layout.plugin.ForceVectorUtils;
 import org.gephi.layout.plugin.ForceVectorNodeLayoutData;
+import org.gephi.layout.plugin.SpatialHash;
 import org.gephi.layout.spi.Layout;
 import org.gephi.layout.spi.LayoutBuilder;
 import org.gephi.layout.spi.LayoutProperty;
@@ -79,6 +80,11 @@ public class ForceAtlasLayout extends AbstractLayout implements Layout {
     private double cooling;
     private boolean outboundAttractionDistribution;
     private boolean adjustSizes;
+    private double repulsionRange;
+    //Repulsion range index
+    private SpatialHash spatialHash;
+    private float[] nodesX = new float[0];
+    private float[] nodesY = new float[0];
     //Dynamic Weight
     private TimeInterval timeInterval;
 
@@ -99,6 +105,7 @@ public class ForceAtlasLayout extends AbstractLayout implements Layout {
         setAdjustSizes(false);
         setSpeed(1d);
         setCooling(1d);
+        setRepulsionRange(0d);
     }
 
     public void initAlgo() {
@@ -126,19 +133,17 @@ public class ForceAtlasLayout extends AbstractLayout implements Layout {
             layoutData.dy *= inertia;
         }
         // repulsion
-        if (isAdjustSizes()) {
-            for (Node n1 : nodes) {
-                for (Node n2 : nodes) {
-                    if (n1 != n2) {
-                        ForceVectorUtils.fcBiRepulsor_noCollide(n1.getNodeData(), n2.getNodeData(), getRepulsionStrength() * (1 + graph.getDegree(n1)) * (1 + graph.getDegree(n2)));
-                    }
-                }
-            }
+        double[] masses = new double[nodes.length];
+        for (int i = 0; i < nodes.length; i++) {
+            masses[i] = 1 + graph.getDegree(nodes[i]);
+        }
+        if (getRepulsionRange() > 0) {
+            applyRepulsionInRange(nodes, masses);
         } else {
-            for (Node n1 : nodes) {
-                for (Node n2 : nodes) {
-                    if (n1 != n2) {
-                        ForceVectorUtils.fcBiRepulsor(n1.getNodeData(), n2.getNodeData(), getRepulsionStrength() * (1 + graph.getDegree(n1)) * (1 + graph.getDegree(n2)));
+            for (int i = 0; i < nodes.length; i++) {
+                for (int j = 0; j < nodes.length; j++) {
+                    if (i != j) {
+                        repulse(nodes[i], nodes[j], getRepulsionStrength() * masses[i] * masses[j]);
                     }
                 }
             }
@@ -231,10 +236,63 @@ public class ForceAtlasLayout extends AbstractLayout implements Layout {
         graph.readUnlock();
     }
 
+    /**
+     * Repulsion restricted to the pairs of nodes closer than the repulsion
+     * range, found with a spatial hash whose cells have the size of the range.
+     */
+    private void applyRepulsionInRange(Node[] nodes, double[] masses) {
+        float range = getRepulsionRange().floatValue();
+        if (spatialHash == null || spatialHash.getCellSize() != range) {
+            spatialHash = new SpatialHash(range);
+        }
+        if (nodesX.length != nodes.length) {
+            nodesX = new float[nodes.length];
+            nodesY = new float[nodes.length];
+        }
+        for (int i = 0; i < nodes.length; i++) {
+            nodesX[i] = nodes[i].getNodeData().x();
+            nodesY[i] = nodes[i].getNodeData().y();
+        }
+        spatialHash.update(nodes.length, nodesX, nodesY);
+
+        double rangeSquared = (double) range * range;
+        for (int i = 0; i < nodes.length; i++) {
+            float x = nodesX[i];
+            float y = nodesY[i];
+            int maxCellX = spatialHash.getCellX(x + range);
+            int maxCellY = spatialHash.getCellY(y + range);
+            for (int cellX = spatialHash.getCellX(x - range); cellX <= maxCellX; cellX++) {
+                for (int cellY = spatialHash.getCellY(y - range); cellY <= maxCellY; cellY++) {
+                    int cell = spatialHash.getCell(cellX, cellY);
+                    if (cell == -1) {
+                        continue;
+                    }
+                    for (int p = spatialHash.getCellStart(cell); p < spatialHash.getCellEnd(cell); p++) {
+                        int j = spatialHash.getPoint(p);
+                        double xDist = x - nodesX[j];
+                        double yDist = y - nodesY[j];
+                        if (i != j && xDist * xDist + yDist * yDist <= rangeSquared) {
+                            repulse(nodes[i], nodes[j], getRepulsionStrength() * masses[i] * masses[j]);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private void repulse(Node n1, Node n2, double c) {
+        if (isAdjustSizes()) {
+            ForceVectorUtils.fcBiRepulsor_noCollide(n1.getNodeData(), n2.getNodeData(), c);
+        } else {
+            ForceVectorUtils.fcBiRepulsor(n1.getNodeData(), n2.getNodeData(), c);
+        }
+    }
+
     public void endAlgo() {
         for (Node n : graph.getNodes()) {
             n.getNodeData().setLayoutData(null);
         }
+        spatialHash = null;
     }
 
     @Override
@@ -332,6 +390,13 @@ public class ForceAtlasLayout extends AbstractLayout implements Layout {
                     "forceAtlas.speed.name",
                     NbBundle.getMessage(ForceAtlasLayout.class, "forceAtlas.speed.desc"),
                     "getSpeed", "setSpeed"));
+            properties.add(LayoutProperty.createProperty(
+                    this, Double.class,
+                    NbBundle.getMessage(ForceAtlasLayout.class, "forceAtlas.repulsionRange.name"),
+                    FORCE_ATLAS,
+                    "forceAtlas.repulsionRange.name",
+                    NbBundle.getMessage(ForceAtlasLayout.class, "forceAtlas.repulsionRange.desc"),
+                    "getRepulsionRange", "setRepulsionRange"));
         } catch (Exception e) {
             e.printStackTrace();
         }
@@ -500,4 +565,18 @@ public class ForceAtlasLayout extends AbstractLayout implements Layout {
     public void setAdjustSizes(Boolean adjustSizes) {
         this.adjustSizes = adjustSizes;
     }
+
+    /**
+     * @return the repulsionRange
+     */
+    public Double getRepulsionRange() {
+        return repulsionRange;
+    }
+
+    /**
+     * @param repulsionRange the repulsionRange to set
+     */
+    public void setRepulsionRange(Double repulsionRange) {
+        this.repulsionRange = repulsionRange;
+    }
 }
@@ -41,8 +41,13 @@ Portions Copyrighted 2011 Gephi Consortium.
  */
 package org.gephi.layout.plugin.forceAtlas2;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -58,7 +63,8 @@ import org.gephi.graph.api.Node;
 import org.gephi.graph.api.NodeData;
 import org.gephi.layout.plugin.forceAtlas2.ForceFactory.AttractionForce;
 import org.gephi.layout.plugin.forceAtlas2.ForceFactory.RepulsionForce;
-import org.gephi.layout.spi.Layout;
+import org.gephi.layout.spi.CheckpointLayout;
+import org.gephi.layout.spi.ConvergentLayout;
 import org.gephi.layout.spi.LayoutBuilder;
 import org.gephi.layout.spi.LayoutProperty;
 import org.gephi.project.api.Workspace;
@@ -68,9 +74,15 @@ import org.openide.util.NbBundle;
 
 /**
  * ForceAtlas 2 Layout, manages each step of the computations.
+ * <p>
+ * Checkpoints hold the speed and, for each node, its position and the
+ * forces of the last pass. Nodes are identified by their id, so a run can
+ * be resumed on the same graph imported again.
  * @author Mathieu Jacomy
  */
-public class ForceAtlas2 implements Layout {
+public class ForceAtlas2 implements ConvergentLayout, CheckpointLayout {
+
+    private static final int CHECKPOINT_VERSION = 1;
 
     private GraphModel graphModel;
     private HierarchicalGraph graph;
@@ -87,10 +99,14 @@ public class ForceAtlas2 implements Layout {
     private double barnesHutTheta;
     private boolean linLogMode;
     private boolean strongGravityMode;
+    private boolean compactEngine;
+    private boolean threeDimensions;
+    private ForceAtlas2Engine engine;
     private int threadCount;
     private int currentThreadCount;
     private Region rootRegion;
     double outboundAttCompensation = 1;
+    private double displacement = Double.NaN;
     //Dynamic Weight
     private TimeInterval timeInterval;
     private ExecutorService pool;
@@ -125,8 +141,8 @@ public class ForceAtlas2 implements Layout {
             nLayout.dy = 0;
         }
 
-        pool = Executors.newFixedThreadPool(threadCount);
         currentThreadCount = threadCount;
+        engine = new ForceAtlas2Engine(this);
     }
 
     @Override
@@ -138,6 +154,17 @@ public class ForceAtlas2 implements Layout {
         graph = graphModel.getHierarchicalGraphVisible();
         this.timeInterval = DynamicUtilities.getVisibleInterval(dynamicModel);
 
+        if (isCompactEngine() || isThreeDimensions()) {
+            engine.goAlgo(graph, timeInterval, currentThreadCount);
+            displacement = engine.getTotalDisplacement();
+            return;
+        }
+
+        // The compact engine has its own workers, the pool is only needed here
+        if (pool == null) {
+            pool = Executors.newFixedThreadPool(currentThreadCount);
+        }
+
         graph.readLock();
         Node[] nodes = graph.getNodes().toArray();
         Edge[] edges = graph.getEdgesAndMetaEdges().toArray();
@@ -233,6 +260,7 @@ public class ForceAtlas2 implements Layout {
         speed = speed + Math.min(targetSpeed - speed, maxRise * speed);
 
         // Apply forces
+        displacement = 0;
         if (isAdjustSizes()) {
             // If nodes overlap prevention is active, it's not possible to trust the swinging mesure.
             for (Node n : nodes) {
@@ -250,6 +278,7 @@ public class ForceAtlas2 implements Layout {
 
                     double x = nData.x() + nLayout.dx * factor;
                     double y = nData.y() + nLayout.dy * factor;
+                    displacement += factor * Math.sqrt(nLayout.dx * nLayout.dx + nLayout.dy * nLayout.dy);
 
                     nData.setX((float) x);
                     nData.setY((float) y);
@@ -269,6 +298,7 @@ public class ForceAtlas2 implements Layout {
 
                     double x = nData.x() + nLayout.dx * factor;
                     double y = nData.y() + nLayout.dy * factor;
+                    displacement += factor * Math.sqrt(nLayout.dx * nLayout.dx + nLayout.dy * nLayout.dy);
 
                     nData.setX((float) x);
                     nData.setY((float) y);
@@ -283,15 +313,117 @@ public class ForceAtlas2 implements Layout {
         return graphModel != null;
     }
 
+    public double getTotalDisplacement() {
+        return displacement;
+    }
+
+    public double getEnergy() {
+        return Double.NaN;
+    }
+
     @Override
     public void endAlgo() {
         for (Node n : graph.getNodes()) {
             n.getNodeData().setLayoutData(null);
         }
-        pool.shutdown();
+        if (pool != null) {
+            pool.shutdown();
+            pool = null;
+        }
+        engine.clear();
         graph.readUnlockAll();
     }
 
+    public void writeCheckpoint(DataOutput output) throws IOException {
+        HierarchicalGraph g = graphModel.getHierarchicalGraphVisible();
+        boolean engineState = isCompactEngine() || isThreeDimensions();
+        g.readLock();
+        try {
+            Node[] nodes = g.getNodes().toArray();
+            output.writeInt(CHECKPOINT_VERSION);
+            output.writeDouble(engineState ? engine.getSpeed() : speed);
+            output.writeInt(nodes.length);
+            double[] force = new double[3];
+            for (Node n : nodes) {
+                NodeData nData = n.getNodeData();
+                if (engineState) {
+                    engine.getForce(n, force);
+                } else if (nData.getLayoutData() instanceof ForceAtlas2LayoutData) {
+                    ForceAtlas2LayoutData nLayout = nData.getLayoutData();
+                    force[0] = nLayout.dx;
+                    force[1] = nLayout.dy;
+                    force[2] = 0;
+                } else {
+                    force[0] = force[1] = force[2] = 0;
+                }
+                output.writeUTF(getCheckpointId(n));
+                output.writeFloat(nData.x());
+                output.writeFloat(nData.y());
+                output.writeFloat(nData.z());
+                output.writeDouble(force[0]);
+                output.writeDouble(force[1]);
+                output.writeDouble(force[2]);
+            }
+        } finally {
+            g.readUnlock();
+        }
+    }
+
+    public void readCheckpoint(DataInput input) throws IOException {
+        int version = input.readInt();
+        if (version != CHECKPOINT_VERSION) {
+            throw new IOException("Unsupported ForceAtlas2 checkpoint version " + version);
+        }
+        double checkpointSpeed = input.readDouble();
+        int count = input.readInt();
+
+        graph = graphModel.getHierarchicalGraphVisible();
+        this.timeInterval = DynamicUtilities.getVisibleInterval(dynamicModel);
+        boolean engineState = isCompactEngine() || isThreeDimensions();
+        if (engineState) {
+            engine.prepare(graph, timeInterval);
+        }
+        graph.readLock();
+        try {
+            Map<String, Node> nodesById = new HashMap<String, Node>();
+            for (Node n : graph.getNodes()) {
+                nodesById.put(getCheckpointId(n), n);
+            }
+            for (int i = 0; i < count; i++) {
+                Node n = nodesById.get(input.readUTF());
+                float x = input.readFloat();
+                float y = input.readFloat();
+                float z = input.readFloat();
+                double dx = input.readDouble();
+                double dy = input.readDouble();
+                double dz = input.readDouble();
+                if (n == null) {
+                    continue;
+                }
+                NodeData nData = n.getNodeData();
+                nData.setX(x);
+                nData.setY(y);
+                nData.setZ(z);
+                if (engineState) {
+                    engine.setForce(n, dx, dy, dz);
+                } else if (nData.getLayoutData() instanceof ForceAtlas2LayoutData) {
+                    ForceAtlas2LayoutData nLayout = nData.getLayoutData();
+                    nLayout.dx = dx;
+                    nLayout.dy = dy;
+                }
+            }
+        } finally {
+            graph.readUnlock();
+        }
+        speed = checkpointSpeed;
+        engine.setSpeed(checkpointSpeed);
+    }
+
+    private static String getCheckpointId(Node node) {
+        String id = node.getNodeData().getId();
+        return id != null ? id : String.valueOf(node.getId());
+    }
+
     @Override
     public LayoutProperty[] getProperties() {
         List<LayoutProperty> properties = new ArrayList<LayoutProperty>();
@@ -349,6 +481,14 @@ public class ForceAtlas2 implements Layout {
                     NbBundle.getMessage(getClass(), "ForceAtlas2.adjustSizes.desc"),
                     "isAdjustSizes", "setAdjustSizes"));
 
+            properties.add(LayoutProperty.createProperty(
+                    this, Boolean.class,
+                    NbBundle.getMessage(getClass(), "ForceAtlas2.threeDimensions.name"),
+                    FORCEATLAS2_BEHAVIOR,
+                    "ForceAtlas2.threeDimensions.name",
+                    NbBundle.getMessage(getClass(), "ForceAtlas2.threeDimensions.desc"),
+                    "isThreeDimensions", "setThreeDimensions"));
+
             properties.add(LayoutProperty.createProperty(
                     this, Double.class,
                     NbBundle.getMessage(getClass(), "ForceAtlas2.edgeWeightInfluence.name"),
@@ -381,6 +521,14 @@ public class ForceAtlas2 implements Layout {
                     NbBundle.getMessage(getClass(), "ForceAtlas2.barnesHutTheta.desc"),
                     "getBarnesHutTheta", "setBarnesHutTheta"));
 
+            properties.add(LayoutProperty.createProperty(
+                    this, Boolean.class,
+                    NbBundle.getMessage(getClass(), "ForceAtlas2.compactEngine.name"),
+                    FORCEATLAS2_PERFORMANCE,
+                    "ForceAtlas2.compactEngine.name",
+                    NbBundle.getMessage(getClass(), "ForceAtlas2.compactEngine.desc"),
+                    "isCompactEngine", "setCompactEngine"));
+
             properties.add(LayoutProperty.createProperty(
                     this, Integer.class,
                     NbBundle.getMessage(getClass(), "ForceAtlas2.threads.name"),
@@ -433,6 +581,8 @@ public class ForceAtlas2 implements Layout {
             setBarnesHutOptimize(false);
         }
         setBarnesHutTheta(1.2);
+        setCompactEngine(false);
+        setThreeDimensions(false);
         setThreadsCount(2);
     }
 
@@ -461,6 +611,38 @@ public class ForceAtlas2 implements Layout {
         this.barnesHutTheta = barnesHutTheta;
     }
 
+    /**
+     * Returns the duration of <code>phase</code> during the last pass of the
+     * compact engine, in nanoseconds.
+     */
+    public long getPhaseTime(ForceAtlas2Engine.Phase phase) {
+        return engine != null ? engine.getPhaseTime(phase) : 0;
+    }
+
+    /**
+     * Returns the duration of <code>phase</code> summed over all passes of the
+     * compact engine since <code>initAlgo()</code>, in nanoseconds.
+     */
+    public long getTotalPhaseTime(ForceAtlas2Engine.Phase phase) {
+        return engine != null ? engine.getTotalPhaseTime(phase) : 0;
+    }
+
+    public Boolean isCompactEngine() {
+        return compactEngine;
+    }
+
+    public void setCompactEngine(Boolean compactEngine) {
+        this.compactEngine = compactEngine;
+    }
+
+    public Boolean isThreeDimensions() {
+        return threeDimensions;
+    }
+
+    public void setThreeDimensions(Boolean threeDimensions) {
+        this.threeDimensions = threeDimensions;
+    }
+
     public Double getEdgeWeightInfluence() {
         return edgeWeightInfluence;
     }
@@ -0,0 +1,717 @@
+/*
+Copyright 2008-2011 Gephi
+Website : http://www.gephi.org
+
+This file is part of Gephi.
+
+DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+
+Copyright 2011 Gephi Consortium. All rights reserved.
+
+The contents of this file are subject to the terms of either the GNU
+General Public License Version 3 only ("GPL") or the Common
+Development and Distribution License("CDDL") (collectively, the
+"License"). You may not use this file except in compliance with the
+License. You can obtain a copy of the License at
+http://gephi.org/about/legal/license-notice/
+or /cddl-1.0.txt and /gpl-3.0.txt. See the License for the
+specific language governing permissions and limitations under the
+License.  When distributing the software, include this License Header
+Notice in each file and include the License files at
+/cddl-1.0.txt and /gpl-3.0.txt. If applicable, add the following below the
+License Header, with the fields enclosed by brackets [] replaced by
+your own identifying information:
+"Portions Copyrighted [year] [name of copyright owner]"
+
+If you wish your version of this file to be governed by only the CDDL
+or only the GPL Version 3, indicate your decision by adding
+"[Contributor] elects to include this software in this distribution
+under the [CDDL or GPL Version 3] license." If you do not indicate a
+single choice of license, a recipient has the option to distribute
+your version of this file under either the CDDL, the GPL Version 3 or
+to extend the choice of license to its licensees as provided above.
+However, if you add GPL Version 3 code and therefore, elected the GPL
+Version 3 license, then the option applies only if the new code is
+made subject to such option by the copyright holder.
+
+Contributor(s):
+
+Portions Copyrighted 2011 Gephi Consortium.
+ */
+package org.gephi.layout.plugin.forceAtlas2;
+
+import org.gephi.data.attributes.type.TimeInterval;
+import org.gephi.graph.api.AdjacencySnapshot;
+import org.gephi.graph.api.AdjacencySnapshot.Adjacency;
+import org.gephi.graph.api.Edge;
+import org.gephi.graph.api.HierarchicalGraph;
+import org.gephi.graph.api.Node;
+import org.gephi.graph.api.NodeData;
+import org.gephi.layout.plugin.ChunkRunner;
+import org.gephi.layout.plugin.ForceVectorUtils;
+
+/**
+ * ForceAtlas 2 computations on contiguous arrays instead of
+ * <code>ForceAtlas2LayoutData</code> objects.
+ * <p>
+ * Nodes indices, masses and edges are built from the adjacency snapshot of
+ * the graph and kept until the graph structure or the visible interval
+ * changes. Positions and sizes are read from <code>NodeData</code> once at
+ * the beginning of each pass, so moved nodes are taken in account, and
+ * positions are written back once at the end. The Barnes Hut tree is a
+ * <code>RegionTree</code>, whose arrays are reused at each pass.
+ * <p>
+ * In three dimensions, z positions are read and written too and the tree
+ * is an octree. In two dimensions, z positions are ignored and stay at
+ * <code>0</code> in the arrays, which doesn't change any result.
+ * <p>
+ * Every phase of a pass runs in parallel with a <code>ChunkRunner</code>.
+ * Nodes are cut in chunks of a fixed size, which workers claim until none
+ * is left. Each node only writes its own forces, attraction is gathered
+ * from the edges incident to the node and sums are reduced in chunk order,
+ * so the result does not depend on the number of threads.
+ */
+public class ForceAtlas2Engine {
+
+    /**
+     * Phases of a pass, whose durations are measured.
+     */
+    public enum Phase {
+
+        READ, TREE, REPULSION, GRAVITY, ATTRACTION, SPEED, APPLY
+    }
+    private final ForceAtlas2 layout;
+    //Structure
+    private AdjacencySnapshot snapshot;
+    private double intervalLow = Double.NaN;
+    private double intervalHigh = Double.NaN;
+    private Node[] nodes = new Node[0];
+    private int nodeCount;
+    private int edgeCount;
+    private Edge[] edges = new Edge[0];
+    private int[] edgeSources = new int[0];
+    private int[] edgeTargets = new int[0];
+    private float[] edgeWeights = new float[0];
+    private double[] influencedWeights = new double[0];
+    private double influence = Double.NaN;
+    private int[] incidentOffsets = new int[1];
+    private int[] incidentEdges = new int[0];
+    private double outboundAttCompensation = 1;
+    //Nodes
+    private float[] x = new float[0];
+    private float[] y = new float[0];
+    private float[] z = new float[0];
+    private float[] size = new float[0];
+    private boolean[] fixed = new boolean[0];
+    private double[] mass = new double[0];
+    private double[] dx = new double[0];
+    private double[] dy = new double[0];
+    private double[] dz = new double[0];
+    private double[] oldDx = new double[0];
+    private double[] oldDy = new double[0];
+    private double[] oldDz = new double[0];
+    private final RegionTree regionTree = new RegionTree();
+    private double speed = 1.;
+    //Reductions, one value per chunk
+    private double[] chunkSwinging = new double[0];
+    private double[] chunkTraction = new double[0];
+    private double[] chunkDisplacement = new double[0];
+    private double displacement;
+    //Settings of the current pass
+    private ChunkRunner runner = new ChunkRunner(1);
+    private boolean threeDimensions;
+    private boolean adjustSizes;
+    private boolean barnesHutOptimize;
+    private double barnesHutTheta;
+    private boolean strongGravityMode;
+    private double gravity;
+    private double scalingRatio;
+    private boolean linLogMode;
+    private boolean outboundAttractionDistribution;
+    private double edgeWeightInfluence;
+    //Timing
+    private final long[] phaseTimes = new long[Phase.values().length];
+    private final long[] totalPhaseTimes = new long[Phase.values().length];
+
+    public ForceAtlas2Engine(ForceAtlas2 layout) {
+        this.layout = layout;
+    }
+
+    public void goAlgo(HierarchicalGraph graph, TimeInterval timeInterval, int threadCount) {
+        runner = new ChunkRunner(threadCount);
+        graph.readLock();
+        try {
+            pass(graph, timeInterval);
+        } finally {
+            graph.readUnlockAll();
+        }
+    }
+
+    private void pass(HierarchicalGraph graph, TimeInterval timeInterval) {
+        if (!isUpToDate(graph, timeInterval)) {
+            build(graph, timeInterval);
+        } else {
+            readWeights();
+        }
+        readSettings();
+
+        // Read positions and initialise forces
+        long time = System.nanoTime();
+        runner.run(nodeCount, new ChunkRunner.ChunkTask() {
+
+            @Override
+            public void run(int chunk, int from, int to) {
+                for (int i = from; i < to; i++) {
+                    NodeData nData = nodes[i].getNodeData();
+                    x[i] = nData.x();
+                    y[i] = nData.y();
+                    z[i] = threeDimensions ? nData.z() : 0;
+                    size[i] = nData.getSize();
+                    fixed[i] = nData.isFixed();
+                    oldDx[i] = dx[i];
+                    oldDy[i] = dy[i];
+                    oldDz[i] = dz[i];
+                    dx[i] = 0;
+                    dy[i] = 0;
+                    dz[i] = 0;
+                }
+            }
+        });
+        if (threeDimensions) {
+            ForceVectorUtils.spreadDepth(nodeCount, x, y, z, fixed);
+        }
+        time = endPhase(Phase.READ, time);
+
+        // If Barnes Hut active, build the tree
+        if (barnesHutOptimize) {
+            regionTree.build(nodeCount, x, y, threeDimensions ? z : null, mass);
+        }
+        time = endPhase(Phase.TREE, time);
+
+        // Repulsion
+        runner.run(nodeCount, new ChunkRunner.ChunkTask() {
+
+            @Override
+            public void run(int chunk, int from, int to) {
+                repulsion(from, to);
+            }
+        });
+        time = endPhase(Phase.REPULSION, time);
+
+        // Gravity
+        runner.run(nodeCount, new ChunkRunner.ChunkTask() {
+
+            @Override
+            public void run(int chunk, int from, int to) {
+                double g = gravity / scalingRatio;
+                for (int n = from; n < to; n++) {
+                    applyGravity(n, g);
+                }
+            }
+        });
+        time = endPhase(Phase.GRAVITY, time);
+
+        // Attraction
+        if (edgeWeightInfluence != influence) {
+            computeInfluencedWeights();
+        }
+        runner.run(nodeCount, new ChunkRunner.ChunkTask() {
+
+            @Override
+            public void run(int chunk, int from, int to) {
+                attraction(from, to);
+            }
+        });
+        time = endPhase(Phase.ATTRACTION, time);
+
+        // Auto adjust speed
+        runner.run(nodeCount, new ChunkRunner.ChunkTask() {
+
+            @Override
+            public void run(int chunk, int from, int to) {
+                double swingingSum = 0d;
+                double tractionSum = 0d;
+                for (int n = from; n < to; n++) {
+                    if (!fixed[n]) {
+                        double swinging = Math.sqrt(Math.pow(oldDx[n] - dx[n], 2) + Math.pow(oldDy[n] - dy[n], 2) + Math.pow(oldDz[n] - dz[n], 2));
+                        swingingSum += mass[n] * swinging;
+                        tractionSum += mass[n] * 0.5 * Math.sqrt(Math.pow(oldDx[n] + dx[n], 2) + Math.pow(oldDy[n] + dy[n], 2) + Math.pow(oldDz[n] + dz[n], 2));
+                    }
+                }
+                chunkSwinging[chunk] = swingingSum;
+                chunkTraction[chunk] = tractionSum;
+            }
+        });
+        double totalSwinging = 0d;  // How much irregular movement
+        double totalEffectiveTraction = 0d;  // Hom much useful movement
+        for (int c = 0; c < ChunkRunner.getChunkCount(nodeCount); c++) {
+            totalSwinging += chunkSwinging[c];
+            totalEffectiveTraction += chunkTraction[c];
+        }
+        double jitterTolerance = layout.getJitterTolerance();
+        double targetSpeed = jitterTolerance * jitterTolerance * totalEffectiveTraction / totalSwinging;
+        double maxRise = 0.5;   // Max rise: 50%
+        speed = speed + Math.min(targetSpeed - speed, maxRise * speed);
+        time = endPhase(Phase.SPEED, time);
+
+        // Apply forces and write positions
+        runner.run(nodeCount, new ChunkRunner.ChunkTask() {
+
+            @Override
+            public void run(int chunk, int from, int to) {
+                chunkDisplacement[chunk] = applyForces(from, to);
+            }
+        });
+        displacement = 0;
+        for (int c = 0; c < ChunkRunner.getChunkCount(nodeCount); c++) {
+            displacement += chunkDisplacement[c];
+        }
+        for (int i = 0; i < nodeCount; i++) {
+            if (!fixed[i]) {
+                NodeData nData = nodes[i].getNodeData();
+                nData.setX(x[i]);
+                nData.setY(y[i]);
+                if (threeDimensions) {
+                    nData.setZ(z[i]);
+                }
+            }
+        }
+        endPhase(Phase.APPLY, time);
+    }
+
+    /**
+     * Returns the sum of the distances the nodes moved during the last pass.
+     */
+    public double getTotalDisplacement() {
+        return displacement;
+    }
+
+    /**
+     * Returns the duration of <code>phase</code> during the last pass, in
+     * nanoseconds.
+     */
+    public long getPhaseTime(Phase phase) {
+        return phaseTimes[phase.ordinal()];
+    }
+
+    /**
+     * Returns the duration of <code>phase</code> summed over all passes, in
+     * nanoseconds.
+     */
+    public long getTotalPhaseTime(Phase phase) {
+        return totalPhaseTimes[phase.ordinal()];
+    }
+
+    /**
+     * Builds the arrays of <code>graph</code> if they are not up to date, so
+     * that forces can be restored before the first pass.
+     */
+    public void prepare(HierarchicalGraph graph, TimeInterval timeInterval) {
+        graph.readLock();
+        try {
+            if (!isUpToDate(graph, timeInterval)) {
+                build(graph, timeInterval);
+            }
+        } finally {
+            graph.readUnlock();
+        }
+    }
+
+    public double getSpeed() {
+        return speed;
+    }
+
+    public void setSpeed(double speed) {
+        this.speed = speed;
+    }
+
+    /**
+     * Copies the forces of the last pass on <code>node</code> in
+     * <code>force</code>, or zeros if the node isn't in the arrays.
+     */
+    public void getForce(Node node, double[] force) {
+        int i = snapshot != null ? snapshot.getIndex(node) : -1;
+        force[0] = i != -1 ? dx[i] : 0;
+        force[1] = i != -1 ? dy[i] : 0;
+        force[2] = i != -1 ? dz[i] : 0;
+    }
+
+    /**
+     * Sets the forces of the last pass on <code>node</code>, which the next
+     * pass uses to compute swinging. Ignored if the node isn't in the arrays.
+     */
+    public void setForce(Node node, double forceX, double forceY, double forceZ) {
+        int i = snapshot != null ? snapshot.getIndex(node) : -1;
+        if (i != -1) {
+            dx[i] = forceX;
+            dy[i] = forceY;
+            dz[i] = forceZ;
+        }
+    }
+
+    /**
+     * Releases the arrays, the next pass builds them again.
+     */
+    public void clear() {
+        snapshot = null;
+        nodes = new Node[0];
+        nodeCount = 0;
+        edges = new Edge[0];
+        edgeSources = new int[0];
+        edgeTargets = new int[0];
+        edgeWeights = new float[0];
+        edgeCount = 0;
+    }
+
+    private long endPhase(Phase phase, long start) {
+        long end = System.nanoTime();
+        phaseTimes[phase.ordinal()] = end - start;
+        totalPhaseTimes[phase.ordinal()] += end - start;
+        return end;
+    }
+
+    private boolean isUpToDate(HierarchicalGraph graph, TimeInterval timeInterval) {
+        if (snapshot == null || snapshot.getView() != graph.getView() || !snapshot.isUpToDate()) {
+            return false;
+        }
+        double low = timeInterval != null ? timeInterval.getLow() : Double.NaN;
+        double high = timeInterval != null ? timeInterval.getHigh() : Double.NaN;
+        return Double.compare(low, intervalLow) == 0 && Double.compare(high, intervalHigh) == 0;
+    }
+
+    private void build(HierarchicalGraph graph, TimeInterval timeInterval) {
+        snapshot = graph.getGraphModel().getAdjacencySnapshot(graph.getView(), false);
+        intervalLow = timeInterval != null ? timeInterval.getLow() : Double.NaN;
+        intervalHigh = timeInterval != null ? timeInterval.getHigh() : Double.NaN;
+
+        // Nodes
+        nodes = snapshot.getNodes();
+        nodeCount = nodes.length;
+        if (x.length != nodeCount) {
+            x = new float[nodeCount];
+            y = new float[nodeCount];
+            z = new float[nodeCount];
+            size = new float[nodeCount];
+            fixed = new boolean[nodeCount];
+            mass = new double[nodeCount];
+        }
+        // Forces of the previous pass are not valid anymore
+        dx = new double[nodeCount];
+        dy = new double[nodeCount];
+        dz = new double[nodeCount];
+        oldDx = new double[nodeCount];
+        oldDy = new double[nodeCount];
+        oldDz = new double[nodeCount];
+        chunkSwinging = new double[ChunkRunner.getChunkCount(nodeCount)];
+        chunkTraction = new double[ChunkRunner.getChunkCount(nodeCount)];
+        chunkDisplacement = new double[ChunkRunner.getChunkCount(nodeCount)];
+        outboundAttCompensation = 0;
+        for (int i = 0; i < nodeCount; i++) {
+            mass[i] = 1 + graph.getDegree(nodes[i]);
+            outboundAttCompensation += mass[i];
+        }
+        outboundAttCompensation /= nodeCount;
+
+        // Edges, undirected graphs return mutual edges only once. The
+        // snapshot count is a first guess, meta edges may add more.
+        edgeCount = 0;
+        int capacity = snapshot.getEdgeCount(Adjacency.OUT);
+        if (edgeSources.length < capacity) {
+            growEdges(capacity);
+        }
+        for (Edge e : graph.getEdgesAndMetaEdges()) {
+            int source = snapshot.getIndex(e.getSource());
+            int target = snapshot.getIndex(e.getTarget());
+            if (source == -1 || target == -1) {
+                continue;
+            }
+            if (edgeCount == edgeSources.length) {
+                growEdges(Math.max(16, 2 * edgeCount));
+            }
+            edges[edgeCount] = e;
+            edgeSources[edgeCount] = source;
+            edgeTargets[edgeCount] = target;
+            edgeWeights[edgeCount] = weight(e);
+            edgeCount++;
+        }
+        influence = Double.NaN;
+
+        // Edges incident to each node, in edges order
+        incidentOffsets = new int[nodeCount + 1];
+        for (int e = 0; e < edgeCount; e++) {
+            incidentOffsets[edgeSources[e] + 1]++;
+            if (edgeTargets[e] != edgeSources[e]) {
+                incidentOffsets[edgeTargets[e] + 1]++;
+            }
+        }
+        for (int i = 0; i < nodeCount; i++) {
+            incidentOffsets[i + 1] += incidentOffsets[i];
+        }
+        incidentEdges = new int[incidentOffsets[nodeCount]];
+        int[] cursors = new int[nodeCount];
+        System.arraycopy(incidentOffsets, 0, cursors, 0, nodeCount);
+        for (int e = 0; e < edgeCount; e++) {
+            incidentEdges[cursors[edgeSources[e]]++] = e;
+            if (edgeTargets[e] != edgeSources[e]) {
+                incidentEdges[cursors[edgeTargets[e]]++] = e;
+            }
+        }
+    }
+
+    /**
+     * Reads the edge weights again, changing a weight doesn't make the
+     * snapshot outdated.
+     */
+    private void readWeights() {
+        boolean changed = false;
+        for (int e = 0; e < edgeCount; e++) {
+            float weight = weight(edges[e]);
+            if (weight != edgeWeights[e]) {
+                edgeWeights[e] = weight;
+                changed = true;
+            }
+        }
+        if (changed) {
+            influence = Double.NaN;
+        }
+    }
+
+    private float weight(Edge edge) {
+        return Double.isNaN(intervalLow) ? edge.getWeight() : edge.getWeight(intervalLow, intervalHigh);
+    }
+
+    private void growEdges(int capacity) {
+        Edge[] newEdges = new Edge[capacity];
+        int[] newSources = new int[capacity];
+        int[] newTargets = new int[capacity];
+        float[] newWeights = new float[capacity];
+        System.arraycopy(edges, 0, newEdges, 0, edgeCount);
+        System.arraycopy(edgeSources, 0, newSources, 0, edgeCount);
+        System.arraycopy(edgeTargets, 0, newTargets, 0, edgeCount);
+        System.arraycopy(edgeWeights, 0, newWeights, 0, edgeCount);
+        edges = newEdges;
+        edgeSources = newSources;
+        edgeTargets = newTargets;
+        edgeWeights = newWeights;
+        influencedWeights = new double[capacity];
+    }
+
+    private void computeInfluencedWeights() {
+        influence = edgeWeightInfluence;
+        for (int e = 0; e < edgeCount; e++) {
+            if (influence == 0) {
+                influencedWeights[e] = 1;
+            } else if (influence == 1) {
+                influencedWeights[e] = edgeWeights[e];
+            } else {
+                influencedWeights[e] = Math.pow(edgeWeights[e], influence);
+            }
+        }
+    }
+
+    private void readSettings() {
+        threeDimensions = layout.isThreeDimensions();
+        adjustSizes = layout.isAdjustSizes();
+        barnesHutOptimize = layout.isBarnesHutOptimize();
+        barnesHutTheta = layout.getBarnesHutTheta();
+        strongGravityMode = layout.isStrongGravityMode();
+        gravity = layout.getGravity();
+        scalingRatio = layout.getScalingRatio();
+        linLogMode = layout.isLinLogMode();
+        outboundAttractionDistribution = layout.isOutboundAttractionDistribution();
+        edgeWeightInfluence = layout.getEdgeWeightInfluence();
+    }
+
+    private void repulsion(int from, int to) {
+        if (barnesHutOptimize) {
+            int[] stack = new int[64];
+            for (int n = from; n < to; n++) {
+                stack = repulseFromTree(n, stack);
+            }
+        } else {
+            for (int n1 = from; n1 < to; n1++) {
+                for (int n2 = 0; n2 < nodeCount; n2++) {
+                    if (n1 != n2) {
+                        repulse(n1, n2);
+                    }
+                }
+            }
+        }
+    }
+
+    private int[] repulseFromTree(int n, int[] stack) {
+        if (regionTree.getRegionCount() == 0) {
+            return stack;
+        }
+        int top = 0;
+        stack[top++] = 0;
+        while (top > 0) {
+            int r = stack[--top];
+            int regionNode = regionTree.getNode(r);
+            if (regionNode != -1) {
+                repulse(n, regionNode);
+                continue;
+            }
+            double xDist = x[n] - regionTree.getMassCenterX(r);
+            double yDist = y[n] - regionTree.getMassCenterY(r);
+            double zDist = z[n] - regionTree.getMassCenterZ(r);
+            double distance = Math.sqrt(xDist * xDist + yDist * yDist + zDist * zDist);
+            if (distance * barnesHutTheta > regionTree.getSize(r)) {
+                repulseFromRegion(n, r);
+            } else {
+                int first = regionTree.getFirstChild(r);
+                int count = regionTree.getChildCount(r);
+                if (top + count > stack.length) {
+                    int[] newStack = new int[Math.max(2 * stack.length, top + count)];
+                    System.arraycopy(stack, 0, newStack, 0, top);
+                    stack = newStack;
+                }
+                // Pushed in reverse order, so children are visited in order
+                for (int c = first + count - 1; c >= first; c--) {
+                    stack[top++] = c;
+                }
+            }
+        }
+        return stack;
+    }
+
+    private void repulse(int n1, int n2) {
+        double xDist = x[n1] - x[n2];
+        double yDist = y[n1] - y[n2];
+        double zDist = z[n1] - z[n2];
+        if (adjustSizes) {
+            double distance = Math.sqrt(xDist * xDist + yDist * yDist + zDist * zDist) - size[n1] - size[n2];
+            if (distance > 0) {
+                // NB: factor = force / distance
+                double factor = scalingRatio * mass[n1] * mass[n2] / distance / distance;
+                dx[n1] += xDist * factor;
+                dy[n1] += yDist * factor;
+                dz[n1] += zDist * factor;
+            } else if (distance < 0) {
+                double factor = 100 * scalingRatio * mass[n1] * mass[n2];
+                dx[n1] += xDist * factor;
+                dy[n1] += yDist * factor;
+                dz[n1] += zDist * factor;
+            }
+        } else {
+            double distance = (float) Math.sqrt(xDist * xDist + yDist * yDist + zDist * zDist);
+            if (distance > 0) {
+                // NB: factor = force / distance
+                double factor = scalingRatio * mass[n1] * mass[n2] / distance / distance;
+                dx[n1] += xDist * factor;
+                dy[n1] += yDist * factor;
+                dz[n1] += zDist * factor;
+            }
+        }
+    }
+
+    private void repulseFromRegion(int n, int r) {
+        double xDist = x[n] - regionTree.getMassCenterX(r);
+        double yDist = y[n] - regionTree.getMassCenterY(r);
+        double zDist = z[n] - regionTree.getMassCenterZ(r);
+        double distance = (float) Math.sqrt(xDist * xDist + yDist * yDist + zDist * zDist);
+        if (distance > 0) {
+            // NB: factor = force / distance
+            double factor = scalingRatio * mass[n] * regionTree.getMass(r) / distance / distance;
+            dx[n] += xDist * factor;
+            dy[n] += yDist * factor;
+            dz[n] += zDist * factor;
+        }
+    }
+
+    private void applyGravity(int n, double g) {
+        double xDist = x[n];
+        double yDist = y[n];
+        double zDist = z[n];
+        double distance = (float) Math.sqrt(xDist * xDist + yDist * yDist + zDist * zDist);
+        if (distance > 0) {
+            // NB: factor = force / distance
+            double factor = strongGravityMode ? scalingRatio * mass[n] * g : scalingRatio * mass[n] * g / distance;
+            dx[n] -= xDist * factor;
+            dy[n] -= yDist * factor;
+            dz[n] -= zDist * factor;
+        }
+    }
+
+    private void attraction(int from, int to) {
+        double coefficient = outboundAttractionDistribution ? outboundAttCompensation : 1;
+        for (int n = from; n < to; n++) {
+            for (int i = incidentOffsets[n]; i < incidentOffsets[n + 1]; i++) {
+                int e = incidentEdges[i];
+                int source = edgeSources[e];
+                int target = edgeTargets[e];
+                double factor = attractionFactor(source, target, coefficient, influencedWeights[e]);
+                if (factor == 0) {
+                    continue;
+                }
+                double xDist = x[source] - x[target];
+                double yDist = y[source] - y[target];
+                double zDist = z[source] - z[target];
+                if (n == source) {
+                    dx[n] += xDist * factor;
+                    dy[n] += yDist * factor;
+                    dz[n] += zDist * factor;
+                } else {
+                    dx[n] -= xDist * factor;
+                    dy[n] -= yDist * factor;
+                    dz[n] -= zDist * factor;
+                }
+            }
+        }
+    }
+
+    private double attractionFactor(int n1, int n2, double coefficient, double weight) {
+        double xDist = x[n1] - x[n2];
+        double yDist = y[n1] - y[n2];
+        double zDist = z[n1] - z[n2];
+        double factor;
+        if (adjustSizes) {
+            double distance = Math.sqrt(xDist * xDist + yDist * yDist + zDist * zDist) - size[n1] - size[n2];
+            if (distance <= 0) {
+                return 0;
+            }
+            factor = linLogMode ? -coefficient * weight * Math.log(1 + distance) / distance : -coefficient * weight;
+        } else if (linLogMode) {
+            double distance = (float) Math.sqrt(xDist * xDist + yDist * yDist + zDist * zDist);
+            if (distance <= 0) {
+                return 0;
+            }
+            factor = -coefficient * weight * Math.log(1 + distance) / distance;
+        } else {
+            factor = -coefficient * weight;
+        }
+        if (outboundAttractionDistribution) {
+            factor /= mass[n1];
+        }
+        return factor;
+    }
+
+    /**
+     * Moves the nodes from <code>from</code> to <code>to</code> and returns
+     * the sum of their displacements.
+     */
+    private double applyForces(int from, int to) {
+        double displacementSum = 0;
+        for (int n = from; n < to; n++) {
+            if (!fixed[n]) {
+                // Adaptive auto-speed: the speed of each node is lowered
+                // when the node swings.
+                double swinging = Math.sqrt((oldDx[n] - dx[n]) * (oldDx[n] - dx[n]) + (oldDy[n] - dy[n]) * (oldDy[n] - dy[n]) + (oldDz[n] - dz[n]) * (oldDz[n] - dz[n]));
+                double factor;
+                if (adjustSizes) {
+                    // If nodes overlap prevention is active, it's not possible to trust the swinging mesure.
+                    factor = 0.1 * speed / (1f + speed * Math.sqrt(swinging));
+                    double df = Math.sqrt(dx[n] * dx[n] + dy[n] * dy[n] + dz[n] * dz[n]);
+                    factor = Math.min(factor * df, 10.) / df;
+                } else {
+                    factor = speed / (1f + speed * Math.sqrt(swinging));
+                }
+                x[n] = (float) (x[n] + dx[n] * factor);
+                y[n] = (float) (y[n] + dy[n] * factor);
+                z[n] = (float) (z[n] + dz[n] * factor);
+                displacementSum += factor * Math.sqrt(dx[n] * dx[n] + dy[n] * dy[n] + dz[n] * dz[n]);
+            }
+        }
+        return displacementSum;
+    }
+}
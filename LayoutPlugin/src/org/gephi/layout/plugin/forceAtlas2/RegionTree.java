@@ -0,0 +1,277 @@
+/*
+Copyright 2008-2011 Gephi
+Website : http://www.gephi.org
+
+This file is part of Gephi.
+
+DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+
+Copyright 2011 Gephi Consortium. All rights reserved.
+
+The contents of this file are subject to the terms of either the GNU
+General Public License Version 3 only ("GPL") or the Common
+Development and Distribution License("CDDL") (collectively, the
+"License"). You may not use this file except in compliance with the
+License. You can obtain a copy of the License at
+http://gephi.org/about/legal/license-notice/
+or /cddl-1.0.txt and /gpl-3.0.txt. See the License for the
+specific language governing permissions and limitations under the
+License.  When distributing the software, include this License Header
+Notice in each file and include the License files at
+/cddl-1.0.txt and /gpl-3.0.txt. If applicable, add the following below the
+License Header, with the fields enclosed by brackets [] replaced by
+your own identifying information:
+"Portions Copyrighted [year] [name of copyright owner]"
+
+If you wish your version of this file to be governed by only the CDDL
+or only the GPL Version 3, indicate your decision by adding
+"[Contributor] elects to include this software in this distribution
+under the [CDDL or GPL Version 3] license." If you do not indicate a
+single choice of license, a recipient has the option to distribute
+your version of this file under either the CDDL, the GPL Version 3 or
+to extend the choice of license to its licensees as provided above.
+However, if you add GPL Version 3 code and therefore, elected the GPL
+Version 3 license, then the option applies only if the new code is
+made subject to such option by the copyright holder.
+
+Contributor(s):
+
+Portions Copyrighted 2011 Gephi Consortium.
+ */
+package org.gephi.layout.plugin.forceAtlas2;
+
+/**
+ * Barnes Hut tree stored in flat arrays, built from nodes indices and
+ * positions arrays. Regions are split at their mass center, like
+ * <code>Region</code> does, and children of a region are stored
+ * contiguously. The arrays are reused from one build to the next.
+ * <p>
+ * When built with <code>z</code> positions, regions are split in eight
+ * octants instead of four quadrants and the tree is an octree.
+ */
+public class RegionTree {
+
+    //Regions
+    private int regionCount;
+    private double[] mass = new double[0];
+    private double[] massCenterX = new double[0];
+    private double[] massCenterY = new double[0];
+    private double[] massCenterZ = new double[0];
+    private double[] size = new double[0];
+    private int[] node = new int[0];
+    private int[] firstChild = new int[0];
+    private int[] childCount = new int[0];
+    private int[] start = new int[0];
+    private int[] end = new int[0];
+    //Nodes, ordered by region
+    private int[] order = new int[0];
+    private int[] buffer = new int[0];
+
+    /**
+     * Builds the tree of the <code>nodeCount</code> first nodes.
+     * @param nodeCount the number of nodes
+     * @param x         the nodes x positions
+     * @param y         the nodes y positions
+     * @param nodeMass  the nodes masses
+     */
+    public void build(int nodeCount, float[] x, float[] y, double[] nodeMass) {
+        build(nodeCount, x, y, null, nodeMass);
+    }
+
+    /**
+     * Builds the tree of the <code>nodeCount</code> first nodes, in three
+     * dimensions if <code>z</code> is not <code>null</code>.
+     * @param nodeCount the number of nodes
+     * @param x         the nodes x positions
+     * @param y         the nodes y positions
+     * @param z         the nodes z positions, or <code>null</code>
+     * @param nodeMass  the nodes masses
+     */
+    public void build(int nodeCount, float[] x, float[] y, float[] z, double[] nodeMass) {
+        ensureCapacity(nodeCount);
+        regionCount = 0;
+        if (nodeCount == 0) {
+            return;
+        }
+        for (int i = 0; i < nodeCount; i++) {
+            order[i] = i;
+        }
+        newRegion(0, nodeCount);
+
+        //Regions are appended at the end, so they are split in breadth-first order
+        int childSlots = z != null ? 8 : 4;
+        int[] quadrantCounts = new int[childSlots];
+        int[] cursors = new int[childSlots];
+        for (int r = 0; r < regionCount; r++) {
+            int from = start[r];
+            int to = end[r];
+            if (to - from < 2) {
+                int n = order[from];
+                node[r] = n;
+                mass[r] = nodeMass[n];
+                massCenterX[r] = x[n];
+                massCenterY[r] = y[n];
+                massCenterZ[r] = z != null ? z[n] : 0;
+                size[r] = Double.MIN_VALUE;
+                continue;
+            }
+
+            //Mass and geometry
+            double m = 0;
+            double massSumX = 0;
+            double massSumY = 0;
+            double massSumZ = 0;
+            for (int i = from; i < to; i++) {
+                int n = order[i];
+                m += nodeMass[n];
+                massSumX += x[n] * nodeMass[n];
+                massSumY += y[n] * nodeMass[n];
+                if (z != null) {
+                    massSumZ += z[n] * nodeMass[n];
+                }
+            }
+            double cx = massSumX / m;
+            double cy = massSumY / m;
+            double cz = massSumZ / m;
+            double s = Double.MIN_VALUE;
+            for (int i = from; i < to; i++) {
+                int n = order[i];
+                double distance2 = (x[n] - cx) * (x[n] - cx) + (y[n] - cy) * (y[n] - cy);
+                if (z != null) {
+                    distance2 += (z[n] - cz) * (z[n] - cz);
+                }
+                s = Math.max(s, 2 * Math.sqrt(distance2));
+            }
+            mass[r] = m;
+            massCenterX[r] = cx;
+            massCenterY[r] = cy;
+            massCenterZ[r] = cz;
+            size[r] = s;
+
+            //Partition into top left, bottom left, bottom right and top right quadrants, in front and behind in 3D
+            for (int q = 0; q < childSlots; q++) {
+                quadrantCounts[q] = 0;
+            }
+            for (int i = from; i < to; i++) {
+                int n = order[i];
+                quadrantCounts[quadrant(n, x, y, z, cx, cy, cz)]++;
+            }
+            cursors[0] = from;
+            for (int q = 1; q < childSlots; q++) {
+                cursors[q] = cursors[q - 1] + quadrantCounts[q - 1];
+            }
+            for (int i = from; i < to; i++) {
+                int n = order[i];
+                buffer[cursors[quadrant(n, x, y, z, cx, cy, cz)]++] = n;
+            }
+            System.arraycopy(buffer, from, order, from, to - from);
+
+            //Children
+            firstChild[r] = regionCount;
+            int quadrantStart = from;
+            for (int q = 0; q < childSlots; q++) {
+                int count = quadrantCounts[q];
+                if (count == 0) {
+                    continue;
+                }
+                if (count < to - from) {
+                    newRegion(quadrantStart, quadrantStart + count);
+                } else {
+                    //All nodes at the same place, one region per node
+                    for (int i = quadrantStart; i < quadrantStart + count; i++) {
+                        newRegion(i, i + 1);
+                    }
+                }
+                quadrantStart += count;
+            }
+            childCount[r] = regionCount - firstChild[r];
+        }
+    }
+
+    private static int quadrant(int n, float[] x, float[] y, float[] z, double cx, double cy, double cz) {
+        int quadrant;
+        if (x[n] < cx) {
+            quadrant = y[n] < cy ? 0 : 1;
+        } else {
+            quadrant = y[n] < cy ? 3 : 2;
+        }
+        if (z != null && z[n] >= cz) {
+            quadrant += 4;
+        }
+        return quadrant;
+    }
+
+    private void newRegion(int from, int to) {
+        int r = regionCount++;
+        start[r] = from;
+        end[r] = to;
+        node[r] = -1;
+        childCount[r] = 0;
+        mass[r] = 0;
+        massCenterX[r] = 0;
+        massCenterY[r] = 0;
+        massCenterZ[r] = 0;
+        size[r] = 0;
+    }
+
+    private void ensureCapacity(int nodeCount) {
+        if (order.length < nodeCount) {
+            order = new int[nodeCount];
+            buffer = new int[nodeCount];
+        }
+        //Each split region has at least two children
+        int capacity = Math.max(1, 2 * nodeCount - 1);
+        if (mass.length < capacity) {
+            mass = new double[capacity];
+            massCenterX = new double[capacity];
+            massCenterY = new double[capacity];
+            massCenterZ = new double[capacity];
+            size = new double[capacity];
+            node = new int[capacity];
+            firstChild = new int[capacity];
+            childCount = new int[capacity];
+            start = new int[capacity];
+            end = new int[capacity];
+        }
+    }
+
+    public int getRegionCount() {
+        return regionCount;
+    }
+
+    /**
+     * Returns the node of <code>region</code> if it contains a single node,
+     * or <code>-1</code> otherwise.
+     */
+    public int getNode(int region) {
+        return node[region];
+    }
+
+    public int getFirstChild(int region) {
+        return firstChild[region];
+    }
+
+    public int getChildCount(int region) {
+        return childCount[region];
+    }
+
+    public double getMass(int region) {
+        return mass[region];
+    }
+
+    public double getMassCenterX(int region) {
+        return massCenterX[region];
+    }
+
+    public double getMassCenterY(int region) {
+        return massCenterY[region];
+    }
+
+    public double getMassCenterZ(int region) {
+        return massCenterZ[region];
+    }
+
+    public double getSize(int region) {
+        return size[region];
+    }
+}
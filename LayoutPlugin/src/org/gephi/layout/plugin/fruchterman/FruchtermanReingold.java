@@ -48,8 +48,14 @@ import org.gephi.graph.api.Graph;
 import org.gephi.graph.api.HierarchicalGraph;
 import org.gephi.graph.api.Node;
 import org.gephi.graph.api.NodeData;
+import org.gephi.graph.api.Spatial;
 import org.gephi.layout.plugin.AbstractLayout;
+import org.gephi.layout.plugin.ChunkRunner;
 import org.gephi.layout.plugin.ForceVectorNodeLayoutData;
+import org.gephi.layout.plugin.force.AbstractForce;
+import org.gephi.layout.plugin.force.ForceVector;
+import org.gephi.layout.plugin.force.quadtree.BarnesHut;
+import org.gephi.layout.plugin.force.quadtree.QuadTree;
 import org.gephi.layout.spi.Layout;
 import org.gephi.layout.spi.LayoutBuilder;
 import org.gephi.layout.spi.LayoutProperty;
@@ -63,21 +69,29 @@ public class FruchtermanReingold extends AbstractLayout implements Layout {
 
     private static final float SPEED_DIVISOR = 800;
     private static final float AREA_MULTIPLICATOR = 10000;
+    private static final int QUADTREE_MAX_LEVEL = 10;
     //Graph
     protected HierarchicalGraph graph;
     //Properties
     private float area;
     private double gravity;
     private double speed;
+    private boolean barnesHutOptimize;
+    private float barnesHutTheta;
+    private int threadCount;
 
     public FruchtermanReingold(LayoutBuilder layoutBuilder) {
         super(layoutBuilder);
+        this.threadCount = Math.min(4, Runtime.getRuntime().availableProcessors());
     }
 
     public void resetPropertiesValues() {
         speed = 1;
         area = 10000;
         gravity = 10;
+        barnesHutOptimize = false;
+        barnesHutTheta = 1.2f;
+        threadCount = Math.min(4, Runtime.getRuntime().availableProcessors());
     }
 
     public void initAlgo() {
@@ -90,6 +104,14 @@ public class FruchtermanReingold extends AbstractLayout implements Layout {
     public void goAlgo() {
         this.graph = graphModel.getHierarchicalGraphVisible();
         graph.readLock();
+        try {
+            pass();
+        } finally {
+            graph.readUnlock();
+        }
+    }
+
+    private void pass() {
         Node[] nodes = graph.getNodes().toArray();
         Edge[] edges = graph.getEdgesAndMetaEdges().toArray();
 
@@ -105,22 +127,29 @@ public class FruchtermanReingold extends AbstractLayout implements Layout {
         float maxDisplace = (float) (Math.sqrt(AREA_MULTIPLICATOR * area) / 10f);					// Déplacement limite : on peut le calibrer...
         float k = (float) Math.sqrt((AREA_MULTIPLICATOR * area) / (1f + nodes.length));		// La variable k, l'idée principale du layout.
 
-        for (Node N1 : nodes) {
-            for (Node N2 : nodes) {	// On fait toutes les paires de noeuds
-                if (N1 != N2) {
-                    float xDist = N1.getNodeData().x() - N2.getNodeData().x();	// distance en x entre les deux noeuds
-                    float yDist = N1.getNodeData().y() - N2.getNodeData().y();
-                    float dist = (float) Math.sqrt(xDist * xDist + yDist * yDist);	// distance tout court
+        // Repulsion, each node only moves itself so the nodes are split between threads
+        final Node[] allNodes = nodes;
+        final float repulsionK = k;
+        final BarnesHut barnesHut;
+        final QuadTree tree;
+        if (barnesHutOptimize) {
+            tree = QuadTree.buildTree(nodes, QUADTREE_MAX_LEVEL);
+            barnesHut = new BarnesHut(new RepulsionForce(k));
+            barnesHut.setTheta(barnesHutTheta);
+        } else {
+            tree = null;
+            barnesHut = null;
+        }
+        new ChunkRunner(threadCount).run(nodes.length, new ChunkRunner.ChunkTask() {
 
-                    if (dist > 0) {
-                        float repulsiveF = k * k / dist;			// Force de répulsion
-                        ForceVectorNodeLayoutData layoutData = N1.getNodeData().getLayoutData();
-                        layoutData.dx += xDist / dist * repulsiveF;		// on l'applique...
-                        layoutData.dy += yDist / dist * repulsiveF;
-                    }
+            public void run(int chunk, int from, int to) {
+                if (barnesHut != null) {
+                    applyRepulsion(allNodes, from, to, barnesHut, tree);
+                } else {
+                    applyRepulsion(allNodes, from, to, repulsionK);
                 }
             }
-        }
+        });
         for (Edge E : edges) {
             // Idem, pour tous les noeuds on applique la force d'attraction
 
@@ -170,7 +199,38 @@ public class FruchtermanReingold extends AbstractLayout implements Layout {
                 n.getNodeData().setY(n.getNodeData().y() + yDist / dist * limitedDist);
             }
         }
-        graph.readUnlock();
+    }
+
+    private void applyRepulsion(Node[] nodes, int from, int to, float k) {
+        for (int i = from; i < to; i++) {
+            Node N1 = nodes[i];
+            for (Node N2 : nodes) {	// On fait toutes les paires de noeuds
+                if (N1 != N2) {
+                    float xDist = N1.getNodeData().x() - N2.getNodeData().x();	// distance en x entre les deux noeuds
+                    float yDist = N1.getNodeData().y() - N2.getNodeData().y();
+                    float dist = (float) Math.sqrt(xDist * xDist + yDist * yDist);	// distance tout court
+
+                    if (dist > 0) {
+                        float repulsiveF = k * k / dist;			// Force de répulsion
+                        ForceVectorNodeLayoutData layoutData = N1.getNodeData().getLayoutData();
+                        layoutData.dx += xDist / dist * repulsiveF;		// on l'applique...
+                        layoutData.dy += yDist / dist * repulsiveF;
+                    }
+                }
+            }
+        }
+    }
+
+    private void applyRepulsion(Node[] nodes, int from, int to, BarnesHut barnesHut, QuadTree tree) {
+        for (int i = from; i < to; i++) {
+            NodeData nodeData = nodes[i].getNodeData();
+            ForceVector f = barnesHut.calculateForce(nodeData, tree);
+            if (f != null) {
+                ForceVectorNodeLayoutData layoutData = nodeData.getLayoutData();
+                layoutData.dx += f.x();
+                layoutData.dy += f.y();
+            }
+        }
     }
 
     public void endAlgo() {
@@ -210,6 +270,27 @@ public class FruchtermanReingold extends AbstractLayout implements Layout {
                     "fruchtermanReingold.speed.name",
                     NbBundle.getMessage(FruchtermanReingold.class, "fruchtermanReingold.speed.desc"),
                     "getSpeed", "setSpeed"));
+            properties.add(LayoutProperty.createProperty(
+                    this, Boolean.class,
+                    NbBundle.getMessage(FruchtermanReingold.class, "fruchtermanReingold.barnesHutOptimize.name"),
+                    FRUCHTERMAN_REINGOLD,
+                    "fruchtermanReingold.barnesHutOptimize.name",
+                    NbBundle.getMessage(FruchtermanReingold.class, "fruchtermanReingold.barnesHutOptimize.desc"),
+                    "isBarnesHutOptimize", "setBarnesHutOptimize"));
+            properties.add(LayoutProperty.createProperty(
+                    this, Float.class,
+                    NbBundle.getMessage(FruchtermanReingold.class, "fruchtermanReingold.barnesHutTheta.name"),
+                    FRUCHTERMAN_REINGOLD,
+                    "fruchtermanReingold.barnesHutTheta.name",
+                    NbBundle.getMessage(FruchtermanReingold.class, "fruchtermanReingold.barnesHutTheta.desc"),
+                    "getBarnesHutTheta", "setBarnesHutTheta"));
+            properties.add(LayoutProperty.createProperty(
+                    this, Integer.class,
+                    NbBundle.getMessage(FruchtermanReingold.class, "fruchtermanReingold.threads.name"),
+                    FRUCHTERMAN_REINGOLD,
+                    "fruchtermanReingold.threads.name",
+                    NbBundle.getMessage(FruchtermanReingold.class, "fruchtermanReingold.threads.desc"),
+                    "getThreadsCount", "setThreadsCount"));
         } catch (Exception e) {
             e.printStackTrace();
         }
@@ -252,4 +333,51 @@ public class FruchtermanReingold extends AbstractLayout implements Layout {
     public void setSpeed(Double speed) {
         this.speed = speed;
     }
+
+    public Boolean isBarnesHutOptimize() {
+        return barnesHutOptimize;
+    }
+
+    public void setBarnesHutOptimize(Boolean barnesHutOptimize) {
+        this.barnesHutOptimize = barnesHutOptimize;
+    }
+
+    /* theta is the parameter for Barnes-Hut opening criteria */
+    public Float getBarnesHutTheta() {
+        return barnesHutTheta;
+    }
+
+    public void setBarnesHutTheta(Float barnesHutTheta) {
+        this.barnesHutTheta = barnesHutTheta;
+    }
+
+    public Integer getThreadsCount() {
+        return threadCount;
+    }
+
+    public void setThreadsCount(Integer threadCount) {
+        this.threadCount = Math.max(1, threadCount);
+    }
+
+    /**
+     * Fr = K*K*(n1-n2)/||n1-n2||^2
+     */
+    static class RepulsionForce extends AbstractForce {
+
+        private final float k;
+
+        public RepulsionForce(float k) {
+            this.k = k;
+        }
+
+        @Override
+        public ForceVector calculateForce(Spatial node1, Spatial node2, float distance) {
+            if (distance <= 0) {
+                return new ForceVector();
+            }
+            ForceVector f = new ForceVector(node1.x() - node2.x(), node1.y() - node2.y());
+            f.multiply(k * k / (distance * distance));
+            return f;
+        }
+    }
 }
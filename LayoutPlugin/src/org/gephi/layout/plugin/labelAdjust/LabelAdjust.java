@@ -46,6 +46,7 @@ import java.util.List;
 import org.gephi.graph.api.Graph;
 import org.gephi.graph.api.Node;
 import org.gephi.layout.plugin.AbstractLayout;
+import org.gephi.layout.plugin.SpatialHash;
 import org.gephi.layout.spi.Layout;
 import org.gephi.layout.spi.LayoutBuilder;
 import org.gephi.layout.spi.LayoutProperty;
@@ -68,6 +69,13 @@ public class LabelAdjust extends AbstractLayout implements Layout {
     private float xmax;
     private float ymin;
     private float ymax;
+    //Nodes index
+    private SpatialHash spatialHash;
+    private float[] nodesX = new float[0];
+    private float[] nodesY = new float[0];
+    private float[] halfWidths = new float[0];
+    private float[] halfHeights = new float[0];
+    private float[] radiuses = new float[0];
 
     public LabelAdjust(LayoutBuilder layoutBuilder) {
         super(layoutBuilder);
@@ -135,29 +143,65 @@ public class LabelAdjust extends AbstractLayout implements Layout {
             return;
         }
 
-        long timeStamp = 1;
         boolean someCollision = false;
 
-        //Add all nodes in the quadtree
-        QuadTree quadTree = new QuadTree(correctNodes.size(), (xmax - xmin) / (ymax - ymin));
-        for (Node n : correctNodes) {
-            quadTree.add(n);
+        //Index the nodes centers, cells have the average size of the nodes rectangles
+        int count = correctNodes.size();
+        if (nodesX.length < count) {
+            nodesX = new float[count];
+            nodesY = new float[count];
+            halfWidths = new float[count];
+            halfHeights = new float[count];
+            radiuses = new float[count];
         }
-
-        //Compute repulsion - with neighbours in the 8 quadnodes around the node
-        for (Node n : correctNodes) {
-            timeStamp++;
-            LabelAdjustLayoutData layoutData = n.getNodeData().getLayoutData();
-            QuadNode quad = quadTree.getQuadNode(layoutData.labelAdjustQuadNode);
-
-            //Repulse with adjacent quad - but only one per pair of nodes, timestamp is guaranteeing that
-            for (Node neighbour : quadTree.getAdjacentNodes(quad.row, quad.col)) {
-                LabelAdjustLayoutData neighborLayoutData = neighbour.getNodeData().getLayoutData();
-                if (neighbour != n && neighborLayoutData.freeze < timeStamp) {
-                    boolean collision = repulse(n, neighbour);
-                    someCollision = someCollision || collision;
+        float maxHalfWidth = 0;
+        float maxHalfHeight = 0;
+        float maxRadius = 0;
+        double extentSum = 0;
+        for (int i = 0; i < count; i++) {
+            Node n = correctNodes.get(i);
+            nodesX[i] = n.getNodeData().x();
+            nodesY[i] = n.getNodeData().y();
+            halfWidths[i] = n.getNodeData().getTextData().getWidth() / 2;
+            halfHeights[i] = n.getNodeData().getTextData().getHeight() / 2;
+            radiuses[i] = n.getNodeData().getRadius();
+            maxHalfWidth = Math.max(maxHalfWidth, halfWidths[i]);
+            maxHalfHeight = Math.max(maxHalfHeight, halfHeights[i]);
+            maxRadius = Math.max(maxRadius, radiuses[i]);
+            extentSum += 2 * Math.max(Math.max(halfWidths[i], halfHeights[i]), radiuses[i]);
+        }
+        float cellSize = (float) (extentSum / count);
+        if (spatialHash == null || cellSize < spatialHash.getCellSize() / 2 || cellSize > spatialHash.getCellSize() * 2) {
+            spatialHash = new SpatialHash(cellSize);
+        }
+        spatialHash.update(count, nodesX, nodesY);
+
+        //Compute repulsion - with the nodes whose rectangle or sphere may overlap
+        for (int i = 0; i < count; i++) {
+            Node n = correctNodes.get(i);
+            float rangeX = halfWidths[i] + maxHalfWidth;
+            float rangeY = halfHeights[i] + maxHalfHeight;
+            if (adjustBySize) {
+                float sphereRange = radiusScale * (radiuses[i] + maxRadius);
+                rangeX = Math.max(rangeX, sphereRange);
+                rangeY = Math.max(rangeY, sphereRange);
+            }
+            int maxCellX = spatialHash.getCellX(nodesX[i] + rangeX);
+            int maxCellY = spatialHash.getCellY(nodesY[i] + rangeY);
+            for (int cellX = spatialHash.getCellX(nodesX[i] - rangeX); cellX <= maxCellX; cellX++) {
+                for (int cellY = spatialHash.getCellY(nodesY[i] - rangeY); cellY <= maxCellY; cellY++) {
+                    int cell = spatialHash.getCell(cellX, cellY);
+                    if (cell == -1) {
+                        continue;
+                    }
+                    for (int p = spatialHash.getCellStart(cell); p < spatialHash.getCellEnd(cell); p++) {
+                        int j = spatialHash.getPoint(p);
+                        if (i != j) {
+                            boolean collision = repulse(n, correctNodes.get(j));
+                            someCollision = someCollision || collision;
+                        }
+                    }
                 }
-                neighborLayoutData.freeze = timeStamp; //Use the existing freeze float variable to set timestamp
             }
         }
 
@@ -257,6 +301,7 @@ public class LabelAdjust extends AbstractLayout implements Layout {
         for (Node n : graph.getNodes()) {
             n.getNodeData().setLayoutData(null);
         }
+        spatialHash = null;
     }
 
     public LayoutProperty[] getProperties() {
@@ -298,107 +343,4 @@ public class LabelAdjust extends AbstractLayout implements Layout {
     public void setAdjustBySize(Boolean adjustBySize) {
         this.adjustBySize = adjustBySize;
     }
-
-    private static class QuadNode {
-
-        private final int index;
-        private final int row;
-        private final int col;
-        private final List<Node> nodes;
-
-        public QuadNode(int index, int row, int col) {
-            this.index = index;
-            this.row = row;
-            this.col = col;
-            this.nodes = new ArrayList<Node>();
-        }
-
-        public List<Node> getNodes() {
-            return nodes;
-        }
-
-        public void add(Node n) {
-            nodes.add(n);
-        }
-    }
-
-    private class QuadTree {
-
-        private final QuadNode[] quads;
-        private final int COLUMNS;
-        private final int ROWS;
-
-        public QuadTree(int numberNodes, float aspectRatio) {
-            if (aspectRatio > 0) {
-                COLUMNS = (int) Math.ceil(numberNodes / 50f);
-                ROWS = (int) Math.ceil(COLUMNS / aspectRatio);
-            } else {
-                ROWS = (int) Math.ceil(numberNodes / 50f);
-                COLUMNS = (int) Math.ceil(ROWS / aspectRatio);
-            }
-            quads = new QuadNode[COLUMNS * ROWS];
-            for (int row = 0; row < ROWS; row++) {
-                for (int col = 0; col < COLUMNS; col++) {
-                    quads[row * COLUMNS + col] = new QuadNode(row * COLUMNS + col, row, col);
-                }
-            }
-        }
-
-        public void add(Node node) {
-            float x = node.getNodeData().x();
-            float y = node.getNodeData().y();
-            float w = node.getNodeData().getTextData().getWidth();
-            float h = node.getNodeData().getTextData().getHeight();
-            float radius = node.getNodeData().getRadius();
-
-            // Get the rectangle occupied by the node (size + label)
-            float nxmin = Math.min(x - w / 2, x - radius);
-            float nxmax = Math.max(x + w / 2, x + radius);
-            float nymin = Math.min(y - h / 2, y - radius);
-            float nymax = Math.max(y + h / 2, y + radius);
-
-            // Get the rectangle as boxes
-            int minXbox = (int) Math.floor((COLUMNS - 1) * (nxmin - xmin) / (xmax - xmin));
-            int maxXbox = (int) Math.floor((COLUMNS - 1) * (nxmax - xmin) / (xmax - xmin));
-            int minYbox = (int) Math.floor((ROWS - 1) * (((ymax - ymin) - (nymax - ymin)) / (ymax - ymin)));
-            int maxYbox = (int) Math.floor((ROWS - 1) * (((ymax - ymin) - (nymin - ymin)) / (ymax - ymin)));
-            for (int col = minXbox; col <= maxXbox && col < COLUMNS && col >= 0; col++) {
-                for (int row = minYbox; row <= maxYbox && row < ROWS && row >= 0; row++) {
-                    quads[row * COLUMNS + col].add(node);
-                }
-            }
-
-            //Get the node center
-            int centerX = (int) Math.floor((COLUMNS - 1) * (x - xmin) / (xmax - xmin));
-            int centerY = (int) Math.floor((ROWS - 1) * (((ymax - ymin) - (y - ymin)) / (ymax - ymin)));
-            LabelAdjustLayoutData layoutData = node.getNodeData().getLayoutData();
-            layoutData.labelAdjustQuadNode = quads[centerY * COLUMNS + centerX].index;
-        }
-
-        public List<Node> get(int row, int col) {
-            return quads[row * ROWS + col].getNodes();
-        }
-
-        public List<Node> getAdjacentNodes(int row, int col) {
-            if (quads.length == 1) {
-                return quads[0].getNodes();
-            }
-
-            List<Node> adjNodes = new ArrayList<Node>();
-            int left = Math.max(0, col - 1);
-            int top = Math.max(0, row - 1);
-            int right = Math.min(COLUMNS - 1, col + 1);
-            int bottom = Math.min(ROWS - 1, row + 1);
-            for (int i = left; i <= right; i++) {
-                for (int j = top; j <= bottom; j++) {
-                    adjNodes.addAll(quads[j * COLUMNS + i].getNodes());
-                }
-            }
-            return adjNodes;
-        }
-
-        public QuadNode getQuadNode(int index) {
-            return quads[index];
-        }
-    }
 }
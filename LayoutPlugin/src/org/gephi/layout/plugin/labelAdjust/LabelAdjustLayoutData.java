@@ -48,6 +48,4 @@ import org.gephi.layout.plugin.ForceVectorNodeLayoutData;
  * @author Mathieu Bastian
  */
 public class LabelAdjustLayoutData extends ForceVectorNodeLayoutData {
-
-    int labelAdjustQuadNode;
 }
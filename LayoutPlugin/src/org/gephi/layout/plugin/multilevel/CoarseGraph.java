@@ -0,0 +1,334 @@
+/*
+Copyright 2008-2010 Gephi
+Website : http://www.gephi.org
+
+This file is part of Gephi.
+
+DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+
+Copyright 2011 Gephi Consortium. All rights reserved.
+
+The contents of this file are subject to the terms of either the GNU
+General Public License Version 3 only ("GPL") or the Common
+Development and Distribution License("CDDL") (collectively, the
+"License"). You may not use this file except in compliance with the
+License. You can obtain a copy of the License at
+http://gephi.org/about/legal/license-notice/
+or /cddl-1.0.txt and /gpl-3.0.txt. See the License for the
+specific language governing permissions and limitations under the
+License.  When distributing the software, include this License Header
+Notice in each file and include the License files at
+/cddl-1.0.txt and /gpl-3.0.txt. If applicable, add the following below the
+License Header, with the fields enclosed by brackets [] replaced by
+your own identifying information:
+"Portions Copyrighted [year] [name of copyright owner]"
+
+If you wish your version of this file to be governed by only the CDDL
+or only the GPL Version 3, indicate your decision by adding
+"[Contributor] elects to include this software in this distribution
+under the [CDDL or GPL Version 3] license." If you do not indicate a
+single choice of license, a recipient has the option to distribute
+your version of this file under either the CDDL, the GPL Version 3 or
+to extend the choice of license to its licensees as provided above.
+However, if you add GPL Version 3 code and therefore, elected the GPL
+Version 3 license, then the option applies only if the new code is
+made subject to such option by the copyright holder.
+
+Contributor(s):
+
+Portions Copyrighted 2011 Gephi Consortium.
+*/
+package org.gephi.layout.plugin.multilevel;
+
+import java.util.Arrays;
+import org.gephi.graph.api.AdjacencySnapshot;
+import org.gephi.graph.api.AdjacencySnapshot.Adjacency;
+import org.gephi.layout.plugin.ChunkRunner;
+
+/**
+ * Undirected weighted graph stored in primitive arrays, used as one level of
+ * the multilevel hierarchy. Neighbours of node <code>i</code> are stored in
+ * <code>targets</code> between <code>offsets[i]</code> and
+ * <code>offsets[i + 1]</code>, both directions of an edge are present and
+ * self loops are ignored.
+ * <p>
+ * Coarser levels are built by heavy edge matching, without touching the
+ * graph hierarchy: each node is collapsed with at most one neighbour and
+ * <code>getCoarseIndex()</code> gives the node of the coarser level each node
+ * has been collapsed into.
+ */
+class CoarseGraph {
+
+    private static final int MATCHING_ROUNDS = 8;
+    private final int nodeCount;
+    private final int[] offsets;
+    private final int[] targets;
+    private final float[] weights;
+    private final int[] nodeWeights;
+    private int[] coarseIndex;
+
+    CoarseGraph(int nodeCount, int[] offsets, int[] targets, float[] weights, int[] nodeWeights) {
+        this.nodeCount = nodeCount;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.weights = weights;
+        this.nodeWeights = nodeWeights;
+    }
+
+    /**
+     * Creates the finest level from the undirected adjacency of
+     * <code>snapshot</code>. Nodes indices are the snapshot indices.
+     */
+    public static CoarseGraph fromSnapshot(AdjacencySnapshot snapshot) {
+        int nodeCount = snapshot.getNodeCount();
+        int[] snapshotOffsets = snapshot.getOffsets(Adjacency.UNDIRECTED);
+        int[] snapshotTargets = snapshot.getTargets(Adjacency.UNDIRECTED);
+        float[] snapshotWeights = snapshot.getWeights(Adjacency.UNDIRECTED);
+
+        int[] offsets = new int[nodeCount + 1];
+        int edgeCount = 0;
+        for (int i = 0; i < nodeCount; i++) {
+            offsets[i] = edgeCount;
+            for (int j = snapshotOffsets[i]; j < snapshotOffsets[i + 1]; j++) {
+                if (snapshotTargets[j] != i) {
+                    edgeCount++;
+                }
+            }
+        }
+        offsets[nodeCount] = edgeCount;
+        int[] targets = new int[edgeCount];
+        float[] weights = new float[edgeCount];
+        int e = 0;
+        for (int i = 0; i < nodeCount; i++) {
+            for (int j = snapshotOffsets[i]; j < snapshotOffsets[i + 1]; j++) {
+                if (snapshotTargets[j] != i) {
+                    targets[e] = snapshotTargets[j];
+                    weights[e] = snapshotWeights != null ? snapshotWeights[j] : 1f;
+                    e++;
+                }
+            }
+        }
+        int[] nodeWeights = new int[nodeCount];
+        Arrays.fill(nodeWeights, 1);
+        return new CoarseGraph(nodeCount, offsets, targets, weights, nodeWeights);
+    }
+
+    /**
+     * Builds the next coarser level. Nodes are matched with the unmatched
+     * neighbour they share the heaviest edge with, in a few parallel rounds
+     * where two nodes are matched when they choose each other. Matched pairs
+     * become a single node and parallel edges are merged, summing their
+     * weights.
+     * @param runner    the runner the parallel steps are done with
+     * @return          the coarser graph
+     */
+    public CoarseGraph coarsen(ChunkRunner runner) {
+        final int[] mate = new int[nodeCount];
+        final int[] proposal = new int[nodeCount];
+        Arrays.fill(mate, -1);
+        for (int round = 0; round < MATCHING_ROUNDS; round++) {
+            runner.run(nodeCount, new ChunkRunner.ChunkTask() {
+
+                @Override
+                public void run(int chunk, int from, int to) {
+                    for (int i = from; i < to; i++) {
+                        proposal[i] = mate[i] == -1 ? getHeaviestFreeNeighbour(i, mate) : -1;
+                    }
+                }
+            });
+            final int[] chunkMatches = new int[ChunkRunner.getChunkCount(nodeCount)];
+            runner.run(nodeCount, new ChunkRunner.ChunkTask() {
+
+                @Override
+                public void run(int chunk, int from, int to) {
+                    for (int i = from; i < to; i++) {
+                        int p = proposal[i];
+                        if (p != -1 && proposal[p] == i) {
+                            mate[i] = p;
+                            chunkMatches[chunk]++;
+                        }
+                    }
+                }
+            });
+            int matches = 0;
+            for (int m : chunkMatches) {
+                matches += m;
+            }
+            if (matches == 0) {
+                break;
+            }
+        }
+
+        //Coarse nodes are numbered in the order of their first child
+        coarseIndex = new int[nodeCount];
+        final int[] firstChild = new int[nodeCount];
+        final int[] secondChild = new int[nodeCount];
+        int count = 0;
+        for (int i = 0; i < nodeCount; i++) {
+            if (mate[i] == -1 || i < mate[i]) {
+                coarseIndex[i] = count;
+                firstChild[count] = i;
+                secondChild[count] = mate[i];
+                if (mate[i] != -1) {
+                    coarseIndex[mate[i]] = count;
+                }
+                count++;
+            }
+        }
+        final int coarseCount = count;
+
+        //Merge the children adjacencies, each chunk writes its own lists first
+        final int chunkCount = ChunkRunner.getChunkCount(coarseCount);
+        final int[][] chunkTargets = new int[chunkCount][];
+        final float[][] chunkWeights = new float[chunkCount][];
+        final int[] coarseOffsets = new int[coarseCount + 1];
+        final int[] coarseNodeWeights = new int[coarseCount];
+        runner.run(coarseCount, new ChunkRunner.ChunkTask() {
+
+            @Override
+            public void run(int chunk, int from, int to) {
+                int size = 0;
+                for (int c = from; c < to; c++) {
+                    size += getDegree(firstChild[c]);
+                    if (secondChild[c] != -1) {
+                        size += getDegree(secondChild[c]);
+                    }
+                }
+                long[] keys = new long[size];
+                int[] mergedTargets = new int[size];
+                float[] mergedWeights = new float[size];
+                int merged = 0;
+                for (int c = from; c < to; c++) {
+                    int keyCount = 0;
+                    int[] children = {firstChild[c], secondChild[c]};
+                    int nodeWeight = 0;
+                    for (int child : children) {
+                        if (child == -1) {
+                            continue;
+                        }
+                        nodeWeight += nodeWeights[child];
+                        for (int j = offsets[child]; j < offsets[child + 1]; j++) {
+                            int d = coarseIndex[targets[j]];
+                            if (d != c) {
+                                //Sorting the keys groups the edges by coarse neighbour
+                                keys[keyCount++] = ((long) d << 32) | j;
+                            }
+                        }
+                    }
+                    Arrays.sort(keys, 0, keyCount);
+                    int start = merged;
+                    for (int k = 0; k < keyCount; k++) {
+                        int d = (int) (keys[k] >>> 32);
+                        float w = weights[(int) keys[k]];
+                        if (merged > start && mergedTargets[merged - 1] == d) {
+                            mergedWeights[merged - 1] += w;
+                        } else {
+                            mergedTargets[merged] = d;
+                            mergedWeights[merged] = w;
+                            merged++;
+                        }
+                    }
+                    coarseOffsets[c + 1] = merged - start;
+                    coarseNodeWeights[c] = nodeWeight;
+                }
+                chunkTargets[chunk] = Arrays.copyOf(mergedTargets, merged);
+                chunkWeights[chunk] = Arrays.copyOf(mergedWeights, merged);
+            }
+        });
+        for (int c = 0; c < coarseCount; c++) {
+            coarseOffsets[c + 1] += coarseOffsets[c];
+        }
+        final int[] coarseTargets = new int[coarseOffsets[coarseCount]];
+        final float[] coarseWeights = new float[coarseOffsets[coarseCount]];
+        runner.run(coarseCount, new ChunkRunner.ChunkTask() {
+
+            @Override
+            public void run(int chunk, int from, int to) {
+                int length = chunkTargets[chunk].length;
+                System.arraycopy(chunkTargets[chunk], 0, coarseTargets, coarseOffsets[from], length);
+                System.arraycopy(chunkWeights[chunk], 0, coarseWeights, coarseOffsets[from], length);
+                chunkTargets[chunk] = null;
+                chunkWeights[chunk] = null;
+            }
+        });
+        return new CoarseGraph(coarseCount, coarseOffsets, coarseTargets, coarseWeights, coarseNodeWeights);
+    }
+
+    /**
+     * Returns the unmatched neighbour of <code>node</code> with the heaviest
+     * edge, or <code>-1</code> if all neighbours are matched. Ties are broken
+     * by the lightest pair and then by a hash of the pair. Edges are ranked
+     * the same way from both ends, so that locally heaviest edges are chosen
+     * by both their nodes.
+     */
+    private int getHeaviestFreeNeighbour(int node, int[] mate) {
+        int best = -1;
+        float bestWeight = 0;
+        int bestPairWeight = 0;
+        int bestHash = 0;
+        for (int j = offsets[node]; j < offsets[node + 1]; j++) {
+            int n = targets[j];
+            if (mate[n] != -1) {
+                continue;
+            }
+            float w = weights[j];
+            int pairWeight = nodeWeights[node] + nodeWeights[n];
+            int hash = hash(Math.min(node, n), Math.max(node, n));
+            if (best == -1 || w > bestWeight
+                    || (w == bestWeight && (pairWeight < bestPairWeight
+                    || (pairWeight == bestPairWeight && (hash > bestHash
+                    || (hash == bestHash && n < best)))))) {
+                best = n;
+                bestWeight = w;
+                bestPairWeight = pairWeight;
+                bestHash = hash;
+            }
+        }
+        return best;
+    }
+
+    private static int hash(int a, int b) {
+        int h = a * 0x9E3779B1 + b;
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        h *= 0xC2B2AE35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    public int getDegree(int node) {
+        return offsets[node + 1] - offsets[node];
+    }
+
+    public int[] getOffsets() {
+        return offsets;
+    }
+
+    public int[] getTargets() {
+        return targets;
+    }
+
+    public float[] getWeights() {
+        return weights;
+    }
+
+    /**
+     * Returns the number of nodes of the finest level each node stands for.
+     */
+    public int[] getNodeWeights() {
+        return nodeWeights;
+    }
+
+    /**
+     * Returns the index in the coarser level of each node, or
+     * <code>null</code> if this graph has not been coarsened.
+     */
+    public int[] getCoarseIndex() {
+        return coarseIndex;
+    }
+}
@@ -0,0 +1,223 @@
+/*
+Copyright 2008-2010 Gephi
+Website : http://www.gephi.org
+
+This file is part of Gephi.
+
+DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+
+Copyright 2011 Gephi Consortium. All rights reserved.
+
+The contents of this file are subject to the terms of either the GNU
+General Public License Version 3 only ("GPL") or the Common
+Development and Distribution License("CDDL") (collectively, the
+"License"). You may not use this file except in compliance with the
+License. You can obtain a copy of the License at
+http://gephi.org/about/legal/license-notice/
+or /cddl-1.0.txt and /gpl-3.0.txt. See the License for the
+specific language governing permissions and limitations under the
+License.  When distributing the software, include this License Header
+Notice in each file and include the License files at
+/cddl-1.0.txt and /gpl-3.0.txt. If applicable, add the following below the
+License Header, with the fields enclosed by brackets [] replaced by
+your own identifying information:
+"Portions Copyrighted [year] [name of copyright owner]"
+
+If you wish your version of this file to be governed by only the CDDL
+or only the GPL Version 3, indicate your decision by adding
+"[Contributor] elects to include this software in this distribution
+under the [CDDL or GPL Version 3] license." If you do not indicate a
+single choice of license, a recipient has the option to distribute
+your version of this file under either the CDDL, the GPL Version 3 or
+to extend the choice of license to its licensees as provided above.
+However, if you add GPL Version 3 code and therefore, elected the GPL
+Version 3 license, then the option applies only if the new code is
+made subject to such option by the copyright holder.
+
+Contributor(s):
+
+Portions Copyrighted 2011 Gephi Consortium.
+*/
+package org.gephi.layout.plugin.multilevel;
+
+import org.gephi.layout.plugin.ChunkRunner;
+import org.gephi.layout.plugin.forceAtlas2.RegionTree;
+
+/**
+ * Yifan Hu's force model applied on one level of the multilevel hierarchy,
+ * on positions stored in arrays. Forces are the same as
+ * <code>YifanHuLayout</code> ones, with a proportional displacement and no
+ * adaptive cooling:
+ * <ul><li>Spring force Fa = w12 * (n2 - n1) * ||n2 - n1|| / K</li>
+ * <li>Electrical force Fr = -C*K*K*m1*m2*(n2-n1)/||n2-n1||&sup2;, approximated
+ * with Barnes-Hut</li></ul>
+ * where <code>w12</code> is the merged edge weight and <code>m1</code>,
+ * <code>m2</code> the number of nodes each coarse node stands for. Nodes are
+ * moved along their force divided by their mass.
+ * Each node only writes its own force, so nodes are split between threads.
+ */
+class LevelLayout {
+
+    private static final float RELATIVE_STRENGTH = 0.2f;
+    private static final float CONVERGENCE_THRESHOLD = 1e-4f;
+    private final CoarseGraph graph;
+    private final float[] x;
+    private final float[] y;
+    private final float[] fx;
+    private final float[] fy;
+    private final double[] mass;
+    private final RegionTree tree = new RegionTree();
+    private final ChunkRunner runner;
+    private final float optimalDistance;
+    private final float stepRatio;
+    private final float theta;
+    private float step;
+    private double energy = Double.POSITIVE_INFINITY;
+    private double energy0;
+    private boolean converged;
+
+    /**
+     * @param graph             the level graph
+     * @param x                 the nodes x positions, updated in place
+     * @param y                 the nodes y positions, updated in place
+     * @param optimalDistance   the natural spring length K of this level
+     * @param stepRatio         the ratio the step is multiplied by after each iteration
+     * @param theta             the Barnes-Hut opening criteria
+     * @param runner            the runner the iterations are done with
+     */
+    public LevelLayout(CoarseGraph graph, float[] x, float[] y, float optimalDistance,
+            float stepRatio, float theta, ChunkRunner runner) {
+        this.graph = graph;
+        this.x = x;
+        this.y = y;
+        this.optimalDistance = optimalDistance;
+        this.stepRatio = stepRatio;
+        this.theta = theta;
+        this.runner = runner;
+        int nodeCount = graph.getNodeCount();
+        fx = new float[nodeCount];
+        fy = new float[nodeCount];
+        mass = new double[nodeCount];
+        int[] nodeWeights = graph.getNodeWeights();
+        for (int i = 0; i < nodeCount; i++) {
+            mass[i] = nodeWeights[i];
+        }
+        step = optimalDistance / 5;
+        converged = nodeCount < 2;
+    }
+
+    public void iterate() {
+        if (converged) {
+            return;
+        }
+        final int nodeCount = graph.getNodeCount();
+        final int[] offsets = graph.getOffsets();
+        final int[] targets = graph.getTargets();
+        final float[] weights = graph.getWeights();
+        tree.build(nodeCount, x, y, mass);
+
+        //Forces, reduced per chunk to keep results independent of threads
+        int chunkCount = ChunkRunner.getChunkCount(nodeCount);
+        final double[] chunkEnergy = new double[chunkCount];
+        final double[] chunkMaxForce = new double[chunkCount];
+        final double electricalFactor = RELATIVE_STRENGTH * optimalDistance * optimalDistance;
+        runner.run(nodeCount, new ChunkRunner.ChunkTask() {
+
+            @Override
+            public void run(int chunk, int from, int to) {
+                double energySum = 0;
+                double maxForce = 0;
+                double[] force = new double[2];
+                for (int i = from; i < to; i++) {
+                    force[0] = 0;
+                    force[1] = 0;
+                    if (tree.getRegionCount() > 0) {
+                        addElectricalForce(i, 0, electricalFactor * mass[i], force);
+                    }
+                    float xi = x[i];
+                    float yi = y[i];
+                    for (int j = offsets[i]; j < offsets[i + 1]; j++) {
+                        int n = targets[j];
+                        double dx = x[n] - xi;
+                        double dy = y[n] - yi;
+                        double distance = Math.sqrt(dx * dx + dy * dy);
+                        force[0] += weights[j] * dx * distance / optimalDistance;
+                        force[1] += weights[j] * dy * distance / optimalDistance;
+                    }
+                    force[0] /= mass[i];
+                    force[1] /= mass[i];
+                    fx[i] = (float) force[0];
+                    fy[i] = (float) force[1];
+                    double norm = Math.sqrt(force[0] * force[0] + force[1] * force[1]);
+                    energySum += norm;
+                    maxForce = Math.max(maxForce, norm);
+                }
+                chunkEnergy[chunk] = energySum;
+                chunkMaxForce[chunk] = maxForce;
+            }
+        });
+        energy0 = energy;
+        energy = 0;
+        double maxForce = 1;
+        for (int c = 0; c < chunkCount; c++) {
+            energy += chunkEnergy[c];
+            maxForce = Math.max(maxForce, chunkMaxForce[c]);
+        }
+
+        //Proportional displacement
+        final float factor = (float) (step / maxForce);
+        runner.run(nodeCount, new ChunkRunner.ChunkTask() {
+
+            @Override
+            public void run(int chunk, int from, int to) {
+                for (int i = from; i < to; i++) {
+                    float newX = x[i] + fx[i] * factor;
+                    float newY = y[i] + fy[i] * factor;
+                    if (!Float.isInfinite(newX) && !Float.isNaN(newX)) {
+                        x[i] = newX;
+                    }
+                    if (!Float.isInfinite(newY) && !Float.isNaN(newY)) {
+                        y[i] = newY;
+                    }
+                }
+            }
+        });
+
+        step *= stepRatio;
+        if (energy == 0 || Math.abs((energy - energy0) / energy) < CONVERGENCE_THRESHOLD) {
+            converged = true;
+        }
+    }
+
+    private void addElectricalForce(int node, int region, double electricalFactor, double[] force) {
+        double dx = x[node] - tree.getMassCenterX(region);
+        double dy = y[node] - tree.getMassCenterY(region);
+        double distance2 = dx * dx + dy * dy;
+        int regionNode = tree.getNode(region);
+        if (regionNode != -1) {
+            if (regionNode != node && distance2 > 0) {
+                double factor = electricalFactor * tree.getMass(region) / distance2;
+                force[0] += dx * factor;
+                force[1] += dy * factor;
+            }
+        } else if (Math.sqrt(distance2) * theta > tree.getSize(region)) {
+            double factor = electricalFactor * tree.getMass(region) / distance2;
+            force[0] += dx * factor;
+            force[1] += dy * factor;
+        } else {
+            int firstChild = tree.getFirstChild(region);
+            int lastChild = firstChild + tree.getChildCount(region);
+            for (int child = firstChild; child < lastChild; child++) {
+                addElectricalForce(node, child, electricalFactor, force);
+            }
+        }
+    }
+
+    public boolean isConverged() {
+        return converged;
+    }
+
+    public double getEnergy() {
+        return energy;
+    }
+}
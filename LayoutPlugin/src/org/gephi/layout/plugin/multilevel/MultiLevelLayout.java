@@ -43,8 +43,13 @@ package org.gephi.layout.plugin.multilevel;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
+import org.gephi.graph.api.AdjacencySnapshot;
 import org.gephi.graph.api.HierarchicalGraph;
+import org.gephi.graph.api.Node;
+import org.gephi.graph.api.NodeData;
 import org.gephi.layout.plugin.AbstractLayout;
+import org.gephi.layout.plugin.ChunkRunner;
 import org.gephi.layout.spi.Layout;
 import org.gephi.layout.spi.LayoutBuilder;
 import org.gephi.layout.spi.LayoutProperty;
@@ -59,6 +64,7 @@ import org.openide.util.NbBundle;
  */
 public class MultiLevelLayout extends AbstractLayout implements Layout {
 
+    private static final long RANDOM_SEED = 1L;
     private HierarchicalGraph graph;
     private int level;
     private YifanHuLayout layout;
@@ -70,6 +76,15 @@ public class MultiLevelLayout extends AbstractLayout implements Layout {
     private float optimalDistance;
     private int quadTreeMaxLevel;
     private float barnesHutTheta;
+    private boolean compactEngine;
+    //Compact engine
+    private final ChunkRunner runner;
+    private Node[] nodes;
+    private List<CoarseGraph> levels;
+    private LevelLayout levelLayout;
+    private float[] levelX;
+    private float[] levelY;
+    private Random random;
 
     //Security
     private int initedView;
@@ -80,6 +95,7 @@ public class MultiLevelLayout extends AbstractLayout implements Layout {
         this.coarseningStrategy = coarseningStrategy;
         //     this.yifanHu = new YifanHu();
         this.yifanHu = new YifanHuProportional();
+        this.runner = new ChunkRunner(Runtime.getRuntime().availableProcessors());
     }
 
     public void initAlgo() {
@@ -87,6 +103,11 @@ public class MultiLevelLayout extends AbstractLayout implements Layout {
         initedView = graph.getView().getViewId();
         setConverged(false);
         level = 0;
+        levels = null;
+        if (isCompactEngine()) {
+            initCompactEngine();
+            return;
+        }
 
         while (true) {
             int graphSize = graph.getTopNodes().toArray().length;
@@ -106,6 +127,116 @@ public class MultiLevelLayout extends AbstractLayout implements Layout {
         initYifanHu();
     }
 
+    /**
+     * Builds the levels as separate array graphs, the graph hierarchy is not
+     * modified. Nodes positions are only written once the finest level has
+     * been laid out, or when the layout is stopped on the finest level.
+     * Stopping on a coarser level leaves the positions unchanged.
+     */
+    private void initCompactEngine() {
+        AdjacencySnapshot snapshot = graphModel.getAdjacencySnapshot(graph.getView(), true);
+        nodes = snapshot.getNodes();
+        levels = new ArrayList<CoarseGraph>();
+        CoarseGraph levelGraph = CoarseGraph.fromSnapshot(snapshot);
+        levels.add(levelGraph);
+        while (true) {
+            int graphSize = levelGraph.getNodeCount();
+            CoarseGraph coarseGraph = levelGraph.coarsen(runner);
+            int newGraphSize = coarseGraph.getNodeCount();
+            if (newGraphSize < getMinSize() || newGraphSize > graphSize * getMinCoarseningRate()) {
+                break;
+            }
+            levels.add(coarseGraph);
+            levelGraph = coarseGraph;
+        }
+        level = levels.size() - 1;
+
+        //Seeded so that the same graph always gets the same layout
+        random = new Random(RANDOM_SEED);
+        seedCoarsestLevel();
+        initLevelLayout();
+    }
+
+    /**
+     * Places each node of the coarsest level at the mass center of the nodes
+     * it stands for, so that the current layout is kept. Nodes are placed at
+     * random if they all share the same position.
+     */
+    private void seedCoarsestLevel() {
+        float[] x = new float[nodes.length];
+        float[] y = new float[nodes.length];
+        boolean placed = false;
+        for (int i = 0; i < nodes.length; i++) {
+            NodeData data = nodes[i].getNodeData();
+            x[i] = data.x();
+            y[i] = data.y();
+            placed |= x[i] != x[0] || y[i] != y[0];
+        }
+        for (int l = 0; l < levels.size() - 1; l++) {
+            int[] coarseIndex = levels.get(l).getCoarseIndex();
+            int[] nodeWeights = levels.get(l).getNodeWeights();
+            int[] coarseWeights = levels.get(l + 1).getNodeWeights();
+            float[] coarseX = new float[coarseWeights.length];
+            float[] coarseY = new float[coarseWeights.length];
+            for (int i = 0; i < coarseIndex.length; i++) {
+                coarseX[coarseIndex[i]] += x[i] * nodeWeights[i];
+                coarseY[coarseIndex[i]] += y[i] * nodeWeights[i];
+            }
+            for (int c = 0; c < coarseWeights.length; c++) {
+                coarseX[c] /= coarseWeights[c];
+                coarseY[c] /= coarseWeights[c];
+            }
+            x = coarseX;
+            y = coarseY;
+        }
+        if (!placed) {
+            for (int i = 0; i < x.length; i++) {
+                x[i] = (float) (-500 + 1000 * random.nextDouble());
+                y[i] = (float) (-500 + 1000 * random.nextDouble());
+            }
+        }
+        levelX = x;
+        levelY = y;
+    }
+
+    /**
+     * Coarser levels use a longer natural spring length, by a factor of
+     * sqrt(7/4) per level, so that children have room when refined.
+     */
+    private void initLevelLayout() {
+        float levelDistance = (float) (optimalDistance * Math.pow(Math.sqrt(7.0 / 4.0), level));
+        levelLayout = new LevelLayout(levels.get(level), levelX, levelY,
+                levelDistance, stepRatio, barnesHutTheta, runner);
+    }
+
+    /**
+     * Places the nodes of the next finer level around their coarse node.
+     */
+    private void refineLevel() {
+        int[] coarseIndex = levels.get(level - 1).getCoarseIndex();
+        float jitter = (float) (optimalDistance * Math.pow(Math.sqrt(7.0 / 4.0), level - 1) / 10);
+        float[] x = new float[coarseIndex.length];
+        float[] y = new float[coarseIndex.length];
+        for (int i = 0; i < coarseIndex.length; i++) {
+            double t = 2 * Math.PI * random.nextDouble();
+            x[i] = (float) (levelX[coarseIndex[i]] + jitter * Math.cos(t));
+            y[i] = (float) (levelY[coarseIndex[i]] + jitter * Math.sin(t));
+        }
+        levelX = x;
+        levelY = y;
+        level--;
+    }
+
+    private void writePositions() {
+        for (int i = 0; i < nodes.length; i++) {
+            NodeData data = nodes[i].getNodeData();
+            if (!data.isFixed()) {
+                data.setX(levelX[i]);
+                data.setY(levelY[i]);
+            }
+        }
+    }
+
     void initYifanHu() {
         layout = yifanHu.buildLayout();
         layout.setGraphModel(graphModel);
@@ -122,11 +253,17 @@ public class MultiLevelLayout extends AbstractLayout implements Layout {
         HierarchicalGraph newGraph = graphModel.getHierarchicalGraphVisible();
         if(newGraph.getView().getViewId()!=initedView) {
             setConverged(true);
-            layout.endAlgo();
+            if (layout != null) {
+                layout.endAlgo();
+            }
             endAlgo();
             return;
         }
         this.graph = newGraph;
+        if (levels != null) {
+            goCompactEngine();
+            return;
+        }
         if (layout.canAlgo()) {
             layout.goAlgo();
         } else {
@@ -143,7 +280,37 @@ public class MultiLevelLayout extends AbstractLayout implements Layout {
         }
     }
 
+    private void goCompactEngine() {
+        if (levelLayout == null) {
+            setConverged(true);
+            return;
+        }
+        levelLayout.iterate();
+        if (levelLayout.isConverged()) {
+            if (level > 0) {
+                refineLevel();
+                initLevelLayout();
+            } else {
+                writePositions();
+                setConverged(true);
+                levelLayout = null;
+            }
+        }
+    }
+
     public void endAlgo() {
+        if (levels != null) {
+            //Coarser levels only have jittered copies of the coarse positions
+            if (levelLayout != null && level == 0) {
+                writePositions();
+            }
+            nodes = null;
+            levels = null;
+            levelLayout = null;
+            levelX = null;
+            levelY = null;
+            return;
+        }
         while (level > 0) {
             coarseningStrategy.refine(graph);
             level--;
@@ -157,6 +324,7 @@ public class MultiLevelLayout extends AbstractLayout implements Layout {
         setOptimalDistance(100f);
         setQuadTreeMaxLevel(10);
         setBarnesHutTheta(1.2f);
+        setCompactEngine(true);
     }
 
     public LayoutProperty[] getProperties() {
@@ -180,6 +348,13 @@ public class MultiLevelLayout extends AbstractLayout implements Layout {
                     "YifanHuMultiLevel.minimumCoarseningRate.name",
                     NbBundle.getMessage(getClass(), "YifanHuMultiLevel.minimumCoarseningRate.desc"),
                     "getMinCoarseningRate", "setMinCoarseningRate"));
+            properties.add(LayoutProperty.createProperty(
+                    this, Boolean.class,
+                    NbBundle.getMessage(getClass(), "YifanHuMultiLevel.compactEngine.name"),
+                    MULTILEVEL_CATEGORY,
+                    "YifanHuMultiLevel.compactEngine.name",
+                    NbBundle.getMessage(getClass(), "YifanHuMultiLevel.compactEngine.desc"),
+                    "isCompactEngine", "setCompactEngine"));
 
             properties.add(LayoutProperty.createProperty(
                     this, Float.class, 
@@ -300,6 +475,21 @@ public class MultiLevelLayout extends AbstractLayout implements Layout {
         this.barnesHutTheta = barnesHutTheta;
     }
 
+    /**
+     * @return <code>true</code> if levels are built as array graphs instead
+     * of grouping nodes in the graph hierarchy
+     */
+    public Boolean isCompactEngine() {
+        return compactEngine;
+    }
+
+    /**
+     * @param compactEngine the compactEngine to set
+     */
+    public void setCompactEngine(Boolean compactEngine) {
+        this.compactEngine = compactEngine;
+    }
+
     public interface CoarseningStrategy {
 
         public void coarsen(HierarchicalGraph graph);
@@ -0,0 +1,565 @@
+/*
+Copyright 2008-2011 Gephi
+Website : http://www.gephi.org
+
+This file is part of Gephi.
+
+DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+
+Copyright 2011 Gephi Consortium. All rights reserved.
+
+The contents of this file are subject to the terms of either the GNU
+General Public License Version 3 only ("GPL") or the Common
+Development and Distribution License("CDDL") (collectively, the
+"License"). You may not use this file except in compliance with the
+License. You can obtain a copy of the License at
+http://gephi.org/about/legal/license-notice/
+or /cddl-1.0.txt and /gpl-3.0.txt. See the License for the
+specific language governing permissions and limitations under the
+License.  When distributing the software, include this License Header
+Notice in each file and include the License files at
+/cddl-1.0.txt and /gpl-3.0.txt. If applicable, add the following below the
+License Header, with the fields enclosed by brackets [] replaced by
+your own identifying information:
+"Portions Copyrighted [year] [name of copyright owner]"
+
+If you wish your version of this file to be governed by only the CDDL
+or only the GPL Version 3, indicate your decision by adding
+"[Contributor] elects to include this software in this distribution
+under the [CDDL or GPL Version 3] license." If you do not indicate a
+single choice of license, a recipient has the option to distribute
+your version of this file under either the CDDL, the GPL Version 3 or
+to extend the choice of license to its licensees as provided above.
+However, if you add GPL Version 3 code and therefore, elected the GPL
+Version 3 license, then the option applies only if the new code is
+made subject to such option by the copyright holder.
+
+Contributor(s):
+
+Portions Copyrighted 2011 Gephi Consortium.
+ */
+package org.gephi.layout.plugin.pivotMds;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.gephi.graph.api.AdjacencySnapshot;
+import org.gephi.graph.api.AdjacencySnapshot.Adjacency;
+import org.gephi.graph.api.Graph;
+import org.gephi.graph.api.Node;
+import org.gephi.graph.api.NodeData;
+import org.gephi.layout.plugin.AbstractLayout;
+import org.gephi.layout.plugin.ChunkRunner;
+import org.gephi.layout.spi.Layout;
+import org.gephi.layout.spi.LayoutBuilder;
+import org.gephi.layout.spi.LayoutProperty;
+import org.openide.util.NbBundle;
+
+/**
+ * Pivot MDS, from Brandes and Pich "Eigensolver Methods for Progressive
+ * Multidimensional Scaling of Large Data". Breadth-first searches from
+ * <code>k</code> pivots, chosen by max-min distance, give a <code>n x k</code>
+ * distance matrix which is double-centered. The two leading eigenvectors of
+ * its <code>k x k</code> product matrix project nodes on the plane.
+ * <p>
+ * The placement can be refined by sparse stress majorization, where the
+ * stress of each node is computed against its neighbours and the pivots
+ * only.
+ * <p>
+ * Edges are undirected and unweighted, unreachable nodes are placed one
+ * step further than the farthest node of each search. The layout is done in
+ * a single step and results don't depend on the number of threads.
+ */
+public class PivotMDSLayout extends AbstractLayout implements Layout {
+
+    private static final int POWER_ITERATIONS = 1000;
+    private static final double POWER_EPSILON = 1e-10;
+    //Properties
+    private int pivots;
+    private int stressIterations;
+    private float edgeLength;
+    private int threadCount;
+    //Graph
+    private int nodeCount;
+    private int[] offsets;
+    private int[] targets;
+    //Distances from each pivot
+    private int[] pivotNodes;
+    private int[][] distances;
+
+    public PivotMDSLayout(LayoutBuilder layoutBuilder) {
+        super(layoutBuilder);
+    }
+
+    public void initAlgo() {
+        setConverged(false);
+    }
+
+    public void goAlgo() {
+        Graph graph = graphModel.getGraphVisible();
+        AdjacencySnapshot snapshot = graphModel.getAdjacencySnapshot(graph.getView(), false);
+        Node[] nodes = snapshot.getNodes();
+        nodeCount = snapshot.getNodeCount();
+        offsets = snapshot.getOffsets(Adjacency.UNDIRECTED);
+        targets = snapshot.getTargets(Adjacency.UNDIRECTED);
+        ChunkRunner runner = new ChunkRunner(threadCount);
+
+        float[] x = new float[nodeCount];
+        float[] y = new float[nodeCount];
+        if (nodeCount > 1) {
+            computePivotDistances(Math.min(pivots, nodeCount), runner);
+            project(x, y, runner);
+            float scale = getAverageEdgeLength(x, y);
+            if (scale > 0) {
+                scale(x, y, 1f / scale);
+            }
+            for (int i = 0; i < stressIterations; i++) {
+                majorizeStress(x, y, runner);
+            }
+            scale(x, y, edgeLength);
+        }
+
+        for (int i = 0; i < nodeCount; i++) {
+            NodeData data = nodes[i].getNodeData();
+            if (!data.isFixed()) {
+                data.setX(x[i]);
+                data.setY(y[i]);
+            }
+        }
+        offsets = null;
+        targets = null;
+        pivotNodes = null;
+        distances = null;
+        setConverged(true);
+    }
+
+    public void endAlgo() {
+    }
+
+    /**
+     * Picks pivots one after the other, each new pivot being the node with
+     * the largest distance to the already picked ones. The first pivot is the
+     * node with the highest degree.
+     */
+    private void computePivotDistances(int pivotCount, ChunkRunner runner) {
+        pivotNodes = new int[pivotCount];
+        distances = new int[pivotCount][];
+        final int[] minDistances = new int[nodeCount];
+        int pivot = 0;
+        for (int i = 1; i < nodeCount; i++) {
+            if (offsets[i + 1] - offsets[i] > offsets[pivot + 1] - offsets[pivot]) {
+                pivot = i;
+            }
+        }
+        for (int p = 0; p < pivotCount; p++) {
+            pivotNodes[p] = pivot;
+            final int[] distance = breadthFirstSearch(pivot, runner);
+            distances[p] = distance;
+            final boolean first = p == 0;
+            runner.run(nodeCount, new ChunkRunner.ChunkTask() {
+
+                @Override
+                public void run(int chunk, int from, int to) {
+                    for (int i = from; i < to; i++) {
+                        minDistances[i] = first ? distance[i] : Math.min(minDistances[i], distance[i]);
+                    }
+                }
+            });
+            pivot = 0;
+            for (int i = 1; i < nodeCount; i++) {
+                if (minDistances[i] > minDistances[pivot]) {
+                    pivot = i;
+                }
+            }
+        }
+    }
+
+    /**
+     * Level synchronous search, each level frontier is expanded in parallel.
+     * Threads may both claim the same node when they discover it at the same
+     * time, which only duplicates it in the next frontier since they write
+     * the same distance.
+     */
+    private int[] breadthFirstSearch(int source, ChunkRunner runner) {
+        final int[] distance = new int[nodeCount];
+        Arrays.fill(distance, -1);
+        distance[source] = 0;
+        int[] frontier = new int[]{source};
+        int level = 0;
+        while (frontier.length > 0) {
+            final int[] currentFrontier = frontier;
+            final int nextLevel = ++level;
+            final int[][] chunkFrontiers = new int[ChunkRunner.getChunkCount(frontier.length)][];
+            runner.run(frontier.length, new ChunkRunner.ChunkTask() {
+
+                @Override
+                public void run(int chunk, int from, int to) {
+                    int size = 0;
+                    for (int f = from; f < to; f++) {
+                        int n = currentFrontier[f];
+                        size += offsets[n + 1] - offsets[n];
+                    }
+                    int[] next = new int[size];
+                    int count = 0;
+                    for (int f = from; f < to; f++) {
+                        int n = currentFrontier[f];
+                        for (int j = offsets[n]; j < offsets[n + 1]; j++) {
+                            int t = targets[j];
+                            if (distance[t] == -1) {
+                                distance[t] = nextLevel;
+                                next[count++] = t;
+                            }
+                        }
+                    }
+                    chunkFrontiers[chunk] = Arrays.copyOf(next, count);
+                }
+            });
+            int size = 0;
+            for (int[] chunkFrontier : chunkFrontiers) {
+                size += chunkFrontier.length;
+            }
+            frontier = new int[size];
+            size = 0;
+            for (int[] chunkFrontier : chunkFrontiers) {
+                System.arraycopy(chunkFrontier, 0, frontier, size, chunkFrontier.length);
+                size += chunkFrontier.length;
+            }
+        }
+
+        //Other components
+        int unreachable = level;
+        for (int i = 0; i < nodeCount; i++) {
+            if (distance[i] == -1) {
+                distance[i] = unreachable;
+            }
+        }
+        return distance;
+    }
+
+    /**
+     * Projects the nodes on the two leading eigenvectors of
+     * <code>C<sup>T</sup>C</code>, where <code>C</code> is the double-centered
+     * matrix of squared distances to pivots.
+     */
+    private void project(final float[] x, final float[] y, ChunkRunner runner) {
+        final int pivotCount = pivotNodes.length;
+
+        //Means of squared distances, per pivot, per node and overall
+        final double[] pivotMeans = new double[pivotCount];
+        for (int p = 0; p < pivotCount; p++) {
+            double sum = 0;
+            for (int d : distances[p]) {
+                sum += (double) d * d;
+            }
+            pivotMeans[p] = sum / nodeCount;
+        }
+        final double[] nodeMeans = new double[nodeCount];
+        runner.run(nodeCount, new ChunkRunner.ChunkTask() {
+
+            @Override
+            public void run(int chunk, int from, int to) {
+                for (int i = from; i < to; i++) {
+                    double sum = 0;
+                    for (int p = 0; p < pivotCount; p++) {
+                        double d = distances[p][i];
+                        sum += d * d;
+                    }
+                    nodeMeans[i] = sum / pivotCount;
+                }
+            }
+        });
+        double grandSum = 0;
+        for (int p = 0; p < pivotCount; p++) {
+            grandSum += pivotMeans[p];
+        }
+        final double grandMean = grandSum / pivotCount;
+
+        //Double-centered matrix, stored by pivot
+        final float[][] centered = new float[pivotCount][];
+        runner.run(pivotCount, new ChunkRunner.ChunkTask() {
+
+            @Override
+            public void run(int chunk, int from, int to) {
+                for (int p = from; p < to; p++) {
+                    float[] row = new float[nodeCount];
+                    int[] distance = distances[p];
+                    for (int i = 0; i < nodeCount; i++) {
+                        double d = distance[i];
+                        row[i] = (float) (-0.5 * (d * d - pivotMeans[p] - nodeMeans[i] + grandMean));
+                    }
+                    centered[p] = row;
+                }
+            }
+        });
+
+        //Product matrix, one pivot row per task
+        final double[][] product = new double[pivotCount][pivotCount];
+        runner.run(pivotCount, new ChunkRunner.ChunkTask() {
+
+            @Override
+            public void run(int chunk, int from, int to) {
+                for (int p = from; p < to; p++) {
+                    float[] row = centered[p];
+                    for (int q = 0; q <= p; q++) {
+                        float[] other = centered[q];
+                        double sum = 0;
+                        for (int i = 0; i < nodeCount; i++) {
+                            sum += row[i] * other[i];
+                        }
+                        product[p][q] = sum;
+                    }
+                }
+            }
+        });
+        for (int p = 0; p < pivotCount; p++) {
+            for (int q = p + 1; q < pivotCount; q++) {
+                product[p][q] = product[q][p];
+            }
+        }
+
+        final double[] first = getLeadingEigenvector(product, null);
+        final double[] second = getLeadingEigenvector(product, first);
+        runner.run(nodeCount, new ChunkRunner.ChunkTask() {
+
+            @Override
+            public void run(int chunk, int from, int to) {
+                for (int i = from; i < to; i++) {
+                    double sumX = 0;
+                    double sumY = 0;
+                    for (int p = 0; p < pivotCount; p++) {
+                        sumX += centered[p][i] * first[p];
+                        sumY += centered[p][i] * second[p];
+                    }
+                    x[i] = (float) sumX;
+                    y[i] = (float) sumY;
+                }
+            }
+        });
+    }
+
+    /**
+     * Power iteration on the symmetric <code>matrix</code>, kept orthogonal
+     * to <code>orthogonal</code> if not <code>null</code>.
+     */
+    private static double[] getLeadingEigenvector(double[][] matrix, double[] orthogonal) {
+        int size = matrix.length;
+        double[] vector = new double[size];
+        for (int i = 0; i < size; i++) {
+            vector[i] = 1.0 + (i % 7) / 7.0;
+        }
+        orthonormalize(vector, orthogonal);
+        double[] next = new double[size];
+        for (int iteration = 0; iteration < POWER_ITERATIONS; iteration++) {
+            for (int i = 0; i < size; i++) {
+                double sum = 0;
+                for (int j = 0; j < size; j++) {
+                    sum += matrix[i][j] * vector[j];
+                }
+                next[i] = sum;
+            }
+            if (!orthonormalize(next, orthogonal)) {
+                break;
+            }
+            double change = 0;
+            for (int i = 0; i < size; i++) {
+                change += Math.abs(next[i] - vector[i]);
+            }
+            double[] swap = vector;
+            vector = next;
+            next = swap;
+            if (change < POWER_EPSILON) {
+                break;
+            }
+        }
+        return vector;
+    }
+
+    private static boolean orthonormalize(double[] vector, double[] orthogonal) {
+        if (orthogonal != null) {
+            double dot = 0;
+            for (int i = 0; i < vector.length; i++) {
+                dot += vector[i] * orthogonal[i];
+            }
+            for (int i = 0; i < vector.length; i++) {
+                vector[i] -= dot * orthogonal[i];
+            }
+        }
+        double norm = 0;
+        for (double v : vector) {
+            norm += v * v;
+        }
+        norm = Math.sqrt(norm);
+        if (norm == 0) {
+            return false;
+        }
+        for (int i = 0; i < vector.length; i++) {
+            vector[i] /= norm;
+        }
+        return true;
+    }
+
+    /**
+     * One Jacobi step of stress majorization, each node being placed
+     * according to its neighbours at distance 1 and to the pivots at their
+     * graph distance, weighted by the inverse squared distance.
+     */
+    private void majorizeStress(final float[] x, final float[] y, ChunkRunner runner) {
+        final float[] newX = new float[nodeCount];
+        final float[] newY = new float[nodeCount];
+        final int pivotCount = pivotNodes.length;
+        runner.run(nodeCount, new ChunkRunner.ChunkTask() {
+
+            @Override
+            public void run(int chunk, int from, int to) {
+                double[] sums = new double[3];
+                for (int i = from; i < to; i++) {
+                    sums[0] = 0;
+                    sums[1] = 0;
+                    sums[2] = 0;
+                    for (int j = offsets[i]; j < offsets[i + 1]; j++) {
+                        int n = targets[j];
+                        if (n != i) {
+                            addTarget(x, y, i, n, 1, 1, sums);
+                        }
+                    }
+                    for (int p = 0; p < pivotCount; p++) {
+                        int n = pivotNodes[p];
+                        int d = distances[p][i];
+                        if (n != i && d > 0) {
+                            addTarget(x, y, i, n, d, 1.0 / ((double) d * d), sums);
+                        }
+                    }
+                    if (sums[2] > 0) {
+                        newX[i] = (float) (sums[0] / sums[2]);
+                        newY[i] = (float) (sums[1] / sums[2]);
+                    } else {
+                        newX[i] = x[i];
+                        newY[i] = y[i];
+                    }
+                }
+            }
+        });
+        System.arraycopy(newX, 0, x, 0, nodeCount);
+        System.arraycopy(newY, 0, y, 0, nodeCount);
+    }
+
+    /**
+     * Adds to <code>sums</code> the position of <code>node</code> at
+     * <code>distance</code> from <code>other</code>, in the direction it
+     * currently is, multiplied by <code>weight</code>. The weight is added to
+     * the third sum.
+     */
+    private static void addTarget(float[] x, float[] y, int node, int other, double distance, double weight, double[] sums) {
+        double dx = x[node] - x[other];
+        double dy = y[node] - y[other];
+        double norm = Math.sqrt(dx * dx + dy * dy);
+        if (norm == 0) {
+            sums[0] += weight * x[other];
+            sums[1] += weight * y[other];
+        } else {
+            sums[0] += weight * (x[other] + distance * dx / norm);
+            sums[1] += weight * (y[other] + distance * dy / norm);
+        }
+        sums[2] += weight;
+    }
+
+    private float getAverageEdgeLength(float[] x, float[] y) {
+        double sum = 0;
+        int count = 0;
+        for (int i = 0; i < nodeCount; i++) {
+            for (int j = offsets[i]; j < offsets[i + 1]; j++) {
+                int n = targets[j];
+                if (n != i) {
+                    sum += Math.hypot(x[i] - x[n], y[i] - y[n]);
+                    count++;
+                }
+            }
+        }
+        return count > 0 ? (float) (sum / count) : 0f;
+    }
+
+    private void scale(float[] x, float[] y, float factor) {
+        for (int i = 0; i < nodeCount; i++) {
+            x[i] *= factor;
+            y[i] *= factor;
+        }
+    }
+
+    public LayoutProperty[] getProperties() {
+        List<LayoutProperty> properties = new ArrayList<LayoutProperty>();
+        final String PIVOTMDS = "Pivot MDS";
+
+        try {
+            properties.add(LayoutProperty.createProperty(
+                    this, Integer.class,
+                    NbBundle.getMessage(getClass(), "PivotMDS.pivots.name"),
+                    PIVOTMDS,
+                    "PivotMDS.pivots.name",
+                    NbBundle.getMessage(getClass(), "PivotMDS.pivots.desc"),
+                    "getPivots", "setPivots"));
+            properties.add(LayoutProperty.createProperty(
+                    this, Integer.class,
+                    NbBundle.getMessage(getClass(), "PivotMDS.stressIterations.name"),
+                    PIVOTMDS,
+                    "PivotMDS.stressIterations.name",
+                    NbBundle.getMessage(getClass(), "PivotMDS.stressIterations.desc"),
+                    "getStressIterations", "setStressIterations"));
+            properties.add(LayoutProperty.createProperty(
+                    this, Float.class,
+                    NbBundle.getMessage(getClass(), "PivotMDS.edgeLength.name"),
+                    PIVOTMDS,
+                    "PivotMDS.edgeLength.name",
+                    NbBundle.getMessage(getClass(), "PivotMDS.edgeLength.desc"),
+                    "getEdgeLength", "setEdgeLength"));
+            properties.add(LayoutProperty.createProperty(
+                    this, Integer.class,
+                    NbBundle.getMessage(getClass(), "PivotMDS.threads.name"),
+                    PIVOTMDS,
+                    "PivotMDS.threads.name",
+                    NbBundle.getMessage(getClass(), "PivotMDS.threads.desc"),
+                    "getThreadsCount", "setThreadsCount"));
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        return properties.toArray(new LayoutProperty[0]);
+    }
+
+    public void resetPropertiesValues() {
+        setPivots(50);
+        setStressIterations(0);
+        setEdgeLength(100f);
+        setThreadsCount(Math.max(1, Runtime.getRuntime().availableProcessors()));
+    }
+
+    public Integer getPivots() {
+        return pivots;
+    }
+
+    public void setPivots(Integer pivots) {
+        this.pivots = Math.max(2, pivots);
+    }
+
+    public Integer getStressIterations() {
+        return stressIterations;
+    }
+
+    public void setStressIterations(Integer stressIterations) {
+        this.stressIterations = Math.max(0, stressIterations);
+    }
+
+    public Float getEdgeLength() {
+        return edgeLength;
+    }
+
+    public void setEdgeLength(Float edgeLength) {
+        this.edgeLength = edgeLength;
+    }
+
+    public Integer getThreadsCount() {
+        return threadCount;
+    }
+
+    public void setThreadsCount(Integer threadCount) {
+        this.threadCount = Math.max(1, threadCount);
+    }
+}
@@ -0,0 +1,113 @@
+/*
+Copyright 2008-2010 Gephi
+Website : http://www.gephi.org
+
+This file is part of Gephi.
+
+DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+
+Copyright 2011 Gephi Consortium. All rights reserved.
+
+The contents of this file are subject to the terms of either the GNU
+General Public License Version 3 only ("GPL") or the Common
+Development and Distribution License("CDDL") (collectively, the
+"License"). You may not use this file except in compliance with the
+License. You can obtain a copy of the License at
+http://gephi.org/about/legal/license-notice/
+or /cddl-1.0.txt and /gpl-3.0.txt. See the License for the
+specific language governing permissions and limitations under the
+License.  When distributing the software, include this License Header
+Notice in each file and include the License files at
+/cddl-1.0.txt and /gpl-3.0.txt. If applicable, add the following below the
+License Header, with the fields enclosed by brackets [] replaced by
+your own identifying information:
+"Portions Copyrighted [year] [name of copyright owner]"
+
+If you wish your version of this file to be governed by only the CDDL
+or only the GPL Version 3, indicate your decision by adding
+"[Contributor] elects to include this software in this distribution
+under the [CDDL or GPL Version 3] license." If you do not indicate a
+single choice of license, a recipient has the option to distribute
+your version of this file under either the CDDL, the GPL Version 3 or
+to extend the choice of license to its licensees as provided above.
+However, if you add GPL Version 3 code and therefore, elected the GPL
+Version 3 license, then the option applies only if the new code is
+made subject to such option by the copyright holder.
+
+Contributor(s):
+
+Portions Copyrighted 2011 Gephi Consortium.
+ */
+package org.gephi.layout.plugin;
+
+import java.util.Random;
+import static org.junit.Assert.*;
+
+public class SpatialHashTest {
+
+    private int countInRange(SpatialHash hash, float[] x, float[] y, float px, float py, float range) {
+        int found = 0;
+        for (int cx = hash.getCellX(px - range); cx <= hash.getCellX(px + range); cx++) {
+            for (int cy = hash.getCellY(py - range); cy <= hash.getCellY(py + range); cy++) {
+                int cell = hash.getCell(cx, cy);
+                if (cell != -1) {
+                    for (int i = hash.getCellStart(cell); i < hash.getCellEnd(cell); i++) {
+                        int point = hash.getPoint(i);
+                        if (Math.abs(x[point] - px) <= range && Math.abs(y[point] - py) <= range) {
+                            found++;
+                        }
+                    }
+                }
+            }
+        }
+        return found;
+    }
+
+    @org.junit.Test
+    public void testQueryMatchesBruteForce() {
+        Random random = new Random(7);
+        int count = 1000;
+        float[] x = new float[count];
+        float[] y = new float[count];
+        for (int i = 0; i < count; i++) {
+            x[i] = (random.nextFloat() - 0.5f) * 2000f;
+            y[i] = (random.nextFloat() - 0.5f) * 2000f;
+        }
+        SpatialHash hash = new SpatialHash(50f);
+        hash.build(count, x, y);
+        assertEquals(count, hash.getPointCount());
+        for (int q = 0; q < 100; q++) {
+            float px = (random.nextFloat() - 0.5f) * 2000f;
+            float py = (random.nextFloat() - 0.5f) * 2000f;
+            float range = random.nextFloat() * 120f;
+            int expected = 0;
+            for (int i = 0; i < count; i++) {
+                if (Math.abs(x[i] - px) <= range && Math.abs(y[i] - py) <= range) {
+                    expected++;
+                }
+            }
+            assertEquals(expected, countInRange(hash, x, y, px, py, range));
+        }
+    }
+
+    @org.junit.Test
+    public void testUpdate() {
+        float[] x = new float[]{1f, 12f, -3f};
+        float[] y = new float[]{1f, 1f, -3f};
+        SpatialHash hash = new SpatialHash(10f);
+        assertTrue(hash.update(3, x, y));
+        assertEquals(3, hash.getCellCount());
+
+        //Moves inside the same cell
+        x[0] = 9f;
+        assertFalse(hash.update(3, x, y));
+
+        //Moves to the cell of the second point
+        x[0] = 11f;
+        assertTrue(hash.update(3, x, y));
+        assertEquals(2, hash.getCellCount());
+        int cell = hash.getCell(1, 0);
+        assertEquals(2, hash.getCellEnd(cell) - hash.getCellStart(cell));
+        assertEquals(-1, hash.getCell(0, 0));
+    }
+}
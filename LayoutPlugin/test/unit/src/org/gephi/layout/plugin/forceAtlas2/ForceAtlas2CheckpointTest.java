@@ -0,0 +1,166 @@
+/*
+Copyright 2008-2011 Gephi
+Website : http://www.gephi.org
+
+This file is part of Gephi.
+
+DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+
+Copyright 2011 Gephi Consortium. All rights reserved.
+
+The contents of this file are subject to the terms of either the GNU
+General Public License Version 3 only ("GPL") or the Common
+Development and Distribution License("CDDL") (collectively, the
+"License"). You may not use this file except in compliance with the
+License. You can obtain a copy of the License at
+http://gephi.org/about/legal/license-notice/
+or /cddl-1.0.txt and /gpl-3.0.txt. See the License for the
+specific language governing permissions and limitations under the
+License.  When distributing the software, include this License Header
+Notice in each file and include the License files at
+/cddl-1.0.txt and /gpl-3.0.txt. If applicable, add the following below the
+License Header, with the fields enclosed by brackets [] replaced by
+your own identifying information:
+"Portions Copyrighted [year] [name of copyright owner]"
+
+If you wish your version of this file to be governed by only the CDDL
+or only the GPL Version 3, indicate your decision by adding
+"[Contributor] elects to include this software in this distribution
+under the [CDDL or GPL Version 3] license." If you do not indicate a
+single choice of license, a recipient has the option to distribute
+your version of this file under either the CDDL, the GPL Version 3 or
+to extend the choice of license to its licensees as provided above.
+However, if you add GPL Version 3 code and therefore, elected the GPL
+Version 3 license, then the option applies only if the new code is
+made subject to such option by the copyright holder.
+
+Contributor(s):
+
+Portions Copyrighted 2011 Gephi Consortium.
+ */
+package org.gephi.layout.plugin.forceAtlas2;
+
+import java.io.File;
+import java.util.Random;
+import org.gephi.graph.api.GraphController;
+import org.gephi.graph.api.GraphModel;
+import org.gephi.graph.api.Node;
+import org.gephi.graph.api.NodeData;
+import org.gephi.graph.api.UndirectedGraph;
+import org.gephi.layout.api.LayoutRunStatistics;
+import org.gephi.layout.api.LayoutRunner;
+import org.gephi.project.api.ProjectController;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openide.util.Lookup;
+import static org.junit.Assert.*;
+
+public class ForceAtlas2CheckpointTest {
+
+    private static final int NODE_COUNT = 200;
+    private GraphModel graphModel;
+    private Node[] nodes;
+    private float[] initialPositions;
+
+    @Before
+    public void setUp() {
+        ProjectController projectController = Lookup.getDefault().lookup(ProjectController.class);
+        projectController.newProject();
+        GraphController graphController = Lookup.getDefault().lookup(GraphController.class);
+        graphModel = graphController.getModel();
+
+        Random random = new Random(7);
+        UndirectedGraph graph = graphModel.getUndirectedGraph();
+        nodes = new Node[NODE_COUNT];
+        initialPositions = new float[2 * NODE_COUNT];
+        for (int i = 0; i < NODE_COUNT; i++) {
+            nodes[i] = graphModel.factory().newNode("n" + i);
+            initialPositions[2 * i] = random.nextFloat() * 1000f - 500f;
+            initialPositions[2 * i + 1] = random.nextFloat() * 1000f - 500f;
+            graph.addNode(nodes[i]);
+        }
+        for (int e = 0; e < 3 * NODE_COUNT; e++) {
+            Node source = nodes[random.nextInt(NODE_COUNT)];
+            Node target = nodes[random.nextInt(NODE_COUNT)];
+            if (source != target && graph.getEdge(source, target) == null) {
+                graph.addEdge(graphModel.factory().newEdge(source, target, 1f, false));
+            }
+        }
+    }
+
+    @After
+    public void tearDown() {
+        ProjectController projectController = Lookup.getDefault().lookup(ProjectController.class);
+        projectController.closeCurrentProject();
+        graphModel = null;
+        nodes = null;
+    }
+
+    @Test
+    public void testResumeLegacy() throws Exception {
+        assertResumeIdentical(false);
+    }
+
+    @Test
+    public void testResumeCompactEngine() throws Exception {
+        assertResumeIdentical(true);
+    }
+
+    private void assertResumeIdentical(boolean compactEngine) throws Exception {
+        resetPositions();
+        run(compactEngine, 40, null);
+        float[] uninterrupted = getPositions();
+
+        File file = File.createTempFile("forceatlas2", ".checkpoint");
+        file.delete();
+        try {
+            resetPositions();
+            run(compactEngine, 23, file);
+            assertTrue(file.exists());
+
+            //Positions are restored from the checkpoint
+            resetPositions();
+            LayoutRunStatistics statistics = run(compactEngine, 40, file);
+            assertEquals(23, statistics.getResumedIteration());
+            assertEquals(17, statistics.getIterationCount());
+        } finally {
+            file.delete();
+        }
+        float[] resumed = getPositions();
+        for (int i = 0; i < resumed.length; i++) {
+            assertEquals("coordinate " + i, Float.floatToIntBits(uninterrupted[i]), Float.floatToIntBits(resumed[i]));
+        }
+    }
+
+    private LayoutRunStatistics run(boolean compactEngine, int iterations, File checkpoint) {
+        //A new layout each time, as in a new process
+        ForceAtlas2 layout = new ForceAtlas2(null);
+        layout.setGraphModel(graphModel);
+        layout.setCompactEngine(compactEngine);
+        layout.setBarnesHutOptimize(true);
+        //The legacy path is only deterministic with one thread
+        layout.setThreadsCount(compactEngine ? 4 : 1);
+        LayoutRunner runner = new LayoutRunner(layout);
+        runner.setMaxIterations(iterations);
+        runner.setCheckpoint(checkpoint, 10);
+        return runner.run();
+    }
+
+    private void resetPositions() {
+        for (int i = 0; i < NODE_COUNT; i++) {
+            NodeData nodeData = nodes[i].getNodeData();
+            nodeData.setX(initialPositions[2 * i]);
+            nodeData.setY(initialPositions[2 * i + 1]);
+        }
+    }
+
+    private float[] getPositions() {
+        float[] positions = new float[2 * NODE_COUNT];
+        for (int i = 0; i < NODE_COUNT; i++) {
+            positions[2 * i] = nodes[i].getNodeData().x();
+            positions[2 * i + 1] = nodes[i].getNodeData().y();
+        }
+        return positions;
+    }
+}
@@ -0,0 +1,196 @@
+/*
+Copyright 2008-2011 Gephi
+Website : http://www.gephi.org
+
+This file is part of Gephi.
+
+DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+
+Copyright 2011 Gephi Consortium. All rights reserved.
+
+The contents of this file are subject to the terms of either the GNU
+General Public License Version 3 only ("GPL") or the Common
+Development and Distribution License("CDDL") (collectively, the
+"License"). You may not use this file except in compliance with the
+License. You can obtain a copy of the License at
+http://gephi.org/about/legal/license-notice/
+or /cddl-1.0.txt and /gpl-3.0.txt. See the License for the
+specific language governing permissions and limitations under the
+License.  When distributing the software, include this License Header
+Notice in each file and include the License files at
+/cddl-1.0.txt and /gpl-3.0.txt. If applicable, add the following below the
+License Header, with the fields enclosed by brackets [] replaced by
+your own identifying information:
+"Portions Copyrighted [year] [name of copyright owner]"
+
+If you wish your version of this file to be governed by only the CDDL
+or only the GPL Version 3, indicate your decision by adding
+"[Contributor] elects to include this software in this distribution
+under the [CDDL or GPL Version 3] license." If you do not indicate a
+single choice of license, a recipient has the option to distribute
+your version of this file under either the CDDL, the GPL Version 3 or
+to extend the choice of license to its licensees as provided above.
+However, if you add GPL Version 3 code and therefore, elected the GPL
+Version 3 license, then the option applies only if the new code is
+made subject to such option by the copyright holder.
+
+Contributor(s):
+
+Portions Copyrighted 2011 Gephi Consortium.
+ */
+package org.gephi.layout.plugin.forceAtlas2;
+
+import java.util.Random;
+import org.gephi.graph.api.Edge;
+import org.gephi.graph.api.GraphController;
+import org.gephi.graph.api.GraphModel;
+import org.gephi.graph.api.Node;
+import org.gephi.graph.api.NodeData;
+import org.gephi.graph.api.UndirectedGraph;
+import org.gephi.project.api.ProjectController;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openide.util.Lookup;
+import static org.junit.Assert.*;
+
+public class ForceAtlas2EngineTest {
+
+    private static final int NODE_COUNT = 300;
+    private static final int EDGE_COUNT = 900;
+    private GraphModel graphModel;
+    private Node[] nodes;
+    private float[] initialPositions;
+
+    @Before
+    public void setUp() {
+        ProjectController projectController = Lookup.getDefault().lookup(ProjectController.class);
+        projectController.newProject();
+        GraphController graphController = Lookup.getDefault().lookup(GraphController.class);
+        graphModel = graphController.getModel();
+
+        //Random graph, more nodes than a chunk so that workers share the passes
+        Random random = new Random(42);
+        UndirectedGraph graph = graphModel.getUndirectedGraph();
+        nodes = new Node[NODE_COUNT];
+        initialPositions = new float[2 * NODE_COUNT];
+        for (int i = 0; i < NODE_COUNT; i++) {
+            nodes[i] = graphModel.factory().newNode();
+            initialPositions[2 * i] = random.nextFloat() * 1000f - 500f;
+            initialPositions[2 * i + 1] = random.nextFloat() * 1000f - 500f;
+            graph.addNode(nodes[i]);
+        }
+        for (int e = 0; e < EDGE_COUNT; e++) {
+            Node source = nodes[random.nextInt(NODE_COUNT)];
+            Node target = nodes[random.nextInt(NODE_COUNT)];
+            if (source != target && graph.getEdge(source, target) == null) {
+                graph.addEdge(graphModel.factory().newEdge(source, target, 1f + random.nextInt(3), false));
+            }
+        }
+    }
+
+    @After
+    public void tearDown() {
+        ProjectController projectController = Lookup.getDefault().lookup(ProjectController.class);
+        projectController.closeCurrentProject();
+        graphModel = null;
+        nodes = null;
+    }
+
+    @Test
+    public void testThreadCountIndependence() {
+        for (boolean barnesHut : new boolean[]{false, true}) {
+            float[] reference = run(true, barnesHut, 1, 30);
+            for (int threads : new int[]{2, 3, 8}) {
+                float[] positions = run(true, barnesHut, threads, 30);
+                for (int i = 0; i < positions.length; i++) {
+                    assertEquals("barnesHut " + barnesHut + " threads " + threads + " coordinate " + i,
+                            Float.floatToIntBits(reference[i]), Float.floatToIntBits(positions[i]));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testSameAsLegacy() {
+        //Without Barnes Hut both paths compute the same forces, up to summation
+        //order. The legacy path is only deterministic with one thread, its
+        //repulsion writes both nodes of each pair.
+        float[] legacy = run(false, false, 1, 10);
+        float[] compact = run(true, false, 2, 10);
+        double extent = 0;
+        for (float p : legacy) {
+            extent = Math.max(extent, Math.abs(p));
+        }
+        for (int i = 0; i < legacy.length; i++) {
+            assertEquals("coordinate " + i, legacy[i], compact[i], 1e-3 * extent);
+        }
+    }
+
+    @Test
+    public void testWeightChange() {
+        //Weights changed between passes must be used by the next pass, like
+        //the legacy path which reads them at each pass
+        Edge[] edges = graphModel.getUndirectedGraph().getEdges().toArray();
+        float[] legacy = runWithWeightChange(false, edges);
+        float[] compact = runWithWeightChange(true, edges);
+        double extent = 0;
+        for (float p : legacy) {
+            extent = Math.max(extent, Math.abs(p));
+        }
+        for (int i = 0; i < legacy.length; i++) {
+            assertEquals("coordinate " + i, legacy[i], compact[i], 1e-3 * extent);
+        }
+    }
+
+    private float[] runWithWeightChange(boolean compactEngine, Edge[] edges) {
+        for (int e = 0; e < edges.length; e++) {
+            edges[e].setWeight(1f + e % 3);
+        }
+        ForceAtlas2 layout = start(compactEngine, false, 1);
+        for (int i = 0; i < 5; i++) {
+            layout.goAlgo();
+        }
+        for (int e = 0; e < edges.length; e++) {
+            edges[e].setWeight(10f * (1 + e % 5));
+        }
+        for (int i = 0; i < 5; i++) {
+            layout.goAlgo();
+        }
+        layout.endAlgo();
+        return positions();
+    }
+
+    private float[] run(boolean compactEngine, boolean barnesHut, int threads, int iterations) {
+        ForceAtlas2 layout = start(compactEngine, barnesHut, threads);
+        for (int i = 0; i < iterations; i++) {
+            layout.goAlgo();
+        }
+        layout.endAlgo();
+        return positions();
+    }
+
+    private ForceAtlas2 start(boolean compactEngine, boolean barnesHut, int threads) {
+        for (int i = 0; i < NODE_COUNT; i++) {
+            NodeData nodeData = nodes[i].getNodeData();
+            nodeData.setX(initialPositions[2 * i]);
+            nodeData.setY(initialPositions[2 * i + 1]);
+        }
+        ForceAtlas2 layout = new ForceAtlas2(null);
+        layout.setGraphModel(graphModel);
+        layout.setCompactEngine(compactEngine);
+        layout.setBarnesHutOptimize(barnesHut);
+        layout.setThreadsCount(threads);
+        layout.initAlgo();
+        return layout;
+    }
+
+    private float[] positions() {
+        float[] positions = new float[2 * NODE_COUNT];
+        for (int i = 0; i < NODE_COUNT; i++) {
+            positions[2 * i] = nodes[i].getNodeData().x();
+            positions[2 * i + 1] = nodes[i].getNodeData().y();
+        }
+        return positions;
+    }
+}
@@ -0,0 +1,146 @@
+/*
+Copyright 2008-2011 Gephi
+Website : http://www.gephi.org
+
+This file is part of Gephi.
+
+DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+
+Copyright 2011 Gephi Consortium. All rights reserved.
+
+The contents of this file are subject to the terms of either the GNU
+General Public License Version 3 only ("GPL") or the Common
+Development and Distribution License("CDDL") (collectively, the
+"License"). You may not use this file except in compliance with the
+License. You can obtain a copy of the License at
+http://gephi.org/about/legal/license-notice/
+or /cddl-1.0.txt and /gpl-3.0.txt. See the License for the
+specific language governing permissions and limitations under the
+License.  When distributing the software, include this License Header
+Notice in each file and include the License files at
+/cddl-1.0.txt and /gpl-3.0.txt. If applicable, add the following below the
+License Header, with the fields enclosed by brackets [] replaced by
+your own identifying information:
+"Portions Copyrighted [year] [name of copyright owner]"
+
+If you wish your version of this file to be governed by only the CDDL
+or only the GPL Version 3, indicate your decision by adding
+"[Contributor] elects to include this software in this distribution
+under the [CDDL or GPL Version 3] license." If you do not indicate a
+single choice of license, a recipient has the option to distribute
+your version of this file under either the CDDL, the GPL Version 3 or
+to extend the choice of license to its licensees as provided above.
+However, if you add GPL Version 3 code and therefore, elected the GPL
+Version 3 license, then the option applies only if the new code is
+made subject to such option by the copyright holder.
+
+Contributor(s):
+
+Portions Copyrighted 2011 Gephi Consortium.
+ */
+package org.gephi.layout.plugin.forceAtlas2;
+
+import static org.junit.Assert.*;
+
+public class RegionTreeTest {
+
+    public static final double eps = 1e-6;
+
+    public void checkMassCenterConservation(RegionTree tree, int region) {
+        if (tree.getNode(region) != -1) {
+            return;
+        }
+        double x = 0, y = 0, mass = 0;
+        int first = tree.getFirstChild(region);
+        for (int c = first; c < first + tree.getChildCount(region); c++) {
+            x += tree.getMassCenterX(c) * tree.getMass(c);
+            y += tree.getMassCenterY(c) * tree.getMass(c);
+            mass += tree.getMass(c);
+            checkMassCenterConservation(tree, c);
+        }
+        assertEquals(mass, tree.getMass(region), eps);
+        assertEquals(x / mass, tree.getMassCenterX(region), eps);
+        assertEquals(y / mass, tree.getMassCenterY(region), eps);
+    }
+
+    public int countLeaves(RegionTree tree, int region) {
+        if (tree.getNode(region) != -1) {
+            return 1;
+        }
+        int leaves = 0;
+        int first = tree.getFirstChild(region);
+        for (int c = first; c < first + tree.getChildCount(region); c++) {
+            leaves += countLeaves(tree, c);
+        }
+        return leaves;
+    }
+
+    @org.junit.Test
+    public void testSingleNode() {
+        RegionTree tree = new RegionTree();
+        tree.build(1, new float[]{3f}, new float[]{4f}, new double[]{2.});
+        assertEquals(1, tree.getRegionCount());
+        assertEquals(0, tree.getNode(0));
+        assertEquals(2., tree.getMass(0), eps);
+        assertEquals(3., tree.getMassCenterX(0), eps);
+        assertEquals(4., tree.getMassCenterY(0), eps);
+    }
+
+    @org.junit.Test
+    public void testMassCenterConservation() {
+        java.util.Random random = new java.util.Random(42);
+        int count = 500;
+        float[] x = new float[count];
+        float[] y = new float[count];
+        double[] mass = new double[count];
+        for (int i = 0; i < count; i++) {
+            x[i] = random.nextFloat() * 1000f;
+            y[i] = random.nextFloat() * 1000f;
+            mass[i] = 1 + random.nextInt(10);
+        }
+        RegionTree tree = new RegionTree();
+        tree.build(count, x, y, mass);
+        assertEquals(count, countLeaves(tree, 0));
+        checkMassCenterConservation(tree, 0);
+    }
+
+    @org.junit.Test
+    public void testSamePosition() {
+        int count = 10;
+        float[] x = new float[count];
+        float[] y = new float[count];
+        double[] mass = new double[count];
+        java.util.Arrays.fill(mass, 1.);
+        RegionTree tree = new RegionTree();
+        tree.build(count, x, y, mass);
+        assertEquals(count, countLeaves(tree, 0));
+        assertEquals(count, tree.getMass(0), eps);
+    }
+
+    @org.junit.Test
+    public void testOctree() {
+        java.util.Random random = new java.util.Random(42);
+        int count = 500;
+        float[] x = new float[count];
+        float[] y = new float[count];
+        float[] z = new float[count];
+        double[] mass = new double[count];
+        for (int i = 0; i < count; i++) {
+            x[i] = random.nextFloat() * 1000f;
+            y[i] = random.nextFloat() * 1000f;
+            z[i] = random.nextFloat() * 1000f;
+            mass[i] = 1 + random.nextInt(10);
+        }
+        RegionTree tree = new RegionTree();
+        tree.build(count, x, y, z, mass);
+        assertEquals(count, countLeaves(tree, 0));
+        assertTrue(tree.getChildCount(0) > 4);
+        checkMassCenterConservation(tree, 0);
+
+        double massSumZ = 0;
+        for (int i = 0; i < count; i++) {
+            massSumZ += z[i] * mass[i];
+        }
+        assertEquals(massSumZ / tree.getMass(0), tree.getMassCenterZ(0), 1e-3);
+    }
+}
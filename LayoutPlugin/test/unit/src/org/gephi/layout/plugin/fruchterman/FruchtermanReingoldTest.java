@@ -0,0 +1,163 @@
+/*
+Copyright 2008-2010 Gephi
+Website : http://www.gephi.org
+
+This file is part of Gephi.
+
+DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+
+Copyright 2011 Gephi Consortium. All rights reserved.
+
+The contents of this file are subject to the terms of either the GNU
+General Public License Version 3 only ("GPL") or the Common
+Development and Distribution License("CDDL") (collectively, the
+"License"). You may not use this file except in compliance with the
+License. You can obtain a copy of the License at
+http://gephi.org/about/legal/license-notice/
+or /cddl-1.0.txt and /gpl-3.0.txt. See the License for the
+specific language governing permissions and limitations under the
+License.  When distributing the software, include this License Header
+Notice in each file and include the License files at
+/cddl-1.0.txt and /gpl-3.0.txt. If applicable, add the following below the
+License Header, with the fields enclosed by brackets [] replaced by
+your own identifying information:
+"Portions Copyrighted [year] [name of copyright owner]"
+
+If you wish your version of this file to be governed by only the CDDL
+or only the GPL Version 3, indicate your decision by adding
+"[Contributor] elects to include this software in this distribution
+under the [CDDL or GPL Version 3] license." If you do not indicate a
+single choice of license, a recipient has the option to distribute
+your version of this file under either the CDDL, the GPL Version 3 or
+to extend the choice of license to its licensees as provided above.
+However, if you add GPL Version 3 code and therefore, elected the GPL
+Version 3 license, then the option applies only if the new code is
+made subject to such option by the copyright holder.
+
+Contributor(s):
+
+Portions Copyrighted 2011 Gephi Consortium.
+*/
+package org.gephi.layout.plugin.fruchterman;
+
+import java.util.Random;
+import org.gephi.graph.api.Spatial;
+import org.gephi.layout.plugin.force.ForceVector;
+import org.gephi.layout.plugin.force.quadtree.BarnesHut;
+import org.gephi.layout.plugin.force.quadtree.QuadTree;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class FruchtermanReingoldTest {
+
+    private static final int NODE_COUNT = 200;
+    private static final int MAX_LEVEL = 10;
+
+    @Test
+    public void testBarnesHutRepulsion() {
+        Point[] points = createPoints(NODE_COUNT, 7);
+        QuadTree tree = buildTree(points);
+        FruchtermanReingold.RepulsionForce force = new FruchtermanReingold.RepulsionForce(10f);
+
+        //A cell is approximated when its size over its distance is below theta,
+        //the error of its monopole is in the order of theta squared
+        for (float theta : new float[]{0.25f, 0.5f}) {
+            BarnesHut barnesHut = new BarnesHut(force);
+            barnesHut.setTheta(theta);
+            for (Point p : points) {
+                double[] exact = new double[2];
+                double magnitudes = 0;
+                for (Point q : points) {
+                    if (p != q) {
+                        float dx = p.x - q.x;
+                        float dy = p.y - q.y;
+                        float distance = (float) Math.sqrt(dx * dx + dy * dy);
+                        ForceVector f = force.calculateForce(p, q, distance);
+                        exact[0] += f.x();
+                        exact[1] += f.y();
+                        magnitudes += Math.sqrt(f.x() * f.x() + f.y() * f.y());
+                    }
+                }
+                ForceVector approximate = barnesHut.calculateForce(p, tree);
+                double error = Math.sqrt((approximate.x() - exact[0]) * (approximate.x() - exact[0])
+                        + (approximate.y() - exact[1]) * (approximate.y() - exact[1]));
+                assertTrue("theta " + theta + " error " + error, error <= theta * theta * magnitudes);
+            }
+        }
+    }
+
+    @Test
+    public void testBarnesHutExactWithoutApproximation() {
+        Point[] points = createPoints(50, 3);
+        QuadTree tree = buildTree(points);
+        FruchtermanReingold.RepulsionForce force = new FruchtermanReingold.RepulsionForce(10f);
+        BarnesHut barnesHut = new BarnesHut(force);
+        barnesHut.setTheta(0f);
+        for (Point p : points) {
+            float fx = 0;
+            float fy = 0;
+            for (Point q : points) {
+                if (p != q) {
+                    float dx = p.x - q.x;
+                    float dy = p.y - q.y;
+                    ForceVector f = force.calculateForce(p, q, (float) Math.sqrt(dx * dx + dy * dy));
+                    fx += f.x();
+                    fy += f.y();
+                }
+            }
+            ForceVector approximate = barnesHut.calculateForce(p, tree);
+            assertEquals(fx, approximate.x(), 1e-3 * Math.max(1, Math.abs(fx)));
+            assertEquals(fy, approximate.y(), 1e-3 * Math.max(1, Math.abs(fy)));
+        }
+    }
+
+    private static Point[] createPoints(int count, long seed) {
+        Random random = new Random(seed);
+        Point[] points = new Point[count];
+        for (int i = 0; i < count; i++) {
+            points[i] = new Point(random.nextFloat() * 1000f, random.nextFloat() * 1000f);
+        }
+        return points;
+    }
+
+    private static QuadTree buildTree(Point[] points) {
+        float minX = Float.POSITIVE_INFINITY;
+        float maxX = Float.NEGATIVE_INFINITY;
+        float minY = Float.POSITIVE_INFINITY;
+        float maxY = Float.NEGATIVE_INFINITY;
+        for (Point p : points) {
+            minX = Math.min(minX, p.x);
+            maxX = Math.max(maxX, p.x);
+            minY = Math.min(minY, p.y);
+            maxY = Math.max(maxY, p.y);
+        }
+        QuadTree tree = new QuadTree(minX, minY, Math.max(maxX - minX, maxY - minY), MAX_LEVEL);
+        for (Point p : points) {
+            tree.addNode(p);
+        }
+        return tree;
+    }
+
+    private static class Point implements Spatial {
+
+        private final float x;
+        private final float y;
+
+        public Point(float x, float y) {
+            this.x = x;
+            this.y = y;
+        }
+
+        public float x() {
+            return x;
+        }
+
+        public float y() {
+            return y;
+        }
+
+        public float z() {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,131 @@
+/*
+Copyright 2008-2010 Gephi
+Website : http://www.gephi.org
+
+This file is part of Gephi.
+
+DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+
+Copyright 2011 Gephi Consortium. All rights reserved.
+
+The contents of this file are subject to the terms of either the GNU
+General Public License Version 3 only ("GPL") or the Common
+Development and Distribution License("CDDL") (collectively, the
+"License"). You may not use this file except in compliance with the
+License. You can obtain a copy of the License at
+http://gephi.org/about/legal/license-notice/
+or /cddl-1.0.txt and /gpl-3.0.txt. See the License for the
+specific language governing permissions and limitations under the
+License.  When distributing the software, include this License Header
+Notice in each file and include the License files at
+/cddl-1.0.txt and /gpl-3.0.txt. If applicable, add the following below the
+License Header, with the fields enclosed by brackets [] replaced by
+your own identifying information:
+"Portions Copyrighted [year] [name of copyright owner]"
+
+If you wish your version of this file to be governed by only the CDDL
+or only the GPL Version 3, indicate your decision by adding
+"[Contributor] elects to include this software in this distribution
+under the [CDDL or GPL Version 3] license." If you do not indicate a
+single choice of license, a recipient has the option to distribute
+your version of this file under either the CDDL, the GPL Version 3 or
+to extend the choice of license to its licensees as provided above.
+However, if you add GPL Version 3 code and therefore, elected the GPL
+Version 3 license, then the option applies only if the new code is
+made subject to such option by the copyright holder.
+
+Contributor(s):
+
+Portions Copyrighted 2011 Gephi Consortium.
+*/
+package org.gephi.layout.plugin.multilevel;
+
+import org.gephi.layout.plugin.ChunkRunner;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class CoarseGraphTest {
+
+    private static CoarseGraph createGraph(int nodeCount, int[][] edges, float[] edgeWeights) {
+        int[] degrees = new int[nodeCount];
+        for (int[] e : edges) {
+            degrees[e[0]]++;
+            degrees[e[1]]++;
+        }
+        int[] offsets = new int[nodeCount + 1];
+        for (int i = 0; i < nodeCount; i++) {
+            offsets[i + 1] = offsets[i] + degrees[i];
+        }
+        int[] cursors = new int[nodeCount];
+        int[] targets = new int[offsets[nodeCount]];
+        float[] weights = new float[offsets[nodeCount]];
+        for (int k = 0; k < edges.length; k++) {
+            int a = edges[k][0];
+            int b = edges[k][1];
+            targets[offsets[a] + cursors[a]] = b;
+            weights[offsets[a] + cursors[a]++] = edgeWeights[k];
+            targets[offsets[b] + cursors[b]] = a;
+            weights[offsets[b] + cursors[b]++] = edgeWeights[k];
+        }
+        int[] nodeWeights = new int[nodeCount];
+        java.util.Arrays.fill(nodeWeights, 1);
+        return new CoarseGraph(nodeCount, offsets, targets, weights, nodeWeights);
+    }
+
+    @Test
+    public void testHeavyEdgeMatching() {
+        CoarseGraph path = createGraph(4, new int[][]{{0, 1}, {1, 2}, {2, 3}}, new float[]{1f, 5f, 1f});
+        CoarseGraph coarse = path.coarsen(new ChunkRunner(2));
+
+        assertEquals(3, coarse.getNodeCount());
+        assertArrayEquals(new int[]{0, 1, 1, 2}, path.getCoarseIndex());
+        assertArrayEquals(new int[]{1, 2, 1}, coarse.getNodeWeights());
+        assertArrayEquals(new int[]{0, 1, 3, 4}, coarse.getOffsets());
+        assertArrayEquals(new int[]{1, 0, 2, 1}, coarse.getTargets());
+    }
+
+    @Test
+    public void testParallelEdgesMerged() {
+        CoarseGraph clique = createGraph(4, new int[][]{{0, 1}, {0, 2}, {0, 3}, {1, 2}, {1, 3}, {2, 3}},
+                new float[]{1f, 1f, 1f, 1f, 1f, 1f});
+        CoarseGraph coarse = clique.coarsen(new ChunkRunner(1));
+
+        assertEquals(2, coarse.getNodeCount());
+        int[] coarseIndex = clique.getCoarseIndex();
+        assertEquals(0, coarseIndex[0]);
+        assertEquals(2, coarseIndex[0] + coarseIndex[1] + coarseIndex[2] + coarseIndex[3]);
+        assertArrayEquals(new int[]{1, 0}, coarse.getTargets());
+        assertEquals(4f, coarse.getWeights()[0], 0f);
+        assertEquals(4f, coarse.getWeights()[1], 0f);
+    }
+
+    @Test
+    public void testLargeGraph() {
+        //Ring with chords, coarsened until small
+        int nodeCount = 10000;
+        int[][] edges = new int[2 * nodeCount][];
+        float[] weights = new float[2 * nodeCount];
+        for (int i = 0; i < nodeCount; i++) {
+            edges[2 * i] = new int[]{i, (i + 1) % nodeCount};
+            edges[2 * i + 1] = new int[]{i, (i + 7) % nodeCount};
+            weights[2 * i] = 1f;
+            weights[2 * i + 1] = 1f;
+        }
+        CoarseGraph graph = createGraph(nodeCount, edges, weights);
+        CoarseGraph single = graph.coarsen(new ChunkRunner(1));
+        CoarseGraph multi = graph.coarsen(new ChunkRunner(4));
+        assertArrayEquals(single.getTargets(), multi.getTargets());
+
+        CoarseGraph level = graph;
+        while (level.getNodeCount() > 10) {
+            CoarseGraph coarse = level.coarsen(new ChunkRunner(4));
+            assertTrue(coarse.getNodeCount() < level.getNodeCount() * 0.75);
+            int total = 0;
+            for (int w : coarse.getNodeWeights()) {
+                total += w;
+            }
+            assertEquals(nodeCount, total);
+            level = coarse;
+        }
+    }
+}
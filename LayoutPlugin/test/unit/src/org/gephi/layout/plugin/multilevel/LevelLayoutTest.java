@@ -0,0 +1,93 @@
+/*
+Copyright 2008-2010 Gephi
+Website : http://www.gephi.org
+
+This file is part of Gephi.
+
+DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+
+Copyright 2011 Gephi Consortium. All rights reserved.
+
+The contents of this file are subject to the terms of either the GNU
+General Public License Version 3 only ("GPL") or the Common
+Development and Distribution License("CDDL") (collectively, the
+"License"). You may not use this file except in compliance with the
+License. You can obtain a copy of the License at
+http://gephi.org/about/legal/license-notice/
+or /cddl-1.0.txt and /gpl-3.0.txt. See the License for the
+specific language governing permissions and limitations under the
+License.  When distributing the software, include this License Header
+Notice in each file and include the License files at
+/cddl-1.0.txt and /gpl-3.0.txt. If applicable, add the following below the
+License Header, with the fields enclosed by brackets [] replaced by
+your own identifying information:
+"Portions Copyrighted [year] [name of copyright owner]"
+
+If you wish your version of this file to be governed by only the CDDL
+or only the GPL Version 3, indicate your decision by adding
+"[Contributor] elects to include this software in this distribution
+under the [CDDL or GPL Version 3] license." If you do not indicate a
+single choice of license, a recipient has the option to distribute
+your version of this file under either the CDDL, the GPL Version 3 or
+to extend the choice of license to its licensees as provided above.
+However, if you add GPL Version 3 code and therefore, elected the GPL
+Version 3 license, then the option applies only if the new code is
+made subject to such option by the copyright holder.
+
+Contributor(s):
+
+Portions Copyrighted 2011 Gephi Consortium.
+*/
+package org.gephi.layout.plugin.multilevel;
+
+import org.gephi.layout.plugin.ChunkRunner;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class LevelLayoutTest {
+
+    private static final float OPTIMAL_DISTANCE = 100f;
+
+    private static CoarseGraph createPair(float edgeWeight, int nodeWeight) {
+        return new CoarseGraph(2, new int[]{0, 1, 2}, new int[]{1, 0},
+                new float[]{edgeWeight, edgeWeight}, new int[]{nodeWeight, nodeWeight});
+    }
+
+    private static float layoutPair(CoarseGraph pair) {
+        float[] x = {0f, 10f};
+        float[] y = {0f, 0f};
+        LevelLayout layout = new LevelLayout(pair, x, y, OPTIMAL_DISTANCE, 0.97f, 1.2f, new ChunkRunner(1));
+        for (int i = 0; i < 1000 && !layout.isConverged(); i++) {
+            layout.iterate();
+        }
+        assertTrue(layout.isConverged());
+        return Math.abs(x[1] - x[0]);
+    }
+
+    @Test
+    public void testZeroEnergyConverges() {
+        CoarseGraph pair = new CoarseGraph(2, new int[]{0, 0, 0}, new int[0], new float[0], new int[]{1, 1});
+        float[] x = {5f, 5f};
+        float[] y = {5f, 5f};
+        LevelLayout layout = new LevelLayout(pair, x, y, OPTIMAL_DISTANCE, 0.97f, 1.2f, new ChunkRunner(1));
+        layout.iterate();
+
+        assertEquals(0.0, layout.getEnergy(), 0.0);
+        assertTrue(layout.isConverged());
+    }
+
+    @Test
+    public void testMergedWeights() {
+        //The spring balances the repulsion when w * d^3 = 0.2 * m^2 * K^3
+        float single = layoutPair(createPair(1f, 1));
+        assertEquals(OPTIMAL_DISTANCE * Math.cbrt(0.2), single, 0.05 * single);
+
+        //Two merged pairs joined by four edges are at the same distance
+        float merged = layoutPair(createPair(4f, 2));
+        assertEquals(single, merged, 0.05 * single);
+
+        //Heavier nodes with a single edge are pushed further apart
+        float heavy = layoutPair(createPair(1f, 2));
+        assertEquals(OPTIMAL_DISTANCE * Math.cbrt(0.8), heavy, 0.05 * heavy);
+    }
+}
@@ -0,0 +1,181 @@
+/*
+Copyright 2008-2010 Gephi
+Website : http://www.gephi.org
+
+This file is part of Gephi.
+
+DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+
+Copyright 2011 Gephi Consortium. All rights reserved.
+
+The contents of this file are subject to the terms of either the GNU
+General Public License Version 3 only ("GPL") or the Common
+Development and Distribution License("CDDL") (collectively, the
+"License"). You may not use this file except in compliance with the
+License. You can obtain a copy of the License at
+http://gephi.org/about/legal/license-notice/
+or /cddl-1.0.txt and /gpl-3.0.txt. See the License for the
+specific language governing permissions and limitations under the
+License.  When distributing the software, include this License Header
+Notice in each file and include the License files at
+/cddl-1.0.txt and /gpl-3.0.txt. If applicable, add the following below the
+License Header, with the fields enclosed by brackets [] replaced by
+your own identifying information:
+"Portions Copyrighted [year] [name of copyright owner]"
+
+If you wish your version of this file to be governed by only the CDDL
+or only the GPL Version 3, indicate your decision by adding
+"[Contributor] elects to include this software in this distribution
+under the [CDDL or GPL Version 3] license." If you do not indicate a
+single choice of license, a recipient has the option to distribute
+your version of this file under either the CDDL, the GPL Version 3 or
+to extend the choice of license to its licensees as provided above.
+However, if you add GPL Version 3 code and therefore, elected the GPL
+Version 3 license, then the option applies only if the new code is
+made subject to such option by the copyright holder.
+
+Contributor(s):
+
+Portions Copyrighted 2011 Gephi Consortium.
+*/
+package org.gephi.layout.plugin.pivotMds;
+
+import org.gephi.graph.api.GraphController;
+import org.gephi.graph.api.GraphModel;
+import org.gephi.graph.api.Node;
+import org.gephi.graph.api.NodeData;
+import org.gephi.graph.api.UndirectedGraph;
+import org.gephi.project.api.ProjectController;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openide.util.Lookup;
+import static org.junit.Assert.*;
+
+public class PivotMDSLayoutTest {
+
+    private GraphModel graphModel;
+
+    @Before
+    public void setUp() {
+        ProjectController projectController = Lookup.getDefault().lookup(ProjectController.class);
+        projectController.newProject();
+        GraphController graphController = Lookup.getDefault().lookup(GraphController.class);
+        graphModel = graphController.getModel();
+    }
+
+    @After
+    public void tearDown() {
+        ProjectController projectController = Lookup.getDefault().lookup(ProjectController.class);
+        projectController.closeCurrentProject();
+        graphModel = null;
+    }
+
+    private Node[] createPath(int size) {
+        UndirectedGraph graph = graphModel.getUndirectedGraph();
+        Node[] nodes = new Node[size];
+        for (int i = 0; i < size; i++) {
+            nodes[i] = graphModel.factory().newNode();
+            graph.addNode(nodes[i]);
+        }
+        for (int i = 1; i < size; i++) {
+            graph.addEdge(graphModel.factory().newEdge(nodes[i - 1], nodes[i], 1f, false));
+        }
+        return nodes;
+    }
+
+    private void runLayout(int pivots, int stressIterations) {
+        PivotMDSLayout layout = new PivotMDSLayout(null);
+        layout.setGraphModel(graphModel);
+        layout.resetPropertiesValues();
+        layout.setPivots(pivots);
+        layout.setStressIterations(stressIterations);
+        layout.setThreadsCount(2);
+        layout.initAlgo();
+        layout.goAlgo();
+        assertFalse(layout.canAlgo());
+        layout.endAlgo();
+    }
+
+    private static double distance(Node a, Node b) {
+        NodeData da = a.getNodeData();
+        NodeData db = b.getNodeData();
+        double dx = da.x() - db.x();
+        double dy = da.y() - db.y();
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+
+    private static void assertPlaced(Node... nodes) {
+        for (Node n : nodes) {
+            assertFalse(Float.isNaN(n.getNodeData().x()) || Float.isInfinite(n.getNodeData().x()));
+            assertFalse(Float.isNaN(n.getNodeData().y()) || Float.isInfinite(n.getNodeData().y()));
+        }
+        for (int i = 0; i < nodes.length; i++) {
+            for (int j = i + 1; j < nodes.length; j++) {
+                assertTrue("nodes " + i + " and " + j + " overlap", distance(nodes[i], nodes[j]) > 1e-3);
+            }
+        }
+    }
+
+    private static void assertDistanceOrder(Node[] path) {
+        for (int i = 0; i < path.length; i++) {
+            for (int j = i + 2; j < path.length; j++) {
+                assertTrue("path " + i + " to " + j,
+                        distance(path[i], path[j]) > distance(path[i], path[j - 1]));
+            }
+        }
+    }
+
+    @Test
+    public void testPathDistanceOrder() {
+        Node[] path = createPath(30);
+        runLayout(5, 0);
+
+        assertPlaced(path);
+        assertDistanceOrder(path);
+        assertEquals(100.0, distance(path[0], path[1]), 10.0);
+    }
+
+    @Test
+    public void testPathDistanceOrderWithStress() {
+        Node[] path = createPath(30);
+        runLayout(5, 20);
+
+        assertPlaced(path);
+        assertDistanceOrder(path);
+    }
+
+    @Test
+    public void testDisconnectedComponents() {
+        Node[] first = createPath(10);
+        Node[] second = createPath(6);
+        Node single = graphModel.factory().newNode();
+        graphModel.getUndirectedGraph().addNode(single);
+        runLayout(8, 0);
+
+        Node[] all = new Node[first.length + second.length + 1];
+        System.arraycopy(first, 0, all, 0, first.length);
+        System.arraycopy(second, 0, all, first.length, second.length);
+        all[all.length - 1] = single;
+        assertPlaced(all);
+        assertDistanceOrder(first);
+    }
+
+    @Test
+    public void testFewerNodesThanPivots() {
+        Node[] path = createPath(4);
+        runLayout(50, 0);
+
+        assertPlaced(path);
+        assertDistanceOrder(path);
+    }
+
+    @Test
+    public void testTwoNodes() {
+        Node[] pair = createPath(2);
+        runLayout(50, 5);
+
+        assertPlaced(pair);
+        assertEquals(100.0, distance(pair[0], pair[1]), 1.0);
+    }
+}
@@ -0,0 +1,176 @@
+/*
+Copyright 2008-2010 Gephi
+Website : http://www.gephi.org
+
+This file is part of Gephi.
+
+DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+
+Copyright 2011 Gephi Consortium. All rights reserved.
+
+The contents of this file are subject to the terms of either the GNU
+General Public License Version 3 only ("GPL") or the Common
+Development and Distribution License("CDDL") (collectively, the
+"License"). You may not use this file except in compliance with the
+License. You can obtain a copy of the License at
+http://gephi.org/about/legal/license-notice/
+or /cddl-1.0.txt and /gpl-3.0.txt. See the License for the
+specific language governing permissions and limitations under the
+License.  When distributing the software, include this License Header
+Notice in each file and include the License files at
+/cddl-1.0.txt and /gpl-3.0.txt. If applicable, add the following below the
+License Header, with the fields enclosed by brackets [] replaced by
+your own identifying information:
+"Portions Copyrighted [year] [name of copyright owner]"
+
+If you wish your version of this file to be governed by only the CDDL
+or only the GPL Version 3, indicate your decision by adding
+"[Contributor] elects to include this software in this distribution
+under the [CDDL or GPL Version 3] license." If you do not indicate a
+single choice of license, a recipient has the option to distribute
+your version of this file under either the CDDL, the GPL Version 3 or
+to extend the choice of license to its licensees as provided above.
+However, if you add GPL Version 3 code and therefore, elected the GPL
+Version 3 license, then the option applies only if the new code is
+made subject to such option by the copyright holder.
+
+Contributor(s):
+
+Portions Copyrighted 2011 Gephi Consortium.
+*/
+package org.gephi.layout.plugin.quadtree;
+
+import java.util.Random;
+import org.gephi.layout.plugin.force.quadtree.IncrementalQuadTree;
+import static org.junit.Assert.*;
+
+public class IncrementalQuadTreeTest {
+
+    public static final double eps = 1e-3;
+
+    public void checkMassCenterConservation(IncrementalQuadTree tree, int cell) {
+        int first = tree.getFirstChild(cell);
+        if (first == -1) {
+            return;
+        }
+        double x = 0, y = 0, z = 0;
+        int totalMass = 0;
+        for (int child = first; child < first + tree.getChildCount(); child++) {
+            x += tree.getMassCenterX(child) * tree.getMass(child);
+            y += tree.getMassCenterY(child) * tree.getMass(child);
+            z += tree.getMassCenterZ(child) * tree.getMass(child);
+            totalMass += tree.getMass(child);
+            checkMassCenterConservation(tree, child);
+        }
+        assertEquals(totalMass, tree.getMass(cell));
+        if (totalMass > 0) {
+            assertEquals(x / totalMass, tree.getMassCenterX(cell), eps);
+            assertEquals(y / totalMass, tree.getMassCenterY(cell), eps);
+            assertEquals(z / totalMass, tree.getMassCenterZ(cell), eps);
+        }
+    }
+
+    @org.junit.Test
+    public void testBuild() {
+        float[] x = {1, 9, 9, 1, 5};
+        float[] y = {1, 1, 9, 9, 5};
+        IncrementalQuadTree tree = new IncrementalQuadTree(10);
+        tree.build(5, x, y);
+        assertEquals(5, tree.getMass(0));
+        assertEquals(5, tree.getMassCenterX(0), eps);
+        assertEquals(5, tree.getMassCenterY(0), eps);
+        checkMassCenterConservation(tree, 0);
+
+        int[] order = new int[5];
+        tree.fillNodeOrder(order);
+        boolean[] seen = new boolean[5];
+        for (int node : order) {
+            assertFalse(seen[node]);
+            seen[node] = true;
+        }
+    }
+
+    @org.junit.Test
+    public void testSamePosition() {
+        float[] x = {3, 3, 3};
+        float[] y = {4, 4, 4};
+        IncrementalQuadTree tree = new IncrementalQuadTree(5);
+        tree.build(3, x, y);
+        assertEquals(3, tree.getMass(0));
+        checkMassCenterConservation(tree, 0);
+    }
+
+    @org.junit.Test
+    public void testUpdate() {
+        int nodeCount = 500;
+        Random random = new Random(0);
+        float[] x = new float[nodeCount];
+        float[] y = new float[nodeCount];
+        for (int i = 0; i < nodeCount; i++) {
+            x[i] = random.nextFloat() * 1000;
+            y[i] = random.nextFloat() * 1000;
+        }
+        IncrementalQuadTree tree = new IncrementalQuadTree(10);
+        tree.build(nodeCount, x, y);
+
+        //Small moves stay in the root
+        for (int i = 0; i < nodeCount; i++) {
+            x[i] = Math.min(1000, Math.max(0, x[i] + random.nextFloat() * 10 - 5));
+            y[i] = Math.min(1000, Math.max(0, y[i] + random.nextFloat() * 10 - 5));
+        }
+        tree.update(nodeCount, x, y);
+        assertFalse(tree.isRebuilt());
+        assertTrue(tree.getMovedCount() < nodeCount);
+
+        IncrementalQuadTree built = new IncrementalQuadTree(10);
+        built.build(nodeCount, x, y);
+        assertEquals(nodeCount, tree.getMass(0));
+        assertEquals(built.getMassCenterX(0), tree.getMassCenterX(0), eps);
+        assertEquals(built.getMassCenterY(0), tree.getMassCenterY(0), eps);
+        checkMassCenterConservation(tree, 0);
+
+        //Leaving the root builds the tree again
+        x[0] = 5000;
+        tree.update(nodeCount, x, y);
+        assertTrue(tree.isRebuilt());
+        assertEquals(nodeCount, tree.getMass(0));
+    }
+
+    @org.junit.Test
+    public void testOctree() {
+        int nodeCount = 500;
+        Random random = new Random(0);
+        float[] x = new float[nodeCount];
+        float[] y = new float[nodeCount];
+        float[] z = new float[nodeCount];
+        for (int i = 0; i < nodeCount; i++) {
+            x[i] = random.nextFloat() * 1000;
+            y[i] = random.nextFloat() * 1000;
+            z[i] = random.nextFloat() * 1000;
+        }
+        IncrementalQuadTree tree = new IncrementalQuadTree(10);
+        tree.build(nodeCount, x, y, z);
+        assertEquals(8, tree.getChildCount());
+        assertEquals(nodeCount, tree.getMass(0));
+        checkMassCenterConservation(tree, 0);
+
+        for (int i = 0; i < nodeCount; i++) {
+            z[i] = Math.min(1000, Math.max(0, z[i] + random.nextFloat() * 10 - 5));
+        }
+        tree.update(nodeCount, x, y, z);
+        assertFalse(tree.isRebuilt());
+        checkMassCenterConservation(tree, 0);
+
+        IncrementalQuadTree built = new IncrementalQuadTree(10);
+        built.build(nodeCount, x, y, z);
+        assertEquals(built.getMassCenterZ(0), tree.getMassCenterZ(0), eps);
+
+        int[] order = new int[nodeCount];
+        tree.fillNodeOrder(order);
+        boolean[] seen = new boolean[nodeCount];
+        for (int node : order) {
+            assertFalse(seen[node]);
+            seen[node] = true;
+        }
+    }
+}
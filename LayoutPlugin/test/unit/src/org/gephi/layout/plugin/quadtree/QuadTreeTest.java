@@ -84,6 +84,7 @@ public class QuadTreeTest {
         assertEquals(tree.mass(), 2);
         assertEquals(5, tree.x(), eps);
         assertEquals(5, tree.y(), eps);
+        assertEquals(0, tree.z(), eps);
     }
 
     @org.junit.Test
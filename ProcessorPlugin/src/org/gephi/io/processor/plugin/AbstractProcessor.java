@@ -104,6 +104,13 @@ public abstract class AbstractProcessor {
             node.getNodeData().setSize(10f);
         }
 
+        flushToNodeTimeInterval(nodeDraft, node);
+
+        //Attributes
+        flushToNodeAttributes(nodeDraft, node);
+    }
+
+    protected void flushToNodeTimeInterval(NodeDraftGetter nodeDraft, Node node) {
         if (nodeDraft.getTimeInterval() != null) {
             AttributeColumn col = attributeModel.getNodeTable().getColumn(DynamicModel.TIMEINTERVAL_COLUMN);
             if (col == null) {
@@ -111,9 +118,6 @@ public abstract class AbstractProcessor {
             }
             node.getNodeData().getAttributes().setValue(col.getIndex(), nodeDraft.getTimeInterval());
         }
-
-        //Attributes
-        flushToNodeAttributes(nodeDraft, node);
     }
 
     protected void flushToNodeAttributes(NodeDraftGetter nodeDraft, Node node) {
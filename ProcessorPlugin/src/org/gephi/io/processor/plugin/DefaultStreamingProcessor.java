@@ -0,0 +1,302 @@
+/*
+Copyright 2008-2010 Gephi
+Website : http://www.gephi.org
+
+This file is part of Gephi.
+
+DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+
+Copyright 2011 Gephi Consortium. All rights reserved.
+
+The contents of this file are subject to the terms of either the GNU
+General Public License Version 3 only ("GPL") or the Common
+Development and Distribution License("CDDL") (collectively, the
+"License"). You may not use this file except in compliance with the
+License. You can obtain a copy of the License at
+http://gephi.org/about/legal/license-notice/
+or /cddl-1.0.txt and /gpl-3.0.txt. See the License for the
+specific language governing permissions and limitations under the
+License.  When distributing the software, include this License Header
+Notice in each file and include the License files at
+/cddl-1.0.txt and /gpl-3.0.txt. If applicable, add the following below the
+License Header, with the fields enclosed by brackets [] replaced by
+your own identifying information:
+"Portions Copyrighted [year] [name of copyright owner]"
+
+If you wish your version of this file to be governed by only the CDDL
+or only the GPL Version 3, indicate your decision by adding
+"[Contributor] elects to include this software in this distribution
+under the [CDDL or GPL Version 3] license." If you do not indicate a
+single choice of license, a recipient has the option to distribute
+your version of this file under either the CDDL, the GPL Version 3 or
+to extend the choice of license to its licensees as provided above.
+However, if you add GPL Version 3 code and therefore, elected the GPL
+Version 3 license, then the option applies only if the new code is
+made subject to such option by the copyright holder.
+
+Contributor(s):
+
+Portions Copyrighted 2011 Gephi Consortium.
+ */
+package org.gephi.io.processor.plugin;
+
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.gephi.data.attributes.api.AttributeController;
+import org.gephi.dynamic.api.DynamicController;
+import org.gephi.graph.api.Edge;
+import org.gephi.graph.api.GraphController;
+import org.gephi.graph.api.GraphFactory;
+import org.gephi.graph.api.GraphModel;
+import org.gephi.graph.api.HierarchicalMixedGraph;
+import org.gephi.graph.api.Node;
+import org.gephi.graph.api.NodeData;
+import org.gephi.graph.api.TextData;
+import org.gephi.io.importer.api.EdgeDraft.EdgeType;
+import org.gephi.io.importer.api.EdgeDraftGetter;
+import org.gephi.io.importer.api.Issue;
+import org.gephi.io.importer.api.NodeDraftGetter;
+import org.gephi.io.importer.api.Report;
+import org.gephi.io.processor.spi.StreamingProcessor;
+import org.gephi.project.api.ProjectController;
+import org.openide.util.Lookup;
+import org.openide.util.NbBundle;
+import org.openide.util.lookup.ServiceProvider;
+
+/**
+ * Streaming processor that adds nodes and edges to a new workspace as they
+ * are imported, like <code>DefaultProcessor</code> does with a complete
+ * container.
+ * <p>
+ * Drafts already received are found back from their <code>Node</code> if
+ * they are the same instances, or from their id otherwise. Nodes with an
+ * automatic id don't keep it in the graph, so they are mapped by id. Edges
+ * whose extremities can't be found are reported and ignored.
+ * When cancelled, the workspace is deleted if it was created by the
+ * processor, otherwise the nodes added to it are removed.
+ */
+@ServiceProvider(service = StreamingProcessor.class)
+public class DefaultStreamingProcessor extends AbstractProcessor implements StreamingProcessor {
+
+    private HierarchicalMixedGraph graph;
+    private GraphFactory factory;
+    private int nodeCount;
+    private int edgeCount;
+    private boolean newWorkspace;
+    private List<Node> addedNodes;
+    private Map<String, Node> autoIdNodes;
+    private Report report;
+
+    public void setReport(Report report) {
+        this.report = report;
+    }
+
+    public void begin() {
+        //Workspace
+        ProjectController pc = Lookup.getDefault().lookup(ProjectController.class);
+        newWorkspace = workspace == null;
+        if (newWorkspace) {
+            workspace = pc.newWorkspace(pc.getCurrentProject());
+            pc.openWorkspace(workspace);
+        } else {
+            addedNodes = new ArrayList<Node>();
+        }
+        if (container.getSource() != null) {
+            pc.setSource(workspace, container.getSource());
+        }
+
+        //Architecture, the edges direction is given by each draft type
+        GraphModel graphModel = Lookup.getDefault().lookup(GraphController.class).getModel(workspace);
+        graph = graphModel.getHierarchicalMixedGraph();
+        factory = graphModel.factory();
+
+        //Attributes - Creates columns for properties, columns must be declared before the first draft is added
+        attributeModel = Lookup.getDefault().lookup(AttributeController.class).getModel(workspace);
+        attributeModel.mergeModel(container.getAttributeModel());
+
+        //Dynamic
+        if (container.getTimeFormat() != null) {
+            DynamicController dynamicController = Lookup.getDefault().lookup(DynamicController.class);
+            if (dynamicController != null) {
+                dynamicController.setTimeFormat(container.getTimeFormat());
+            }
+        }
+        nodeCount = 0;
+        edgeCount = 0;
+        autoIdNodes = new HashMap<String, Node>();
+    }
+
+    public void addNode(NodeDraftGetter draftNode) {
+        Node n = factory.newNode(draftNode.isAutoId() ? null : draftNode.getId());
+        flushToNode(draftNode, n);
+        draftNode.setNode(n);
+        if (draftNode.isAutoId()) {
+            autoIdNodes.put(draftNode.getId(), n);
+        }
+
+        NodeDraftGetter[] parents = draftNode.getParents();
+        if (parents != null) {
+            for (int i = 0; i < parents.length; i++) {
+                Node parent = getNode(parents[i]);
+                if (parent != null) {
+                    graph.addNode(n, parent);
+                } else {
+                    graph.addNode(n);
+                }
+            }
+        } else {
+            graph.addNode(n);
+        }
+        if (addedNodes != null) {
+            addedNodes.add(n);
+        }
+        nodeCount++;
+    }
+
+    public void addEdge(EdgeDraftGetter edge) {
+        Node source = getNode(edge.getSource());
+        Node target = getNode(edge.getTarget());
+        if (!checkExtremities(edge, source, target)) {
+            return;
+        }
+        boolean directed = !edge.getType().equals(EdgeType.UNDIRECTED);
+        Edge e = factory.newEdge(edge.isAutoId() ? null : edge.getId(), source, target, edge.getWeight(), directed);
+        flushToEdge(edge, e);
+        if (graph.addEdge(e)) {
+            edgeCount++;
+        }
+        if (edge.getType().equals(EdgeType.MUTUAL) && source != target) {
+            Edge mutual = factory.newEdge(edge.isAutoId() ? null : edge.getId() + "-mutual", target, source, edge.getWeight(), true);
+            flushToEdge(edge, mutual);
+            if (graph.addEdge(mutual)) {
+                edgeCount++;
+            }
+        }
+    }
+
+    public void mergeEdge(EdgeDraftGetter edge, boolean sumWeights) {
+        Node source = getNode(edge.getSource());
+        Node target = getNode(edge.getTarget());
+        if (!checkExtremities(edge, source, target)) {
+            return;
+        }
+        Edge existing = graph.getEdge(source, target);
+        if (existing == null) {
+            existing = graph.getEdge(target, source);
+        }
+        if (existing != null) {
+            if (sumWeights) {
+                existing.setWeight(existing.getWeight() + edge.getWeight());
+            } else {
+                existing.setWeight(Math.max(existing.getWeight(), edge.getWeight()));
+            }
+        }
+    }
+
+    public void updateNode(NodeDraftGetter draftNode) {
+        Node n = getNode(draftNode);
+        if (n == null) {
+            return;
+        }
+        NodeData nodeData = n.getNodeData();
+        if (draftNode.getLabel() != null) {
+            nodeData.setLabel(draftNode.getLabel());
+        }
+        if (draftNode.getColor() != null) {
+            nodeData.setR(draftNode.getColor().getRed() / 255f);
+            nodeData.setG(draftNode.getColor().getGreen() / 255f);
+            nodeData.setB(draftNode.getColor().getBlue() / 255f);
+        }
+        if ((draftNode.getX() != 0f || draftNode.getY() != 0f || draftNode.getZ() != 0f)
+                && !Float.isNaN(draftNode.getX()) && !Float.isNaN(draftNode.getY()) && !Float.isNaN(draftNode.getZ())) {
+            nodeData.setX(draftNode.getX());
+            nodeData.setY(draftNode.getY());
+            nodeData.setZ(draftNode.getZ());
+        }
+        if (draftNode.getSize() != 0 && !Float.isNaN(draftNode.getSize())) {
+            nodeData.setSize(draftNode.getSize());
+        }
+        TextData textData = nodeData.getTextData();
+        if (textData != null) {
+            if (!draftNode.isLabelVisible()) {
+                textData.setVisible(false);
+            }
+            if (draftNode.getLabelColor() != null) {
+                Color labelColor = draftNode.getLabelColor();
+                textData.setColor(labelColor.getRed() / 255f, labelColor.getGreen() / 255f, labelColor.getBlue() / 255f, labelColor.getAlpha() / 255f);
+            }
+            if (draftNode.getLabelSize() != -1f) {
+                textData.setSize(draftNode.getLabelSize());
+            }
+        }
+        flushToNodeTimeInterval(draftNode, n);
+        flushToNodeAttributes(draftNode, n);
+
+        //Moves the node if its parent was set after it was added
+        NodeDraftGetter[] parents = draftNode.getParents();
+        if (parents != null) {
+            Node parent = getNode(parents[0]);
+            if (parent != null && parent != n && graph.getParent(n) != parent && !graph.isDescendant(n, parent)) {
+                graph.moveToGroup(n, parent);
+            }
+        }
+    }
+
+    public void end() {
+        if (report != null) {
+            report.log(NbBundle.getMessage(DefaultStreamingProcessor.class, "DefaultStreamingProcessor.loaded", nodeCount, edgeCount));
+        }
+        clean();
+    }
+
+    public void cancel() {
+        if (newWorkspace) {
+            Lookup.getDefault().lookup(ProjectController.class).deleteWorkspace(workspace);
+        } else {
+            //Edges are removed with their nodes
+            for (Node n : addedNodes) {
+                if (graph.contains(n)) {
+                    graph.removeNode(n);
+                }
+            }
+        }
+        clean();
+    }
+
+    private void clean() {
+        graph = null;
+        factory = null;
+        workspace = null;
+        addedNodes = null;
+        autoIdNodes = null;
+    }
+
+    /**
+     * Reports the edge as ignored if its source or target is missing.
+     */
+    private boolean checkExtremities(EdgeDraftGetter edge, Node source, Node target) {
+        if (source != null && target != null) {
+            return true;
+        }
+        if (report != null) {
+            String key = source == null ? "DefaultStreamingProcessor.missingSource" : "DefaultStreamingProcessor.missingTarget";
+            String id = source == null ? edge.getSource().getId() : edge.getTarget().getId();
+            report.logIssue(new Issue(NbBundle.getMessage(DefaultStreamingProcessor.class, key, id), Issue.Level.WARNING));
+        }
+        return false;
+    }
+
+    private Node getNode(NodeDraftGetter draftNode) {
+        if (draftNode.getNode() != null) {
+            return draftNode.getNode();
+        }
+        Node node = autoIdNodes.get(draftNode.getId());
+        if (node != null) {
+            return node;
+        }
+        return graph.getNode(draftNode.getId());
+    }
+}
@@ -84,12 +84,27 @@ public interface ProjectController {
 
     public Workspace getCurrentWorkspace();
 
+    /**
+     * Selects <code>workspace</code> and fires a <code>select</code> event to
+     * workspace listeners. If the workspace data has been unloaded to save
+     * memory, it is read first. Loading and selection happen on the calling
+     * thread, so <code>workspace</code> is the current workspace when this
+     * method returns.
+     * @param workspace the workspace to select
+     */
     public void openWorkspace(Workspace workspace);
 
     public void closeCurrentWorkspace();
 
     public void cleanWorkspace(Workspace workspace);
 
+    /**
+     * Duplicates <code>workspace</code> in a new workspace and selects it, on
+     * the calling thread like {@link #openWorkspace(Workspace)}.
+     * @param workspace the workspace to duplicate
+     * @return the new workspace, or <code>null</code> if there is no current
+     * project
+     */
     public Workspace duplicateWorkspace(Workspace workspace);
 
     public void setSource(Workspace workspace, String source);
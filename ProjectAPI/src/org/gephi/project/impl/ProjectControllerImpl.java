@@ -48,14 +48,20 @@ import org.gephi.project.api.Project;
 import org.gephi.project.api.ProjectController;
 import org.gephi.project.api.Projects;
 import org.gephi.project.api.WorkspaceProvider;
+import org.gephi.project.io.GephiFormatException;
+import org.gephi.project.io.GephiReader;
 import org.gephi.project.io.LoadTask;
 import org.gephi.project.io.SaveTask;
+import org.gephi.project.io.WorkspaceArchive;
+import org.gephi.project.io.WorkspaceUnloader;
 import org.gephi.project.api.Workspace;
 import org.gephi.project.api.WorkspaceInformation;
 import org.gephi.project.api.WorkspaceListener;
 import org.gephi.workspace.impl.WorkspaceImpl;
 import org.gephi.workspace.impl.WorkspaceInformationImpl;
 import org.gephi.project.spi.WorkspaceDuplicateProvider;
+import org.gephi.utils.longtask.api.LongTaskExecutor;
+import org.openide.util.Exceptions;
 import org.openide.util.Lookup;
 import org.openide.util.NbPreferences;
 import org.openide.util.lookup.ServiceProvider;
@@ -75,6 +81,9 @@ public class ProjectControllerImpl implements ProjectController {
     private final ProjectsImpl projects = new ProjectsImpl();
     private final List<WorkspaceListener> listeners;
     private WorkspaceImpl temporaryOpeningWorkspace;
+    private final WorkspaceUnloader workspaceUnloader = new WorkspaceUnloader();
+    private final LongTaskExecutor unloadExecutor = new LongTaskExecutor(true, "Workspace Unloader");
+    private volatile Workspace requestedWorkspace;
 
     public ProjectControllerImpl() {
 
@@ -86,9 +95,15 @@ public class ProjectControllerImpl implements ProjectController {
     public void startup() {
         final String OPEN_LAST_PROJECT_ON_STARTUP = "Open_Last_Project_On_Startup";
         final String NEW_PROJECT_ON_STARTUP = "New_Project_On_Startup";
+        final String UNLOAD_WORKSPACES = "ProjectIO_Unload_Workspaces";
+        final String UNLOAD_THRESHOLD = "ProjectIO_Unload_Threshold_Percent";
         boolean openLastProject = NbPreferences.forModule(ProjectControllerImpl.class).getBoolean(OPEN_LAST_PROJECT_ON_STARTUP, false);
         boolean newProjectStartup = NbPreferences.forModule(ProjectControllerImpl.class).getBoolean(NEW_PROJECT_ON_STARTUP, false);
 
+        //Unload workspaces when memory is low
+        workspaceUnloader.setEnabled(NbPreferences.forModule(ProjectControllerImpl.class).getBoolean(UNLOAD_WORKSPACES, false));
+        workspaceUnloader.setThreshold(NbPreferences.forModule(ProjectControllerImpl.class).getInt(UNLOAD_THRESHOLD, 80));
+
         //Default project
         if (!openLastProject && newProjectStartup) {
             newProject();
@@ -130,9 +145,11 @@ public class ProjectControllerImpl implements ProjectController {
             }
             for (Workspace ws : currentProject.getLookup().lookup(WorkspaceProviderImpl.class).getWorkspaces()) {
                 fireWorkspaceEvent(EventType.CLOSE, ws);
+                deleteTemporaryArchive(ws);
             }
 
             //Close
+            requestedWorkspace = null;
             currentProject.getLookup().lookup(ProjectInformationImpl.class).close();
             projects.closeCurrentProject();
 
@@ -193,9 +210,13 @@ public class ProjectControllerImpl implements ProjectController {
         }
 
         workspaceProvider.removeWorkspace(workspace);
+        if (requestedWorkspace == workspace) {
+            requestedWorkspace = null;
+        }
 
         //Event
         fireWorkspaceEvent(EventType.CLOSE, workspace);
+        deleteTemporaryArchive(workspace);
 
         if (getCurrentWorkspace() == workspace) {
             //Select the one before, or after
@@ -229,6 +250,7 @@ public class ProjectControllerImpl implements ProjectController {
                 openWorkspace(workspace);
             }
         } else {
+            loadWorkspace(workspaceProviderImpl.getCurrentWorkspace());
             fireWorkspaceEvent(EventType.SELECT, workspaceProviderImpl.getCurrentWorkspace());
         }
     }
@@ -238,11 +260,11 @@ public class ProjectControllerImpl implements ProjectController {
     }
 
     public WorkspaceImpl getCurrentWorkspace() {
-        if (projects.hasCurrentProject()) {
-            temporaryOpeningWorkspace = null;
-            return getCurrentProject().getLookup().lookup(WorkspaceProviderImpl.class).getCurrentWorkspace();
-        } else if (temporaryOpeningWorkspace != null) {
+        if (temporaryOpeningWorkspace != null) {
+            //Workspace being read, also when it's loaded in the current project
             return temporaryOpeningWorkspace;
+        } else if (projects.hasCurrentProject()) {
+            return getCurrentProject().getLookup().lookup(WorkspaceProviderImpl.class).getCurrentWorkspace();
         }
         return null;
     }
@@ -257,30 +279,132 @@ public class ProjectControllerImpl implements ProjectController {
         }
     }
 
+    /**
+     * Selects <code>workspace</code>. A workspace which is not loaded is read
+     * first, on the calling thread, so it is the current workspace when this
+     * method returns.
+     */
     public void openWorkspace(Workspace workspace) {
+        requestedWorkspace = workspace;
+        loadWorkspace(workspace);
+        selectWorkspace(workspace);
+    }
+
+    private void selectWorkspace(Workspace workspace) {
         closeCurrentWorkspace();
         getCurrentProject().getLookup().lookup(WorkspaceProviderImpl.class).setCurrentWorkspace(workspace);
         workspace.getLookup().lookup(WorkspaceInformationImpl.class).open();
 
         //Event
         fireWorkspaceEvent(EventType.SELECT, workspace);
+
+        //Unload the other workspaces in background when memory is low
+        if (workspaceUnloader.isEnabled() && !unloadExecutor.isRunning() && workspaceUnloader.isMemoryLow()) {
+            final ProjectImpl project = getCurrentProject();
+            unloadExecutor.execute(null, new Runnable() {
+
+                public void run() {
+                    for (Workspace w : project.getLookup().lookup(WorkspaceProviderImpl.class).getWorkspaces()) {
+                        unloadWorkspace(project, w);
+                    }
+                }
+            }, "Unload Workspaces", null);
+        }
+    }
+
+    /**
+     * Reads the data of <code>workspace</code> if it's not loaded. Loading,
+     * unloading and saving a workspace are synchronized on the workspace.
+     * Listeners get an <code>INITIALIZE</code> event before the data is read.
+     */
+    private void loadWorkspace(Workspace workspace) {
+        synchronized (workspace) {
+            WorkspaceArchive archive = workspace.getLookup().lookup(WorkspaceArchive.class);
+            if (archive != null) {
+                try {
+                    new GephiReader().readWorkspace(workspace, archive);
+                } catch (Exception ex) {
+                    if (ex instanceof GephiFormatException) {
+                        throw (GephiFormatException) ex;
+                    }
+                    throw new GephiFormatException(GephiReader.class, ex);
+                }
+                workspace.remove(archive);
+                if (archive.isTemporary()) {
+                    archive.getFile().delete();
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes <code>workspace</code> to a temporary archive and removes its
+     * data from memory, unless it's selected, about to be selected, already
+     * unloaded or if <code>project</code> is not the current project anymore.
+     * Listeners get a <code>CLOSE</code> event before the workspace lookup is
+     * cleared, so they can release or rebuild what is not written by
+     * persistence providers when the workspace is loaded again.
+     * @return <code>true</code> if the workspace has been unloaded
+     */
+    boolean unloadWorkspace(ProjectImpl project, Workspace workspace) {
+        synchronized (workspace) {
+            if (projects.getCurrentProject() != project
+                    || project.getLookup().lookup(WorkspaceProviderImpl.class).getCurrentWorkspace() == workspace
+                    || requestedWorkspace == workspace
+                    || workspace.getLookup().lookup(WorkspaceArchive.class) != null) {
+                return false;
+            }
+            WorkspaceArchive archive;
+            try {
+                archive = workspaceUnloader.unload(workspace);
+            } catch (Exception ex) {
+                Exceptions.printStackTrace(ex);
+                return false;
+            }
+            fireWorkspaceEvent(EventType.CLOSE, workspace);
+            ((WorkspaceImpl) workspace).clear();
+            workspace.add(archive);
+            return true;
+        }
+    }
+
+    private void deleteTemporaryArchive(Workspace workspace) {
+        synchronized (workspace) {
+            WorkspaceArchive archive = workspace.getLookup().lookup(WorkspaceArchive.class);
+            if (archive != null && archive.isTemporary()) {
+                archive.getFile().delete();
+            }
+        }
     }
 
     public void cleanWorkspace(Workspace workspace) {
     }
 
+    /**
+     * Duplicates <code>workspace</code> in a new workspace and selects it. If
+     * <code>workspace</code> is not loaded, it is read first, on the calling
+     * thread.
+     */
     public Workspace duplicateWorkspace(Workspace workspace) {
         if (projects.hasCurrentProject()) {
             Workspace duplicate = newWorkspace(projects.getCurrentProject());
-            for (WorkspaceDuplicateProvider dp : Lookup.getDefault().lookupAll(WorkspaceDuplicateProvider.class)) {
-                dp.duplicate(workspace, duplicate);
-            }
+            requestedWorkspace = duplicate;
+            duplicate(workspace, duplicate);
             openWorkspace(duplicate);
             return duplicate;
         }
         return null;
     }
 
+    private void duplicate(Workspace workspace, Workspace duplicate) {
+        synchronized (workspace) {
+            loadWorkspace(workspace);
+            for (WorkspaceDuplicateProvider dp : Lookup.getDefault().lookupAll(WorkspaceDuplicateProvider.class)) {
+                dp.duplicate(workspace, duplicate);
+            }
+        }
+    }
+
     public void renameProject(Project project, final String name) {
         project.getLookup().lookup(ProjectInformationImpl.class).setName(name);
     }
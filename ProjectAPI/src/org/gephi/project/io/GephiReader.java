@@ -41,7 +41,12 @@ Portions Copyrighted 2011 Gephi Consortium.
  */
 package org.gephi.project.io;
 
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import javax.xml.stream.XMLStreamReader;
 import javax.xml.stream.events.XMLEvent;
@@ -53,9 +58,11 @@ import org.gephi.project.api.Workspace;
 import org.gephi.project.impl.ProjectControllerImpl;
 import org.gephi.workspace.impl.WorkspaceImpl;
 import org.gephi.workspace.impl.WorkspaceInformationImpl;
+import org.gephi.project.spi.WorkspaceBytesPersistenceProvider;
 import org.gephi.project.spi.WorkspacePersistenceProvider;
 import org.openide.util.Cancellable;
 import org.openide.util.Lookup;
+import org.openide.util.NbPreferences;
 
 /**
  *
@@ -63,10 +70,14 @@ import org.openide.util.Lookup;
  */
 public class GephiReader implements Cancellable {
 
+    private static final String LAZY_LOADING_PREFERENCE = "ProjectIO_Load_Workspaces_Lazily";
     private ProjectImpl project;
     private boolean cancel = false;
     private Map<String, WorkspacePersistenceProvider> providers;
     private WorkspacePersistenceProvider currentProvider;
+    private ZipEntriesReader entries;
+    private double version;
+    private boolean lazyLoading;
 
     public GephiReader() {
         providers = new LinkedHashMap<String, WorkspacePersistenceProvider>();
@@ -87,6 +98,21 @@ public class GephiReader implements Cancellable {
     }
 
     public Project readAll(XMLStreamReader reader, Project project) throws Exception {
+        return readAll(reader, project, null);
+    }
+
+    /**
+     * Reads the project document and the workspace entries of the archive.
+     * Since version 0.8, providers data is stored in one entry per provider
+     * and workspace, read from <code>entries</code>.
+     * @param reader  the project document reader
+     * @param project the project to fill
+     * @param entries the archive entries, or <code>null</code>
+     * @return the project
+     */
+    public Project readAll(XMLStreamReader reader, Project project, ZipEntriesReader entries) throws Exception {
+        this.entries = entries;
+        this.lazyLoading = NbPreferences.forModule(GephiReader.class).getBoolean(LAZY_LOADING_PREFERENCE, true);
         ProjectInformationImpl info = project.getLookup().lookup(ProjectInformationImpl.class);
         WorkspaceProviderImpl workspaces = project.getLookup().lookup(WorkspaceProviderImpl.class);
         this.project = (ProjectImpl) project;
@@ -102,6 +128,7 @@ public class GephiReader implements Cancellable {
                     if (version == null || version.isEmpty() || Double.parseDouble(version) < 0.7) {
                         throw new GephiFormatException("Gephi project file version must be at least 0.7");
                     }
+                    this.version = Double.parseDouble(version);
                 } else if ("project".equalsIgnoreCase(name)) {
                     info.setName(reader.getAttributeValue(null, "name"));
                 } else if ("workspace".equalsIgnoreCase(name)) {
@@ -128,6 +155,7 @@ public class GephiReader implements Cancellable {
 
         //Name
         info.setName(reader.getAttributeValue(null, "name"));
+        String id = reader.getAttributeValue(null, "id");
 
         //Status
         String workspaceStatus = reader.getAttributeValue(null, "status");
@@ -139,21 +167,94 @@ public class GephiReader implements Cancellable {
             info.invalid();
         }
 
+        //Workspaces not opened are loaded when selected
+        if (lazyLoading && version >= 0.8 && entries != null && id != null && !info.isOpen()) {
+            workspace.add(new WorkspaceArchive(entries.getFile(), Integer.parseInt(id), false));
+            return workspace;
+        }
+
         //Hack to set this workspace active, when readers need to use attributes for instance
         ProjectControllerImpl pc = Lookup.getDefault().lookup(ProjectControllerImpl.class);
         pc.setTemporaryOpeningWorkspace(workspace);
-
-        //WorkspacePersistent
-        readWorkspaceChildren(workspace, reader);
-        if (currentProvider != null) {
-            //One provider not correctly closed
-            throw new GephiFormatException("The '" + currentProvider.getIdentifier() + "' persistence provider is not ending read.");
+        try {
+            //WorkspacePersistent
+            readWorkspaceChildren(workspace, reader);
+            if (currentProvider != null) {
+                //One provider not correctly closed
+                throw new GephiFormatException("The '" + currentProvider.getIdentifier() + "' persistence provider is not ending read.");
+            }
+            if (version >= 0.8 && entries != null && id != null) {
+                readWorkspaceEntries(workspace, Integer.parseInt(id));
+            }
+        } finally {
+            pc.setTemporaryOpeningWorkspace(null);
         }
-        pc.setTemporaryOpeningWorkspace(null);
 
         return workspace;
     }
 
+    /**
+     * Loads the data of a workspace which has not been loaded yet. Like when
+     * a project is opened, the workspace is the current workspace while its
+     * data is read, and listeners get an <code>INITIALIZE</code> event first.
+     * @param workspace the workspace to load
+     * @param archive   the location of the workspace data
+     */
+    public void readWorkspace(Workspace workspace, WorkspaceArchive archive) throws Exception {
+        ProjectControllerImpl pc = Lookup.getDefault().lookup(ProjectControllerImpl.class);
+        pc.setTemporaryOpeningWorkspace((WorkspaceImpl) workspace);
+        entries = new ZipEntriesReader(archive.getFile());
+        try {
+            readWorkspaceEntries(workspace, archive.getId());
+        } finally {
+            entries.close();
+            entries = null;
+            pc.setTemporaryOpeningWorkspace(null);
+        }
+    }
+
+    /**
+     * Reads the entries of the workspace <code>id</code>. Entries are
+     * inflated ahead on a thread pool while providers read them in order.
+     */
+    public void readWorkspaceEntries(Workspace workspace, int id) throws Exception {
+        List<String> names = new ArrayList<String>();
+        for (WorkspacePersistenceProvider pp : providers.values()) {
+            names.add(GephiWriter.getEntryName(id, pp));
+        }
+        entries.prefetch(names);
+        for (WorkspacePersistenceProvider pp : providers.values()) {
+            if (cancel) {
+                return;
+            }
+            InputStream inputStream = entries.getInputStream(GephiWriter.getEntryName(id, pp));
+            if (inputStream == null) {
+                continue;
+            }
+            try {
+                BufferedInputStream stream = new BufferedInputStream(inputStream, 65536);
+                if (pp instanceof WorkspaceBytesPersistenceProvider) {
+                    //Providers with nothing to save write empty entries
+                    stream.mark(1);
+                    if (stream.read() == -1) {
+                        continue;
+                    }
+                    stream.reset();
+                    ((WorkspaceBytesPersistenceProvider) pp).readBytes(new DataInputStream(stream), workspace);
+                } else {
+                    XMLStreamReader reader = LoadTask.createReader(stream);
+                    readWorkspaceChildren(workspace, reader);
+                    reader.close();
+                    if (currentProvider != null) {
+                        throw new GephiFormatException("The '" + currentProvider.getIdentifier() + "' persistence provider is not ending read.");
+                    }
+                }
+            } finally {
+                inputStream.close();
+            }
+        }
+    }
+
     public void readWorkspaceChildren(Workspace workspace, XMLStreamReader reader) throws Exception {
         boolean end = false;
         while (reader.hasNext() && !end) {
@@ -41,10 +41,23 @@ Portions Copyrighted 2011 Gephi Consortium.
  */
 package org.gephi.project.io;
 
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.text.SimpleDateFormat;
 import java.util.Calendar;
+import java.util.Collection;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import javax.xml.stream.XMLOutputFactory;
 import javax.xml.stream.XMLStreamWriter;
 import org.gephi.project.impl.WorkspaceProviderImpl;
 import org.gephi.project.api.Project;
@@ -52,6 +65,7 @@ import org.gephi.project.api.ProjectInformation;
 import org.gephi.project.api.ProjectMetaData;
 import org.gephi.project.api.Workspace;
 import org.gephi.project.api.WorkspaceInformation;
+import org.gephi.project.spi.WorkspaceBytesPersistenceProvider;
 import org.gephi.project.spi.WorkspacePersistenceProvider;
 import org.openide.util.Cancellable;
 import org.openide.util.Lookup;
@@ -81,7 +95,7 @@ public class GephiWriter implements Cancellable {
     public void writeAll(Project project, XMLStreamWriter writer) throws Exception {
         writer.writeStartDocument("UTF-8", "1.0");
         writer.writeStartElement("gephiFile");
-        writer.writeAttribute("version", "0.7");
+        writer.writeAttribute("version", "0.8");
         writer.writeComment("File saved from Gephi 0.8");
 
         writeCore(writer);
@@ -139,17 +153,19 @@ public class GephiWriter implements Cancellable {
 
         //Workspaces
         writer.writeStartElement("workspaces");
-        for (Workspace ws : workspaces.getWorkspaces()) {
-            writeWorkspace(writer, ws);
+        Workspace[] ws = workspaces.getWorkspaces();
+        for (int i = 0; i < ws.length; i++) {
+            writeWorkspace(writer, ws[i], i);
         }
         writer.writeEndElement();
         writer.writeEndElement();
     }
 
-    public void writeWorkspace(XMLStreamWriter writer, Workspace workspace) throws Exception {
+    public void writeWorkspace(XMLStreamWriter writer, Workspace workspace, int id) throws Exception {
         WorkspaceInformation info = workspace.getLookup().lookup(WorkspaceInformation.class);
 
         writer.writeStartElement("workspace");
+        writer.writeAttribute("id", String.valueOf(id));
         writer.writeAttribute("name", info.getName());
         if (info.isOpen()) {
             writer.writeAttribute("status", "open");
@@ -159,21 +175,117 @@ public class GephiWriter implements Cancellable {
             writer.writeAttribute("status", "invalid");
         }
 
-        writeWorkspaceChildren(writer, workspace);
-
+        //Providers data is written in separate entries
         writer.writeEndElement();
     }
 
-    public void writeWorkspaceChildren(XMLStreamWriter writer, Workspace workspace) throws Exception {
-        for (WorkspacePersistenceProvider pp : providers.values()) {
-            try {
-                writer.writeComment("Persistence from " + pp.getClass().getName());
-                pp.writeXML(writer, workspace);
-            } catch (UnsupportedOperationException e) {
+    /**
+     * Writes the data of <code>provider</code> for <code>workspace</code> in
+     * the new entry <code>name</code> of <code>zipOut</code>. The data is
+     * compressed with zlib while it is serialized, so it is never held in
+     * memory.
+     * @param zipOut    the archive stream
+     * @param name      the entry name
+     * @param provider  the persistence provider
+     * @param workspace the workspace to serialize
+     * @param level     the zlib compression level
+     */
+    public void writeEntry(ZipOutputStream zipOut, String name, WorkspacePersistenceProvider provider, Workspace workspace, int level) throws Exception {
+        putWorkspaceEntry(zipOut, name);
+        deflate(zipOut, provider, workspace, level);
+        zipOut.closeEntry();
+    }
+
+    /**
+     * Writes the data of <code>provider</code> for <code>workspace</code> in
+     * <code>file</code>, compressed with zlib. Providers can be serialized
+     * concurrently in separate files, which are then copied in the archive
+     * with {@link #copyEntry(InputStream, ZipOutputStream, String)}.
+     * @param file      the file to write
+     * @param provider  the persistence provider
+     * @param workspace the workspace to serialize
+     * @param level     the zlib compression level
+     */
+    public void writeEntry(File file, WorkspacePersistenceProvider provider, Workspace workspace, int level) throws Exception {
+        OutputStream outputStream = new FileOutputStream(file);
+        try {
+            deflate(outputStream, provider, workspace, level);
+        } finally {
+            outputStream.close();
+        }
+    }
+
+    /**
+     * Serializes <code>provider</code> in <code>outputStream</code> through a
+     * zlib deflater. Binary providers write their bytes directly and other
+     * providers are wrapped in a <code>workspace</code> XML document. The
+     * stream is not closed.
+     */
+    private void deflate(OutputStream outputStream, WorkspacePersistenceProvider provider, Workspace workspace, int level) throws Exception {
+        Deflater deflater = new Deflater(level);
+        try {
+            DeflaterOutputStream deflaterStream = new DeflaterOutputStream(outputStream, deflater, 65536);
+            BufferedOutputStream stream = new BufferedOutputStream(deflaterStream, 65536);
+            if (provider instanceof WorkspaceBytesPersistenceProvider) {
+                DataOutputStream dataStream = new DataOutputStream(stream);
+                ((WorkspaceBytesPersistenceProvider) provider).writeBytes(dataStream, workspace);
+                dataStream.flush();
+            } else {
+                XMLOutputFactory outputFactory = XMLOutputFactory.newInstance();
+                outputFactory.setProperty("javax.xml.stream.isRepairingNamespaces", Boolean.FALSE);
+                XMLStreamWriter writer = outputFactory.createXMLStreamWriter(stream, "UTF-8");
+                writer.writeStartDocument("UTF-8", "1.0");
+                writer.writeStartElement("workspace");
+                try {
+                    writer.writeComment("Persistence from " + provider.getClass().getName());
+                    provider.writeXML(writer, workspace);
+                } catch (UnsupportedOperationException e) {
+                }
+                writer.writeEndElement();
+                writer.writeEndDocument();
+                writer.close();
+                stream.flush();
             }
+            deflaterStream.finish();
+        } finally {
+            deflater.end();
         }
     }
 
+    /**
+     * Copies data already compressed with zlib in the new workspace entry
+     * <code>name</code> of <code>zipOut</code>.
+     */
+    static void copyEntry(InputStream inputStream, ZipOutputStream zipOut, String name) throws IOException {
+        putWorkspaceEntry(zipOut, name);
+        byte[] buffer = new byte[65536];
+        int read;
+        while ((read = inputStream.read(buffer)) != -1) {
+            zipOut.write(buffer, 0, read);
+        }
+        zipOut.closeEntry();
+    }
+
+    /**
+     * Starts the workspace entry <code>name</code>. Its content is already
+     * compressed with zlib, so the entry is deflated without compression,
+     * which lets the zip stream compute its size and checksum.
+     */
+    static void putWorkspaceEntry(ZipOutputStream zipOut, String name) throws IOException {
+        zipOut.setLevel(Deflater.NO_COMPRESSION);
+        ZipEntry zipEntry = new ZipEntry(name);
+        zipEntry.setMethod(ZipEntry.DEFLATED);
+        zipOut.putNextEntry(zipEntry);
+    }
+
+    public Collection<WorkspacePersistenceProvider> getProviders() {
+        return providers.values();
+    }
+
+    public static String getEntryName(int workspaceId, WorkspacePersistenceProvider provider) {
+        return "Workspace_" + workspaceId + "_" + provider.getIdentifier();
+    }
+
     public boolean cancel() {
         return true;
     }
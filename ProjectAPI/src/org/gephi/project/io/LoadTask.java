@@ -45,6 +45,7 @@ import com.sun.org.apache.xerces.internal.util.XMLChar;
 import java.io.File;
 import java.io.FilterReader;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
 import javax.xml.stream.Location;
@@ -80,29 +81,21 @@ public class LoadTask implements LongTask, Runnable {
     }
 
     public void run() {
+        ZipEntriesReader entries = null;
         try {
             Progress.start(progressTicket);
             Progress.setDisplayName(progressTicket, NbBundle.getMessage(LoadTask.class, "LoadTask.name"));
             FileObject fileObject = FileUtil.toFileObject(file);
+            InputStream inputStream;
             if (FileUtil.isArchiveFile(fileObject)) {
-                //Unzip
-                fileObject = FileUtil.getArchiveRoot(fileObject).getChildren()[0];
+                //Unzip, workspace entries are inflated when read
+                entries = new ZipEntriesReader(file);
+                inputStream = entries.getProjectInputStream();
+            } else {
+                inputStream = fileObject.getInputStream();
             }
 
-            XMLInputFactory inputFactory = XMLInputFactory.newInstance();
-            if (inputFactory.isPropertySupported("javax.xml.stream.isValidating")) {
-                inputFactory.setProperty("javax.xml.stream.isValidating", Boolean.FALSE);
-            }
-            inputFactory.setXMLReporter(new XMLReporter() {
-
-                @Override
-                public void report(String message, String errorType, Object relatedInformation, Location location) throws XMLStreamException {
-                    System.out.println("Error:" + errorType + ", message : " + message);
-                }
-            });
-            InputStreamReader isReader = new InputStreamReader(fileObject.getInputStream(), "UTF-8");
-            Xml10FilterReader filterReader = new Xml10FilterReader(isReader);
-            XMLStreamReader reader = inputFactory.createXMLStreamReader(filterReader);
+            XMLStreamReader reader = createReader(inputStream);
 
             if (!cancel) {
                 //Project instance
@@ -111,7 +104,7 @@ public class LoadTask implements LongTask, Runnable {
 
                 //GephiReader
                 gephiReader = new GephiReader();
-                project = gephiReader.readAll(reader, project);
+                project = gephiReader.readAll(reader, project, entries);
 
                 //Add project
                 if (!cancel) {
@@ -126,6 +119,10 @@ public class LoadTask implements LongTask, Runnable {
                 throw (GephiFormatException) ex;
             }
             throw new GephiFormatException(GephiReader.class, ex);
+        } finally {
+            if (entries != null) {
+                entries.close();
+            }
         }
     }
 
@@ -141,6 +138,27 @@ public class LoadTask implements LongTask, Runnable {
         this.progressTicket = progressTicket;
     }
 
+    /**
+     * Creates a non validating reader of the UTF-8 XML in <code>stream</code>,
+     * skipping invalid characters. Also used for workspace entries.
+     */
+    static XMLStreamReader createReader(InputStream stream) throws Exception {
+        XMLInputFactory inputFactory = XMLInputFactory.newInstance();
+        if (inputFactory.isPropertySupported("javax.xml.stream.isValidating")) {
+            inputFactory.setProperty("javax.xml.stream.isValidating", Boolean.FALSE);
+        }
+        inputFactory.setXMLReporter(new XMLReporter() {
+
+            @Override
+            public void report(String message, String errorType, Object relatedInformation, Location location) throws XMLStreamException {
+                System.out.println("Error:" + errorType + ", message : " + message);
+            }
+        });
+        InputStreamReader isReader = new InputStreamReader(stream, "UTF-8");
+        Xml10FilterReader filterReader = new Xml10FilterReader(isReader);
+        return inputFactory.createXMLStreamReader(filterReader);
+    }
+
     /**
      * {@link FilterReader} to skip invalid xml version 1.0 characters. Valid
      * Unicode chars for xml version 1.0 according to http://www.w3.org/TR/xml are
@@ -150,7 +168,7 @@ public class LoadTask implements LongTask, Runnable {
      * <p>
      * More details on the <a href="http://info.tsachev.org/2009/05/skipping-invalid-xml-character-with.html">blog</a>
      */
-    public class Xml10FilterReader extends FilterReader {
+    public static class Xml10FilterReader extends FilterReader {
 
         /**
          * Creates filter reader which skips invalid xml characters.
@@ -44,12 +44,28 @@ package org.gephi.project.io;
 import java.io.BufferedOutputStream;
 import java.io.IOException;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 import javax.xml.stream.XMLOutputFactory;
 import javax.xml.stream.XMLStreamWriter;
 import org.gephi.project.api.Project;
+import org.gephi.project.api.Workspace;
+import org.gephi.project.impl.WorkspaceProviderImpl;
+import org.gephi.project.spi.WorkspacePersistenceProvider;
 import org.gephi.utils.longtask.spi.LongTask;
 import org.gephi.utils.progress.Progress;
 import org.gephi.utils.progress.ProgressTicket;
@@ -70,8 +86,10 @@ public class SaveTask implements LongTask, Runnable {
     private File file;
     private Project project;
     private GephiWriter gephiWriter;
-    private boolean cancel = false;
+    private volatile boolean cancel = false;
     private ProgressTicket progressTicket;
+    private Workspace[] workspaces;
+    private final Map<Workspace, WorkspaceArchive> copiedArchives = new HashMap<Workspace, WorkspaceArchive>();
 
     public SaveTask(Project project, File file) {
         this.project = project;
@@ -100,24 +118,26 @@ public class SaveTask implements LongTask, Runnable {
             zipOut = new ZipOutputStream(outputStream);
             zipOut.setLevel(zipLevel);
 
-            zipOut.putNextEntry(new ZipEntry("Project"));
+            zipOut.putNextEntry(new ZipEntry(ZipEntriesReader.PROJECT_ENTRY));
             gephiWriter = new GephiWriter();
 
             //Create Writer and write project
             XMLOutputFactory outputFactory = XMLOutputFactory.newInstance();
             outputFactory.setProperty("javax.xml.stream.isRepairingNamespaces", Boolean.FALSE);
-            BufferedOutputStream bufferedOutputStream=new BufferedOutputStream(zipOut);
+            BufferedOutputStream bufferedOutputStream = new BufferedOutputStream(zipOut);
             XMLStreamWriter writer = outputFactory.createXMLStreamWriter(bufferedOutputStream, "UTF-8");
             gephiWriter.writeAll(project, writer);
             writer.close();
+            bufferedOutputStream.flush();
+            zipOut.closeEntry();
+
+            //Workspace entries
+            writeWorkspaceEntries(zipOut, zipLevel);
 
             //Close
-            zipOut.closeEntry();
             zipOut.finish();
             bufferedOutputStream.close();
 
-
-
             //Clean and copy
             if (useTempFile && !cancel) {
                 String name = fileObject.getName();
@@ -133,8 +153,10 @@ public class SaveTask implements LongTask, Runnable {
                 lock.releaseLock();
             } else if (cancel) {
                 //Delete temp file
-                FileObject tempFileObject = FileUtil.toFileObject(writeFile);
-                tempFileObject.delete();
+                writeFile.delete();
+            }
+            if (!cancel) {
+                updateWorkspaceArchives();
             }
             Progress.finish(progressTicket);
         } catch (Exception ex) {
@@ -152,7 +174,118 @@ public class SaveTask implements LongTask, Runnable {
         }
     }
 
+    /**
+     * Writes one entry per provider and workspace. Providers of a workspace
+     * are serialized concurrently, each one compressed with zlib in its own
+     * temporary file, and the files are copied in the archive in provider
+     * order as they complete. Entries of workspaces not loaded are copied
+     * from their archive. Each workspace is locked while its entries are
+     * written, so it can't be loaded or unloaded meanwhile.
+     */
+    private void writeWorkspaceEntries(ZipOutputStream zipOut, final int zipLevel) throws Exception {
+        workspaces = project.getLookup().lookup(WorkspaceProviderImpl.class).getWorkspaces();
+        Collection<WorkspacePersistenceProvider> providers = gephiWriter.getProviders();
+        Progress.switchToDeterminate(progressTicket, workspaces.length);
+
+        int threads = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), providers.size()));
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        Map<File, ZipEntriesReader> archiveReaders = new HashMap<File, ZipEntriesReader>();
+        List<Future<File>> futures = new ArrayList<Future<File>>();
+        List<File> entryFiles = new ArrayList<File>();
+        try {
+            for (int i = 0; i < workspaces.length && !cancel; i++) {
+                final Workspace workspace = workspaces[i];
+                synchronized (workspace) {
+                    WorkspaceArchive archive = workspace.getLookup().lookup(WorkspaceArchive.class);
+                    if (archive != null) {
+                        ZipEntriesReader reader = archiveReaders.get(archive.getFile());
+                        if (reader == null) {
+                            reader = new ZipEntriesReader(archive.getFile());
+                            archiveReaders.put(archive.getFile(), reader);
+                        }
+                        for (WorkspacePersistenceProvider provider : providers) {
+                            reader.copyEntry(GephiWriter.getEntryName(archive.getId(), provider), zipOut, GephiWriter.getEntryName(i, provider));
+                        }
+                        copiedArchives.put(workspace, archive);
+                    } else {
+                        futures.clear();
+                        entryFiles.clear();
+                        for (final WorkspacePersistenceProvider provider : providers) {
+                            final File entryFile = File.createTempFile("gephi_entry", null);
+                            entryFiles.add(entryFile);
+                            futures.add(executor.submit(new Callable<File>() {
+
+                                public File call() throws Exception {
+                                    gephiWriter.writeEntry(entryFile, provider, workspace, zipLevel);
+                                    return entryFile;
+                                }
+                            }));
+                        }
+                        int p = 0;
+                        for (WorkspacePersistenceProvider provider : providers) {
+                            File entryFile = getEntryFile(futures.get(p++));
+                            InputStream inputStream = new FileInputStream(entryFile);
+                            try {
+                                GephiWriter.copyEntry(inputStream, zipOut, GephiWriter.getEntryName(i, provider));
+                            } finally {
+                                inputStream.close();
+                            }
+                            entryFile.delete();
+                        }
+                    }
+                }
+                Progress.progress(progressTicket);
+            }
+        } finally {
+            //Wait for providers still running before deleting their files
+            for (Future<File> future : futures) {
+                future.cancel(false);
+            }
+            executor.shutdown();
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+            for (File entryFile : entryFiles) {
+                entryFile.delete();
+            }
+            for (ZipEntriesReader reader : archiveReaders.values()) {
+                reader.close();
+            }
+        }
+    }
+
+    private File getEntryFile(Future<File> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof Exception) {
+                throw (Exception) ex.getCause();
+            }
+            throw ex;
+        }
+    }
+
+    /**
+     * Points workspaces not loaded to the saved file, which is now their
+     * archive. Temporary archives are deleted. Workspaces unloaded after
+     * they have been saved keep their temporary archive, which may be more
+     * recent.
+     */
+    private void updateWorkspaceArchives() {
+        for (int i = 0; i < workspaces.length; i++) {
+            synchronized (workspaces[i]) {
+                WorkspaceArchive archive = workspaces[i].getLookup().lookup(WorkspaceArchive.class);
+                if (archive != null && copiedArchives.get(workspaces[i]) == archive) {
+                    workspaces[i].remove(archive);
+                    workspaces[i].add(new WorkspaceArchive(file, i, false));
+                    if (archive.isTemporary()) {
+                        archive.getFile().delete();
+                    }
+                }
+            }
+        }
+    }
+
     public boolean cancel() {
+        cancel = true;
         if (gephiWriter != null) {
             gephiWriter.cancel();
         }
@@ -0,0 +1,84 @@
+/*
+Copyright 2008-2010 Gephi
+Website : http://www.gephi.org
+
+This file is part of Gephi.
+
+DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+
+Copyright 2011 Gephi Consortium. All rights reserved.
+
+The contents of this file are subject to the terms of either the GNU
+General Public License Version 3 only ("GPL") or the Common
+Development and Distribution License("CDDL") (collectively, the
+"License"). You may not use this file except in compliance with the
+License. You can obtain a copy of the License at
+http://gephi.org/about/legal/license-notice/
+or /cddl-1.0.txt and /gpl-3.0.txt. See the License for the
+specific language governing permissions and limitations under the
+License.  When distributing the software, include this License Header
+Notice in each file and include the License files at
+/cddl-1.0.txt and /gpl-3.0.txt. If applicable, add the following below the
+License Header, with the fields enclosed by brackets [] replaced by
+your own identifying information:
+"Portions Copyrighted [year] [name of copyright owner]"
+
+If you wish your version of this file to be governed by only the CDDL
+or only the GPL Version 3, indicate your decision by adding
+"[Contributor] elects to include this software in this distribution
+under the [CDDL or GPL Version 3] license." If you do not indicate a
+single choice of license, a recipient has the option to distribute
+your version of this file under either the CDDL, the GPL Version 3 or
+to extend the choice of license to its licensees as provided above.
+However, if you add GPL Version 3 code and therefore, elected the GPL
+Version 3 license, then the option applies only if the new code is
+made subject to such option by the copyright holder.
+
+Contributor(s):
+
+Portions Copyrighted 2011 Gephi Consortium.
+*/
+package org.gephi.project.io;
+
+import java.io.File;
+
+/**
+ * Location of the data of a workspace which is not loaded in memory. It is
+ * added to the workspace lookup when a project is opened without loading
+ * the workspace, or when the workspace has been unloaded to free memory.
+ * The data is loaded when the workspace is selected.
+ */
+public class WorkspaceArchive {
+
+    private final File file;
+    private final int id;
+    private final boolean temporary;
+
+    public WorkspaceArchive(File file, int id, boolean temporary) {
+        this.file = file;
+        this.id = id;
+        this.temporary = temporary;
+    }
+
+    /**
+     * Returns the archive file, a .gephi project file or a temporary file.
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Returns the workspace id in the archive entries names.
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Returns <code>true</code> if the file is a temporary file, deleted once
+     * the workspace data has been saved elsewhere.
+     */
+    public boolean isTemporary() {
+        return temporary;
+    }
+}
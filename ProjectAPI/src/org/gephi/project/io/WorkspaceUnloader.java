@@ -0,0 +1,134 @@
+/*
+Copyright 2008-2010 Gephi
+Website : http://www.gephi.org
+
+This file is part of Gephi.
+
+DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+
+Copyright 2011 Gephi Consortium. All rights reserved.
+
+The contents of this file are subject to the terms of either the GNU
+General Public License Version 3 only ("GPL") or the Common
+Development and Distribution License("CDDL") (collectively, the
+"License"). You may not use this file except in compliance with the
+License. You can obtain a copy of the License at
+http://gephi.org/about/legal/license-notice/
+or /cddl-1.0.txt and /gpl-3.0.txt. See the License for the
+specific language governing permissions and limitations under the
+License.  When distributing the software, include this License Header
+Notice in each file and include the License files at
+/cddl-1.0.txt and /gpl-3.0.txt. If applicable, add the following below the
+License Header, with the fields enclosed by brackets [] replaced by
+your own identifying information:
+"Portions Copyrighted [year] [name of copyright owner]"
+
+If you wish your version of this file to be governed by only the CDDL
+or only the GPL Version 3, indicate your decision by adding
+"[Contributor] elects to include this software in this distribution
+under the [CDDL or GPL Version 3] license." If you do not indicate a
+single choice of license, a recipient has the option to distribute
+your version of this file under either the CDDL, the GPL Version 3 or
+to extend the choice of license to its licensees as provided above.
+However, if you add GPL Version 3 code and therefore, elected the GPL
+Version 3 license, then the option applies only if the new code is
+made subject to such option by the copyright holder.
+
+Contributor(s):
+
+Portions Copyrighted 2011 Gephi Consortium.
+*/
+package org.gephi.project.io;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.Deflater;
+import java.util.zip.ZipOutputStream;
+import org.gephi.project.api.Workspace;
+import org.gephi.project.spi.WorkspacePersistenceProvider;
+
+/**
+ * Writes workspaces to temporary archives, so their data can be removed from
+ * memory when it's low. Unloading is disabled by default.
+ * <p>
+ * Memory is considered low when a tenured heap memory pool is still used
+ * above the threshold after the last garbage collection. Young generation
+ * pools are not monitored, survivor spaces are often nearly full after a
+ * collection while plenty of memory is left.
+ */
+public class WorkspaceUnloader {
+
+    private final List<MemoryPoolMXBean> pools;
+    private boolean enabled = false;
+    private int threshold = 80;
+
+    public WorkspaceUnloader() {
+        pools = new ArrayList<MemoryPoolMXBean>();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            //Only tenured pools support usage thresholds
+            if (pool.getType() == MemoryType.HEAP && pool.isUsageThresholdSupported()
+                    && pool.isCollectionUsageThresholdSupported()) {
+                pools.add(pool);
+            }
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Sets the heap usage, in percent of the maximum, above which memory is
+     * low. Default is 80.
+     * @param threshold the threshold percentage
+     */
+    public void setThreshold(int threshold) {
+        this.threshold = threshold;
+    }
+
+    public boolean isMemoryLow() {
+        for (MemoryPoolMXBean pool : pools) {
+            long max = pool.getUsage().getMax();
+            MemoryUsage collectionUsage = pool.getCollectionUsage();
+            if (max > 0 && collectionUsage != null && collectionUsage.getUsed() > max / 100 * threshold) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Writes the data of <code>workspace</code> in a temporary archive. The
+     * workspace itself is not modified.
+     * @param workspace the workspace to write
+     * @return the location of the workspace data
+     */
+    public WorkspaceArchive unload(Workspace workspace) throws Exception {
+        File file = File.createTempFile("gephi_workspace", ".zip");
+        file.deleteOnExit();
+        GephiWriter writer = new GephiWriter();
+        ZipOutputStream zipOut = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+        try {
+            for (WorkspacePersistenceProvider provider : writer.getProviders()) {
+                writer.writeEntry(zipOut, GephiWriter.getEntryName(0, provider), provider, workspace, Deflater.BEST_SPEED);
+            }
+        } catch (Exception ex) {
+            zipOut.close();
+            file.delete();
+            throw ex;
+        }
+        zipOut.close();
+        return new WorkspaceArchive(file, 0, true);
+    }
+}
@@ -0,0 +1,251 @@
+/*
+Copyright 2008-2010 Gephi
+Website : http://www.gephi.org
+
+This file is part of Gephi.
+
+DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+
+Copyright 2011 Gephi Consortium. All rights reserved.
+
+The contents of this file are subject to the terms of either the GNU
+General Public License Version 3 only ("GPL") or the Common
+Development and Distribution License("CDDL") (collectively, the
+"License"). You may not use this file except in compliance with the
+License. You can obtain a copy of the License at
+http://gephi.org/about/legal/license-notice/
+or /cddl-1.0.txt and /gpl-3.0.txt. See the License for the
+specific language governing permissions and limitations under the
+License.  When distributing the software, include this License Header
+Notice in each file and include the License files at
+/cddl-1.0.txt and /gpl-3.0.txt. If applicable, add the following below the
+License Header, with the fields enclosed by brackets [] replaced by
+your own identifying information:
+"Portions Copyrighted [year] [name of copyright owner]"
+
+If you wish your version of this file to be governed by only the CDDL
+or only the GPL Version 3, indicate your decision by adding
+"[Contributor] elects to include this software in this distribution
+under the [CDDL or GPL Version 3] license." If you do not indicate a
+single choice of license, a recipient has the option to distribute
+your version of this file under either the CDDL, the GPL Version 3 or
+to extend the choice of license to its licensees as provided above.
+However, if you add GPL Version 3 code and therefore, elected the GPL
+Version 3 license, then the option applies only if the new code is
+made subject to such option by the copyright holder.
+
+Contributor(s):
+
+Portions Copyrighted 2011 Gephi Consortium.
+*/
+package org.gephi.project.io;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Reads the entries of a .gephi archive. Workspace entries are compressed
+ * with zlib, they are inflated while they are read so no entry is held in
+ * memory. Entries can be inflated ahead in temporary files on a thread pool
+ * with {@link #prefetch(Collection)}, while previous entries are parsed.
+ */
+public class ZipEntriesReader {
+
+    public static final String PROJECT_ENTRY = "Project";
+    private final File file;
+    private final ZipFile zipFile;
+    private final Map<String, Future<File>> prefetched = new HashMap<String, Future<File>>();
+    private final List<File> tempFiles = new ArrayList<File>();
+    private ExecutorService executor;
+
+    public ZipEntriesReader(File file) throws IOException {
+        this.file = file;
+        zipFile = new ZipFile(file);
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Returns the project entry stream. Projects written before workspace
+     * entries existed have a single entry, which is returned if no entry is
+     * named <code>Project</code>.
+     */
+    public InputStream getProjectInputStream() throws IOException {
+        ZipEntry entry = zipFile.getEntry(PROJECT_ENTRY);
+        if (entry == null) {
+            Enumeration<? extends ZipEntry> entries = zipFile.entries();
+            if (!entries.hasMoreElements()) {
+                throw new GephiFormatException("The project file is empty");
+            }
+            entry = entries.nextElement();
+        }
+        return zipFile.getInputStream(entry);
+    }
+
+    /**
+     * Starts inflating the entries <code>names</code> in temporary files, so
+     * they are ready when {@link #getInputStream(String)} is called. Entries
+     * the archive doesn't contain are ignored.
+     * @param names the entry names
+     */
+    public synchronized void prefetch(Collection<String> names) throws IOException {
+        if (executor == null) {
+            executor = Executors.newFixedThreadPool(Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), names.size())));
+        }
+        for (String name : names) {
+            final ZipEntry entry = zipFile.getEntry(name);
+            if (entry == null || prefetched.containsKey(name)) {
+                continue;
+            }
+            final File tempFile = File.createTempFile("gephi_entry", null);
+            tempFiles.add(tempFile);
+            prefetched.put(name, executor.submit(new Callable<File>() {
+
+                public File call() throws Exception {
+                    InputStream inputStream = inflate(entry);
+                    try {
+                        OutputStream outputStream = new FileOutputStream(tempFile);
+                        try {
+                            byte[] buffer = new byte[65536];
+                            int read;
+                            while ((read = inputStream.read(buffer)) != -1) {
+                                outputStream.write(buffer, 0, read);
+                            }
+                        } finally {
+                            outputStream.close();
+                        }
+                    } finally {
+                        inputStream.close();
+                    }
+                    return tempFile;
+                }
+            }));
+        }
+    }
+
+    /**
+     * Returns the uncompressed content of the entry <code>name</code> as a
+     * stream, or <code>null</code> if the archive doesn't contain this entry.
+     * A prefetched entry is read from its temporary file once inflated.
+     * @param name the entry name
+     * @return the entry stream or <code>null</code>
+     */
+    public InputStream getInputStream(String name) throws IOException {
+        Future<File> future;
+        synchronized (this) {
+            future = prefetched.remove(name);
+        }
+        if (future != null) {
+            final File tempFile;
+            try {
+                tempFile = future.get();
+            } catch (InterruptedException ex) {
+                throw new InterruptedIOException();
+            } catch (ExecutionException ex) {
+                if (ex.getCause() instanceof IOException) {
+                    throw (IOException) ex.getCause();
+                }
+                throw new IOException(ex.getCause());
+            }
+            return new FileInputStream(tempFile) {
+
+                @Override
+                public void close() throws IOException {
+                    super.close();
+                    tempFile.delete();
+                }
+            };
+        }
+        ZipEntry entry = zipFile.getEntry(name);
+        if (entry == null) {
+            return null;
+        }
+        return inflate(entry);
+    }
+
+    private InputStream inflate(ZipEntry entry) throws IOException {
+        return new InflaterInputStream(zipFile.getInputStream(entry), new Inflater(), 65536) {
+
+            @Override
+            public void close() throws IOException {
+                super.close();
+                inf.end();
+            }
+        };
+    }
+
+    /**
+     * Copies the entry <code>name</code> to <code>zipOut</code> as the entry
+     * <code>newName</code>, without inflating it.
+     * @param name      the entry name in this archive
+     * @param zipOut    the archive stream to copy to
+     * @param newName   the entry name in <code>zipOut</code>
+     * @return <code>false</code> if the archive doesn't contain this entry
+     */
+    public boolean copyEntry(String name, ZipOutputStream zipOut, String newName) throws IOException {
+        ZipEntry entry = zipFile.getEntry(name);
+        if (entry == null) {
+            return false;
+        }
+        InputStream inputStream = zipFile.getInputStream(entry);
+        try {
+            GephiWriter.copyEntry(inputStream, zipOut, newName);
+        } finally {
+            inputStream.close();
+        }
+        return true;
+    }
+
+    /**
+     * Closes the archive. Entries still being prefetched are waited for and
+     * temporary files not read are deleted.
+     */
+    public void close() {
+        synchronized (this) {
+            if (executor != null) {
+                for (Future<File> future : prefetched.values()) {
+                    future.cancel(false);
+                }
+                prefetched.clear();
+                executor.shutdown();
+                try {
+                    executor.awaitTermination(1, TimeUnit.MINUTES);
+                } catch (InterruptedException ex) {
+                }
+                executor = null;
+            }
+            for (File tempFile : tempFiles) {
+                tempFile.delete();
+            }
+            tempFiles.clear();
+        }
+        try {
+            zipFile.close();
+        } catch (IOException ex) {
+        }
+    }
+}
@@ -51,13 +51,16 @@ import org.gephi.project.api.Workspace;
  * <h3>How saving a project works</h3>
  * <ol><li>The saving task is looking for all implementations of this interface and
  * asks to return an XML element that represents data for each workspace.</li>
- * <li>All of these elements are written in the .gephi project file.</li></ol>
+ * <li>The elements of each provider are written in their own entry of the .gephi
+ * project file, one entry per workspace.</li></ol>
  * <h3>How loading a project works</h3>
  * <ol><li>The loading task is looking for all implementations of this interface and
  * asks for the identifier returned by <code>getIdentifier()</code>.</li>
  * <li>When traversing the gephi project XML document it tries to match markups with
  * identifiers. When match, call this provider <code>readXML()</code> method
  * with the XML element.</li></ol>
+ * Providers with large data can implement {@link WorkspaceBytesPersistenceProvider}
+ * to be saved in a binary form instead.
  * Thus this interface allows any module to serialize and deserialize its data
  * to gephi project files.
  * 
@@ -42,6 +42,7 @@ Portions Copyrighted 2011 Gephi Consortium.
 package org.gephi.workspace.impl;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import javax.swing.event.ChangeEvent;
 import javax.swing.event.ChangeListener;
@@ -81,6 +82,15 @@ public class WorkspaceImpl implements Workspace {
         instanceContent.remove(instance);
     }
 
+    /**
+     * Removes all instances from the workspace but its information, so
+     * models can be garbage collected.
+     */
+    public void clear() {
+        WorkspaceInformationImpl information = lookup.lookup(WorkspaceInformationImpl.class);
+        instanceContent.set(Collections.singleton(information), null);
+    }
+
     public Lookup getLookup() {
         return lookup;
     }
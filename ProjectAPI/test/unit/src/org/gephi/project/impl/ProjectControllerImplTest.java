@@ -0,0 +1,262 @@
+/*
+Copyright 2008-2010 Gephi
+Website : http://www.gephi.org
+
+This file is part of Gephi.
+
+DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+
+Copyright 2011 Gephi Consortium. All rights reserved.
+
+The contents of this file are subject to the terms of either the GNU
+General Public License Version 3 only ("GPL") or the Common
+Development and Distribution License("CDDL") (collectively, the
+"License"). You may not use this file except in compliance with the
+License. You can obtain a copy of the License at
+http://gephi.org/about/legal/license-notice/
+or /cddl-1.0.txt and /gpl-3.0.txt. See the License for the
+specific language governing permissions and limitations under the
+License.  When distributing the software, include this License Header
+Notice in each file and include the License files at
+/cddl-1.0.txt and /gpl-3.0.txt. If applicable, add the following below the
+License Header, with the fields enclosed by brackets [] replaced by
+your own identifying information:
+"Portions Copyrighted [year] [name of copyright owner]"
+
+If you wish your version of this file to be governed by only the CDDL
+or only the GPL Version 3, indicate your decision by adding
+"[Contributor] elects to include this software in this distribution
+under the [CDDL or GPL Version 3] license." If you do not indicate a
+single choice of license, a recipient has the option to distribute
+your version of this file under either the CDDL, the GPL Version 3 or
+to extend the choice of license to its licensees as provided above.
+However, if you add GPL Version 3 code and therefore, elected the GPL
+Version 3 license, then the option applies only if the new code is
+made subject to such option by the copyright holder.
+
+Contributor(s):
+
+Portions Copyrighted 2011 Gephi Consortium.
+*/
+package org.gephi.project.impl;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import org.gephi.data.attributes.api.AttributeColumn;
+import org.gephi.data.attributes.api.AttributeController;
+import org.gephi.data.attributes.api.AttributeModel;
+import org.gephi.data.attributes.api.AttributeType;
+import org.gephi.graph.api.DirectedGraph;
+import org.gephi.graph.api.Edge;
+import org.gephi.graph.api.GraphController;
+import org.gephi.graph.api.GraphModel;
+import org.gephi.graph.api.Node;
+import org.gephi.project.api.ProjectController;
+import org.gephi.project.api.Workspace;
+import org.gephi.project.api.WorkspaceListener;
+import org.gephi.project.io.WorkspaceArchive;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openide.util.Lookup;
+import static org.junit.Assert.*;
+
+public class ProjectControllerImplTest {
+
+    private ProjectControllerImpl projectController;
+
+    @Before
+    public void setUp() {
+        projectController = (ProjectControllerImpl) Lookup.getDefault().lookup(ProjectController.class);
+        projectController.newProject();
+    }
+
+    @After
+    public void tearDown() {
+        projectController.closeCurrentProject();
+        projectController = null;
+    }
+
+    private void createGraph(Workspace workspace) {
+        GraphModel graphModel = Lookup.getDefault().lookup(GraphController.class).getModel(workspace);
+        AttributeModel attributeModel = Lookup.getDefault().lookup(AttributeController.class).getModel(workspace);
+        AttributeColumn column = attributeModel.getNodeTable().addColumn("score", AttributeType.DOUBLE);
+        DirectedGraph graph = graphModel.getDirectedGraph();
+        Node[] nodes = new Node[10];
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = graphModel.factory().newNode("n" + i);
+            nodes[i].getNodeData().setLabel("Node " + i);
+            nodes[i].getNodeData().setX(i * 10f);
+            nodes[i].getNodeData().getAttributes().setValue(column.getIndex(), i / 2.0);
+            graph.addNode(nodes[i]);
+        }
+        for (int i = 1; i < nodes.length; i++) {
+            graph.addEdge(graphModel.factory().newEdge(nodes[i - 1], nodes[i], i, true));
+        }
+    }
+
+    @Test
+    public void testUnloadAndReload() throws Exception {
+        ProjectImpl project = projectController.getCurrentProject();
+        Workspace workspace = projectController.getCurrentWorkspace();
+        createGraph(workspace);
+
+        //The selected workspace is never unloaded
+        assertFalse(projectController.unloadWorkspace(project, workspace));
+
+        Workspace other = projectController.newWorkspace(project);
+        projectController.openWorkspace(other);
+        assertTrue(projectController.unloadWorkspace(project, workspace));
+        WorkspaceArchive archive = workspace.getLookup().lookup(WorkspaceArchive.class);
+        assertNotNull(archive);
+        assertTrue(archive.getFile().exists());
+        assertNull(workspace.getLookup().lookup(GraphModel.class));
+        assertNull(workspace.getLookup().lookup(AttributeModel.class));
+        assertFalse(projectController.unloadWorkspace(project, workspace));
+
+        //Loaded again when selected
+        projectController.openWorkspace(workspace);
+        assertSame(workspace, projectController.getCurrentWorkspace());
+        assertNull(workspace.getLookup().lookup(WorkspaceArchive.class));
+        assertFalse(archive.getFile().exists());
+
+        GraphModel graphModel = Lookup.getDefault().lookup(GraphController.class).getModel(workspace);
+        AttributeModel attributeModel = Lookup.getDefault().lookup(AttributeController.class).getModel(workspace);
+        DirectedGraph graph = graphModel.getDirectedGraph();
+        assertEquals(10, graph.getNodeCount());
+        assertEquals(9, graph.getEdgeCount());
+        AttributeColumn column = attributeModel.getNodeTable().getColumn("score");
+        assertNotNull(column);
+        assertEquals(AttributeType.DOUBLE, column.getType());
+        for (int i = 0; i < 10; i++) {
+            Node node = graph.getNode("n" + i);
+            assertNotNull(node);
+            assertEquals("Node " + i, node.getNodeData().getLabel());
+            assertEquals(i * 10f, node.getNodeData().x(), 0f);
+            assertEquals(i / 2.0, node.getNodeData().getAttributes().getValue(column.getIndex()));
+        }
+        for (int i = 1; i < 10; i++) {
+            Edge edge = graph.getEdge(graph.getNode("n" + (i - 1)), graph.getNode("n" + i));
+            assertNotNull(edge);
+            assertEquals((float) i, edge.getWeight(), 0f);
+        }
+    }
+
+    @Test
+    public void testUnloadEvents() throws Exception {
+        ProjectImpl project = projectController.getCurrentProject();
+        Workspace workspace = projectController.getCurrentWorkspace();
+        createGraph(workspace);
+        projectController.openWorkspace(projectController.newWorkspace(project));
+
+        EventRecorder recorder = new EventRecorder();
+        projectController.addWorkspaceListener(recorder);
+        try {
+            assertTrue(projectController.unloadWorkspace(project, workspace));
+            assertEquals(1, recorder.closed.size());
+            assertSame(workspace, recorder.closed.get(0));
+
+            projectController.openWorkspace(workspace);
+            assertEquals(1, recorder.initialized.size());
+            assertSame(workspace, recorder.initialized.get(0));
+        } finally {
+            projectController.removeWorkspaceListener(recorder);
+        }
+    }
+
+    @Test
+    public void testCurrentWorkspaceWhileLoading() throws Exception {
+        ProjectImpl project = projectController.getCurrentProject();
+        Workspace workspace = projectController.getCurrentWorkspace();
+        createGraph(workspace);
+        Workspace other = projectController.newWorkspace(project);
+        projectController.openWorkspace(other);
+        assertTrue(projectController.unloadWorkspace(project, workspace));
+
+        //Readers see the workspace being loaded as the current workspace
+        final List<Workspace> current = new ArrayList<Workspace>();
+        WorkspaceListener listener = new EventRecorder() {
+
+            @Override
+            public void initialize(Workspace workspace) {
+                current.add(projectController.getCurrentWorkspace());
+            }
+        };
+        projectController.addWorkspaceListener(listener);
+        try {
+            projectController.openWorkspace(workspace);
+        } finally {
+            projectController.removeWorkspaceListener(listener);
+        }
+        assertEquals(1, current.size());
+        assertSame(workspace, current.get(0));
+        assertSame(workspace, projectController.getCurrentWorkspace());
+    }
+
+    @Test
+    public void testDuplicateNotLoaded() throws Exception {
+        ProjectImpl project = projectController.getCurrentProject();
+        Workspace workspace = projectController.getCurrentWorkspace();
+        createGraph(workspace);
+        Workspace other = projectController.newWorkspace(project);
+        projectController.openWorkspace(other);
+        assertTrue(projectController.unloadWorkspace(project, workspace));
+
+        //The source is read and duplicated, only the duplicate is selected
+        EventRecorder recorder = new EventRecorder();
+        projectController.addWorkspaceListener(recorder);
+        Workspace duplicate;
+        try {
+            duplicate = projectController.duplicateWorkspace(workspace);
+        } finally {
+            projectController.removeWorkspaceListener(recorder);
+        }
+        assertEquals(1, recorder.selected.size());
+        assertSame(duplicate, recorder.selected.get(0));
+        assertSame(duplicate, projectController.getCurrentWorkspace());
+        assertNull(workspace.getLookup().lookup(WorkspaceArchive.class));
+
+        GraphModel graphModel = Lookup.getDefault().lookup(GraphController.class).getModel(duplicate);
+        assertEquals(10, graphModel.getDirectedGraph().getNodeCount());
+        assertEquals(9, graphModel.getDirectedGraph().getEdgeCount());
+    }
+
+    @Test
+    public void testTemporaryArchiveDeletedOnClose() {
+        ProjectImpl project = projectController.getCurrentProject();
+        Workspace workspace = projectController.getCurrentWorkspace();
+        createGraph(workspace);
+        projectController.openWorkspace(projectController.newWorkspace(project));
+        assertTrue(projectController.unloadWorkspace(project, workspace));
+        File file = workspace.getLookup().lookup(WorkspaceArchive.class).getFile();
+
+        projectController.closeCurrentProject();
+        assertFalse(file.exists());
+    }
+
+    private static class EventRecorder implements WorkspaceListener {
+
+        final List<Workspace> initialized = new ArrayList<Workspace>();
+        final List<Workspace> selected = new ArrayList<Workspace>();
+        final List<Workspace> closed = new ArrayList<Workspace>();
+
+        public void initialize(Workspace workspace) {
+            initialized.add(workspace);
+        }
+
+        public void select(Workspace workspace) {
+            selected.add(workspace);
+        }
+
+        public void unselect(Workspace workspace) {
+        }
+
+        public void close(Workspace workspace) {
+            closed.add(workspace);
+        }
+
+        public void disable() {
+        }
+    }
+}
@@ -0,0 +1,205 @@
+/*
+Copyright 2008-2010 Gephi
+Website : http://www.gephi.org
+
+This file is part of Gephi.
+
+DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+
+Copyright 2011 Gephi Consortium. All rights reserved.
+
+The contents of this file are subject to the terms of either the GNU
+General Public License Version 3 only ("GPL") or the Common
+Development and Distribution License("CDDL") (collectively, the
+"License"). You may not use this file except in compliance with the
+License. You can obtain a copy of the License at
+http://gephi.org/about/legal/license-notice/
+or /cddl-1.0.txt and /gpl-3.0.txt. See the License for the
+specific language governing permissions and limitations under the
+License.  When distributing the software, include this License Header
+Notice in each file and include the License files at
+/cddl-1.0.txt and /gpl-3.0.txt. If applicable, add the following below the
+License Header, with the fields enclosed by brackets [] replaced by
+your own identifying information:
+"Portions Copyrighted [year] [name of copyright owner]"
+
+If you wish your version of this file to be governed by only the CDDL
+or only the GPL Version 3, indicate your decision by adding
+"[Contributor] elects to include this software in this distribution
+under the [CDDL or GPL Version 3] license." If you do not indicate a
+single choice of license, a recipient has the option to distribute
+your version of this file under either the CDDL, the GPL Version 3 or
+to extend the choice of license to its licensees as provided above.
+However, if you add GPL Version 3 code and therefore, elected the GPL
+Version 3 license, then the option applies only if the new code is
+made subject to such option by the copyright holder.
+
+Contributor(s):
+
+Portions Copyrighted 2011 Gephi Consortium.
+*/
+package org.gephi.project.io;
+
+import java.io.File;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import org.gephi.data.attributes.api.AttributeColumn;
+import org.gephi.data.attributes.api.AttributeController;
+import org.gephi.data.attributes.api.AttributeModel;
+import org.gephi.data.attributes.api.AttributeType;
+import org.gephi.graph.api.DirectedGraph;
+import org.gephi.graph.api.Edge;
+import org.gephi.graph.api.GraphController;
+import org.gephi.graph.api.GraphModel;
+import org.gephi.graph.api.Node;
+import org.gephi.project.api.Project;
+import org.gephi.project.api.ProjectController;
+import org.gephi.project.api.Workspace;
+import org.gephi.project.api.WorkspaceProvider;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openide.util.Lookup;
+import static org.junit.Assert.*;
+
+public class SaveTaskTest {
+
+    private ProjectController projectController;
+    private File file;
+
+    @Before
+    public void setUp() throws Exception {
+        projectController = Lookup.getDefault().lookup(ProjectController.class);
+        projectController.newProject();
+        file = File.createTempFile("project", ".gephi");
+        file.delete();
+    }
+
+    @After
+    public void tearDown() {
+        projectController.closeCurrentProject();
+        file.delete();
+        projectController = null;
+    }
+
+    private void createGraph(Workspace workspace, int size) {
+        GraphModel graphModel = Lookup.getDefault().lookup(GraphController.class).getModel(workspace);
+        AttributeModel attributeModel = Lookup.getDefault().lookup(AttributeController.class).getModel(workspace);
+        AttributeColumn score = attributeModel.getNodeTable().addColumn("score", AttributeType.DOUBLE);
+        AttributeColumn kind = attributeModel.getEdgeTable().addColumn("kind", AttributeType.STRING);
+        DirectedGraph graph = graphModel.getDirectedGraph();
+        Node[] nodes = new Node[size];
+        for (int i = 0; i < size; i++) {
+            nodes[i] = graphModel.factory().newNode("n" + i);
+            nodes[i].getNodeData().setLabel("Node " + i);
+            nodes[i].getNodeData().getAttributes().setValue(score.getIndex(), i * 1.5);
+            graph.addNode(nodes[i]);
+        }
+        for (int i = 1; i < size; i++) {
+            Edge edge = graphModel.factory().newEdge(nodes[i - 1], nodes[i], i, true);
+            edge.getEdgeData().getAttributes().setValue(kind.getIndex(), "e" + i);
+            graph.addEdge(edge);
+        }
+    }
+
+    private void assertGraph(Workspace workspace, int size) {
+        GraphModel graphModel = Lookup.getDefault().lookup(GraphController.class).getModel(workspace);
+        AttributeModel attributeModel = Lookup.getDefault().lookup(AttributeController.class).getModel(workspace);
+        DirectedGraph graph = graphModel.getDirectedGraph();
+        assertEquals(size, graph.getNodeCount());
+        assertEquals(size - 1, graph.getEdgeCount());
+        AttributeColumn score = attributeModel.getNodeTable().getColumn("score");
+        AttributeColumn kind = attributeModel.getEdgeTable().getColumn("kind");
+        assertNotNull(score);
+        assertNotNull(kind);
+        for (int i = 0; i < size; i++) {
+            Node node = graph.getNode("n" + i);
+            assertEquals("Node " + i, node.getNodeData().getLabel());
+            assertEquals(i * 1.5, node.getNodeData().getAttributes().getValue(score.getIndex()));
+        }
+        for (int i = 1; i < size; i++) {
+            Edge edge = graph.getEdge(graph.getNode("n" + (i - 1)), graph.getNode("n" + i));
+            assertEquals((float) i, edge.getWeight(), 0f);
+            assertEquals("e" + i, edge.getEdgeData().getAttributes().getValue(kind.getIndex()));
+        }
+    }
+
+    private Workspace[] load(File file) {
+        new LoadTask(file).run();
+        Project project = projectController.getCurrentProject();
+        return project.getLookup().lookup(WorkspaceProvider.class).getWorkspaces();
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        Project project = projectController.getCurrentProject();
+        Workspace first = projectController.getCurrentWorkspace();
+        createGraph(first, 20);
+        Workspace second = projectController.newWorkspace(project);
+        createGraph(second, 5);
+        new SaveTask(project, file).run();
+
+        //One entry per workspace and provider
+        Set<String> names = new HashSet<String>();
+        ZipFile zipFile = new ZipFile(file);
+        for (Enumeration<? extends ZipEntry> e = zipFile.entries(); e.hasMoreElements();) {
+            names.add(e.nextElement().getName());
+        }
+        zipFile.close();
+        assertTrue(names.contains(ZipEntriesReader.PROJECT_ENTRY));
+        assertTrue(names.contains("Workspace_0_Dhns"));
+        assertTrue(names.contains("Workspace_1_Dhns"));
+
+        projectController.closeCurrentProject();
+        Workspace[] workspaces = load(file);
+        assertEquals(2, workspaces.length);
+        assertGraph(projectController.getCurrentWorkspace(), 20);
+
+        //The second workspace is loaded when selected
+        Workspace loadedSecond = workspaces[0] == projectController.getCurrentWorkspace() ? workspaces[1] : workspaces[0];
+        assertNotNull(loadedSecond.getLookup().lookup(WorkspaceArchive.class));
+        projectController.openWorkspace(loadedSecond);
+        assertNull(loadedSecond.getLookup().lookup(WorkspaceArchive.class));
+        assertGraph(loadedSecond, 5);
+    }
+
+    @Test
+    public void testSaveWorkspaceNotLoaded() throws Exception {
+        Project project = projectController.getCurrentProject();
+        createGraph(projectController.getCurrentWorkspace(), 10);
+        createGraph(projectController.newWorkspace(project), 7);
+        new SaveTask(project, file).run();
+        projectController.closeCurrentProject();
+
+        //Entries of the workspace not loaded are copied to the new file
+        Workspace[] workspaces = load(file);
+        File copy = File.createTempFile("copy", ".gephi");
+        copy.delete();
+        try {
+            new SaveTask(projectController.getCurrentProject(), copy).run();
+            projectController.closeCurrentProject();
+            workspaces = load(copy);
+            for (Workspace workspace : workspaces) {
+                projectController.openWorkspace(workspace);
+            }
+            assertGraph(workspaces[0], 10);
+            assertGraph(workspaces[1], 7);
+        } finally {
+            projectController.closeCurrentProject();
+            copy.delete();
+        }
+    }
+
+    @Test
+    public void testCancel() throws Exception {
+        Project project = projectController.getCurrentProject();
+        createGraph(projectController.getCurrentWorkspace(), 10);
+        SaveTask saveTask = new SaveTask(project, file);
+        saveTask.cancel();
+        saveTask.run();
+        assertFalse(file.exists());
+    }
+}
@@ -43,10 +43,17 @@ package org.gephi.statistics.plugin;
 
 import java.text.DecimalFormat;
 import java.text.NumberFormat;
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Comparator;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.gephi.statistics.spi.Statistics;
 import org.gephi.graph.api.Node;
 import org.gephi.data.attributes.api.AttributeTable;
@@ -55,10 +62,9 @@ import org.gephi.data.attributes.api.AttributeModel;
 import org.gephi.data.attributes.api.AttributeOrigin;
 import org.gephi.data.attributes.api.AttributeRow;
 import org.gephi.data.attributes.api.AttributeType;
-import org.gephi.graph.api.Edge;
+import org.gephi.graph.api.AdjacencySnapshot;
 import org.gephi.graph.api.GraphController;
 import org.gephi.graph.api.GraphModel;
-import org.gephi.graph.api.HierarchicalDirectedGraph;
 import org.gephi.graph.api.HierarchicalGraph;
 import org.gephi.utils.longtask.spi.LongTask;
 import org.gephi.utils.progress.Progress;
@@ -71,151 +77,64 @@ import org.jfree.data.xy.XYSeriesCollection;
 import org.openide.util.Lookup;
 
 /**
+ * Counts the triangles of each node and computes their local clustering
+ * coefficient.
+ * <p>
+ * Nodes are ranked by increasing degree and each edge is oriented towards its
+ * highest ranked extremity. Every triangle is then found exactly once, by
+ * intersecting the sorted forward lists of its two lowest ranked nodes. These
+ * lists contain at most <code>sqrt(2m)</code> nodes, so hubs stay cheap.
+ * Intersections merge both lists, or gallop through the longest one when their
+ * sizes are very different. Node ranges are processed by worker threads.
+ * <p>
+ * In directed mode, neighbours linked in both directions count twice and the
+ * coefficient is the number of directed edges between the neighbours of a
+ * node divided by <code>k(k-1)</code>.
+ * <p>
+ * The approximate mode estimates the coefficient of each node from a uniform
+ * sample of its wedges, i.e. pairs of neighbours. Nodes with fewer wedges than
+ * the sample size are counted exactly.
+ * <p>
  * Ref: Matthieu Latapy, Main-memory Triangle Computations for Very Large (Sparse (Power-Law)) Graphs,
  * in Theoretical Computer Science (TCS) 407 (1-3), pages 458-473, 2008
- *
- * @author pjmcswee
- */
-class Renumbering implements Comparator<EdgeWrapper> {
-
-    public int compare(EdgeWrapper o1, EdgeWrapper o2) {
-        if (o1.wrapper.getID() < o2.wrapper.getID()) {
-            return -1;
-        } else if (o1.wrapper.getID() > o2.wrapper.getID()) {
-            return 1;
-        } else {
-            return 0;
-        }
-    }
-}
-
-/**
- *
- * @author pjmcswee
- */
-class EdgeWrapper {
-
-    public int count;
-    public ArrayWrapper wrapper;
-
-    public EdgeWrapper(int count, ArrayWrapper wrapper) {
-        this.count = count;
-        this.wrapper = wrapper;
-    }
-}
-
-/**
- *
- * @author pjmcswee
- */
-class ArrayWrapper implements Comparable {
-
-    private EdgeWrapper[] array;
-    private int ID;
-    public Node node;
-
-    /** Empty Constructor/ */
-    ArrayWrapper() {
-    }
-
-    /**
-     *
-     * @return The ID of this array wrapper
-     */
-    public int getID() {
-        return ID;
-    }
-
-    /**
-     *
-     * @return The adjacency array
-     */
-    public EdgeWrapper[] getArray() {
-        return array;
-    }
-
-    public void setArray(EdgeWrapper[] array) {
-        this.array = array;
-    }
-
-    /**
-     *
-     * @param pArray
-     */
-    ArrayWrapper(int ID, EdgeWrapper[] array) {
-        this.array = array;
-        this.ID = ID;
-    }
-
-    public void setID(int ID) {
-        this.ID = ID;
-    }
-
-    /**
-     *
-     * @param pIndex
-     * @return
-     */
-    public int get(int index) {
-        if (index >= array.length) {
-            return -1;
-        }
-        return array[index].wrapper.ID;
-    }
-
-    public int getCount(int index) {
-        if (index >= array.length) {
-            return -1;
-        }
-        return array[index].count;
-    }
-
-    /**
-     *
-     * @return
-     */
-    public int length() {
-        return array.length;
-    }
-
-    /**
-     *
-     * @param o
-     * @return
-     */
-    public int compareTo(Object o) {
-        ArrayWrapper aw = (ArrayWrapper) o;
-        if (aw.length() < length()) {
-            return -1;
-        }
-        if (aw.length() > length()) {
-            return 1;
-        }
-        return 0;
-    }
-}
-
-/**
+ * <p>
+ * Ref: Thomas Schank, Dorothea Wagner, Approximating Clustering Coefficient and Transitivity,
+ * in Journal of Graph Algorithms and Applications (JGAA) 9 (2), pages 265-275, 2005
  *
  * @author Patrick J. McSweeney
  */
 public class ClusteringCoefficient implements Statistics, LongTask {
 
     public static final String CLUSTERING_COEFF = "clustering";
+    /** Number of consecutive nodes taken by a worker at once. */
+    private static final int CHUNK_SIZE = 64;
+    /** Length ratio above which intersections gallop instead of merging. */
+    private static final int GALLOP_RATIO = 32;
     /** The avergage Clustering Coefficient.*/
     private double avgClusteringCoeff;
     /**Indicates should treat graph as undirected.*/
     private boolean isDirected;
     /** Indicates statistics should stop processing/*/
-    private boolean isCanceled;
+    private volatile boolean isCanceled;
     /** Keeps track of Progress made. */
     private ProgressTicket progress;
-    private int[] triangles;
-    private ArrayWrapper[] network;
-    private int K;
+    private int threadCount = Runtime.getRuntime().availableProcessors();
+    //Approximation
+    private boolean approximate;
+    private int wedgeSamples = 256;
+    private double estimatedError;
+    //Neighbours, sorted and without self-loops
     private int N;
+    private Node[] nodes;
+    private int[] offsets;
+    private int[] neighbours;
+    private byte[] multiplicities;
+    private int[] degrees;
+    //Results
+    private int[] triangles;
     private double[] nodeClustering;
-    private int totalTriangles;
+    private long totalTriangles;
+    private AtomicInteger processed;
 
     public ClusteringCoefficient() {
         GraphController graphController = Lookup.getDefault().lookup(GraphController.class);
@@ -243,7 +162,9 @@ public class ClusteringCoefficient implements Statistics, LongTask {
         isCanceled = false;
 
         triangles(hgraph);
-        //bruteForce(hgraph, attributeModel);
+        if (isCanceled) {
+            return;
+        }
 
         //Set results in columns
         AttributeTable nodeTable = attributeModel.getNodeTable();
@@ -258,291 +179,413 @@ public class ClusteringCoefficient implements Statistics, LongTask {
         }
 
         for (int v = 0; v < N; v++) {
-            if (network[v].length() > 1) {
-                AttributeRow row = (AttributeRow) network[v].node.getNodeData().getAttributes();
+            if (degrees[v] > 1) {
+                AttributeRow row = (AttributeRow) nodes[v].getNodeData().getAttributes();
                 row.setValue(clusteringCol, nodeClustering[v]);
                 row.setValue(triCount, triangles[v]);
             }
         }
     }
 
-    private int closest_in_array(int v) {
-        int right = network[v].length() - 1;
-
-        /* optimization for extreme cases */
-        if (right < 0) {
-            return (-1);
+    public void triangles(HierarchicalGraph hgraph) {
+        AdjacencySnapshot snapshot;
+        hgraph.readLock();
+        try {
+            snapshot = hgraph.getGraphModel().getAdjacencySnapshot(hgraph.getView(), false);
+        } finally {
+            hgraph.readUnlockAll();
         }
-        if (network[v].get(0) >= v) {
-            return (-1);
+
+        N = snapshot.getNodeCount();
+        nodes = snapshot.getNodes();
+        triangles = new int[N];
+        nodeClustering = new double[N];
+        avgClusteringCoeff = 0;
+        totalTriangles = 0;
+        estimatedError = 0;
+        processed = new AtomicInteger();
+
+        Progress.start(progress, 2 * N);
+        buildNeighbours(snapshot);
+        if (isCanceled) {
+            return;
         }
-        if (network[v].get(right) < v) {
-            return (right);
+        if (approximate) {
+            sampleWedges();
+        } else {
+            countTriangles();
         }
-        if (network[v].get(right) == v) {
-            return (right - 1);
+        if (isCanceled) {
+            return;
         }
 
-        int left = 0, mid;
-        while (right > left) {
-            mid = (left + right) / 2;
-            if (v < network[v].get(mid)) {
-                right = mid - 1;
-            } else if (v > network[v].get(mid)) {
-                left = mid + 1;
-            } else {
-                return (mid - 1);
+        //Results and average
+        for (int v = 0; v < N; v++) {
+            int degree = degrees[v];
+            if (degree > 1) {
+                double cc = triangles[v];
+                totalTriangles += triangles[v];
+                cc /= ((double) degree * (degree - 1));
+                if (!isDirected) {
+                    cc *= 2.0;
+                }
+                nodeClustering[v] = cc;
+                avgClusteringCoeff += cc;
             }
         }
-
-
-        if (v > network[v].get(right)) {
-            return (right);
-        } else {
-
-            return right - 1;
-        }
+        totalTriangles /= 3;
+        avgClusteringCoeff /= N;
     }
 
     /**
-     *
-     * @param v - The specific node to count the triangles on.
+     * Builds the sorted neighbour lists of all nodes, in the snapshot order. In
+     * directed mode, in and out neighbours are merged and the multiplicity
+     * of each pair is kept, <code>2</code> if linked in both directions.
      */
-    private void newVertex(int v) {
-        int[] A = new int[N];
-
-        for (int i = network[v].length() - 1; (i >= 0) && (network[v].get(i) > v); i--) {
-            int neighbor = network[v].get(i);
-            A[neighbor] = network[v].getCount(i);
-        }
-        for (int i = network[v].length() - 1; i >= 0; i--) {
-            int neighbor = network[v].get(i);
-            for (int j = closest_in_array(neighbor); j >= 0; j--) {
-                int next = network[neighbor].get(j);
-                if (A[next] > 0) {
-                    triangles[next] += network[v].getCount(i);
-                    triangles[v] += network[v].getCount(i);
-                    triangles[neighbor] += A[next];
+    private void buildNeighbours(AdjacencySnapshot snapshot) {
+        AdjacencySnapshot.Adjacency first = isDirected ? AdjacencySnapshot.Adjacency.OUT : AdjacencySnapshot.Adjacency.UNDIRECTED;
+        int[] firstOffsets = snapshot.getOffsets(first);
+        int[] firstTargets = snapshot.getTargets(first);
+        int[] secondOffsets = isDirected ? snapshot.getOffsets(AdjacencySnapshot.Adjacency.IN) : null;
+        int[] secondTargets = isDirected ? snapshot.getTargets(AdjacencySnapshot.Adjacency.IN) : null;
+
+        int capacity = firstTargets.length + (isDirected ? secondTargets.length : 0);
+        int[] targets = new int[capacity];
+        byte[] counts = isDirected ? new byte[capacity] : null;
+        offsets = new int[N + 1];
+        degrees = new int[N];
+        int count = 0;
+        for (int v = 0; v < N; v++) {
+            int start = count;
+            int end = count;
+            for (int j = firstOffsets[v]; j < firstOffsets[v + 1]; j++) {
+                if (firstTargets[j] != v) {
+                    targets[end++] = firstTargets[j];
                 }
             }
-        }
-    }
-
-    private void tr_link_nohigh(int u, int v, int count) {
-        int iu = 0, iv = 0, w;
-        while ((iu < network[u].length()) && (iv < network[v].length())) {
-            if (network[u].get(iu) < network[v].get(iv)) {
-                iu++;
-            } else if (network[u].get(iu) > network[v].get(iv)) {
-                iv++;
-            } else { /* neighbor in common */
-                w = network[u].get(iu);
-                if (w >= K) {
-                    triangles[w] += count;
+            if (isDirected) {
+                for (int j = secondOffsets[v]; j < secondOffsets[v + 1]; j++) {
+                    if (secondTargets[j] != v) {
+                        targets[end++] = secondTargets[j];
+                    }
+                }
+            }
+            Arrays.sort(targets, start, end);
+            for (int j = start; j < end; j++) {
+                if (count > start && targets[count - 1] == targets[j]) {
+                    if (isDirected) {
+                        counts[count - 1] = 2;
+                    }
+                } else {
+                    targets[count] = targets[j];
+                    if (isDirected) {
+                        counts[count] = 1;
+                    }
+                    count++;
                 }
-                iu++;
-                iv++;
+            }
+            offsets[v + 1] = count;
+            degrees[v] = count - start;
+            Progress.progress(progress, processed.incrementAndGet());
+
+            if (isCanceled) {
+                return;
             }
         }
+        neighbours = Arrays.copyOf(targets, count);
+        multiplicities = isDirected ? Arrays.copyOf(counts, count) : null;
     }
 
-    public void triangles(HierarchicalGraph hgraph) {
-
-        int ProgressCount = 0;
-        Progress.start(progress, 7 * hgraph.getNodeCount());
-
-        hgraph.readLock();
-
-        N = hgraph.getNodeCount();
-        nodeClustering = new double[N];
-
-        /** Create network for processing */
-        network = new ArrayWrapper[N];
-
-        /**  */
-        HashMap<Node, Integer> indicies = new HashMap<Node, Integer>();
-        int index = 0;
-        for (Node s : hgraph.getNodes()) {
-            indicies.put(s, index);
-            network[index] = new ArrayWrapper();
-            index++;
-            Progress.progress(progress, ++ProgressCount);
+    private void countTriangles() {
+        //Rank nodes by increasing degree, ties by index
+        int maxDegree = 0;
+        for (int v = 0; v < N; v++) {
+            maxDegree = Math.max(maxDegree, degrees[v]);
+        }
+        int[] buckets = new int[maxDegree + 2];
+        for (int v = 0; v < N; v++) {
+            buckets[degrees[v] + 1]++;
+        }
+        for (int d = 0; d <= maxDegree; d++) {
+            buckets[d + 1] += buckets[d];
+        }
+        int[] order = new int[N];
+        int[] rank = new int[N];
+        for (int v = 0; v < N; v++) {
+            int r = buckets[degrees[v]]++;
+            order[r] = v;
+            rank[v] = r;
         }
 
-        index = 0;
-        for (Node node : hgraph.getNodes()) {
-            HashMap<Node, EdgeWrapper> neighborTable = new HashMap<Node, EdgeWrapper>();
-
-            if (!isDirected) {
-                for (Edge edge : hgraph.getEdgesAndMetaEdges(node)) {
-                    Node neighbor = hgraph.getOpposite(node, edge);
-                    neighborTable.put(neighbor, new EdgeWrapper(1, network[indicies.get(neighbor)]));
-                }
-            } else {
-                for (Edge in : ((HierarchicalDirectedGraph) hgraph).getInEdgesAndMetaInEdges(node)) {
-                    Node neighbor = in.getSource().getNodeData().getNode(hgraph.getView().getViewId());
-                    neighborTable.put(neighbor, new EdgeWrapper(1, network[indicies.get(neighbor)]));
+        //Forward lists in rank space, filled in increasing rank so they come out sorted
+        int[] forwardOffsets = new int[N + 1];
+        for (int v = 0; v < N; v++) {
+            for (int j = offsets[v]; j < offsets[v + 1]; j++) {
+                if (rank[neighbours[j]] > rank[v]) {
+                    forwardOffsets[rank[v] + 1]++;
                 }
-
-                for (Edge out : ((HierarchicalDirectedGraph) hgraph).getOutEdgesAndMetaOutEdges(node)) {
-                    Node neighbor = out.getTarget().getNodeData().getNode(hgraph.getView().getViewId());
-                    EdgeWrapper ew = neighborTable.get(neighbor);
-                    if (ew == null) {
-                        neighborTable.put(neighbor, new EdgeWrapper(1, network[indicies.get(neighbor)]));
-                    } else {
-                        ew.count++;
+            }
+        }
+        for (int r = 0; r < N; r++) {
+            forwardOffsets[r + 1] += forwardOffsets[r];
+        }
+        int[] forwardTargets = new int[forwardOffsets[N]];
+        byte[] forwardMultiplicities = isDirected ? new byte[forwardOffsets[N]] : null;
+        int[] cursors = Arrays.copyOf(forwardOffsets, N);
+        for (int r = 0; r < N; r++) {
+            int v = order[r];
+            for (int j = offsets[v]; j < offsets[v + 1]; j++) {
+                int s = rank[neighbours[j]];
+                if (s < r) {
+                    int pos = cursors[s]++;
+                    forwardTargets[pos] = r;
+                    if (isDirected) {
+                        forwardMultiplicities[pos] = multiplicities[j];
                     }
                 }
             }
+        }
 
-            EdgeWrapper[] edges = new EdgeWrapper[neighborTable.size()];
-            int i = 0;
-            for (EdgeWrapper e : neighborTable.values()) {
-                edges[i] = e;
-                i++;
-            }
-            network[index].node = node;
-            network[index].setArray(edges);
-            index++;
-            Progress.progress(progress, ++ProgressCount);
+        int threads = Math.max(1, Math.min(threadCount, (N + CHUNK_SIZE - 1) / CHUNK_SIZE));
+        AtomicInteger cursor = new AtomicInteger();
+        TriangleTask[] tasks = new TriangleTask[threads];
+        for (int i = 0; i < threads; i++) {
+            tasks[i] = new TriangleTask(forwardOffsets, forwardTargets, forwardMultiplicities, cursor);
+        }
+        run(tasks);
+        if (isCanceled) {
+            return;
+        }
 
-            if (isCanceled) {
-                hgraph.readUnlockAll();
-                return;
+        //Merge thread-local counts
+        for (TriangleTask task : tasks) {
+            int[] local = task.counts;
+            for (int r = 0; r < N; r++) {
+                triangles[order[r]] += local[r];
             }
         }
+    }
 
-        Arrays.sort(network);
-        for (int j = 0; j < N; j++) {
-            network[j].setID(j);
-            Progress.progress(progress, ++ProgressCount);
+    private void sampleWedges() {
+        int threads = Math.max(1, Math.min(threadCount, (N + CHUNK_SIZE - 1) / CHUNK_SIZE));
+        AtomicInteger cursor = new AtomicInteger();
+        Random random = new Random();
+        WedgeTask[] tasks = new WedgeTask[threads];
+        for (int i = 0; i < threads; i++) {
+            tasks[i] = new WedgeTask(random.nextLong(), cursor);
+        }
+        run(tasks);
+        if (isCanceled) {
+            return;
         }
 
-        for (int j = 0; j < N; j++) {
-            Arrays.sort(network[j].getArray(), new Renumbering());
-            Progress.progress(progress, ++ProgressCount);
+        double variance = 0;
+        for (WedgeTask task : tasks) {
+            variance += task.variance;
         }
+        estimatedError = N > 0 ? Math.sqrt(variance) / N : 0.0;
+    }
 
-        triangles = new int[N];
-        K = (int) Math.sqrt(N);
+    private void run(Runnable[] tasks) {
+        if (tasks.length == 1) {
+            tasks[0].run();
+            return;
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(tasks.length);
+        try {
+            List<Future<?>> futures = new ArrayList<Future<?>>();
+            for (Runnable task : tasks) {
+                futures.add(executor.submit(task));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException ex) {
+            isCanceled = true;
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException ex) {
+            throw new RuntimeException(ex.getCause());
+        } finally {
+            executor.shutdown();
+        }
+    }
 
+    /**
+     * Returns the number of directed edges between <code>a</code> and
+     * <code>b</code>, or <code>1</code> if they are adjacent in undirected mode.
+     */
+    private int multiplicity(int a, int b) {
+        int pos = Arrays.binarySearch(neighbours, offsets[a], offsets[a + 1], b);
+        if (pos < 0) {
+            return 0;
+        }
+        return isDirected ? multiplicities[pos] : 1;
+    }
 
-        for (int v = 0; v < K && v < N; v++) {
-            newVertex(v);
-            Progress.progress(progress, ++ProgressCount);
+    /**
+     * Enumerates the triangles whose lowest ranked node is in the ranges taken
+     * from the shared cursor. Each worker counts in its own array, indexed by
+     * rank.
+     */
+    private class TriangleTask implements Runnable {
+
+        private final int[] forwardOffsets;
+        private final int[] forwardTargets;
+        private final byte[] forwardMultiplicities;
+        private final AtomicInteger cursor;
+        private final int[] counts;
+
+        public TriangleTask(int[] forwardOffsets, int[] forwardTargets, byte[] forwardMultiplicities, AtomicInteger cursor) {
+            this.forwardOffsets = forwardOffsets;
+            this.forwardTargets = forwardTargets;
+            this.forwardMultiplicities = forwardMultiplicities;
+            this.cursor = cursor;
+            this.counts = new int[N];
         }
 
-        /* remaining links */
-        for (int v = N - 1; (v >= 0) && (v >= K); v--) {
-            for (int i = closest_in_array(v); i >= 0; i--) {
-                int u = network[v].get(i);
-                if (u >= K) {
-                    tr_link_nohigh(u, v, network[v].getCount(i));
+        public void run() {
+            int start;
+            while (!isCanceled && (start = cursor.getAndAdd(CHUNK_SIZE)) < N) {
+                int end = Math.min(N, start + CHUNK_SIZE);
+                for (int u = start; u < end; u++) {
+                    int uEnd = forwardOffsets[u + 1];
+                    for (int i = forwardOffsets[u]; i < uEnd; i++) {
+                        int v = forwardTargets[i];
+                        //Nodes after v in u's list are all ranked higher than v, as in v's list
+                        intersect(u, v, i, i + 1, uEnd, forwardOffsets[v], forwardOffsets[v + 1]);
+                    }
                 }
+                Progress.progress(progress, N + processed.addAndGet(end - start));
             }
-            Progress.progress(progress, ++ProgressCount);
+        }
 
-            if (isCanceled) {
-                hgraph.readUnlockAll();
+        private void intersect(int u, int v, int uv, int a, int aEnd, int b, int bEnd) {
+            int lengthA = aEnd - a;
+            int lengthB = bEnd - b;
+            if (lengthA == 0 || lengthB == 0) {
                 return;
             }
-        }
-
-        //Results and average
-        avgClusteringCoeff = 0;
-        totalTriangles = 0;
-        for (int v = 0; v < N; v++) {
-            if (network[v].length() > 1) {
-                double cc = triangles[v];
-                totalTriangles += triangles[v];
-                cc /= (network[v].length() * (network[v].length() - 1));
-                if (!isDirected) {
-                    cc *= 2.0f;
+            if (lengthA / lengthB > GALLOP_RATIO || lengthB / lengthA > GALLOP_RATIO) {
+                //Look for each element of the short list in the long one
+                boolean shortA = lengthA < lengthB;
+                int s = shortA ? a : b;
+                int sEnd = shortA ? aEnd : bEnd;
+                int l = shortA ? b : a;
+                int lEnd = shortA ? bEnd : aEnd;
+                for (; s < sEnd && l < lEnd; s++) {
+                    int w = forwardTargets[s];
+                    if (forwardTargets[l] < w) {
+                        //Exponential search, then binary search in the last step
+                        int low = l;
+                        int bound = 1;
+                        while (low + bound < lEnd && forwardTargets[low + bound] < w) {
+                            low += bound;
+                            bound <<= 1;
+                        }
+                        int high = Math.min(low + bound, lEnd);
+                        low++;
+                        while (low < high) {
+                            int mid = (low + high) >>> 1;
+                            if (forwardTargets[mid] < w) {
+                                low = mid + 1;
+                            } else {
+                                high = mid;
+                            }
+                        }
+                        l = low;
+                    }
+                    if (l < lEnd && forwardTargets[l] == w) {
+                        triangle(u, v, w, uv, shortA ? s : l, shortA ? l : s);
+                        l++;
+                    }
+                }
+            } else {
+                while (a < aEnd && b < bEnd) {
+                    int x = forwardTargets[a];
+                    int y = forwardTargets[b];
+                    if (x < y) {
+                        a++;
+                    } else if (x > y) {
+                        b++;
+                    } else {
+                        triangle(u, v, x, uv, a, b);
+                        a++;
+                        b++;
+                    }
                 }
-                nodeClustering[v] = cc;
-                avgClusteringCoeff += cc;
             }
-            Progress.progress(progress, ++ProgressCount);
+        }
 
-            if (isCanceled) {
-                hgraph.readUnlockAll();
-                return;
+        private void triangle(int u, int v, int w, int uv, int uw, int vw) {
+            if (forwardMultiplicities == null) {
+                counts[u]++;
+                counts[v]++;
+                counts[w]++;
+            } else {
+                //Each node counts the edges between its two neighbours
+                counts[u] += forwardMultiplicities[vw];
+                counts[v] += forwardMultiplicities[uw];
+                counts[w] += forwardMultiplicities[uv];
             }
         }
-        totalTriangles /= 3;
-        avgClusteringCoeff /= N;
-
-        hgraph.readUnlock();
     }
 
-    /*private void bruteForce(HierarchicalGraph hgraph, AttributeModel attributeModel) {
-    //The atrributes computed by the statistics
-    AttributeTable nodeTable = attributeModel.getNodeTable();
-    AttributeColumn clusteringCol = nodeTable.getColumn("clustering");
-    if (clusteringCol == null) {
-    clusteringCol = nodeTable.addColumn("clustering", "Clustering Coefficient", AttributeType.DOUBLE, AttributeOrigin.COMPUTED, new Double(0));
-    }
-    
-    float totalCC = 0;
-    
-    hgraph.readLock();
-    
-    Progress.start(progress, hgraph.getNodeCount());
-    int node_count = 0;
-    for (Node node : hgraph.getNodes()) {
-    float nodeCC = 0;
-    int neighborhood = 0;
-    NodeIterable neighbors1 = hgraph.getNeighbors(node);
-    for (Node neighbor1 : neighbors1) {
-    neighborhood++;
-    NodeIterable neighbors2 = hgraph.getNeighbors(node);
-    for (Node neighbor2 : neighbors2) {
-    
-    if (neighbor1 == neighbor2) {
-    continue;
-    }
-    if (isDirected) {
-    if (((HierarchicalDirectedGraph) hgraph).getEdge(neighbor1, neighbor2) != null) {
-    nodeCC++;
-    }
-    if (((HierarchicalDirectedGraph) hgraph).getEdge(neighbor2, neighbor1) != null) {
-    nodeCC++;
-    }
-    } else {
-    if (hgraph.isAdjacent(neighbor1, neighbor2)) {
-    nodeCC++;
-    }
-    }
-    }
-    }
-    nodeCC /= 2.0;
-    
-    
-    
-    if (neighborhood > 1) {
-    float cc = nodeCC / (.5f * neighborhood * (neighborhood - 1));
-    if (isDirected) {
-    cc = nodeCC / (neighborhood * (neighborhood - 1));
-    }
-    
-    AttributeRow row = (AttributeRow) node.getNodeData().getAttributes();
-    row.setValue(clusteringCol, cc);
-    
-    totalCC += cc;
-    }
-    
-    if (isCanceled) {
-    break;
-    }
-    
-    node_count++;
-    Progress.progress(progress, node_count);
-    
+    /**
+     * Estimates the triangles of the nodes in the ranges taken from the shared
+     * cursor, by checking whether sampled wedges are closed.
+     */
+    private class WedgeTask implements Runnable {
+
+        private final Random random;
+        private final AtomicInteger cursor;
+        private double variance;
+
+        public WedgeTask(long seed, AtomicInteger cursor) {
+            this.random = new Random(seed);
+            this.cursor = cursor;
+        }
+
+        public void run() {
+            int start;
+            while (!isCanceled && (start = cursor.getAndAdd(CHUNK_SIZE)) < N) {
+                int end = Math.min(N, start + CHUNK_SIZE);
+                for (int v = start; v < end; v++) {
+                    int degree = degrees[v];
+                    if (degree < 2) {
+                        continue;
+                    }
+                    int from = offsets[v];
+                    long wedges = (long) degree * (degree - 1) / 2;
+                    long closed = 0;
+                    if (wedges <= wedgeSamples) {
+                        for (int i = 0; i < degree; i++) {
+                            for (int j = i + 1; j < degree; j++) {
+                                closed += multiplicity(neighbours[from + i], neighbours[from + j]);
+                            }
+                        }
+                        triangles[v] = (int) closed;
+                    } else {
+                        for (int k = 0; k < wedgeSamples; k++) {
+                            int i = random.nextInt(degree);
+                            int j = random.nextInt(degree - 1);
+                            if (j >= i) {
+                                j++;
+                            }
+                            closed += multiplicity(neighbours[from + i], neighbours[from + j]);
+                        }
+                        double mean = (double) closed / wedgeSamples;
+                        triangles[v] = (int) Math.round(mean * wedges);
+
+                        //Bound of the coefficient variance, sampled with replacement
+                        double cc = isDirected ? mean / 2.0 : mean;
+                        variance += cc * (1.0 - cc) / wedgeSamples;
+                    }
+                }
+                Progress.progress(progress, N + processed.addAndGet(end - start));
+            }
+        }
     }
-    avgClusteringCoeff = totalCC / hgraph.getNodeCount();
-    
-    hgraph.readUnlockAll();
-    }*/
+
     public String getReport() {
         //distribution of values
         Map<Double, Integer> dist = new HashMap<Double, Integer>();
@@ -581,13 +624,16 @@ public class ClusteringCoefficient implements Statistics, LongTask {
                 + "<hr>"
                 + "<br />" + "<h2> Parameters: </h2>"
                 + "Network Interpretation:  " + (isDirected ? "directed" : "undirected") + "<br />"
+                + (approximate ? "Approximation: " + wedgeSamples + " sampled wedges per node<br />" : "")
                 + "<br>" + "<h2> Results: </h2>"
                 + "Average Clustering Coefficient: " + f.format(avgClusteringCoeff) + "<br />"
-                + "Total triangles: " + totalTriangles + "<br />"
+                + (approximate ? "Estimated standard error: " + new DecimalFormat("#0.00000").format(estimatedError) + "<br />" : "")
+                + (approximate ? "Estimated total triangles: " : "Total triangles: ") + totalTriangles + "<br />"
                 + "The Average Clustering Coefficient is the mean value of individual coefficients.<br /><br />"
                 + imageFile
                 + "<br /><br />" + "<h2> Algorithm: </h2>"
                 + "Matthieu Latapy, <i>Main-memory Triangle Computations for Very Large (Sparse (Power-Law)) Graphs</i>, in Theoretical Computer Science (TCS) 407 (1-3), pages 458-473, 2008<br />"
+                + (approximate ? "Thomas Schank, Dorothea Wagner, <i>Approximating Clustering Coefficient and Transitivity</i>, in Journal of Graph Algorithms and Applications (JGAA) 9 (2), pages 265-275, 2005<br />" : "")
                 + "</BODY> </HTML>";
     }
 
@@ -599,6 +645,50 @@ public class ClusteringCoefficient implements Statistics, LongTask {
         return isDirected;
     }
 
+    /**
+     * Sets if coefficients are estimated by sampling wedges instead of
+     * counting all triangles. Default is <code>false</code>.
+     * @param approximate   <code>true</code> to sample wedges
+     */
+    public void setApproximate(boolean approximate) {
+        this.approximate = approximate;
+    }
+
+    public boolean isApproximate() {
+        return approximate;
+    }
+
+    /**
+     * Sets the number of wedges sampled per node in approximate mode. Nodes
+     * with fewer wedges are counted exactly. Default is <code>256</code>.
+     * @param wedgeSamples  the number of wedges to sample per node
+     */
+    public void setWedgeSamples(int wedgeSamples) {
+        this.wedgeSamples = wedgeSamples;
+    }
+
+    public int getWedgeSamples() {
+        return wedgeSamples;
+    }
+
+    /**
+     * Returns the estimated standard error of the average clustering
+     * coefficient of the last execution, or <code>0</code> if all triangles
+     * have been counted.
+     * @return  the standard error bound of the average coefficient
+     */
+    public double getEstimatedError() {
+        return estimatedError;
+    }
+
+    public void setThreadCount(int threadCount) {
+        this.threadCount = threadCount;
+    }
+
+    public int getThreadCount() {
+        return threadCount;
+    }
+
     public boolean cancel() {
         isCanceled = true;
         return true;
@@ -609,21 +699,13 @@ public class ClusteringCoefficient implements Statistics, LongTask {
     }
 
     public double[] getCoefficientReuslts() {
-        double[] res = new double[N];
-        for (int v = 0; v < N; v++) {
-            if (network[v].length() > 1) {
-                res[v] = nodeClustering[v];
-            }
-        }
-        return res;
+        return Arrays.copyOf(nodeClustering, N);
     }
 
     public double[] getTriangesReuslts() {
         double[] res = new double[N];
         for (int v = 0; v < N; v++) {
-            if (network[v].length() > 1) {
-                res[v] = triangles[v];
-            }
+            res[v] = triangles[v];
         }
         return res;
     }
@@ -44,24 +44,28 @@ package org.gephi.statistics.plugin;
 import java.text.DecimalFormat;
 import java.text.NumberFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 import org.gephi.data.attributes.api.AttributeColumn;
 import org.gephi.data.attributes.api.AttributeModel;
 import org.gephi.data.attributes.api.AttributeOrigin;
 import org.gephi.data.attributes.api.AttributeRow;
 import org.gephi.data.attributes.api.AttributeTable;
 import org.gephi.data.attributes.api.AttributeType;
-import org.gephi.graph.api.Edge;
-import org.gephi.graph.api.EdgeIterable;
+import org.gephi.graph.api.AdjacencySnapshot;
 import org.gephi.graph.api.GraphController;
 import org.gephi.graph.api.GraphModel;
 import org.gephi.graph.api.HierarchicalDirectedGraph;
+import org.gephi.graph.api.HierarchicalGraph;
 import org.gephi.graph.api.HierarchicalUndirectedGraph;
-import org.gephi.graph.api.Node;
-import org.gephi.graph.api.NodeIterable;
 import org.gephi.statistics.spi.Statistics;
 import org.gephi.utils.longtask.spi.LongTask;
 import org.gephi.utils.progress.Progress;
@@ -74,6 +78,17 @@ import org.jfree.data.xy.XYSeriesCollection;
 import org.openide.util.Lookup;
 
 /**
+ * Weakly and strongly connected components, computed on the adjacency
+ * snapshot of the graph.
+ * <p>
+ * Weak components are found with a concurrent union-find, edges being
+ * distributed between worker threads. Roots are always linked to the
+ * smallest index, so the structure can't form cycles and concurrent
+ * unions only need a compare-and-set. Strong components are found with an
+ * iterative version of Tarjan's algorithm, with an explicit stack instead of
+ * recursion.
+ * <p>
+ * Components are numbered in the order of their first node in the graph.
  *
  * @author pjmcswee
  */
@@ -81,13 +96,15 @@ public class ConnectedComponents implements Statistics, LongTask {
 
     public static final String WEAKLY = "componentnumber";
     public static final String STRONG = "strongcompnum";
+    /** Number of consecutive nodes taken by a worker at once. */
+    private static final int CHUNK_SIZE = 4096;
     private boolean isDirected;
     private ProgressTicket progress;
-    private boolean isCanceled;
+    private volatile boolean isCanceled;
     private int componentCount;
     private int stronglyCount;
     private int[] componentsSize;
-    int count;
+    private int threadCount = Runtime.getRuntime().availableProcessors();
 
     public ConnectedComponents() {
         GraphController graphController = Lookup.getDefault().lookup(GraphController.class);
@@ -115,88 +132,58 @@ public class ConnectedComponents implements Statistics, LongTask {
             componentCol = nodeTable.addColumn(WEAKLY, "Component ID", AttributeType.INT, AttributeOrigin.COMPUTED, new Integer(0));
         }
 
-        List<Integer> sizeList = new ArrayList<Integer>();
+        AdjacencySnapshot snapshot = getSnapshot(hgraph);
+        int N = snapshot.getNodeCount();
+        int[] offsets = snapshot.getOffsets(AdjacencySnapshot.Adjacency.OUT);
+        int[] targets = snapshot.getTargets(AdjacencySnapshot.Adjacency.OUT);
 
-        hgraph.readLock();
+        Progress.start(progress, 2 * N);
 
-        HashMap<Node, Integer> indicies = new HashMap<Node, Integer>();
-        int index = 0;
-        for (Node s : hgraph.getNodes()) {
-            indicies.put(s, index);
-            index++;
+        //Each edge is seen once from its source, which is enough for weak components
+        AtomicIntegerArray parents = new AtomicIntegerArray(N);
+        for (int i = 0; i < N; i++) {
+            parents.set(i, i);
+        }
+        int threads = Math.max(1, Math.min(threadCount, (N + CHUNK_SIZE - 1) / CHUNK_SIZE));
+        AtomicInteger cursor = new AtomicInteger();
+        AtomicInteger processed = new AtomicInteger();
+        UnionTask[] tasks = new UnionTask[threads];
+        for (int i = 0; i < threads; i++) {
+            tasks[i] = new UnionTask(offsets, targets, parents, cursor, processed);
+        }
+        run(tasks);
+        if (isCanceled) {
+            return;
         }
 
-
-        int N = hgraph.getNodeCount();
-
-        //Keep track of which nodes have been seen
-        int[] color = new int[N];
-
-        Progress.start(progress, hgraph.getNodeCount());
-        int seenCount = 0;
-        while (seenCount < N) {
-            //The search Q
-            LinkedList<Node> Q = new LinkedList<Node>();
-            //The component-list
-            LinkedList<Node> component = new LinkedList<Node>();
-
-            //Seed the seach Q
-            NodeIterable iter = hgraph.getNodes();
-            for (Node first : iter) {
-                if (color[indicies.get(first)] == 0) {
-                    Q.add(first);
-                    iter.doBreak();
-                    break;
-                }
-            }
-
-            //While there are more nodes to search
-            while (!Q.isEmpty()) {
-                if (isCanceled) {
-                    hgraph.readUnlock();
-                    return;
+        //Number components in the order of their first node
+        int[] components = new int[N];
+        int[] rootComponent = new int[N];
+        Arrays.fill(rootComponent, -1);
+        int[] sizes = new int[Math.min(N, 16)];
+        for (int v = 0; v < N; v++) {
+            int root = find(parents, v);
+            int component = rootComponent[root];
+            if (component == -1) {
+                component = componentCount++;
+                rootComponent[root] = component;
+                if (component == sizes.length) {
+                    sizes = Arrays.copyOf(sizes, Math.min(N, 2 * sizes.length));
                 }
-                //Get the next Node and add it to the component list
-                Node u = Q.removeFirst();
-                component.add(u);
-
-                //Iterate over all of u's neighbors
-                EdgeIterable edgeIter = hgraph.getEdgesAndMetaEdges(u);
-
-                //For each neighbor
-                for (Edge edge : edgeIter) {
-                    Node reachable = hgraph.getOpposite(u, edge);
-                    int id = indicies.get(reachable);
-                    //If this neighbor is unvisited
-                    if (color[id] == 0) {
-                        color[id] = 1;
-                        //Add it to the search Q
-                        Q.addLast(reachable);
-                        //Mark it as used 
-
-                        Progress.progress(progress, seenCount);
-                    }
-                }
-                color[indicies.get(u)] = 2;
-                seenCount++;
-            }
-            for (Node s : component) {
-                AttributeRow row = (AttributeRow) s.getNodeData().getAttributes();
-                row.setValue(componentCol, componentCount);
             }
-            sizeList.add(component.size());
-            componentCount++;
+            components[v] = component;
+            sizes[component]++;
+            Progress.progress(progress, N + v + 1);
         }
-        hgraph.readUnlock();
+        componentsSize = Arrays.copyOf(sizes, componentCount);
 
-        componentsSize = new int[sizeList.size()];
-        for (int i = 0; i < sizeList.size(); i++) {
-            componentsSize[i] = sizeList.get(i);
+        for (int v = 0; v < N; v++) {
+            AttributeRow row = (AttributeRow) snapshot.getNode(v).getNodeData().getAttributes();
+            row.setValue(componentCol, components[v]);
         }
     }
 
     public void top_tarjans(HierarchicalDirectedGraph hgraph, AttributeModel attributeModel) {
-        count = 1;
         stronglyCount = 0;
         AttributeTable nodeTable = attributeModel.getNodeTable();
         AttributeColumn componentCol = nodeTable.getColumn(STRONG);
@@ -204,66 +191,194 @@ public class ConnectedComponents implements Statistics, LongTask {
             componentCol = nodeTable.addColumn(STRONG, "Strongly-Connected ID", AttributeType.INT, AttributeOrigin.COMPUTED, new Integer(0));
         }
 
-        hgraph.readLock();
+        AdjacencySnapshot snapshot = getSnapshot(hgraph);
+        int N = snapshot.getNodeCount();
+        int[] offsets = snapshot.getOffsets(AdjacencySnapshot.Adjacency.OUT);
+        int[] targets = snapshot.getTargets(AdjacencySnapshot.Adjacency.OUT);
 
-        HashMap<Node, Integer> indicies = new HashMap<Node, Integer>();
-        int v = 0;
-        for (Node s : hgraph.getNodes()) {
-            indicies.put(s, v);
-            v++;
+        int[] components = tarjans(N, offsets, targets);
+        if (components == null) {
+            return;
         }
-        int N = hgraph.getNodeCount();
+        for (int v = 0; v < N; v++) {
+            AttributeRow row = (AttributeRow) snapshot.getNode(v).getNodeData().getAttributes();
+            row.setValue(componentCol, components[v]);
+        }
+    }
+
+    /**
+     * Iterative Tarjan's algorithm. The call stack keeps the visited node and
+     * the position of the next edge to explore, as the recursive version would
+     * on the thread stack.
+     */
+    private int[] tarjans(int N, int[] offsets, int[] targets) {
         int[] index = new int[N];
-        int[] low_index = new int[N];
+        int[] lowIndex = new int[N];
+        int[] components = new int[N];
+        boolean[] onStack = new boolean[N];
+        int[] stack = new int[N];
+        int stackSize = 0;
+        int[] callNodes = new int[N];
+        int[] callEdges = new int[N];
+        int count = 1;
+
+        for (int first = 0; first < N; first++) {
+            if (index[first] != 0) {
+                continue;
+            }
+            if (isCanceled) {
+                return null;
+            }
+            int depth = 0;
+            callNodes[0] = first;
+            callEdges[0] = offsets[first];
+            index[first] = lowIndex[first] = count++;
+            stack[stackSize++] = first;
+            onStack[first] = true;
+
+            while (depth >= 0) {
+                int f = callNodes[depth];
+                int e = callEdges[depth];
+                if (e < offsets[f + 1]) {
+                    callEdges[depth] = e + 1;
+                    int u = targets[e];
+                    if (index[u] == 0) {
+                        index[u] = lowIndex[u] = count++;
+                        stack[stackSize++] = u;
+                        onStack[u] = true;
+                        depth++;
+                        callNodes[depth] = u;
+                        callEdges[depth] = offsets[u];
+                    } else if (onStack[u]) {
+                        lowIndex[f] = Math.min(lowIndex[f], index[u]);
+                    }
+                } else {
+                    if (lowIndex[f] == index[f]) {
+                        int v;
+                        do {
+                            v = stack[--stackSize];
+                            onStack[v] = false;
+                            components[v] = stronglyCount;
+                        } while (v != f);
+                        stronglyCount++;
+                    }
+                    depth--;
+                    if (depth >= 0) {
+                        int parent = callNodes[depth];
+                        lowIndex[parent] = Math.min(lowIndex[parent], lowIndex[f]);
+                    }
+                }
+            }
+        }
+        return components;
+    }
+
+    private AdjacencySnapshot getSnapshot(HierarchicalGraph hgraph) {
+        hgraph.readLock();
+        try {
+            return hgraph.getGraphModel().getAdjacencySnapshot(hgraph.getView(), false);
+        } finally {
+            hgraph.readUnlock();
+        }
+    }
+
+    private void run(Runnable[] tasks) {
+        if (tasks.length == 1) {
+            tasks[0].run();
+            return;
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(tasks.length);
+        try {
+            List<Future<?>> futures = new ArrayList<Future<?>>();
+            for (Runnable task : tasks) {
+                futures.add(executor.submit(task));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException ex) {
+            isCanceled = true;
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException ex) {
+            throw new RuntimeException(ex.getCause());
+        } finally {
+            executor.shutdown();
+        }
+    }
 
+    /**
+     * Returns the root of <code>x</code>, halving the path on the way.
+     * Concurrent finds and unions may interleave, a failed compare-and-set
+     * only means another thread already shortened the path.
+     */
+    private static int find(AtomicIntegerArray parents, int x) {
         while (true) {
-            //The search Q
-            LinkedList<Node> S = new LinkedList<Node>();
-            //The component-list
-            //LinkedList<Node> component = new LinkedList<Node>();
-            //Seed the seach Q
-            Node first = null;
-            NodeIterable iter = hgraph.getNodes();
-            for (Node u : iter) {
-                if (index[indicies.get(u)] == 0) {
-                    first = u;
-                    iter.doBreak();
-                    break;
-                }
+            int parent = parents.get(x);
+            if (parent == x) {
+                return x;
             }
-            if (first == null) {
-                hgraph.readUnlockAll();
-                return;
+            int grandParent = parents.get(parent);
+            if (grandParent != parent) {
+                parents.compareAndSet(x, parent, grandParent);
             }
-            tarjans(componentCol, S, hgraph, first, index, low_index, indicies);
+            x = parent;
         }
     }
 
-    private void tarjans(AttributeColumn col, LinkedList<Node> S, HierarchicalDirectedGraph hgraph, Node f, int[] index, int[] low_index, HashMap<Node, Integer> indicies) {
-        int id = indicies.get(f);
-        index[id] = count;
-        low_index[id] = count;
-        count++;
-        S.addFirst(f);
-        EdgeIterable edgeIter = hgraph.getOutEdgesAndMetaOutEdges(f);
-        for (Edge e : edgeIter) {
-            Node u = hgraph.getOpposite(f, e);
-            int x = indicies.get(u);
-            if (index[x] == 0) {
-                tarjans(col, S, hgraph, u, index, low_index, indicies);
-                low_index[id] = Math.min(low_index[x], low_index[id]);
-            } else if (S.contains(u)) {
-                low_index[id] = Math.min(low_index[id], index[x]);
+    private static void union(AtomicIntegerArray parents, int a, int b) {
+        while (true) {
+            a = find(parents, a);
+            b = find(parents, b);
+            if (a == b) {
+                return;
+            }
+            //Link the highest root under the lowest one
+            if (a < b) {
+                int tmp = a;
+                a = b;
+                b = tmp;
+            }
+            if (parents.compareAndSet(a, a, b)) {
+                return;
             }
         }
-        if (low_index[id] == index[id]) {
-            Node v = null;
-            while (v != f) {
-                v = S.removeFirst();
-                AttributeRow row = (AttributeRow) v.getNodeData().getAttributes();
-                row.setValue(col, stronglyCount);
+    }
+
+    /**
+     * Unions the extremities of the out edges of the node ranges taken from
+     * the shared cursor.
+     */
+    private class UnionTask implements Runnable {
+
+        private final int[] offsets;
+        private final int[] targets;
+        private final AtomicIntegerArray parents;
+        private final AtomicInteger cursor;
+        private final AtomicInteger processed;
+
+        public UnionTask(int[] offsets, int[] targets, AtomicIntegerArray parents, AtomicInteger cursor, AtomicInteger processed) {
+            this.offsets = offsets;
+            this.targets = targets;
+            this.parents = parents;
+            this.cursor = cursor;
+            this.processed = processed;
+        }
+
+        public void run() {
+            int N = offsets.length - 1;
+            int start;
+            while (!isCanceled && (start = cursor.getAndAdd(CHUNK_SIZE)) < N) {
+                int end = Math.min(N, start + CHUNK_SIZE);
+                for (int u = start; u < end; u++) {
+                    for (int j = offsets[u]; j < offsets[u + 1]; j++) {
+                        int v = targets[j];
+                        if (v != u) {
+                            union(parents, u, v);
+                        }
+                    }
+                }
+                Progress.progress(progress, processed.addAndGet(end - start));
             }
-            stronglyCount++;
         }
     }
 
@@ -271,6 +386,15 @@ public class ConnectedComponents implements Statistics, LongTask {
         return componentCount;
     }
 
+    /**
+     * Returns the number of strongly connected components found by the last
+     * directed execution.
+     * @return  the number of strongly connected components
+     */
+    public int getStronglyConnectedComponentsCount() {
+        return stronglyCount;
+    }
+
     public void setDirected(boolean isDirected) {
         this.isDirected = isDirected;
     }
@@ -279,10 +403,17 @@ public class ConnectedComponents implements Statistics, LongTask {
         return isDirected;
     }
 
+    public void setThreadCount(int threadCount) {
+        this.threadCount = threadCount;
+    }
+
+    public int getThreadCount() {
+        return threadCount;
+    }
+
     public int[] getComponentsSize() {
         return componentsSize;
     }
-
     public int getGiantComponent() {
         int[] sizes = getComponentsSize();
         int max = Integer.MIN_VALUE;
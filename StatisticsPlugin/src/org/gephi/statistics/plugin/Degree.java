@@ -83,6 +83,8 @@ public class Degree implements Statistics, LongTask {
     private Map<Integer, Integer> inDegreeDist;
     private Map<Integer, Integer> outDegreeDist;
     private Map<Integer, Integer> degreeDist;
+    private boolean liveUpdate;
+    private DegreeUpdater updater;
 
     /**
      *
@@ -92,6 +94,24 @@ public class Degree implements Statistics, LongTask {
         return avgDegree;
     }
 
+    /**
+     * Keeps computed columns up to date when the graph changes after
+     * <code>execute()</code>, until set back to <code>false</code>. Only
+     * nodes touched by graph events are updated.
+     * @param liveUpdate    <code>true</code> to enable live update
+     */
+    public void setLiveUpdate(boolean liveUpdate) {
+        this.liveUpdate = liveUpdate;
+        if (!liveUpdate && updater != null) {
+            updater.stop();
+            updater = null;
+        }
+    }
+
+    public boolean isLiveUpdate() {
+        return liveUpdate;
+    }
+
     /**
      *
      * @param graphModel
@@ -104,6 +124,7 @@ public class Degree implements Statistics, LongTask {
     public void execute(HierarchicalGraph graph, AttributeModel attributeModel) {
         isDirected = graph instanceof DirectedGraph;
         isCanceled = false;
+        avgDegree = 0;
         inDegreeDist = new HashMap<Integer, Integer>();
         outDegreeDist = new HashMap<Integer, Integer>();
         degreeDist = new HashMap<Integer, Integer>();
@@ -172,10 +193,20 @@ public class Degree implements Statistics, LongTask {
             Progress.progress(progress, i);
         }
 
+        double degreeSum = avgDegree;
         avgDegree /= (isDirected) ? 2 * graph.getNodeCount() : graph.getNodeCount();
         graph.getAttributes().setValue(avgDegreeCol.getIndex(), avgDegree);
 
         graph.readUnlockAll();
+
+        if (updater != null) {
+            updater.stop();
+            updater = null;
+        }
+        if (liveUpdate && !isCanceled) {
+            updater = new DegreeUpdater(graph, false, degreeSum, degCol, inCol, outCol, avgDegreeCol);
+            updater.start();
+        }
     }
 
     /**
@@ -0,0 +1,423 @@
+/*
+Copyright 2008-2010 Gephi
+Website : http://www.gephi.org
+
+This file is part of Gephi.
+
+DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+
+Copyright 2011 Gephi Consortium. All rights reserved.
+
+The contents of this file are subject to the terms of either the GNU
+General Public License Version 3 only ("GPL") or the Common
+Development and Distribution License("CDDL") (collectively, the
+"License"). You may not use this file except in compliance with the
+License. You can obtain a copy of the License at
+http://gephi.org/about/legal/license-notice/
+or /cddl-1.0.txt and /gpl-3.0.txt. See the License for the
+specific language governing permissions and limitations under the
+License.  When distributing the software, include this License Header
+Notice in each file and include the License files at
+/cddl-1.0.txt and /gpl-3.0.txt. If applicable, add the following below the
+License Header, with the fields enclosed by brackets [] replaced by
+your own identifying information:
+"Portions Copyrighted [year] [name of copyright owner]"
+
+If you wish your version of this file to be governed by only the CDDL
+or only the GPL Version 3, indicate your decision by adding
+"[Contributor] elects to include this software in this distribution
+under the [CDDL or GPL Version 3] license." If you do not indicate a
+single choice of license, a recipient has the option to distribute
+your version of this file under either the CDDL, the GPL Version 3 or
+to extend the choice of license to its licensees as provided above.
+However, if you add GPL Version 3 code and therefore, elected the GPL
+Version 3 license, then the option applies only if the new code is
+made subject to such option by the copyright holder.
+
+Contributor(s):
+
+Portions Copyrighted 2011 Gephi Consortium.
+*/
+package org.gephi.statistics.plugin;
+
+import java.util.BitSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import org.gephi.data.attributes.api.AttributeColumn;
+import org.gephi.data.attributes.api.AttributeRow;
+import org.gephi.graph.api.DirectedGraph;
+import org.gephi.graph.api.Edge;
+import org.gephi.graph.api.GraphEvent;
+import org.gephi.graph.api.GraphEventData;
+import org.gephi.graph.api.GraphListener;
+import org.gephi.graph.api.GraphModel;
+import org.gephi.graph.api.GraphView;
+import org.gephi.graph.api.HierarchicalDirectedGraph;
+import org.gephi.graph.api.HierarchicalGraph;
+import org.gephi.graph.api.Node;
+import org.gephi.project.api.ProjectController;
+import org.gephi.project.api.Workspace;
+import org.gephi.project.api.WorkspaceListener;
+import org.openide.util.Lookup;
+
+/**
+ * Keeps the degree or weighted degree columns up to date while the graph
+ * changes, used by <code>Degree</code> and <code>WeightedDegree</code> live
+ * update mode.
+ * <p>
+ * Graph events only mark nodes as dirty, they are applied in one pass by a
+ * background thread after a coalescing delay, so bursts of edits from the
+ * filter thread are processed together. Edge additions and removals
+ * update their extremities only. When the visible view changes, the nodes
+ * and edges of the previous and new views are compared and only extremities
+ * of edges which differ are updated. Changes that can't be localized, like
+ * node removals or hierarchy changes, refresh all nodes but only rows whose
+ * value differ are written.
+ * <p>
+ * The updater stops when the workspace of the graph is closed.
+ */
+class DegreeUpdater implements GraphListener, WorkspaceListener, Runnable {
+
+    private static final long DELAY = 100;
+    private final GraphModel graphModel;
+    private final Workspace workspace;
+    private final boolean weighted;
+    private final boolean directed;
+    private final boolean followVisibleView;
+    private final AttributeColumn degCol;
+    private final AttributeColumn inCol;
+    private final AttributeColumn outCol;
+    private final AttributeColumn avgDegreeCol;
+    private final ScheduledExecutorService executor;
+    //Pending changes, by node and edge ids
+    private final BitSet dirtyNodes = new BitSet();
+    private final BitSet addedNodes = new BitSet();
+    private final BitSet addedEdges = new BitSet();
+    private final BitSet removedEdges = new BitSet();
+    private boolean refreshAll;
+    private boolean viewChanged;
+    private boolean scheduled;
+    private GraphView view;
+    //Applied by the executor thread only
+    private double degreeSum;
+    //Nodes and edges of the view the columns are computed on, known after
+    //the first full refresh
+    private BitSet viewNodes;
+    private BitSet viewEdges;
+
+    /**
+     * Creates an updater for <code>graph</code>. Columns must exist, except
+     * <code>inCol</code> and <code>outCol</code> if the graph is undirected and
+     * <code>avgDegreeCol</code> which is optional.
+     */
+    DegreeUpdater(HierarchicalGraph graph, final boolean weighted, double degreeSum, AttributeColumn degCol, AttributeColumn inCol, AttributeColumn outCol, AttributeColumn avgDegreeCol) {
+        this.graphModel = graph.getGraphModel();
+        this.workspace = graphModel.getWorkspace();
+        this.view = graph.getView();
+        this.directed = graph instanceof DirectedGraph;
+        this.followVisibleView = view == graphModel.getVisibleView();
+        this.weighted = weighted;
+        this.degreeSum = degreeSum;
+        this.degCol = degCol;
+        this.inCol = inCol;
+        this.outCol = outCol;
+        this.avgDegreeCol = avgDegreeCol;
+        this.executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, weighted ? "Live Weighted Degree" : "Live Degree");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+    }
+
+    public void start() {
+        graphModel.addGraphListener(this);
+        ProjectController projectController = Lookup.getDefault().lookup(ProjectController.class);
+        if (projectController != null) {
+            projectController.addWorkspaceListener(this);
+        }
+    }
+
+    public void stop() {
+        graphModel.removeGraphListener(this);
+        ProjectController projectController = Lookup.getDefault().lookup(ProjectController.class);
+        if (projectController != null) {
+            projectController.removeWorkspaceListener(this);
+        }
+        executor.shutdownNow();
+    }
+
+    public void graphChanged(GraphEvent event) {
+        synchronized (this) {
+            GraphEventData data = event.getData();
+            switch (event.getEventType()) {
+                case VISIBLE_VIEW:
+                    if (!followVisibleView || data.visibleView() == view) {
+                        return;
+                    }
+                    view = data.visibleView();
+                    viewChanged = true;
+                    break;
+                case DESTROY_VIEW:
+                    if (data.destroyView() != view) {
+                        return;
+                    }
+                    view = null;
+                    break;
+                case ADD_NODES_AND_EDGES:
+                case REMOVE_NODES_AND_EDGES:
+                    if (event.getSource() != view) {
+                        return;
+                    }
+                    if (data.addedEdges() != null) {
+                        for (Edge e : data.addedEdges()) {
+                            markEdge(e);
+                            addedEdges.set(e.getId());
+                            removedEdges.clear(e.getId());
+                        }
+                    }
+                    if (data.removedEdges() != null) {
+                        for (Edge e : data.removedEdges()) {
+                            markEdge(e);
+                            removedEdges.set(e.getId());
+                            addedEdges.clear(e.getId());
+                        }
+                    }
+                    if (data.addedNodes() != null) {
+                        for (Node n : data.addedNodes()) {
+                            dirtyNodes.set(n.getId());
+                            addedNodes.set(n.getId());
+                        }
+                    }
+                    if (data.removedNodes() != null) {
+                        //Edges of removed nodes are not part of the event
+                        refreshAll = true;
+                    }
+                    break;
+                case EXPAND:
+                case RETRACT:
+                case MOVE_NODES:
+                case META_EDGES_UPDATE:
+                    if (event.getSource() != view) {
+                        return;
+                    }
+                    refreshAll = true;
+                    break;
+                default:
+                    return;
+            }
+            if (!scheduled && view != null) {
+                scheduled = true;
+                executor.schedule(this, DELAY, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    private void markEdge(Edge edge) {
+        dirtyNodes.set(edge.getSource().getId());
+        dirtyNodes.set(edge.getTarget().getId());
+    }
+
+    public void run() {
+        GraphView currentView;
+        boolean all;
+        boolean newView;
+        BitSet nodes;
+        BitSet added;
+        BitSet removed;
+        BitSet newNodes;
+        synchronized (this) {
+            currentView = view;
+            all = refreshAll;
+            newView = viewChanged;
+            nodes = (BitSet) dirtyNodes.clone();
+            added = (BitSet) addedEdges.clone();
+            removed = (BitSet) removedEdges.clone();
+            newNodes = (BitSet) addedNodes.clone();
+            dirtyNodes.clear();
+            addedEdges.clear();
+            removedEdges.clear();
+            addedNodes.clear();
+            refreshAll = false;
+            viewChanged = false;
+            scheduled = false;
+        }
+        if (currentView == null) {
+            return;
+        }
+
+        HierarchicalGraph graph = directed ? graphModel.getHierarchicalDirectedGraph(currentView) : graphModel.getHierarchicalGraph(currentView);
+        graph.readLock();
+        try {
+            if (!all && newView) {
+                all = !diffView(graph, nodes);
+            } else if (!all && viewNodes != null) {
+                viewEdges.or(added);
+                viewEdges.andNot(removed);
+                viewNodes.or(newNodes);
+            }
+            if (all) {
+                degreeSum = 0;
+                viewNodes = new BitSet();
+                for (Node n : graph.getNodes()) {
+                    degreeSum += update(graph, n);
+                    viewNodes.set(n.getId());
+                }
+                viewEdges = getEdges(currentView);
+            } else {
+                for (int id = nodes.nextSetBit(0); id >= 0; id = nodes.nextSetBit(id + 1)) {
+                    Node n = graph.getNode(id);
+                    if (n != null && graph.isInView(n)) {
+                        AttributeRow row = (AttributeRow) n.getNodeData().getAttributes();
+                        Object oldDegree = row.getValue(degCol);
+                        degreeSum += update(graph, n) - (oldDegree != null ? ((Number) oldDegree).doubleValue() : 0);
+                    }
+                }
+            }
+            if (avgDegreeCol != null) {
+                int nodeCount = graph.getNodeCount();
+                double avgDegree = nodeCount > 0 ? degreeSum / (directed ? 2 * nodeCount : nodeCount) : 0;
+                graph.getAttributes().setValue(avgDegreeCol.getIndex(), avgDegree);
+            }
+        } finally {
+            graph.readUnlock();
+        }
+    }
+
+    /**
+     * Compares the nodes and edges of the new view with the previous ones.
+     * Nodes which left the view are removed from the degree sum, nodes which
+     * entered it are updated and extremities of edges which differ are added
+     * to <code>dirty</code>.
+     * @return <code>false</code> if all nodes must be refreshed instead
+     */
+    private boolean diffView(HierarchicalGraph graph, BitSet dirty) {
+        if (viewNodes == null || graph.getHeight() > 0) {
+            return false;
+        }
+        BitSet newNodes = new BitSet();
+        for (Node n : graph.getNodes()) {
+            newNodes.set(n.getId());
+        }
+        BitSet newEdges = getEdges(graph.getView());
+
+        //Extremities of edges in one view only
+        BitSet changedEdges = (BitSet) newEdges.clone();
+        changedEdges.xor(viewEdges);
+        HierarchicalGraph mainGraph = graphModel.getHierarchicalGraph();
+        for (int id = changedEdges.nextSetBit(0); id >= 0; id = changedEdges.nextSetBit(id + 1)) {
+            Edge e = mainGraph.getEdge(id);
+            if (e == null) {
+                //Removed from the graph, its extremities are unknown
+                return false;
+            }
+            dirty.set(e.getSource().getId());
+            dirty.set(e.getTarget().getId());
+        }
+
+        //Nodes which left the view
+        BitSet leaving = (BitSet) viewNodes.clone();
+        leaving.andNot(newNodes);
+        for (int id = leaving.nextSetBit(0); id >= 0; id = leaving.nextSetBit(id + 1)) {
+            Node n = mainGraph.getNode(id);
+            if (n != null) {
+                Object oldDegree = n.getNodeData().getAttributes().getValue(degCol.getIndex());
+                degreeSum -= oldDegree != null ? ((Number) oldDegree).doubleValue() : 0;
+            }
+        }
+        dirty.andNot(leaving);
+
+        //Nodes which entered the view, their values are from older views
+        BitSet entering = (BitSet) newNodes.clone();
+        entering.andNot(viewNodes);
+        for (int id = entering.nextSetBit(0); id >= 0; id = entering.nextSetBit(id + 1)) {
+            Node n = graph.getNode(id);
+            if (n != null) {
+                degreeSum += update(graph, n);
+            }
+        }
+        dirty.andNot(entering);
+
+        viewNodes = newNodes;
+        viewEdges = newEdges;
+        return true;
+    }
+
+    private BitSet getEdges(GraphView graphView) {
+        BitSet edges = new BitSet();
+        for (Edge e : graphModel.getHierarchicalDirectedGraph(graphView).getEdges()) {
+            edges.set(e.getId());
+        }
+        return edges;
+    }
+
+    /**
+     * Updates the row of <code>n</code> and returns its degree. Values are
+     * computed as in <code>Degree</code> and <code>WeightedDegree</code>.
+     */
+    private double update(HierarchicalGraph graph, Node n) {
+        AttributeRow row = (AttributeRow) n.getNodeData().getAttributes();
+        if (weighted) {
+            float totalWeight = 0;
+            if (directed) {
+                float totalInWeight = 0;
+                float totalOutWeight = 0;
+                for (Edge e : graph.getEdgesAndMetaEdges(n)) {
+                    if (e.getSource().equals(n)) {
+                        totalOutWeight += e.getWeight();
+                    }
+                    if (e.getTarget().equals(n)) {
+                        totalInWeight += e.getWeight();
+                    }
+                }
+                totalWeight = totalInWeight + totalOutWeight;
+                setValue(row, inCol, totalInWeight);
+                setValue(row, outCol, totalOutWeight);
+            } else {
+                for (Edge e : graph.getEdgesAndMetaEdges(n)) {
+                    totalWeight += e.getWeight();
+                }
+            }
+            setValue(row, degCol, totalWeight);
+            return totalWeight;
+        } else {
+            if (directed) {
+                HierarchicalDirectedGraph directedGraph = (HierarchicalDirectedGraph) graph;
+                setValue(row, inCol, directedGraph.getTotalInDegree(n));
+                setValue(row, outCol, directedGraph.getTotalOutDegree(n));
+            }
+            int degree = graph.getTotalDegree(n);
+            setValue(row, degCol, degree);
+            return degree;
+        }
+    }
+
+    private void setValue(AttributeRow row, AttributeColumn column, Object value) {
+        if (!value.equals(row.getValue(column))) {
+            row.setValue(column, value);
+        }
+    }
+
+    public void initialize(Workspace workspace) {
+    }
+
+    public void select(Workspace workspace) {
+    }
+
+    public void unselect(Workspace workspace) {
+    }
+
+    public void close(Workspace workspace) {
+        if (workspace == this.workspace) {
+            stop();
+        }
+    }
+
+    public void disable() {
+        stop();
+    }
+}
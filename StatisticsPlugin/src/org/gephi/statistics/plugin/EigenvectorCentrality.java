@@ -41,6 +41,7 @@ Portions Copyrighted 2011 Gephi Consortium.
  */
 package org.gephi.statistics.plugin;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 import org.gephi.data.attributes.api.AttributeColumn;
@@ -49,14 +50,10 @@ import org.gephi.data.attributes.api.AttributeOrigin;
 import org.gephi.data.attributes.api.AttributeRow;
 import org.gephi.data.attributes.api.AttributeTable;
 import org.gephi.data.attributes.api.AttributeType;
-import org.gephi.graph.api.Edge;
-import org.gephi.graph.api.EdgeIterable;
+import org.gephi.graph.api.AdjacencySnapshot;
 import org.gephi.graph.api.GraphController;
 import org.gephi.graph.api.GraphModel;
-import org.gephi.graph.api.HierarchicalDirectedGraph;
 import org.gephi.graph.api.HierarchicalGraph;
-import org.gephi.graph.api.HierarchicalUndirectedGraph;
-import org.gephi.graph.api.Node;
 import org.gephi.statistics.spi.Statistics;
 import org.gephi.utils.longtask.spi.LongTask;
 import org.gephi.utils.progress.Progress;
@@ -80,8 +77,10 @@ public class EigenvectorCentrality implements Statistics, LongTask {
     private double sumChange;
     private ProgressTicket progress;
     /** */
-    private boolean isCanceled;
+    private volatile boolean isCanceled;
+    private volatile PowerIteration iteration;
     private boolean isDirected;
+    private int threadCount = Runtime.getRuntime().availableProcessors();
 
     public EigenvectorCentrality() {
         GraphController graphController = Lookup.getDefault().lookup(GraphController.class);
@@ -118,6 +117,14 @@ public class EigenvectorCentrality implements Statistics, LongTask {
         this.isDirected = isDirected;
     }
 
+    public void setThreadCount(int threadCount) {
+        this.threadCount = threadCount;
+    }
+
+    public int getThreadCount() {
+        return threadCount;
+    }
+
     /**
      *
      * @param graphModel
@@ -141,71 +148,83 @@ public class EigenvectorCentrality implements Statistics, LongTask {
             eigenCol = nodeTable.addColumn(EIGENVECTOR, "Eigenvector Centrality", AttributeType.DOUBLE, AttributeOrigin.COMPUTED, new Double(0));
         }
 
-        int N = hgraph.getNodeCount();
+        isCanceled = false;
+
+        AdjacencySnapshot snapshot;
         hgraph.readLock();
+        try {
+            snapshot = hgraph.getGraphModel().getAdjacencySnapshot(hgraph.getView(), false);
+        } finally {
+            hgraph.readUnlockAll();
+        }
+
+        int N = snapshot.getNodeCount();
+        AdjacencySnapshot.Adjacency adjacency = isDirected ? AdjacencySnapshot.Adjacency.IN : AdjacencySnapshot.Adjacency.UNDIRECTED;
+        final int[] offsets = snapshot.getOffsets(adjacency);
+        final int[] targets = snapshot.getTargets(adjacency);
 
-        double[] tmp = new double[N];
         centralities = new double[N];
+        Arrays.fill(centralities, 1.0);
+        sumChange = 0;
 
         Progress.start(progress, numRuns);
 
-        HashMap<Integer, Node> indicies = new HashMap<Integer, Node>();
-        HashMap<Node, Integer> invIndicies = new HashMap<Node, Integer>();
-        int count = 0;
-        for (Node u : hgraph.getNodes()) {
-            indicies.put(count, u);
-            invIndicies.put(u, count);
-            centralities[count] = 1;
-            count++;
-        }
-        for (int s = 0; s < numRuns; s++) {
-            double max = 0;
-            for (int i = 0; i < N; i++) {
-                Node u = indicies.get(i);
-                EdgeIterable iter = null;
-                if (isDirected) {
-                    iter = ((HierarchicalDirectedGraph) hgraph).getInEdgesAndMetaInEdges(u);
-                } else {
-                    iter = ((HierarchicalUndirectedGraph) hgraph).getEdgesAndMetaEdges(u);
+        iteration = new PowerIteration(N, 1, threadCount) {
+
+            @Override
+            protected void multiply(int from, int to, double[] current, double[] next, double[] sums) {
+                double max = sums[0];
+                for (int i = from; i < to; i++) {
+                    double c = 0;
+                    for (int j = offsets[i]; j < offsets[i + 1]; j++) {
+                        c += current[targets[j]];
+                    }
+                    next[i] = c;
+                    max = Math.max(max, c);
                 }
+                sums[0] = max;
+            }
 
-                for (Edge e : iter) {
-                    Node v = hgraph.getOpposite(u, e);
-                    Integer id = invIndicies.get(v);
-                    tmp[i] += centralities[id];
-                }
-                max = Math.max(max, tmp[i]);
-                if (isCanceled) {
-                    return;
-                }
+            @Override
+            protected void reduce(double[] sums, double[] partial) {
+                sums[0] = Math.max(sums[0], partial[0]);
             }
-            sumChange = 0;
-            for (int k = 0; k < N; k++) {
-                if (max != 0) {
-                    sumChange += Math.abs(centralities[k] - (tmp[k] / max));
-                    centralities[k] = tmp[k] / max;
-                    //tmp[k] = 0;
-                }
-                if (isCanceled) {
-                    return;
+
+            @Override
+            protected double normalize(int from, int to, double[] current, double[] next, double[] sums) {
+                double max = sums[0];
+                double delta = 0;
+                for (int i = from; i < to; i++) {
+                    if (max != 0) {
+                        next[i] /= max;
+                        delta += Math.abs(current[i] - next[i]);
+                    } else {
+                        next[i] = current[i];
+                    }
                 }
-            }
-            if (isCanceled) {
-                return;
+                return delta;
             }
 
-            Progress.progress(progress);
+            @Override
+            protected void iterationDone(int iteration, double delta) {
+                sumChange = delta;
+                Progress.progress(progress);
+            }
+        };
+        if (isCanceled) {
+            iteration.cancel();
+        }
+        //Runs exactly numRuns iterations, unless canceled
+        centralities = iteration.iterate(centralities, numRuns, 0.0);
+        iteration = null;
+        if (isCanceled) {
+            return;
         }
 
         for (int i = 0; i < N; i++) {
-            Node s = indicies.get(i);
-            AttributeRow row = (AttributeRow) s.getNodeData().getAttributes();
+            AttributeRow row = (AttributeRow) snapshot.getNode(i).getNodeData().getAttributes();
             row.setValue(eigenCol, centralities[i]);
-            if (isCanceled) {
-                return;
-            }
         }
-        hgraph.readUnlock();
 
         Progress.finish(progress);
     }
@@ -263,6 +282,10 @@ public class EigenvectorCentrality implements Statistics, LongTask {
 
     public boolean cancel() {
         this.isCanceled = true;
+        PowerIteration i = iteration;
+        if (i != null) {
+            i.cancel();
+        }
         return true;
     }
 
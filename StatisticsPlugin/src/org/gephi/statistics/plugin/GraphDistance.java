@@ -42,13 +42,21 @@ Portions Copyrighted 2011 Gephi Consortium.
 package org.gephi.statistics.plugin;
 
 import java.io.IOException;
+import java.text.DecimalFormat;
+import java.text.NumberFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
 import org.gephi.statistics.spi.Statistics;
 import org.gephi.graph.api.*;
-import java.util.LinkedList;
-import java.util.ListIterator;
 import java.util.Map;
-import java.util.Stack;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.gephi.data.attributes.api.AttributeTable;
 import org.gephi.data.attributes.api.AttributeColumn;
 import org.gephi.data.attributes.api.AttributeModel;
@@ -97,9 +105,19 @@ public class GraphDistance implements Statistics, LongTask {
     /** */
     private ProgressTicket progress;
     /** */
-    private boolean isCanceled;
-    private int shortestPaths;
+    private volatile boolean isCanceled;
+    private long shortestPaths;
     private boolean isNormalized;
+    private int threadCount = Runtime.getRuntime().availableProcessors();
+    //Approximation
+    private boolean approximate;
+    private int sampleSize;
+    private double epsilon = 0.05;
+    private double delta = 0.1;
+    private Long seed;
+    private int sampleCount;
+    private double estimatedError;
+    private int count;
 
     public GraphDistance() {
         GraphController graphController = Lookup.getDefault().lookup(GraphController.class);
@@ -150,9 +168,15 @@ public class GraphDistance implements Statistics, LongTask {
             betweenessCol = nodeTable.addColumn(BETWEENNESS, "Betweenness Centrality", AttributeType.DOUBLE, AttributeOrigin.COMPUTED, new Double(0));
         }
 
+        AdjacencySnapshot snapshot;
         hgraph.readLock();
+        try {
+            snapshot = hgraph.getGraphModel().getAdjacencySnapshot(hgraph.getView(), false);
+        } finally {
+            hgraph.readUnlockAll();
+        }
 
-        N = hgraph.getNodeCount();
+        N = snapshot.getNodeCount();
 
         betweenness = new double[N];
         eccentricity = new double[N];
@@ -161,119 +185,296 @@ public class GraphDistance implements Statistics, LongTask {
         avgDist = 0;
         shortestPaths = 0;
         radius = Integer.MAX_VALUE;
-        HashMap<Node, Integer> indicies = new HashMap<Node, Integer>();
-        int index = 0;
-        for (Node s : hgraph.getNodes()) {
-            indicies.put(s, index);
-            index++;
-        }
 
-        Progress.start(progress, hgraph.getNodeCount());
-        int count = 0;
-        for (Node s : hgraph.getNodes()) {
-            Stack<Node> S = new Stack<Node>();
-
-            LinkedList<Node>[] P = new LinkedList[N];
-            double[] theta = new double[N];
-            int[] d = new int[N];
-            for (int j = 0; j < N; j++) {
-                P[j] = new LinkedList<Node>();
-                theta[j] = 0;
-                d[j] = -1;
-            }
+        count = 0;
+        computeShortestPaths(snapshot);
+        if (isCanceled) {
+            return;
+        }
 
-            int s_index = indicies.get(s);
+        avgDist /= shortestPaths;//mN * (mN - 1.0f);
 
-            theta[s_index] = 1;
-            d[s_index] = 0;
+        for (int s_index = 0; s_index < N; s_index++) {
+            AttributeRow row = (AttributeRow) snapshot.getNode(s_index).getNodeData().getAttributes();
 
-            LinkedList<Node> Q = new LinkedList<Node>();
-            Q.addLast(s);
-            while (!Q.isEmpty()) {
-                Node v = Q.removeFirst();
-                S.push(v);
-                int v_index = indicies.get(v);
+            if (!isDirected) {
+                betweenness[s_index] /= 2;
+            }
+            if (isNormalized) {
+                closeness[s_index] = (closeness[s_index] == 0) ? 0 : 1.0 / closeness[s_index];
+                betweenness[s_index] /= isDirected ? (N - 1.0) * (N - 2.0) : (N - 1.0) * (N - 2.0) / 2.0;
+            }
+            row.setValue(eccentricityCol, eccentricity[s_index]);
+            row.setValue(closenessCol, closeness[s_index]);
+            row.setValue(betweenessCol, betweenness[s_index]);
+        }
+    }
 
-                EdgeIterable edgeIter = null;
-                if (isDirected) {
-                    edgeIter = ((HierarchicalDirectedGraph) hgraph).getOutEdgesAndMetaOutEdges(v);
-                } else {
-                    edgeIter = hgraph.getEdgesAndMetaEdges(v);
+    private void computeShortestPaths(AdjacencySnapshot snapshot) {
+        AdjacencySnapshot.Adjacency forward = isDirected ? AdjacencySnapshot.Adjacency.OUT : AdjacencySnapshot.Adjacency.UNDIRECTED;
+        AdjacencySnapshot.Adjacency backward = isDirected ? AdjacencySnapshot.Adjacency.IN : AdjacencySnapshot.Adjacency.UNDIRECTED;
+        int[] sources;
+        if (approximate) {
+            sampleCount = getSampleCount(N);
+            sources = sampleSources(N, sampleCount, seed != null ? new Random(seed) : new Random());
+            estimatedError = sampleCount < N ? Math.sqrt(Math.log(2.0 * N / delta) / (2.0 * sampleCount)) : 0.0;
+        } else {
+            sampleCount = N;
+            sources = new int[N];
+            for (int i = 0; i < N; i++) {
+                sources[i] = i;
+            }
+            estimatedError = 0.0;
+        }
+        Progress.start(progress, sources.length);
+
+        int threads = Math.max(1, Math.min(threadCount, sources.length));
+        AtomicInteger cursor = new AtomicInteger();
+        BrandesTask[] tasks = new BrandesTask[threads];
+        for (int i = 0; i < threads; i++) {
+            tasks[i] = new BrandesTask(snapshot.getOffsets(forward), snapshot.getTargets(forward),
+                    snapshot.getOffsets(backward), snapshot.getTargets(backward), sources, cursor);
+        }
+        if (threads == 1) {
+            tasks[0].run();
+        } else {
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
+            try {
+                List<Future<?>> futures = new ArrayList<Future<?>>();
+                for (BrandesTask task : tasks) {
+                    futures.add(executor.submit(task));
                 }
-
-                for (Edge edge : edgeIter) {
-                    Node reachable = hgraph.getOpposite(v, edge);
-
-                    int r_index = indicies.get(reachable);
-                    if (d[r_index] < 0) {
-                        Q.addLast(reachable);
-                        d[r_index] = d[v_index] + 1;
-                    }
-                    if (d[r_index] == (d[v_index] + 1)) {
-                        theta[r_index] = theta[r_index] + theta[v_index];
-                        P[r_index].addLast(v);
-                    }
+                for (Future<?> future : futures) {
+                    future.get();
                 }
+            } catch (InterruptedException ex) {
+                isCanceled = true;
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException ex) {
+                throw new RuntimeException(ex.getCause());
+            } finally {
+                executor.shutdown();
+            }
+        }
+        if (isCanceled) {
+            return;
+        }
+
+        //Merge thread-local accumulators
+        long totalDist = 0;
+        for (BrandesTask task : tasks) {
+            double[] local = task.betweenness;
+            for (int i = 0; i < N; i++) {
+                betweenness[i] += local[i];
             }
-            double reachable = 0;
+            totalDist += task.totalDist;
+            shortestPaths += task.shortestPaths;
+            diameter = Math.max(diameter, task.diameter);
+            radius = Math.min(radius, task.radius);
+        }
+        avgDist = totalDist;
+
+        if (approximate) {
+            //Scale betweenness and estimate closeness from the distances to the pivots
+            double scale = (double) N / sampleCount;
+            radius = Integer.MAX_VALUE;
             for (int i = 0; i < N; i++) {
-                if (d[i] > 0) {
-                    avgDist += d[i];
-                    eccentricity[s_index] = (int) Math.max(eccentricity[s_index], d[i]);
-                    closeness[s_index] += d[i];
-                    diameter = Math.max(diameter, d[i]);
-                    reachable++;
+                betweenness[i] *= scale;
+                long distSum = 0;
+                int reachCount = 0;
+                int ecc = 0;
+                for (BrandesTask task : tasks) {
+                    distSum += task.pivotDistSum[i];
+                    reachCount += task.pivotReachCount[i];
+                    ecc = Math.max(ecc, task.pivotEccentricity[i]);
                 }
+                closeness[i] = reachCount != 0 ? (double) distSum / reachCount : 0;
+                eccentricity[i] = ecc;
+                radius = Math.min(radius, ecc);
             }
+        }
+    }
 
-            radius = (int) Math.min(eccentricity[s_index], radius);
+    /**
+     * Returns the number of pivots to sample on a graph of <code>n</code>
+     * nodes. Uses the sample size if set, otherwise derives it from the
+     * Hoeffding bound so that all normalized estimates are within
+     * <code>epsilon</code> with probability <code>1 - delta</code>.
+     */
+    int getSampleCount(int n) {
+        if (sampleSize > 0) {
+            return Math.min(sampleSize, n);
+        }
+        double k = Math.ceil(Math.log(2.0 * n / delta) / (2.0 * epsilon * epsilon));
+        return (int) Math.max(1, Math.min(k, n));
+    }
 
-            if (reachable != 0) {
-                closeness[s_index] /= reachable;
-            }
+    private static int[] sampleSources(int n, int k, Random random) {
+        //Partial Fisher-Yates shuffle
+        int[] sources = new int[n];
+        for (int i = 0; i < n; i++) {
+            sources[i] = i;
+        }
+        for (int i = 0; i < k; i++) {
+            int j = i + random.nextInt(n - i);
+            int tmp = sources[i];
+            sources[i] = sources[j];
+            sources[j] = tmp;
+        }
+        return Arrays.copyOf(sources, k);
+    }
 
-            shortestPaths += reachable;
+    /**
+     * Brandes single-source computation, run by each worker thread on the
+     * sources it takes from the shared cursor. Buffers are allocated once per
+     * worker and only the visited entries are reset between two sources.
+     */
+    private class BrandesTask implements Runnable {
+
+        private final int[] forwardOffsets;
+        private final int[] forwardTargets;
+        private final int[] backwardOffsets;
+        private final int[] backwardTargets;
+        private final int[] sources;
+        private final AtomicInteger cursor;
+        //Buffers
+        private final int[] queue;
+        private final int[] d;
+        private final double[] sigma;
+        private final double[] delta;
+        //Accumulators
+        private final double[] betweenness;
+        private long totalDist;
+        private long shortestPaths;
+        private int diameter;
+        private int radius = Integer.MAX_VALUE;
+        //Approximate accumulators, distances from each node to the pivots
+        private final long[] pivotDistSum;
+        private final int[] pivotReachCount;
+        private final int[] pivotEccentricity;
+
+        public BrandesTask(int[] forwardOffsets, int[] forwardTargets, int[] backwardOffsets, int[] backwardTargets, int[] sources, AtomicInteger cursor) {
+            this.forwardOffsets = forwardOffsets;
+            this.forwardTargets = forwardTargets;
+            this.backwardOffsets = backwardOffsets;
+            this.backwardTargets = backwardTargets;
+            this.sources = sources;
+            this.cursor = cursor;
+            this.queue = new int[N];
+            this.d = new int[N];
+            this.sigma = new double[N];
+            this.delta = new double[N];
+            this.betweenness = new double[N];
+            Arrays.fill(d, -1);
+            if (approximate) {
+                pivotDistSum = new long[N];
+                pivotReachCount = new int[N];
+                pivotEccentricity = new int[N];
+            } else {
+                pivotDistSum = null;
+                pivotReachCount = null;
+                pivotEccentricity = null;
+            }
+        }
 
-            double[] delta = new double[N];
-            while (!S.empty()) {
-                Node w = S.pop();
-                int w_index = indicies.get(w);
-                ListIterator<Node> iter1 = P[w_index].listIterator();
-                while (iter1.hasNext()) {
-                    Node u = iter1.next();
-                    int u_index = indicies.get(u);
-                    delta[u_index] += (theta[u_index] / theta[w_index]) * (1 + delta[w_index]);
+        public void run() {
+            int i;
+            while (!isCanceled && (i = cursor.getAndIncrement()) < sources.length) {
+                computeSource(sources[i]);
+                synchronized (GraphDistance.this) {
+                    Progress.progress(progress, ++count);
                 }
-                if (w != s) {
-                    betweenness[w_index] += delta[w_index];
+            }
+        }
+
+        private int bfs(int s, int[] offsets, int[] targets, boolean countPaths) {
+            if (countPaths) {
+                sigma[s] = 1;
+            }
+            d[s] = 0;
+            queue[0] = s;
+            int head = 0;
+            int tail = 1;
+            while (head < tail) {
+                int v = queue[head++];
+                int dv = d[v] + 1;
+                for (int j = offsets[v]; j < offsets[v + 1]; j++) {
+                    int r = targets[j];
+                    if (d[r] < 0) {
+                        queue[tail++] = r;
+                        d[r] = dv;
+                    }
+                    if (countPaths && d[r] == dv) {
+                        sigma[r] += sigma[v];
+                    }
                 }
             }
-            count++;
-            if (isCanceled) {
-                hgraph.readUnlockAll();
-                return;
+            return tail;
+        }
+
+        private void reset(int tail) {
+            for (int k = 0; k < tail; k++) {
+                int v = queue[k];
+                d[v] = -1;
+                sigma[v] = 0;
+                delta[v] = 0;
             }
-            Progress.progress(progress, count);
         }
 
-        avgDist /= shortestPaths;//mN * (mN - 1.0f);
+        private void accumulatePivotDistances(int tail) {
+            for (int k = 1; k < tail; k++) {
+                int v = queue[k];
+                pivotDistSum[v] += d[v];
+                pivotReachCount[v]++;
+                pivotEccentricity[v] = Math.max(pivotEccentricity[v], d[v]);
+            }
+        }
 
-        for (Node s : hgraph.getNodes()) {
-            AttributeRow row = (AttributeRow) s.getNodeData().getAttributes();
-            int s_index = indicies.get(s);
+        private void computeSource(int s) {
+            int tail = bfs(s, forwardOffsets, forwardTargets, true);
 
-            if (!isDirected) {
-                betweenness[s_index] /= 2;
+            int reachable = tail - 1;
+            long sum = 0;
+            int ecc = 0;
+            for (int k = 1; k < tail; k++) {
+                int dist = d[queue[k]];
+                sum += dist;
+                ecc = Math.max(ecc, dist);
             }
-            if (isNormalized) {
-                closeness[s_index] = (closeness[s_index] == 0) ? 0 : 1.0 / closeness[s_index];
-                betweenness[s_index] /= isDirected ? (N - 1) * (N - 2) : (N - 1) * (N - 2) / 2;
+            if (!approximate) {
+                eccentricity[s] = ecc;
+                closeness[s] = reachable != 0 ? (double) sum / reachable : 0;
+                radius = Math.min(radius, ecc);
+            } else if (!isDirected) {
+                accumulatePivotDistances(tail);
+            }
+            totalDist += sum;
+            shortestPaths += reachable;
+            diameter = Math.max(diameter, ecc);
+
+            //Dependencies accumulation, queue read backward is the stack
+            for (int k = tail - 1; k >= 0; k--) {
+                int w = queue[k];
+                int dw = d[w] - 1;
+                for (int j = backwardOffsets[w]; j < backwardOffsets[w + 1]; j++) {
+                    int u = backwardTargets[j];
+                    if (d[u] == dw) {
+                        delta[u] += (sigma[u] / sigma[w]) * (1 + delta[w]);
+                    }
+                }
+                if (w != s) {
+                    betweenness[w] += delta[w];
+                }
+            }
+            reset(tail);
+
+            if (approximate && isDirected) {
+                //Distances from nodes to the pivot are found on the reversed graph
+                tail = bfs(s, backwardOffsets, backwardTargets, false);
+                accumulatePivotDistances(tail);
+                reset(tail);
             }
-            row.setValue(eccentricityCol, eccentricity[s_index]);
-            row.setValue(closenessCol, closeness[s_index]);
-            row.setValue(betweenessCol, betweenness[s_index]);
         }
-        hgraph.readUnlock();
     }
 
     public void setNormalized(boolean isNormalized) {
@@ -292,6 +493,98 @@ public class GraphDistance implements Statistics, LongTask {
         return isDirected;
     }
 
+    /**
+     * Sets whether shortest paths are computed from a uniform sample of
+     * source nodes (pivots) instead of all nodes. Betweenness is then
+     * extrapolated from the pivots and closeness and eccentricity are
+     * estimated from the distances between each node and the pivots.
+     * @param approximate   <code>true</code> to enable source sampling
+     */
+    public void setApproximate(boolean approximate) {
+        this.approximate = approximate;
+    }
+
+    public boolean isApproximate() {
+        return approximate;
+    }
+
+    /**
+     * Sets the number of pivots to sample in approximate mode. If zero or
+     * negative, the number of pivots is derived from <code>epsilon</code>
+     * and <code>delta</code>.
+     * @param sampleSize    the number of pivots, or <code>0</code>
+     */
+    public void setSampleSize(int sampleSize) {
+        this.sampleSize = sampleSize;
+    }
+
+    public int getSampleSize() {
+        return sampleSize;
+    }
+
+    /**
+     * Sets the target additive error on normalized centralities in
+     * approximate mode, used when no sample size is set.
+     * @param epsilon       the target error, in <code>]0,1[</code>
+     * @throws IllegalArgumentException if <code>epsilon</code> is not in
+     * <code>]0,1[</code>
+     */
+    public void setEpsilon(double epsilon) {
+        if (!(epsilon > 0 && epsilon < 1)) {
+            throw new IllegalArgumentException("Epsilon must be in ]0,1[");
+        }
+        this.epsilon = epsilon;
+    }
+
+    public double getEpsilon() {
+        return epsilon;
+    }
+
+    /**
+     * Sets the probability that the error exceeds <code>epsilon</code> in
+     * approximate mode.
+     * @param delta         the failure probability, in <code>]0,1[</code>
+     * @throws IllegalArgumentException if <code>delta</code> is not in
+     * <code>]0,1[</code>
+     */
+    public void setDelta(double delta) {
+        if (!(delta > 0 && delta < 1)) {
+            throw new IllegalArgumentException("Delta must be in ]0,1[");
+        }
+        this.delta = delta;
+    }
+
+    public double getDelta() {
+        return delta;
+    }
+
+    /**
+     * Sets the seed of the pivots sampling in approximate mode, so that
+     * executions are reproducible. By default pivots are sampled with a
+     * different seed at each execution.
+     * @param seed          the random seed
+     */
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Returns the estimated error bound of the last execution, or
+     * <code>0</code> if all sources have been used.
+     * @return  the estimated additive error on normalized centralities
+     */
+    public double getEstimatedError() {
+        return estimatedError;
+    }
+
+    public void setThreadCount(int threadCount) {
+        this.threadCount = threadCount;
+    }
+
+    public int getThreadCount() {
+        return threadCount;
+    }
+
     private String createImageFile(TempDir tempDir, double[] pVals, String pName, String pX, String pY) {
         //distribution of values
         Map<Double, Integer> dist = new HashMap<Double, Integer>();
@@ -343,11 +636,28 @@ public class GraphDistance implements Statistics, LongTask {
             Exceptions.printStackTrace(ex);
         }
 
+        String approximationReport = "";
+        if (approximate) {
+            NumberFormat f = new DecimalFormat("0.####");
+            String error;
+            if (isNormalized) {
+                error = f.format(estimatedError) + " on normalized betweenness and on average distance / diameter";
+            } else {
+                //The bound holds on normalized values, scaled back to raw values
+                double pairs = isDirected ? (N - 1.0) * (N - 2.0) : (N - 1.0) * (N - 2.0) / 2.0;
+                error = f.format(estimatedError * pairs) + " on betweenness and " + f.format(estimatedError * diameter) + " on closeness";
+            }
+            approximationReport = "Approximation: " + sampleCount + " sampled sources out of " + N + "<br />"
+                    + "Estimated error: " + error
+                    + ", with probability " + f.format(1.0 - delta) + "<br />";
+        }
+
         String report = "<HTML> <BODY> <h1>Graph Distance  Report </h1> "
                 + "<hr>"
                 + "<br>"
                 + "<h2> Parameters: </h2>"
                 + "Network Interpretation:  " + (isDirected ? "directed" : "undirected") + "<br />"
+                + approximationReport
                 + "<br /> <h2> Results: </h2>"
                 + "Diameter: " + diameter + "<br />"
                 + "Radius: " + radius + "<br />"
@@ -358,6 +668,7 @@ public class GraphDistance implements Statistics, LongTask {
                 + htmlIMG3
                 + "<br /><br />" + "<h2> Algorithm: </h2>"
                 + "Ulrik Brandes, <i>A Faster Algorithm for Betweenness Centrality</i>, in Journal of Mathematical Sociology 25(2):163-177, (2001)<br />"
+                + (approximate ? "Ulrik Brandes and Christian Pich, <i>Centrality Estimation in Large Networks</i>, in International Journal of Bifurcation and Chaos 17(7):2303-2318, (2007)<br />" : "")
                 + "</BODY> </HTML>";
 
         return report;
@@ -41,8 +41,8 @@ Portions Copyrighted 2011 Gephi Consortium.
  */
 package org.gephi.statistics.plugin;
 
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.LinkedList;
 import java.util.Map;
 import org.gephi.data.attributes.api.AttributeTable;
 import org.gephi.data.attributes.api.AttributeColumn;
@@ -50,14 +50,10 @@ import org.gephi.data.attributes.api.AttributeModel;
 import org.gephi.data.attributes.api.AttributeOrigin;
 import org.gephi.data.attributes.api.AttributeRow;
 import org.gephi.data.attributes.api.AttributeType;
-import org.gephi.graph.api.Edge;
-import org.gephi.graph.api.EdgeIterable;
+import org.gephi.graph.api.AdjacencySnapshot;
 import org.gephi.graph.api.GraphController;
 import org.gephi.graph.api.GraphModel;
-import org.gephi.graph.api.HierarchicalDirectedGraph;
 import org.gephi.graph.api.HierarchicalGraph;
-import org.gephi.graph.api.HierarchicalUndirectedGraph;
-import org.gephi.graph.api.Node;
 import org.gephi.statistics.spi.Statistics;
 import org.gephi.utils.longtask.spi.LongTask;
 import org.gephi.utils.progress.Progress;
@@ -79,15 +75,17 @@ public class Hits implements Statistics, LongTask {
 
     public static final String AUTHORITY = "authority";
     public static final String HUB = "hub";
-    private boolean isCanceled;
+    private volatile boolean isCanceled;
+    private volatile PowerIteration iteration;
     private ProgressTicket progress;
     private double[] authority;
     private double[] hubs;
     private boolean useUndirected;
     private double epsilon = 0.0001;
-    private LinkedList<Node> hub_list;
-    private LinkedList<Node> auth_list;
-    private HashMap<Node, Integer> indicies;
+    private int maxIterations = 1000;
+    private int threadCount = Runtime.getRuntime().availableProcessors();
+    private int[] hub_list;
+    private int[] auth_list;
 
     public Hits() {
         GraphController graphController = Lookup.getDefault().lookup(GraphController.class);
@@ -119,124 +117,96 @@ public class Hits implements Statistics, LongTask {
     }
 
     public void execute(HierarchicalGraph hgraph, AttributeModel attributeModel) {
-        hgraph.readLock();
-
-        int N = hgraph.getNodeCount();
-        authority = new double[N];
-        hubs = new double[N];
-        double[] temp_authority = new double[N];
-        double[] temp_hubs = new double[N];
+        isCanceled = false;
 
-        hub_list = new LinkedList<Node>();
-        auth_list = new LinkedList<Node>();
+        AdjacencySnapshot snapshot;
+        hgraph.readLock();
+        try {
+            snapshot = hgraph.getGraphModel().getAdjacencySnapshot(hgraph.getView(), false);
+        } finally {
+            hgraph.readUnlockAll();
+        }
 
         Progress.start(progress);
 
-        indicies = new HashMap<Node, Integer>();
-        int index = 0;
-        for (Node node : hgraph.getNodes()) {
-            indicies.put(node, new Integer(index));
-            index++;
-
-            if (!useUndirected) {
-                if (((HierarchicalDirectedGraph) hgraph).getTotalOutDegree(node) > 0) {
-                    hub_list.add(node);
-                }
-                if (((HierarchicalDirectedGraph) hgraph).getTotalInDegree(node) > 0) {
-                    auth_list.add(node);
-                }
-            } else {
-                if (((HierarchicalUndirectedGraph) hgraph).getTotalDegree(node) > 0) {
-                    hub_list.add(node);
-                    auth_list.add(node);
-                }
+        final int N = snapshot.getNodeCount();
+        AdjacencySnapshot.Adjacency in = useUndirected ? AdjacencySnapshot.Adjacency.UNDIRECTED : AdjacencySnapshot.Adjacency.IN;
+        AdjacencySnapshot.Adjacency out = useUndirected ? AdjacencySnapshot.Adjacency.UNDIRECTED : AdjacencySnapshot.Adjacency.OUT;
+        final int[] inOffsets = snapshot.getOffsets(in);
+        final int[] inTargets = snapshot.getTargets(in);
+        final int[] outOffsets = snapshot.getOffsets(out);
+        final int[] outTargets = snapshot.getTargets(out);
+
+        //Authorities are stored in [0, N) and hubs in [N, 2N)
+        double[] scores = new double[2 * N];
+        int hubCount = 0;
+        int authCount = 0;
+        for (int i = 0; i < N; i++) {
+            if (inOffsets[i + 1] > inOffsets[i]) {
+                scores[i] = 1.0;
+                authCount++;
+            }
+            if (outOffsets[i + 1] > outOffsets[i]) {
+                scores[N + i] = 1.0;
+                hubCount++;
             }
         }
-
-
-        for (Node node : hub_list) {
-            int n_index = indicies.get(node);
-            hubs[n_index] = 1.0f;
-        }
-        for (Node node : auth_list) {
-            int n_index = indicies.get(node);
-            authority[n_index] = 1.0f;
-        }
-
-        while (true) {
-
-            boolean done = true;
-            double auth_sum = 0;
-            for (Node node : auth_list) {
-
-                int n_index = indicies.get(node);
-                temp_authority[n_index] = authority[n_index];
-                EdgeIterable edge_iter;
-                if (!useUndirected) {
-                    edge_iter = ((HierarchicalDirectedGraph) hgraph).getInEdgesAndMetaInEdges(node);
-                } else {
-                    edge_iter = ((HierarchicalUndirectedGraph) hgraph).getEdgesAndMetaEdges(node);
-                }
-                for (Edge edge : edge_iter) {
-                    Node target = hgraph.getOpposite(node, edge);
-                    int target_index = indicies.get(target);
-                    temp_authority[n_index] += hubs[target_index];
-                }
-
-                auth_sum += temp_authority[n_index];
-                if (isCanceled) {
-                    break;
-                }
-
+        auth_list = new int[authCount];
+        hub_list = new int[hubCount];
+        for (int i = 0, a = 0, h = 0; i < N; i++) {
+            if (scores[i] > 0) {
+                auth_list[a++] = i;
             }
-
-            double hub_sum = 0;
-            for (Node node : hub_list) {
-
-                int n_index = indicies.get(node);
-                temp_hubs[n_index] = hubs[n_index];
-                EdgeIterable edge_iter;
-                if (!useUndirected) {
-                    edge_iter = ((HierarchicalDirectedGraph) hgraph).getInEdgesAndMetaInEdges(node);
-                } else {
-                    edge_iter = ((HierarchicalUndirectedGraph) hgraph).getEdgesAndMetaEdges(node);
-                }
-                for (Edge edge : edge_iter) {
-                    Node target = hgraph.getOpposite(node, edge);
-                    int target_index = indicies.get(target);
-                    temp_hubs[n_index] += authority[target_index];
-                }
-                hub_sum += temp_hubs[n_index];
-                if (isCanceled) {
-                    break;
-                }
+            if (scores[N + i] > 0) {
+                hub_list[h++] = i;
             }
+        }
 
-            for (Node node : auth_list) {
-                int n_index = indicies.get(node);
-                temp_authority[n_index] /= auth_sum;
-                if (((temp_authority[n_index] - authority[n_index]) / authority[n_index]) >= epsilon) {
-                    done = false;
+        iteration = new PowerIteration(2 * N, 2, threadCount) {
+
+            @Override
+            protected void multiply(int from, int to, double[] current, double[] next, double[] sums) {
+                for (int i = from; i < to; i++) {
+                    double score = current[i];
+                    if (i < N) {
+                        for (int j = inOffsets[i]; j < inOffsets[i + 1]; j++) {
+                            score += current[N + inTargets[j]];
+                        }
+                        sums[0] += score;
+                    } else {
+                        int n = i - N;
+                        for (int j = outOffsets[n]; j < outOffsets[n + 1]; j++) {
+                            score += current[outTargets[j]];
+                        }
+                        sums[1] += score;
+                    }
+                    next[i] = score;
                 }
             }
-            for (Node node : hub_list) {
-                int n_index = indicies.get(node);
-                temp_hubs[n_index] /= hub_sum;
-                if (((temp_hubs[n_index] - hubs[n_index]) / hubs[n_index]) >= epsilon) {
-                    done = false;
-                }
-            }
-
-
-            authority = temp_authority;
-            hubs = temp_hubs;
-            temp_authority = new double[N];
-            temp_hubs = new double[N];
 
-            if ((done) || (isCanceled)) {
-                break;
+            @Override
+            protected double normalize(int from, int to, double[] current, double[] next, double[] sums) {
+                double delta = 0;
+                for (int i = from; i < to; i++) {
+                    double sum = i < N ? sums[0] : sums[1];
+                    if (sum > 0) {
+                        next[i] /= sum;
+                    }
+                    delta += Math.abs(next[i] - current[i]);
+                }
+                return delta;
             }
+        };
+        if (isCanceled) {
+            iteration.cancel();
+        }
+        scores = iteration.iterate(scores, maxIterations, epsilon);
+        iteration = null;
+        if (isCanceled) {
+            return;
         }
+        authority = Arrays.copyOfRange(scores, 0, N);
+        hubs = Arrays.copyOfRange(scores, N, 2 * N);
 
         AttributeTable nodeTable = attributeModel.getNodeTable();
         AttributeColumn authorityCol = nodeTable.getColumn(AUTHORITY);
@@ -248,14 +218,13 @@ public class Hits implements Statistics, LongTask {
             hubsCol = nodeTable.addColumn(HUB, "Hub", AttributeType.FLOAT, AttributeOrigin.COMPUTED, new Float(0));
         }
 
-        for (Node s : hgraph.getNodes()) {
-            int s_index = indicies.get(s);
-            AttributeRow row = (AttributeRow) s.getNodeData().getAttributes();
-            row.setValue(authorityCol, (float) authority[s_index]);
-            row.setValue(hubsCol, (float) hubs[s_index]);
+        for (int i = 0; i < N; i++) {
+            AttributeRow row = (AttributeRow) snapshot.getNode(i).getNodeData().getAttributes();
+            row.setValue(authorityCol, (float) authority[i]);
+            row.setValue(hubsCol, (float) hubs[i]);
         }
 
-        hgraph.readUnlockAll();
+        Progress.finish(progress);
     }
 
     /**
@@ -265,8 +234,7 @@ public class Hits implements Statistics, LongTask {
     public String getReport() {
         //distribution of hub values
         Map<Double, Integer> distHubs = new HashMap<Double, Integer>();
-        for (Node node : hub_list) {
-            int n_index = indicies.get(node);
+        for (int n_index : hub_list) {
             Double d = hubs[n_index];
             if (distHubs.containsKey(d)) {
                 Integer v = distHubs.get(d);
@@ -278,8 +246,7 @@ public class Hits implements Statistics, LongTask {
 
         //distribution of authority values
         Map<Double, Integer> distAuthorities = new HashMap<Double, Integer>();
-        for (Node node : auth_list) {
-            int n_index = indicies.get(node);
+        for (int n_index : auth_list) {
             Double d = authority[n_index];
             if (distAuthorities.containsKey(d)) {
                 Integer v = distAuthorities.get(d);
@@ -349,6 +316,10 @@ public class Hits implements Statistics, LongTask {
      */
     public boolean cancel() {
         isCanceled = true;
+        PowerIteration i = iteration;
+        if (i != null) {
+            i.cancel();
+        }
         return true;
     }
 
@@ -375,4 +346,25 @@ public class Hits implements Statistics, LongTask {
     public double getEpsilon() {
         return epsilon;
     }
+
+    /**
+     * Sets the maximum number of iterations, in case the L1 change between
+     * two iterations never gets lower than epsilon.
+     * @param maxIterations the maximum number of iterations
+     */
+    public void setMaxIterations(int maxIterations) {
+        this.maxIterations = maxIterations;
+    }
+
+    public int getMaxIterations() {
+        return maxIterations;
+    }
+
+    public void setThreadCount(int threadCount) {
+        this.threadCount = threadCount;
+    }
+
+    public int getThreadCount() {
+        return threadCount;
+    }
 }
@@ -43,20 +43,26 @@ package org.gephi.statistics.plugin;
 
 import java.text.DecimalFormat;
 import java.text.NumberFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 import java.util.Random;
-import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import org.gephi.data.attributes.api.AttributeTable;
 import org.gephi.data.attributes.api.AttributeColumn;
 import org.gephi.data.attributes.api.AttributeModel;
 import org.gephi.data.attributes.api.AttributeOrigin;
 import org.gephi.data.attributes.api.AttributeRow;
 import org.gephi.data.attributes.api.AttributeType;
+import org.gephi.graph.api.AdjacencySnapshot;
 import org.gephi.graph.api.GraphModel;
 import org.gephi.graph.api.HierarchicalUndirectedGraph;
-import org.gephi.graph.api.Node;
 import org.gephi.statistics.spi.Statistics;
 import org.gephi.utils.longtask.spi.LongTask;
 import org.gephi.utils.progress.Progress;
@@ -68,17 +74,47 @@ import org.jfree.data.xy.XYSeries;
 import org.jfree.data.xy.XYSeriesCollection;
 
 /**
+ * Louvain community detection, with parallel local moving.
+ * <p>
+ * Each level moves nodes to the neighbour community with the best modularity
+ * gain until modularity stops improving, and then aggregates communities as
+ * nodes of the next level. Nodes are processed by batches whose size only
+ * depends on the number of nodes of the level: moves of a batch are chosen
+ * from the state at the start of the batch, in parallel when there are
+ * several threads, and applied in order afterwards. Small levels use batches
+ * of a single node, which is the sequential algorithm. A batched pass which
+ * doesn't improve modularity is undone and run again with sequential moves.
+ * Results are therefore only determined by the graph and the seed, whatever
+ * the number of threads.
+ * <p>
+ * The optional refinement phase projects the final partition back on each
+ * level, from the coarsest to the original graph, and runs local moving again
+ * on each of them.
  *
  * @author pjmcswee
  */
 public class Modularity implements Statistics, LongTask {
 
     public static final String MODULARITY_CLASS = "modularity_class";
+    private static final int BATCHES = 64;
+    private static final int MAX_BATCH_SIZE = 1 << 16;
+    private static final int MIN_PARALLEL_BATCH_SIZE = 512;
+    private static final double MIN_GAIN = 1e-7;
     private ProgressTicket progress;
-    private boolean isCanceled;
-    private CommunityStructure structure;
+    private volatile boolean isCanceled;
     private double modularity;
     private boolean isRandomized = false;
+    private boolean refine = false;
+    private int passes = 0;
+    private long seed = 0;
+    private long usedSeed;
+    private int threadCount = Runtime.getRuntime().availableProcessors();
+    //Results
+    private int[] communitySizes;
+    private double[] levelModularities;
+    private int[] levelCommunities;
+    private double unrefinedModularity;
+    private ExecutorService executor;
 
     public void setRandom(boolean isRandomized) {
         this.isRandomized = isRandomized;
@@ -88,404 +124,537 @@ public class Modularity implements Statistics, LongTask {
         return isRandomized;
     }
 
-    public boolean cancel() {
-        this.isCanceled = true;
-        return true;
+    /**
+     * Sets the seed used to shuffle nodes when randomized. Use <code>0</code>
+     * to pick a new seed at each execution.
+     * @param seed  the random seed, or <code>0</code>
+     */
+    public void setSeed(long seed) {
+        this.seed = seed;
     }
 
-    public void setProgressTicket(ProgressTicket progressTicket) {
-        this.progress = progressTicket;
+    public long getSeed() {
+        return seed;
     }
 
-    class ModEdge {
+    /**
+     * Sets the maximum number of passes, i.e. levels of aggregation. Use
+     * <code>0</code> to continue until modularity can't be improved.
+     * @param passes    the maximum number of passes, or <code>0</code>
+     */
+    public void setPasses(int passes) {
+        this.passes = passes;
+    }
 
-        int source;
-        int target;
-        int weight;
+    public int getPasses() {
+        return passes;
+    }
 
-        public ModEdge(int s, int t, int w) {
-            source = s;
-            target = t;
-            weight = w;
-        }
+    /**
+     * Enables the multi-level refinement phase, which moves nodes again on
+     * each level once the partition has been found.
+     * @param refine    <code>true</code> to refine the partition
+     */
+    public void setRefine(boolean refine) {
+        this.refine = refine;
     }
 
-    class CommunityStructure {
-
-        HashMap<Community, Integer>[] nodeConnections;
-        HashMap<Node, Integer> map;
-        Community[] nodeCommunities;
-        HierarchicalUndirectedGraph graph;
-        double[] weights;
-        double graphWeightSum;
-        LinkedList<ModEdge>[] topology;
-        LinkedList<Community> communities;
-        int N;
-        HashMap<Integer, Community> invMap;
-
-        
-        CommunityStructure(HierarchicalUndirectedGraph hgraph) {
-            this.graph = hgraph;
-            N = hgraph.getNodeCount();
-            invMap = new HashMap<Integer, Community>();
-            nodeConnections = new HashMap[N];
-            nodeCommunities = new Community[N];
-            map = new HashMap<Node, Integer>();
-            topology = new LinkedList[N];
-            communities = new LinkedList<Community>();
-            int index = 0;
-            weights = new double[N];
-            for (Node node : hgraph.getNodes()) {
-                map.put(node, index);
-                nodeCommunities[index] = new Community(this);
-                nodeConnections[index] = new HashMap<Community, Integer>();
-                weights[index] = hgraph.getTotalDegree(node);
-                nodeCommunities[index].seed(index);
-                Community hidden = new Community(structure);
-                hidden.nodes.add(index);
-                invMap.put(index, hidden);
-                communities.add(nodeCommunities[index]);               
-                index++;
-                if (isCanceled) {
-                    return;
-                }
-            }
+    public boolean isRefine() {
+        return refine;
+    }
 
-            for (Node node : hgraph.getNodes()) {
-                int node_index = map.get(node);
-                topology[node_index] = new LinkedList<ModEdge>();
+    public void setThreadCount(int threadCount) {
+        this.threadCount = threadCount;
+    }
 
-                for (Node neighbor : hgraph.getNeighbors(node)) {
-                    if (node == neighbor) {
-                        continue;
-                    }
-                    int neighbor_index = map.get(neighbor);
-                    ModEdge me = new ModEdge(node_index, neighbor_index, 1);
-                    topology[node_index].add(me);
-                    Community adjCom = nodeCommunities[neighbor_index];
-                    nodeConnections[node_index].put(adjCom, 1);
-                    nodeCommunities[node_index].connections.put(adjCom, 1);
-                    nodeConnections[neighbor_index].put(nodeCommunities[node_index], 1);
-                    nodeCommunities[neighbor_index].connections.put(nodeCommunities[node_index], 1);
-                    graphWeightSum++;//WARNING : may be an issue with self_loop
-                }
+    public int getThreadCount() {
+        return threadCount;
+    }
 
-                if (isCanceled) {
-                    return;
+    public boolean cancel() {
+        this.isCanceled = true;
+        return true;
+    }
+
+    public void setProgressTicket(ProgressTicket progressTicket) {
+        this.progress = progressTicket;
+    }
+
+    /**
+     * Undirected weighted graph in compressed sparse row format. Each edge
+     * between two different nodes is stored in both directions, edges inside
+     * a node are summed in <code>selfWeights</code>, counted in both
+     * directions as well.
+     */
+    private static class Level {
+
+        final int n;
+        final int[] offsets;
+        final int[] targets;
+        final double[] weights;
+        final double[] selfWeights;
+        final double[] degrees;
+        final double totalWeight;
+        //Community of each node at this level, i.e. its node in the next level
+        int[] communities;
+
+        Level(int n, int[] offsets, int[] targets, double[] weights, double[] selfWeights) {
+            this.n = n;
+            this.offsets = offsets;
+            this.targets = targets;
+            this.weights = weights;
+            this.selfWeights = selfWeights;
+            this.degrees = new double[n];
+            double sum = 0;
+            for (int i = 0; i < n; i++) {
+                double d = selfWeights[i];
+                for (int j = offsets[i]; j < offsets[i + 1]; j++) {
+                    d += weights[j];
                 }
+                degrees[i] = d;
+                sum += d;
             }
-            graphWeightSum /= 2.0;
+            this.totalWeight = sum;
         }
+    }
 
-        private void addNodeTo(int node, Community to) {
-            to.add(new Integer(node));
-            nodeCommunities[node] = to;
-
-            for (ModEdge e : topology[node]) {
-                int neighbor = e.target;
+    public void execute(GraphModel graphModel, AttributeModel attributeModel) {
+        HierarchicalUndirectedGraph hgraph = graphModel.getHierarchicalUndirectedGraphVisible();
+        execute(hgraph, attributeModel);
+    }
 
-                ////////
-                //Remove Node Connection to this community
-                Integer neighEdgesTo = nodeConnections[neighbor].get(to);
-                if (neighEdgesTo == null) {
-                    nodeConnections[neighbor].put(to, e.weight);
-                } else {
-                    nodeConnections[neighbor].put(to, neighEdgesTo + e.weight);
-                }
+    public void execute(HierarchicalUndirectedGraph hgraph, AttributeModel attributeModel) {
+        isCanceled = false;
+        Progress.start(progress);
 
+        AdjacencySnapshot snapshot;
+        hgraph.readLock();
+        try {
+            snapshot = hgraph.getGraphModel().getAdjacencySnapshot(hgraph.getView(), false);
+        } finally {
+            hgraph.readUnlockAll();
+        }
 
+        usedSeed = seed != 0 ? seed : new Random().nextLong();
+        Random random = isRandomized ? new Random(usedSeed) : null;
+        Level base = createBaseLevel(snapshot);
+
+        int threads = Math.max(1, threadCount);
+        executor = threads > 1 ? Executors.newFixedThreadPool(threads) : null;
+        int[] partition;
+        try {
+            partition = computePartition(base, random, threads);
+        } finally {
+            if (executor != null) {
+                executor.shutdown();
+                executor = null;
+            }
+        }
+        if (isCanceled) {
+            return;
+        }
 
+        int communityCount = renumber(partition);
+        communitySizes = new int[communityCount];
+        for (int i = 0; i < base.n; i++) {
+            communitySizes[partition[i]]++;
+        }
+        modularity = modularity(base, partition);
 
-                ///////////////////
-                Community adjCom = nodeCommunities[neighbor];
-                Integer oEdgesto = adjCom.connections.get(to);
-                if (oEdgesto == null) {
-                    adjCom.connections.put(to, e.weight);
-                } else {
-                    adjCom.connections.put(to, oEdgesto + e.weight);
-                }
+        AttributeTable nodeTable = attributeModel.getNodeTable();
+        AttributeColumn modCol = nodeTable.getColumn(MODULARITY_CLASS);
+        if (modCol == null) {
+            modCol = nodeTable.addColumn(MODULARITY_CLASS, "Modularity Class", AttributeType.INT, AttributeOrigin.COMPUTED, new Integer(0));
+        }
+        for (int i = 0; i < base.n; i++) {
+            AttributeRow row = (AttributeRow) snapshot.getNode(i).getNodeData().getAttributes();
+            row.setValue(modCol, partition[i]);
+        }
+    }
 
-                Integer nodeEdgesTo = nodeConnections[node].get(adjCom);
-                if (nodeEdgesTo == null) {
-                    nodeConnections[node].put(adjCom, e.weight);
-                } else {
-                    nodeConnections[node].put(adjCom, nodeEdgesTo + e.weight);
-                }
+    private Level createBaseLevel(AdjacencySnapshot snapshot) {
+        int n = snapshot.getNodeCount();
+        int[] offsets = snapshot.getOffsets(AdjacencySnapshot.Adjacency.UNDIRECTED);
+        int[] targets = snapshot.getTargets(AdjacencySnapshot.Adjacency.UNDIRECTED);
 
-                if (to != adjCom) {
-                    Integer comEdgesto = to.connections.get(adjCom);
-                    if (comEdgesto == null) {
-                        to.connections.put(adjCom, e.weight);
-                    } else {
-                        to.connections.put(adjCom, comEdgesto + e.weight);
-                    }
+        //Self-loops are ignored
+        int[] newOffsets = new int[n + 1];
+        int[] newTargets = new int[targets.length];
+        int count = 0;
+        for (int i = 0; i < n; i++) {
+            newOffsets[i] = count;
+            for (int j = offsets[i]; j < offsets[i + 1]; j++) {
+                if (targets[j] != i) {
+                    newTargets[count++] = targets[j];
                 }
             }
         }
+        newOffsets[n] = count;
+        double[] weights = new double[count];
+        Arrays.fill(weights, 1.0);
+        return new Level(n, newOffsets, Arrays.copyOf(newTargets, count), weights, new double[n]);
+    }
 
-        private void removeNodeFrom(int node, Community from) {
-            Community community = nodeCommunities[node];
-            for (ModEdge e : topology[node]) {
-                int neighbor = e.target;
-
-                ////////
-                //Remove Node Connection to this community
-                Integer edgesTo = nodeConnections[neighbor].get(community);
-                if (edgesTo - e.weight == 0) {
-                    nodeConnections[neighbor].remove(community);
-                } else {
-                    nodeConnections[neighbor].put(community, edgesTo - e.weight);
-                }
-
-                ///////////////////
-                //Remove Adjacency Community's connetion to this community
-                Community adjCom = nodeCommunities[neighbor];
-                Integer oEdgesto = adjCom.connections.get(community);
-                if (oEdgesto - e.weight == 0) {
-                    adjCom.connections.remove(community);
-                } else {
-                    adjCom.connections.put(community, oEdgesto - e.weight);
-                }
-
-                if (node == neighbor) {
-                    continue;
-                }
+    private int[] computePartition(Level base, Random random, int threads) {
+        List<Level> levels = new ArrayList<Level>();
+        List<Double> modularities = new ArrayList<Double>();
+        List<Integer> counts = new ArrayList<Integer>();
+        Level level = base;
+        while (true) {
+            int[] communities = new int[level.n];
+            for (int i = 0; i < level.n; i++) {
+                communities[i] = i;
+            }
+            boolean moved = moveNodes(level, communities, random, threads);
+            if (isCanceled) {
+                return null;
+            }
+            if (!moved && !levels.isEmpty()) {
+                break;
+            }
+            int count = renumber(communities);
+            level.communities = communities;
+            levels.add(level);
+            modularities.add(modularity(level, communities));
+            counts.add(count);
+            if (!moved || count == level.n || (passes > 0 && levels.size() >= passes)) {
+                break;
+            }
+            level = aggregate(level, communities, count);
+        }
 
-                if (adjCom != community) {
-                    Integer comEdgesto = community.connections.get(adjCom);
-                    if (comEdgesto - e.weight == 0) {
-                        community.connections.remove(adjCom);
-                    } else {
-                        community.connections.put(adjCom, comEdgesto - e.weight);
-                    }
+        levelModularities = new double[levels.size()];
+        levelCommunities = new int[levels.size()];
+        for (int i = 0; i < levels.size(); i++) {
+            levelModularities[i] = modularities.get(i);
+            levelCommunities[i] = counts.get(i);
+        }
+        unrefinedModularity = levelModularities[levels.size() - 1];
+
+        //Project the partition from the coarsest level to the base level
+        int[] partition = levels.get(levels.size() - 1).communities;
+        for (int l = levels.size() - 1; l >= 0; l--) {
+            Level current = levels.get(l);
+            if (l < levels.size() - 1) {
+                int[] projected = new int[current.n];
+                for (int i = 0; i < current.n; i++) {
+                    projected[i] = partition[current.communities[i]];
                 }
-
-                Integer nodeEgesTo = nodeConnections[node].get(adjCom);
-                if (nodeEgesTo - e.weight == 0) {
-                    nodeConnections[node].remove(adjCom);
-                } else {
-                    nodeConnections[node].put(adjCom, nodeEgesTo - e.weight);
+                partition = projected;
+            }
+            if (refine) {
+                moveNodes(current, partition, random, threads);
+                if (isCanceled) {
+                    return null;
                 }
-
-
             }
-            from.remove(new Integer(node));
         }
+        return partition;
+    }
 
-        private void moveNodeTo(int node, Community to) {
-            Community from = nodeCommunities[node];
-            removeNodeFrom(node, from);
-            addNodeTo(node, to);
+    /**
+     * Local moving phase, moves nodes of <code>level</code> between
+     * communities until modularity doesn't improve anymore.
+     * @return <code>true</code> if at least one node has been moved
+     */
+    private boolean moveNodes(final Level level, final int[] communities, Random random, int threads) {
+        final int n = level.n;
+        if (n == 0 || level.totalWeight == 0) {
+            return false;
+        }
+        final double[] totals = new double[n];
+        final int[] sizes = new int[n];
+        for (int i = 0; i < n; i++) {
+            totals[communities[i]] += level.degrees[i];
+            sizes[communities[i]]++;
+        }
+        final int[] order = new int[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        //The batch size doesn't depend on the number of threads, so that the
+        //same seed gives the same partition
+        int batchSize = Math.max(1, Math.min(MAX_BATCH_SIZE, n / BATCHES));
+        final int[] targets = new int[batchSize];
+        boolean parallel = executor != null && batchSize >= MIN_PARALLEL_BATCH_SIZE;
+        int workerCount = parallel ? threads : 1;
+        final MoveWorker[] workers = new MoveWorker[workerCount];
+        for (int w = 0; w < workerCount; w++) {
+            workers[w] = new MoveWorker(level, communities, totals, order, targets);
         }
 
-        private void zoomOut() {
-            int M = communities.size();
-            LinkedList<ModEdge>[] newTopology = new LinkedList[M];
-            int index = 0;
-            nodeCommunities = new Community[M];
-            nodeConnections = new HashMap[M];
-            HashMap<Integer, Community> newInvMap = new HashMap<Integer, Community>();
-            for (int i = 0; i < communities.size(); i++) {//Community com : mCommunities) {
-                Community com = communities.get(i);
-                nodeConnections[index] = new HashMap<Community, Integer>();
-                newTopology[index] = new LinkedList<ModEdge>();
-                nodeCommunities[index] = new Community(com);
-                Set<Community> iter = com.connections.keySet();
-                double weightSum = 0;
-
-                Community hidden = new Community(structure);
-                for (Integer nodeInt : com.nodes) {
-                    Community oldHidden = invMap.get(nodeInt);
-                    hidden.nodes.addAll(oldHidden.nodes);
+        boolean moved = false;
+        boolean sequential = false;
+        double q = modularity(level, communities);
+        final int[] previousCommunities = new int[n];
+        final double[] previousTotals = new double[n];
+        final int[] previousSizes = new int[n];
+        while (true) {
+            System.arraycopy(communities, 0, previousCommunities, 0, n);
+            System.arraycopy(totals, 0, previousTotals, 0, n);
+            System.arraycopy(sizes, 0, previousSizes, 0, n);
+            //A pass run again sequentially keeps the same order
+            if (random != null && !sequential) {
+                for (int i = n - 1; i > 0; i--) {
+                    int j = random.nextInt(i + 1);
+                    int tmp = order[i];
+                    order[i] = order[j];
+                    order[j] = tmp;
                 }
-                newInvMap.put(index, hidden);
-                for(Community adjCom : iter) {
-                    int target = communities.indexOf(adjCom);
-                    int weight = com.connections.get(adjCom);
-                    if(target == index)
-                        weightSum += 2*weight;
-                    else
-                        weightSum += weight;
-                    ModEdge e = new ModEdge(index, target, weight);
-                    newTopology[index].add(e);
+            }
+            int passBatchSize = sequential ? 1 : batchSize;
+            int moves = 0;
+            for (int start = 0; start < n; start += passBatchSize) {
+                int end = Math.min(n, start + passBatchSize);
+                if (parallel && !sequential) {
+                    List<Future<Object>> futures = new ArrayList<Future<Object>>(workerCount);
+                    for (int w = 0; w < workerCount; w++) {
+                        workers[w].setRange(start, start + (end - start) * w / workerCount, start + (end - start) * (w + 1) / workerCount);
+                        futures.add(executor.submit(workers[w]));
+                    }
+                    try {
+                        for (Future<Object> f : futures) {
+                            f.get();
+                        }
+                    } catch (InterruptedException ex) {
+                        isCanceled = true;
+                        Thread.currentThread().interrupt();
+                    } catch (ExecutionException ex) {
+                        throw new RuntimeException(ex.getCause());
+                    }
+                } else {
+                    workers[0].setRange(start, start, end);
+                    workers[0].call();
                 }
-                weights[index] = weightSum;
-                nodeCommunities[index].seed(index);
 
-                index++;
+                //Apply moves in order
+                for (int p = start; p < end; p++) {
+                    int node = order[p];
+                    int from = communities[node];
+                    int to = targets[p - start];
+                    if (to == from) {
+                        continue;
+                    }
+                    //Moves are chosen in parallel, avoid swapping two single nodes
+                    if (passBatchSize > 1 && sizes[from] == 1 && sizes[to] == 1 && to > from) {
+                        continue;
+                    }
+                    totals[from] -= level.degrees[node];
+                    totals[to] += level.degrees[node];
+                    sizes[from]--;
+                    sizes[to]++;
+                    communities[node] = to;
+                    moves++;
+                }
+                if (isCanceled) {
+                    return moved;
+                }
             }
-            communities.clear();
-
-            for (int i = 0; i < M; i++) {
-                Community com = nodeCommunities[i];
-                communities.add(com);
-                for (ModEdge e : newTopology[i]) {
-                    nodeConnections[i].put(nodeCommunities[e.target], e.weight);
-                    com.connections.put(nodeCommunities[e.target], e.weight);
+            if (moves == 0) {
+                break;
+            }
+            double newQ = modularity(level, communities);
+            if (newQ - q < MIN_GAIN) {
+                //Batched moves can decrease modularity, undo the pass
+                System.arraycopy(previousCommunities, 0, communities, 0, n);
+                System.arraycopy(previousTotals, 0, totals, 0, n);
+                System.arraycopy(previousSizes, 0, sizes, 0, n);
+                if (passBatchSize > 1) {
+                    //Moves chosen one at a time from the current state don't
+                    //conflict, run the pass again with them
+                    sequential = true;
+                    continue;
                 }
-
+                break;
             }
-
-            N = M;
-            topology = newTopology;
-            invMap = newInvMap;
+            moved = true;
+            sequential = false;
+            q = newQ;
         }
+        return moved;
     }
 
-    class Community {
-        double weightSum;
-        CommunityStructure structure;
-        LinkedList<Integer> nodes;
-        HashMap<Community, Integer> connections;
-
-        public int size() {
-            return nodes.size();
-        }
-
-        public Community(Community com) {
-            structure = com.structure;
-            connections = new HashMap<Community, Integer>();
-            nodes = new LinkedList<Integer>();
-            //mHidden = pCom.mHidden;
+    /**
+     * Chooses the best community of the nodes in a range of the order array,
+     * without modifying communities.
+     */
+    private static class MoveWorker implements Callable<Object> {
+
+        private final Level level;
+        private final int[] communities;
+        private final double[] totals;
+        private final int[] order;
+        private final int[] targets;
+        //Weight from the current node to each community, -1 if not adjacent
+        private final double[] neighborWeights;
+        private final int[] neighborCommunities;
+        private int batchStart;
+        private int from;
+        private int to;
+
+        MoveWorker(Level level, int[] communities, double[] totals, int[] order, int[] targets) {
+            this.level = level;
+            this.communities = communities;
+            this.totals = totals;
+            this.order = order;
+            this.targets = targets;
+            this.neighborWeights = new double[level.n];
+            Arrays.fill(neighborWeights, -1.0);
+            int maxDegree = 0;
+            for (int i = 0; i < level.n; i++) {
+                maxDegree = Math.max(maxDegree, level.offsets[i + 1] - level.offsets[i]);
+            }
+            this.neighborCommunities = new int[maxDegree + 1];
         }
 
-        public Community(CommunityStructure structure) {
-            this.structure = structure;
-            connections = new HashMap<Community, Integer>();
-            nodes = new LinkedList<Integer>();
+        void setRange(int batchStart, int from, int to) {
+            this.batchStart = batchStart;
+            this.from = from;
+            this.to = to;
         }
 
-        public void seed(int node) {
-            nodes.add(node);
-            weightSum += structure.weights[node];
-        }
+        public Object call() {
+            final double totalWeight = level.totalWeight;
+            for (int p = from; p < to; p++) {
+                int node = order[p];
+                int community = communities[node];
+                double degree = level.degrees[node];
+
+                int count = 0;
+                neighborWeights[community] = 0;
+                neighborCommunities[count++] = community;
+                for (int j = level.offsets[node]; j < level.offsets[node + 1]; j++) {
+                    int c = communities[level.targets[j]];
+                    if (neighborWeights[c] < 0) {
+                        neighborWeights[c] = 0;
+                        neighborCommunities[count++] = c;
+                    }
+                    neighborWeights[c] += level.weights[j];
+                }
 
-        public boolean add(int node) {
-            nodes.addLast(new Integer(node));
-            weightSum += structure.weights[node];
-            return true;
-        }
+                //Gain of inserting the node in each community, once removed from its own
+                int best = community;
+                double bestGain = neighborWeights[community] - (totals[community] - degree) * degree / totalWeight;
+                for (int k = 1; k < count; k++) {
+                    int c = neighborCommunities[k];
+                    double gain = neighborWeights[c] - totals[c] * degree / totalWeight;
+                    if (gain > bestGain) {
+                        bestGain = gain;
+                        best = c;
+                    }
+                }
+                targets[p - batchStart] = best;
 
-        public boolean remove(int node) {
-            boolean result = nodes.remove(new Integer(node));
-            weightSum -= structure.weights[node];
-            if (nodes.size() == 0) {
-                structure.communities.remove(this);
+                for (int k = 0; k < count; k++) {
+                    neighborWeights[neighborCommunities[k]] = -1.0;
+                }
             }
-            return result;
+            return null;
         }
     }
 
-    public void execute(GraphModel graphModel, AttributeModel attributeModel) {
-        HierarchicalUndirectedGraph hgraph = graphModel.getHierarchicalUndirectedGraphVisible();
-        execute(hgraph, attributeModel);
-    }
-
-    public void execute(HierarchicalUndirectedGraph hgraph, AttributeModel attributeModel) {
-        isCanceled = false;
-        Progress.start(progress);
-        Random rand = new Random();
-        hgraph.readLock();
-        structure = new CommunityStructure(hgraph);
-        if (isCanceled) {
-            hgraph.readUnlockAll();
-            return;
+    /**
+     * Creates the next level, where each community is a node.
+     */
+    private Level aggregate(Level level, int[] communities, int count) {
+        int n = level.n;
+        //Nodes sorted by community
+        int[] memberOffsets = new int[count + 1];
+        for (int i = 0; i < n; i++) {
+            memberOffsets[communities[i] + 1]++;
         }
-        boolean someChange = true;
-        while (someChange) {
-            someChange = false;
-            boolean localChange = true;
-            while (localChange) {
-                localChange = false;
-                int start = 0;
-                if (isRandomized) {
-                    start = Math.abs(rand.nextInt()) % structure.N;
-                }
-                int step = 0;
-                for (int i = start; step < structure.N; i = (i + 1) % structure.N) {
-                    step++;
-                    double best = 0.;
-                    Community bestCommunity = null;
-                    Community nodecom = structure.nodeCommunities[i];
-                    Set<Community> iter = structure.nodeConnections[i].keySet();
-                    for(Community com : iter) {
-                        double qValue = q(i, com);
-                        if (qValue > best) {
-                            best = qValue;
-                            bestCommunity = com;
-                        } 
-                    }
-                    if ((structure.nodeCommunities[i] != bestCommunity) && (bestCommunity != null)) {
-                        structure.moveNodeTo(i, bestCommunity);
-                        localChange = true;
-                    }
-                    if (isCanceled) {
-                        hgraph.readUnlockAll();
-                        return;
+        for (int c = 0; c < count; c++) {
+            memberOffsets[c + 1] += memberOffsets[c];
+        }
+        int[] members = new int[n];
+        int[] fill = Arrays.copyOf(memberOffsets, count);
+        for (int i = 0; i < n; i++) {
+            members[fill[communities[i]]++] = i;
+        }
+
+        double[] selfWeights = new double[count];
+        int[] offsets = new int[count + 1];
+        int[] targets = new int[Math.max(1, level.targets.length)];
+        double[] weights = new double[targets.length];
+        double[] scratch = new double[count];
+        Arrays.fill(scratch, -1.0);
+        int[] adjacent = new int[count];
+        int edgeCount = 0;
+        for (int c = 0; c < count; c++) {
+            offsets[c] = edgeCount;
+            int adjacentCount = 0;
+            double self = 0;
+            for (int m = memberOffsets[c]; m < memberOffsets[c + 1]; m++) {
+                int i = members[m];
+                self += level.selfWeights[i];
+                for (int j = level.offsets[i]; j < level.offsets[i + 1]; j++) {
+                    int d = communities[level.targets[j]];
+                    if (d == c) {
+                        self += level.weights[j];
+                    } else {
+                        if (scratch[d] < 0) {
+                            scratch[d] = 0;
+                            adjacent[adjacentCount++] = d;
+                        }
+                        scratch[d] += level.weights[j];
                     }
                 }
-                someChange = localChange || someChange;
-                if (isCanceled) {
-                    hgraph.readUnlockAll();
-                    return;
-                }
             }
-
-            if (someChange) {
-                structure.zoomOut();
+            selfWeights[c] = self;
+            for (int k = 0; k < adjacentCount; k++) {
+                int d = adjacent[k];
+                targets[edgeCount] = d;
+                weights[edgeCount] = scratch[d];
+                edgeCount++;
+                scratch[d] = -1.0;
             }
         }
+        offsets[count] = edgeCount;
+        return new Level(count, offsets, Arrays.copyOf(targets, edgeCount), Arrays.copyOf(weights, edgeCount), selfWeights);
+    }
 
-        int[] comStructure = new int[hgraph.getNodeCount()];
+    /**
+     * Renumbers communities from <code>0</code> in order of first appearance
+     * and returns the number of communities.
+     */
+    private static int renumber(int[] communities) {
+        int[] ids = new int[communities.length];
+        Arrays.fill(ids, -1);
         int count = 0;
-        double[] degreeCount = new double[structure.communities.size()];
-        for (Community com : structure.communities) {
-            for (Integer node : com.nodes) {
-                Community hidden = structure.invMap.get(node);
-                for (Integer nodeInt : hidden.nodes) {
-                    comStructure[nodeInt] = count;
-                }
+        for (int i = 0; i < communities.length; i++) {
+            int c = communities[i];
+            if (ids[c] == -1) {
+                ids[c] = count++;
             }
-            count++;
-        }
-        for (Node node : hgraph.getNodes()) {
-            int index = structure.map.get(node);
-            degreeCount[comStructure[index]] += hgraph.getTotalDegree(node);
+            communities[i] = ids[c];
         }
-
-        modularity = finalQ(comStructure, degreeCount, hgraph, attributeModel);
-
-        hgraph.readUnlock();
+        return count;
     }
 
-    private double finalQ(int[] struct, double[] degrees, HierarchicalUndirectedGraph hgraph, AttributeModel attributeModel) {
-        AttributeTable nodeTable = attributeModel.getNodeTable();
-        AttributeColumn modCol = nodeTable.getColumn(MODULARITY_CLASS);
-        if (modCol == null) {
-            modCol = nodeTable.addColumn(MODULARITY_CLASS, "Modularity Class", AttributeType.INT, AttributeOrigin.COMPUTED, new Integer(0));
+    private static double modularity(Level level, int[] communities) {
+        if (level.totalWeight == 0) {
+            return 0;
         }
-
-        double res = 0;
-        double[] internal = new double[degrees.length];
-        for (Node n : hgraph.getNodes()) {
-            int n_index = structure.map.get(n);
-            AttributeRow row = (AttributeRow) n.getNodeData().getAttributes();
-            row.setValue(modCol, struct[n_index]);
-            for (Node neighbor : hgraph.getNeighbors(n)) {
-                if (n == neighbor) {
-                    continue;
-                }
-                int neigh_index = structure.map.get(neighbor);
-                if (struct[neigh_index] == struct[n_index]) {
-                    internal[struct[neigh_index]]++;
+        double[] internal = new double[level.n];
+        double[] totals = new double[level.n];
+        for (int i = 0; i < level.n; i++) {
+            int c = communities[i];
+            totals[c] += level.degrees[i];
+            internal[c] += level.selfWeights[i];
+            for (int j = level.offsets[i]; j < level.offsets[i + 1]; j++) {
+                if (communities[level.targets[j]] == c) {
+                    internal[c] += level.weights[j];
                 }
             }
         }
-        for (int i = 0; i < degrees.length; i++) {
-            internal[i] /= 2.0;
-            res += (internal[i] / hgraph.getTotalEdgeCount()) - Math.pow(degrees[i] / (2 * hgraph.getTotalEdgeCount()), 2);
+        double q = 0;
+        double m2 = level.totalWeight;
+        for (int c = 0; c < level.n; c++) {
+            if (totals[c] > 0) {
+                q += internal[c] / m2 - (totals[c] / m2) * (totals[c] / m2);
+            }
         }
-        return res;
+        return q;
     }
 
     public double getModularity() {
@@ -495,14 +664,10 @@ public class Modularity implements Statistics, LongTask {
     public String getReport() {
         //Distribution series
         Map<Integer, Integer> sizeDist = new HashMap<Integer, Integer>();
-        for(Node n : structure.graph.getNodes()) {
-            Integer v = (Integer) n.getNodeData().getAttributes().getValue(MODULARITY_CLASS);
-            if(!sizeDist.containsKey(v)) {
-                sizeDist.put(v, 0);
-            }
-            sizeDist.put(v, sizeDist.get(v) + 1);
+        for (int c = 0; c < communitySizes.length; c++) {
+            sizeDist.put(c, communitySizes[c]);
         }
-        
+
         XYSeries dSeries = ChartUtils.createXYSeries(sizeDist, "Size Distribution");
 
         XYSeriesCollection dataset1 = new XYSeriesCollection();
@@ -522,40 +687,32 @@ public class Modularity implements Statistics, LongTask {
         ChartUtils.scaleChart(chart, dSeries, false);
         String imageFile = ChartUtils.renderChart(chart, "communities-size-distribution.png");
 
-        
         NumberFormat f = new DecimalFormat("#0.000");
 
+        String levels = "<table border=\"1\"><tr><th>Pass</th><th>Communities</th><th>Modularity</th></tr>";
+        for (int i = 0; i < levelModularities.length; i++) {
+            levels += "<tr><td>" + (i + 1) + "</td><td>" + levelCommunities[i] + "</td><td>" + f.format(levelModularities[i]) + "</td></tr>";
+        }
+        levels += "</table>";
+
         String report = "<HTML> <BODY> <h1>Modularity Report </h1> "
                 + "<hr>"
                 + "<h2> Parameters: </h2>"
                 + "Randomize:  " + (isRandomized ? "On" : "Off") + "<br>"
+                + (isRandomized ? "Seed:  " + usedSeed + "<br>" : "")
+                + "Refinement:  " + (refine ? "On" : "Off") + "<br>"
+                + (passes > 0 ? "Maximum passes:  " + passes + "<br>" : "")
                 + "<br> <h2> Results: </h2>"
                 + "Modularity: " + f.format(modularity) + "<br>"
-                + "Number of Communities: " + structure.communities.size()
-                + "<br /><br />"+imageFile
+                + (refine ? "Modularity before refinement: " + f.format(unrefinedModularity) + "<br>" : "")
+                + "Number of Communities: " + communitySizes.length
+                + "<br /><br />" + levels
+                + "<br /><br />" + imageFile
                 + "<br /><br />" + "<h2> Algorithm: </h2>"
                 + "Vincent D Blondel, Jean-Loup Guillaume, Renaud Lambiotte, Etienne Lefebvre, <i>Fast unfolding of communities in large networks</i>, in Journal of Statistical Mechanics: Theory and Experiment 2008 (10), P1000<br />"
+                + (refine ? "Randolf Rotta, Andreas Noack, <i>Multilevel local search algorithms for modularity clustering</i>, in Journal of Experimental Algorithmics 16 (2011)<br />" : "")
                 + "</BODY> </HTML>";
 
         return report;
     }
-
-    private double q(int node, Community community) {
-
-        Integer edgesToInt = structure.nodeConnections[node].get(community);
-        double edgesTo = 0;
-        if (edgesToInt != null) {
-            edgesTo = edgesToInt.doubleValue();
-        }
-        double weightSum = community.weightSum;
-        double nodeWeight = structure.weights[node];
-        double qValue = edgesTo - (nodeWeight * weightSum) / (2.0 * structure.graphWeightSum);
-        if ((structure.nodeCommunities[node] == community) && (structure.nodeCommunities[node].size() > 1)) {
-            qValue = edgesTo - (nodeWeight * (weightSum - nodeWeight)) / (2.0 * structure.graphWeightSum);
-        }
-        if ((structure.nodeCommunities[node] == community) && (structure.nodeCommunities[node].size() == 1)) {
-            qValue = 0.;
-        }
-        return qValue;
-    }
 }
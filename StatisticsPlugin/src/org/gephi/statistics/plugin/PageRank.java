@@ -49,14 +49,10 @@ import org.gephi.data.attributes.api.AttributeModel;
 import org.gephi.data.attributes.api.AttributeOrigin;
 import org.gephi.data.attributes.api.AttributeRow;
 import org.gephi.data.attributes.api.AttributeType;
-import org.gephi.graph.api.Edge;
-import org.gephi.graph.api.EdgeIterable;
+import org.gephi.graph.api.AdjacencySnapshot;
 import org.gephi.graph.api.GraphController;
 import org.gephi.graph.api.GraphModel;
-import org.gephi.graph.api.HierarchicalDirectedGraph;
 import org.gephi.graph.api.HierarchicalGraph;
-import org.gephi.graph.api.HierarchicalUndirectedGraph;
-import org.gephi.graph.api.Node;
 import org.gephi.statistics.spi.Statistics;
 import org.gephi.utils.longtask.spi.LongTask;
 import org.gephi.utils.progress.Progress;
@@ -80,7 +76,13 @@ public class PageRank implements Statistics, LongTask {
     /** */
     private ProgressTicket progress;
     /** */
-    private boolean isCanceled;
+    private volatile boolean isCanceled;
+    /** */
+    private volatile PowerIteration iteration;
+    /** */
+    private int maxIterations = 1000;
+    /** */
+    private int threadCount = Runtime.getRuntime().availableProcessors();
     /** */
     private double epsilon = 0.001;
     /** */
@@ -123,107 +125,92 @@ public class PageRank implements Statistics, LongTask {
     public void execute(HierarchicalGraph hgraph, AttributeModel attributeModel) {
         isCanceled = false;
 
+        AdjacencySnapshot snapshot;
         hgraph.readLock();
-
-        int N = hgraph.getNodeCount();
-        pageranks = new double[N];
-        double[] temp = new double[N];
-        HashMap<Node, Integer> indicies = new HashMap<Node, Integer>();
-        int index = 0;
+        try {
+            snapshot = hgraph.getGraphModel().getAdjacencySnapshot(hgraph.getView(), useEdgeWeight);
+        } finally {
+            hgraph.readUnlockAll();
+        }
 
         Progress.start(progress);
-        double[] weights = null;
-        if (useEdgeWeight) {
-            weights = new double[N];
-        }
 
-        for (Node s : hgraph.getNodes()) {
-            indicies.put(s, index);
-            pageranks[index] = 1.0f / N;
+        final int N = snapshot.getNodeCount();
+        AdjacencySnapshot.Adjacency forward = isDirected ? AdjacencySnapshot.Adjacency.OUT : AdjacencySnapshot.Adjacency.UNDIRECTED;
+        AdjacencySnapshot.Adjacency backward = isDirected ? AdjacencySnapshot.Adjacency.IN : AdjacencySnapshot.Adjacency.UNDIRECTED;
+        final int[] offsets = snapshot.getOffsets(backward);
+        final int[] targets = snapshot.getTargets(backward);
+        final float[] edgeWeights = useEdgeWeight ? snapshot.getWeights(backward) : null;
+
+        //Out degree or sum of out weights, used to split each node's rank
+        final double[] outSums = new double[N];
+        int[] forwardOffsets = snapshot.getOffsets(forward);
+        float[] forwardWeights = useEdgeWeight ? snapshot.getWeights(forward) : null;
+        for (int i = 0; i < N; i++) {
             if (useEdgeWeight) {
                 double sum = 0;
-                EdgeIterable eIter;
-                if (isDirected) {
-                    eIter = ((HierarchicalDirectedGraph) hgraph).getOutEdgesAndMetaOutEdges(s);
-                } else {
-                    eIter = ((HierarchicalUndirectedGraph) hgraph).getEdgesAndMetaEdges(s);
-                }
-                for (Edge edge : eIter) {
-                    sum += edge.getWeight();
+                for (int j = forwardOffsets[i]; j < forwardOffsets[i + 1]; j++) {
+                    sum += forwardWeights[j];
                 }
-                weights[index] = sum;
+                outSums[i] = sum;
+            } else {
+                outSums[i] = forwardOffsets[i + 1] - forwardOffsets[i];
             }
-            index++;
+        }
+        final boolean[] hasOut = new boolean[N];
+        for (int i = 0; i < N; i++) {
+            hasOut[i] = forwardOffsets[i + 1] > forwardOffsets[i];
         }
 
-        while (true) {
-            double r = 0;
-            for (Node s : hgraph.getNodes()) {
-                int s_index = indicies.get(s);
-                boolean out;
-                if (isDirected) {
-                    out = ((HierarchicalDirectedGraph) hgraph).getTotalOutDegree(s) > 0;
-                } else {
-                    out = hgraph.getTotalDegree(s) > 0;
-                }
-
-                if (out) {
-                    r += (1.0 - probability) * (pageranks[s_index] / N);
-                } else {
-                    r += (pageranks[s_index] / N);
-                }
-                if (isCanceled) {
-                    hgraph.readUnlockAll();
-                    return;
-                }
-            }
-
-            boolean done = true;
-            for (Node s : hgraph.getNodes()) {
-                int s_index = indicies.get(s);
-                temp[s_index] = r;
+        pageranks = new double[N];
+        for (int i = 0; i < N; i++) {
+            pageranks[i] = 1.0 / N;
+        }
 
-                EdgeIterable eIter;
-                if (isDirected) {
-                    eIter = ((HierarchicalDirectedGraph) hgraph).getInEdgesAndMetaInEdges(s);
-                } else {
-                    eIter = ((HierarchicalUndirectedGraph) hgraph).getEdgesAndMetaEdges(s);
-                }
+        iteration = new PowerIteration(N, 1, threadCount) {
 
-                for (Edge edge : eIter) {
-                    Node neighbor = hgraph.getOpposite(s, edge);
-                    int neigh_index = indicies.get(neighbor);
-                    int normalize;
-                    if (isDirected) {
-                        normalize = ((HierarchicalDirectedGraph) hgraph).getTotalOutDegree(neighbor);
+            @Override
+            protected void multiply(int from, int to, double[] current, double[] next, double[] sums) {
+                double r = 0;
+                for (int i = from; i < to; i++) {
+                    //Teleportation and dangling nodes share their rank with every node
+                    if (hasOut[i]) {
+                        r += (1.0 - probability) * (current[i] / N);
                     } else {
-                        normalize = ((HierarchicalUndirectedGraph) hgraph).getTotalDegree(neighbor);
+                        r += current[i] / N;
                     }
-                    if (useEdgeWeight) {
-                        double weight = edge.getWeight() / weights[neigh_index];
-                        temp[s_index] += probability * pageranks[neigh_index] * weight;
-                    } else {
-                        temp[s_index] += probability * (pageranks[neigh_index] / normalize);
+                    double rank = 0;
+                    for (int j = offsets[i]; j < offsets[i + 1]; j++) {
+                        int neighbor = targets[j];
+                        if (edgeWeights != null) {
+                            rank += current[neighbor] * (edgeWeights[j] / outSums[neighbor]);
+                        } else {
+                            rank += current[neighbor] / outSums[neighbor];
+                        }
                     }
-
-                }
-
-                if ((temp[s_index] - pageranks[s_index]) / pageranks[s_index] >= epsilon) {
-                    done = false;
+                    next[i] = probability * rank;
                 }
+                sums[0] += r;
+            }
 
-                if (isCanceled) {
-                    hgraph.readUnlockAll();
-                    return;
+            @Override
+            protected double normalize(int from, int to, double[] current, double[] next, double[] sums) {
+                double r = sums[0];
+                double delta = 0;
+                for (int i = from; i < to; i++) {
+                    next[i] += r;
+                    delta += Math.abs(next[i] - current[i]);
                 }
-
+                return delta;
             }
-            pageranks = temp;
-            temp = new double[N];
-            if ((done) || (isCanceled)) {
-                break;
-            }
-
+        };
+        if (isCanceled) {
+            iteration.cancel();
+        }
+        pageranks = iteration.iterate(pageranks, maxIterations, epsilon);
+        iteration = null;
+        if (isCanceled) {
+            return;
         }
 
         AttributeTable nodeTable = attributeModel.getNodeTable();
@@ -232,13 +219,12 @@ public class PageRank implements Statistics, LongTask {
             pangeRanksCol = nodeTable.addColumn(PAGERANK, "PageRank", AttributeType.DOUBLE, AttributeOrigin.COMPUTED, new Double(0));
         }
 
-        for (Node s : hgraph.getNodes()) {
-            int s_index = indicies.get(s);
-            AttributeRow row = (AttributeRow) s.getNodeData().getAttributes();
-            row.setValue(pangeRanksCol, pageranks[s_index]);
+        for (int i = 0; i < N; i++) {
+            AttributeRow row = (AttributeRow) snapshot.getNode(i).getNodeData().getAttributes();
+            row.setValue(pangeRanksCol, pageranks[i]);
         }
 
-        hgraph.readUnlockAll();
+        Progress.finish(progress);
     }
 
     /**
@@ -299,6 +285,10 @@ public class PageRank implements Statistics, LongTask {
      */
     public boolean cancel() {
         isCanceled = true;
+        PowerIteration i = iteration;
+        if (i != null) {
+            i.cancel();
+        }
         return true;
     }
 
@@ -349,4 +339,25 @@ public class PageRank implements Statistics, LongTask {
     public void setUseEdgeWeight(boolean useEdgeWeight) {
         this.useEdgeWeight = useEdgeWeight;
     }
+
+    /**
+     * Sets the maximum number of iterations, in case the L1 change between
+     * two iterations never gets lower than epsilon.
+     * @param maxIterations the maximum number of iterations
+     */
+    public void setMaxIterations(int maxIterations) {
+        this.maxIterations = maxIterations;
+    }
+
+    public int getMaxIterations() {
+        return maxIterations;
+    }
+
+    public void setThreadCount(int threadCount) {
+        this.threadCount = threadCount;
+    }
+
+    public int getThreadCount() {
+        return threadCount;
+    }
 }
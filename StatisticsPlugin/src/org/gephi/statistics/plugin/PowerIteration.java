@@ -0,0 +1,276 @@
+/*
+Copyright 2008-2010 Gephi
+Website : http://www.gephi.org
+
+This file is part of Gephi.
+
+DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+
+Copyright 2011 Gephi Consortium. All rights reserved.
+
+The contents of this file are subject to the terms of either the GNU
+General Public License Version 3 only ("GPL") or the Common
+Development and Distribution License("CDDL") (collectively, the
+"License"). You may not use this file except in compliance with the
+License. You can obtain a copy of the License at
+http://gephi.org/about/legal/license-notice/
+or /cddl-1.0.txt and /gpl-3.0.txt. See the License for the
+specific language governing permissions and limitations under the
+License.  When distributing the software, include this License Header
+Notice in each file and include the License files at
+/cddl-1.0.txt and /gpl-3.0.txt. If applicable, add the following below the
+License Header, with the fields enclosed by brackets [] replaced by
+your own identifying information:
+"Portions Copyrighted [year] [name of copyright owner]"
+
+If you wish your version of this file to be governed by only the CDDL
+or only the GPL Version 3, indicate your decision by adding
+"[Contributor] elects to include this software in this distribution
+under the [CDDL or GPL Version 3] license." If you do not indicate a
+single choice of license, a recipient has the option to distribute
+your version of this file under either the CDDL, the GPL Version 3 or
+to extend the choice of license to its licensees as provided above.
+However, if you add GPL Version 3 code and therefore, elected the GPL
+Version 3 license, then the option applies only if the new code is
+made subject to such option by the copyright holder.
+
+Contributor(s):
+
+Portions Copyrighted 2011 Gephi Consortium.
+*/
+package org.gephi.statistics.plugin;
+
+import java.util.Arrays;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Power iteration kernel shared by <code>PageRank</code>, <code>Hits</code>
+ * and <code>EigenvectorCentrality</code>.
+ * <p>
+ * The iterated vector is double-buffered in two arrays allocated once, and
+ * each iteration runs in two phases split across threads by contiguous
+ * index ranges:
+ * <ol><li><code>multiply()</code> computes the next vector from the current
+ * one and accumulates partial sums, which are then merged with
+ * <code>reduce()</code>.</li>
+ * <li><code>normalize()</code> finishes the next vector with the merged sums
+ * and returns the L1 change of its range.</li></ol>
+ * Iterations stop when the total L1 change is lower than <code>epsilon</code>,
+ * when <code>maxIterations</code> is reached or when canceled.
+ */
+abstract class PowerIteration {
+
+    private final int size;
+    private final int reductions;
+    private final int threadCount;
+    private double[] current;
+    private double[] next;
+    private double[][] partialSums;
+    private double[] sums;
+    private double[] deltas;
+    private int maxIterations;
+    private double epsilon;
+    private int iterations;
+    private double delta;
+    private boolean stop;
+    private volatile boolean canceled;
+    private volatile Throwable failure;
+
+    /**
+     * Creates a kernel for vectors of <code>size</code> elements.
+     * @param size          the vector size
+     * @param reductions    the number of sums computed by <code>multiply()</code>
+     * @param threadCount   the maximum number of threads
+     */
+    PowerIteration(int size, int reductions, int threadCount) {
+        this.size = size;
+        this.reductions = reductions;
+        this.threadCount = Math.max(1, Math.min(threadCount, size));
+    }
+
+    /**
+     * Computes <code>next</code> between <code>from</code> (inclusive) and
+     * <code>to</code> (exclusive) and accumulates the range's partial sums.
+     */
+    protected abstract void multiply(int from, int to, double[] current, double[] next, double[] sums);
+
+    /**
+     * Finishes <code>next</code> on the range with the merged sums and
+     * returns the L1 change between <code>current</code> and <code>next</code>.
+     */
+    protected abstract double normalize(int from, int to, double[] current, double[] next, double[] sums);
+
+    /**
+     * Merges <code>partial</code> into <code>sums</code>, adds by default.
+     */
+    protected void reduce(double[] sums, double[] partial) {
+        for (int i = 0; i < reductions; i++) {
+            sums[i] += partial[i];
+        }
+    }
+
+    /**
+     * Called after each iteration, from a single thread.
+     */
+    protected void iterationDone(int iteration, double delta) {
+    }
+
+    /**
+     * Iterates from <code>initial</code> and returns the last vector. The
+     * returned array is either <code>initial</code> or the second buffer.
+     * @param initial       the start vector, used as first buffer
+     * @param maxIterations the maximum number of iterations
+     * @param epsilon       the L1 change under which iterations stop
+     * @return              the last computed vector
+     */
+    public double[] iterate(double[] initial, int maxIterations, double epsilon) {
+        this.current = initial;
+        this.next = new double[size];
+        this.maxIterations = maxIterations;
+        this.epsilon = epsilon;
+        this.partialSums = new double[threadCount][reductions];
+        this.sums = new double[reductions];
+        this.deltas = new double[threadCount];
+        this.iterations = 0;
+        this.delta = 0;
+        this.stop = size == 0 || maxIterations <= 0;
+        this.failure = null;
+        if (stop) {
+            return current;
+        }
+
+        if (threadCount == 1) {
+            while (!stop) {
+                Arrays.fill(partialSums[0], 0.0);
+                multiply(0, size, current, next, partialSums[0]);
+                mergeSums();
+                deltas[0] = normalize(0, size, current, next, sums);
+                endIteration();
+            }
+        } else {
+            final CyclicBarrier multiplied = new CyclicBarrier(threadCount, new Runnable() {
+
+                public void run() {
+                    mergeSums();
+                }
+            });
+            final CyclicBarrier normalized = new CyclicBarrier(threadCount, new Runnable() {
+
+                public void run() {
+                    endIteration();
+                }
+            });
+            ExecutorService executor = Executors.newFixedThreadPool(threadCount - 1);
+            try {
+                for (int t = 1; t < threadCount; t++) {
+                    executor.execute(new Worker(t, multiplied, normalized));
+                }
+                new Worker(0, multiplied, normalized).run();
+            } finally {
+                executor.shutdown();
+            }
+            try {
+                while (!executor.isTerminated()) {
+                    executor.awaitTermination(1, TimeUnit.SECONDS);
+                }
+            } catch (InterruptedException ex) {
+                canceled = true;
+                Thread.currentThread().interrupt();
+            }
+            if (failure != null) {
+                throw new RuntimeException(failure);
+            }
+        }
+        return current;
+    }
+
+    public void cancel() {
+        canceled = true;
+    }
+
+    public boolean isCanceled() {
+        return canceled;
+    }
+
+    /**
+     * Returns the number of iterations done by the last call to
+     * <code>iterate()</code>.
+     */
+    public int getIterations() {
+        return iterations;
+    }
+
+    /**
+     * Returns the L1 change of the last iteration.
+     */
+    public double getDelta() {
+        return delta;
+    }
+
+    private void mergeSums() {
+        Arrays.fill(sums, 0.0);
+        for (int t = 0; t < threadCount; t++) {
+            reduce(sums, partialSums[t]);
+        }
+    }
+
+    private void endIteration() {
+        double d = 0;
+        for (int t = 0; t < threadCount; t++) {
+            d += deltas[t];
+        }
+        delta = d;
+        iterations++;
+        double[] tmp = current;
+        current = next;
+        next = tmp;
+        iterationDone(iterations, delta);
+        stop = delta < epsilon || iterations >= maxIterations || canceled;
+    }
+
+    private int rangeStart(int thread) {
+        return (int) ((long) size * thread / threadCount);
+    }
+
+    private class Worker implements Runnable {
+
+        private final int thread;
+        private final CyclicBarrier multiplied;
+        private final CyclicBarrier normalized;
+
+        public Worker(int thread, CyclicBarrier multiplied, CyclicBarrier normalized) {
+            this.thread = thread;
+            this.multiplied = multiplied;
+            this.normalized = normalized;
+        }
+
+        public void run() {
+            int from = rangeStart(thread);
+            int to = rangeStart(thread + 1);
+            double[] partial = partialSums[thread];
+            try {
+                while (!stop) {
+                    Arrays.fill(partial, 0.0);
+                    multiply(from, to, current, next, partial);
+                    multiplied.await();
+                    deltas[thread] = normalize(from, to, current, next, sums);
+                    normalized.await();
+                }
+            } catch (InterruptedException ex) {
+                canceled = true;
+                multiplied.reset();
+                normalized.reset();
+            } catch (BrokenBarrierException ex) {
+                //Another worker failed
+            } catch (Throwable ex) {
+                failure = ex;
+                multiplied.reset();
+                normalized.reset();
+            }
+        }
+    }
+}
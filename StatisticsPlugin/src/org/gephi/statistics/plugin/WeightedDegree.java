@@ -84,11 +84,31 @@ public class WeightedDegree implements Statistics, LongTask {
     private Map<Float, Integer> degreeDist;
     private Map<Float, Integer> inDegreeDist;
     private Map<Float, Integer> outDegreeDist;
+    private boolean liveUpdate;
+    private DegreeUpdater updater;
 
     public double getAverageDegree() {
         return avgWDegree;
     }
 
+    /**
+     * Keeps computed columns up to date when the graph changes after
+     * <code>execute()</code>, until set back to <code>false</code>. Only
+     * nodes touched by graph events are updated.
+     * @param liveUpdate    <code>true</code> to enable live update
+     */
+    public void setLiveUpdate(boolean liveUpdate) {
+        this.liveUpdate = liveUpdate;
+        if (!liveUpdate && updater != null) {
+            updater.stop();
+            updater = null;
+        }
+    }
+
+    public boolean isLiveUpdate() {
+        return liveUpdate;
+    }
+
     public void execute(GraphModel graphModel, AttributeModel attributeModel) {
         HierarchicalGraph graph = graphModel.getHierarchicalGraphVisible();
         execute(graph, attributeModel);
@@ -97,6 +117,7 @@ public class WeightedDegree implements Statistics, LongTask {
     public void execute(HierarchicalGraph graph, AttributeModel attributeModel) {
         isDirected = graph instanceof DirectedGraph;
         isCanceled = false;
+        avgWDegree = 0;
         degreeDist = new HashMap<Float, Integer>();
         inDegreeDist = new HashMap<Float, Integer>();
         outDegreeDist = new HashMap<Float, Integer>();
@@ -171,9 +192,19 @@ public class WeightedDegree implements Statistics, LongTask {
             Progress.progress(progress, i);
         }
 
+        double degreeSum = avgWDegree;
         avgWDegree /= (isDirected) ? 2 * graph.getNodeCount() : graph.getNodeCount();
 
         graph.readUnlockAll();
+
+        if (updater != null) {
+            updater.stop();
+            updater = null;
+        }
+        if (liveUpdate && !isCanceled) {
+            updater = new DegreeUpdater(graph, true, degreeSum, degCol, inCol, outCol, null);
+            updater.start();
+        }
     }
 
     public String getReport() {
@@ -0,0 +1,194 @@
+/*
+Copyright 2008-2010 Gephi
+Website : http://www.gephi.org
+
+This file is part of Gephi.
+
+DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+
+Copyright 2011 Gephi Consortium. All rights reserved.
+
+The contents of this file are subject to the terms of either the GNU
+General Public License Version 3 only ("GPL") or the Common
+Development and Distribution License("CDDL") (collectively, the
+"License"). You may not use this file except in compliance with the
+License. You can obtain a copy of the License at
+http://gephi.org/about/legal/license-notice/
+or /cddl-1.0.txt and /gpl-3.0.txt. See the License for the
+specific language governing permissions and limitations under the
+License.  When distributing the software, include this License Header
+Notice in each file and include the License files at
+/cddl-1.0.txt and /gpl-3.0.txt. If applicable, add the following below the
+License Header, with the fields enclosed by brackets [] replaced by
+your own identifying information:
+"Portions Copyrighted [year] [name of copyright owner]"
+
+If you wish your version of this file to be governed by only the CDDL
+or only the GPL Version 3, indicate your decision by adding
+"[Contributor] elects to include this software in this distribution
+under the [CDDL or GPL Version 3] license." If you do not indicate a
+single choice of license, a recipient has the option to distribute
+your version of this file under either the CDDL, the GPL Version 3 or
+to extend the choice of license to its licensees as provided above.
+However, if you add GPL Version 3 code and therefore, elected the GPL
+Version 3 license, then the option applies only if the new code is
+made subject to such option by the copyright holder.
+
+Contributor(s):
+
+Portions Copyrighted 2011 Gephi Consortium.
+*/
+package org.gephi.statistics.plugin;
+
+import java.util.Random;
+import org.gephi.data.attributes.api.AttributeController;
+import org.gephi.data.attributes.api.AttributeModel;
+import org.gephi.graph.api.Graph;
+import org.gephi.graph.api.GraphController;
+import org.gephi.graph.api.GraphModel;
+import org.gephi.graph.api.Node;
+import org.gephi.project.api.ProjectController;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openide.util.Lookup;
+import static org.junit.Assert.*;
+
+public class ClusteringCoefficientTest {
+
+    private GraphModel graphModel;
+    private AttributeModel attributeModel;
+
+    @Before
+    public void setUp() {
+        ProjectController projectController = Lookup.getDefault().lookup(ProjectController.class);
+        projectController.newProject();
+        AttributeController attributeController = Lookup.getDefault().lookup(AttributeController.class);
+        attributeModel = attributeController.getModel();
+        GraphController graphController = Lookup.getDefault().lookup(GraphController.class);
+        graphModel = graphController.getModel();
+    }
+
+    @After
+    public void tearDown() {
+        ProjectController projectController = Lookup.getDefault().lookup(ProjectController.class);
+        projectController.closeCurrentProject();
+        graphModel = null;
+        attributeModel = null;
+    }
+
+    /**
+     * Random graph with a dense core, so forward lists have very different
+     * lengths and both intersection strategies are used.
+     */
+    private boolean[][] createGraph(int size, int core, double p, boolean directed, long seed) {
+        Graph graph = directed ? graphModel.getDirectedGraph() : graphModel.getUndirectedGraph();
+        Random random = new Random(seed);
+        Node[] nodes = new Node[size];
+        for (int i = 0; i < size; i++) {
+            nodes[i] = graphModel.factory().newNode(String.valueOf(i));
+            graph.addNode(nodes[i]);
+        }
+        boolean[][] matrix = new boolean[size][size];
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                if (i == j || (!directed && j < i)) {
+                    continue;
+                }
+                double edgeP = i < core && j < core ? 0.8 : p;
+                if (random.nextDouble() < edgeP) {
+                    graph.addEdge(graphModel.factory().newEdge(nodes[i], nodes[j], 1f, directed));
+                    matrix[i][j] = true;
+                    if (!directed) {
+                        matrix[j][i] = true;
+                    }
+                }
+            }
+        }
+        //A few self-loops, which are ignored
+        for (int i = 0; i < size; i += 17) {
+            graph.addEdge(graphModel.factory().newEdge(nodes[i], nodes[i], 1f, directed));
+        }
+        return matrix;
+    }
+
+    private void assertBruteForce(boolean[][] matrix, boolean directed, ClusteringCoefficient cc) {
+        int size = matrix.length;
+        double average = 0;
+        for (int v = 0; v < size; v++) {
+            int degree = 0;
+            int[] neighbours = new int[size];
+            for (int u = 0; u < size; u++) {
+                if (matrix[v][u] || matrix[u][v]) {
+                    neighbours[degree++] = u;
+                }
+            }
+            int edges = 0;
+            for (int i = 0; i < degree; i++) {
+                for (int j = 0; j < degree; j++) {
+                    if (i != j && matrix[neighbours[i]][neighbours[j]]) {
+                        edges++;
+                    }
+                }
+            }
+            if (!directed) {
+                edges /= 2;
+            }
+            Node node = graphModel.getGraph().getNode(String.valueOf(v));
+            if (degree > 1) {
+                double expected = (directed ? 1.0 : 2.0) * edges / (degree * (degree - 1.0));
+                average += expected;
+                assertEquals(edges, node.getNodeData().getAttributes().getValue("Triangles"));
+                assertEquals(expected, (Double) node.getNodeData().getAttributes().getValue(ClusteringCoefficient.CLUSTERING_COEFF), 1e-9);
+            }
+        }
+        assertEquals(average / size, cc.getAverageClusteringCoefficient(), 1e-9);
+    }
+
+    @Test
+    public void testUndirected() {
+        boolean[][] matrix = createGraph(400, 60, 0.02, false, 42);
+        for (int threads : new int[]{1, 4}) {
+            ClusteringCoefficient cc = new ClusteringCoefficient();
+            cc.setDirected(false);
+            cc.setThreadCount(threads);
+            cc.execute(graphModel, attributeModel);
+            assertBruteForce(matrix, false, cc);
+        }
+    }
+
+    @Test
+    public void testDirected() {
+        boolean[][] matrix = createGraph(400, 60, 0.03, true, 7);
+        for (int threads : new int[]{1, 4}) {
+            ClusteringCoefficient cc = new ClusteringCoefficient();
+            cc.setDirected(true);
+            cc.setThreadCount(threads);
+            cc.execute(graphModel, attributeModel);
+            assertBruteForce(matrix, true, cc);
+        }
+    }
+
+    @Test
+    public void testApproximate() {
+        boolean[][] matrix = createGraph(300, 40, 0.03, false, 3);
+
+        //All wedges fit in the sample, coefficients are exact
+        ClusteringCoefficient cc = new ClusteringCoefficient();
+        cc.setDirected(false);
+        cc.setApproximate(true);
+        cc.setWedgeSamples(10000);
+        cc.execute(graphModel, attributeModel);
+        assertBruteForce(matrix, false, cc);
+        assertEquals(0.0, cc.getEstimatedError(), 0.0);
+
+        ClusteringCoefficient exact = new ClusteringCoefficient();
+        exact.setDirected(false);
+        exact.execute(graphModel, attributeModel);
+
+        cc.setWedgeSamples(100);
+        cc.execute(graphModel, attributeModel);
+        assertTrue(cc.getEstimatedError() > 0);
+        assertEquals(exact.getAverageClusteringCoefficient(), cc.getAverageClusteringCoefficient(), 6 * cc.getEstimatedError());
+    }
+}
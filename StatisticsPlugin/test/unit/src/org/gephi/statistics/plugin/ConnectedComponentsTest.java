@@ -0,0 +1,195 @@
+/*
+Copyright 2008-2010 Gephi
+Website : http://www.gephi.org
+
+This file is part of Gephi.
+
+DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+
+Copyright 2011 Gephi Consortium. All rights reserved.
+
+The contents of this file are subject to the terms of either the GNU
+General Public License Version 3 only ("GPL") or the Common
+Development and Distribution License("CDDL") (collectively, the
+"License"). You may not use this file except in compliance with the
+License. You can obtain a copy of the License at
+http://gephi.org/about/legal/license-notice/
+or /cddl-1.0.txt and /gpl-3.0.txt. See the License for the
+specific language governing permissions and limitations under the
+License.  When distributing the software, include this License Header
+Notice in each file and include the License files at
+/cddl-1.0.txt and /gpl-3.0.txt. If applicable, add the following below the
+License Header, with the fields enclosed by brackets [] replaced by
+your own identifying information:
+"Portions Copyrighted [year] [name of copyright owner]"
+
+If you wish your version of this file to be governed by only the CDDL
+or only the GPL Version 3, indicate your decision by adding
+"[Contributor] elects to include this software in this distribution
+under the [CDDL or GPL Version 3] license." If you do not indicate a
+single choice of license, a recipient has the option to distribute
+your version of this file under either the CDDL, the GPL Version 3 or
+to extend the choice of license to its licensees as provided above.
+However, if you add GPL Version 3 code and therefore, elected the GPL
+Version 3 license, then the option applies only if the new code is
+made subject to such option by the copyright holder.
+
+Contributor(s):
+
+Portions Copyrighted 2011 Gephi Consortium.
+*/
+package org.gephi.statistics.plugin;
+
+import java.util.Random;
+import org.gephi.data.attributes.api.AttributeController;
+import org.gephi.data.attributes.api.AttributeModel;
+import org.gephi.graph.api.DirectedGraph;
+import org.gephi.graph.api.GraphController;
+import org.gephi.graph.api.GraphModel;
+import org.gephi.graph.api.Node;
+import org.gephi.project.api.ProjectController;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openide.util.Lookup;
+import static org.junit.Assert.*;
+
+public class ConnectedComponentsTest {
+
+    private GraphModel graphModel;
+    private AttributeModel attributeModel;
+
+    @Before
+    public void setUp() {
+        ProjectController projectController = Lookup.getDefault().lookup(ProjectController.class);
+        projectController.newProject();
+        AttributeController attributeController = Lookup.getDefault().lookup(AttributeController.class);
+        attributeModel = attributeController.getModel();
+        GraphController graphController = Lookup.getDefault().lookup(GraphController.class);
+        graphModel = graphController.getModel();
+    }
+
+    @After
+    public void tearDown() {
+        ProjectController projectController = Lookup.getDefault().lookup(ProjectController.class);
+        projectController.closeCurrentProject();
+        graphModel = null;
+        attributeModel = null;
+    }
+
+    private Node[] createNodes(int size) {
+        DirectedGraph graph = graphModel.getDirectedGraph();
+        Node[] nodes = new Node[size];
+        for (int i = 0; i < size; i++) {
+            nodes[i] = graphModel.factory().newNode();
+            graph.addNode(nodes[i]);
+        }
+        return nodes;
+    }
+
+    private int getComponent(Node node, String column) {
+        return (Integer) node.getNodeData().getAttributes().getValue(column);
+    }
+
+    @Test
+    public void testRandomGraph() {
+        int size = 200;
+        Node[] nodes = createNodes(size);
+        DirectedGraph graph = graphModel.getDirectedGraph();
+        Random random = new Random(42);
+        boolean[][] reach = new boolean[size][size];
+        for (int i = 0; i < size; i++) {
+            reach[i][i] = true;
+        }
+        for (int k = 0; k < 240; k++) {
+            int i = random.nextInt(size);
+            int j = random.nextInt(size);
+            if (i != j && graph.getEdge(nodes[i], nodes[j]) == null) {
+                graph.addEdge(graphModel.factory().newEdge(nodes[i], nodes[j], 1f, true));
+                reach[i][j] = true;
+            }
+        }
+
+        //Weak and strong connectivity by transitive closure
+        boolean[][] weak = new boolean[size][size];
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                weak[i][j] = reach[i][j] || reach[j][i];
+            }
+        }
+        closure(reach);
+        closure(weak);
+
+        for (int threads : new int[]{1, 4}) {
+            ConnectedComponents cc = new ConnectedComponents();
+            cc.setDirected(true);
+            cc.setThreadCount(threads);
+            cc.execute(graphModel, attributeModel);
+
+            int weakCount = 0;
+            int strongCount = 0;
+            for (int i = 0; i < size; i++) {
+                boolean weakFirst = true;
+                boolean strongFirst = true;
+                for (int j = 0; j < size; j++) {
+                    assertEquals(weak[i][j], getComponent(nodes[i], ConnectedComponents.WEAKLY) == getComponent(nodes[j], ConnectedComponents.WEAKLY));
+                    assertEquals(reach[i][j] && reach[j][i], getComponent(nodes[i], ConnectedComponents.STRONG) == getComponent(nodes[j], ConnectedComponents.STRONG));
+                    if (j < i && weak[i][j]) {
+                        weakFirst = false;
+                    }
+                    if (j < i && reach[i][j] && reach[j][i]) {
+                        strongFirst = false;
+                    }
+                }
+                weakCount += weakFirst ? 1 : 0;
+                strongCount += strongFirst ? 1 : 0;
+            }
+            assertEquals(weakCount, cc.getConnectedComponentsCount());
+            assertEquals(strongCount, cc.getStronglyConnectedComponentsCount());
+            int total = 0;
+            for (int s : cc.getComponentsSize()) {
+                total += s;
+            }
+            assertEquals(size, total);
+        }
+    }
+
+    private void closure(boolean[][] matrix) {
+        int size = matrix.length;
+        for (int k = 0; k < size; k++) {
+            for (int i = 0; i < size; i++) {
+                if (matrix[i][k]) {
+                    for (int j = 0; j < size; j++) {
+                        matrix[i][j] |= matrix[k][j];
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testLongCycle() {
+        //Deep enough to overflow a recursive traversal
+        int size = 200000;
+        Node[] nodes = createNodes(size);
+        DirectedGraph graph = graphModel.getDirectedGraph();
+        for (int i = 0; i < size; i++) {
+            graph.addEdge(graphModel.factory().newEdge(nodes[i], nodes[(i + 1) % size], 1f, true));
+        }
+        Node isolated = graphModel.factory().newNode();
+        graph.addNode(isolated);
+
+        ConnectedComponents cc = new ConnectedComponents();
+        cc.setDirected(true);
+        cc.execute(graphModel, attributeModel);
+
+        assertEquals(2, cc.getConnectedComponentsCount());
+        assertEquals(2, cc.getStronglyConnectedComponentsCount());
+        assertEquals(size, cc.getComponentsSize()[cc.getGiantComponent()]);
+        int giant = getComponent(nodes[0], ConnectedComponents.STRONG);
+        for (int i = 0; i < size; i++) {
+            assertEquals(giant, getComponent(nodes[i], ConnectedComponents.STRONG));
+        }
+        assertFalse(giant == getComponent(isolated, ConnectedComponents.STRONG));
+    }
+}
@@ -0,0 +1,183 @@
+/*
+Copyright 2008-2010 Gephi
+Website : http://www.gephi.org
+
+This file is part of Gephi.
+
+DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+
+Copyright 2011 Gephi Consortium. All rights reserved.
+
+The contents of this file are subject to the terms of either the GNU
+General Public License Version 3 only ("GPL") or the Common
+Development and Distribution License("CDDL") (collectively, the
+"License"). You may not use this file except in compliance with the
+License. You can obtain a copy of the License at
+http://gephi.org/about/legal/license-notice/
+or /cddl-1.0.txt and /gpl-3.0.txt. See the License for the
+specific language governing permissions and limitations under the
+License.  When distributing the software, include this License Header
+Notice in each file and include the License files at
+/cddl-1.0.txt and /gpl-3.0.txt. If applicable, add the following below the
+License Header, with the fields enclosed by brackets [] replaced by
+your own identifying information:
+"Portions Copyrighted [year] [name of copyright owner]"
+
+If you wish your version of this file to be governed by only the CDDL
+or only the GPL Version 3, indicate your decision by adding
+"[Contributor] elects to include this software in this distribution
+under the [CDDL or GPL Version 3] license." If you do not indicate a
+single choice of license, a recipient has the option to distribute
+your version of this file under either the CDDL, the GPL Version 3 or
+to extend the choice of license to its licensees as provided above.
+However, if you add GPL Version 3 code and therefore, elected the GPL
+Version 3 license, then the option applies only if the new code is
+made subject to such option by the copyright holder.
+
+Contributor(s):
+
+Portions Copyrighted 2011 Gephi Consortium.
+*/
+package org.gephi.statistics.plugin;
+
+import org.gephi.data.attributes.api.AttributeController;
+import org.gephi.data.attributes.api.AttributeModel;
+import org.gephi.graph.api.DirectedGraph;
+import org.gephi.graph.api.Edge;
+import org.gephi.graph.api.GraphController;
+import org.gephi.graph.api.GraphModel;
+import org.gephi.graph.api.GraphView;
+import org.gephi.graph.api.Node;
+import org.gephi.project.api.ProjectController;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openide.util.Lookup;
+import static org.junit.Assert.*;
+
+public class DegreeUpdaterTest {
+
+    private static final long TIMEOUT = 5000;
+    private GraphModel graphModel;
+    private AttributeModel attributeModel;
+    private Node[] nodes;
+
+    @Before
+    public void setUp() {
+        ProjectController projectController = Lookup.getDefault().lookup(ProjectController.class);
+        projectController.newProject();
+        AttributeController attributeController = Lookup.getDefault().lookup(AttributeController.class);
+        attributeModel = attributeController.getModel();
+        GraphController graphController = Lookup.getDefault().lookup(GraphController.class);
+        graphModel = graphController.getModel();
+
+        //Star with 0 at the center
+        DirectedGraph graph = graphModel.getDirectedGraph();
+        nodes = new Node[5];
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = graphModel.factory().newNode();
+            graph.addNode(nodes[i]);
+        }
+        for (int i = 1; i < nodes.length; i++) {
+            graph.addEdge(graphModel.factory().newEdge(nodes[0], nodes[i]));
+        }
+    }
+
+    @After
+    public void tearDown() {
+        ProjectController projectController = Lookup.getDefault().lookup(ProjectController.class);
+        projectController.closeCurrentProject();
+        graphModel = null;
+        attributeModel = null;
+        nodes = null;
+    }
+
+    private void waitForValue(Node node, String column, int expected) throws InterruptedException {
+        long start = System.currentTimeMillis();
+        while (!Integer.valueOf(expected).equals(node.getNodeData().getAttributes().getValue(column))
+                && System.currentTimeMillis() - start < TIMEOUT) {
+            Thread.sleep(20);
+        }
+        assertEquals(expected, node.getNodeData().getAttributes().getValue(column));
+    }
+
+    private void waitForWeight(Node node, String column, float expected) throws InterruptedException {
+        long start = System.currentTimeMillis();
+        while (!isWeight(node.getNodeData().getAttributes().getValue(column), expected)
+                && System.currentTimeMillis() - start < TIMEOUT) {
+            Thread.sleep(20);
+        }
+        assertEquals(expected, ((Number) node.getNodeData().getAttributes().getValue(column)).floatValue(), 0f);
+    }
+
+    private static boolean isWeight(Object value, float expected) {
+        return value instanceof Number && ((Number) value).floatValue() == expected;
+    }
+
+    @Test
+    public void testEdges() throws InterruptedException {
+        Degree degree = new Degree();
+        degree.setLiveUpdate(true);
+        degree.execute(graphModel, attributeModel);
+        assertEquals(4, nodes[0].getNodeData().getAttributes().getValue(Degree.OUTDEGREE));
+
+        DirectedGraph graph = graphModel.getDirectedGraph();
+        graph.addEdge(graphModel.factory().newEdge(nodes[1], nodes[2]));
+        waitForValue(nodes[1], Degree.OUTDEGREE, 1);
+        waitForValue(nodes[2], Degree.INDEGREE, 2);
+        waitForValue(nodes[2], Degree.DEGREE, 2);
+
+        Edge edge = graph.getEdge(nodes[0], nodes[3]);
+        graph.removeEdge(edge);
+        waitForValue(nodes[0], Degree.OUTDEGREE, 3);
+        waitForValue(nodes[3], Degree.DEGREE, 0);
+
+        //Weighted degree stays live, once it has seen the removal the degree
+        //would have been updated too
+        WeightedDegree weightedDegree = new WeightedDegree();
+        weightedDegree.setLiveUpdate(true);
+        weightedDegree.execute(graphModel, attributeModel);
+        degree.setLiveUpdate(false);
+        graph.removeNode(nodes[4]);
+        waitForWeight(nodes[0], WeightedDegree.WDEGREE, 2f);
+        assertEquals(3, nodes[0].getNodeData().getAttributes().getValue(Degree.DEGREE));
+        weightedDegree.setLiveUpdate(false);
+    }
+
+    @Test
+    public void testWeightedEdges() throws InterruptedException {
+        WeightedDegree weightedDegree = new WeightedDegree();
+        weightedDegree.setLiveUpdate(true);
+        weightedDegree.execute(graphModel, attributeModel);
+        waitForWeight(nodes[0], WeightedDegree.WOUTDEGREE, 4f);
+
+        DirectedGraph graph = graphModel.getDirectedGraph();
+        graph.addEdge(graphModel.factory().newEdge(nodes[1], nodes[2], 2.5f, true));
+        waitForWeight(nodes[1], WeightedDegree.WOUTDEGREE, 2.5f);
+        waitForWeight(nodes[1], WeightedDegree.WDEGREE, 3.5f);
+        waitForWeight(nodes[2], WeightedDegree.WINDEGREE, 3.5f);
+
+        graph.removeEdge(graph.getEdge(nodes[0], nodes[3]));
+        waitForWeight(nodes[0], WeightedDegree.WOUTDEGREE, 3f);
+        waitForWeight(nodes[3], WeightedDegree.WDEGREE, 0f);
+        weightedDegree.setLiveUpdate(false);
+    }
+
+    @Test
+    public void testVisibleView() throws InterruptedException {
+        Degree degree = new Degree();
+        degree.setLiveUpdate(true);
+        degree.execute(graphModel, attributeModel);
+
+        //Same sequence as the filter thread
+        GraphView view = graphModel.newView();
+        graphModel.getGraph(view).removeNode(nodes[1]);
+        graphModel.getGraph(view).removeNode(nodes[2]);
+        graphModel.setVisibleView(view);
+        waitForValue(nodes[0], Degree.OUTDEGREE, 2);
+
+        graphModel.getGraph(view).removeNode(nodes[3]);
+        waitForValue(nodes[0], Degree.OUTDEGREE, 1);
+        degree.setLiveUpdate(false);
+    }
+}
@@ -0,0 +1,228 @@
+/*
+Copyright 2008-2010 Gephi
+Website : http://www.gephi.org
+
+This file is part of Gephi.
+
+DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+
+Copyright 2011 Gephi Consortium. All rights reserved.
+
+The contents of this file are subject to the terms of either the GNU
+General Public License Version 3 only ("GPL") or the Common
+Development and Distribution License("CDDL") (collectively, the
+"License"). You may not use this file except in compliance with the
+License. You can obtain a copy of the License at
+http://gephi.org/about/legal/license-notice/
+or /cddl-1.0.txt and /gpl-3.0.txt. See the License for the
+specific language governing permissions and limitations under the
+License.  When distributing the software, include this License Header
+Notice in each file and include the License files at
+/cddl-1.0.txt and /gpl-3.0.txt. If applicable, add the following below the
+License Header, with the fields enclosed by brackets [] replaced by
+your own identifying information:
+"Portions Copyrighted [year] [name of copyright owner]"
+
+If you wish your version of this file to be governed by only the CDDL
+or only the GPL Version 3, indicate your decision by adding
+"[Contributor] elects to include this software in this distribution
+under the [CDDL or GPL Version 3] license." If you do not indicate a
+single choice of license, a recipient has the option to distribute
+your version of this file under either the CDDL, the GPL Version 3 or
+to extend the choice of license to its licensees as provided above.
+However, if you add GPL Version 3 code and therefore, elected the GPL
+Version 3 license, then the option applies only if the new code is
+made subject to such option by the copyright holder.
+
+Contributor(s):
+
+Portions Copyrighted 2011 Gephi Consortium.
+*/
+package org.gephi.statistics.plugin;
+
+import java.util.Random;
+import org.gephi.data.attributes.api.AttributeController;
+import org.gephi.data.attributes.api.AttributeModel;
+import org.gephi.graph.api.DirectedGraph;
+import org.gephi.graph.api.GraphController;
+import org.gephi.graph.api.GraphModel;
+import org.gephi.graph.api.Node;
+import org.gephi.graph.api.UndirectedGraph;
+import org.gephi.project.api.ProjectController;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openide.util.Lookup;
+import static org.junit.Assert.*;
+
+public class GraphDistanceTest {
+
+    private GraphModel graphModel;
+    private AttributeModel attributeModel;
+
+    @Before
+    public void setUp() {
+        ProjectController projectController = Lookup.getDefault().lookup(ProjectController.class);
+        projectController.newProject();
+        AttributeController attributeController = Lookup.getDefault().lookup(AttributeController.class);
+        attributeModel = attributeController.getModel();
+        GraphController graphController = Lookup.getDefault().lookup(GraphController.class);
+        graphModel = graphController.getModel();
+    }
+
+    @After
+    public void tearDown() {
+        ProjectController projectController = Lookup.getDefault().lookup(ProjectController.class);
+        projectController.closeCurrentProject();
+        graphModel = null;
+        attributeModel = null;
+    }
+
+    private Node[] createPath(int size) {
+        UndirectedGraph graph = graphModel.getUndirectedGraph();
+        Node[] nodes = new Node[size];
+        for (int i = 0; i < size; i++) {
+            nodes[i] = graphModel.factory().newNode();
+            graph.addNode(nodes[i]);
+        }
+        for (int i = 1; i < size; i++) {
+            graph.addEdge(graphModel.factory().newEdge(nodes[i - 1], nodes[i], 1f, false));
+        }
+        return nodes;
+    }
+
+    private Node[] createRandomDirected(int size, int edges, long seed) {
+        DirectedGraph graph = graphModel.getDirectedGraph();
+        Node[] nodes = new Node[size];
+        for (int i = 0; i < size; i++) {
+            nodes[i] = graphModel.factory().newNode();
+            graph.addNode(nodes[i]);
+        }
+        Random random = new Random(seed);
+        int j = 0;
+        while (j < edges) {
+            Node source = nodes[random.nextInt(size)];
+            Node target = nodes[random.nextInt(size)];
+            if (graph.getEdge(source, target) == null) {
+                graph.addEdge(graphModel.factory().newEdge(source, target));
+                j++;
+            }
+        }
+        return nodes;
+    }
+
+    private double[] getValues(Node[] nodes, String column) {
+        double[] res = new double[nodes.length];
+        for (int i = 0; i < nodes.length; i++) {
+            res[i] = (Double) nodes[i].getNodeData().getAttributes().getValue(column);
+        }
+        return res;
+    }
+
+    @Test
+    public void testPath() {
+        Node[] nodes = createPath(5);
+        GraphDistance distance = new GraphDistance();
+        distance.setDirected(false);
+        distance.execute(graphModel, attributeModel);
+
+        assertEquals(4.0, distance.getDiameter(), 0.0);
+        assertEquals(2.0, distance.getPathLength(), 0.0);
+        assertArrayEquals(new double[]{0, 3, 4, 3, 0}, getValues(nodes, GraphDistance.BETWEENNESS), 1e-9);
+        assertArrayEquals(new double[]{4, 3, 2, 3, 4}, getValues(nodes, GraphDistance.ECCENTRICITY), 1e-9);
+        assertArrayEquals(new double[]{2.5, 1.75, 1.5, 1.75, 2.5}, getValues(nodes, GraphDistance.CLOSENESS), 1e-9);
+    }
+
+    @Test
+    public void testParallel() {
+        Node[] nodes = createRandomDirected(300, 1200, 42);
+        GraphDistance sequential = new GraphDistance();
+        sequential.setDirected(true);
+        sequential.setThreadCount(1);
+        sequential.execute(graphModel, attributeModel);
+        double[] betweenness = getValues(nodes, GraphDistance.BETWEENNESS);
+        double[] closeness = getValues(nodes, GraphDistance.CLOSENESS);
+        double[] eccentricity = getValues(nodes, GraphDistance.ECCENTRICITY);
+
+        GraphDistance parallel = new GraphDistance();
+        parallel.setDirected(true);
+        parallel.setThreadCount(4);
+        parallel.execute(graphModel, attributeModel);
+
+        assertEquals(sequential.getDiameter(), parallel.getDiameter(), 0.0);
+        assertEquals(sequential.getPathLength(), parallel.getPathLength(), 1e-12);
+        assertArrayEquals(betweenness, getValues(nodes, GraphDistance.BETWEENNESS), 1e-6);
+        assertArrayEquals(closeness, getValues(nodes, GraphDistance.CLOSENESS), 0.0);
+        assertArrayEquals(eccentricity, getValues(nodes, GraphDistance.ECCENTRICITY), 0.0);
+    }
+
+    @Test
+    public void testApproximateAllSources() {
+        Node[] nodes = createRandomDirected(200, 800, 7);
+        GraphDistance exact = new GraphDistance();
+        exact.setDirected(true);
+        exact.execute(graphModel, attributeModel);
+        double[] betweenness = getValues(nodes, GraphDistance.BETWEENNESS);
+        double[] closeness = getValues(nodes, GraphDistance.CLOSENESS);
+        double[] eccentricity = getValues(nodes, GraphDistance.ECCENTRICITY);
+
+        GraphDistance approximate = new GraphDistance();
+        approximate.setDirected(true);
+        approximate.setApproximate(true);
+        approximate.setSampleSize(nodes.length);
+        approximate.execute(graphModel, attributeModel);
+
+        assertEquals(0.0, approximate.getEstimatedError(), 0.0);
+        assertEquals(exact.getDiameter(), approximate.getDiameter(), 0.0);
+        assertArrayEquals(betweenness, getValues(nodes, GraphDistance.BETWEENNESS), 1e-6);
+        assertArrayEquals(closeness, getValues(nodes, GraphDistance.CLOSENESS), 1e-9);
+        assertArrayEquals(eccentricity, getValues(nodes, GraphDistance.ECCENTRICITY), 0.0);
+    }
+
+    @Test
+    public void testApproximateErrorBound() {
+        Node[] nodes = createRandomDirected(400, 2000, 11);
+        GraphDistance exact = new GraphDistance();
+        exact.setDirected(false);
+        exact.setNormalized(true);
+        exact.execute(graphModel, attributeModel);
+        double[] betweenness = getValues(nodes, GraphDistance.BETWEENNESS);
+
+        GraphDistance approximate = new GraphDistance();
+        approximate.setDirected(false);
+        approximate.setNormalized(true);
+        approximate.setApproximate(true);
+        approximate.setEpsilon(0.2);
+        approximate.setDelta(0.01);
+        approximate.setSeed(42);
+        approximate.execute(graphModel, attributeModel);
+        double[] estimated = getValues(nodes, GraphDistance.BETWEENNESS);
+
+        assertTrue(approximate.getEstimatedError() > 0.0);
+        assertTrue(approximate.getEstimatedError() <= 0.2);
+        for (int i = 0; i < nodes.length; i++) {
+            assertEquals(betweenness[i], estimated[i], approximate.getEstimatedError());
+        }
+    }
+
+    @Test
+    public void testEpsilonDeltaRange() {
+        GraphDistance graphDistance = new GraphDistance();
+        for (double value : new double[]{0.0, -0.1, 1.0, 1.5, Double.NaN}) {
+            try {
+                graphDistance.setEpsilon(value);
+                fail("epsilon " + value);
+            } catch (IllegalArgumentException e) {
+            }
+            try {
+                graphDistance.setDelta(value);
+                fail("delta " + value);
+            } catch (IllegalArgumentException e) {
+            }
+        }
+        graphDistance.setEpsilon(0.5);
+        graphDistance.setDelta(0.5);
+        assertEquals(0.5, graphDistance.getEpsilon(), 0.0);
+        assertEquals(0.5, graphDistance.getDelta(), 0.0);
+    }
+}
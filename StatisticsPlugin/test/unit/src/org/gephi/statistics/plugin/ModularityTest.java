@@ -0,0 +1,168 @@
+/*
+Copyright 2008-2010 Gephi
+Website : http://www.gephi.org
+
+This file is part of Gephi.
+
+DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+
+Copyright 2011 Gephi Consortium. All rights reserved.
+
+The contents of this file are subject to the terms of either the GNU
+General Public License Version 3 only ("GPL") or the Common
+Development and Distribution License("CDDL") (collectively, the
+"License"). You may not use this file except in compliance with the
+License. You can obtain a copy of the License at
+http://gephi.org/about/legal/license-notice/
+or /cddl-1.0.txt and /gpl-3.0.txt. See the License for the
+specific language governing permissions and limitations under the
+License.  When distributing the software, include this License Header
+Notice in each file and include the License files at
+/cddl-1.0.txt and /gpl-3.0.txt. If applicable, add the following below the
+License Header, with the fields enclosed by brackets [] replaced by
+your own identifying information:
+"Portions Copyrighted [year] [name of copyright owner]"
+
+If you wish your version of this file to be governed by only the CDDL
+or only the GPL Version 3, indicate your decision by adding
+"[Contributor] elects to include this software in this distribution
+under the [CDDL or GPL Version 3] license." If you do not indicate a
+single choice of license, a recipient has the option to distribute
+your version of this file under either the CDDL, the GPL Version 3 or
+to extend the choice of license to its licensees as provided above.
+However, if you add GPL Version 3 code and therefore, elected the GPL
+Version 3 license, then the option applies only if the new code is
+made subject to such option by the copyright holder.
+
+Contributor(s):
+
+Portions Copyrighted 2011 Gephi Consortium.
+*/
+package org.gephi.statistics.plugin;
+
+import java.util.Random;
+import org.gephi.data.attributes.api.AttributeController;
+import org.gephi.data.attributes.api.AttributeModel;
+import org.gephi.graph.api.GraphController;
+import org.gephi.graph.api.GraphModel;
+import org.gephi.graph.api.Node;
+import org.gephi.graph.api.UndirectedGraph;
+import org.gephi.project.api.ProjectController;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openide.util.Lookup;
+import static org.junit.Assert.*;
+
+public class ModularityTest {
+
+    private GraphModel graphModel;
+    private AttributeModel attributeModel;
+
+    @Before
+    public void setUp() {
+        ProjectController projectController = Lookup.getDefault().lookup(ProjectController.class);
+        projectController.newProject();
+        AttributeController attributeController = Lookup.getDefault().lookup(AttributeController.class);
+        attributeModel = attributeController.getModel();
+        GraphController graphController = Lookup.getDefault().lookup(GraphController.class);
+        graphModel = graphController.getModel();
+    }
+
+    @After
+    public void tearDown() {
+        ProjectController projectController = Lookup.getDefault().lookup(ProjectController.class);
+        projectController.closeCurrentProject();
+        graphModel = null;
+        attributeModel = null;
+    }
+
+    private Node[] createNodes(int size) {
+        UndirectedGraph graph = graphModel.getUndirectedGraph();
+        Node[] nodes = new Node[size];
+        for (int i = 0; i < size; i++) {
+            nodes[i] = graphModel.factory().newNode();
+            graph.addNode(nodes[i]);
+        }
+        return nodes;
+    }
+
+    private void addEdge(Node source, Node target) {
+        UndirectedGraph graph = graphModel.getUndirectedGraph();
+        if (source != target && graph.getEdge(source, target) == null) {
+            graph.addEdge(graphModel.factory().newEdge(source, target, 1f, false));
+        }
+    }
+
+    private int[] getClasses(Node[] nodes) {
+        int[] res = new int[nodes.length];
+        for (int i = 0; i < nodes.length; i++) {
+            res[i] = (Integer) nodes[i].getNodeData().getAttributes().getValue(Modularity.MODULARITY_CLASS);
+        }
+        return res;
+    }
+
+    @Test
+    public void testRingOfCliques() {
+        int cliques = 8;
+        int size = 5;
+        Node[] nodes = createNodes(cliques * size);
+        for (int c = 0; c < cliques; c++) {
+            for (int i = 0; i < size; i++) {
+                for (int j = i + 1; j < size; j++) {
+                    addEdge(nodes[c * size + i], nodes[c * size + j]);
+                }
+            }
+            addEdge(nodes[c * size], nodes[((c + 1) % cliques) * size + 1]);
+        }
+
+        for (boolean refine : new boolean[]{false, true}) {
+            Modularity modularity = new Modularity();
+            modularity.setRefine(refine);
+            modularity.execute(graphModel, attributeModel);
+
+            int[] classes = getClasses(nodes);
+            for (int c = 0; c < cliques; c++) {
+                for (int i = 1; i < size; i++) {
+                    assertEquals(classes[c * size], classes[c * size + i]);
+                }
+                assertFalse(classes[c * size] == classes[((c + 1) % cliques) * size]);
+            }
+            //Q = 1 - 1 / cliques - cliques / m, with m = cliques * 11
+            assertEquals(1.0 - 1.0 / cliques - 1.0 / 11, modularity.getModularity(), 1e-9);
+        }
+    }
+
+    @Test
+    public void testDeterministic() {
+        //Planted partition, large enough to choose moves in parallel
+        int groups = 200;
+        int groupSize = 200;
+        Node[] nodes = createNodes(groups * groupSize);
+        Random random = new Random(3);
+        for (int i = 0; i < nodes.length; i++) {
+            int group = i / groupSize;
+            for (int k = 0; k < 4; k++) {
+                addEdge(nodes[i], nodes[group * groupSize + random.nextInt(groupSize)]);
+            }
+            addEdge(nodes[i], nodes[random.nextInt(nodes.length)]);
+        }
+
+        Modularity modularity = new Modularity();
+        modularity.setRandom(true);
+        modularity.setSeed(42);
+        modularity.setThreadCount(1);
+        modularity.execute(graphModel, attributeModel);
+        int[] sequential = getClasses(nodes);
+        double q = modularity.getModularity();
+        assertTrue(q > 0.7);
+
+        //Results don't depend on the number of threads
+        for (int threads : new int[]{2, 4}) {
+            modularity.setThreadCount(threads);
+            modularity.execute(graphModel, attributeModel);
+            assertArrayEquals(sequential, getClasses(nodes));
+            assertEquals(q, modularity.getModularity(), 0.0);
+        }
+    }
+}
@@ -0,0 +1,196 @@
+/*
+Copyright 2008-2010 Gephi
+Website : http://www.gephi.org
+
+This file is part of Gephi.
+
+DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+
+Copyright 2011 Gephi Consortium. All rights reserved.
+
+The contents of this file are subject to the terms of either the GNU
+General Public License Version 3 only ("GPL") or the Common
+Development and Distribution License("CDDL") (collectively, the
+"License"). You may not use this file except in compliance with the
+License. You can obtain a copy of the License at
+http://gephi.org/about/legal/license-notice/
+or /cddl-1.0.txt and /gpl-3.0.txt. See the License for the
+specific language governing permissions and limitations under the
+License.  When distributing the software, include this License Header
+Notice in each file and include the License files at
+/cddl-1.0.txt and /gpl-3.0.txt. If applicable, add the following below the
+License Header, with the fields enclosed by brackets [] replaced by
+your own identifying information:
+"Portions Copyrighted [year] [name of copyright owner]"
+
+If you wish your version of this file to be governed by only the CDDL
+or only the GPL Version 3, indicate your decision by adding
+"[Contributor] elects to include this software in this distribution
+under the [CDDL or GPL Version 3] license." If you do not indicate a
+single choice of license, a recipient has the option to distribute
+your version of this file under either the CDDL, the GPL Version 3 or
+to extend the choice of license to its licensees as provided above.
+However, if you add GPL Version 3 code and therefore, elected the GPL
+Version 3 license, then the option applies only if the new code is
+made subject to such option by the copyright holder.
+
+Contributor(s):
+
+Portions Copyrighted 2011 Gephi Consortium.
+*/
+package org.gephi.statistics.plugin;
+
+import java.util.Random;
+import org.gephi.data.attributes.api.AttributeController;
+import org.gephi.data.attributes.api.AttributeModel;
+import org.gephi.graph.api.DirectedGraph;
+import org.gephi.graph.api.GraphController;
+import org.gephi.graph.api.GraphModel;
+import org.gephi.graph.api.Node;
+import org.gephi.graph.api.UndirectedGraph;
+import org.gephi.project.api.ProjectController;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openide.util.Lookup;
+import static org.junit.Assert.*;
+
+public class PowerIterationTest {
+
+    private GraphModel graphModel;
+    private AttributeModel attributeModel;
+
+    @Before
+    public void setUp() {
+        ProjectController projectController = Lookup.getDefault().lookup(ProjectController.class);
+        projectController.newProject();
+        AttributeController attributeController = Lookup.getDefault().lookup(AttributeController.class);
+        attributeModel = attributeController.getModel();
+        GraphController graphController = Lookup.getDefault().lookup(GraphController.class);
+        graphModel = graphController.getModel();
+    }
+
+    @After
+    public void tearDown() {
+        ProjectController projectController = Lookup.getDefault().lookup(ProjectController.class);
+        projectController.closeCurrentProject();
+        graphModel = null;
+        attributeModel = null;
+    }
+
+    private Node[] createNodes(int size) {
+        Node[] nodes = new Node[size];
+        for (int i = 0; i < size; i++) {
+            nodes[i] = graphModel.factory().newNode();
+            graphModel.getGraph().addNode(nodes[i]);
+        }
+        return nodes;
+    }
+
+    private Node[] createRandomDirected(int size, int edges, long seed) {
+        DirectedGraph graph = graphModel.getDirectedGraph();
+        Node[] nodes = createNodes(size);
+        Random random = new Random(seed);
+        int j = 0;
+        while (j < edges) {
+            Node source = nodes[random.nextInt(size)];
+            Node target = nodes[random.nextInt(size)];
+            if (source != target && graph.getEdge(source, target) == null) {
+                graph.addEdge(graphModel.factory().newEdge(source, target));
+                j++;
+            }
+        }
+        return nodes;
+    }
+
+    private double[] getValues(Node[] nodes, String column) {
+        double[] res = new double[nodes.length];
+        for (int i = 0; i < nodes.length; i++) {
+            res[i] = ((Number) nodes[i].getNodeData().getAttributes().getValue(column)).doubleValue();
+        }
+        return res;
+    }
+
+    @Test
+    public void testPageRankCycle() {
+        Node[] nodes = createNodes(4);
+        DirectedGraph graph = graphModel.getDirectedGraph();
+        for (int i = 0; i < nodes.length; i++) {
+            graph.addEdge(graphModel.factory().newEdge(nodes[i], nodes[(i + 1) % nodes.length]));
+        }
+        PageRank pageRank = new PageRank();
+        pageRank.setDirected(true);
+        pageRank.execute(graphModel, attributeModel);
+
+        assertArrayEquals(new double[]{0.25, 0.25, 0.25, 0.25}, getValues(nodes, PageRank.PAGERANK), 1e-9);
+    }
+
+    @Test
+    public void testPageRankParallel() {
+        Node[] nodes = createRandomDirected(300, 1200, 7);
+        PageRank pageRank = new PageRank();
+        pageRank.setDirected(true);
+        pageRank.setEpsilon(1e-10);
+        pageRank.setThreadCount(1);
+        pageRank.execute(graphModel, attributeModel);
+        double[] sequential = getValues(nodes, PageRank.PAGERANK);
+
+        pageRank.setThreadCount(4);
+        pageRank.execute(graphModel, attributeModel);
+        double[] parallel = getValues(nodes, PageRank.PAGERANK);
+
+        double sum = 0;
+        for (double d : sequential) {
+            sum += d;
+        }
+        assertEquals(1.0, sum, 1e-6);
+        assertArrayEquals(sequential, parallel, 1e-9);
+    }
+
+    @Test
+    public void testHitsStar() {
+        Node[] nodes = createNodes(5);
+        DirectedGraph graph = graphModel.getDirectedGraph();
+        for (int i = 1; i < nodes.length; i++) {
+            graph.addEdge(graphModel.factory().newEdge(nodes[0], nodes[i]));
+        }
+        Hits hits = new Hits();
+        hits.setUndirected(false);
+        hits.execute(graphModel, attributeModel);
+
+        assertArrayEquals(new double[]{1, 0, 0, 0, 0}, getValues(nodes, Hits.HUB), 1e-6);
+        assertArrayEquals(new double[]{0, 0.25, 0.25, 0.25, 0.25}, getValues(nodes, Hits.AUTHORITY), 1e-6);
+    }
+
+    @Test
+    public void testEigenvectorCompleteGraph() {
+        Node[] nodes = createNodes(4);
+        UndirectedGraph graph = graphModel.getUndirectedGraph();
+        for (int i = 0; i < nodes.length; i++) {
+            for (int j = i + 1; j < nodes.length; j++) {
+                graph.addEdge(graphModel.factory().newEdge(nodes[i], nodes[j], 1f, false));
+            }
+        }
+        EigenvectorCentrality eigenvector = new EigenvectorCentrality();
+        eigenvector.setDirected(false);
+        eigenvector.execute(graphModel, attributeModel);
+
+        assertArrayEquals(new double[]{1, 1, 1, 1}, getValues(nodes, EigenvectorCentrality.EIGENVECTOR), 1e-9);
+    }
+
+    @Test
+    public void testEigenvectorParallel() {
+        Node[] nodes = createRandomDirected(300, 1200, 11);
+        EigenvectorCentrality eigenvector = new EigenvectorCentrality();
+        eigenvector.setDirected(true);
+        eigenvector.setThreadCount(1);
+        eigenvector.execute(graphModel, attributeModel);
+        double[] sequential = getValues(nodes, EigenvectorCentrality.EIGENVECTOR);
+
+        eigenvector.setThreadCount(4);
+        eigenvector.execute(graphModel, attributeModel);
+        double[] parallel = getValues(nodes, EigenvectorCentrality.EIGENVECTOR);
+
+        assertArrayEquals(sequential, parallel, 0.0);
+    }
+}
@@ -52,6 +52,7 @@ public class ClusteringCoefficientPanel extends javax.swing.JPanel {
 
     public ClusteringCoefficientPanel() {
         initComponents();
+        refreshSamplingEnabled();
         
         //Disable directed if the graph is undirecteds
         GraphController graphController = Lookup.getDefault().lookup(GraphController.class);
@@ -79,6 +80,33 @@ public class ClusteringCoefficientPanel extends javax.swing.JPanel {
   //      algorithmButtonGroup.setSelected(brute ? bruteRadioButton.getModel() : triangleRadioButton.getModel(), true);
   //  }
 
+    public boolean isApproximate() {
+        return approximateCheckBox.isSelected();
+    }
+
+    public void setApproximate(boolean approximate) {
+        approximateCheckBox.setSelected(approximate);
+        refreshSamplingEnabled();
+    }
+
+    public int getWedgeSamples() {
+        try {
+            return Math.max(1, Integer.parseInt(wedgesTextField.getText()));
+        } catch (Exception e) {
+        }
+        return 256;
+    }
+
+    public void setWedgeSamples(int wedgeSamples) {
+        wedgesTextField.setText(Integer.toString(wedgeSamples));
+    }
+
+    private void refreshSamplingEnabled() {
+        boolean enabled = approximateCheckBox.isSelected();
+        wedgesLabel.setEnabled(enabled);
+        wedgesTextField.setEnabled(enabled);
+    }
+
     /** This method is called from within the constructor to
      * initialize the form.
      * WARNING: Do NOT modify this code. The content of this method is
@@ -93,6 +121,9 @@ public class ClusteringCoefficientPanel extends javax.swing.JPanel {
         directedRadioButton = new javax.swing.JRadioButton();
         undirectedRadioButton = new javax.swing.JRadioButton();
         header = new org.jdesktop.swingx.JXHeader();
+        approximateCheckBox = new javax.swing.JCheckBox();
+        wedgesLabel = new javax.swing.JLabel();
+        wedgesTextField = new javax.swing.JTextField();
 
         directedButtonGroup.add(directedRadioButton);
         directedRadioButton.setText(org.openide.util.NbBundle.getMessage(ClusteringCoefficientPanel.class, "ClusteringCoefficientPanel.directedRadioButton.text")); // NOI18N
@@ -103,6 +134,17 @@ public class ClusteringCoefficientPanel extends javax.swing.JPanel {
         header.setDescription(org.openide.util.NbBundle.getMessage(ClusteringCoefficientPanel.class, "ClusteringCoefficientPanel.header.description")); // NOI18N
         header.setTitle(org.openide.util.NbBundle.getMessage(ClusteringCoefficientPanel.class, "ClusteringCoefficientPanel.header.title")); // NOI18N
 
+        approximateCheckBox.setText(org.openide.util.NbBundle.getMessage(ClusteringCoefficientPanel.class, "ClusteringCoefficientPanel.approximateCheckBox.text")); // NOI18N
+        approximateCheckBox.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                approximateCheckBoxActionPerformed(evt);
+            }
+        });
+
+        wedgesLabel.setText(org.openide.util.NbBundle.getMessage(ClusteringCoefficientPanel.class, "ClusteringCoefficientPanel.wedgesLabel.text")); // NOI18N
+
+        wedgesTextField.setText(org.openide.util.NbBundle.getMessage(ClusteringCoefficientPanel.class, "ClusteringCoefficientPanel.wedgesTextField.text")); // NOI18N
+
         javax.swing.GroupLayout layout = new javax.swing.GroupLayout(this);
         this.setLayout(layout);
         layout.setHorizontalGroup(
@@ -112,8 +154,14 @@ public class ClusteringCoefficientPanel extends javax.swing.JPanel {
                 .addContainerGap()
                 .addGroup(layout.createParallelGroup(javax.swing.GroupLayout.Alignment.LEADING)
                     .addComponent(undirectedRadioButton)
-                    .addComponent(directedRadioButton))
-                .addContainerGap(519, Short.MAX_VALUE))
+                    .addComponent(directedRadioButton)
+                    .addComponent(approximateCheckBox)
+                    .addGroup(layout.createSequentialGroup()
+                        .addGap(21, 21, 21)
+                        .addComponent(wedgesLabel)
+                        .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                        .addComponent(wedgesTextField, javax.swing.GroupLayout.PREFERRED_SIZE, 70, javax.swing.GroupLayout.PREFERRED_SIZE)))
+                .addContainerGap(javax.swing.GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE))
         );
         layout.setVerticalGroup(
             layout.createParallelGroup(javax.swing.GroupLayout.Alignment.LEADING)
@@ -123,14 +171,27 @@ public class ClusteringCoefficientPanel extends javax.swing.JPanel {
                 .addComponent(directedRadioButton)
                 .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.UNRELATED)
                 .addComponent(undirectedRadioButton)
-                .addContainerGap(95, Short.MAX_VALUE))
+                .addGap(18, 18, 18)
+                .addComponent(approximateCheckBox)
+                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                .addGroup(layout.createParallelGroup(javax.swing.GroupLayout.Alignment.BASELINE)
+                    .addComponent(wedgesLabel)
+                    .addComponent(wedgesTextField, javax.swing.GroupLayout.PREFERRED_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.PREFERRED_SIZE))
+                .addContainerGap(30, Short.MAX_VALUE))
         );
     }// </editor-fold>//GEN-END:initComponents
+
+    private void approximateCheckBoxActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_approximateCheckBoxActionPerformed
+        refreshSamplingEnabled();
+    }//GEN-LAST:event_approximateCheckBoxActionPerformed
     // Variables declaration - do not modify//GEN-BEGIN:variables
     private javax.swing.ButtonGroup algorithmButtonGroup;
+    private javax.swing.JCheckBox approximateCheckBox;
     private javax.swing.ButtonGroup directedButtonGroup;
     private javax.swing.JRadioButton directedRadioButton;
     private org.jdesktop.swingx.JXHeader header;
     private javax.swing.JRadioButton undirectedRadioButton;
+    private javax.swing.JLabel wedgesLabel;
+    private javax.swing.JTextField wedgesTextField;
     // End of variables declaration//GEN-END:variables
 }
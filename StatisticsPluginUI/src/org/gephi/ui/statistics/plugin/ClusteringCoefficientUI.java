@@ -68,12 +68,16 @@ public class ClusteringCoefficientUI implements StatisticsUI {
         this.clusteringCoefficient = (ClusteringCoefficient) statistics;
         if (panel != null) {
             panel.setDirected(clusteringCoefficient.isDirected());
+            panel.setApproximate(clusteringCoefficient.isApproximate());
+            panel.setWedgeSamples(clusteringCoefficient.getWedgeSamples());
         }
     }
 
     public void unsetup() {
         if (panel != null) {
             clusteringCoefficient.setDirected(panel.isDirected());
+            clusteringCoefficient.setApproximate(panel.isApproximate());
+            clusteringCoefficient.setWedgeSamples(panel.getWedgeSamples());
         }
         clusteringCoefficient = null;
         panel = null;
@@ -65,6 +65,10 @@ public class DiameterUI implements StatisticsUI {
         if (panel != null) {
             panel.setDirected(graphDistance.isDirected());
             panel.doNormalize(graphDistance.isNormalized());
+            panel.setSampleSize(graphDistance.getSampleSize());
+            panel.setEpsilon(graphDistance.getEpsilon());
+            panel.setDelta(graphDistance.getDelta());
+            panel.setApproximate(graphDistance.isApproximate());
         }
     }
 
@@ -72,6 +76,10 @@ public class DiameterUI implements StatisticsUI {
         if (panel != null) {
             graphDistance.setDirected(panel.isDirected());
             graphDistance.setNormalized(panel.normalize());
+            graphDistance.setApproximate(panel.isApproximate());
+            graphDistance.setSampleSize(panel.getSampleSize());
+            graphDistance.setEpsilon(panel.getEpsilon());
+            graphDistance.setDelta(panel.getDelta());
         }
         panel = null;
         graphDistance = null;
@@ -78,6 +78,72 @@ public class GraphDistancePanel extends javax.swing.JPanel {
         this.normalizeButton.setSelected(pNormalize);
     }
 
+    public boolean isApproximate() {
+        return approximateCheckBox.isSelected();
+    }
+
+    public void setApproximate(boolean approximate) {
+        approximateCheckBox.setSelected(approximate);
+        refreshSamplingEnabled();
+    }
+
+    public int getSampleSize() {
+        if (!sampleSizeRadioButton.isSelected()) {
+            return 0;
+        }
+        try {
+            return Integer.parseInt(sampleSizeTextField.getText());
+        } catch (Exception e) {
+        }
+        return 0;
+    }
+
+    public void setSampleSize(int sampleSize) {
+        samplingButtonGroup.setSelected(sampleSize > 0 ? sampleSizeRadioButton.getModel() : errorBoundRadioButton.getModel(), true);
+        sampleSizeTextField.setText(sampleSize > 0 ? Integer.toString(sampleSize) : "1000");
+    }
+
+    public double getEpsilon() {
+        try {
+            double value = Double.parseDouble(epsilonTextField.getText());
+            if (value > 0 && value < 1) {
+                return value;
+            }
+        } catch (Exception e) {
+        }
+        return 0.05;
+    }
+
+    public void setEpsilon(double epsilon) {
+        epsilonTextField.setText(Double.toString(epsilon));
+    }
+
+    public double getDelta() {
+        try {
+            double value = Double.parseDouble(deltaTextField.getText());
+            if (value > 0 && value < 1) {
+                return value;
+            }
+        } catch (Exception e) {
+        }
+        return 0.1;
+    }
+
+    public void setDelta(double delta) {
+        deltaTextField.setText(Double.toString(delta));
+    }
+
+    private void refreshSamplingEnabled() {
+        boolean enabled = approximateCheckBox.isSelected();
+        sampleSizeRadioButton.setEnabled(enabled);
+        sampleSizeTextField.setEnabled(enabled);
+        errorBoundRadioButton.setEnabled(enabled);
+        epsilonLabel.setEnabled(enabled);
+        epsilonTextField.setEnabled(enabled);
+        deltaLabel.setEnabled(enabled);
+        deltaTextField.setEnabled(enabled);
+    }
+
 
     /** This method is called from within the constructor to
      * initialize the form.
@@ -100,6 +166,15 @@ public class GraphDistancePanel extends javax.swing.JPanel {
         jLabel2 = new javax.swing.JLabel();
         jLabel3 = new javax.swing.JLabel();
         normalizeButton = new javax.swing.JCheckBox();
+        samplingButtonGroup = new javax.swing.ButtonGroup();
+        approximateCheckBox = new javax.swing.JCheckBox();
+        sampleSizeRadioButton = new javax.swing.JRadioButton();
+        errorBoundRadioButton = new javax.swing.JRadioButton();
+        sampleSizeTextField = new javax.swing.JTextField();
+        epsilonLabel = new javax.swing.JLabel();
+        epsilonTextField = new javax.swing.JTextField();
+        deltaLabel = new javax.swing.JLabel();
+        deltaTextField = new javax.swing.JTextField();
 
         directedButtonGroup.add(directedRadioButton);
         directedRadioButton.setText(org.openide.util.NbBundle.getMessage(GraphDistancePanel.class, "GraphDistancePanel.directedRadioButton.text")); // NOI18N
@@ -142,6 +217,29 @@ public class GraphDistancePanel extends javax.swing.JPanel {
 
         normalizeButton.setText(org.openide.util.NbBundle.getMessage(GraphDistancePanel.class, "GraphDistancePanel.normalizeButton.text")); // NOI18N
 
+        approximateCheckBox.setText(org.openide.util.NbBundle.getMessage(GraphDistancePanel.class, "GraphDistancePanel.approximateCheckBox.text")); // NOI18N
+        approximateCheckBox.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                approximateCheckBoxActionPerformed(evt);
+            }
+        });
+
+        samplingButtonGroup.add(sampleSizeRadioButton);
+        sampleSizeRadioButton.setText(org.openide.util.NbBundle.getMessage(GraphDistancePanel.class, "GraphDistancePanel.sampleSizeRadioButton.text")); // NOI18N
+
+        samplingButtonGroup.add(errorBoundRadioButton);
+        errorBoundRadioButton.setText(org.openide.util.NbBundle.getMessage(GraphDistancePanel.class, "GraphDistancePanel.errorBoundRadioButton.text")); // NOI18N
+
+        sampleSizeTextField.setText(org.openide.util.NbBundle.getMessage(GraphDistancePanel.class, "GraphDistancePanel.sampleSizeTextField.text")); // NOI18N
+
+        epsilonLabel.setText(org.openide.util.NbBundle.getMessage(GraphDistancePanel.class, "GraphDistancePanel.epsilonLabel.text")); // NOI18N
+
+        epsilonTextField.setText(org.openide.util.NbBundle.getMessage(GraphDistancePanel.class, "GraphDistancePanel.epsilonTextField.text")); // NOI18N
+
+        deltaLabel.setText(org.openide.util.NbBundle.getMessage(GraphDistancePanel.class, "GraphDistancePanel.deltaLabel.text")); // NOI18N
+
+        deltaTextField.setText(org.openide.util.NbBundle.getMessage(GraphDistancePanel.class, "GraphDistancePanel.deltaTextField.text")); // NOI18N
+
         javax.swing.GroupLayout layout = new javax.swing.GroupLayout(this);
         this.setLayout(layout);
         layout.setHorizontalGroup(
@@ -163,6 +261,28 @@ public class GraphDistancePanel extends javax.swing.JPanel {
                 .addContainerGap()
                 .addComponent(undirectedRadioButton)
                 .addContainerGap(628, Short.MAX_VALUE))
+            .addGroup(layout.createSequentialGroup()
+                .addContainerGap()
+                .addGroup(layout.createParallelGroup(javax.swing.GroupLayout.Alignment.LEADING)
+                    .addComponent(approximateCheckBox)
+                    .addGroup(layout.createSequentialGroup()
+                        .addGap(21, 21, 21)
+                        .addGroup(layout.createParallelGroup(javax.swing.GroupLayout.Alignment.LEADING)
+                            .addGroup(layout.createSequentialGroup()
+                                .addComponent(sampleSizeRadioButton)
+                                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                                .addComponent(sampleSizeTextField, javax.swing.GroupLayout.PREFERRED_SIZE, 80, javax.swing.GroupLayout.PREFERRED_SIZE))
+                            .addGroup(layout.createSequentialGroup()
+                                .addComponent(errorBoundRadioButton)
+                                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                                .addComponent(epsilonLabel)
+                                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                                .addComponent(epsilonTextField, javax.swing.GroupLayout.PREFERRED_SIZE, 60, javax.swing.GroupLayout.PREFERRED_SIZE)
+                                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                                .addComponent(deltaLabel)
+                                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                                .addComponent(deltaTextField, javax.swing.GroupLayout.PREFERRED_SIZE, 60, javax.swing.GroupLayout.PREFERRED_SIZE)))))
+                .addContainerGap(javax.swing.GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE))
             .addGroup(layout.createSequentialGroup()
                 .addContainerGap()
                 .addGroup(layout.createParallelGroup(javax.swing.GroupLayout.Alignment.LEADING)
@@ -187,6 +307,19 @@ public class GraphDistancePanel extends javax.swing.JPanel {
                 .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.UNRELATED)
                 .addComponent(undirectedRadioButton)
                 .addGap(18, 18, 18)
+                .addComponent(approximateCheckBox)
+                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                .addGroup(layout.createParallelGroup(javax.swing.GroupLayout.Alignment.BASELINE)
+                    .addComponent(sampleSizeRadioButton)
+                    .addComponent(sampleSizeTextField, javax.swing.GroupLayout.PREFERRED_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.PREFERRED_SIZE))
+                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                .addGroup(layout.createParallelGroup(javax.swing.GroupLayout.Alignment.BASELINE)
+                    .addComponent(errorBoundRadioButton)
+                    .addComponent(epsilonLabel)
+                    .addComponent(epsilonTextField, javax.swing.GroupLayout.PREFERRED_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.PREFERRED_SIZE)
+                    .addComponent(deltaLabel)
+                    .addComponent(deltaTextField, javax.swing.GroupLayout.PREFERRED_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.PREFERRED_SIZE))
+                .addGap(18, 18, 18)
                 .addGroup(layout.createParallelGroup(javax.swing.GroupLayout.Alignment.LEADING)
                     .addComponent(jLabel1)
                     .addComponent(jXLabel1, javax.swing.GroupLayout.PREFERRED_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.PREFERRED_SIZE))
@@ -207,10 +340,20 @@ public class GraphDistancePanel extends javax.swing.JPanel {
     private void directedRadioButtonActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_directedRadioButtonActionPerformed
         // TODO add your handling code here:
 }//GEN-LAST:event_directedRadioButtonActionPerformed
+
+    private void approximateCheckBoxActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_approximateCheckBoxActionPerformed
+        refreshSamplingEnabled();
+    }//GEN-LAST:event_approximateCheckBoxActionPerformed
     // Variables declaration - do not modify//GEN-BEGIN:variables
+    private javax.swing.JCheckBox approximateCheckBox;
+    private javax.swing.JLabel deltaLabel;
+    private javax.swing.JTextField deltaTextField;
     private org.jdesktop.swingx.JXLabel descriptionLabel;
     private javax.swing.ButtonGroup directedButtonGroup;
     protected javax.swing.JRadioButton directedRadioButton;
+    private javax.swing.JLabel epsilonLabel;
+    private javax.swing.JTextField epsilonTextField;
+    private javax.swing.JRadioButton errorBoundRadioButton;
     private org.jdesktop.swingx.JXHeader header;
     private javax.swing.JLabel jLabel1;
     private javax.swing.JLabel jLabel2;
@@ -219,6 +362,9 @@ public class GraphDistancePanel extends javax.swing.JPanel {
     private org.jdesktop.swingx.JXLabel jXLabel2;
     private org.jdesktop.swingx.JXLabel jXLabel3;
     private javax.swing.JCheckBox normalizeButton;
+    private javax.swing.JRadioButton sampleSizeRadioButton;
+    private javax.swing.JTextField sampleSizeTextField;
+    private javax.swing.ButtonGroup samplingButtonGroup;
     protected javax.swing.JRadioButton undirectedRadioButton;
     // End of variables declaration//GEN-END:variables
 }
@@ -59,6 +59,14 @@ public class ModularityPanel extends javax.swing.JPanel {
         randomizeCheckbox.setSelected(randomize);
     }
 
+    public boolean isRefine() {
+        return refineCheckbox.isSelected();
+    }
+
+    public void setRefine(boolean refine) {
+        refineCheckbox.setSelected(refine);
+    }
+
     /** This method is called from within the constructor to
      * initialize the form.
      * WARNING: Do NOT modify this code. The content of this method is
@@ -69,12 +77,16 @@ public class ModularityPanel extends javax.swing.JPanel {
     private void initComponents() {
 
         randomizeCheckbox = new javax.swing.JCheckBox();
+        refineCheckbox = new javax.swing.JCheckBox();
         desriptionLabel = new org.jdesktop.swingx.JXLabel();
         header = new org.jdesktop.swingx.JXHeader();
 
         randomizeCheckbox.setText(org.openide.util.NbBundle.getMessage(ModularityPanel.class, "ModularityPanel.randomizeCheckbox.text")); // NOI18N
         randomizeCheckbox.setHorizontalTextPosition(javax.swing.SwingConstants.RIGHT);
 
+        refineCheckbox.setText(org.openide.util.NbBundle.getMessage(ModularityPanel.class, "ModularityPanel.refineCheckbox.text")); // NOI18N
+        refineCheckbox.setHorizontalTextPosition(javax.swing.SwingConstants.RIGHT);
+
         desriptionLabel.setLineWrap(true);
         desriptionLabel.setText(org.openide.util.NbBundle.getMessage(ModularityPanel.class, "ModularityPanel.desriptionLabel.text")); // NOI18N
         desriptionLabel.setVerticalAlignment(javax.swing.SwingConstants.TOP);
@@ -91,6 +103,7 @@ public class ModularityPanel extends javax.swing.JPanel {
                 .addContainerGap()
                 .addGroup(layout.createParallelGroup(javax.swing.GroupLayout.Alignment.LEADING)
                     .addComponent(randomizeCheckbox)
+                    .addComponent(refineCheckbox)
                     .addComponent(desriptionLabel, javax.swing.GroupLayout.DEFAULT_SIZE, 539, Short.MAX_VALUE))
                 .addContainerGap())
         );
@@ -100,7 +113,9 @@ public class ModularityPanel extends javax.swing.JPanel {
                 .addComponent(header, javax.swing.GroupLayout.PREFERRED_SIZE, 94, javax.swing.GroupLayout.PREFERRED_SIZE)
                 .addGap(18, 18, 18)
                 .addComponent(randomizeCheckbox)
-                .addGap(46, 46, 46)
+                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                .addComponent(refineCheckbox)
+                .addGap(23, 23, 23)
                 .addComponent(desriptionLabel, javax.swing.GroupLayout.DEFAULT_SIZE, 58, Short.MAX_VALUE)
                 .addContainerGap())
         );
@@ -109,5 +124,6 @@ public class ModularityPanel extends javax.swing.JPanel {
     private org.jdesktop.swingx.JXLabel desriptionLabel;
     private org.jdesktop.swingx.JXHeader header;
     private javax.swing.JCheckBox randomizeCheckbox;
+    private javax.swing.JCheckBox refineCheckbox;
     // End of variables declaration//GEN-END:variables
 }
@@ -66,12 +66,14 @@ public class ModularityUI implements StatisticsUI {
         if (panel != null) {
             settings.load(mod);
             panel.setRandomize(mod.getRandom());
+            panel.setRefine(mod.isRefine());
         }
     }
 
     public void unsetup() {
         if (panel != null) {
             mod.setRandom(panel.isRandomize());
+            mod.setRefine(panel.isRefine());
             settings.save(mod);
         }
         mod = null;
@@ -102,13 +104,16 @@ public class ModularityUI implements StatisticsUI {
     private static class StatSettings {
 
         private boolean randomize = true;
+        private boolean refine = false;
 
         private void save(Modularity stat) {
             this.randomize = stat.getRandom();
+            this.refine = stat.isRefine();
         }
 
         private void load(Modularity stat) {
             stat.setRandom(randomize);
+            stat.setRefine(refine);
         }
     }
 }